@@ -25,6 +25,7 @@ package org.pentaho.di.core;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -50,6 +51,9 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
   protected volatile String remoteSlaveServerName;
   private ReadWriteLock lock;
 
+  private final LongAdder putWaitNanos;
+  private final LongAdder getWaitNanos;
+
   public BaseRowSet() {
     // not done putting data into this RowSet
     done = new AtomicBoolean( false );
@@ -57,6 +61,9 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
     originStepCopy = new AtomicInteger( 0 );
     destinationStepCopy = new AtomicInteger( 0 );
     lock = new ReentrantReadWriteLock();
+
+    putWaitNanos = new LongAdder();
+    getWaitNanos = new LongAdder();
   }
 
   /**
@@ -302,4 +309,28 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
     return false;
   }
 
+  /**
+   * Adds time the producer spent blocked on a full row set. Only called when a put actually has to wait.
+   */
+  protected void addPutWait( long nanos ) {
+    putWaitNanos.add( nanos );
+  }
+
+  /**
+   * Adds time the consumer spent blocked on an empty row set. Only called when a get actually has to wait.
+   */
+  protected void addGetWait( long nanos ) {
+    getWaitNanos.add( nanos );
+  }
+
+  @Override
+  public long getPutWaitNanos() {
+    return putWaitNanos.sum();
+  }
+
+  @Override
+  public long getGetWaitNanos() {
+    return getWaitNanos.sum();
+  }
+
 }
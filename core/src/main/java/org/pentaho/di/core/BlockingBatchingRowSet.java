@@ -91,10 +91,13 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
     // If we're not accepting we block until we do
     //
     if ( inputBuffer == null ) {
+      long start = System.nanoTime();
       try {
         inputBuffer = putArray.poll( time, tu );
       } catch ( InterruptedException e ) {
         return false;
+      } finally {
+        addPutWait( System.nanoTime() - start );
       }
       if ( inputBuffer == null ) {
         return false;
@@ -103,11 +106,14 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
     }
     inputBuffer[putIndex++] = rowData;
     if ( putIndex == size ) {
+      long start = System.nanoTime();
       try {
         getArray.offer( inputBuffer, time, tu );
         inputBuffer = null;
       } catch ( InterruptedException e ) {
         return false;
+      } finally {
+        addPutWait( System.nanoTime() - start );
       }
     }
 
@@ -140,10 +146,13 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
   @Override
   public Object[] getRowWait( long timeout, TimeUnit tu ) {
     if ( outputBuffer == null ) {
+      long start = System.nanoTime();
       try {
         outputBuffer = getArray.poll( timeout, tu );
       } catch ( InterruptedException e ) {
         return null;
+      } finally {
+        addGetWait( System.nanoTime() - start );
       }
       if ( outputBuffer == null ) {
         return null;
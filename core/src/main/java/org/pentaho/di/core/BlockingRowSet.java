@@ -77,8 +77,17 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
   public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
     this.rowMeta = rowMeta;
     try {
-
-      return queArray.offer( rowData, time, tu );
+      // Only time the put when the queue is full, the common case stays a plain offer
+      //
+      if ( queArray.offer( rowData ) ) {
+        return true;
+      }
+      long start = System.nanoTime();
+      try {
+        return queArray.offer( rowData, time, tu );
+      } finally {
+        addPutWait( System.nanoTime() - start );
+      }
     } catch ( InterruptedException e ) {
       return false;
     } catch ( NullPointerException e ) {
@@ -118,10 +127,17 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
   @Override
   public Object[] getRowWait( long timeout, TimeUnit tu ) {
 
+    Object[] row = queArray.poll();
+    if ( row != null ) {
+      return row;
+    }
+    long start = System.nanoTime();
     try {
       return queArray.poll( timeout, tu );
     } catch ( InterruptedException e ) {
       return null;
+    } finally {
+      addGetWait( System.nanoTime() - start );
     }
   }
 
@@ -865,6 +865,12 @@ public class Const {
    */
   public static final String KETTLE_PLUGIN_PACKAGES = "KETTLE_PLUGIN_PACKAGES";
 
+  /**
+   * Set this variable to N to scan all plugin jar files on every start instead of reusing the plugin index in the
+   * Kettle home directory (plugin-index.ser) for jar files that didn't change. (default = Y)
+   */
+  public static final String KETTLE_PLUGIN_INDEX = "KETTLE_PLUGIN_INDEX";
+
   /**
    * Name of the environment variable that contains the size of the transformation rowset size. This overwrites values
    * that you set transformation settings.
@@ -981,6 +987,86 @@ public class Const {
    */
   public static final String KETTLE_FILE_OUTPUT_MAX_STREAM_LIFE = "KETTLE_FILE_OUTPUT_MAX_STREAM_LIFE";
 
+  /**
+   * This variable contains the size in bytes of the write buffer of every file opened by the Text File Output step.
+   */
+  public static final String KETTLE_FILE_OUTPUT_BUFFER_SIZE = "KETTLE_FILE_OUTPUT_BUFFER_SIZE";
+
+  /**
+   * Set this variable to Y to have the Text File Output step compress and write its files on a background thread.
+   * (default = N)
+   */
+  public static final String KETTLE_FILE_OUTPUT_ASYNC_WRITE = "KETTLE_FILE_OUTPUT_ASYNC_WRITE";
+
+  /**
+   * The size in bytes of the blocks the parallel compression providers compress independently.
+   */
+  public static final String KETTLE_COMPRESSION_BLOCK_SIZE = "KETTLE_COMPRESSION_BLOCK_SIZE";
+
+  /**
+   * The number of threads shared by the parallel compression providers. (default = number of processors)
+   */
+  public static final String KETTLE_COMPRESSION_THREADS = "KETTLE_COMPRESSION_THREADS";
+
+  /**
+   * Set this variable to Y to have Parallel GZip CSV Input build a member index (.gzi) next to multi-member gzip files
+   * that don't carry their member sizes, so the step copies can split them. (default = N)
+   */
+  public static final String KETTLE_GZIP_CREATE_INDEX = "KETTLE_GZIP_CREATE_INDEX";
+
+  /**
+   * The number of threads a Fuzzy Match step copy compares rows with. (default = number of processors)
+   */
+  public static final String KETTLE_FUZZY_MATCH_THREADS = "KETTLE_FUZZY_MATCH_THREADS";
+
+  /**
+   * Set this variable to N to run the Calculator, Formula and User Defined Java Expression steps without compiling
+   * their calculations. (default = Y)
+   */
+  public static final String KETTLE_COMPILED_EXPRESSIONS = "KETTLE_COMPILED_EXPRESSIONS";
+
+  /**
+   * Set this variable to Y to run linear chains of row-local steps (Select Values, Calculator, Filter Rows and so on)
+   * in one thread instead of one thread per step. (default = N)
+   */
+  public static final String KETTLE_STEP_FUSION = "KETTLE_STEP_FUSION";
+
+  /**
+   * The maximum number of step copies of a transformation that initialize at the same time, for example to limit the
+   * number of database connections opened at once. (default = 0, all step copies at once)
+   */
+  public static final String KETTLE_STEP_INIT_THREADS = "KETTLE_STEP_INIT_THREADS";
+
+  /**
+   * The maximum number of pooled connections handed out to the same database URL over all the connection pools of the
+   * JVM. Steps waiting for a connection get one in the order they asked for it. (default = 0, no limit)
+   */
+  public static final String KETTLE_CONNECTION_POOL_MAX_PER_DATABASE = "KETTLE_CONNECTION_POOL_MAX_PER_DATABASE";
+
+  /**
+   * The time in ms after which a pooled connection that was not returned is reported as leaked. (default = 0, off)
+   */
+  public static final String KETTLE_CONNECTION_POOL_LEAK_THRESHOLD = "KETTLE_CONNECTION_POOL_LEAK_THRESHOLD";
+
+  /**
+   * The number of result rows of a job entry or transformation kept in memory, the rows beyond it are written to a
+   * temporary file. (default = 0, all rows in memory)
+   */
+  public static final String KETTLE_RESULT_ROWS_MAX_IN_MEMORY = "KETTLE_RESULT_ROWS_MAX_IN_MEMORY";
+
+  /**
+   * The number of rows the steps of a transformation that write rows to temporary files (Sort rows, Join rows, Group
+   * by, Blocking step) can keep in memory together. A step that needs more writes its rows to disk early. (default = 0,
+   * no limit besides the settings of the steps)
+   */
+  public static final String KETTLE_TRANS_SPILL_MEMORY_ROWS = "KETTLE_TRANS_SPILL_MEMORY_ROWS";
+
+  /**
+   * The compression provider for the temporary files of the steps that have the option to compress them, for example
+   * GZip or None. (default = Snappy)
+   */
+  public static final String KETTLE_SPILL_COMPRESSION = "KETTLE_SPILL_COMPRESSION";
+
   /**
    * Set this variable to Y to disable standard Kettle logging to the console. (stdout)
    */
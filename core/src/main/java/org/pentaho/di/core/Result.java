@@ -23,6 +23,8 @@
 package org.pentaho.di.core;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -146,7 +148,7 @@ public class Result implements Cloneable {
     result = false;
 
     exitStatus = 0;
-    rows = new ArrayList<RowMetaAndData>();
+    rows = new ResultRows();
     resultFiles = new ConcurrentHashMap<String, ResultFile>();
 
     stopped = false;
@@ -203,10 +205,13 @@ public class Result implements Cloneable {
       Result result = (Result) super.clone();
 
       // Clone result rows and files as well...
-      if ( rows != null ) {
-        List<RowMetaAndData> clonedRows = new ArrayList<RowMetaAndData>();
-        for ( int i = 0; i < rows.size(); i++ ) {
-          clonedRows.add( ( rows.get( i ) ).clone() );
+      if ( rows instanceof ResultRows ) {
+        // Rows written to disk are shared with the clone instead of being written again
+        result.setRows( ( (ResultRows) rows ).copy() );
+      } else if ( rows != null ) {
+        List<RowMetaAndData> clonedRows = new ResultRows();
+        for ( RowMetaAndData row : rows ) {
+          clonedRows.add( row.clone() );
         }
         result.setRows( clonedRows );
       }
@@ -565,40 +570,54 @@ public class Result implements Cloneable {
    */
   public String getXML() {
     try {
-
-      StringBuilder xml = new StringBuilder();
-      xml.append( XMLHandler.openTag( XML_TAG ) );
-      setBasicXmlAttrs( xml );
-
-      // Export the result files
-      //
-      xml.append( XMLHandler.openTag( XML_FILES_TAG ) );
-      for ( ResultFile resultFile : resultFiles.values() ) {
-        xml.append( resultFile.getXML() );
-      }
-      xml.append( XMLHandler.closeTag( XML_FILES_TAG ) );
-
-      xml.append( XMLHandler.openTag( XML_ROWS_TAG ) );
-      boolean firstRow = true;
-      RowMetaInterface rowMeta = null;
-      for ( RowMetaAndData row : rows ) {
-        if ( firstRow ) {
-          firstRow = false;
-          rowMeta = row.getRowMeta();
-          xml.append( rowMeta.getMetaXML() );
-        }
-        xml.append( rowMeta.getDataXML( row.getData() ) );
-      }
-      xml.append( XMLHandler.closeTag( XML_ROWS_TAG ) );
-
-      xml.append( XMLHandler.closeTag( XML_TAG ) );
-
+      StringWriter xml = new StringWriter();
+      writeXML( xml );
       return xml.toString();
     } catch ( IOException e ) {
       throw new RuntimeException( "Unexpected error encoding job result as XML", e );
     }
   }
 
+  /**
+   * Writes this Result object as XML. The rows are written one at a time as they are read from the result rows, so
+   * large results can be sent without building the whole document in memory.
+   *
+   * @param writer
+   *          the writer to write the XML to
+   * @throws IOException
+   *           if the XML can't be written
+   */
+  public void writeXML( Writer writer ) throws IOException {
+    StringBuilder xml = new StringBuilder();
+    xml.append( XMLHandler.openTag( XML_TAG ) );
+    setBasicXmlAttrs( xml );
+
+    // Export the result files
+    //
+    xml.append( XMLHandler.openTag( XML_FILES_TAG ) );
+    for ( ResultFile resultFile : resultFiles.values() ) {
+      xml.append( resultFile.getXML() );
+    }
+    xml.append( XMLHandler.closeTag( XML_FILES_TAG ) );
+
+    xml.append( XMLHandler.openTag( XML_ROWS_TAG ) );
+    writer.write( xml.toString() );
+
+    boolean firstRow = true;
+    RowMetaInterface rowMeta = null;
+    for ( RowMetaAndData row : rows ) {
+      if ( firstRow ) {
+        firstRow = false;
+        rowMeta = row.getRowMeta();
+        writer.write( rowMeta.getMetaXML() );
+      }
+      writer.write( rowMeta.getDataXML( row.getData() ) );
+    }
+
+    writer.write( XMLHandler.closeTag( XML_ROWS_TAG ) );
+    writer.write( XMLHandler.closeTag( XML_TAG ) );
+  }
+
   private StringBuilder setBasicXmlAttrs( StringBuilder xml ) {
     // First the metrics...
     //
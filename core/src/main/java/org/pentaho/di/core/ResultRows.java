@@ -0,0 +1,468 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.EnvUtil;
+
+/**
+ * The rows of a {@link Result}. The first rows are kept in memory, the rows beyond the KETTLE_RESULT_ROWS_MAX_IN_MEMORY
+ * limit are written to a temporary file and read back from it when they are needed. Reading the rows in order, with the
+ * iterator or with increasing indexes, never keeps more than one of the written rows in memory.<br>
+ * Once rows were written to disk new rows can only be appended.<br>
+ * A copy made with {@link #copy()} shares the file with the original, it is only copied when rows are appended to the
+ * copy. The file is deleted when the last list using it is cleared with {@link #clear()}, so owners of the rows should
+ * clear them once they are done with them.
+ *
+ * @see Const#KETTLE_RESULT_ROWS_MAX_IN_MEMORY
+ */
+public class ResultRows extends AbstractList<RowMetaAndData> {
+
+  private static final int BUFFER_SIZE = 65536;
+
+  // markers written before every row in the spill file
+  private static final byte SAME_ROW_META = 0;
+  private static final byte NEW_ROW_META = 1;
+  private static final byte NULL_ROW = 2;
+
+  private final int maxRowsInMemory;
+
+  private final List<RowMetaAndData> memoryRows = new ArrayList<RowMetaAndData>();
+
+  // the file with the rows beyond the in-memory limit, possibly shared with copies of this list
+  private SpillFile spill;
+  private int spilledRows;
+  // the length of the first spilledRows rows in the file, kept when the file is shared
+  private long spilledBytes;
+
+  // the layout of the last row written and its serialized form, to recognize the same layout in a different object
+  private RowMetaInterface spillRowMeta;
+  private byte[] spillRowMetaBytes;
+
+  // reads the spill file for get(), so that rows asked for in order are read only once
+  private SpillReader reader;
+
+  /**
+   * Creates an empty list that keeps the number of rows set in KETTLE_RESULT_ROWS_MAX_IN_MEMORY in memory.
+   */
+  public ResultRows() {
+    this( Const.toInt( EnvUtil.getSystemProperty( Const.KETTLE_RESULT_ROWS_MAX_IN_MEMORY ), 0 ) );
+  }
+
+  /**
+   * @param maxRowsInMemory
+   *          the number of rows to keep in memory before rows are written to disk, 0 or less to keep all the rows in
+   *          memory
+   */
+  public ResultRows( int maxRowsInMemory ) {
+    this.maxRowsInMemory = maxRowsInMemory;
+  }
+
+  public ResultRows( Collection<RowMetaAndData> rows ) {
+    this();
+    addAll( rows );
+  }
+
+  /**
+   * Makes a deep copy of the rows. The rows in memory are cloned, the rows on disk are shared with this list until rows
+   * are appended to the copy: rows read from disk are new objects anyway.
+   *
+   * @return the copy
+   */
+  public synchronized ResultRows copy() {
+    ResultRows copy = new ResultRows( maxRowsInMemory );
+    for ( RowMetaAndData row : memoryRows ) {
+      copy.memoryRows.add( row == null ? null : row.clone() );
+    }
+    if ( spill != null ) {
+      try {
+        copy.spilledBytes = spill.isWriter( this ) ? spill.flush() : spilledBytes;
+      } catch ( IOException e ) {
+        throw new RuntimeException( "Unable to write result rows to file " + spill.file, e );
+      }
+      copy.spill = spill.share();
+      copy.spilledRows = spilledRows;
+    }
+    return copy;
+  }
+
+  @Override
+  public synchronized int size() {
+    return memoryRows.size() + spilledRows;
+  }
+
+  /**
+   * @return true if some of the rows were written to disk
+   */
+  public synchronized boolean isSpilled() {
+    return spilledRows > 0;
+  }
+
+  /**
+   * @return the file the rows beyond the in-memory limit are written to, null if there is none
+   */
+  synchronized File getSpillFile() {
+    return spill == null ? null : spill.file;
+  }
+
+  @Override
+  public synchronized RowMetaAndData get( int index ) {
+    if ( index < 0 || index >= size() ) {
+      throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size() );
+    }
+    if ( index < memoryRows.size() ) {
+      return memoryRows.get( index );
+    }
+    int spillIndex = index - memoryRows.size();
+    try {
+      if ( reader == null || reader.next > spillIndex ) {
+        closeReader();
+        reader = openReader();
+      }
+      while ( reader.next < spillIndex ) {
+        reader.read();
+      }
+      return reader.read();
+    } catch ( Exception e ) {
+      throw new RuntimeException( "Unable to read result row " + index + " from file " + spill.file, e );
+    }
+  }
+
+  @Override
+  public synchronized RowMetaAndData set( int index, RowMetaAndData row ) {
+    if ( index >= memoryRows.size() && index < size() ) {
+      throw new UnsupportedOperationException( "Result rows written to disk can't be replaced" );
+    }
+    return memoryRows.set( index, row );
+  }
+
+  @Override
+  public synchronized void add( int index, RowMetaAndData row ) {
+    if ( spilledRows == 0 && ( maxRowsInMemory <= 0 || memoryRows.size() < maxRowsInMemory ) ) {
+      memoryRows.add( index, row );
+    } else if ( index == size() ) {
+      try {
+        spill( row );
+      } catch ( Exception e ) {
+        throw new RuntimeException( "Unable to write result row to file " + ( spill == null ? "" : spill.file ), e );
+      }
+    } else {
+      throw new UnsupportedOperationException( "Rows can only be appended once result rows were written to disk" );
+    }
+    modCount++;
+  }
+
+  @Override
+  public synchronized RowMetaAndData remove( int index ) {
+    if ( spilledRows > 0 ) {
+      throw new UnsupportedOperationException( "Rows can't be removed once result rows were written to disk" );
+    }
+    modCount++;
+    return memoryRows.remove( index );
+  }
+
+  /**
+   * Removes all the rows. The temporary file is deleted unless copies of this list still use it.
+   */
+  @Override
+  public synchronized void clear() {
+    memoryRows.clear();
+    closeReader();
+    if ( spill != null ) {
+      spill.release( this );
+      spill = null;
+    }
+    spillRowMeta = null;
+    spillRowMetaBytes = null;
+    spilledRows = 0;
+    spilledBytes = 0;
+    modCount++;
+  }
+
+  /**
+   * Iterates over the rows that are in the list when the iterator is created. Rows on disk are read with a reader of
+   * the iterator's own, so several iterators can read the rows at the same time.
+   */
+  @Override
+  public Iterator<RowMetaAndData> iterator() {
+    final int count;
+    final int inMemory;
+    synchronized ( this ) {
+      count = size();
+      inMemory = memoryRows.size();
+    }
+    return new Iterator<RowMetaAndData>() {
+      private int index;
+      private SpillReader spillReader;
+
+      @Override
+      public boolean hasNext() {
+        return index < count;
+      }
+
+      @Override
+      public RowMetaAndData next() {
+        if ( index >= count ) {
+          throw new NoSuchElementException();
+        }
+        if ( index < inMemory ) {
+          synchronized ( ResultRows.this ) {
+            return memoryRows.get( index++ );
+          }
+        }
+        try {
+          if ( spillReader == null ) {
+            synchronized ( ResultRows.this ) {
+              spillReader = openReader();
+            }
+          }
+          RowMetaAndData row = spillReader.read();
+          index++;
+          if ( index == count ) {
+            spillReader.close();
+          }
+          return row;
+        } catch ( Exception e ) {
+          throw new RuntimeException( "Unable to read result row " + index + " from file " + getSpillFile(), e );
+        }
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private void spill( RowMetaAndData row ) throws IOException, KettleException {
+    if ( spill == null ) {
+      spill = new SpillFile( this );
+    } else if ( !spill.isWriter( this ) ) {
+      // The file is shared with the list this one was copied from, continue in a copy of our part of it
+      SpillFile shared = spill;
+      spill = new SpillFile( this, shared.file, spilledBytes );
+      shared.release( this );
+      spillRowMeta = null;
+      spillRowMetaBytes = null;
+    }
+    if ( row == null ) {
+      spill.write( null, null );
+    } else if ( isSameRowMeta( row.getRowMeta() ) ) {
+      spill.write( row, null );
+    } else {
+      spillRowMeta = row.getRowMeta();
+      spillRowMetaBytes = serialize( spillRowMeta );
+      spill.write( row, spillRowMetaBytes );
+    }
+    spilledRows++;
+  }
+
+  /**
+   * @return true if the layout of the row is the same as that of the last row written. Rows are often cloned, so a
+   *         layout that isn't the same object is compared by its serialized form.
+   */
+  private boolean isSameRowMeta( RowMetaInterface rowMeta ) throws IOException, KettleException {
+    if ( rowMeta == spillRowMeta ) {
+      return true;
+    }
+    if ( spillRowMeta == null || rowMeta.size() != spillRowMeta.size() ) {
+      return false;
+    }
+    byte[] bytes = serialize( rowMeta );
+    if ( Arrays.equals( bytes, spillRowMetaBytes ) ) {
+      // Later rows cloned from the same source can use the quick check
+      spillRowMeta = rowMeta;
+      return true;
+    }
+    return false;
+  }
+
+  private static byte[] serialize( RowMetaInterface rowMeta ) throws IOException, KettleException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream( bytes );
+    rowMeta.writeMeta( output );
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  private SpillReader openReader() throws IOException {
+    // make the rows written so far visible to the reader
+    if ( spill.isWriter( this ) ) {
+      spill.flush();
+    }
+    return new SpillReader( spill.file );
+  }
+
+  private void closeReader() {
+    if ( reader != null ) {
+      reader.close();
+      reader = null;
+    }
+  }
+
+  /**
+   * A spill file with the lists that use it. Only the list that created the file appends to it, the others read the
+   * rows that were in the file when they were copied. The file is deleted when the last list releases it, or when the
+   * JVM exits.
+   */
+  private static final class SpillFile {
+    private final File file;
+    private final DataOutputStream output;
+    private ResultRows writer;
+    private int references = 1;
+
+    SpillFile( ResultRows writer ) throws IOException {
+      this.file = createFile();
+      this.output = openOutput( file, false );
+      this.writer = writer;
+    }
+
+    /**
+     * Creates a new file with the first bytes of another one.
+     */
+    SpillFile( ResultRows writer, File source, long length ) throws IOException {
+      this.file = createFile();
+      try ( FileChannel in = new FileInputStream( source ).getChannel();
+            FileChannel out = new FileOutputStream( file ).getChannel() ) {
+        long position = 0;
+        while ( position < length ) {
+          position += in.transferTo( position, length - position, out );
+        }
+      }
+      this.output = openOutput( file, true );
+      this.writer = writer;
+    }
+
+    private static File createFile() throws IOException {
+      File created = File.createTempFile( "kettle-result-rows-", ".tmp" );
+      created.deleteOnExit();
+      return created;
+    }
+
+    private static DataOutputStream openOutput( File target, boolean append ) throws IOException {
+      return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( target, append ), BUFFER_SIZE ) );
+    }
+
+    synchronized boolean isWriter( ResultRows rows ) {
+      return writer == rows;
+    }
+
+    synchronized SpillFile share() {
+      references++;
+      return this;
+    }
+
+    /**
+     * Appends a row, preceded by its serialized layout if that differs from the one of the row before.
+     */
+    synchronized void write( RowMetaAndData row, byte[] rowMetaBytes ) throws IOException, KettleException {
+      if ( row == null ) {
+        output.writeByte( NULL_ROW );
+        return;
+      }
+      if ( rowMetaBytes == null ) {
+        output.writeByte( SAME_ROW_META );
+      } else {
+        output.writeByte( NEW_ROW_META );
+        output.write( rowMetaBytes );
+      }
+      row.getRowMeta().writeData( output, row.getData() );
+    }
+
+    /**
+     * @return the length of the file once the rows written so far are in it
+     */
+    synchronized long flush() throws IOException {
+      output.flush();
+      return file.length();
+    }
+
+    synchronized void release( ResultRows rows ) {
+      if ( writer == rows ) {
+        writer = null;
+        try {
+          output.close();
+        } catch ( IOException e ) {
+          // Ignore, the file is deleted anyway or only read from now on
+        }
+      }
+      if ( --references == 0 ) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Reads the rows of the spill file in the order they were written.
+   */
+  private static class SpillReader {
+    private final DataInputStream input;
+    private RowMetaInterface rowMeta;
+    private int next;
+
+    SpillReader( File file ) throws IOException {
+      input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ) );
+    }
+
+    RowMetaAndData read() throws IOException, KettleException {
+      byte marker = input.readByte();
+      next++;
+      if ( marker == NULL_ROW ) {
+        return null;
+      }
+      if ( marker == NEW_ROW_META ) {
+        rowMeta = new RowMeta( input );
+      }
+      return new RowMetaAndData( rowMeta, rowMeta.readData( input ) );
+    }
+
+    void close() {
+      try {
+        input.close();
+      } catch ( IOException e ) {
+        // Ignore
+      }
+    }
+  }
+}
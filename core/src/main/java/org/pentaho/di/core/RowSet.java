@@ -154,4 +154,20 @@ public interface RowSet {
    * Clear this rowset: remove all rows and remove the "done" flag.
    */
   public abstract void clear();
+
+  /**
+   * @return the total time in nanoseconds the producing step spent blocked because this row set was full. Row sets
+   *         that don't keep track of this return 0.
+   */
+  public default long getPutWaitNanos() {
+    return 0L;
+  }
+
+  /**
+   * @return the total time in nanoseconds the consuming step spent blocked because this row set was empty. Row sets
+   *         that don't keep track of this return 0.
+   */
+  public default long getGetWaitNanos() {
+    return 0L;
+  }
 }
@@ -0,0 +1,549 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.database;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.Utils;
+
+/**
+ * Inserts or updates rows in a table a batch at a time instead of a row at a time. A row is identified by the values
+ * of the key fields: rows with new key values are inserted, the others update the existing row.
+ * <p>
+ * When the database has an upsert statement (see {@link DatabaseMeta#getSQLUpsert}) and a unique index covers exactly
+ * the key fields, a batch is sent as a single JDBC batch of that statement. Otherwise the existing rows of a batch are
+ * looked up with one query per few hundred keys and the inserts and updates are sent as two JDBC batches. Only changed
+ * rows are updated in that case.
+ * <p>
+ * Key fields are compared with equality only. Nothing is committed here, that is left to the caller.
+ */
+public class BatchUpsert {
+
+  /** Keep lookup queries below the parameter limits of the JDBC drivers */
+  private static final int MAX_LOOKUP_PARAMETERS = 1000;
+
+  /**
+   * The number of rows handled by a flush.
+   */
+  public static class Counts {
+    /** Rows written with the upsert statement, it doesn't tell inserts and updates apart */
+    public int upserted;
+    public int inserted;
+    public int updated;
+    public int unchanged;
+    /** The number of keys looked up */
+    public int lookups;
+  }
+
+  private final Database db;
+  private final DatabaseMeta databaseMeta;
+  private final String schemaName;
+  private final String tableName;
+  private final String schemaTable;
+  private final String[] keyFields;
+  private final RowMetaInterface sourceKeyRowMeta;
+  private final RowMetaInterface keyRowMeta;
+  private final RowMetaInterface valueRowMeta;
+  private final int[] updateIndexes;
+  private final RowMetaInterface updateRowMeta;
+  private final boolean useBatch;
+
+  private final List<Object[]> keyRows;
+  private final List<Object[]> valueRows;
+
+  private PreparedStatement upsertStatement;
+  private PreparedStatement insertStatement;
+  private PreparedStatement updateStatement;
+  private RowMetaInterface updateParameterRowMeta;
+  private RowMetaInterface existingRowMeta;
+
+  /**
+   * @param db
+   *          the connected database to write to
+   * @param schemaName
+   *          the schema name of the table, can be empty
+   * @param tableName
+   *          the table name
+   * @param keyFields
+   *          the names of the key fields in the table
+   * @param keyRowMeta
+   *          the metadata of the key values, in the order of the key fields
+   * @param valueRowMeta
+   *          the metadata of the values to insert, named after the fields in the table
+   * @param update
+   *          for every value, true if it has to be updated in existing rows
+   * @param allowUpsert
+   *          false to always look up the existing rows. When a key field is also a value field both need to have the
+   *          same value to use the upsert statement.
+   * @throws KettleDatabaseException
+   *           in case the statements can't be prepared
+   */
+  public BatchUpsert( Database db, String schemaName, String tableName, String[] keyFields,
+    RowMetaInterface keyRowMeta, RowMetaInterface valueRowMeta, boolean[] update, boolean allowUpsert )
+    throws KettleDatabaseException {
+    this.db = db;
+    this.databaseMeta = db.getDatabaseMeta();
+    this.schemaName = schemaName;
+    this.tableName = tableName;
+    this.schemaTable = databaseMeta.getQuotedSchemaTableCombination( schemaName, tableName );
+    this.keyFields = keyFields;
+    this.sourceKeyRowMeta = keyRowMeta;
+    this.valueRowMeta = valueRowMeta;
+    this.useBatch = db.getUseBatchInsert( true );
+    this.keyRows = new ArrayList<Object[]>();
+    this.valueRows = new ArrayList<Object[]>();
+
+    // Keys are kept in normal storage so that keys read back from the database can be compared to them
+    //
+    this.keyRowMeta = new RowMeta();
+    for ( int i = 0; i < keyRowMeta.size(); i++ ) {
+      ValueMetaInterface keyMeta = keyRowMeta.getValueMeta( i ).clone();
+      keyMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      this.keyRowMeta.addValueMeta( keyMeta );
+    }
+
+    List<Integer> updateIndexList = new ArrayList<Integer>();
+    for ( int i = 0; i < update.length; i++ ) {
+      if ( update[i] ) {
+        updateIndexList.add( i );
+      }
+    }
+    updateIndexes = new int[updateIndexList.size()];
+    updateRowMeta = new RowMeta();
+    for ( int i = 0; i < updateIndexes.length; i++ ) {
+      updateIndexes[i] = updateIndexList.get( i );
+      updateRowMeta.addValueMeta( valueRowMeta.getValueMeta( updateIndexes[i] ) );
+    }
+
+    if ( allowUpsert && valueRowMeta.getFieldNames().length > 0 && containsKeyFields( valueRowMeta ) ) {
+      String sql =
+        databaseMeta.getSQLUpsert( schemaTable, quoteFields( keyFields ), quoteFields( valueRowMeta
+          .getFieldNames() ), quoteFields( getUpdateFields() ) );
+      if ( sql != null && isKeyUnique() ) {
+        upsertStatement = db.prepareSQL( sql );
+      }
+    }
+  }
+
+  /**
+   * The upsert statement relies on a unique index on the key fields: PostgreSQL refuses the statement without one and
+   * MySQL inserts duplicate keys or updates the row matching another unique index.
+   *
+   * @return true if a unique index covers exactly the key fields and, when the database matches rows on any unique
+   *         key, there is no other unique index.
+   */
+  private boolean isKeyUnique() throws KettleDatabaseException {
+    Set<String> keySet = new HashSet<String>();
+    for ( String keyField : keyFields ) {
+      keySet.add( keyField.toUpperCase() );
+    }
+
+    boolean keyIndex = false;
+    for ( Set<String> indexFields : getUniqueIndexes().values() ) {
+      if ( indexFields.equals( keySet ) ) {
+        keyIndex = true;
+      } else if ( databaseMeta.isUpsertMatchingAnyUniqueKey() ) {
+        return false;
+      }
+    }
+    return keyIndex;
+  }
+
+  /**
+   * @return the upper case field names of the unique indexes of the table, per index name. The table name is tried as
+   *         given, in upper case and in lower case since databases store unquoted names differently.
+   */
+  private Map<String, Set<String>> getUniqueIndexes() throws KettleDatabaseException {
+    Map<String, Set<String>> indexes = new HashMap<String, Set<String>>();
+    String schema = Utils.isEmpty( schemaName ) ? null : schemaName;
+    try {
+      DatabaseMetaData metaData = db.getDatabaseMetaData();
+      String[][] names = {
+        { schema, tableName },
+        { schema == null ? null : schema.toUpperCase(), tableName.toUpperCase() },
+        { schema == null ? null : schema.toLowerCase(), tableName.toLowerCase() } };
+      for ( int i = 0; i < names.length && indexes.isEmpty(); i++ ) {
+        ResultSet indexInfo = metaData.getIndexInfo( null, names[i][0], names[i][1], true, true );
+        try {
+          while ( indexInfo.next() ) {
+            String indexName = indexInfo.getString( "INDEX_NAME" );
+            String column = indexInfo.getString( "COLUMN_NAME" );
+            if ( indexName == null || column == null || indexInfo.getBoolean( "NON_UNIQUE" ) ) {
+              continue;
+            }
+            Set<String> fields = indexes.get( indexName );
+            if ( fields == null ) {
+              fields = new HashSet<String>();
+              indexes.put( indexName, fields );
+            }
+            fields.add( column.toUpperCase() );
+          }
+        } finally {
+          indexInfo.close();
+        }
+      }
+    } catch ( SQLException e ) {
+      throw new KettleDatabaseException( "Unable to read the unique indexes of table [" + schemaTable + "]", e );
+    }
+    return indexes;
+  }
+
+  /**
+   * @return true if the rows are written with the upsert statement of the database, false if they are looked up.
+   */
+  public boolean isUsingUpsertStatement() {
+    return upsertStatement != null;
+  }
+
+  /**
+   * Adds a row to the current batch.
+   *
+   * @param keyValues
+   *          the key values of the row
+   * @param values
+   *          the values to insert or update
+   * @throws KettleValueException
+   *           in case a key value can't be converted
+   */
+  public void addRow( Object[] keyValues, Object[] values ) throws KettleValueException {
+    Object[] keyRow = new Object[keyValues.length];
+    for ( int i = 0; i < keyValues.length; i++ ) {
+      keyRow[i] = sourceKeyRowMeta.getValueMeta( i ).convertToNormalStorageType( keyValues[i] );
+    }
+    keyRows.add( keyRow );
+    valueRows.add( values );
+  }
+
+  /**
+   * @return the number of rows in the current batch
+   */
+  public int size() {
+    return valueRows.size();
+  }
+
+  /**
+   * Writes the current batch to the database.
+   *
+   * @return what happened to the rows of the batch
+   * @throws KettleDatabaseException
+   *           in case of a database error, the batch is cleared anyway
+   */
+  public Counts flush() throws KettleDatabaseException {
+    Counts counts = new Counts();
+    if ( valueRows.isEmpty() ) {
+      return counts;
+    }
+    try {
+      if ( upsertStatement != null ) {
+        execute( upsertStatement, valueRowMeta, valueRows );
+        counts.upserted = valueRows.size();
+      } else {
+        writeWithLookups( counts );
+      }
+    } catch ( KettleValueException e ) {
+      throw new KettleDatabaseException( "Unable to compare the rows of the batch with the table", e );
+    } finally {
+      keyRows.clear();
+      valueRows.clear();
+    }
+    return counts;
+  }
+
+  /**
+   * Closes the prepared statements, rows that were not flushed are lost.
+   */
+  public void close() throws KettleDatabaseException {
+    keyRows.clear();
+    valueRows.clear();
+    try {
+      for ( PreparedStatement ps : new PreparedStatement[] { upsertStatement, insertStatement, updateStatement } ) {
+        if ( ps != null ) {
+          ps.close();
+        }
+      }
+    } catch ( SQLException e ) {
+      throw new KettleDatabaseException( "Unable to close the upsert statements", e );
+    } finally {
+      upsertStatement = null;
+      insertStatement = null;
+      updateStatement = null;
+    }
+  }
+
+  private void writeWithLookups( Counts counts ) throws KettleDatabaseException, KettleValueException {
+    // Rows with the same key are merged the way they would end up one row at a time: the first row is inserted, the
+    // next ones only change the fields to update.
+    //
+    Map<Key, Object[]> mergedRows = new LinkedHashMap<Key, Object[]>();
+    for ( int i = 0; i < keyRows.size(); i++ ) {
+      Key key = new Key( keyRows.get( i ) );
+      Object[] values = valueRows.get( i );
+      Object[] merged = mergedRows.get( key );
+      if ( merged == null ) {
+        mergedRows.put( key, values.clone() );
+      } else {
+        if ( isChanged( updateRowMeta, getUpdateValues( merged ), values ) ) {
+          counts.updated++;
+        } else {
+          counts.unchanged++;
+        }
+        for ( int updateIndex : updateIndexes ) {
+          merged[updateIndex] = values[updateIndex];
+        }
+      }
+    }
+
+    Map<Key, Object[]> existingRows = lookup( new ArrayList<Key>( mergedRows.keySet() ) );
+    counts.lookups += mergedRows.size();
+
+    List<Object[]> inserts = new ArrayList<Object[]>();
+    List<Object[]> updates = new ArrayList<Object[]>();
+    for ( Map.Entry<Key, Object[]> entry : mergedRows.entrySet() ) {
+      Object[] values = entry.getValue();
+      Object[] existing = existingRows.get( entry.getKey() );
+      if ( existing == null ) {
+        inserts.add( values );
+      } else if ( isChanged( existingRowMeta, existing, values ) ) {
+        Object[] updateRow = new Object[updateIndexes.length + keyFields.length];
+        System.arraycopy( getUpdateValues( values ), 0, updateRow, 0, updateIndexes.length );
+        System.arraycopy( entry.getKey().values, 0, updateRow, updateIndexes.length, keyFields.length );
+        updates.add( updateRow );
+      } else {
+        counts.unchanged++;
+      }
+    }
+
+    if ( !inserts.isEmpty() ) {
+      if ( insertStatement == null ) {
+        insertStatement = db.prepareSQL( db.getInsertStatement( schemaName, tableName, valueRowMeta ) );
+      }
+      execute( insertStatement, valueRowMeta, inserts );
+      counts.inserted += inserts.size();
+    }
+    if ( !updates.isEmpty() ) {
+      if ( updateStatement == null ) {
+        prepareUpdate();
+      }
+      execute( updateStatement, updateParameterRowMeta, updates );
+      counts.updated += updates.size();
+    }
+  }
+
+  /**
+   * Reads the fields to update of the existing rows with the given keys, the metadata ends up in existingRowMeta.
+   */
+  private Map<Key, Object[]> lookup( List<Key> keys ) throws KettleDatabaseException, KettleValueException {
+    Map<Key, Object[]> existingRows = new LinkedHashMap<Key, Object[]>();
+    int chunkSize = Math.max( 1, MAX_LOOKUP_PARAMETERS / keyFields.length );
+    String[] updateFields = getUpdateFields();
+
+    for ( int start = 0; start < keys.size(); start += chunkSize ) {
+      List<Key> chunk = keys.subList( start, Math.min( keys.size(), start + chunkSize ) );
+
+      StringBuilder sql = new StringBuilder( "SELECT " );
+      for ( int i = 0; i < keyFields.length; i++ ) {
+        sql.append( i == 0 ? "" : ", " ).append( databaseMeta.quoteField( keyFields[i] ) );
+      }
+      for ( String updateField : updateFields ) {
+        sql.append( ", " ).append( databaseMeta.quoteField( updateField ) );
+      }
+      sql.append( " FROM " ).append( schemaTable ).append( " WHERE " );
+
+      RowMetaInterface parameterRowMeta = new RowMeta();
+      Object[] parameters = new Object[chunk.size() * keyFields.length];
+      for ( int k = 0; k < chunk.size(); k++ ) {
+        sql.append( k == 0 ? "( " : " OR ( " );
+        for ( int i = 0; i < keyFields.length; i++ ) {
+          sql.append( i == 0 ? "" : " AND " ).append( databaseMeta.quoteField( keyFields[i] ) ).append( " = ?" );
+          parameterRowMeta.addValueMeta( keyRowMeta.getValueMeta( i ).clone() );
+          parameters[k * keyFields.length + i] = chunk.get( k ).values[i];
+        }
+        sql.append( " )" );
+      }
+
+      ResultSet resultSet = db.openQuery( sql.toString(), parameterRowMeta, parameters );
+      try {
+        RowMetaInterface resultRowMeta = db.getReturnRowMeta();
+        existingRowMeta = new RowMeta();
+        for ( int i = keyFields.length; i < resultRowMeta.size(); i++ ) {
+          existingRowMeta.addValueMeta( resultRowMeta.getValueMeta( i ) );
+        }
+        Object[] row = db.getRow( resultSet );
+        while ( row != null ) {
+          Object[] keyValues = new Object[keyFields.length];
+          for ( int i = 0; i < keyFields.length; i++ ) {
+            keyValues[i] = keyRowMeta.getValueMeta( i ).convertData( resultRowMeta.getValueMeta( i ), row[i] );
+          }
+          Object[] existing = new Object[updateIndexes.length];
+          System.arraycopy( row, keyFields.length, existing, 0, updateIndexes.length );
+          existingRows.put( new Key( keyValues ), existing );
+          row = db.getRow( resultSet );
+        }
+      } finally {
+        db.closeQuery( resultSet );
+      }
+    }
+    return existingRows;
+  }
+
+  /**
+   * @return true if any of the values to update differs from the existing values to update.
+   */
+  private boolean isChanged( RowMetaInterface existingRowMeta, Object[] existing, Object[] values )
+    throws KettleValueException {
+    for ( int i = 0; i < updateIndexes.length; i++ ) {
+      ValueMetaInterface valueMeta = valueRowMeta.getValueMeta( updateIndexes[i] );
+      if ( existingRowMeta.getValueMeta( i ).compare( existing[i], valueMeta, values[updateIndexes[i]] ) != 0 ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Object[] getUpdateValues( Object[] values ) {
+    Object[] updateValues = new Object[updateIndexes.length];
+    for ( int i = 0; i < updateIndexes.length; i++ ) {
+      updateValues[i] = values[updateIndexes[i]];
+    }
+    return updateValues;
+  }
+
+  private void prepareUpdate() throws KettleDatabaseException {
+    updateParameterRowMeta = new RowMeta();
+    StringBuilder sql = new StringBuilder( "UPDATE " ).append( schemaTable ).append( " SET " );
+    for ( int i = 0; i < updateIndexes.length; i++ ) {
+      ValueMetaInterface valueMeta = valueRowMeta.getValueMeta( updateIndexes[i] );
+      sql.append( i == 0 ? "" : ", " ).append( databaseMeta.quoteField( valueMeta.getName() ) ).append( " = ?" );
+      updateParameterRowMeta.addValueMeta( valueMeta.clone() );
+    }
+    sql.append( " WHERE " );
+    for ( int i = 0; i < keyFields.length; i++ ) {
+      sql.append( i == 0 ? "" : " AND " ).append( databaseMeta.quoteField( keyFields[i] ) ).append( " = ?" );
+      updateParameterRowMeta.addValueMeta( keyRowMeta.getValueMeta( i ).clone() );
+    }
+    updateStatement = db.prepareSQL( sql.toString() );
+  }
+
+  private void execute( PreparedStatement ps, RowMetaInterface rowMeta, List<Object[]> rows )
+    throws KettleDatabaseException {
+    try {
+      for ( Object[] row : rows ) {
+        db.setValues( rowMeta, row, ps );
+        if ( useBatch ) {
+          ps.addBatch();
+        } else {
+          ps.executeUpdate();
+        }
+      }
+      if ( useBatch ) {
+        ps.executeBatch();
+        ps.clearBatch();
+      }
+    } catch ( BatchUpdateException e ) {
+      throw Database.createKettleDatabaseBatchException( "Error updating batch", e );
+    } catch ( SQLException e ) {
+      throw new KettleDatabaseException( "Error writing a batch of rows to " + schemaTable, e );
+    }
+  }
+
+  private boolean containsKeyFields( RowMetaInterface rowMeta ) {
+    for ( String keyField : keyFields ) {
+      if ( rowMeta.indexOfValue( keyField ) < 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String[] getUpdateFields() {
+    String[] updateFields = new String[updateIndexes.length];
+    for ( int i = 0; i < updateIndexes.length; i++ ) {
+      updateFields[i] = valueRowMeta.getValueMeta( updateIndexes[i] ).getName();
+    }
+    return updateFields;
+  }
+
+  private String[] quoteFields( String[] fields ) {
+    String[] quoted = new String[fields.length];
+    for ( int i = 0; i < fields.length; i++ ) {
+      quoted[i] = databaseMeta.quoteField( fields[i] );
+    }
+    return quoted;
+  }
+
+  /**
+   * The key values of a row, compared with the key metadata.
+   */
+  private final class Key {
+    private final Object[] values;
+    private final int hashCode;
+
+    Key( Object[] values ) {
+      this.values = values;
+      Object[] hashValues = values.clone();
+      for ( int i = 0; i < hashValues.length; i++ ) {
+        if ( hashValues[i] instanceof BigDecimal ) {
+          // 1.0 and 1.00 are the same key
+          BigDecimal number = (BigDecimal) hashValues[i];
+          hashValues[i] = number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+        }
+      }
+      this.hashCode = Arrays.deepHashCode( hashValues );
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( !( obj instanceof Key ) ) {
+        return false;
+      }
+      try {
+        return keyRowMeta.compare( values, ( (Key) obj ).values ) == 0;
+      } catch ( KettleValueException e ) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.database;
+
+/**
+ * A snapshot of the usage of one of the connection pools created by {@link ConnectionPoolUtil}.
+ */
+public class ConnectionPoolStatistics {
+
+  private final String poolName;
+  private final int numActive;
+  private final int numIdle;
+  private final int maxActive;
+  private final long checkouts;
+  private final long totalWaitTime;
+  private final long maxWaitTime;
+  private final long longestCheckoutTime;
+  private final int leakedConnections;
+
+  public ConnectionPoolStatistics( String poolName, int numActive, int numIdle, int maxActive, long checkouts,
+    long totalWaitTime, long maxWaitTime, long longestCheckoutTime, int leakedConnections ) {
+    this.poolName = poolName;
+    this.numActive = numActive;
+    this.numIdle = numIdle;
+    this.maxActive = maxActive;
+    this.checkouts = checkouts;
+    this.totalWaitTime = totalWaitTime;
+    this.maxWaitTime = maxWaitTime;
+    this.longestCheckoutTime = longestCheckoutTime;
+    this.leakedConnections = leakedConnections;
+  }
+
+  public String getPoolName() {
+    return poolName;
+  }
+
+  /**
+   * @return the number of connections currently handed out by the pool
+   */
+  public int getNumActive() {
+    return numActive;
+  }
+
+  /**
+   * @return the number of open connections waiting in the pool
+   */
+  public int getNumIdle() {
+    return numIdle;
+  }
+
+  public int getMaxActive() {
+    return maxActive;
+  }
+
+  /**
+   * @return the number of connections handed out since the pool was created
+   */
+  public long getCheckouts() {
+    return checkouts;
+  }
+
+  /**
+   * @return the time in ms spent waiting for a connection of the pool, summed over all the checkouts
+   */
+  public long getTotalWaitTime() {
+    return totalWaitTime;
+  }
+
+  public long getAverageWaitTime() {
+    return checkouts == 0 ? 0 : totalWaitTime / checkouts;
+  }
+
+  /**
+   * @return the longest time in ms a single checkout waited for a connection
+   */
+  public long getMaxWaitTime() {
+    return maxWaitTime;
+  }
+
+  /**
+   * @return the time in ms the oldest connection still handed out has been in use, only tracked when a connection
+   *         limit per database or a leak threshold is set
+   */
+  public long getLongestCheckoutTime() {
+    return longestCheckoutTime;
+  }
+
+  /**
+   * @return the number of connections handed out longer than the leak threshold and not returned yet
+   */
+  public int getLeakedConnections() {
+    return leakedConnections;
+  }
+
+  @Override
+  public String toString() {
+    return poolName + " [active=" + numActive + ", idle=" + numIdle + ", maxActive=" + maxActive + ", checkouts="
+      + checkouts + ", avgWait=" + getAverageWaitTime() + "ms, maxWait=" + maxWaitTime + "ms, longestCheckout="
+      + longestCheckoutTime + "ms, leaked=" + leakedConnections + "]";
+  }
+}
@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -34,11 +34,24 @@ import org.pentaho.di.i18n.BaseMessages;
 
 import javax.sql.DataSource;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class ConnectionPoolUtil {
@@ -67,6 +80,12 @@ public class ConnectionPoolUtil {
 
   private static ConcurrentMap<String, BasicDataSource> dataSources = new ConcurrentHashMap<String, BasicDataSource>();
 
+  // the usage of every pool, by pool name
+  private static ConcurrentMap<String, PoolUsage> poolUsages = new ConcurrentHashMap<String, PoolUsage>();
+
+  // the connections that can be handed out per database URL, over all the pools, in the order they were asked for
+  private static ConcurrentMap<String, Semaphore> databasePermits = new ConcurrentHashMap<String, Semaphore>();
+
   // PDI-12947
   private static final ReentrantLock lock = new ReentrantLock();
 
@@ -99,8 +118,123 @@ public class ConnectionPoolUtil {
     } finally {
       lock.unlock();
     }
-    BasicDataSource ds = dataSources.get( getDataSourceName( dbMeta, partitionId ) );
-    return ds.getConnection();
+    String name = getDataSourceName( dbMeta, partitionId );
+    BasicDataSource ds = dataSources.get( name );
+    PoolUsage usage = getPoolUsage( name );
+    Semaphore permits = getDatabasePermits( ds.getUrl() );
+    long leakThreshold = Const.toLong( System.getProperty( Const.KETTLE_CONNECTION_POOL_LEAK_THRESHOLD ), 0L );
+
+    long start = System.nanoTime();
+    if ( permits != null ) {
+      acquire( permits, ds, name );
+    }
+    Connection connection;
+    try {
+      connection = ds.getConnection();
+    } catch ( Exception e ) {
+      if ( permits != null ) {
+        permits.release();
+      }
+      throw e;
+    }
+    usage.checkedOut( System.nanoTime() - start );
+
+    if ( leakThreshold > 0 ) {
+      usage.reportLeaks( log, name, leakThreshold );
+    }
+    if ( permits == null && leakThreshold <= 0 ) {
+      // nothing to do on close, hand out the pooled connection itself
+      return connection;
+    }
+    return usage.track( connection, permits );
+  }
+
+  /**
+   * Creates the connection pool of a database ahead of its first use, so that the connections are opened once instead
+   * of by every user that asks for one while the pool is being filled. Nothing happens when the pool exists already or
+   * when pooled connections come from another data source provider.
+   *
+   * @param connections
+   *          the number of connections the pool opens, at least its initial size and at most its maximum size
+   * @return true if the pool was created
+   */
+  public static boolean warmUp( LogChannelInterface log, DatabaseMeta dbMeta, String partitionId, int connections )
+    throws KettleDatabaseException {
+    DataSourceProviderInterface dsp = DataSourceProviderFactory.getDataSourceProviderInterface();
+    if ( dsp != null && !( dsp instanceof DatabaseUtil ) ) {
+      return false;
+    }
+    lock.lock();
+    try {
+      if ( isDataSourceRegistered( dbMeta, partitionId ) ) {
+        return false;
+      }
+      int maximumSize = dbMeta.getMaximumPoolSize();
+      int initialSize = Math.min( Math.max( dbMeta.getInitialPoolSize(), connections ), maximumSize );
+      addPoolableDataSource( log, dbMeta, partitionId, initialSize, maximumSize );
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return a snapshot of the usage of all the connection pools of this JVM
+   */
+  public static List<ConnectionPoolStatistics> getStatistics() {
+    long leakThreshold = Const.toLong( System.getProperty( Const.KETTLE_CONNECTION_POOL_LEAK_THRESHOLD ), 0L );
+    List<ConnectionPoolStatistics> statistics = new ArrayList<ConnectionPoolStatistics>();
+    for ( Map.Entry<String, BasicDataSource> entry : dataSources.entrySet() ) {
+      statistics.add( getPoolUsage( entry.getKey() ).getStatistics( entry.getKey(), entry.getValue(), leakThreshold ) );
+    }
+    return statistics;
+  }
+
+  private static PoolUsage getPoolUsage( String name ) {
+    PoolUsage usage = poolUsages.get( name );
+    if ( usage == null ) {
+      PoolUsage newUsage = new PoolUsage();
+      usage = poolUsages.putIfAbsent( name, newUsage );
+      if ( usage == null ) {
+        usage = newUsage;
+      }
+    }
+    return usage;
+  }
+
+  /**
+   * @return the permits shared by all the pools connecting to the URL, null if the number of connections per database
+   *         isn't limited
+   */
+  private static Semaphore getDatabasePermits( String url ) {
+    int maxPerDatabase = Const.toInt( System.getProperty( Const.KETTLE_CONNECTION_POOL_MAX_PER_DATABASE ), 0 );
+    if ( maxPerDatabase <= 0 || url == null ) {
+      return null;
+    }
+    Semaphore permits = databasePermits.get( url );
+    if ( permits == null ) {
+      // fair, so transformations get their connections in the order they asked for them
+      Semaphore newPermits = new Semaphore( maxPerDatabase, true );
+      permits = databasePermits.putIfAbsent( url, newPermits );
+      if ( permits == null ) {
+        permits = newPermits;
+      }
+    }
+    return permits;
+  }
+
+  /**
+   * Waits for a free connection of the database, at most as long as the pool itself would wait.
+   */
+  private static void acquire( Semaphore permits, BasicDataSource ds, String name )
+    throws SQLException, InterruptedException {
+    long maxWait = ds.getMaxWait();
+    if ( maxWait < 0 ) {
+      permits.acquire();
+    } else if ( !permits.tryAcquire( maxWait, TimeUnit.MILLISECONDS ) ) {
+      throw new SQLException( BaseMessages.getString( PKG, "Database.ConnectionPool.TimeoutWaitingForConnection",
+        name, String.valueOf( maxWait ) ) );
+    }
   }
 
   // BACKLOG-674
@@ -309,6 +443,101 @@ public class ConnectionPoolUtil {
     }
   }
 
+  /**
+   * Keeps the checkout counters of a pool and the connections it handed out that need to be followed up on close.
+   */
+  private static class PoolUsage {
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    void checkedOut( long waitNanos ) {
+      checkouts.incrementAndGet();
+      totalWaitNanos.addAndGet( waitNanos );
+      long max = maxWaitNanos.get();
+      while ( waitNanos > max && !maxWaitNanos.compareAndSet( max, waitNanos ) ) {
+        max = maxWaitNanos.get();
+      }
+    }
+
+    Connection track( Connection connection, Semaphore permits ) {
+      Lease lease = new Lease( connection, permits );
+      leases.add( lease );
+      return (Connection) Proxy.newProxyInstance( ConnectionPoolUtil.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, lease );
+    }
+
+    void reportLeaks( LogChannelInterface log, String name, long leakThreshold ) {
+      long now = System.currentTimeMillis();
+      for ( Lease lease : leases ) {
+        long time = now - lease.checkoutTime;
+        if ( time > leakThreshold && !lease.reported ) {
+          lease.reported = true;
+          log.logError( BaseMessages.getString( PKG, "Database.ConnectionPool.ConnectionNotReturned", name,
+            lease.threadName, String.valueOf( time ) ) );
+        }
+      }
+    }
+
+    ConnectionPoolStatistics getStatistics( String name, BasicDataSource ds, long leakThreshold ) {
+      long now = System.currentTimeMillis();
+      long longestCheckout = 0;
+      int leaked = 0;
+      for ( Lease lease : leases ) {
+        long time = now - lease.checkoutTime;
+        longestCheckout = Math.max( longestCheckout, time );
+        if ( leakThreshold > 0 && time > leakThreshold ) {
+          leaked++;
+        }
+      }
+      return new ConnectionPoolStatistics( name, ds.getNumActive(), ds.getNumIdle(), ds.getMaxActive(),
+        checkouts.get(), TimeUnit.NANOSECONDS.toMillis( totalWaitNanos.get() ),
+        TimeUnit.NANOSECONDS.toMillis( maxWaitNanos.get() ), longestCheckout, leaked );
+    }
+
+    /**
+     * A connection handed out by the pool. Returns the database permit and stops tracking the connection the first
+     * time it is closed, all other calls go to the pooled connection.
+     */
+    private class Lease implements InvocationHandler {
+      private final Connection connection;
+      private final Semaphore permits;
+      private final long checkoutTime = System.currentTimeMillis();
+      private final String threadName = Thread.currentThread().getName();
+      private final AtomicBoolean returned = new AtomicBoolean();
+      private volatile boolean reported;
+
+      Lease( Connection connection, Semaphore permits ) {
+        this.connection = connection;
+        this.permits = permits;
+      }
+
+      @Override
+      public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+        String methodName = method.getName();
+        if ( "equals".equals( methodName ) && args != null && args.length == 1 ) {
+          return proxy == args[0];
+        }
+        if ( "hashCode".equals( methodName ) && args == null ) {
+          return System.identityHashCode( proxy );
+        }
+        try {
+          return method.invoke( connection, args );
+        } catch ( InvocationTargetException e ) {
+          throw e.getCause();
+        } finally {
+          if ( "close".equals( methodName ) && args == null && returned.compareAndSet( false, true ) ) {
+            leases.remove( this );
+            if ( permits != null ) {
+              permits.release();
+            }
+          }
+        }
+      }
+    }
+  }
+
   protected static String buildPoolName( DatabaseMeta dbMeta, String partitionId ) {
     return dbMeta.getName() + Const.NVL( dbMeta.getDatabaseName(), "" )
         + Const.NVL( dbMeta.getHostname(),  ""  ) + Const.NVL( dbMeta.getDatabasePortNumberString(),  ""  )
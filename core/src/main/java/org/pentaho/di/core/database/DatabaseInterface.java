@@ -1186,4 +1186,32 @@ public interface DatabaseInterface extends Cloneable {
     return new SqlScriptParser( true );
   }
 
+  /**
+   * Get the SQL to insert a row or, when a row with the same key values exists, update it in one statement. All the
+   * field names are already quoted and all the key fields are part of the insert fields. Every insert field is bound
+   * to a parameter, in the order of the insert fields.
+   *
+   * @param schemaTable
+   *          the schema-table name to write to
+   * @param keyFields
+   *          the fields that identify a row, there has to be a unique constraint on them
+   * @param insertFields
+   *          the fields to insert
+   * @param updateFields
+   *          the fields to update when the row exists, can be empty to leave existing rows alone
+   * @return the upsert SQL or null if the database can't do this in one statement.
+   */
+  default String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    return null;
+  }
+
+  /**
+   * @return true if the upsert statement matches an existing row on any unique key of the table rather than on the
+   *         given key fields only. The upsert can then only be used when the key fields are the only unique key.
+   */
+  default boolean isUpsertMatchingAnyUniqueKey() {
+    return false;
+  }
+
 }
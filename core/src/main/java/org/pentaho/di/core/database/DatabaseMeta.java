@@ -2915,6 +2915,31 @@ public class DatabaseMeta extends SharedObjectBase implements Cloneable, XMLInte
     return databaseInterface.getSQLInsertAutoIncUnknownDimensionRow( schemaTable, keyField, versionField );
   }
 
+  /**
+   * Get the SQL to insert a row or update the row with the same key values in one statement.
+   *
+   * @param schemaTable
+   *          the schema-table name to write to
+   * @param keyFields
+   *          the quoted fields that identify a row
+   * @param insertFields
+   *          the quoted fields to insert, including the key fields
+   * @param updateFields
+   *          the quoted fields to update when the row exists
+   * @return the upsert SQL or null if the database can't do this in one statement.
+   */
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields, String[] updateFields ) {
+    return databaseInterface.getSQLUpsert( schemaTable, keyFields, insertFields, updateFields );
+  }
+
+  /**
+   * @return true if the upsert statement matches an existing row on any unique key of the table, not only on the key
+   *         fields.
+   */
+  public boolean isUpsertMatchingAnyUniqueKey() {
+    return databaseInterface.isUpsertMatchingAnyUniqueKey();
+  }
+
   /**
    * @return true if this is a relational database you can explore. Return false for SAP, PALO, etc.
    */
@@ -46,4 +46,13 @@ public class GreenplumDatabaseMeta extends PostgreSQLDatabaseMeta implements Dat
   public boolean supportsErrorHandlingOnBatchUpdates() {
     return false;
   }
+
+  /**
+   * Greenplum is based on a PostgreSQL version without INSERT ... ON CONFLICT.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    return null;
+  }
 }
@@ -22,6 +22,10 @@
 
 package org.pentaho.di.core.database;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -285,4 +289,25 @@ public class H2DatabaseMeta extends BaseDatabaseMeta implements DatabaseInterfac
     return false;
   }
 
+  /**
+   * Uses MERGE INTO ... KEY. It sets all the inserted fields on an existing row so it is only used when all the fields
+   * that aren't part of the key are updated.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    List<String> fields = new ArrayList<String>( Arrays.asList( insertFields ) );
+    fields.removeAll( Arrays.asList( keyFields ) );
+    if ( !Arrays.asList( updateFields ).containsAll( fields ) ) {
+      return null;
+    }
+    StringBuilder sql = new StringBuilder( "MERGE INTO " ).append( schemaTable ).append( " (" );
+    sql.append( String.join( ", ", insertFields ) ).append( ") KEY (" ).append( String.join( ", ", keyFields ) );
+    sql.append( ") VALUES (" );
+    for ( int i = 0; i < insertFields.length; i++ ) {
+      sql.append( i == 0 ? "?" : ", ?" );
+    }
+    return sql.append( ")" ).toString();
+  }
+
 }
@@ -26,4 +26,13 @@ public class InfiniDbDatabaseMeta extends MySQLDatabaseMeta implements DatabaseI
 
   // Only has a different ID to catch exceptions here and there.
 
+
+  /**
+   * InfiniDB doesn't enforce unique constraints, there is no upsert.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    return null;
+  }
 }
@@ -37,4 +37,13 @@ public class InfobrightDatabaseMeta extends MySQLDatabaseMeta implements Databas
     addExtraOption( getPluginId(), "characterEncoding", "UTF-8" );
   }
 
+
+  /**
+   * Infobright doesn't enforce unique constraints, there is no upsert.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    return null;
+  }
 }
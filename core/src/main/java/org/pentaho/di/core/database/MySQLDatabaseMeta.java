@@ -465,4 +465,38 @@ public class MySQLDatabaseMeta extends BaseDatabaseMeta implements DatabaseInter
     addExtraOption( getPluginId(), "defaultFetchSize", "500" );
     addExtraOption( getPluginId(), "useCursorFetch", "true" );
   }
+
+  /**
+   * Uses INSERT ... ON DUPLICATE KEY UPDATE. Without fields to update the first key field is set to itself, unlike
+   * INSERT IGNORE that keeps other errors quiet.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    StringBuilder sql = new StringBuilder( "INSERT INTO " ).append( schemaTable ).append( " (" );
+    sql.append( String.join( ", ", insertFields ) ).append( ") VALUES (" );
+    for ( int i = 0; i < insertFields.length; i++ ) {
+      sql.append( i == 0 ? "?" : ", ?" );
+    }
+    sql.append( ") ON DUPLICATE KEY UPDATE " );
+    if ( updateFields.length == 0 ) {
+      sql.append( keyFields[0] ).append( " = " ).append( keyFields[0] );
+    } else {
+      for ( int i = 0; i < updateFields.length; i++ ) {
+        if ( i > 0 ) {
+          sql.append( ", " );
+        }
+        sql.append( updateFields[i] ).append( " = VALUES(" ).append( updateFields[i] ).append( ")" );
+      }
+    }
+    return sql.toString();
+  }
+
+  /**
+   * ON DUPLICATE KEY UPDATE fires on a duplicate value for any unique index, the primary key included.
+   */
+  @Override
+  public boolean isUpsertMatchingAnyUniqueKey() {
+    return true;
+  }
 }
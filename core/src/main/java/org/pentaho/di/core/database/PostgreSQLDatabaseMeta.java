@@ -557,4 +557,30 @@ public class PostgreSQLDatabaseMeta extends BaseDatabaseMeta implements Database
   public boolean useSafePoints() {
     return true;
   }
+
+  /**
+   * Uses INSERT ... ON CONFLICT, available since PostgreSQL 9.5.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    StringBuilder sql = new StringBuilder( "INSERT INTO " ).append( schemaTable ).append( " (" );
+    sql.append( String.join( ", ", insertFields ) ).append( ") VALUES (" );
+    for ( int i = 0; i < insertFields.length; i++ ) {
+      sql.append( i == 0 ? "?" : ", ?" );
+    }
+    sql.append( ") ON CONFLICT (" ).append( String.join( ", ", keyFields ) ).append( ")" );
+    if ( updateFields.length == 0 ) {
+      sql.append( " DO NOTHING" );
+    } else {
+      sql.append( " DO UPDATE SET " );
+      for ( int i = 0; i < updateFields.length; i++ ) {
+        if ( i > 0 ) {
+          sql.append( ", " );
+        }
+        sql.append( updateFields[i] ).append( " = EXCLUDED." ).append( updateFields[i] );
+      }
+    }
+    return sql.toString();
+  }
 }
@@ -90,4 +90,13 @@ public class RedshiftDatabaseMeta extends PostgreSQLDatabaseMeta {
   public String[] getUsedLibraries() {
     return new String[] { "RedshiftJDBC4_1.0.10.1010.jar" };
   }
+
+  /**
+   * Redshift doesn't enforce unique constraints, there is no upsert.
+   */
+  @Override
+  public String getSQLUpsert( String schemaTable, String[] keyFields, String[] insertFields,
+    String[] updateFields ) {
+    return null;
+  }
 }
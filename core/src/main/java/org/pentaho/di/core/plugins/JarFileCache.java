@@ -22,12 +22,25 @@
 
 package org.pentaho.di.core.plugins;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.logging.LogChannel;
 import org.scannotation.AnnotationDB;
 
 public class JarFileCache {
@@ -38,12 +51,18 @@ public class JarFileCache {
 
   private final Map<FileObject, AnnotationDB> annotationMap;
 
+  private final Map<FileObject, Map<String, Set<String>>> annotationIndexMap;
+
+  private PluginJarIndex jarIndex;
+  private boolean jarIndexLoaded;
+
   private JarFileCache() {
-    annotationMap = new HashMap<>();
-    folderMap = new HashMap<>();
+    annotationMap = new ConcurrentHashMap<>();
+    folderMap = new ConcurrentHashMap<>();
+    annotationIndexMap = new ConcurrentHashMap<>();
   }
 
-  public static JarFileCache getInstance() {
+  public static synchronized JarFileCache getInstance() {
     if ( cache == null ) {
       cache = new JarFileCache();
     }
@@ -60,6 +79,37 @@ public class JarFileCache {
     return result;
   }
 
+  /**
+   * Gets the annotations of the classes in a jar file: annotation class name to the names of the annotated classes.
+   * The persistent plugin index is used when it knows the jar, otherwise the jar is scanned and added to the index.
+   */
+  public Map<String, Set<String>> getAnnotationIndex( FileObject fileObject ) throws IOException {
+    Map<String, Set<String>> result = annotationIndexMap.get( fileObject );
+    if ( result == null ) {
+      PluginJarIndex index = getJarIndex();
+      String jarUrl = fileObject.getURL().toString();
+      long size = 0L;
+      long lastModified = 0L;
+      if ( index != null ) {
+        FileContent content = fileObject.getContent();
+        size = content.getSize();
+        lastModified = content.getLastModifiedTime();
+        result = index.get( jarUrl, size, lastModified );
+      }
+      if ( result == null ) {
+        // Only keep the index, not the complete class information
+        AnnotationDB annotationDB = new AnnotationDB();
+        annotationDB.scanArchives( fileObject.getURL() );
+        result = annotationDB.getAnnotationIndex();
+        if ( index != null ) {
+          index.put( jarUrl, size, lastModified, result );
+        }
+      }
+      annotationIndexMap.put( fileObject, result );
+    }
+    return result;
+  }
+
   public FileObject[] getFileObjects( PluginFolderInterface pluginFolderInterface ) throws KettleFileException {
     FileObject[] result = folderMap.get( pluginFolderInterface );
     if ( result == null ) {
@@ -69,8 +119,99 @@ public class JarFileCache {
     return result;
   }
 
+  /**
+   * Finds and indexes the jar files in the annotation folders of the plugin types in parallel, so that registering the
+   * plugin types one by one afterwards only hits the cache.
+   */
+  public void scan( List<PluginTypeInterface> pluginTypes ) {
+    Set<PluginFolderInterface> folders = new LinkedHashSet<>();
+    for ( PluginTypeInterface pluginType : pluginTypes ) {
+      for ( PluginFolderInterface pluginFolder : pluginType.getPluginFolders() ) {
+        if ( pluginFolder.isPluginAnnotationsFolder() ) {
+          folders.add( pluginFolder );
+        }
+      }
+    }
+    if ( folders.isEmpty() ) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(),
+      new ThreadFactory() {
+        private final AtomicInteger threadNr = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+          Thread thread = new Thread( runnable, "Kettle plugin scan " + threadNr.incrementAndGet() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    try {
+      List<Future<FileObject[]>> folderScans = new ArrayList<>();
+      for ( final PluginFolderInterface pluginFolder : folders ) {
+        folderScans.add( executor.submit( () -> getFileObjects( pluginFolder ) ) );
+      }
+
+      Set<FileObject> jarFiles = new LinkedHashSet<>();
+      for ( Future<FileObject[]> folderScan : folderScans ) {
+        FileObject[] fileObjects = waitFor( folderScan );
+        if ( fileObjects != null ) {
+          for ( FileObject fileObject : fileObjects ) {
+            jarFiles.add( fileObject );
+          }
+        }
+      }
+
+      List<Future<Map<String, Set<String>>>> jarScans = new ArrayList<>();
+      for ( final FileObject jarFile : jarFiles ) {
+        jarScans.add( executor.submit( () -> getAnnotationIndex( jarFile ) ) );
+      }
+      for ( Future<Map<String, Set<String>>> jarScan : jarScans ) {
+        waitFor( jarScan );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static <T> T waitFor( Future<T> future ) {
+    try {
+      return future.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } catch ( Exception e ) {
+      // Scanning is retried when the plugin type registers, which reports the error
+      LogChannel.GENERAL.logDetailed( "Unable to scan plugin jar files: " + e.getMessage() );
+    }
+    return null;
+  }
+
+  /**
+   * @return the persistent plugin index or null if it is switched off with KETTLE_PLUGIN_INDEX=N
+   */
+  public synchronized PluginJarIndex getJarIndex() {
+    if ( !jarIndexLoaded ) {
+      jarIndexLoaded = true;
+      if ( !"N".equalsIgnoreCase( System.getProperty( Const.KETTLE_PLUGIN_INDEX ) ) ) {
+        jarIndex = new PluginJarIndex( new File( Const.getKettleDirectory(), "plugin-index.ser" ) );
+      }
+    }
+    return jarIndex;
+  }
+
+  /**
+   * Writes the jar files scanned since the start to the persistent plugin index.
+   */
+  public synchronized void saveIndex() {
+    if ( jarIndex != null ) {
+      jarIndex.save();
+    }
+  }
+
   public void clear() {
     annotationMap.clear();
     folderMap.clear();
+    annotationIndexMap.clear();
   }
 }
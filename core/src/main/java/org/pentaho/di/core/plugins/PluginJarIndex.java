@@ -0,0 +1,183 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.pentaho.di.core.logging.LogChannel;
+
+/**
+ * Persistent index of the plugin annotations found in jar files. An entry is keyed by the URL of the jar file and only
+ * used while the size and the modification time of the jar are unchanged, so a new or updated plugin is scanned again.
+ * With the index a JVM doesn't have to scan the classes of every plugin jar on start-up, which is most of the time
+ * spent in PluginRegistry.init() for short running Pan and Kitchen jobs.
+ *
+ * Problems reading or writing the index file are logged and ignored: the jars are simply scanned.
+ */
+public class PluginJarIndex {
+
+  private static final int VERSION = 1;
+
+  static class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long size;
+    private final long lastModified;
+    private final HashMap<String, HashSet<String>> annotationIndex;
+
+    Entry( long size, long lastModified, Map<String, Set<String>> annotationIndex ) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.annotationIndex = new HashMap<String, HashSet<String>>();
+      for ( Map.Entry<String, Set<String>> entry : annotationIndex.entrySet() ) {
+        this.annotationIndex.put( entry.getKey(), new HashSet<String>( entry.getValue() ) );
+      }
+    }
+  }
+
+  private final File file;
+  private final Map<String, Entry> entries;
+  private final Set<String> usedJars;
+  private volatile boolean dirty;
+
+  public PluginJarIndex( File file ) {
+    this.file = file;
+    this.entries = new ConcurrentHashMap<String, Entry>( read( file ) );
+    this.usedJars = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * @return the annotation index of the jar file (annotation class name to annotated class names) or null if the jar
+   *         is not in the index or changed since it was indexed
+   */
+  @SuppressWarnings( "unchecked" )
+  public Map<String, Set<String>> get( String jarUrl, long size, long lastModified ) {
+    Entry entry = entries.get( jarUrl );
+    if ( entry == null || entry.size != size || entry.lastModified != lastModified ) {
+      return null;
+    }
+    usedJars.add( jarUrl );
+    return (Map<String, Set<String>>) (Map<String, ?>) entry.annotationIndex;
+  }
+
+  public void put( String jarUrl, long size, long lastModified, Map<String, Set<String>> annotationIndex ) {
+    entries.put( jarUrl, new Entry( size, lastModified, annotationIndex ) );
+    usedJars.add( jarUrl );
+    dirty = true;
+  }
+
+  /**
+   * Writes the index if anything was added. Entries of jar files that were not used and no longer exist are dropped.
+   */
+  public synchronized void save() {
+    if ( !dirty ) {
+      return;
+    }
+    HashMap<String, Entry> toSave = new HashMap<String, Entry>();
+    for ( Map.Entry<String, Entry> entry : entries.entrySet() ) {
+      if ( usedJars.contains( entry.getKey() ) || exists( entry.getKey() ) ) {
+        toSave.put( entry.getKey(), entry.getValue() );
+      }
+    }
+
+    File tempFile = null;
+    try {
+      File folder = file.getAbsoluteFile().getParentFile();
+      if ( folder != null && !folder.exists() ) {
+        folder.mkdirs();
+      }
+      // A temporary file of our own: other Pan or Kitchen processes may be saving the index at the same time
+      tempFile = File.createTempFile( file.getName(), ".tmp", folder );
+      ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) );
+      try {
+        out.writeInt( VERSION );
+        out.writeObject( toSave );
+      } finally {
+        out.close();
+      }
+      try {
+        Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING );
+      } catch ( AtomicMoveNotSupportedException e ) {
+        Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+      }
+      dirty = false;
+    } catch ( IOException e ) {
+      if ( tempFile != null ) {
+        tempFile.delete();
+      }
+      LogChannel.GENERAL.logDetailed( "Unable to save the plugin index to " + file + " : " + e.getMessage() );
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static Map<String, Entry> read( File file ) {
+    if ( !file.exists() ) {
+      return new HashMap<String, Entry>();
+    }
+    try {
+      ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+      try {
+        if ( in.readInt() != VERSION ) {
+          return new HashMap<String, Entry>();
+        }
+        return (Map<String, Entry>) in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch ( Exception e ) {
+      LogChannel.GENERAL.logDetailed( "Unable to read the plugin index from " + file + " : " + e.getMessage() );
+      return new HashMap<String, Entry>();
+    }
+  }
+
+  private static boolean exists( String jarUrl ) {
+    try {
+      URI uri = new URI( jarUrl );
+      return !"file".equals( uri.getScheme() ) || new File( uri ).exists();
+    } catch ( Exception e ) {
+      return false;
+    }
+  }
+}
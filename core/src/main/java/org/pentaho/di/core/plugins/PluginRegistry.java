@@ -554,6 +554,11 @@ public class PluginRegistry {
     log.snap( Metrics.METRIC_PLUGIN_REGISTRY_REGISTER_EXTENSIONS_STOP );
 
     log.snap( Metrics.METRIC_PLUGIN_REGISTRY_PLUGIN_REGISTRATION_START );
+
+    // Find and index the plugin jar files of all plugin types in parallel first...
+    //
+    JarFileCache.getInstance().scan( pluginTypes );
+
     for ( final PluginTypeInterface pluginType : pluginTypes ) {
       log.snap( Metrics.METRIC_PLUGIN_REGISTRY_PLUGIN_TYPE_REGISTRATION_START, pluginType.getName() );
       registry.registerType( pluginType );
@@ -571,6 +576,10 @@ public class PluginRegistry {
      * System.out.println("   - "+duration.toString()+"          Total="+total); }
      */
 
+    // Remember the scanned jar files for the next start...
+    //
+    JarFileCache.getInstance().saveIndex();
+
     // Clear the jar file cache so that we don't waste memory...
     //
     if ( !keepCache ) {
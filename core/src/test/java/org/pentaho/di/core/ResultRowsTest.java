@@ -0,0 +1,214 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.xml.XMLHandler;
+
+public class ResultRowsTest {
+
+  private static RowMeta rowMeta;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws KettleException {
+    KettleClientEnvironment.init();
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+  }
+
+  private static RowMetaAndData row( long id ) {
+    return new RowMetaAndData( rowMeta, id, "row " + id );
+  }
+
+  @Test
+  public void testRowsStayInMemoryUpToTheLimit() {
+    ResultRows rows = new ResultRows( 3 );
+    RowMetaAndData first = row( 0 );
+    rows.add( first );
+    rows.add( row( 1 ) );
+    rows.add( row( 2 ) );
+    assertFalse( rows.isSpilled() );
+    assertSame( first, rows.get( 0 ) );
+
+    rows.add( row( 3 ) );
+    assertTrue( rows.isSpilled() );
+    assertEquals( 4, rows.size() );
+  }
+
+  @Test
+  public void testSpilledRowsAreReadBackInOrder() throws Exception {
+    ResultRows rows = new ResultRows( 2 );
+    for ( int i = 0; i < 100; i++ ) {
+      rows.add( row( i ) );
+    }
+    rows.add( null );
+
+    Iterator<RowMetaAndData> iterator = rows.iterator();
+    for ( int i = 0; i < 100; i++ ) {
+      RowMetaAndData row = iterator.next();
+      assertEquals( i, row.getInteger( "id", -1 ) );
+      assertEquals( "row " + i, row.getString( "name", null ) );
+    }
+    assertNull( iterator.next() );
+    assertFalse( iterator.hasNext() );
+
+    // random access, forwards and backwards
+    assertEquals( 50, rows.get( 50 ).getInteger( "id", -1 ) );
+    assertEquals( 51, rows.get( 51 ).getInteger( "id", -1 ) );
+    assertEquals( 10, rows.get( 10 ).getInteger( "id", -1 ) );
+    assertEquals( 1, rows.get( 1 ).getInteger( "id", -1 ) );
+  }
+
+  @Test
+  public void testAppendWhileReading() throws Exception {
+    ResultRows rows = new ResultRows( 1 );
+    rows.add( row( 0 ) );
+    rows.add( row( 1 ) );
+    assertEquals( 1, rows.get( 1 ).getInteger( "id", -1 ) );
+    rows.add( row( 2 ) );
+    assertEquals( 2, rows.get( 2 ).getInteger( "id", -1 ) );
+  }
+
+  @Test
+  public void testClear() {
+    ResultRows rows = new ResultRows( 1 );
+    rows.add( row( 0 ) );
+    rows.add( row( 1 ) );
+    rows.clear();
+    assertEquals( 0, rows.size() );
+    assertFalse( rows.isSpilled() );
+    rows.add( row( 2 ) );
+    assertEquals( 1, rows.size() );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testNoInsertOnceSpilled() {
+    ResultRows rows = new ResultRows( 1 );
+    rows.add( row( 0 ) );
+    rows.add( row( 1 ) );
+    rows.add( 0, row( 2 ) );
+  }
+
+  @Test
+  public void testResultXmlWithSpilledRows() throws Exception {
+    Result result = new Result();
+    ResultRows rows = new ResultRows( 1 );
+    for ( int i = 0; i < 5; i++ ) {
+      rows.add( row( i ) );
+    }
+    result.setRows( rows );
+
+    Result copy = new Result( XMLHandler.loadXMLString( result.getXML(), Result.XML_TAG ) );
+    assertEquals( 5, copy.getRows().size() );
+    assertEquals( 4, copy.getRows().get( 4 ).getInteger( "id", -1 ) );
+  }
+
+  @Test
+  public void testEqualLayoutsAreWrittenOnce() throws Exception {
+    ResultRows rows = new ResultRows( 1 );
+    for ( int i = 0; i < 10; i++ ) {
+      rows.add( new RowMetaAndData( rowMeta.clone(), (long) i, "row " + i ) );
+    }
+
+    Iterator<RowMetaAndData> iterator = rows.iterator();
+    iterator.next();
+    RowMetaAndData spilled = iterator.next();
+    while ( iterator.hasNext() ) {
+      assertSame( spilled.getRowMeta(), iterator.next().getRowMeta() );
+    }
+  }
+
+  @Test
+  public void testCopySharesTheSpilledRows() throws Exception {
+    ResultRows rows = new ResultRows( 1 );
+    for ( int i = 0; i < 5; i++ ) {
+      rows.add( row( i ) );
+    }
+    ResultRows copy = rows.copy();
+    assertSame( rows.getSpillFile(), copy.getSpillFile() );
+    assertEquals( 5, copy.size() );
+    assertEquals( 4, copy.get( 4 ).getInteger( "id", -1 ) );
+
+    // appending to either list doesn't change the other one
+    rows.add( row( 5 ) );
+    copy.add( row( 6 ) );
+    assertNotSame( rows.getSpillFile(), copy.getSpillFile() );
+    assertEquals( 6, rows.size() );
+    assertEquals( 5, rows.get( 5 ).getInteger( "id", -1 ) );
+    assertEquals( 6, copy.size() );
+    assertEquals( 4, copy.get( 4 ).getInteger( "id", -1 ) );
+    assertEquals( 6, copy.get( 5 ).getInteger( "id", -1 ) );
+
+    rows.clear();
+    copy.clear();
+  }
+
+  @Test
+  public void testSpillFileIsDeletedWhenTheLastListIsCleared() {
+    ResultRows rows = new ResultRows( 1 );
+    rows.add( row( 0 ) );
+    rows.add( row( 1 ) );
+    File file = rows.getSpillFile();
+    ResultRows copy = rows.copy();
+
+    rows.clear();
+    assertTrue( file.exists() );
+    assertEquals( 1, copy.get( 1 ).getInteger( "id", -1 ) );
+
+    copy.clear();
+    assertFalse( file.exists() );
+  }
+
+  @Test
+  public void testResultCloneDoesNotWriteTheRowsAgain() throws Exception {
+    Result result = new Result();
+    ResultRows rows = new ResultRows( 1 );
+    for ( int i = 0; i < 5; i++ ) {
+      rows.add( row( i ) );
+    }
+    result.setRows( rows );
+
+    Result clone = result.clone();
+    assertSame( rows.getSpillFile(), ( (ResultRows) clone.getRows() ).getSpillFile() );
+    assertEquals( 3, clone.getRows().get( 3 ).getInteger( "id", -1 ) );
+
+    rows.clear();
+    clone.getRows().clear();
+  }
+}
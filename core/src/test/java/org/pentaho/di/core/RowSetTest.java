@@ -22,6 +22,8 @@
 
 package org.pentaho.di.core;
 
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.TestCase;
 
 import org.pentaho.di.core.row.RowMeta;
@@ -176,4 +178,22 @@ public class RowSetTest extends TestCase {
     assertEquals( set.toString(), set.getName() );
     assertEquals( "from.2 - to.3", set.getName() );
   }
+
+  /**
+   * Only blocking puts and gets count as wait time.
+   */
+  public void testWaitTimes() {
+    RowSet set = new BlockingRowSet( 1 );
+    RowMetaInterface rm = createRowMetaInterface();
+
+    assertTrue( set.putRowWait( rm, new Object[] { new Long( 1L ) }, 10, TimeUnit.MILLISECONDS ) );
+    assertEquals( 0L, set.getPutWaitNanos() );
+    assertFalse( set.putRowWait( rm, new Object[] { new Long( 2L ) }, 10, TimeUnit.MILLISECONDS ) );
+    assertTrue( set.getPutWaitNanos() >= TimeUnit.MILLISECONDS.toNanos( 10 ) );
+
+    assertNotNull( set.getRowWait( 10, TimeUnit.MILLISECONDS ) );
+    assertEquals( 0L, set.getGetWaitNanos() );
+    assertNull( set.getRowWait( 10, TimeUnit.MILLISECONDS ) );
+    assertTrue( set.getGetWaitNanos() >= TimeUnit.MILLISECONDS.toNanos( 10 ) );
+  }
 }
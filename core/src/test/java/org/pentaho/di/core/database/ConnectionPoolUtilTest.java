@@ -31,6 +31,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleClientEnvironment;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
@@ -45,8 +46,11 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.util.Properties;
 import java.util.logging.Logger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 
@@ -129,6 +133,71 @@ public class ConnectionPoolUtilTest implements Driver {
     assertTrue( connectionName.equals( "CP2pentaholocal3306" ) );
   }
 
+  @Test
+  public void testConnectionLimitPerDatabase() throws Exception {
+    System.setProperty( Const.KETTLE_CONNECTION_POOL_MAX_PER_DATABASE, "1" );
+    System.setProperty( Const.KETTLE_CONNECTION_POOL_LEAK_THRESHOLD, "60000" );
+    try {
+      Properties poolProperties = new Properties();
+      poolProperties.setProperty( ConnectionPoolUtil.MAX_WAIT, "100" );
+      when( dbMeta.getConnectionPoolingProperties() ).thenReturn( poolProperties );
+      when( dbMeta.getURL( "" ) ).thenReturn( "jdbc:limited" );
+      when( dbMeta.getName() ).thenReturn( "CP3" );
+      when( dbMeta.getPassword() ).thenReturn( PASSWORD );
+
+      Connection conn = ConnectionPoolUtil.getConnection( logChannelInterface, dbMeta, "", 1, 2 );
+      assertNotNull( conn );
+      try {
+        ConnectionPoolUtil.getConnection( logChannelInterface, dbMeta, "", 1, 2 );
+        fail( "the second connection to the database should time out" );
+      } catch ( SQLException e ) {
+        // expected
+      }
+
+      // closing twice returns a single permit
+      conn.close();
+      conn.close();
+      Connection other = ConnectionPoolUtil.getConnection( logChannelInterface, dbMeta, "", 1, 2 );
+      assertNotNull( other );
+      assertEquals( other, other );
+      assertFalse( other.equals( conn ) );
+
+      ConnectionPoolStatistics statistics = getStatistics( "CP3" );
+      assertEquals( 2, statistics.getCheckouts() );
+      assertEquals( 1, statistics.getNumActive() );
+      assertEquals( 0, statistics.getLeakedConnections() );
+      other.close();
+      assertEquals( 0, getStatistics( "CP3" ).getNumActive() );
+    } finally {
+      System.clearProperty( Const.KETTLE_CONNECTION_POOL_MAX_PER_DATABASE );
+      System.clearProperty( Const.KETTLE_CONNECTION_POOL_LEAK_THRESHOLD );
+    }
+  }
+
+  @Test
+  public void testWarmUpOpensAConnectionPerUser() throws Exception {
+    when( dbMeta.getName() ).thenReturn( "CP4" );
+    when( dbMeta.getPassword() ).thenReturn( PASSWORD );
+    when( dbMeta.getInitialPoolSize() ).thenReturn( 1 );
+    when( dbMeta.getMaximumPoolSize() ).thenReturn( 10 );
+
+    assertTrue( ConnectionPoolUtil.warmUp( logChannelInterface, dbMeta, null, 3 ) );
+    assertEquals( 3, getStatistics( "CP4" ).getNumIdle() );
+
+    // the pool exists already
+    assertFalse( ConnectionPoolUtil.warmUp( logChannelInterface, dbMeta, null, 5 ) );
+    assertEquals( 3, getStatistics( "CP4" ).getNumIdle() );
+  }
+
+  private static ConnectionPoolStatistics getStatistics( String poolName ) {
+    for ( ConnectionPoolStatistics statistics : ConnectionPoolUtil.getStatistics() ) {
+      if ( statistics.getPoolName().equals( poolName ) ) {
+        return statistics;
+      }
+    }
+    return null;
+  }
+
   @Test
   public void testConfigureDataSource() throws KettleDatabaseException {
     when( dbMeta.getURL( "partId" ) ).thenReturn( "jdbc:foo://server:111" );
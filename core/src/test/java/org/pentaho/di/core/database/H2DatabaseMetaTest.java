@@ -24,6 +24,7 @@ package org.pentaho.di.core.database;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
@@ -189,4 +190,14 @@ public class H2DatabaseMetaTest {
     assertEquals( "insert into FOO(FOOKEY, FOOVERSION) values (0, 1)", nativeMeta.getSQLInsertAutoIncUnknownDimensionRow( "FOO", "FOOKEY", "FOOVERSION" ) );
   }
 
+  @Test
+  public void testGetSQLUpsert() {
+    assertEquals( "MERGE INTO FOO (ID, A, B) KEY (ID) VALUES (?, ?, ?)",
+      nativeMeta.getSQLUpsert( "FOO", new String[] { "ID" }, new String[] { "ID", "A", "B" },
+        new String[] { "A", "B" } ) );
+    // MERGE would overwrite B as well
+    assertNull( nativeMeta.getSQLUpsert( "FOO", new String[] { "ID" }, new String[] { "ID", "A", "B" },
+      new String[] { "A" } ) );
+  }
+
 }
@@ -223,4 +223,19 @@ public class MySQLDatabaseMetaTest {
     assertEquals( "insert into FOO(FOOKEY, FOOVERSION) values (1, 1)", nativeMeta.getSQLInsertAutoIncUnknownDimensionRow( "FOO", "FOOKEY", "FOOVERSION" ) );
   }
 
+  @Test
+  public void testGetSQLUpsert() {
+    assertEquals( "INSERT INTO FOO (ID, A, B) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE A = VALUES(A), B = VALUES(B)",
+      nativeMeta.getSQLUpsert( "FOO", new String[] { "ID" }, new String[] { "ID", "A", "B" },
+        new String[] { "A", "B" } ) );
+    assertEquals( "INSERT INTO FOO (ID, A) VALUES (?, ?) ON DUPLICATE KEY UPDATE ID = ID",
+      nativeMeta.getSQLUpsert( "FOO", new String[] { "ID" }, new String[] { "ID", "A" }, new String[0] ) );
+  }
+
+  @Test
+  public void testIsUpsertMatchingAnyUniqueKey() {
+    assertTrue( nativeMeta.isUpsertMatchingAnyUniqueKey() );
+    assertFalse( new PostgreSQLDatabaseMeta().isUpsertMatchingAnyUniqueKey() );
+  }
+
 }
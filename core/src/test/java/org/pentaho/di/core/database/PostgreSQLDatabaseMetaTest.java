@@ -258,4 +258,12 @@ public class PostgreSQLDatabaseMetaTest {
     assertNull( nativeMeta.getSQLUnlockTables(  new String[] { "FOO" } ) );
   }
 
+  @Test
+  public void testGetSQLUpsert() {
+    assertEquals( "INSERT INTO FOO (ID, A, B) VALUES (?, ?, ?) ON CONFLICT (ID) DO UPDATE SET A = EXCLUDED.A",
+      nativeMeta.getSQLUpsert( "FOO", new String[] { "ID" }, new String[] { "ID", "A", "B" }, new String[] { "A" } ) );
+    assertEquals( "INSERT INTO FOO (ID, A) VALUES (?, ?) ON CONFLICT (ID) DO NOTHING",
+      nativeMeta.getSQLUpsert( "FOO", new String[] { "ID" }, new String[] { "ID", "A" }, new String[0] ) );
+  }
+
 }
@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PluginJarIndexTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static Map<String, Set<String>> createAnnotationIndex() {
+    Map<String, Set<String>> annotationIndex = new HashMap<String, Set<String>>();
+    annotationIndex.put( "org.pentaho.di.core.annotations.Step",
+      new HashSet<String>( Collections.singleton( "org.example.MyStep" ) ) );
+    return annotationIndex;
+  }
+
+  @Test
+  public void testIndexIsReusedWhileTheJarIsUnchanged() throws Exception {
+    File jar = temporaryFolder.newFile( "plugin.jar" );
+    String jarUrl = jar.toURI().toString();
+    File indexFile = new File( temporaryFolder.getRoot(), "index/plugin-index.ser" );
+
+    PluginJarIndex index = new PluginJarIndex( indexFile );
+    assertNull( index.get( jarUrl, 100L, 200L ) );
+    index.put( jarUrl, 100L, 200L, createAnnotationIndex() );
+    index.save();
+    assertTrue( indexFile.exists() );
+
+    PluginJarIndex reloaded = new PluginJarIndex( indexFile );
+    assertEquals( createAnnotationIndex(), reloaded.get( jarUrl, 100L, 200L ) );
+    assertNull( "The jar was changed", reloaded.get( jarUrl, 100L, 201L ) );
+    assertNull( "The jar was changed", reloaded.get( jarUrl, 101L, 200L ) );
+  }
+
+  @Test
+  public void testRemovedJarsAreDropped() throws Exception {
+    File jar = temporaryFolder.newFile( "removed.jar" );
+    String jarUrl = jar.toURI().toString();
+    File indexFile = temporaryFolder.newFile( "plugin-index.ser" );
+
+    PluginJarIndex index = new PluginJarIndex( indexFile );
+    index.put( jarUrl, 1L, 1L, createAnnotationIndex() );
+    index.save();
+    jar.delete();
+
+    // An unrelated change forces a write, the removed jar wasn't used
+    PluginJarIndex reloaded = new PluginJarIndex( indexFile );
+    reloaded.put( temporaryFolder.newFile( "other.jar" ).toURI().toString(), 1L, 1L, createAnnotationIndex() );
+    reloaded.save();
+    assertNull( new PluginJarIndex( indexFile ).get( jarUrl, 1L, 1L ) );
+  }
+
+  @Test
+  public void testCorruptIndexIsIgnored() throws Exception {
+    File indexFile = temporaryFolder.newFile( "plugin-index.ser" );
+    Files.write( indexFile.toPath(), "not an index".getBytes() );
+    assertNull( new PluginJarIndex( indexFile ).get( "file:/plugin.jar", 1L, 1L ) );
+  }
+}
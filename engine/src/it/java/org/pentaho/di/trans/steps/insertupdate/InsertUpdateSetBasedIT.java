@@ -0,0 +1,202 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.insertupdate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.plugins.StepPluginType;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+
+public class InsertUpdateSetBasedIT {
+
+  private static final String INJECTOR = "injector";
+  private static final String INSERT_UPDATE = "insertUpdate";
+
+  private Connection connection;
+  private InsertUpdateMeta insertUpdateMeta;
+  private TransMeta transMeta;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    KettleEnvironment.init();
+    DriverManager.registerDriver( new org.h2.Driver() );
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    KettleEnvironment.shutdown();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    connection = DriverManager.getConnection( "jdbc:h2:mem:UPSERT" );
+    Statement statement = connection.createStatement();
+    statement.execute( "CREATE TABLE PERSON (ID INT PRIMARY KEY, NAME VARCHAR(64), CITY VARCHAR(64))" );
+    statement.execute( "INSERT INTO PERSON VALUES (1, 'one', 'Orlando')" );
+    statement.execute( "INSERT INTO PERSON VALUES (2, 'two', 'Ghent')" );
+    statement.close();
+
+    PluginRegistry registry = PluginRegistry.getInstance();
+    transMeta = new TransMeta();
+    transMeta.setName( "InsertUpdateSetBased" );
+
+    InjectorMeta injectorMeta = new InjectorMeta();
+    StepMeta injectorStep =
+      new StepMeta( registry.getPluginId( StepPluginType.class, injectorMeta ), INJECTOR, injectorMeta );
+    transMeta.addStep( injectorStep );
+
+    DatabaseMeta databaseMeta = new DatabaseMeta( "h2", "H2", "JDBC", null, "mem:UPSERT", null, null, null );
+    transMeta.addDatabase( databaseMeta );
+
+    insertUpdateMeta = new InsertUpdateMeta();
+    insertUpdateMeta.setDefault();
+    insertUpdateMeta.setDatabaseMeta( databaseMeta );
+    insertUpdateMeta.setTableName( "PERSON" );
+    insertUpdateMeta.setCommitSize( "3" );
+    insertUpdateMeta.setSetBasedUpsert( true );
+    insertUpdateMeta.setKeyStream( new String[] { "id" } );
+    insertUpdateMeta.setKeyLookup( new String[] { "ID" } );
+    insertUpdateMeta.setKeyCondition( new String[] { "=" } );
+    insertUpdateMeta.setKeyStream2( new String[] { null } );
+    insertUpdateMeta.setUpdateLookup( new String[] { "ID", "NAME", "CITY" } );
+    insertUpdateMeta.setUpdateStream( new String[] { "id", "name", "city" } );
+    StepMeta insertUpdateStep =
+      new StepMeta( registry.getPluginId( StepPluginType.class, insertUpdateMeta ), INSERT_UPDATE, insertUpdateMeta );
+    transMeta.addStep( insertUpdateStep );
+
+    DummyTransMeta dummyMeta = new DummyTransMeta();
+    StepMeta dummyStep = new StepMeta( registry.getPluginId( StepPluginType.class, dummyMeta ), "dummy", dummyMeta );
+    transMeta.addStep( dummyStep );
+
+    transMeta.addTransHop( new TransHopMeta( injectorStep, insertUpdateStep ) );
+    transMeta.addTransHop( new TransHopMeta( insertUpdateStep, dummyStep ) );
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    connection.createStatement().execute( "DROP TABLE PERSON" );
+    connection.close();
+  }
+
+  @Test
+  public void testUpsertStatement() throws Exception {
+    insertUpdateMeta.setUpdate( new Boolean[] { Boolean.TRUE, Boolean.TRUE, Boolean.TRUE } );
+
+    StepInterface step = run();
+
+    assertEquals( "[1 one Orlando, 2 two Paris, 3 three Lima, 4 four Oslo, 5 five again Rome]", readTable() );
+    assertEquals( 0, step.getErrors() );
+    assertEquals( 6, step.getLinesWritten() );
+  }
+
+  @Test
+  public void testLookupsWithoutUniqueKey() throws Exception {
+    // MERGE needs a unique index on the key fields to match the existing rows
+    Statement statement = connection.createStatement();
+    statement.execute( "DROP TABLE PERSON" );
+    statement.execute( "CREATE TABLE PERSON (ID INT, NAME VARCHAR(64), CITY VARCHAR(64))" );
+    statement.execute( "INSERT INTO PERSON VALUES (1, 'one', 'Orlando')" );
+    statement.execute( "INSERT INTO PERSON VALUES (2, 'two', 'Ghent')" );
+    statement.close();
+    insertUpdateMeta.setUpdate( new Boolean[] { Boolean.TRUE, Boolean.TRUE, Boolean.TRUE } );
+
+    StepInterface step = run();
+
+    assertEquals( "[1 one Orlando, 2 two Paris, 3 three Lima, 4 four Oslo, 5 five again Rome]", readTable() );
+    assertEquals( 0, step.getErrors() );
+    assertEquals( 5, step.getLinesInput() );
+  }
+
+  @Test
+  public void testLookupsWhenNotAllFieldsAreUpdated() throws Exception {
+    // MERGE on H2 would overwrite the name
+    insertUpdateMeta.setUpdate( new Boolean[] { Boolean.FALSE, Boolean.FALSE, Boolean.TRUE } );
+
+    StepInterface step = run();
+
+    assertEquals( "[1 one Orlando, 2 two Paris, 3 three Lima, 4 four Oslo, 5 five Rome]", readTable() );
+    assertEquals( 0, step.getErrors() );
+    assertEquals( 3, step.getLinesOutput() );
+    assertEquals( 1, step.getLinesUpdated() );
+    assertEquals( 2, step.getLinesSkipped() );
+  }
+
+  private StepInterface run() throws Exception {
+    Trans trans = new Trans( transMeta );
+    trans.prepareExecution( null );
+    RowProducer producer = trans.addRowProducer( INJECTOR, 0 );
+    trans.startThreads();
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "city" ) );
+    producer.putRow( rowMeta, new Object[] { 1L, "one", "Orlando" } );
+    producer.putRow( rowMeta, new Object[] { 2L, "two", "Paris" } );
+    producer.putRow( rowMeta, new Object[] { 3L, "three", "Lima" } );
+    producer.putRow( rowMeta, new Object[] { 4L, "four", "Oslo" } );
+    producer.putRow( rowMeta, new Object[] { 5L, "five", "Rome" } );
+    producer.putRow( rowMeta, new Object[] { 5L, "five again", "Rome" } );
+    producer.finished();
+
+    trans.waitUntilFinished();
+    return trans.getStepInterface( INSERT_UPDATE, 0 );
+  }
+
+  private String readTable() throws SQLException {
+    List<String> rows = new ArrayList<String>();
+    ResultSet resultSet = connection.createStatement().executeQuery( "SELECT ID, NAME, CITY FROM PERSON ORDER BY ID" );
+    while ( resultSet.next() ) {
+      rows.add( resultSet.getInt( 1 ) + " " + resultSet.getString( 2 ) + " " + resultSet.getString( 3 ) );
+    }
+    resultSet.close();
+    return rows.toString();
+  }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * The pool of daemon threads shared by the streams that compress or decompress blocks in parallel. The number of
+ * threads can be set with the KETTLE_COMPRESSION_THREADS system property (or kettle.properties) and defaults to the
+ * number of processors.
+ */
+public class CompressionExecutor {
+
+  private static final AtomicInteger threadNum = new AtomicInteger( 1 );
+  private static ExecutorService executor;
+
+  private CompressionExecutor() {
+  }
+
+  public static int getThreadCount() {
+    int threads =
+      Const.toInt( System.getProperty( Const.KETTLE_COMPRESSION_THREADS ), Runtime.getRuntime().availableProcessors() );
+    return Math.max( 1, threads );
+  }
+
+  public static synchronized ExecutorService getExecutor() {
+    if ( executor == null ) {
+      executor = Executors.newFixedThreadPool( getThreadCount(), new ThreadFactory() {
+        @Override public Thread newThread( Runnable r ) {
+          Thread thread = Executors.defaultThreadFactory().newThread( r );
+          thread.setDaemon( true );
+          thread.setName( "Compression thread " + threadNum.getAndIncrement() );
+          return thread;
+        }
+      } );
+    }
+    return executor;
+  }
+}
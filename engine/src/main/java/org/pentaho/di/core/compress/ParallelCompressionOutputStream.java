@@ -0,0 +1,206 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Base class for output streams that cut the data in blocks and compress the blocks independently on a shared pool of
+ * worker threads. The compressed blocks are written to the wrapped stream in the order of the data, on the thread that
+ * writes to this stream. The number of blocks in flight is bounded so memory use stays flat.
+ *
+ * The block size can be set with the KETTLE_COMPRESSION_BLOCK_SIZE system property (or kettle.properties).
+ *
+ * @see CompressionExecutor
+ */
+public abstract class ParallelCompressionOutputStream extends CompressionOutputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+  private final int blockSize;
+  private final int maxBlocksInFlight;
+  private final ArrayDeque<Future<byte[]>> pending;
+
+  private byte[] block;
+  private int blockLength;
+  private long blocksWritten;
+  private boolean closed;
+
+  public ParallelCompressionOutputStream( OutputStream out, CompressionProvider provider ) {
+    this( out, provider, getConfiguredBlockSize() );
+  }
+
+  public ParallelCompressionOutputStream( OutputStream out, CompressionProvider provider, int blockSize ) {
+    super( out, provider );
+    this.blockSize = blockSize;
+    this.maxBlocksInFlight = 2 * CompressionExecutor.getThreadCount();
+    this.pending = new ArrayDeque<Future<byte[]>>();
+    this.block = new byte[blockSize];
+    this.blockLength = 0;
+    this.blocksWritten = 0;
+    this.closed = false;
+  }
+
+  /**
+   * Compresses one block of data. Called concurrently from the worker threads so implementations must not keep state
+   * in the stream.
+   *
+   * @return the complete bytes to write to the wrapped stream for this block
+   */
+  protected abstract byte[] compressBlock( byte[] data, int length ) throws IOException;
+
+  /**
+   * Called when the stream is closed, after all blocks have been written.
+   *
+   * @param blocksWritten
+   *          the number of blocks written to the wrapped stream
+   */
+  protected void finish( OutputStream out, long blocksWritten ) throws IOException {
+    // Nothing to add by default
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    ensureOpen();
+    block[blockLength++] = (byte) b;
+    if ( blockLength == blockSize ) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write( byte[] b ) throws IOException {
+    write( b, 0, b.length );
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    ensureOpen();
+    while ( len > 0 ) {
+      int size = Math.min( len, blockSize - blockLength );
+      System.arraycopy( b, off, block, blockLength, size );
+      blockLength += size;
+      off += size;
+      len -= size;
+      if ( blockLength == blockSize ) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * Compresses and writes everything received so far. Every flush ends the current block, so frequent flushing costs
+   * compression ratio.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    submitBlock();
+    while ( !pending.isEmpty() ) {
+      writeNextBlock();
+    }
+    delegate.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( closed ) {
+      return;
+    }
+    try {
+      submitBlock();
+      while ( !pending.isEmpty() ) {
+        writeNextBlock();
+      }
+      finish( delegate, blocksWritten );
+    } finally {
+      closed = true;
+      for ( Future<byte[]> future : pending ) {
+        future.cancel( false );
+      }
+      pending.clear();
+      block = null;
+      delegate.close();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if ( closed ) {
+      throw new IOException( "Stream closed" );
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    if ( blockLength == 0 ) {
+      return;
+    }
+    final byte[] data = block;
+    final int length = blockLength;
+    pending.add( CompressionExecutor.getExecutor().submit( new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        return compressBlock( data, length );
+      }
+    } ) );
+    block = new byte[blockSize];
+    blockLength = 0;
+
+    // Write what is ready, wait when too many blocks are in flight
+    while ( !pending.isEmpty() && ( pending.size() > maxBlocksInFlight || pending.peek().isDone() ) ) {
+      writeNextBlock();
+    }
+  }
+
+  private void writeNextBlock() throws IOException {
+    Future<byte[]> future = pending.poll();
+    try {
+      delegate.write( future.get() );
+      blocksWritten++;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while waiting for a compressed block" );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof IOException ) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException( "Error compressing block", e.getCause() );
+    }
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  private static int getConfiguredBlockSize() {
+    int size = Const.toInt( System.getProperty( Const.KETTLE_COMPRESSION_BLOCK_SIZE ), DEFAULT_BLOCK_SIZE );
+    return size > 0 ? size : DEFAULT_BLOCK_SIZE;
+  }
+}
@@ -0,0 +1,458 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * The positions of the members of a multi-member gzip file, in the compressed file and in the uncompressed data. Since
+ * every member can be inflated on its own, the index allows a reader to start at any member and to decompress several
+ * members concurrently.
+ *
+ * The member sizes are found without inflating when every member carries its size in the gzip extra field: the "KB"
+ * subfield written by {@link ParallelGZIPCompressionOutputStream} or the "BC" subfield of BGZF (bgzip) files. For other
+ * multi-member files an index can be built once with {@link #createIndexFile(FileObject)} and is then stored next to
+ * the file, with the extension {@value #INDEX_EXTENSION}. Parallel GZip CSV Input does that when the
+ * KETTLE_GZIP_CREATE_INDEX variable is Y.
+ *
+ * The index file holds, big endian: the number of members (long), followed by the compressed and uncompressed offset
+ * (long, long) of every member and finally the total compressed and uncompressed size (long, long).
+ */
+public class GZIPMemberIndex {
+
+  public static final String INDEX_EXTENSION = ".gzi";
+
+  /** The files an index is being built for, by URI */
+  private static final ConcurrentMap<String, Object> CREATE_LOCKS = new ConcurrentHashMap<String, Object>();
+
+  private static final int FLAG_HEADER_CRC = 2;
+  private static final int FLAG_EXTRA = 4;
+  private static final int FLAG_NAME = 8;
+  private static final int FLAG_COMMENT = 16;
+
+  /** Offsets of the members, one extra entry holds the total sizes */
+  private final long[] compressedOffsets;
+  private final long[] uncompressedOffsets;
+
+  private GZIPMemberIndex( long[] compressedOffsets, long[] uncompressedOffsets ) {
+    this.compressedOffsets = compressedOffsets;
+    this.uncompressedOffsets = uncompressedOffsets;
+  }
+
+  public int getNrMembers() {
+    return compressedOffsets.length - 1;
+  }
+
+  public long getCompressedOffset( int member ) {
+    return compressedOffsets[member];
+  }
+
+  public long getCompressedLength( int member ) {
+    return compressedOffsets[member + 1] - compressedOffsets[member];
+  }
+
+  public long getUncompressedOffset( int member ) {
+    return uncompressedOffsets[member];
+  }
+
+  public long getUncompressedLength( int member ) {
+    return uncompressedOffsets[member + 1] - uncompressedOffsets[member];
+  }
+
+  public long getCompressedSize() {
+    return compressedOffsets[getNrMembers()];
+  }
+
+  public long getUncompressedSize() {
+    return uncompressedOffsets[getNrMembers()];
+  }
+
+  /**
+   * Finds the members of a gzip stream by reading the member sizes from the gzip headers and skipping the compressed
+   * data in between.
+   *
+   * @return the index or null if a member doesn't carry its size
+   */
+  public static GZIPMemberIndex scan( InputStream in ) throws IOException {
+    Builder builder = new Builder();
+    long compressedOffset = 0L;
+    long uncompressedOffset = 0L;
+    Header header;
+    while ( ( header = Header.read( in ) ) != null ) {
+      if ( header.memberSize < 0 ) {
+        return null;
+      }
+      skipFully( in, header.memberSize - header.bytes.length - 8 );
+      byte[] trailer = new byte[8];
+      readFully( in, trailer, 0, trailer.length );
+
+      builder.add( compressedOffset, uncompressedOffset );
+      compressedOffset += header.memberSize;
+      uncompressedOffset += readUnsignedIntLE( trailer, 4 );
+    }
+    return builder.build( compressedOffset, uncompressedOffset );
+  }
+
+  /**
+   * Finds the members of any gzip stream by inflating it completely.
+   */
+  public static GZIPMemberIndex build( InputStream in ) throws IOException {
+    PositionInputStream pushback = new PositionInputStream( in, 8192 );
+    Builder builder = new Builder();
+    byte[] input = new byte[8192];
+    byte[] output = new byte[65536];
+    long uncompressedOffset = 0L;
+    long compressedOffset = 0L;
+    int inputLength = 0;
+    Inflater inflater = new Inflater( true );
+    try {
+      while ( Header.read( pushback ) != null ) {
+        builder.add( compressedOffset, uncompressedOffset );
+        inflater.reset();
+        while ( !inflater.finished() ) {
+          if ( inflater.needsInput() ) {
+            inputLength = pushback.read( input, 0, input.length );
+            if ( inputLength < 0 ) {
+              throw new EOFException( "Unexpected end of gzip member" );
+            }
+            inflater.setInput( input, 0, inputLength );
+          }
+          try {
+            uncompressedOffset += inflater.inflate( output );
+          } catch ( DataFormatException e ) {
+            throw new ZipException( e.getMessage() );
+          }
+          if ( inflater.needsDictionary() ) {
+            throw new ZipException( "Unsupported preset dictionary in gzip member" );
+          }
+        }
+        int remaining = inflater.getRemaining();
+        if ( remaining > 0 ) {
+          pushback.unread( input, inputLength - remaining, remaining );
+        }
+        skipFully( pushback, 8 ); // the trailer
+        compressedOffset = pushback.getPosition();
+      }
+    } finally {
+      inflater.end();
+    }
+    return builder.build( compressedOffset, uncompressedOffset );
+  }
+
+  /**
+   * Loads the index of a gzip file: from the index file next to it when that is up to date, otherwise by scanning the
+   * member headers.
+   *
+   * @return the index or null if the members of the file are not known
+   */
+  public static GZIPMemberIndex load( FileObject file ) throws IOException {
+    FileObject indexFile = getIndexFile( file );
+    if ( indexFile.exists()
+      && indexFile.getContent().getLastModifiedTime() >= file.getContent().getLastModifiedTime() ) {
+      InputStream in = KettleVFS.getInputStream( indexFile );
+      try {
+        return read( in );
+      } finally {
+        in.close();
+      }
+    }
+    InputStream in = KettleVFS.getInputStream( file );
+    try {
+      return scan( in );
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Loads the index of a gzip file like {@link #load(FileObject)} and, when the member sizes are not in the headers,
+   * builds the index file with {@link #createIndexFile(FileObject)}. Readers of the same file wait for the one building
+   * the index, so the file is only inflated once and later runs find the index file.
+   */
+  public static GZIPMemberIndex loadOrCreate( FileObject file ) throws IOException {
+    GZIPMemberIndex index = load( file );
+    if ( index != null ) {
+      return index;
+    }
+    String uri = file.getName().getURI();
+    Object lock = CREATE_LOCKS.computeIfAbsent( uri, key -> new Object() );
+    synchronized ( lock ) {
+      try {
+        index = load( file );
+        return index != null ? index : createIndexFile( file );
+      } finally {
+        CREATE_LOCKS.remove( uri, lock );
+      }
+    }
+  }
+
+  /**
+   * Builds the index of a gzip file by inflating it and stores the index next to the file.
+   */
+  public static GZIPMemberIndex createIndexFile( FileObject file ) throws IOException {
+    GZIPMemberIndex index;
+    InputStream in = KettleVFS.getInputStream( file );
+    try {
+      index = build( in );
+    } finally {
+      in.close();
+    }
+    OutputStream out = KettleVFS.getOutputStream( getIndexFile( file ), false );
+    try {
+      index.write( out );
+    } finally {
+      out.close();
+    }
+    return index;
+  }
+
+  public static FileObject getIndexFile( FileObject file ) throws IOException {
+    return file.getFileSystem().resolveFile( file.getName().getPath() + INDEX_EXTENSION );
+  }
+
+  public void write( OutputStream out ) throws IOException {
+    DataOutputStream dos = new DataOutputStream( out );
+    dos.writeLong( getNrMembers() );
+    for ( int i = 0; i < compressedOffsets.length; i++ ) {
+      dos.writeLong( compressedOffsets[i] );
+      dos.writeLong( uncompressedOffsets[i] );
+    }
+    dos.flush();
+  }
+
+  public static GZIPMemberIndex read( InputStream in ) throws IOException {
+    DataInputStream dis = new DataInputStream( in );
+    long nrMembers = dis.readLong();
+    if ( nrMembers < 0 || nrMembers >= Integer.MAX_VALUE ) {
+      throw new IOException( "Invalid gzip index: " + nrMembers + " members" );
+    }
+    long[] compressed = new long[(int) nrMembers + 1];
+    long[] uncompressed = new long[(int) nrMembers + 1];
+    for ( int i = 0; i < compressed.length; i++ ) {
+      compressed[i] = dis.readLong();
+      uncompressed[i] = dis.readLong();
+    }
+    return new GZIPMemberIndex( compressed, uncompressed );
+  }
+
+  static void readFully( InputStream in, byte[] b, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      int n = in.read( b, off, len );
+      if ( n < 0 ) {
+        throw new EOFException( "Unexpected end of gzip stream" );
+      }
+      off += n;
+      len -= n;
+    }
+  }
+
+  static void skipFully( InputStream in, long len ) throws IOException {
+    while ( len > 0 ) {
+      long n = in.skip( len );
+      if ( n <= 0 ) {
+        if ( in.read() < 0 ) {
+          throw new EOFException( "Unexpected end of gzip stream" );
+        }
+        n = 1;
+      }
+      len -= n;
+    }
+  }
+
+  static long readUnsignedIntLE( byte[] b, int off ) {
+    return ( b[off] & 0xffL )
+      | ( ( b[off + 1] & 0xffL ) << 8 )
+      | ( ( b[off + 2] & 0xffL ) << 16 )
+      | ( ( b[off + 3] & 0xffL ) << 24 );
+  }
+
+  /**
+   * A gzip member header as read from the stream.
+   */
+  static class Header {
+    /** The raw header bytes */
+    byte[] bytes;
+    /** The total size of the member (header, data and trailer) or -1 if the header doesn't tell */
+    long memberSize;
+
+    /**
+     * Reads a member header.
+     *
+     * @return the header or null at the end of the stream
+     */
+    static Header read( InputStream in ) throws IOException {
+      ByteArrayOutputStream raw = new ByteArrayOutputStream( 32 );
+      int first = in.read();
+      if ( first < 0 ) {
+        return null;
+      }
+      raw.write( first );
+      byte[] fixed = new byte[9];
+      readFully( in, fixed, 0, fixed.length );
+      raw.write( fixed );
+      if ( first != 0x1f || ( fixed[0] & 0xff ) != 0x8b || fixed[1] != 8 ) {
+        throw new ZipException( "Not in GZIP format" );
+      }
+      int flags = fixed[2] & 0xff;
+
+      Header header = new Header();
+      header.memberSize = -1L;
+      if ( ( flags & FLAG_EXTRA ) != 0 ) {
+        byte[] xlen = new byte[2];
+        readFully( in, xlen, 0, 2 );
+        raw.write( xlen );
+        byte[] extra = new byte[( xlen[0] & 0xff ) | ( ( xlen[1] & 0xff ) << 8 )];
+        readFully( in, extra, 0, extra.length );
+        raw.write( extra );
+        header.memberSize = getMemberSize( extra );
+      }
+      if ( ( flags & FLAG_NAME ) != 0 ) {
+        readZeroTerminated( in, raw );
+      }
+      if ( ( flags & FLAG_COMMENT ) != 0 ) {
+        readZeroTerminated( in, raw );
+      }
+      if ( ( flags & FLAG_HEADER_CRC ) != 0 ) {
+        byte[] crc = new byte[2];
+        readFully( in, crc, 0, 2 );
+        raw.write( crc );
+      }
+      header.bytes = raw.toByteArray();
+      return header;
+    }
+
+    private static long getMemberSize( byte[] extra ) {
+      int i = 0;
+      while ( i + 4 <= extra.length ) {
+        int len = ( extra[i + 2] & 0xff ) | ( ( extra[i + 3] & 0xff ) << 8 );
+        if ( i + 4 + len > extra.length ) {
+          break;
+        }
+        if ( extra[i] == ParallelGZIPCompressionOutputStream.EXTRA_SUBFIELD_ID1
+          && extra[i + 1] == ParallelGZIPCompressionOutputStream.EXTRA_SUBFIELD_ID2 && len == 4 ) {
+          return readUnsignedIntLE( extra, i + 4 );
+        }
+        if ( extra[i] == 'B' && extra[i + 1] == 'C' && len == 2 ) {
+          // BGZF: total block size minus 1
+          return ( ( extra[i + 4] & 0xff ) | ( ( extra[i + 5] & 0xff ) << 8 ) ) + 1L;
+        }
+        i += 4 + len;
+      }
+      return -1L;
+    }
+
+    private static void readZeroTerminated( InputStream in, ByteArrayOutputStream raw ) throws IOException {
+      int c;
+      do {
+        c = in.read();
+        if ( c < 0 ) {
+          throw new EOFException( "Unexpected end of gzip header" );
+        }
+        raw.write( c );
+      } while ( c != 0 );
+    }
+  }
+
+  private static class Builder {
+    private long[] compressed = new long[64];
+    private long[] uncompressed = new long[64];
+    private int size;
+
+    void add( long compressedOffset, long uncompressedOffset ) {
+      if ( size + 1 >= compressed.length ) {
+        compressed = Arrays.copyOf( compressed, compressed.length * 2 );
+        uncompressed = Arrays.copyOf( uncompressed, uncompressed.length * 2 );
+      }
+      compressed[size] = compressedOffset;
+      uncompressed[size] = uncompressedOffset;
+      size++;
+    }
+
+    GZIPMemberIndex build( long compressedSize, long uncompressedSize ) {
+      add( compressedSize, uncompressedSize );
+      return new GZIPMemberIndex( Arrays.copyOf( compressed, size ), Arrays.copyOf( uncompressed, size ) );
+    }
+  }
+
+  /**
+   * Keeps track of the position in the stream, taking unread bytes into account.
+   */
+  private static class PositionInputStream extends PushbackInputStream {
+    private long position;
+
+    PositionInputStream( InputStream in, int size ) {
+      super( in, size );
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if ( b >= 0 ) {
+        position++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+      int n = super.read( b, off, len );
+      if ( n > 0 ) {
+        position += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip( long n ) throws IOException {
+      long skipped = super.skip( n );
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public void unread( byte[] b, int off, int len ) throws IOException {
+      super.unread( b, off, len );
+      position -= len;
+    }
+
+    long getPosition() {
+      return position;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.gzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.pentaho.di.core.compress.CompressionInputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+
+/**
+ * Reads gzip files, inflating the members of multi-member files on the shared compression threads.
+ *
+ * @see ParallelGZIPInputStream
+ */
+public class ParallelGZIPCompressionInputStream extends CompressionInputStream {
+
+  public ParallelGZIPCompressionInputStream( InputStream in, CompressionProvider provider ) throws IOException {
+    super( getDelegate( in ), provider );
+  }
+
+  protected static ParallelGZIPInputStream getDelegate( InputStream in ) throws IOException {
+    if ( in instanceof ParallelGZIPInputStream ) {
+      return (ParallelGZIPInputStream) in;
+    }
+    return new ParallelGZIPInputStream( in );
+  }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.gzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.ParallelCompressionOutputStream;
+
+/**
+ * Writes a multi-member gzip stream (RFC 1952): every block is compressed on its own into a complete gzip member.
+ * Standard gzip readers, including {@link java.util.zip.GZIPInputStream}, read the members as one continuous stream.
+ *
+ * Every member carries an extra field with subfield id "KB" holding the total size of the member in bytes (unsigned,
+ * little endian). Readers can use it to find the member boundaries without inflating.
+ */
+public class ParallelGZIPCompressionOutputStream extends ParallelCompressionOutputStream {
+
+  public static final byte EXTRA_SUBFIELD_ID1 = 'K';
+  public static final byte EXTRA_SUBFIELD_ID2 = 'B';
+
+  /** Fixed header (10) + XLEN (2) + subfield header (4) + member size (4) */
+  public static final int HEADER_SIZE = 20;
+  public static final int TRAILER_SIZE = 8;
+
+  private static final int FLAG_EXTRA = 4;
+  private static final int OS_UNKNOWN = 255;
+
+  public ParallelGZIPCompressionOutputStream( OutputStream out, CompressionProvider provider ) {
+    super( out, provider );
+  }
+
+  public ParallelGZIPCompressionOutputStream( OutputStream out, CompressionProvider provider, int blockSize ) {
+    super( out, provider, blockSize );
+  }
+
+  @Override
+  protected byte[] compressBlock( byte[] data, int length ) throws IOException {
+    return compressMember( data, length );
+  }
+
+  /**
+   * An empty stream still has to be a valid gzip file, so it gets one empty member.
+   */
+  @Override
+  protected void finish( OutputStream out, long blocksWritten ) throws IOException {
+    if ( blocksWritten == 0 ) {
+      out.write( compressMember( new byte[0], 0 ) );
+    }
+  }
+
+  static byte[] compressMember( byte[] data, int length ) {
+    Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+    try {
+      deflater.setInput( data, 0, length );
+      deflater.finish();
+
+      byte[] member = new byte[HEADER_SIZE + length + ( length >> 6 ) + 64 + TRAILER_SIZE];
+      int size = HEADER_SIZE;
+      while ( !deflater.finished() ) {
+        if ( size == member.length - TRAILER_SIZE ) {
+          member = Arrays.copyOf( member, member.length * 2 );
+        }
+        size += deflater.deflate( member, size, member.length - TRAILER_SIZE - size );
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update( data, 0, length );
+      writeIntLE( member, size, crc.getValue() );
+      writeIntLE( member, size + 4, length );
+      size += TRAILER_SIZE;
+
+      member[0] = (byte) 0x1f;
+      member[1] = (byte) 0x8b;
+      member[2] = Deflater.DEFLATED;
+      member[3] = FLAG_EXTRA;
+      // modification time (4 bytes) is left 0: not available
+      member[8] = 0;
+      member[9] = (byte) OS_UNKNOWN;
+      member[10] = 8; // XLEN
+      member[11] = 0;
+      member[12] = EXTRA_SUBFIELD_ID1;
+      member[13] = EXTRA_SUBFIELD_ID2;
+      member[14] = 4; // subfield length
+      member[15] = 0;
+      writeIntLE( member, 16, size );
+
+      return size == member.length ? member : Arrays.copyOf( member, size );
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static void writeIntLE( byte[] buffer, int offset, long value ) {
+    buffer[offset] = (byte) ( value & 0xff );
+    buffer[offset + 1] = (byte) ( ( value >> 8 ) & 0xff );
+    buffer[offset + 2] = (byte) ( ( value >> 16 ) & 0xff );
+    buffer[offset + 3] = (byte) ( ( value >> 24 ) & 0xff );
+  }
+}
@@ -0,0 +1,303 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.pentaho.di.core.compress.CompressionExecutor;
+
+/**
+ * Reads a gzip stream, inflating the members of multi-member files concurrently on the shared compression threads.
+ * The compressed members are read ahead on the calling thread, the number of members in flight is bounded.
+ *
+ * The members are found either from the member sizes in the gzip headers (see {@link GZIPMemberIndex}) or from an
+ * index. As soon as a member without size information is found, the rest of the stream is read sequentially with a
+ * {@link GZIPInputStream}, so any gzip stream can be read.
+ */
+public class ParallelGZIPInputStream extends InputStream {
+
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  private final InputStream in;
+  private final int bufferSize;
+  private final int maxMembersInFlight;
+  private final ArrayDeque<Future<byte[]>> pending;
+
+  private final GZIPMemberIndex index;
+  private int nextMember;
+
+  private byte[] current;
+  private int currentPosition;
+
+  private InputStream sequential;
+  private boolean endOfInput;
+  private boolean closed;
+
+  public ParallelGZIPInputStream( InputStream in ) {
+    this( in, DEFAULT_BUFFER_SIZE );
+  }
+
+  /**
+   * @param bufferSize
+   *          the buffer size of the {@link GZIPInputStream} used for members without size information
+   */
+  public ParallelGZIPInputStream( InputStream in, int bufferSize ) {
+    this( in, null, 0, bufferSize );
+  }
+
+  /**
+   * Reads the members of an indexed gzip file, starting at the given member up to the end of the file.
+   *
+   * @param in
+   *          the compressed file, positioned at the start of the first member to read
+   * @param index
+   *          the member index of the file
+   * @param firstMember
+   *          the first member to read
+   */
+  public ParallelGZIPInputStream( InputStream in, GZIPMemberIndex index, int firstMember, int bufferSize ) {
+    this.in = in;
+    this.index = index;
+    this.nextMember = firstMember;
+    this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+    this.maxMembersInFlight = 2 * CompressionExecutor.getThreadCount();
+    this.pending = new ArrayDeque<Future<byte[]>>();
+    this.current = new byte[0];
+    this.currentPosition = 0;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( current != null && currentPosition < current.length ) {
+      return current[currentPosition++] & 0xff;
+    }
+    byte[] b = new byte[1];
+    int n = read( b, 0, 1 );
+    return n < 0 ? -1 : b[0] & 0xff;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    ensureOpen();
+    if ( len == 0 ) {
+      return 0;
+    }
+    while ( currentPosition == current.length ) {
+      if ( !nextBlock() ) {
+        return sequential != null ? sequential.read( b, off, len ) : -1;
+      }
+    }
+    int size = Math.min( len, current.length - currentPosition );
+    System.arraycopy( current, currentPosition, b, off, size );
+    currentPosition += size;
+    return size;
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    ensureOpen();
+    long skipped = 0L;
+    while ( skipped < n ) {
+      if ( currentPosition == current.length && !nextBlock() ) {
+        return sequential != null ? skipped + sequential.skip( n - skipped ) : skipped;
+      }
+      int size = (int) Math.min( n - skipped, current.length - currentPosition );
+      currentPosition += size;
+      skipped += size;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return current.length - currentPosition;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( closed ) {
+      return;
+    }
+    closed = true;
+    for ( Future<byte[]> future : pending ) {
+      future.cancel( false );
+    }
+    pending.clear();
+    current = null;
+    if ( sequential != null ) {
+      sequential.close();
+    } else {
+      in.close();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if ( closed ) {
+      throw new IOException( "Stream closed" );
+    }
+  }
+
+  /**
+   * Makes the next inflated member the current block.
+   *
+   * @return false if there are no more members to inflate in parallel
+   */
+  private boolean nextBlock() throws IOException {
+    readAhead();
+    Future<byte[]> future = pending.poll();
+    if ( future == null ) {
+      return false;
+    }
+    try {
+      current = future.get();
+      currentPosition = 0;
+      return true;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while waiting for an inflated gzip member" );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof IOException ) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException( "Error inflating gzip member", e.getCause() );
+    }
+  }
+
+  private void readAhead() throws IOException {
+    while ( !endOfInput && pending.size() < maxMembersInFlight ) {
+      final byte[] member = readMember();
+      if ( member == null ) {
+        endOfInput = true;
+        break;
+      }
+      pending.add( CompressionExecutor.getExecutor().submit( new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          return inflateMember( member );
+        }
+      } ) );
+    }
+  }
+
+  /**
+   * Reads the next complete member from the compressed stream.
+   *
+   * @return the member or null when there are no more members to read in parallel
+   */
+  private byte[] readMember() throws IOException {
+    if ( index != null ) {
+      if ( nextMember >= index.getNrMembers() ) {
+        return null;
+      }
+      long length = index.getCompressedLength( nextMember++ );
+      if ( length > Integer.MAX_VALUE ) {
+        throw new IOException( "gzip member too large to read in parallel: " + length + " bytes" );
+      }
+      byte[] member = new byte[(int) length];
+      GZIPMemberIndex.readFully( in, member, 0, member.length );
+      return member;
+    }
+
+    GZIPMemberIndex.Header header = GZIPMemberIndex.Header.read( in );
+    if ( header == null ) {
+      return null;
+    }
+    if ( header.memberSize < 0 ) {
+      // No size information: read the rest of the stream the classic way, starting with this header.
+      //
+      sequential =
+        new GZIPInputStream( new SequenceInputStream( new ByteArrayInputStream( header.bytes ), in ), bufferSize );
+      return null;
+    }
+    if ( header.memberSize > Integer.MAX_VALUE || header.memberSize < header.bytes.length + 8 ) {
+      throw new ZipException( "Invalid gzip member size: " + header.memberSize );
+    }
+    byte[] member = Arrays.copyOf( header.bytes, (int) header.memberSize );
+    GZIPMemberIndex.readFully( in, member, header.bytes.length, member.length - header.bytes.length );
+    return member;
+  }
+
+  /**
+   * Inflates one complete gzip member and checks it against the trailer.
+   */
+  static byte[] inflateMember( byte[] member ) throws IOException {
+    int headerLength = GZIPMemberIndex.Header.read( new ByteArrayInputStream( member ) ).bytes.length;
+    int trailer = member.length - 8;
+    if ( trailer < headerLength ) {
+      throw new EOFException( "Unexpected end of gzip member" );
+    }
+    long expectedCrc = GZIPMemberIndex.readUnsignedIntLE( member, trailer );
+    long expectedSize = GZIPMemberIndex.readUnsignedIntLE( member, trailer + 4 );
+
+    Inflater inflater = new Inflater( true );
+    try {
+      // Also hand over the trailer: inflating without zlib wrapper may need a byte beyond the compressed data
+      inflater.setInput( member, headerLength, member.length - headerLength );
+      byte[] data = new byte[(int) Math.min( expectedSize, Integer.MAX_VALUE - 8 )];
+      int size = 0;
+      while ( !inflater.finished() ) {
+        if ( size == data.length ) {
+          data = Arrays.copyOf( data, Math.max( 1024, data.length * 2 ) );
+        }
+        int n;
+        try {
+          n = inflater.inflate( data, size, data.length - size );
+        } catch ( DataFormatException e ) {
+          throw new ZipException( e.getMessage() );
+        }
+        if ( n == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) ) {
+          throw new EOFException( "Unexpected end of gzip member" );
+        }
+        size += n;
+      }
+      if ( inflater.getRemaining() != 8 ) {
+        throw new ZipException( "Invalid gzip member size" );
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update( data, 0, size );
+      if ( crc.getValue() != expectedCrc || ( size & 0xffffffffL ) != expectedSize ) {
+        throw new ZipException( "Corrupt gzip member: CRC or size mismatch" );
+      }
+      return size == data.length ? data : Arrays.copyOf( data, size );
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.snappy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.ParallelCompressionOutputStream;
+import org.xerial.snappy.Snappy;
+import org.xerial.snappy.SnappyCodec;
+
+/**
+ * Writes the block framed format of {@link org.xerial.snappy.SnappyOutputStream}: a stream header followed by chunks
+ * made of the compressed length (4 bytes, big endian) and the compressed block. As every chunk is compressed on its own
+ * the chunks are produced in parallel. The result is read back by the Snappy compression provider.
+ */
+public class ParallelSnappyCompressionOutputStream extends ParallelCompressionOutputStream {
+
+  public ParallelSnappyCompressionOutputStream( OutputStream out, CompressionProvider provider ) throws IOException {
+    super( out, provider );
+    writeHeader( out );
+  }
+
+  public ParallelSnappyCompressionOutputStream( OutputStream out, CompressionProvider provider, int blockSize )
+    throws IOException {
+    super( out, provider, blockSize );
+    writeHeader( out );
+  }
+
+  private static void writeHeader( OutputStream out ) throws IOException {
+    byte[] header = new byte[SnappyCodec.MAGIC_HEADER.length + 8];
+    System.arraycopy( SnappyCodec.MAGIC_HEADER, 0, header, 0, SnappyCodec.MAGIC_HEADER.length );
+    writeIntBE( header, SnappyCodec.MAGIC_HEADER.length, SnappyCodec.DEFAULT_VERSION );
+    writeIntBE( header, SnappyCodec.MAGIC_HEADER.length + 4, SnappyCodec.MINIMUM_COMPATIBLE_VERSION );
+    out.write( header );
+  }
+
+  @Override
+  protected byte[] compressBlock( byte[] data, int length ) throws IOException {
+    byte[] chunk = new byte[4 + Snappy.maxCompressedLength( length )];
+    int compressedLength = Snappy.rawCompress( data, 0, length, chunk, 4 );
+    writeIntBE( chunk, 0, compressedLength );
+    return Arrays.copyOf( chunk, 4 + compressedLength );
+  }
+
+  private static void writeIntBE( byte[] buffer, int offset, int value ) {
+    buffer[offset] = (byte) ( ( value >> 24 ) & 0xff );
+    buffer[offset + 1] = (byte) ( ( value >> 16 ) & 0xff );
+    buffer[offset + 2] = (byte) ( ( value >> 8 ) & 0xff );
+    buffer[offset + 3] = (byte) ( value & 0xff );
+  }
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.snappy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.pentaho.di.core.compress.CompressionProvider;
+
+/**
+ * Same format as the Snappy provider, but output is compressed in blocks on a pool of worker threads.
+ */
+public class ParallelSnappyCompressionProvider implements CompressionProvider {
+
+  @Override
+  public SnappyCompressionInputStream createInputStream( InputStream in ) throws IOException {
+    return new SnappyCompressionInputStream( in, this );
+  }
+
+  @Override
+  public boolean supportsInput() {
+    return true;
+  }
+
+  @Override
+  public ParallelSnappyCompressionOutputStream createOutputStream( OutputStream out ) throws IOException {
+    return new ParallelSnappyCompressionOutputStream( out, this );
+  }
+
+  @Override
+  public boolean supportsOutput() {
+    return true;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Parallel Snappy compression";
+  }
+
+  @Override
+  public String getName() {
+    return "Parallel Snappy";
+  }
+
+  @Override
+  public String getDefaultExtension() {
+    return null;
+  }
+}
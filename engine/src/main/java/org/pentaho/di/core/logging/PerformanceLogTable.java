@@ -58,7 +58,8 @@ public class PerformanceLogTable extends BaseLogTable implements Cloneable, LogT
       "STEPNAME" ), STEP_COPY( "STEP_COPY" ), LINES_READ( "LINES_READ" ), LINES_WRITTEN( "LINES_WRITTEN" ),
       LINES_UPDATED( "LINES_UPDATED" ), LINES_INPUT( "LINES_INPUT" ), LINES_OUTPUT( "LINES_OUTPUT" ),
       LINES_REJECTED( "LINES_REJECTED" ), ERRORS( "ERRORS" ), INPUT_BUFFER_ROWS( "INPUT_BUFFER_ROWS" ),
-      OUTPUT_BUFFER_ROWS( "OUTPUT_BUFFER_ROWS" );
+      OUTPUT_BUFFER_ROWS( "OUTPUT_BUFFER_ROWS" ), INPUT_WAIT_TIME( "INPUT_WAIT_TIME" ),
+      OUTPUT_WAIT_TIME( "OUTPUT_WAIT_TIME" ), BOTTLENECK_SCORE( "BOTTLENECK_SCORE" );
 
     private String id;
 
@@ -159,6 +160,9 @@ public class PerformanceLogTable extends BaseLogTable implements Cloneable, LogT
     table.fields.add( new LogTableField( ID.ERRORS.id, true, false, "ERRORS", BaseMessages.getString( PKG, "PerformanceLogTable.FieldName.Errors" ), BaseMessages.getString( PKG, "PerformanceLogTable.FieldDescription.Errors" ), ValueMetaInterface.TYPE_INTEGER, 18 ) );
     table.fields.add( new LogTableField( ID.INPUT_BUFFER_ROWS.id, true, false, "INPUT_BUFFER_ROWS", BaseMessages.getString( PKG, "PerformanceLogTable.FieldName.InputBufferRows" ), BaseMessages.getString( PKG, "PerformanceLogTable.FieldDescription.InputBufferRows" ), ValueMetaInterface.TYPE_INTEGER, 18 ) );
     table.fields.add( new LogTableField( ID.OUTPUT_BUFFER_ROWS.id, true, false, "OUTPUT_BUFFER_ROWS", BaseMessages.getString( PKG, "PerformanceLogTable.FieldName.OutputBufferRows" ), BaseMessages.getString( PKG, "PerformanceLogTable.FieldDescription.OutputBufferRows" ), ValueMetaInterface.TYPE_INTEGER, 18 ) );
+    table.fields.add( new LogTableField( ID.INPUT_WAIT_TIME.id, false, false, "INPUT_WAIT_TIME", BaseMessages.getString( PKG, "PerformanceLogTable.FieldName.InputWaitTime" ), BaseMessages.getString( PKG, "PerformanceLogTable.FieldDescription.InputWaitTime" ), ValueMetaInterface.TYPE_INTEGER, 18 ) );
+    table.fields.add( new LogTableField( ID.OUTPUT_WAIT_TIME.id, false, false, "OUTPUT_WAIT_TIME", BaseMessages.getString( PKG, "PerformanceLogTable.FieldName.OutputWaitTime" ), BaseMessages.getString( PKG, "PerformanceLogTable.FieldDescription.OutputWaitTime" ), ValueMetaInterface.TYPE_INTEGER, 18 ) );
+    table.fields.add( new LogTableField( ID.BOTTLENECK_SCORE.id, false, false, "BOTTLENECK_SCORE", BaseMessages.getString( PKG, "PerformanceLogTable.FieldName.BottleneckScore" ), BaseMessages.getString( PKG, "PerformanceLogTable.FieldDescription.BottleneckScore" ), ValueMetaInterface.TYPE_NUMBER, -1 ) );
 
     table.findField( ID.ID_BATCH.id ).setKey( true );
     table.findField( ID.LOGDATE.id ).setLogDateField( true );
@@ -254,6 +258,15 @@ public class PerformanceLogTable extends BaseLogTable implements Cloneable, LogT
               case OUTPUT_BUFFER_ROWS:
                 value = new Long( snapShot.getOutputBufferSize() );
                 break;
+              case INPUT_WAIT_TIME:
+                value = new Long( snapShot.getInputWaitTime() );
+                break;
+              case OUTPUT_WAIT_TIME:
+                value = new Long( snapShot.getOutputWaitTime() );
+                break;
+              case BOTTLENECK_SCORE:
+                value = new Double( snapShot.getBottleneckScore() );
+                break;
               default:
                 break;
             }
@@ -0,0 +1,177 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.spill;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * A temporary file with rows of one layout, created by the {@link SpillManager}. Rows are appended until the first
+ * reader is opened, after that the file can be read any number of times, by several readers at once.
+ */
+public class SpillFile {
+
+  static final int BUFFER_SIZE = 65536;
+
+  private final SpillManager manager;
+  private final FileObject file;
+  private final RowMetaInterface rowMeta;
+  private final CompressionProvider compressionProvider;
+
+  private CountingOutputStream counter;
+  private DataOutputStream output;
+  private long rowCount;
+
+  SpillFile( SpillManager manager, FileObject file, RowMetaInterface rowMeta, CompressionProvider compressionProvider )
+    throws KettleException {
+    this.manager = manager;
+    this.file = file;
+    this.rowMeta = rowMeta;
+    this.compressionProvider = compressionProvider;
+    try {
+      counter = new CountingOutputStream( KettleVFS.getOutputStream( file, false ) );
+      OutputStream outputStream = counter;
+      if ( compressionProvider != null ) {
+        outputStream = compressionProvider.createOutputStream( outputStream );
+      }
+      output = new DataOutputStream( new BufferedOutputStream( outputStream, BUFFER_SIZE ) );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to open spill file " + file, e );
+    }
+  }
+
+  /**
+   * Appends a row to the file.
+   */
+  public void add( Object[] row ) throws KettleException {
+    if ( output == null ) {
+      throw new KettleException( "Rows can't be added to spill file " + file + " once it is read" );
+    }
+    rowMeta.writeData( output, row );
+    rowCount++;
+    manager.rowWritten();
+  }
+
+  /**
+   * Closes the file for writing, it is done automatically when the first reader is opened.
+   */
+  public void finish() throws KettleException {
+    if ( output != null ) {
+      try {
+        output.close();
+      } catch ( IOException e ) {
+        throw new KettleException( "Unable to close spill file " + file, e );
+      } finally {
+        output = null;
+        manager.bytesWritten( counter.count );
+      }
+    }
+  }
+
+  /**
+   * @return a reader positioned at the first row of the file
+   */
+  public SpillReader openReader() throws KettleException {
+    finish();
+    return new SpillReader( this );
+  }
+
+  /**
+   * Closes the file if it's still open for writing and deletes it.
+   *
+   * @return true if the file was deleted
+   */
+  public boolean delete() {
+    if ( output != null ) {
+      try {
+        output.close();
+      } catch ( IOException e ) {
+        // Ignore, the file is deleted anyway
+      }
+      output = null;
+    }
+    try {
+      return file.delete();
+    } catch ( IOException e ) {
+      return false;
+    }
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public FileObject getFile() {
+    return file;
+  }
+
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  CompressionProvider getCompressionProvider() {
+    return compressionProvider;
+  }
+
+  SpillManager getManager() {
+    return manager;
+  }
+
+  @Override
+  public String toString() {
+    return file.toString();
+  }
+
+  /**
+   * Counts the bytes written to the file, after compression.
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream( OutputStream out ) {
+      super( out );
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+      out.write( b );
+      count++;
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+      out.write( b, off, len );
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.spill;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Creates the temporary files the steps of a transformation write rows to when they can't keep them in memory, and
+ * keeps track of the rows they buffer in memory. The steps share a budget of rows in memory: a step that asks for more
+ * while the budget is used up is told to write its rows to disk. The number of spill files, rows and bytes written is
+ * kept for reporting.
+ *
+ * @see Const#KETTLE_TRANS_SPILL_MEMORY_ROWS
+ * @see Const#KETTLE_SPILL_COMPRESSION
+ */
+public class SpillManager {
+
+  public static final String DEFAULT_COMPRESSION = "Snappy";
+
+  /**
+   * A step is never asked to spill while it has less rows in memory, so that it doesn't write a file for every row
+   */
+  static final int MIN_SPILL_ROWS = 1000;
+
+  private final long memoryRows;
+  private final String compression;
+  private volatile CompressionProvider compressionProvider;
+
+  private final AtomicLong rowsInMemory = new AtomicLong();
+  private final AtomicLong peakRowsInMemory = new AtomicLong();
+  private final AtomicLong filesCreated = new AtomicLong();
+  private final AtomicLong rowsWritten = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final AtomicLong rowsRead = new AtomicLong();
+
+  /**
+   * @param memoryRows
+   *          the number of rows all the steps can keep in memory together, 0 or less for no limit
+   * @param compression
+   *          the name of the compression provider for the spill files of steps that compress them, null or None to not
+   *          compress
+   */
+  public SpillManager( long memoryRows, String compression ) {
+    this.memoryRows = memoryRows;
+    this.compression = compression;
+  }
+
+  /**
+   * Creates a spill manager configured with the KETTLE_TRANS_SPILL_MEMORY_ROWS and KETTLE_SPILL_COMPRESSION variables.
+   */
+  public static SpillManager fromVariables( VariableSpace space ) {
+    long memoryRows = Const.toLong( space.environmentSubstitute(
+      space.getVariable( Const.KETTLE_TRANS_SPILL_MEMORY_ROWS ) ), 0L );
+    String compression = Const.NVL( space.environmentSubstitute(
+      space.getVariable( Const.KETTLE_SPILL_COMPRESSION ) ), DEFAULT_COMPRESSION );
+    return new SpillManager( memoryRows, compression );
+  }
+
+  /**
+   * @return a new account to keep track of the rows a step buffers in memory
+   */
+  public MemoryAccount openAccount() {
+    return new MemoryAccount();
+  }
+
+  /**
+   * Creates a new, empty spill file in the directory.
+   *
+   * @param prefix
+   *          the prefix of the file name
+   * @param directory
+   *          the directory to create the file in, null for the default temporary directory
+   * @param space
+   *          the variables to resolve the directory with
+   * @param rowMeta
+   *          the layout of the rows that will be written to the file
+   * @param compress
+   *          true to compress the file with the compression of this manager
+   */
+  public SpillFile createFile( String prefix, String directory, VariableSpace space, RowMetaInterface rowMeta,
+    boolean compress ) throws KettleException {
+    FileObject file = KettleVFS.createTempFile( Const.NVL( prefix, "spill" ), ".tmp",
+      Utils.isEmpty( directory ) ? KettleVFS.TEMP_DIR : directory, space );
+    filesCreated.incrementAndGet();
+    return new SpillFile( this, file, rowMeta, compress ? getCompressionProvider() : null );
+  }
+
+  private CompressionProvider getCompressionProvider() {
+    if ( compressionProvider == null && compression != null && !"None".equalsIgnoreCase( compression ) ) {
+      compressionProvider = CompressionProviderFactory.getInstance().getCompressionProviderByName( compression );
+    }
+    return compressionProvider;
+  }
+
+  public long getMemoryRows() {
+    return memoryRows;
+  }
+
+  public String getCompression() {
+    return compression;
+  }
+
+  public long getRowsInMemory() {
+    return rowsInMemory.get();
+  }
+
+  public long getPeakRowsInMemory() {
+    return peakRowsInMemory.get();
+  }
+
+  public long getFilesCreated() {
+    return filesCreated.get();
+  }
+
+  public long getRowsWritten() {
+    return rowsWritten.get();
+  }
+
+  /**
+   * @return the size of the written spill files, after compression
+   */
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  public long getRowsRead() {
+    return rowsRead.get();
+  }
+
+  void rowWritten() {
+    rowsWritten.incrementAndGet();
+  }
+
+  void bytesWritten( long bytes ) {
+    bytesWritten.addAndGet( bytes );
+  }
+
+  void rowRead() {
+    rowsRead.incrementAndGet();
+  }
+
+  /**
+   * Keeps track of the rows one step buffers in memory.
+   */
+  public class MemoryAccount {
+    private long rows;
+
+    /**
+     * Adds rows the step keeps in memory.
+     *
+     * @return false if the memory budget of the transformation is used up and the step should write the rows it keeps
+     *         in memory to disk
+     */
+    public boolean add( int nrRows ) {
+      rows += nrRows;
+      long total = rowsInMemory.addAndGet( nrRows );
+      long peak = peakRowsInMemory.get();
+      while ( total > peak && !peakRowsInMemory.compareAndSet( peak, total ) ) {
+        peak = peakRowsInMemory.get();
+      }
+      return memoryRows <= 0 || total <= memoryRows || rows < MIN_SPILL_ROWS;
+    }
+
+    /**
+     * Releases all the rows of the step, for example after they were written to disk.
+     */
+    public void release() {
+      rowsInMemory.addAndGet( -rows );
+      rows = 0;
+    }
+
+    /**
+     * Releases some of the rows of the step.
+     */
+    public void release( long nrRows ) {
+      long released = Math.min( nrRows, rows );
+      rowsInMemory.addAndGet( -released );
+      rows -= released;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+  }
+}
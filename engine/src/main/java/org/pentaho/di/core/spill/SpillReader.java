@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.spill;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Reads the rows of a {@link SpillFile} in the order they were written. A reader can be rewound to scan the file again,
+ * for example for every row of the other side of a cartesian product.
+ */
+public class SpillReader {
+
+  private final SpillFile spillFile;
+  private DataInputStream input;
+  private long position;
+
+  SpillReader( SpillFile spillFile ) throws KettleException {
+    this.spillFile = spillFile;
+    open();
+  }
+
+  private void open() throws KettleException {
+    try {
+      InputStream inputStream = KettleVFS.getInputStream( spillFile.getFile() );
+      if ( spillFile.getCompressionProvider() != null ) {
+        inputStream = spillFile.getCompressionProvider().createInputStream( inputStream );
+      }
+      input = new DataInputStream( new BufferedInputStream( inputStream, SpillFile.BUFFER_SIZE ) );
+      position = 0;
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to open spill file " + spillFile, e );
+    }
+  }
+
+  public boolean hasNext() {
+    return position < spillFile.getRowCount();
+  }
+
+  /**
+   * @return the next row of the file, null once all the rows are read
+   */
+  public Object[] next() throws KettleException {
+    if ( !hasNext() ) {
+      return null;
+    }
+    try {
+      Object[] row = spillFile.getRowMeta().readData( input );
+      position++;
+      spillFile.getManager().rowRead();
+      return row;
+    } catch ( SocketTimeoutException e ) {
+      throw new KettleException( "Unable to read from spill file " + spillFile, e );
+    }
+  }
+
+  /**
+   * Positions the reader at the first row of the file again.
+   */
+  public void rewind() throws KettleException {
+    close();
+    open();
+  }
+
+  /**
+   * @return the number of rows read since the file was opened or rewound
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  public void close() {
+    if ( input != null ) {
+      try {
+        input.close();
+      } catch ( IOException e ) {
+        // Ignore
+      }
+      input = null;
+    }
+  }
+}
@@ -615,6 +615,7 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     } else {
       prevResult = new Result();
     }
+    final Result clonedResult = prevResult;
 
     JobExecutionExtension extension = new JobExecutionExtension( this, prevResult, jobEntryCopy, true );
     ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.JobBeforeJobEntryExecution.id, extension );
@@ -875,8 +876,14 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     //
     for ( Result threadResult : threadResults ) {
       res.add( threadResult );
+      clearRows( threadResult, res );
     }
 
+    // The next job entries have taken their copy of the result rows, remove the ones that are not returned
+    //
+    clearRows( clonedResult, res );
+    clearRows( newResult, res );
+
     // If there have been errors, logically, we need to set the result to
     // "false"...
     //
@@ -887,6 +894,17 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
     return res;
   }
 
+  /**
+   * Removes the rows of a result the job is done with, and the file they were written to if any, unless the rows are
+   * also those of the result that is kept.
+   */
+  private static void clearRows( Result done, Result kept ) {
+    List<RowMetaAndData> rows = done.getRows();
+    if ( done != kept && rows != null && rows != kept.getRows() ) {
+      rows.clear();
+    }
+  }
+
   /**
    * Wait until this job has finished.
    */
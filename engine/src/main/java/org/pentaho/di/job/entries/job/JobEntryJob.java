@@ -28,6 +28,7 @@ import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.ObjectLocationSpecificationMethod;
 import org.pentaho.di.core.Result;
+import org.pentaho.di.core.ResultRows;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.SQLStatement;
@@ -687,7 +688,8 @@ public class JobEntryJob extends JobEntryBase implements Cloneable, JobEntryInte
 
       RowMetaAndData resultRow = null;
       boolean first = true;
-      List<RowMetaAndData> rows = new ArrayList<RowMetaAndData>( result.getRows() );
+      // The rows to execute for are taken out of the result below instead of being copied
+      List<RowMetaAndData> rows = result.getRows();
 
       while ( ( first && !execPerRow )
         || ( execPerRow && rows != null && iteration < rows.size() && result.getNrErrors() == 0 ) ) {
@@ -697,7 +699,11 @@ public class JobEntryJob extends JobEntryBase implements Cloneable, JobEntryInte
         // Otherwise we double the amount of rows every iteration in the simple cases.
         //
         if ( execPerRow ) {
-          result.getRows().clear();
+          if ( result.getRows() == rows ) {
+            result.setRows( new ResultRows() );
+          } else {
+            result.getRows().clear();
+          }
         }
 
         if ( rows != null && execPerRow ) {
@@ -1119,7 +1125,17 @@ public class JobEntryJob extends JobEntryBase implements Cloneable, JobEntryInte
 
         // Set the result rows too, if any ...
         if ( !Utils.isEmpty( oneResult.getRows() ) ) {
-          result.setRows( new ArrayList<RowMetaAndData>( oneResult.getRows() ) );
+          List<RowMetaAndData> replacedRows = result.getRows();
+          List<RowMetaAndData> oneResultRows = oneResult.getRows();
+          result.setRows( oneResultRows instanceof ResultRows
+            ? ( (ResultRows) oneResultRows ).copy() : new ResultRows( oneResultRows ) );
+          // The job is done with its rows, the copy keeps the rows written to disk
+          if ( oneResultRows != rows && oneResultRows != replacedRows ) {
+            oneResultRows.clear();
+          }
+          if ( replacedRows != rows ) {
+            replacedRows.clear();
+          }
         }
 
         // if one of them fails (in the loop), increase the number of errors
@@ -1131,6 +1147,11 @@ public class JobEntryJob extends JobEntryBase implements Cloneable, JobEntryInte
         iteration++;
       }
 
+      // The rows taken out of the result are no longer needed, remove them and their file if any
+      if ( rows != null && rows != result.getRows() ) {
+        rows.clear();
+      }
+
     } catch ( KettleException ke ) {
       logError( "Error running job entry 'job' : ", ke );
 
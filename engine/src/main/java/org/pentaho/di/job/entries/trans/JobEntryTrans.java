@@ -39,6 +39,7 @@ import org.pentaho.di.core.listeners.impl.EntryCurrentDirectoryChangedListener;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.ObjectLocationSpecificationMethod;
 import org.pentaho.di.core.Result;
+import org.pentaho.di.core.ResultRows;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.SQLStatement;
@@ -732,7 +733,8 @@ public class JobEntryTrans extends JobEntryBase implements Cloneable, JobEntryIn
 
     RowMetaAndData resultRow = null;
     boolean first = true;
-    List<RowMetaAndData> rows = new ArrayList<RowMetaAndData>( result.getRows() );
+    // The rows to execute for are taken out of the result below instead of being copied
+    List<RowMetaAndData> rows = result.getRows();
 
     while ( ( first && !execPerRow )
       || ( execPerRow && rows != null && iteration < rows.size() && result.getNrErrors() == 0 )
@@ -741,7 +743,11 @@ public class JobEntryTrans extends JobEntryBase implements Cloneable, JobEntryIn
       // Otherwise we double the amount of rows every iteration in the simple cases.
       //
       if ( execPerRow ) {
-        result.getRows().clear();
+        if ( result.getRows() == rows ) {
+          result.setRows( new ResultRows() );
+        } else {
+          result.getRows().clear();
+        }
       }
       if ( rows != null && execPerRow ) {
         resultRow = rows.get( iteration );
@@ -785,7 +791,7 @@ public class JobEntryTrans extends JobEntryBase implements Cloneable, JobEntryIn
         }
 
         if ( clearResultRows ) {
-          previousResult.setRows( new ArrayList<RowMetaAndData>() );
+          previousResult.setRows( new ResultRows() );
         }
 
         if ( clearResultFiles ) {
@@ -1185,7 +1191,12 @@ public class JobEntryTrans extends JobEntryBase implements Cloneable, JobEntryIn
 
             // Set the result rows too, if any ...
             if ( !Utils.isEmpty( newResult.getRows() ) ) {
+              List<RowMetaAndData> replacedRows = result.getRows();
               result.setRows( newResult.getRows() );
+              if ( replacedRows != rows && replacedRows != newResult.getRows() ) {
+                // Removes the file of the replaced rows, if any
+                replacedRows.clear();
+              }
             }
 
             if ( setLogfile ) {
@@ -1211,6 +1222,11 @@ public class JobEntryTrans extends JobEntryBase implements Cloneable, JobEntryIn
       iteration++;
     }
 
+    // The rows taken out of the result are no longer needed, remove them and their file if any
+    if ( rows != null && rows != result.getRows() ) {
+      rows.clear();
+    }
+
     if ( setLogfile ) {
       if ( logChannelFileWriter != null ) {
         logChannelFileWriter.stopLogging();
@@ -23,6 +23,7 @@
 package org.pentaho.di.repository.kdr.delegates;
 
 import java.util.List;
+import java.util.Map;
 
 import org.pentaho.di.cluster.ClusterSchema;
 import org.pentaho.di.cluster.SlaveServer;
@@ -34,6 +35,7 @@ import org.pentaho.di.core.exception.KettleObjectExistsException;
 import org.pentaho.di.core.row.value.ValueMetaBoolean;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.repository.LongObjectId;
 import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
 
@@ -41,11 +43,46 @@ public class KettleDatabaseRepositoryClusterSchemaDelegate extends KettleDatabas
 
   // private static Class<?> PKG = ClusterSchema.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The rows of all the cluster schemas, filled by fillClusterSchemaBuffer()
+   */
+  private Map<Long, RowMetaAndData> clusterSchemaBuffer;
+
+  /**
+   * The cluster-slave rows of all the cluster schemas by cluster schema ID, filled by fillClusterSchemaBuffer()
+   */
+  private Map<Long, List<RowMetaAndData>> clusterSlaveBuffer;
+
   public KettleDatabaseRepositoryClusterSchemaDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
 
+  /**
+   * Reads the rows and slave server links of all the cluster schemas with one query each. Until
+   * clearClusterSchemaBuffer() is called, loadClusterSchema() uses these rows instead of querying the repository.
+   */
+  public void fillClusterSchemaBuffer() throws KettleException {
+    clusterSchemaBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_CLUSTER ), KettleDatabaseRepository.FIELD_CLUSTER_ID_CLUSTER );
+    clusterSlaveBuffer = repository.connectionDelegate.getRowGroupsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_CLUSTER_SLAVE ) + " ORDER BY "
+      + quote( KettleDatabaseRepository.FIELD_CLUSTER_SLAVE_ID_CLUSTER_SLAVE ),
+      KettleDatabaseRepository.FIELD_CLUSTER_SLAVE_ID_CLUSTER );
+  }
+
+  public void clearClusterSchemaBuffer() {
+    clusterSchemaBuffer = null;
+    clusterSlaveBuffer = null;
+  }
+
   public RowMetaAndData getClusterSchema( ObjectId id_cluster_schema ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = clusterSchemaBuffer;
+    if ( buffer != null && id_cluster_schema != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_cluster_schema ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_CLUSTER ),
       quote( KettleDatabaseRepository.FIELD_CLUSTER_ID_CLUSTER ), id_cluster_schema );
@@ -73,7 +110,7 @@ public class KettleDatabaseRepositoryClusterSchemaDelegate extends KettleDatabas
       KettleDatabaseRepository.FIELD_CLUSTER_SOCKETS_COMPRESSED, true ) );
     clusterSchema.setDynamic( row.getBoolean( KettleDatabaseRepository.FIELD_CLUSTER_DYNAMIC, true ) );
 
-    ObjectId[] pids = repository.getClusterSlaveIDs( id_cluster_schema );
+    ObjectId[] pids = getClusterSlaveIDs( id_cluster_schema );
     for ( int i = 0; i < pids.length; i++ ) {
       SlaveServer slaveServer = repository.loadSlaveServer( pids[i], null ); // Load last version
       SlaveServer reference = SlaveServer.findSlaveServer( slaveServers, slaveServer.getName() );
@@ -87,6 +124,24 @@ public class KettleDatabaseRepositoryClusterSchemaDelegate extends KettleDatabas
     return clusterSchema;
   }
 
+  private ObjectId[] getClusterSlaveIDs( ObjectId id_cluster_schema ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = clusterSchemaBuffer;
+    Map<Long, List<RowMetaAndData>> slaves = clusterSlaveBuffer;
+    long id = new LongObjectId( id_cluster_schema ).longValue();
+    if ( buffer == null || slaves == null || !buffer.containsKey( id ) ) {
+      return repository.getClusterSlaveIDs( id_cluster_schema );
+    }
+    List<RowMetaAndData> rows = slaves.get( id );
+    if ( rows == null ) {
+      return new ObjectId[0];
+    }
+    ObjectId[] ids = new ObjectId[rows.size()];
+    for ( int i = 0; i < ids.length; i++ ) {
+      ids[i] = new LongObjectId( rows.get( i ).getInteger( KettleDatabaseRepository.FIELD_CLUSTER_SLAVE_ID_SLAVE, 0 ) );
+    }
+    return ids;
+  }
+
   public void saveClusterSchema( ClusterSchema clusterSchema, String versionComment ) throws KettleException {
     saveClusterSchema( clusterSchema, versionComment, null, false );
   }
@@ -22,6 +22,11 @@
 
 package org.pentaho.di.repository.kdr.delegates;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.pentaho.di.core.Condition;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
@@ -38,11 +43,89 @@ public class KettleDatabaseRepositoryConditionDelegate extends KettleDatabaseRep
 
   // private static Class<?> PKG = Condition.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * Set by enableConditionBuffer(): read all the conditions when the first one is loaded
+   */
+  private boolean conditionBufferEnabled;
+
+  /**
+   * The rows of all the conditions, filled by the first loadCondition() after enableConditionBuffer()
+   */
+  private Map<Long, RowMetaAndData> conditionBuffer;
+
+  /**
+   * The rows of all the conditions by parent condition ID, in the order of their IDs
+   */
+  private Map<Long, List<RowMetaAndData>> subConditionBuffer;
+
   public KettleDatabaseRepositoryConditionDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
 
+  /**
+   * Makes the next loadCondition() read all the conditions and their values with one query each. Conditions don't
+   * refer to the object that uses them, so the buffer is only filled once a condition is actually needed. Until
+   * clearConditionBuffer() is called, loadCondition() uses these rows instead of querying the repository for every
+   * (sub-)condition.
+   */
+  public void enableConditionBuffer() {
+    conditionBufferEnabled = true;
+  }
+
+  public void clearConditionBuffer() {
+    conditionBufferEnabled = false;
+    conditionBuffer = null;
+    subConditionBuffer = null;
+    repository.valueDelegate.clearValueBuffer();
+  }
+
+  private synchronized void fillConditionBuffer() throws KettleException {
+    if ( !conditionBufferEnabled || conditionBuffer != null ) {
+      return;
+    }
+    Map<Long, RowMetaAndData> buffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_CONDITION ) + " ORDER BY "
+      + quote( KettleDatabaseRepository.FIELD_CONDITION_ID_CONDITION ),
+      KettleDatabaseRepository.FIELD_CONDITION_ID_CONDITION );
+    Map<Long, List<RowMetaAndData>> subConditions = new HashMap<Long, List<RowMetaAndData>>();
+    for ( RowMetaAndData row : buffer.values() ) {
+      long id_parent = row.getInteger( KettleDatabaseRepository.FIELD_CONDITION_ID_CONDITION_PARENT, 0L );
+      if ( id_parent > 0 ) {
+        subConditions.computeIfAbsent( id_parent, key -> new ArrayList<RowMetaAndData>() ).add( row );
+      }
+    }
+    subConditionBuffer = subConditions;
+    repository.valueDelegate.fillConditionValueBuffer();
+    conditionBuffer = buffer;
+  }
+
+  private ObjectId[] getSubConditionIDs( ObjectId id_condition ) throws KettleException {
+    Map<Long, RowMetaAndData> conditions = conditionBuffer;
+    Map<Long, List<RowMetaAndData>> buffer = subConditionBuffer;
+    if ( conditions == null || buffer == null || id_condition == null
+      || !conditions.containsKey( new LongObjectId( id_condition ).longValue() ) ) {
+      return repository.getSubConditionIDs( id_condition );
+    }
+    List<RowMetaAndData> rows = buffer.get( new LongObjectId( id_condition ).longValue() );
+    if ( rows == null ) {
+      return new ObjectId[0];
+    }
+    ObjectId[] ids = new ObjectId[rows.size()];
+    for ( int i = 0; i < ids.length; i++ ) {
+      ids[i] = new LongObjectId( rows.get( i ).getInteger( KettleDatabaseRepository.FIELD_CONDITION_ID_CONDITION, 0 ) );
+    }
+    return ids;
+  }
+
   public RowMetaAndData getCondition( ObjectId id_condition ) throws KettleException {
+    fillConditionBuffer();
+    Map<Long, RowMetaAndData> buffer = conditionBuffer;
+    if ( buffer != null && id_condition != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_condition ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_CONDITION ),
       quote( KettleDatabaseRepository.FIELD_CONDITION_ID_CONDITION ), id_condition );
@@ -73,7 +156,7 @@ public class KettleDatabaseRepositoryConditionDelegate extends KettleDatabaseRep
           condition.setObjectId( null );
         }
 
-        ObjectId[] subids = repository.getSubConditionIDs( condition.getObjectId() );
+        ObjectId[] subids = getSubConditionIDs( condition.getObjectId() );
         if ( subids.length == 0 ) {
           condition.setLeftValuename( r.getString( "LEFT_NAME", null ) );
           condition.setFunction( Condition.getFunction( r.getString( "CONDITION_FUNCTION", null ) ) );
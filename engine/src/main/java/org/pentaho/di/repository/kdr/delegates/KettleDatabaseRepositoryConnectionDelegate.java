@@ -30,6 +30,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -1937,6 +1938,92 @@ public class KettleDatabaseRepositoryConnectionDelegate extends KettleDatabaseRe
     } );
   }
 
+  /**
+   * Reads all the rows returned by a query in one go and indexes them on the value of an ID column. This replaces a
+   * series of getOneRow() calls when the rows of a complete transformation or job are needed.
+   *
+   * @param sql
+   *          the query, with a parameter for each of the given IDs
+   * @param idField
+   *          the name of the (integer) ID column to index the rows on
+   * @param ids
+   *          the query parameters
+   * @return the rows by ID, in the order returned by the database
+   */
+  public synchronized Map<Long, RowMetaAndData> getRowsByID( String sql, String idField, ObjectId... ids ) throws KettleException {
+    PreparedStatement ps = getPreparedStatement( sql );
+    RowMetaAndData parameter = getParameterMetaData( ids );
+
+    return callRead( new Callable<Map<Long, RowMetaAndData>>() {
+      @Override public Map<Long, RowMetaAndData> call() throws Exception {
+        ResultSet resultSet = null;
+        try {
+          resultSet = database.openQuery( ps, parameter.getRowMeta(), parameter.getData() );
+          List<Object[]> rows = database.getRows( resultSet, 0, null );
+          RowMetaInterface rowMeta = database.getReturnRowMeta();
+          int idIndex = rowMeta.indexOfValue( idField );
+          if ( idIndex < 0 ) {
+            throw new KettleDatabaseException( "Unknown column '" + idField + "' in the result of: " + sql );
+          }
+          Map<Long, RowMetaAndData> result = new LinkedHashMap<Long, RowMetaAndData>();
+          for ( Object[] row : rows ) {
+            Long id = rowMeta.getInteger( row, idIndex );
+            if ( id != null ) {
+              result.put( id, new RowMetaAndData( rowMeta, row ) );
+            }
+          }
+          return result;
+        } finally {
+          database.closeQuery( resultSet );
+        }
+      }
+    } );
+  }
+
+  /**
+   * Reads all the rows returned by a query in one go and groups them on the value of an ID column, typically the ID
+   * of the parent object. This replaces a lookup of the child IDs followed by a getOneRow() call per child.
+   *
+   * @param sql
+   *          the query, with a parameter for each of the given IDs
+   * @param idField
+   *          the name of the (integer) ID column to group the rows on
+   * @param ids
+   *          the query parameters
+   * @return the rows by ID, in the order returned by the database
+   */
+  public synchronized Map<Long, List<RowMetaAndData>> getRowGroupsByID( String sql, String idField, ObjectId... ids )
+    throws KettleException {
+    PreparedStatement ps = getPreparedStatement( sql );
+    RowMetaAndData parameter = getParameterMetaData( ids );
+
+    return callRead( new Callable<Map<Long, List<RowMetaAndData>>>() {
+      @Override public Map<Long, List<RowMetaAndData>> call() throws Exception {
+        ResultSet resultSet = null;
+        try {
+          resultSet = database.openQuery( ps, parameter.getRowMeta(), parameter.getData() );
+          List<Object[]> rows = database.getRows( resultSet, 0, null );
+          RowMetaInterface rowMeta = database.getReturnRowMeta();
+          int idIndex = rowMeta.indexOfValue( idField );
+          if ( idIndex < 0 ) {
+            throw new KettleDatabaseException( "Unknown column '" + idField + "' in the result of: " + sql );
+          }
+          Map<Long, List<RowMetaAndData>> result = new LinkedHashMap<Long, List<RowMetaAndData>>();
+          for ( Object[] row : rows ) {
+            Long id = rowMeta.getInteger( row, idIndex );
+            if ( id != null ) {
+              result.computeIfAbsent( id, key -> new ArrayList<RowMetaAndData>() )
+                .add( new RowMetaAndData( rowMeta, row ) );
+            }
+          }
+          return result;
+        } finally {
+          database.closeQuery( resultSet );
+        }
+      }
+    } );
+  }
+
   private PreparedStatement getPreparedStatement( String sql ) throws KettleDatabaseException {
     PreparedStatement ps = sqlMap.get( sql );
     if ( ps == null ) {
@@ -24,9 +24,13 @@ package org.pentaho.di.repository.kdr.delegates;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
@@ -51,6 +55,22 @@ public class KettleDatabaseRepositoryDatabaseDelegate extends KettleDatabaseRepo
 
   private static final Class<?> PKG = DatabaseMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The rows of all the database connections, filled by fillDatabaseBuffer()
+   */
+  private Map<Long, RowMetaAndData> databaseBuffer;
+
+  /**
+   * The attribute rows of all the database connections by connection ID, filled by fillDatabaseBuffer()
+   */
+  private Map<Long, List<RowMetaAndData>> databaseAttributeBuffer;
+
+  /**
+   * The database type and access type codes read so far. A code never changes for a given ID so these can be kept.
+   */
+  private final Map<Long, String> databaseTypeCodeCache = new ConcurrentHashMap<Long, String>();
+  private final Map<Long, String> databaseConTypeCodeCache = new ConcurrentHashMap<Long, String>();
+
   public KettleDatabaseRepositoryDatabaseDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
@@ -63,20 +83,53 @@ public class KettleDatabaseRepositoryDatabaseDelegate extends KettleDatabaseRepo
   }
 
   public synchronized String getDatabaseTypeCode( ObjectId id_database_type ) throws KettleException {
-    return repository.connectionDelegate.getStringWithID(
-      quoteTable( KettleDatabaseRepository.TABLE_R_DATABASE_TYPE ),
-      quote( KettleDatabaseRepository.FIELD_DATABASE_TYPE_ID_DATABASE_TYPE ), id_database_type,
-      quote( KettleDatabaseRepository.FIELD_DATABASE_TYPE_CODE ) );
+    return getCode( databaseTypeCodeCache, KettleDatabaseRepository.TABLE_R_DATABASE_TYPE,
+      KettleDatabaseRepository.FIELD_DATABASE_TYPE_ID_DATABASE_TYPE, KettleDatabaseRepository.FIELD_DATABASE_TYPE_CODE,
+      id_database_type );
   }
 
   public synchronized String getDatabaseConTypeCode( ObjectId id_database_contype ) throws KettleException {
-    return repository.connectionDelegate.getStringWithID(
-      quoteTable( KettleDatabaseRepository.TABLE_R_DATABASE_CONTYPE ),
-      quote( KettleDatabaseRepository.FIELD_DATABASE_CONTYPE_ID_DATABASE_CONTYPE ), id_database_contype,
-      quote( KettleDatabaseRepository.FIELD_DATABASE_CONTYPE_CODE ) );
+    return getCode( databaseConTypeCodeCache, KettleDatabaseRepository.TABLE_R_DATABASE_CONTYPE,
+      KettleDatabaseRepository.FIELD_DATABASE_CONTYPE_ID_DATABASE_CONTYPE,
+      KettleDatabaseRepository.FIELD_DATABASE_CONTYPE_CODE, id_database_contype );
+  }
+
+  /**
+   * Looks up a code in a cache of the complete code table, reading the table the first time.
+   */
+  private String getCode( Map<Long, String> cache, String table, String idField, String codeField, ObjectId id )
+    throws KettleException {
+    if ( cache.isEmpty() ) {
+      Map<Long, RowMetaAndData> rows =
+        repository.connectionDelegate.getRowsByID( "SELECT * FROM " + quoteTable( table ), idField );
+      for ( Map.Entry<Long, RowMetaAndData> row : rows.entrySet() ) {
+        String code = row.getValue().getString( codeField, null );
+        if ( code != null ) {
+          cache.put( row.getKey(), code );
+        }
+      }
+    }
+    String code = id == null ? null : cache.get( new LongObjectId( id ).longValue() );
+    if ( code == null ) {
+      // Registered after the cache was filled or not there at all: ask the database
+      //
+      code = repository.connectionDelegate.getStringWithID( quoteTable( table ), quote( idField ), id,
+        quote( codeField ) );
+      if ( code != null ) {
+        cache.put( new LongObjectId( id ).longValue(), code );
+      }
+    }
+    return code;
   }
 
   public RowMetaAndData getDatabase( ObjectId id_database ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = databaseBuffer;
+    if ( buffer != null && id_database != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_database ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_DATABASE ),
       quote( KettleDatabaseRepository.FIELD_DATABASE_ID_DATABASE ), id_database );
@@ -105,6 +158,46 @@ public class KettleDatabaseRepositoryDatabaseDelegate extends KettleDatabaseRepo
     return attrs;
   }
 
+  /**
+   * Reads the rows and attributes of all the database connections with one query each. Until clearDatabaseBuffer() is
+   * called, loadDatabaseMeta() uses these rows instead of querying the repository for every connection.
+   */
+  public void fillDatabaseBuffer() throws KettleException {
+    databaseBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_DATABASE ),
+      KettleDatabaseRepository.FIELD_DATABASE_ID_DATABASE );
+    databaseAttributeBuffer = repository.connectionDelegate.getRowGroupsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_DATABASE_ATTRIBUTE ),
+      KettleDatabaseRepository.FIELD_DATABASE_ATTRIBUTE_ID_DATABASE );
+    for ( List<RowMetaAndData> attributes : databaseAttributeBuffer.values() ) {
+      Iterator<RowMetaAndData> iterator = attributes.iterator();
+      while ( iterator.hasNext() ) {
+        if ( iterator.next().getInteger( KettleDatabaseRepository.FIELD_DATABASE_ATTRIBUTE_ID_DATABASE_ATTRIBUTE, 0 )
+          <= 0 ) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  public void clearDatabaseBuffer() {
+    databaseBuffer = null;
+    databaseAttributeBuffer = null;
+  }
+
+  private Collection<RowMetaAndData> readDatabaseAttributes( ObjectId id_database ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = databaseBuffer;
+    Map<Long, List<RowMetaAndData>> attributeBuffer = databaseAttributeBuffer;
+    if ( buffer != null && attributeBuffer != null ) {
+      long id = new LongObjectId( id_database ).longValue();
+      if ( buffer.containsKey( id ) ) {
+        List<RowMetaAndData> attributes = attributeBuffer.get( id );
+        return attributes != null ? attributes : Collections.<RowMetaAndData>emptyList();
+      }
+    }
+    return repository.connectionDelegate.getDatabaseAttributes( id_database );
+  }
+
   /**
    *
    * Load the Database Info
@@ -141,7 +234,7 @@ public class KettleDatabaseRepositoryDatabaseDelegate extends KettleDatabaseRepo
         databaseMeta.setIndexTablespace( r.getString( KettleDatabaseRepository.FIELD_DATABASE_INDEX_TBS, "" ) );
 
         // Also, load all the properties we can find...
-        final Collection<RowMetaAndData> attrs = repository.connectionDelegate.getDatabaseAttributes( id_database );
+        final Collection<RowMetaAndData> attrs = readDatabaseAttributes( id_database );
         for ( RowMetaAndData row : attrs ) {
           String code = row.getString( KettleDatabaseRepository.FIELD_DATABASE_ATTRIBUTE_CODE, "" );
           String attribute = row.getString( KettleDatabaseRepository.FIELD_DATABASE_ATTRIBUTE_VALUE_STR, "" );
@@ -22,6 +22,8 @@
 
 package org.pentaho.di.repository.kdr.delegates;
 
+import java.util.Map;
+
 import org.pentaho.di.core.NotePadMeta;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleDatabaseException;
@@ -30,12 +32,18 @@ import org.pentaho.di.core.gui.Point;
 import org.pentaho.di.core.row.value.ValueMetaBoolean;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.repository.LongObjectId;
 import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
 
 public class KettleDatabaseRepositoryNotePadDelegate extends KettleDatabaseRepositoryBaseDelegate {
   // private static Class<?> PKG = NotePadMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The rows of the notes of the transformation being loaded, filled by fillTransNoteBuffer()
+   */
+  private Map<Long, RowMetaAndData> noteBuffer;
+
   public KettleDatabaseRepositoryNotePadDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
@@ -47,11 +55,39 @@ public class KettleDatabaseRepositoryNotePadDelegate extends KettleDatabaseRepos
   }
 
   public RowMetaAndData getNote( ObjectId id_note ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = noteBuffer;
+    if ( buffer != null && id_note != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_note ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_NOTE ), quote( KettleDatabaseRepository.FIELD_NOTE_ID_NOTE ),
       id_note );
   }
 
+  /**
+   * Reads the rows of all the notes of a transformation in a single query. Until clearNoteBuffer() is called,
+   * loadNotePadMeta() uses these rows instead of querying the repository for every note.
+   *
+   * @param id_transformation
+   *          the transformation to read the notes of
+   */
+  public void fillTransNoteBuffer( ObjectId id_transformation ) throws KettleException {
+    noteBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_NOTE ) + " WHERE "
+      + quote( KettleDatabaseRepository.FIELD_NOTE_ID_NOTE ) + " IN ( SELECT "
+      + quote( KettleDatabaseRepository.FIELD_TRANS_NOTE_ID_NOTE ) + " FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_TRANS_NOTE ) + " WHERE "
+      + quote( KettleDatabaseRepository.FIELD_TRANS_NOTE_ID_TRANSFORMATION ) + " = ? )",
+      KettleDatabaseRepository.FIELD_NOTE_ID_NOTE, id_transformation );
+  }
+
+  public void clearNoteBuffer() {
+    noteBuffer = null;
+  }
+
   public NotePadMeta loadNotePadMeta( ObjectId id_note ) throws KettleException {
     NotePadMeta note = new NotePadMeta();
     try {
@@ -22,6 +22,9 @@
 
 package org.pentaho.di.repository.kdr.delegates;
 
+import java.util.List;
+import java.util.Map;
+
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleDependencyException;
@@ -31,6 +34,7 @@ import org.pentaho.di.core.row.value.ValueMetaBoolean;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.partition.PartitionSchema;
+import org.pentaho.di.repository.LongObjectId;
 import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
 
@@ -38,11 +42,47 @@ public class KettleDatabaseRepositoryPartitionSchemaDelegate extends KettleDatab
 
   // private static Class<?> PKG = PartitionSchema.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The rows of all the partition schemas, filled by fillPartitionSchemaBuffer()
+   */
+  private Map<Long, RowMetaAndData> partitionSchemaBuffer;
+
+  /**
+   * The partition rows of all the partition schemas by partition schema ID, filled by fillPartitionSchemaBuffer()
+   */
+  private Map<Long, List<RowMetaAndData>> partitionBuffer;
+
   public KettleDatabaseRepositoryPartitionSchemaDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
 
+  /**
+   * Reads the rows and partitions of all the partition schemas with one query each. Until
+   * clearPartitionSchemaBuffer() is called, loadPartitionSchema() uses these rows instead of querying the repository.
+   */
+  public void fillPartitionSchemaBuffer() throws KettleException {
+    partitionSchemaBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_PARTITION_SCHEMA ),
+      KettleDatabaseRepository.FIELD_PARTITION_SCHEMA_ID_PARTITION_SCHEMA );
+    partitionBuffer = repository.connectionDelegate.getRowGroupsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_PARTITION ) + " ORDER BY "
+      + quote( KettleDatabaseRepository.FIELD_PARTITION_ID_PARTITION ),
+      KettleDatabaseRepository.FIELD_PARTITION_ID_PARTITION_SCHEMA );
+  }
+
+  public void clearPartitionSchemaBuffer() {
+    partitionSchemaBuffer = null;
+    partitionBuffer = null;
+  }
+
   public RowMetaAndData getPartitionSchema( ObjectId id_partition_schema ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = partitionSchemaBuffer;
+    if ( buffer != null && id_partition_schema != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_partition_schema ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_PARTITION_SCHEMA ),
       quote( KettleDatabaseRepository.FIELD_PARTITION_SCHEMA_ID_PARTITION_SCHEMA ), id_partition_schema );
@@ -131,9 +171,21 @@ public class KettleDatabaseRepositoryPartitionSchemaDelegate extends KettleDatab
 
     partitionSchema.setName( row.getString( "NAME", null ) );
 
-    ObjectId[] pids = repository.getPartitionIDs( id_partition_schema );
-    for ( int i = 0; i < pids.length; i++ ) {
-      partitionSchema.getPartitionIDs().add( getPartition( pids[i] ).getString( "PARTITION_ID", null ) );
+    Map<Long, RowMetaAndData> buffer = partitionSchemaBuffer;
+    Map<Long, List<RowMetaAndData>> partitions = partitionBuffer;
+    long id = new LongObjectId( id_partition_schema ).longValue();
+    if ( buffer != null && partitions != null && buffer.containsKey( id ) ) {
+      List<RowMetaAndData> rows = partitions.get( id );
+      if ( rows != null ) {
+        for ( RowMetaAndData partition : rows ) {
+          partitionSchema.getPartitionIDs().add( partition.getString( "PARTITION_ID", null ) );
+        }
+      }
+    } else {
+      ObjectId[] pids = repository.getPartitionIDs( id_partition_schema );
+      for ( int i = 0; i < pids.length; i++ ) {
+        partitionSchema.getPartitionIDs().add( getPartition( pids[i] ).getString( "PARTITION_ID", null ) );
+      }
     }
 
     partitionSchema.setDynamicallyDefined( row.getBoolean( "DYNAMIC_DEFINITION", false ) );
@@ -22,6 +22,8 @@
 
 package org.pentaho.di.repository.kdr.delegates;
 
+import java.util.Map;
+
 import org.pentaho.di.cluster.SlaveServer;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.encryption.Encr;
@@ -32,6 +34,7 @@ import org.pentaho.di.core.row.value.ValueMetaBoolean;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.LongObjectId;
 import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
 
@@ -39,11 +42,36 @@ public class KettleDatabaseRepositorySlaveServerDelegate extends KettleDatabaseR
 
   private static Class<?> PKG = SlaveServer.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The rows of all the slave servers, filled by fillSlaveServerBuffer()
+   */
+  private Map<Long, RowMetaAndData> slaveServerBuffer;
+
   public KettleDatabaseRepositorySlaveServerDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
 
+  /**
+   * Reads the rows of all the slave servers with one query. Until clearSlaveServerBuffer() is called,
+   * loadSlaveServer() uses these rows instead of querying the repository for every slave server.
+   */
+  public void fillSlaveServerBuffer() throws KettleException {
+    slaveServerBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_SLAVE ), KettleDatabaseRepository.FIELD_SLAVE_ID_SLAVE );
+  }
+
+  public void clearSlaveServerBuffer() {
+    slaveServerBuffer = null;
+  }
+
   public RowMetaAndData getSlaveServer( ObjectId id_slave ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = slaveServerBuffer;
+    if ( buffer != null && id_slave != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_slave ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_SLAVE ),
       quote( KettleDatabaseRepository.FIELD_SLAVE_ID_SLAVE ), id_slave );
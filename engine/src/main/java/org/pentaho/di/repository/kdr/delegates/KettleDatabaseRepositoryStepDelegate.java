@@ -25,6 +25,7 @@ package org.pentaho.di.repository.kdr.delegates;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.RowMetaAndData;
@@ -58,6 +59,16 @@ public class KettleDatabaseRepositoryStepDelegate extends KettleDatabaseReposito
 
   public static final String STEP_ATTRIBUTE_PREFIX = "_ATTR_" + '\t';
 
+  /**
+   * The rows of the steps of the transformation being loaded, filled by fillStepBuffer()
+   */
+  private Map<Long, RowMetaAndData> stepBuffer;
+
+  /**
+   * The step type rows read so far. A step type code never changes for a given ID so these can be kept.
+   */
+  private final Map<Long, RowMetaAndData> stepTypeCache = new ConcurrentHashMap<Long, RowMetaAndData>();
+
   public KettleDatabaseRepositoryStepDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
@@ -103,15 +114,55 @@ public class KettleDatabaseRepositoryStepDelegate extends KettleDatabaseReposito
   }
 
   public RowMetaAndData getStep( ObjectId id_step ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = stepBuffer;
+    if ( buffer != null && id_step != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_step ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_STEP ), quote( KettleDatabaseRepository.FIELD_STEP_ID_STEP ),
       id_step );
   }
 
   public RowMetaAndData getStepType( ObjectId id_step_type ) throws KettleException {
-    return repository.connectionDelegate.getOneRow(
-      quoteTable( KettleDatabaseRepository.TABLE_R_STEP_TYPE ),
-      quote( KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE ), id_step_type );
+    if ( stepTypeCache.isEmpty() ) {
+      stepTypeCache.putAll( repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+        + quoteTable( KettleDatabaseRepository.TABLE_R_STEP_TYPE ),
+        KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE ) );
+    }
+    RowMetaAndData r = id_step_type == null ? null : stepTypeCache.get( new LongObjectId( id_step_type ).longValue() );
+    if ( r == null ) {
+      // Registered after the cache was filled or not there at all: ask the database
+      //
+      r = repository.connectionDelegate.getOneRow(
+        quoteTable( KettleDatabaseRepository.TABLE_R_STEP_TYPE ),
+        quote( KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE ), id_step_type );
+      Long id = r.getInteger( KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE );
+      if ( id != null ) {
+        stepTypeCache.put( id, r );
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Reads the rows of all the steps of a transformation in a single query. Until clearStepBuffer() is called,
+   * getStep() and loadStepMeta() use these rows instead of querying the repository for every step.
+   *
+   * @param id_transformation
+   *          the transformation to read the steps of
+   */
+  public void fillStepBuffer( ObjectId id_transformation ) throws KettleException {
+    stepBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_STEP ) + " WHERE "
+      + quote( KettleDatabaseRepository.FIELD_STEP_ID_TRANSFORMATION ) + " = ?",
+      KettleDatabaseRepository.FIELD_STEP_ID_STEP, id_transformation );
+  }
+
+  public void clearStepBuffer() {
+    stepBuffer = null;
   }
 
   public RowMetaAndData getStepAttribute( ObjectId id_step_attribute ) throws KettleException {
@@ -439,7 +490,13 @@ public class KettleDatabaseRepositoryStepDelegate extends KettleDatabaseReposito
 
     List<Object[]> attributeRows = repository.connectionDelegate.getStepAttributesBuffer();
     RowMetaInterface rowMeta = repository.connectionDelegate.getStepAttributesRowMeta();
+    long id = new LongObjectId( stepId ).longValue();
     for ( Object[] attributeRow : attributeRows ) {
+      Long attributeStepId =
+        rowMeta.getInteger( attributeRow, KettleDatabaseRepository.FIELD_STEP_ATTRIBUTE_ID_STEP, null );
+      if ( attributeStepId == null || attributeStepId.longValue() != id ) {
+        continue;
+      }
       String code = rowMeta.getString( attributeRow, KettleDatabaseRepository.FIELD_STEP_ATTRIBUTE_CODE, null );
       if ( code != null && code.startsWith( STEP_ATTRIBUTE_PREFIX ) ) {
         String value =
@@ -73,6 +73,16 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
 
   public static final String TRANS_ATTRIBUTE_PREFIX = "_ATTR_" + TRANS_ATTRIBUTE_PREFIX_DELIMITER;
 
+  /**
+   * The rows of the hops of the transformation being loaded, filled by fillTransHopBuffer()
+   */
+  private Map<Long, RowMetaAndData> hopBuffer;
+
+  /**
+   * The rows of the dependencies of the transformation being loaded, filled by fillTransDependencyBuffer()
+   */
+  private Map<Long, RowMetaAndData> dependencyBuffer;
+
   public KettleDatabaseRepositoryTransDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
@@ -84,12 +94,62 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
   }
 
   public RowMetaAndData getTransHop( ObjectId id_trans_hop ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = hopBuffer;
+    if ( buffer != null && id_trans_hop != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_trans_hop ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_TRANS_HOP ),
       quote( KettleDatabaseRepository.FIELD_TRANS_HOP_ID_TRANS_HOP ), id_trans_hop );
   }
 
+  /**
+   * Reads the rows of all the hops of a transformation in a single query. Until clearTransHopBuffer() is called,
+   * loadTransHopMeta() uses these rows instead of querying the repository for every hop.
+   *
+   * @param id_transformation
+   *          the transformation to read the hops of
+   */
+  public void fillTransHopBuffer( ObjectId id_transformation ) throws KettleException {
+    hopBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_TRANS_HOP ) + " WHERE "
+      + quote( KettleDatabaseRepository.FIELD_TRANS_HOP_ID_TRANSFORMATION ) + " = ?",
+      KettleDatabaseRepository.FIELD_TRANS_HOP_ID_TRANS_HOP, id_transformation );
+  }
+
+  public void clearTransHopBuffer() {
+    hopBuffer = null;
+  }
+
+  /**
+   * Reads the rows of all the dependencies of a transformation in a single query. Until clearTransDependencyBuffer()
+   * is called, loadTransDependency() uses these rows instead of querying the repository for every dependency.
+   *
+   * @param id_transformation
+   *          the transformation to read the dependencies of
+   */
+  public void fillTransDependencyBuffer( ObjectId id_transformation ) throws KettleException {
+    dependencyBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_DEPENDENCY ) + " WHERE "
+      + quote( KettleDatabaseRepository.FIELD_DEPENDENCY_ID_TRANSFORMATION ) + " = ?",
+      KettleDatabaseRepository.FIELD_DEPENDENCY_ID_DEPENDENCY, id_transformation );
+  }
+
+  public void clearTransDependencyBuffer() {
+    dependencyBuffer = null;
+  }
+
   public RowMetaAndData getTransDependency( ObjectId id_dependency ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = dependencyBuffer;
+    if ( buffer != null && id_dependency != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_dependency ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_DEPENDENCY ),
       quote( KettleDatabaseRepository.FIELD_DEPENDENCY_ID_DEPENDENCY ), id_dependency );
@@ -483,6 +543,22 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
           ObjectId[] stepids = repository.getStepIDs( transMeta.getObjectId() );
           ObjectId[] hopids = getTransHopIDs( transMeta.getObjectId() );
 
+          // Read the step, hop, note and dependency rows in one go instead of one query each
+          //
+          repository.stepDelegate.fillStepBuffer( transMeta.getObjectId() );
+          fillTransHopBuffer( transMeta.getObjectId() );
+          repository.notePadDelegate.fillTransNoteBuffer( transMeta.getObjectId() );
+          fillTransDependencyBuffer( transMeta.getObjectId() );
+
+          // The same goes for the shared objects and the conditions of the steps, so that the number of queries
+          // doesn't grow with the size of the transformation or the repository
+          //
+          repository.databaseDelegate.fillDatabaseBuffer();
+          repository.partitionSchemaDelegate.fillPartitionSchemaBuffer();
+          repository.slaveServerDelegate.fillSlaveServerBuffer();
+          repository.clusterSchemaDelegate.fillClusterSchemaBuffer();
+          repository.conditionDelegate.enableConditionBuffer();
+
           int nrWork = 3 + noteids.length + stepids.length + hopids.length;
 
           if ( monitor != null ) {
@@ -556,7 +632,6 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
           if ( monitor != null ) {
             monitor.worked( 1 );
           }
-          repository.connectionDelegate.setStepAttributesBuffer( null ); // clear the buffer (should be empty anyway)
 
           // Have all StreamValueLookups, etc. reference the correct source steps...
           for ( int i = 0; i < transMeta.nrSteps(); i++ ) {
@@ -630,6 +705,10 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
             }
           }
 
+          // The step error handling was the last to use the step attributes
+          //
+          repository.connectionDelegate.setStepAttributesBuffer( null );
+
           // Load all the log tables for the transformation...
           //
           RepositoryAttributeInterface attributeInterface =
@@ -677,6 +756,16 @@ public class KettleDatabaseRepositoryTransDelegate extends KettleDatabaseReposit
         throw new KettleException( BaseMessages.getString(
           PKG, "TransMeta.Exception.DatabaseErrorOccuredReadingTransformation2" ), e );
       } finally {
+        repository.connectionDelegate.setStepAttributesBuffer( null );
+        repository.stepDelegate.clearStepBuffer();
+        clearTransHopBuffer();
+        repository.notePadDelegate.clearNoteBuffer();
+        clearTransDependencyBuffer();
+        repository.databaseDelegate.clearDatabaseBuffer();
+        repository.partitionSchemaDelegate.clearPartitionSchemaBuffer();
+        repository.slaveServerDelegate.clearSlaveServerBuffer();
+        repository.clusterSchemaDelegate.clearClusterSchemaBuffer();
+        repository.conditionDelegate.clearConditionBuffer();
         transMeta.initializeVariablesFrom( null );
         if ( setInternalVariables ) {
           transMeta.setInternalKettleVariables();
@@ -22,12 +22,15 @@
 
 package org.pentaho.di.repository.kdr.delegates;
 
+import java.util.Map;
+
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.ValueMetaAndData;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.repository.LongObjectId;
 import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
 
@@ -35,11 +38,40 @@ public class KettleDatabaseRepositoryValueDelegate extends KettleDatabaseReposit
 
   // private static Class<?> PKG = ValueMetaAndData.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The rows of the values used by conditions, filled by fillConditionValueBuffer()
+   */
+  private Map<Long, RowMetaAndData> valueBuffer;
+
   public KettleDatabaseRepositoryValueDelegate( KettleDatabaseRepository repository ) {
     super( repository );
   }
 
+  /**
+   * Reads the rows of all the values that are used as the right hand side of a condition with one query. Until
+   * clearValueBuffer() is called, loadValueMetaAndData() uses these rows instead of querying the repository.
+   */
+  public void fillConditionValueBuffer() throws KettleException {
+    valueBuffer = repository.connectionDelegate.getRowsByID( "SELECT * FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_VALUE ) + " WHERE "
+      + quote( KettleDatabaseRepository.FIELD_VALUE_ID_VALUE ) + " IN ( SELECT "
+      + quote( KettleDatabaseRepository.FIELD_CONDITION_ID_VALUE_RIGHT ) + " FROM "
+      + quoteTable( KettleDatabaseRepository.TABLE_R_CONDITION ) + " )",
+      KettleDatabaseRepository.FIELD_VALUE_ID_VALUE );
+  }
+
+  public void clearValueBuffer() {
+    valueBuffer = null;
+  }
+
   public RowMetaAndData getValue( ObjectId id_value ) throws KettleException {
+    Map<Long, RowMetaAndData> buffer = valueBuffer;
+    if ( buffer != null && id_value != null ) {
+      RowMetaAndData r = buffer.get( new LongObjectId( id_value ).longValue() );
+      if ( r != null ) {
+        return r;
+      }
+    }
     return repository.connectionDelegate.getOneRow(
       quoteTable( KettleDatabaseRepository.TABLE_R_VALUE ),
       quote( KettleDatabaseRepository.FIELD_VALUE_ID_VALUE ), id_value );
@@ -0,0 +1,128 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.Utils;
+
+/**
+ * Partitions on a consistent hash ring built from the partition IDs of the partition schema. Every partition ID takes
+ * a number of points on the ring; a row goes to the partition owning the first point at or after the hash of its
+ * partitioning field.
+ *
+ * When the partition schema changes, for example because a dynamically partitioned cluster gets an extra slave server,
+ * only the rows of the ring segments taken over by the new partitions move. With the Mod or Hash partitioners nearly
+ * every row moves to another partition.
+ */
+public class ConsistentHashPartitioner extends HashPartitioner {
+
+  /** The number of points every partition takes on the ring, more points give a more even distribution */
+  public static final int POINTS_PER_PARTITION = 128;
+
+  private volatile int[] ringHashes;
+  private int[] ringPartitions;
+
+  public ConsistentHashPartitioner() {
+    super();
+  }
+
+  @Override
+  public Partitioner getInstance() {
+    Partitioner partitioner = new ConsistentHashPartitioner();
+    partitioner.setId( getId() );
+    partitioner.setDescription( getDescription() );
+    return partitioner;
+  }
+
+  @Override
+  public void init( RowMetaInterface rowMeta ) throws KettleException {
+    super.init( rowMeta );
+
+    if ( ringHashes == null ) {
+      List<String> partitionIds = null;
+      if ( meta != null && meta.getPartitionSchema() != null ) {
+        partitionIds = meta.getPartitionSchema().getPartitionIDs();
+      }
+      if ( partitionIds == null || partitionIds.size() != nrPartitions ) {
+        partitionIds = new ArrayList<String>( nrPartitions );
+        for ( int i = 0; i < nrPartitions; i++ ) {
+          partitionIds.add( Integer.toString( i ) );
+        }
+      }
+      buildRing( partitionIds );
+    }
+  }
+
+  /**
+   * Places POINTS_PER_PARTITION points on the ring for every partition ID. The copies of a step share the partitioner,
+   * so the ring is only published when it is complete.
+   */
+  void buildRing( List<String> partitionIds ) {
+    long[] points = new long[partitionIds.size() * POINTS_PER_PARTITION];
+    int p = 0;
+    for ( int partitionNr = 0; partitionNr < partitionIds.size(); partitionNr++ ) {
+      for ( int i = 0; i < POINTS_PER_PARTITION; i++ ) {
+        int hash = HASH_FUNCTION.hashUnencodedChars( partitionIds.get( partitionNr ) + "#" + i ).asInt();
+        // hash in the high bits, partition in the low bits: sorting gives the ring order
+        points[p++] = ( (long) hash << 32 ) | partitionNr;
+      }
+    }
+    Arrays.sort( points );
+
+    int[] hashes = new int[points.length];
+    int[] partitions = new int[points.length];
+    for ( int i = 0; i < points.length; i++ ) {
+      hashes[i] = (int) ( points[i] >> 32 );
+      partitions[i] = (int) points[i];
+    }
+    ringPartitions = partitions;
+    ringHashes = hashes;
+  }
+
+  @Override
+  protected int getPartition( int hash ) {
+    int[] hashes = ringHashes;
+    int index = Arrays.binarySearch( hashes, hash );
+    if ( index < 0 ) {
+      index = -index - 1;
+      if ( index == hashes.length ) {
+        index = 0; // wrap around the ring
+      }
+    }
+    return ringPartitions[index];
+  }
+
+  @Override
+  public String getDescription() {
+    String description = "Consistent hash partitioner";
+    if ( !Utils.isEmpty( getFieldName() ) ) {
+      description += "(" + getFieldName() + ")";
+    }
+    return description;
+  }
+}
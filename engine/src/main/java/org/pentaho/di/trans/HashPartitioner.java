@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.Date;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.Utils;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Partitions on the Murmur3 hash of the partitioning field. Unlike the Mod partitioner, it spreads values that differ
+ * in a few characters only (codes with a common prefix, sequential keys) evenly over the partitions. The value is
+ * hashed in its normal storage, so the same value ends up in the same partition whether it is lazily converted or not.
+ */
+public class HashPartitioner extends ModPartitioner {
+
+  protected static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+  public HashPartitioner() {
+    super();
+  }
+
+  @Override
+  public Partitioner getInstance() {
+    Partitioner partitioner = new HashPartitioner();
+    partitioner.setId( getId() );
+    partitioner.setDescription( getDescription() );
+    return partitioner;
+  }
+
+  @Override
+  public int getPartition( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
+    return getPartition( getHash( rowMeta, row ) );
+  }
+
+  /**
+   * @return the partition for a hash, never negative
+   */
+  protected int getPartition( int hash ) {
+    return ( hash & Integer.MAX_VALUE ) % nrPartitions;
+  }
+
+  /**
+   * @return the hash of the partitioning field in the row
+   */
+  protected int getHash( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
+    findPartitionColumn( rowMeta );
+    return hash( rowMeta.getValueMeta( partitionColumnIndex ), row[partitionColumnIndex] );
+  }
+
+  /**
+   * Calculates the Murmur3 hash of a value. Null values hash to 0.
+   */
+  public static int hash( ValueMetaInterface valueMeta, Object valueData ) throws KettleValueException {
+    if ( valueMeta.isNull( valueData ) ) {
+      return 0;
+    }
+    Object data = valueMeta.isStorageNormal() ? valueData : valueMeta.convertToNormalStorageType( valueData );
+
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_STRING:
+        hasher.putUnencodedChars( (String) data );
+        break;
+      case ValueMetaInterface.TYPE_INTEGER:
+        hasher.putLong( (Long) data );
+        break;
+      case ValueMetaInterface.TYPE_NUMBER:
+        double number = (Double) data;
+        // 0.0 and -0.0 are the same number
+        hasher.putLong( number == 0.0 ? 0L : Double.doubleToLongBits( number ) );
+        break;
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        hasher.putLong( ( (Date) data ).getTime() );
+        break;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        hasher.putBoolean( (Boolean) data );
+        break;
+      case ValueMetaInterface.TYPE_BINARY:
+        hasher.putBytes( (byte[]) data );
+        break;
+      default:
+        hasher.putInt( valueMeta.hashCode( data ) );
+        break;
+    }
+    return hasher.hash().asInt();
+  }
+
+  @Override
+  public String getDescription() {
+    String description = "Hash partitioner";
+    if ( !Utils.isEmpty( getFieldName() ) ) {
+      description += "(" + getFieldName() + ")";
+    }
+    return description;
+  }
+}
@@ -61,15 +61,7 @@ public class ModPartitioner extends BasePartitioner {
   }
 
   public int getPartition( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
-    init( rowMeta );
-
-    if ( partitionColumnIndex < 0 ) {
-      partitionColumnIndex = rowMeta.indexOfValue( fieldName );
-      if ( partitionColumnIndex < 0 ) {
-        throw new KettleStepException( "Unable to find partitioning field name ["
-          + fieldName + "] in the output row..." + rowMeta );
-      }
-    }
+    findPartitionColumn( rowMeta );
 
     long value;
 
@@ -93,11 +85,28 @@ public class ModPartitioner extends BasePartitioner {
      * value = rowMeta.getInteger(row, partitionColumnIndex);
      */
 
-    int targetLocation = (int) ( Math.abs( value ) % nrPartitions );
+    // Take the remainder first: Math.abs(Long.MIN_VALUE) is negative
+    //
+    int targetLocation = (int) Math.abs( value % nrPartitions );
 
     return targetLocation;
   }
 
+  /**
+   * Initializes the partitioner and looks up the index of the partitioning field in the row.
+   */
+  protected void findPartitionColumn( RowMetaInterface rowMeta ) throws KettleException {
+    init( rowMeta );
+
+    if ( partitionColumnIndex < 0 ) {
+      partitionColumnIndex = rowMeta.indexOfValue( fieldName );
+      if ( partitionColumnIndex < 0 ) {
+        throw new KettleStepException( "Unable to find partitioning field name ["
+          + fieldName + "] in the output row..." + rowMeta );
+      }
+    }
+  }
+
   public String getDescription() {
     String description = "Mod partitioner";
     if ( !Utils.isEmpty( fieldName ) ) {
@@ -0,0 +1,167 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.Utils;
+
+/**
+ * Hash partitioner that spreads heavy hitters over all partitions. Every copy of the sending step samples the hashes of
+ * the partitioning field and keeps the most frequent ones in a small Space-Saving summary. A value that takes more than
+ * the fair share of a single partition (1 / number of partitions) of the sampled rows is hot: its rows go round robin
+ * to all partitions instead of overloading one. The counts decay so values can cool down again.
+ *
+ * Rows with the same value no longer always end up in the same partition. Only use this partitioner in front of steps
+ * that don't need to see all rows of a value together, like lookups, loads or a first, partial aggregation.
+ */
+public class SkewAwarePartitioner extends HashPartitioner {
+
+  /** Sample one row out of this many */
+  static final int SAMPLE_INTERVAL = 16;
+
+  /** The number of values the summary keeps track of */
+  static final int SUMMARY_SIZE = 64;
+
+  /** Recalculate the hot values after this many samples, the counts are halved every time */
+  static final int RECALCULATE_INTERVAL = 1024;
+
+  private ThreadLocal<Sampler> samplers = new ThreadLocal<Sampler>() {
+    @Override
+    protected Sampler initialValue() {
+      return new Sampler();
+    }
+  };
+
+  public SkewAwarePartitioner() {
+    super();
+  }
+
+  @Override
+  public Partitioner getInstance() {
+    Partitioner partitioner = new SkewAwarePartitioner();
+    partitioner.setId( getId() );
+    partitioner.setDescription( getDescription() );
+    return partitioner;
+  }
+
+  @Override
+  public int getPartition( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
+    int hash = getHash( rowMeta, row );
+    Sampler sampler = samplers.get();
+    if ( sampler.isHot( hash ) ) {
+      return sampler.nextPartition( nrPartitions );
+    }
+    return getPartition( hash );
+  }
+
+  /**
+   * @return the hashes of the values that are currently spread over all partitions by the calling thread, sorted
+   */
+  public int[] getHotHashes() {
+    return samplers.get().hotHashes.clone();
+  }
+
+  private class Sampler {
+    private final Map<Integer, long[]> counts = new HashMap<Integer, long[]>();
+    private int[] hotHashes = new int[0];
+    private long rows;
+    private long samples;
+    private int roundRobin;
+
+    private boolean isHot( int hash ) {
+      if ( rows++ % SAMPLE_INTERVAL == 0 ) {
+        sample( hash );
+      }
+      return hotHashes.length > 0 && Arrays.binarySearch( hotHashes, hash ) >= 0;
+    }
+
+    private int nextPartition( int nrPartitions ) {
+      roundRobin = ( roundRobin + 1 ) % nrPartitions;
+      return roundRobin;
+    }
+
+    private void sample( int hash ) {
+      samples++;
+      long[] count = counts.get( hash );
+      if ( count != null ) {
+        count[0]++;
+      } else if ( counts.size() < SUMMARY_SIZE ) {
+        counts.put( hash, new long[] { 1L } );
+      } else {
+        // Space-Saving: the new value takes over the least frequent one, and its count
+        //
+        Integer minHash = null;
+        long[] minCount = null;
+        for ( Map.Entry<Integer, long[]> entry : counts.entrySet() ) {
+          if ( minCount == null || entry.getValue()[0] < minCount[0] ) {
+            minHash = entry.getKey();
+            minCount = entry.getValue();
+          }
+        }
+        counts.remove( minHash );
+        minCount[0]++;
+        counts.put( hash, minCount );
+      }
+
+      if ( samples % RECALCULATE_INTERVAL == 0 ) {
+        recalculate();
+      }
+    }
+
+    private void recalculate() {
+      int[] hot = new int[counts.size()];
+      int nrHot = 0;
+      for ( Iterator<Map.Entry<Integer, long[]>> it = counts.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<Integer, long[]> entry = it.next();
+        long[] count = entry.getValue();
+        if ( count[0] * nrPartitions > samples ) {
+          hot[nrHot++] = entry.getKey();
+        }
+        count[0] /= 2;
+        if ( count[0] == 0 ) {
+          it.remove();
+        }
+      }
+      samples /= 2;
+
+      hot = Arrays.copyOf( hot, nrHot );
+      Arrays.sort( hot );
+      hotHashes = hot;
+    }
+  }
+
+  @Override
+  public String getDescription() {
+    String description = "Skew aware hash partitioner";
+    if ( !Utils.isEmpty( getFieldName() ) ) {
+      description += "(" + getFieldName() + ")";
+    }
+    return description;
+  }
+}
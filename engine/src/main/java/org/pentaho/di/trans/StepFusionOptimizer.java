@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+/**
+ * Finds the linear chains of row-local steps in a transformation that can run in a single thread (see
+ * {@link org.pentaho.di.trans.step.FusedRunThread}). A hop is fused when both steps support fusion, run in a single
+ * unpartitioned copy, the source step has no other target (error hops included) and the target step has no other
+ * input, info streams included.
+ *
+ * Only the threads are fused. The steps of a chain keep their own processRow() and pass rows through a row set, the
+ * compiled calculations of adjacent Calculator and User Defined Java Expression steps are not merged.
+ *
+ * Fusion is enabled with the KETTLE_STEP_FUSION system property (or kettle.properties).
+ */
+public class StepFusionOptimizer {
+
+  private List<List<StepMeta>> chains;
+  private Map<String, List<StepMeta>> chainByStep;
+
+  public StepFusionOptimizer( TransMeta transMeta ) {
+    chains = new ArrayList<List<StepMeta>>();
+    chainByStep = new HashMap<String, List<StepMeta>>();
+
+    for ( StepMeta stepMeta : transMeta.getTransHopSteps( false ) ) {
+      if ( !isFusible( stepMeta ) || isFusedWithPrevious( transMeta, stepMeta ) ) {
+        continue;
+      }
+      // This is the start of a chain, follow it as long as it goes
+      //
+      List<StepMeta> chain = new ArrayList<StepMeta>();
+      chain.add( stepMeta );
+      StepMeta next = getFusedNext( transMeta, stepMeta );
+      while ( next != null ) {
+        chain.add( next );
+        next = getFusedNext( transMeta, next );
+      }
+      if ( chain.size() > 1 ) {
+        chain = Collections.unmodifiableList( chain );
+        chains.add( chain );
+        for ( StepMeta chainStep : chain ) {
+          chainByStep.put( chainStep.getName(), chain );
+        }
+      }
+    }
+  }
+
+  public static boolean isEnabled() {
+    return "Y".equalsIgnoreCase( System.getProperty( Const.KETTLE_STEP_FUSION, "N" ) );
+  }
+
+  /**
+   * @return the chains of steps to run in one thread each, in the order of the hops
+   */
+  public List<List<StepMeta>> getChains() {
+    return chains;
+  }
+
+  /**
+   * @return the chain the step is part of or null if the step runs in its own thread
+   */
+  public List<StepMeta> getChain( StepMeta stepMeta ) {
+    return chainByStep.get( stepMeta.getName() );
+  }
+
+  /**
+   * @return true if both steps run in the same thread, in which case the row set between them doesn't need to block
+   */
+  public boolean isFusedHop( StepMeta fromStep, StepMeta toStep ) {
+    List<StepMeta> chain = getChain( fromStep );
+    if ( chain == null ) {
+      return false;
+    }
+    int index = chain.indexOf( fromStep );
+    return index + 1 < chain.size() && chain.get( index + 1 ).equals( toStep );
+  }
+
+  static boolean isFusible( StepMeta stepMeta ) {
+    StepMetaInterface meta = stepMeta.getStepMetaInterface();
+    if ( !( meta instanceof BaseStepMeta ) || !( (BaseStepMeta) meta ).supportsFusion() ) {
+      return false;
+    }
+    return stepMeta.getCopies() == 1
+      && !stepMeta.isPartitioned() && !stepMeta.isClustered() && !stepMeta.isDoingErrorHandling()
+      && stepMeta.getRemoteInputSteps().isEmpty() && stepMeta.getRemoteOutputSteps().isEmpty()
+      && meta.getStepIOMeta().getInfoStreams().isEmpty();
+  }
+
+  private static StepMeta getFusedNext( TransMeta transMeta, StepMeta stepMeta ) {
+    List<StepMeta> nextSteps = transMeta.findNextSteps( stepMeta );
+    if ( nextSteps.size() != 1 ) {
+      return null;
+    }
+    StepMeta next = nextSteps.get( 0 );
+    if ( next.equals( stepMeta ) || !isFusible( next ) || transMeta.findPreviousSteps( next, true ).size() != 1 ) {
+      return null;
+    }
+    return next;
+  }
+
+  private static boolean isFusedWithPrevious( TransMeta transMeta, StepMeta stepMeta ) {
+    List<StepMeta> previousSteps = transMeta.findPreviousSteps( stepMeta, true );
+    return previousSteps.size() == 1 && isFusible( previousSteps.get( 0 ) )
+      && stepMeta.equals( getFusedNext( transMeta, previousSteps.get( 0 ) ) );
+  }
+}
@@ -24,19 +24,24 @@ package org.pentaho.di.trans;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Result;
+import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaDataCombi;
 import org.pentaho.di.trans.step.StepStatus;
 import org.pentaho.di.trans.steps.TransStepUtil;
+import org.pentaho.di.trans.steps.recordsfromstream.RecordsFromStreamMeta;
 import org.pentaho.di.trans.steps.transexecutor.TransExecutorParameters;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,9 +60,17 @@ public class SubtransExecutor {
   private boolean shareVariables;
   private TransExecutorParameters parameters;
   private String subStep;
-  private boolean stopped;
+  private volatile boolean stopped;
   Set<Trans> running;
 
+  private boolean continuous;
+  private Trans continuousTrans;
+  private SingleThreadedTransExecutor continuousExecutor;
+  private RowProducer rowProducer;
+  private final List<RowMetaAndData> continuousRows = new ArrayList<>();
+  private Result continuousTotals;
+  private final Object continuousLock = new Object();
+
   public SubtransExecutor( String subTransName, Trans parentTrans, TransMeta subtransMeta, boolean shareVariables,
                            TransExecutorParameters parameters, String subStep ) {
     this.subTransName = subTransName;
@@ -70,12 +83,44 @@ public class SubtransExecutor {
     this.running = new ConcurrentHashSet<>();
   }
 
+  /**
+   * Keeps one sub-transformation running for all batches instead of starting a new one for every batch. The rows are
+   * fed to the "Get records from stream" step through a row producer and the sub-transformation runs on the single
+   * threaded engine, so every batch is completely processed before {@link #execute(List)} returns. The end of a batch
+   * reaches the steps through {@link org.pentaho.di.trans.step.StepInterface#batchComplete()}, which is where sort,
+   * group by and the like emit their rows.
+   * <p>
+   * Parameters are set once, from the first row of the first batch. Sub-transformations that can't run this way are
+   * executed per batch as before.
+   */
+  public void setContinuous( boolean continuous ) {
+    this.continuous = continuous;
+  }
+
+  public boolean isContinuous() {
+    return continuous;
+  }
+
   public Optional<Result> execute( List<RowMetaAndData> rows ) throws KettleException {
     if ( rows.isEmpty() || stopped ) {
       return Optional.empty();
     }
 
-    Trans subtrans = this.createSubtrans();
+    if ( continuous ) {
+      synchronized ( continuousLock ) {
+        if ( stopped ) {
+          return Optional.empty();
+        }
+        if ( continuousTrans == null ) {
+          startContinuous( rows.get( 0 ) );
+        }
+        if ( continuousTrans != null ) {
+          return Optional.of( executeContinuous( rows ) );
+        }
+      }
+    }
+
+    Trans subtrans = this.createSubtrans( subtransMeta );
     running.add( subtrans );
     parentTrans.addActiveSubTransformation( subTransName, subtrans );
 
@@ -88,6 +133,19 @@ public class SubtransExecutor {
 
     subtrans.prepareExecution( this.parentTrans.getArguments() );
     List<RowMetaAndData> rowMetaAndData = new ArrayList<>();
+    addResultRowListener( subtrans, rowMetaAndData );
+    subtrans.startThreads();
+
+    subtrans.waitUntilFinished();
+    updateStatuses( subtrans );
+    running.remove( subtrans );
+
+    Result subtransResult = subtrans.getResult();
+    subtransResult.setRows( rowMetaAndData  );
+    return Optional.of( subtransResult );
+  }
+
+  private void addResultRowListener( Trans subtrans, List<RowMetaAndData> rowMetaAndData ) {
     subtrans.getSteps().stream()
       .filter( c -> c.step.getStepname().equalsIgnoreCase( subStep ) )
       .findFirst()
@@ -96,15 +154,140 @@ public class SubtransExecutor {
           rowMetaAndData.add( new RowMetaAndData( rowMeta, row ) );
         }
       } ) );
+  }
+
+  private void startContinuous( RowMetaAndData firstRow ) throws KettleException {
+    String inputStep = getContinuousInputStep();
+    if ( inputStep == null ) {
+      continuous = false;
+      parentTrans.getLogChannel().logBasic(
+        BaseMessages.getString( PKG, "SubtransExecutor.Log.ContinuousNotSupported", subTransName ) );
+      return;
+    }
+
+    TransMeta continuousMeta = (TransMeta) subtransMeta.clone();
+    continuousMeta.setTransformationType( TransformationType.SingleThreaded );
+    continuousMeta.setUsingThreadPriorityManagment( false );
+
+    Trans subtrans = this.createSubtrans( continuousMeta );
+    running.add( subtrans );
+    parentTrans.addActiveSubTransformation( subTransName, subtrans );
+    passParametersToTrans( subtrans, firstRow );
+    subtrans.setPreviousResult( new Result() );
+
+    subtrans.prepareExecution( this.parentTrans.getArguments() );
+    rowProducer = subtrans.addRowProducer( inputStep, 0 );
+    addResultRowListener( subtrans, continuousRows );
     subtrans.startThreads();
 
-    subtrans.waitUntilFinished();
-    updateStatuses( subtrans );
-    running.remove( subtrans );
+    SingleThreadedTransExecutor executor = new SingleThreadedTransExecutor( subtrans );
+    if ( !executor.init() ) {
+      running.remove( subtrans );
+      throw new KettleException(
+        BaseMessages.getString( PKG, "SubtransExecutor.Exception.UnableToStartContinuous", subTransName ) );
+    }
+    continuousTrans = subtrans;
+    continuousExecutor = executor;
+    continuousTotals = null;
+  }
 
-    Result subtransResult = subtrans.getResult();
-    subtransResult.setRows( rowMetaAndData  );
-    return Optional.of( subtransResult );
+  /**
+   * @return the name of the only "Get records from stream" step, or null if the sub-transformation can't run
+   *         continuously
+   */
+  private String getContinuousInputStep() {
+    String inputStep = null;
+    for ( StepMeta stepMeta : subtransMeta.getSteps() ) {
+      if ( !Arrays.asList( stepMeta.getStepMetaInterface().getSupportedTransformationTypes() )
+        .contains( TransformationType.SingleThreaded ) ) {
+        return null;
+      }
+      if ( stepMeta.getStepMetaInterface() instanceof RecordsFromStreamMeta ) {
+        if ( inputStep != null || stepMeta.getCopies() != 1 ) {
+          return null;
+        }
+        inputStep = stepMeta.getName();
+      }
+    }
+    return inputStep;
+  }
+
+  private Result executeContinuous( List<RowMetaAndData> rows ) throws KettleException {
+    continuousRows.clear();
+    for ( RowMetaAndData row : rows ) {
+      rowProducer.putRow( row.getRowMeta(), row.getData() );
+    }
+
+    // One iteration runs every step on all rows waiting for it and then signals the end of the batch
+    //
+    boolean more = continuousExecutor.oneIteration();
+    updateStatuses( continuousTrans );
+
+    // The counters of the sub-transformation add up over all batches, report only those of this batch
+    Result totals = continuousTrans.getResult();
+    Result subtransResult = getBatchResult( totals, continuousTotals );
+    continuousTotals = totals;
+    subtransResult.setRows( new ArrayList<>( continuousRows ) );
+    continuousRows.clear();
+
+    if ( !more || subtransResult.getNrErrors() > 0 ) {
+      // The sub-transformation finished by itself or failed, a new one is started for the next batch
+      finishContinuous();
+    }
+    return subtransResult;
+  }
+
+  /**
+   * @return the result of the last batch: the difference between the totals after it and the totals before it
+   */
+  static Result getBatchResult( Result totals, Result previous ) {
+    if ( previous == null ) {
+      return totals;
+    }
+    Result result = new Result();
+    result.setNrErrors( totals.getNrErrors() - previous.getNrErrors() );
+    result.setResult( result.getNrErrors() == 0 );
+    result.setSafeStop( totals.isSafeStop() );
+    result.setNrLinesRead( totals.getNrLinesRead() - previous.getNrLinesRead() );
+    result.setNrLinesInput( totals.getNrLinesInput() - previous.getNrLinesInput() );
+    result.setNrLinesWritten( totals.getNrLinesWritten() - previous.getNrLinesWritten() );
+    result.setNrLinesOutput( totals.getNrLinesOutput() - previous.getNrLinesOutput() );
+    result.setNrLinesUpdated( totals.getNrLinesUpdated() - previous.getNrLinesUpdated() );
+    result.setNrLinesRejected( totals.getNrLinesRejected() - previous.getNrLinesRejected() );
+    result.setNrLinesDeleted( totals.getNrLinesDeleted() - previous.getNrLinesDeleted() );
+    for ( Map.Entry<String, ResultFile> entry : totals.getResultFiles().entrySet() ) {
+      if ( !previous.getResultFiles().containsKey( entry.getKey() ) ) {
+        result.getResultFiles().put( entry.getKey(), entry.getValue() );
+      }
+    }
+    return result;
+  }
+
+  private void finishContinuous() throws KettleException {
+    if ( continuousTrans == null ) {
+      return;
+    }
+    Trans subtrans = continuousTrans;
+    SingleThreadedTransExecutor executor = continuousExecutor;
+    continuousTrans = null;
+    continuousExecutor = null;
+    continuousTotals = null;
+    rowProducer = null;
+    try {
+      executor.dispose();
+    } finally {
+      running.remove( subtrans );
+    }
+  }
+
+  /**
+   * Ends the sub-transformation kept running between batches, see {@link #setContinuous(boolean)}. Called when the
+   * stream is done.
+   */
+  public void finish() throws KettleException {
+    synchronized ( continuousLock ) {
+      finishContinuous();
+    }
   }
 
   private synchronized void updateStatuses( Trans subtrans ) {
@@ -123,8 +306,8 @@ public class SubtransExecutor {
     }
   }
 
-  private Trans createSubtrans() {
-    Trans subTrans = new Trans( this.subtransMeta, this.parentTrans );
+  private Trans createSubtrans( TransMeta transMeta ) {
+    Trans subTrans = new Trans( transMeta, this.parentTrans );
     subTrans.setParentTrans( this.parentTrans );
     subTrans.setRepository( this.parentTrans.getRepository() );
     subTrans.setLogLevel( this.parentTrans.getLogLevel() );
@@ -134,7 +317,7 @@ public class SubtransExecutor {
     }
 
     subTrans.setInternalKettleVariables( this.parentTrans );
-    subTrans.copyParametersFrom( this.subtransMeta );
+    subTrans.copyParametersFrom( transMeta );
     subTrans.setPreview( this.parentTrans.isPreview() );
     TransStepUtil.initServletConfig( this.parentTrans, subTrans );
     return subTrans;
@@ -176,6 +359,15 @@ public class SubtransExecutor {
     for ( Trans subTrans : running ) {
       subTrans.stopAll();
     }
+    // The steps of the stopped sub-transformation only end once it iterates, the continuous one has to be disposed
+    synchronized ( continuousLock ) {
+      try {
+        finishContinuous();
+      } catch ( KettleException e ) {
+        parentTrans.getLogChannel().logError(
+          BaseMessages.getString( PKG, "SubtransExecutor.Exception.UnableToStopContinuous", subTransName ), e );
+      }
+    }
     running.clear();
     for ( Map.Entry<String, StepStatus> entry : statuses.entrySet() ) {
       entry.getValue().setStatusDescription( StepExecutionStatus.STATUS_STOPPED.getDescription() );
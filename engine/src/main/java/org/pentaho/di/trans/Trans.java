@@ -29,6 +29,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -36,6 +37,7 @@ import java.util.Queue;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
@@ -45,6 +47,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -66,10 +70,12 @@ import org.pentaho.di.core.ExtensionDataInterface;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.Result;
+import org.pentaho.di.core.ResultRows;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.SingleRowRowSet;
+import org.pentaho.di.core.database.ConnectionPoolUtil;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.database.DatabaseTransactionListener;
@@ -108,6 +114,7 @@ import org.pentaho.di.core.parameters.NamedParamsDefault;
 import org.pentaho.di.core.parameters.UnknownParamException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.spill.SpillManager;
 import org.pentaho.di.core.util.EnvUtil;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
@@ -124,11 +131,18 @@ import org.pentaho.di.repository.RepositoryDirectoryInterface;
 import org.pentaho.di.resource.ResourceUtil;
 import org.pentaho.di.resource.TopLevelResource;
 import org.pentaho.di.trans.cluster.TransSplitter;
+import org.pentaho.di.trans.performance.BottleneckAnalyzer;
+import org.pentaho.di.trans.performance.StepBottleneck;
+import org.pentaho.di.trans.performance.StepMetrics;
 import org.pentaho.di.trans.performance.StepPerformanceSnapShot;
+import org.pentaho.di.trans.performance.StepPerformanceSnapShotBuffer;
+import org.pentaho.di.trans.performance.StepPerformanceSnapShotScheduler;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
+import org.pentaho.di.trans.step.FusedRunThread;
 import org.pentaho.di.trans.step.RunThread;
 import org.pentaho.di.trans.step.StepAdapter;
+import org.pentaho.di.trans.step.StepArtifactCache;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInitThread;
 import org.pentaho.di.trans.step.StepInterface;
@@ -248,6 +262,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
   /** A list of all the steps. */
   private List<StepMetaDataCombi> steps;
 
+  /** The chains of steps that run in one thread, null if step fusion is disabled */
+  private StepFusionOptimizer stepFusion;
+
   /** The class number. */
   public int class_nr;
 
@@ -347,7 +364,7 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
   private Map<String, List<StepPerformanceSnapShot>> stepPerformanceSnapShots;
 
   /** The step performance snapshot timer. */
-  private Timer stepPerformanceSnapShotTimer;
+  private ScheduledFuture<?> stepPerformanceSnapShotTimer;
 
   /** A list of listeners attached to the transformation. */
   private List<TransListener> transListeners;
@@ -407,6 +424,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
   protected List<RowMetaAndData> resultRows;
 
+  /** The temporary files and memory budget of the steps that write rows to disk */
+  private SpillManager spillManager;
+
   protected List<ResultFile> resultFiles;
 
   /** The command line arguments for the transformation. */
@@ -423,6 +443,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
   private Map<String, Object> extensionDataMap;
 
+  /** The lookup caches, parsed schemas, ... that the copies of a step share while this transformation runs */
+  private final StepArtifactCache stepArtifactCache = new StepArtifactCache();
+
   private ExecutorService heartbeat = null; // this transformations's heartbeat scheduled executor
 
   /**
@@ -447,7 +470,7 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     activeSubtransformations = new ConcurrentHashMap<>();
     activeSubjobs = new HashMap<>();
 
-    resultRows = new ArrayList<>();
+    resultRows = new ResultRows();
     resultFiles = new ArrayList<>();
     counters = new Hashtable<>();
 
@@ -723,6 +746,19 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
     List<StepMeta> hopsteps = transMeta.getTransHopSteps( false );
 
+    // Find the chains of row-local steps that can run in one thread
+    //
+    stepFusion = null;
+    if ( transMeta.getTransformationType() == TransMeta.TransformationType.Normal
+      && StepFusionOptimizer.isEnabled() ) {
+      stepFusion = new StepFusionOptimizer( transMeta );
+      if ( log.isDetailed() ) {
+        for ( List<StepMeta> chain : stepFusion.getChains() ) {
+          log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.FusingSteps", chain.toString() ) );
+        }
+      }
+    }
+
     if ( log.isDetailed() ) {
       log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.FoundDefferentSteps", String.valueOf( hopsteps
           .size() ) ) );
@@ -811,7 +847,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
                 //
                 Boolean batchingRowSet =
                     ValueMetaString.convertStringToBoolean( System.getProperty( Const.KETTLE_BATCHING_ROWSET ) );
-                if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
+                if ( stepFusion != null && stepFusion.isFusedHop( thisStep, nextStep ) ) {
+                  // Both steps run in the same thread, see FusedRunThread
+                  rowSet = new QueueRowSet();
+                } else if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
                   rowSet = new BlockingBatchingRowSet( transMeta.getSizeRowset() );
                 } else {
                   rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
@@ -1065,9 +1104,18 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.InitialisingSteps", String.valueOf( steps.size() ) ) );
     }
 
+    warmUpConnectionPools();
+
     StepInitThread[] initThreads = new StepInitThread[steps.size()];
     Thread[] threads = new Thread[steps.size()];
 
+    // Optionally limit the number of steps initializing at the same time
+    //
+    int maxInitThreads = Const.toInt( environmentSubstitute( getVariable( Const.KETTLE_STEP_INIT_THREADS ) ), 0 );
+    final Semaphore initPermits =
+      maxInitThreads > 0 && maxInitThreads < steps.size() ? new Semaphore( maxInitThreads ) : null;
+    long initStart = System.currentTimeMillis();
+
     // Initialize all the threads...
     //
     for ( int i = 0; i < steps.size(); i++ ) {
@@ -1081,11 +1129,24 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
       // Put it in a separate thread!
       //
-      threads[i] = new Thread( initThreads[i] );
+      final StepInitThread initThread = initThreads[i];
+      threads[i] = new Thread( initPermits == null ? initThread : new Runnable() {
+        @Override
+        public void run() {
+          try {
+            initThread.run();
+          } finally {
+            initPermits.release();
+          }
+        }
+      } );
       threads[i].setName( "init of " + sid.stepname + "." + sid.copy + " (" + threads[i].getName() + ")" );
 
       ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeInitialize.id, initThreads[i] );
 
+      if ( initPermits != null ) {
+        initPermits.acquireUninterruptibly();
+      }
       threads[i].start();
     }
 
@@ -1099,6 +1160,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       }
     }
 
+    if ( log.isDetailed() ) {
+      logStepInitTimes( initThreads, System.currentTimeMillis() - initStart );
+    }
+
     setInitializing( false );
     boolean ok = true;
 
@@ -1187,6 +1252,76 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     }
   }
 
+  /**
+   * Creates the connection pools of the pooled databases that the steps use before the steps initialize, with a
+   * connection for every step copy that uses the database. The copies then take an open connection from the pool
+   * instead of all opening connections while the pool fills up. Partitioned steps connect to a pool per partition,
+   * which they create themselves.
+   */
+  private void warmUpConnectionPools() {
+    Map<DatabaseMeta, Integer> stepCopies = new LinkedHashMap<DatabaseMeta, Integer>();
+    for ( StepMetaDataCombi combi : steps ) {
+      if ( combi.stepMeta.isPartitioned() ) {
+        continue;
+      }
+      DatabaseMeta[] databases = combi.meta.getUsedDatabaseConnections();
+      for ( int i = 0; databases != null && i < databases.length; i++ ) {
+        DatabaseMeta databaseMeta = databases[i];
+        if ( databaseMeta != null && databaseMeta.isUsingConnectionPool() && !databaseMeta.isPartitioned() ) {
+          Integer copies = stepCopies.get( databaseMeta );
+          stepCopies.put( databaseMeta, copies == null ? 1 : copies + 1 );
+        }
+      }
+    }
+
+    for ( Map.Entry<DatabaseMeta, Integer> entry : stepCopies.entrySet() ) {
+      try {
+        ConnectionPoolUtil.warmUp( log, entry.getKey(), null, entry.getValue() );
+      } catch ( KettleDatabaseException e ) {
+        // The steps report the error when they connect
+        log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.UnableToWarmUpConnectionPool", entry.getKey()
+          .getName(), e.getMessage() ) );
+      }
+    }
+  }
+
+  /**
+   * @return the lookup caches, parsed schemas and other immutable objects that the copies of a step share
+   */
+  public StepArtifactCache getStepArtifactCache() {
+    return stepArtifactCache;
+  }
+
+  /**
+   * Logs how long the initialization of the steps took and which step copies took longest.
+   *
+   * @param initThreads
+   *          the (finished) initialization of the step copies
+   * @param totalTime
+   *          the time in milliseconds it took to initialize all the step copies
+   */
+  private void logStepInitTimes( StepInitThread[] initThreads, long totalTime ) {
+    List<StepInitThread> slowest = new ArrayList<StepInitThread>( Arrays.asList( initThreads ) );
+    Collections.sort( slowest, new Comparator<StepInitThread>() {
+      @Override
+      public int compare( StepInitThread o1, StepInitThread o2 ) {
+        return Long.compare( o2.getInitTime(), o1.getInitTime() );
+      }
+    } );
+
+    StringBuilder report = new StringBuilder();
+    for ( int i = 0; i < slowest.size() && i < 5; i++ ) {
+      StepMetaDataCombi combi = slowest.get( i ).getCombi();
+      if ( i > 0 ) {
+        report.append( ", " );
+      }
+      report.append( combi.stepname ).append( '.' ).append( combi.copy )
+        .append( " (" ).append( slowest.get( i ).getInitTime() ).append( " ms)" );
+    }
+    log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.StepInitTimes", String.valueOf( initThreads.length ),
+      String.valueOf( totalTime ), report.toString() ) );
+  }
+
   /**
    * Starts the threads prepared by prepareThreads(). Before you start the threads, you can add RowListeners to them.
    *
@@ -1239,6 +1374,14 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
               //
               addStepPerformanceSnapShot();
 
+              if ( log.isDetailed() ) {
+                List<StepBottleneck> bottlenecks = getBottlenecks();
+                if ( !bottlenecks.isEmpty() ) {
+                  log.logDetailed( BaseMessages.getString( PKG, "Trans.Log.Bottleneck", bottlenecks.get( 0 )
+                    .toString() ) );
+                }
+              }
+
               try {
                 fireTransFinishedListeners();
               } catch ( Exception e ) {
@@ -1282,10 +1425,17 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       }
       stepPerformanceSnapshotSizeLimit = Const.toInt( limitString, 0 );
 
-      // Set a timer to collect the performance data from the running threads...
+      // Time processRow() and the waits on the row sets as well
+      //
+      for ( StepMetaDataCombi combi : steps ) {
+        if ( combi.step instanceof BaseStep ) {
+          ( (BaseStep) combi.step ).getMetrics().setTimingEnabled( true );
+        }
+      }
+
+      // Collect the performance data from the running threads at regular intervals...
       //
-      stepPerformanceSnapShotTimer = new Timer( "stepPerformanceSnapShot Timer: " + transMeta.getName() );
-      TimerTask timerTask = new TimerTask() {
+      Runnable snapShotTask = new Runnable() {
         @Override
         public void run() {
           if ( !isFinished() ) {
@@ -1293,7 +1443,8 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           }
         }
       };
-      stepPerformanceSnapShotTimer.schedule( timerTask, 100, transMeta.getStepPerformanceCapturingDelay() );
+      stepPerformanceSnapShotTimer = StepPerformanceSnapShotScheduler.getExecutor().scheduleWithFixedDelay(
+        snapShotTask, 100, transMeta.getStepPerformanceCapturingDelay(), TimeUnit.MILLISECONDS );
     }
 
     // Now start a thread to monitor the running transformation...
@@ -1320,7 +1471,7 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
         // one...
         //
         if ( transMeta.isCapturingStepPerformanceSnapShots() && stepPerformanceSnapShotTimer != null ) {
-          stepPerformanceSnapShotTimer.cancel();
+          stepPerformanceSnapShotTimer.cancel( false );
         }
 
         transMeta.disposeEmbeddedMetastoreProvider();
@@ -1350,6 +1501,16 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           trans.closeUniqueDatabaseConnections( getResult() );
         }
 
+        // Report how much the steps had to write to disk
+        //
+        SpillManager spills = spillManager;
+        if ( spills != null && spills.getFilesCreated() > 0 && log.isBasic() ) {
+          log.logBasic( BaseMessages.getString( PKG, "Trans.Log.SpillStatistics",
+            String.valueOf( spills.getRowsWritten() ), String.valueOf( spills.getFilesCreated() ),
+            String.valueOf( spills.getBytesWritten() ), String.valueOf( spills.getRowsRead() ),
+            String.valueOf( spills.getPeakRowsInMemory() ) ) );
+        }
+
         // release unused vfs connections
         KettleVFS.freeUnusedResources();
       }
@@ -1364,13 +1525,37 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     switch ( transMeta.getTransformationType() ) {
       case Normal:
 
+        // Collect the steps of the fused chains in the order of the hops, they share one thread
+        //
+        Map<String, List<StepMetaDataCombi>> fusedCombis = new HashMap<>();
+        if ( stepFusion != null ) {
+          for ( List<StepMeta> chain : stepFusion.getChains() ) {
+            List<StepMetaDataCombi> combis = new ArrayList<>();
+            for ( StepMeta stepMeta : chain ) {
+              for ( StepMetaDataCombi combi : steps ) {
+                if ( combi.stepMeta.equals( stepMeta ) ) {
+                  combis.add( combi );
+                }
+              }
+            }
+            fusedCombis.put( chain.get( 0 ).getName(), combis );
+          }
+        }
+
         // Now start all the threads...
         //
         for ( int i = 0; i < steps.size(); i++ ) {
           final StepMetaDataCombi combi = steps.get( i );
-          RunThread runThread = new RunThread( combi );
-          Thread thread = new Thread( runThread );
-          thread.setName( getName() + " - " + combi.stepname );
+          Thread thread = null;
+          List<StepMeta> chain = stepFusion == null ? null : stepFusion.getChain( combi.stepMeta );
+          if ( chain == null ) {
+            thread = new Thread( new RunThread( combi ) );
+            thread.setName( getName() + " - " + combi.stepname );
+          } else if ( chain.get( 0 ).equals( combi.stepMeta ) ) {
+            List<StepMetaDataCombi> combis = fusedCombis.get( combi.stepname );
+            thread = new Thread( new FusedRunThread( combis ) );
+            thread.setName( getName() + " - " + combi.stepname + " ... " + combis.get( combis.size() - 1 ).stepname );
+          }
           ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeStart.id, combi );
           // Call an extension point at the end of the step
           //
@@ -1387,7 +1572,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
           } );
 
-          thread.start();
+          if ( thread != null ) {
+            thread.start();
+          }
         }
         break;
 
@@ -1484,6 +1671,9 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
    *           if any errors occur during notification
    */
   protected void fireTransFinishedListeners() throws KettleException {
+    // The steps are done with the objects they shared
+    stepArtifactCache.clear();
+
     // PDI-5229 sync added
     synchronized ( transListeners ) {
       if ( transListeners.size() == 0 ) {
@@ -1540,33 +1730,27 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       // get the statistics from the steps and keep them...
       //
       int seqNr = stepPerformanceSnapshotSeqNr.incrementAndGet();
+      Map<String, StepBottleneck> bottlenecks = BottleneckAnalyzer.analyzeByStep( getStepInterfaces(), rowsets );
       for ( int i = 0; i < steps.size(); i++ ) {
         StepMeta stepMeta = steps.get( i ).stepMeta;
         StepInterface step = steps.get( i ).step;
 
-        StepPerformanceSnapShot snapShot =
-            new StepPerformanceSnapShot( seqNr, getBatchId(), new Date(), getName(), stepMeta.getName(), step.getCopy(),
-                step.getLinesRead(), step.getLinesWritten(), step.getLinesInput(), step.getLinesOutput(), step
-                    .getLinesUpdated(), step.getLinesRejected(), step.getErrors() );
         List<StepPerformanceSnapShot> snapShotList = stepPerformanceSnapShots.get( step.toString() );
-        StepPerformanceSnapShot previous;
-        if ( snapShotList == null ) {
-          snapShotList = new ArrayList<>();
+        if ( !( snapShotList instanceof StepPerformanceSnapShotBuffer ) ) {
+          snapShotList =
+            new StepPerformanceSnapShotBuffer( getName(), stepMeta.getName(), step.getCopy(),
+              stepPerformanceSnapshotSizeLimit );
           stepPerformanceSnapShots.put( step.toString(), snapShotList );
-          previous = null;
-        } else {
-          previous = snapShotList.get( snapShotList.size() - 1 ); // the last one...
         }
-        // Make the difference...
-        //
-        snapShot.diff( previous, step.rowsetInputSize(), step.rowsetOutputSize() );
-        synchronized ( stepPerformanceSnapShots ) {
-          snapShotList.add( snapShot );
+        StepBottleneck bottleneck = bottlenecks.get( BottleneckAnalyzer.getKey( step.getStepname(), step.getCopy() ) );
 
-          if ( stepPerformanceSnapshotSizeLimit > 0 && snapShotList.size() > stepPerformanceSnapshotSizeLimit ) {
-            snapShotList.remove( 0 );
-          }
-        }
+        // The buffer keeps the totals in a ring and works out the differences when the snapshots are read
+        //
+        ( (StepPerformanceSnapShotBuffer) snapShotList ).add( seqNr, getBatchId(), new Date(), step.getLinesRead(),
+          step.getLinesWritten(), step.getLinesInput(), step.getLinesOutput(), step.getLinesUpdated(),
+          step.getLinesRejected(), step.getErrors(), step.rowsetInputSize(), step.rowsetOutputSize(),
+          TimeUnit.NANOSECONDS.toMillis( bottleneck.getInputWaitTime() ),
+          TimeUnit.NANOSECONDS.toMillis( bottleneck.getOutputWaitTime() ), bottleneck.getScore() );
       }
 
       lastStepPerformanceSnapshotSeqNrAdded = stepPerformanceSnapshotSeqNr.get();
@@ -4658,6 +4842,46 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     this.stepPerformanceSnapShots = stepPerformanceSnapShots;
   }
 
+  /**
+   * Gets the row counters and latency histograms of the step copies, keyed like the step performance snapshots. The
+   * histograms are only filled when step performance capturing is enabled.
+   *
+   * @return the metrics of the step copies that keep them
+   */
+  public Map<String, StepMetrics> getStepMetrics() {
+    Map<String, StepMetrics> metrics = new LinkedHashMap<>();
+    if ( steps != null ) {
+      for ( StepMetaDataCombi combi : steps ) {
+        if ( combi.step instanceof BaseStep ) {
+          metrics.put( combi.step.toString(), ( (BaseStep) combi.step ).getMetrics() );
+        }
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Gets the bottleneck figures of the step copies, calculated from the time the steps spent blocked on the row sets
+   * between them. This can be called while the transformation is running.
+   *
+   * @return the bottleneck figures of the step copies, the highest score first
+   * @see BottleneckAnalyzer
+   */
+  public List<StepBottleneck> getBottlenecks() {
+    if ( steps == null ) {
+      return new ArrayList<>();
+    }
+    return BottleneckAnalyzer.analyze( getStepInterfaces(), rowsets );
+  }
+
+  private List<StepInterface> getStepInterfaces() {
+    List<StepInterface> stepInterfaces = new ArrayList<>( steps.size() );
+    for ( StepMetaDataCombi combi : steps ) {
+      stepInterfaces.add( combi.step );
+    }
+    return stepInterfaces;
+  }
+
   /**
    * Gets a list of the transformation listeners. Please do not attempt to modify this list externally. Returned list is
    * mutable only for backward compatibility purposes.
@@ -5393,6 +5617,20 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     this.resultRows = resultRows;
   }
 
+  /**
+   * Gets the spill manager the steps of this transformation create their temporary files with. It is created the first
+   * time it's needed, with the KETTLE_TRANS_SPILL_MEMORY_ROWS and KETTLE_SPILL_COMPRESSION variables of the
+   * transformation.
+   *
+   * @return the spill manager
+   */
+  public synchronized SpillManager getSpillManager() {
+    if ( spillManager == null ) {
+      spillManager = SpillManager.fromVariables( this );
+    }
+    return spillManager;
+  }
+
   public Result getPreviousResult() {
     return previousResult;
   }
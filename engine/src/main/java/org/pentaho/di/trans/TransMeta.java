@@ -118,7 +118,10 @@ import org.w3c.dom.NodeList;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -292,6 +295,21 @@ public class TransMeta extends AbstractMeta
   /** The previous step cache */
   protected Map<String, List<StepMeta>> previousStepCache;
 
+  /** The keys of the steps fields cache entries, per step name */
+  private Map<String, Set<String>> stepsFieldsCacheKeys;
+
+  /** The metadata of the steps at the time their fields were cached, per step name */
+  private Map<String, String> stepsFieldsFingerprints;
+
+  /** The variables at the time the step fields were cached */
+  private Map<String, String> stepsFieldsVariables;
+
+  /** The resolved connection settings at the time the step fields were cached */
+  private String stepsFieldsConnections;
+
+  /** The depth of the getStepFields/getPrevStepFields calls in progress */
+  private int stepFieldsDepth;
+
   /** The log channel interface. */
   protected LogChannelInterface log;
 
@@ -580,6 +598,13 @@ public class TransMeta extends AbstractMeta
         transMeta.clusterSchemas = new ArrayList<>();
         transMeta.namedParams = new NamedParamsDefault();
         transMeta.stepChangeListeners = new ArrayList<>();
+        transMeta.stepsFieldsCache = new HashMap<>();
+        transMeta.stepsFieldsCacheKeys = new HashMap<>();
+        transMeta.stepsFieldsFingerprints = new HashMap<>();
+        transMeta.stepsFieldsVariables = null;
+        transMeta.stepsFieldsConnections = null;
+        transMeta.loopCache = new HashMap<>();
+        transMeta.previousStepCache = new HashMap<>();
       }
       for ( DatabaseMeta db : databases ) {
         transMeta.addDatabase( (DatabaseMeta) db.clone() );
@@ -700,6 +725,8 @@ public class TransMeta extends AbstractMeta
     stepPerformanceCapturingSizeLimit = "100"; // maximum 100 data points
 
     stepsFieldsCache = new HashMap<>();
+    stepsFieldsCacheKeys = new HashMap<>();
+    stepsFieldsFingerprints = new HashMap<>();
     loopCache = new HashMap<>();
     previousStepCache = new HashMap<>();
     transformationType = TransformationType.Normal;
@@ -721,7 +748,7 @@ public class TransMeta extends AbstractMeta
       addStepChangeListener( (StepMetaChangeListenerInterface) iface );
     }
     changed_steps = true;
-    clearCaches();
+    clearCaches( stepMeta );
   }
 
   /**
@@ -745,7 +772,7 @@ public class TransMeta extends AbstractMeta
       addStepChangeListener( index, (StepMetaChangeListenerInterface) iface );
     }
     changed_steps = true;
-    clearCaches();
+    clearCaches( stepMeta );
   }
 
   /**
@@ -758,7 +785,7 @@ public class TransMeta extends AbstractMeta
   public void addTransHop( TransHopMeta hi ) {
     hops.add( hi );
     changed_hops = true;
-    clearCaches();
+    clearCaches( hi );
   }
 
   /**
@@ -788,7 +815,7 @@ public class TransMeta extends AbstractMeta
     if ( iface instanceof StepMetaChangeListenerInterface ) {
       addStepChangeListener( p, (StepMetaChangeListenerInterface) stepMeta.getStepMetaInterface() );
     }
-    clearCaches();
+    clearCaches( stepMeta );
   }
 
   /**
@@ -807,7 +834,7 @@ public class TransMeta extends AbstractMeta
       hops.add( hi );
     }
     changed_hops = true;
-    clearCaches();
+    clearCaches( hi );
   }
 
   /**
@@ -898,7 +925,7 @@ public class TransMeta extends AbstractMeta
     }
 
     changed_steps = true;
-    clearCaches();
+    clearCaches( removeStep );
   }
 
   /**
@@ -913,9 +940,9 @@ public class TransMeta extends AbstractMeta
       return;
     }
 
-    hops.remove( i );
+    TransHopMeta removeHop = hops.remove( i );
     changed_hops = true;
-    clearCaches();
+    clearCaches( removeHop );
   }
 
   /**
@@ -928,7 +955,7 @@ public class TransMeta extends AbstractMeta
   public void removeTransHop( TransHopMeta hop ) {
     hops.remove( hop );
     changed_hops = true;
-    clearCaches();
+    clearCaches( hop );
   }
 
   /**
@@ -1002,9 +1029,11 @@ public class TransMeta extends AbstractMeta
     if ( iface instanceof StepMetaChangeListenerInterface ) {
       addStepChangeListener( i, (StepMetaChangeListenerInterface) stepMeta.getStepMetaInterface() );
     }
-    steps.set( i, stepMeta );
+    StepMeta previous = steps.set( i, stepMeta );
     stepMeta.setParentTransMeta( this );
-    clearCaches();
+    clearStepFieldsCache( Arrays.asList( previous, stepMeta ) );
+    clearLoopCache();
+    clearPreviousStepCache();
   }
 
   /**
@@ -1017,8 +1046,9 @@ public class TransMeta extends AbstractMeta
    *          The hop meta-data to set
    */
   public void setTransHop( int i, TransHopMeta hi ) {
-    hops.set( i, hi );
-    clearCaches();
+    TransHopMeta previous = hops.set( i, hi );
+    clearCaches( previous );
+    clearCaches( hi );
   }
 
   /**
@@ -1779,6 +1809,23 @@ public class TransMeta extends AbstractMeta
    *           the kettle step exception
    */
   public RowMetaInterface getStepFields( StepMeta stepMeta, StepMeta targetStep, ProgressMonitorListener monitor ) throws KettleStepException {
+    stepFieldsDepth++;
+    try {
+      if ( stepFieldsDepth == 1 && stepMeta != null ) {
+        // Steps can be changed without telling the transformation, make sure the cached fields are still current
+        refreshStepFieldsEnvironment();
+        refreshStepFieldsCache( stepMeta, true );
+      }
+      RowMetaInterface rowMeta = resolveStepFields( stepMeta, targetStep, monitor );
+      // The cached fields are shared by all the steps downstream, the caller gets a copy it can change
+      return stepFieldsDepth == 1 ? rowMeta.clone() : rowMeta;
+    } finally {
+      stepFieldsDepth--;
+    }
+  }
+
+  private RowMetaInterface resolveStepFields( StepMeta stepMeta, StepMeta targetStep, ProgressMonitorListener monitor )
+    throws KettleStepException {
     RowMetaInterface row = new RowMeta();
 
     if ( stepMeta == null ) {
@@ -1805,7 +1852,7 @@ public class TransMeta extends AbstractMeta
 
       // Store this row in the cache
       //
-      stepsFieldsCache.put( fromToCacheEntry, row );
+      cacheStepFields( stepMeta, fromToCacheEntry, row );
 
       return row;
     }
@@ -1869,7 +1916,7 @@ public class TransMeta extends AbstractMeta
 
     // Store this row in the cache
     //
-    stepsFieldsCache.put( fromToCacheEntry, rowMeta );
+    cacheStepFields( stepMeta, fromToCacheEntry, rowMeta );
 
     return rowMeta;
   }
@@ -1920,12 +1967,26 @@ public class TransMeta extends AbstractMeta
   public RowMetaInterface getPrevStepFields(
     StepMeta stepMeta, final String stepName, ProgressMonitorListener  monitor )
     throws KettleStepException {
-    clearStepFieldsCachce();
-    RowMetaInterface row = new RowMeta();
-
     if ( stepMeta == null ) {
       return null;
     }
+    stepFieldsDepth++;
+    try {
+      if ( stepFieldsDepth == 1 ) {
+        // Steps can be changed without telling the transformation, make sure the cached fields are still current
+        refreshStepFieldsEnvironment();
+        refreshStepFieldsCache( stepMeta, false );
+        return resolvePrevStepFields( stepMeta, stepName, monitor ).clone();
+      }
+      return resolvePrevStepFields( stepMeta, stepName, monitor );
+    } finally {
+      stepFieldsDepth--;
+    }
+  }
+
+  private RowMetaInterface resolvePrevStepFields( StepMeta stepMeta, String stepName, ProgressMonitorListener monitor )
+    throws KettleStepException {
+    RowMetaInterface row = new RowMeta();
     List<StepMeta> prevSteps = findPreviousSteps( stepMeta );
     int nrPrevSteps = prevSteps.size();
     if ( log.isDebug() ) {
@@ -6025,11 +6086,195 @@ public class TransMeta extends AbstractMeta
     clearPreviousStepCache();
   }
 
+  /**
+   * Clears the caches after a step was added, removed or changed. Only the fields of the step and of the steps after
+   * it are cleared, the fields of the other steps stay cached.
+   *
+   * @param changedStep
+   *          the step that was added, removed or changed
+   */
+  public void clearCaches( StepMeta changedStep ) {
+    clearStepFieldsCache( Collections.singletonList( changedStep ) );
+    clearLoopCache();
+    clearPreviousStepCache();
+  }
+
+  /**
+   * Clears the caches after a hop was added, removed or changed. Only the fields of the target step and of the steps
+   * after it are cleared, along with the fields the source step sends to the target step.
+   *
+   * @param changedHop
+   *          the hop that was added, removed or changed
+   */
+  public void clearCaches( TransHopMeta changedHop ) {
+    if ( changedHop != null ) {
+      if ( changedHop.getFromStep() != null && changedHop.getToStep() != null ) {
+        stepsFieldsCache.remove( changedHop.getFromStep().getName() + "-" + changedHop.getToStep().getName() );
+      }
+      clearStepFieldsCache( Collections.singletonList( changedHop.getToStep() ) );
+    }
+    clearLoopCache();
+    clearPreviousStepCache();
+  }
+
   /**
    * Clears the step fields cachce.
    */
   private void clearStepFieldsCachce() {
     stepsFieldsCache.clear();
+    stepsFieldsCacheKeys.clear();
+    stepsFieldsFingerprints.clear();
+    stepsFieldsVariables = null;
+    stepsFieldsConnections = null;
+  }
+
+  /**
+   * Clears the cached fields of the steps and of all the steps downstream of them.
+   */
+  private void clearStepFieldsCache( Collection<StepMeta> changedSteps ) {
+    Map<StepMeta, List<StepMeta>> nextSteps = new HashMap<>();
+    for ( TransHopMeta hop : hops ) {
+      if ( hop.getFromStep() != null && hop.getToStep() != null ) {
+        nextSteps.computeIfAbsent( hop.getFromStep(), step -> new ArrayList<>() ).add( hop.getToStep() );
+        if ( changedSteps.contains( hop.getToStep() ) ) {
+          // what the previous step sends can depend on the step it sends to
+          stepsFieldsCache.remove( hop.getFromStep().getName() + "-" + hop.getToStep().getName() );
+        }
+      }
+    }
+
+    Set<StepMeta> cleared = new HashSet<>();
+    ArrayDeque<StepMeta> todo = new ArrayDeque<>();
+    for ( StepMeta changedStep : changedSteps ) {
+      if ( changedStep != null ) {
+        todo.add( changedStep );
+      }
+    }
+    while ( !todo.isEmpty() ) {
+      StepMeta step = todo.poll();
+      if ( cleared.add( step ) ) {
+        Set<String> keys = stepsFieldsCacheKeys.remove( step.getName() );
+        if ( keys != null ) {
+          stepsFieldsCache.keySet().removeAll( keys );
+        }
+        stepsFieldsFingerprints.remove( step.getName() );
+        todo.addAll( nextSteps.getOrDefault( step, Collections.emptyList() ) );
+      }
+    }
+  }
+
+  /**
+   * Clears the step fields cache when the variables or the connections changed since the fields were cached. Fields
+   * can depend on both, a table name in a variable for example.
+   */
+  private void refreshStepFieldsEnvironment() {
+    String connections = getStepFieldsConnections();
+    if ( stepsFieldsVariables != null && connections.equals( stepsFieldsConnections )
+      && isStepFieldsVariablesCurrent() ) {
+      return;
+    }
+    if ( !stepsFieldsCache.isEmpty() ) {
+      clearStepFieldsCachce();
+    }
+    stepsFieldsVariables = new HashMap<>();
+    for ( String name : listVariables() ) {
+      stepsFieldsVariables.put( name, getVariable( name ) );
+    }
+    stepsFieldsConnections = connections;
+  }
+
+  private boolean isStepFieldsVariablesCurrent() {
+    String[] names = listVariables();
+    if ( names.length != stepsFieldsVariables.size() ) {
+      return false;
+    }
+    for ( String name : names ) {
+      String value = getVariable( name );
+      boolean same = value == null ? stepsFieldsVariables.containsKey( name )
+        : value.equals( stepsFieldsVariables.get( name ) );
+      if ( !same ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the connection settings the fields of steps reading from a database depend on, with the variables resolved
+   */
+  private String getStepFieldsConnections() {
+    StringBuilder connections = new StringBuilder();
+    for ( DatabaseMeta databaseMeta : databases ) {
+      connections.append( databaseMeta.getName() ).append( '|' ).append( databaseMeta.getPluginId() ).append( '|' )
+        .append( databaseMeta.getAccessType() );
+      String[] settings = { databaseMeta.getHostname(), databaseMeta.getDatabasePortNumberString(),
+        databaseMeta.getDatabaseName(), databaseMeta.getServername(), databaseMeta.getUsername(),
+        databaseMeta.getPreferredSchemaName() };
+      for ( String setting : settings ) {
+        connections.append( '|' ).append( environmentSubstitute( setting ) );
+      }
+      connections.append( '\n' );
+    }
+    return connections.toString();
+  }
+
+  /**
+   * Looks for the steps before the given step (and optionally the step itself) whose metadata changed since their
+   * fields were cached, and clears the fields of those steps and of the steps after them.
+   */
+  private void refreshStepFieldsCache( StepMeta stepMeta, boolean includeStep ) {
+    if ( stepsFieldsCache.isEmpty() ) {
+      return;
+    }
+    Map<StepMeta, List<StepMeta>> previousSteps = new HashMap<>();
+    for ( TransHopMeta hop : hops ) {
+      if ( hop.getFromStep() != null && hop.getToStep() != null ) {
+        previousSteps.computeIfAbsent( hop.getToStep(), step -> new ArrayList<>() ).add( hop.getFromStep() );
+      }
+    }
+
+    List<StepMeta> changedSteps = new ArrayList<>();
+    Set<StepMeta> visited = new HashSet<>();
+    ArrayDeque<StepMeta> todo = new ArrayDeque<>( previousSteps.getOrDefault( stepMeta, Collections.emptyList() ) );
+    if ( includeStep ) {
+      todo.addFirst( stepMeta );
+    }
+    while ( !todo.isEmpty() ) {
+      StepMeta step = todo.poll();
+      if ( visited.add( step ) ) {
+        if ( stepsFieldsCacheKeys.containsKey( step.getName() ) ) {
+          String fingerprint = stepsFieldsFingerprints.get( step.getName() );
+          if ( fingerprint == null || !fingerprint.equals( getStepFieldsFingerprint( step ) ) ) {
+            changedSteps.add( step );
+          }
+        }
+        todo.addAll( previousSteps.getOrDefault( step, Collections.emptyList() ) );
+      }
+    }
+    if ( !changedSteps.isEmpty() ) {
+      clearStepFieldsCache( changedSteps );
+    }
+  }
+
+  private void cacheStepFields( StepMeta stepMeta, String cacheKey, RowMetaInterface rowMeta ) {
+    stepsFieldsCache.put( cacheKey, rowMeta );
+    stepsFieldsCacheKeys.computeIfAbsent( stepMeta.getName(), name -> new HashSet<>() ).add( cacheKey );
+    stepsFieldsFingerprints.computeIfAbsent( stepMeta.getName(), name -> getStepFieldsFingerprint( stepMeta ) );
+  }
+
+  /**
+   * The metadata of a step as far as its fields are concerned: the step XML and its error handling. Steps can be
+   * changed through their setters without being marked as changed, so only the content can tell.
+   */
+  private static String getStepFieldsFingerprint( StepMeta stepMeta ) {
+    try {
+      StepMetaInterface stepMetaInterface = stepMeta.getStepMetaInterface();
+      String xml = stepMetaInterface == null ? "" : Const.NVL( stepMetaInterface.getXML(), "" );
+      return stepMeta.isDoingErrorHandling() ? xml + stepMeta.getStepErrorMeta().getXML() : xml;
+    } catch ( Exception e ) {
+      // Can't tell, so the fields have to be resolved again
+      return null;
+    }
   }
 
   /**
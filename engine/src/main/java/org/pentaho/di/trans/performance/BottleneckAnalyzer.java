@@ -0,0 +1,156 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.trans.step.StepInterface;
+
+/**
+ * Works out which step copies hold back a running transformation, from the time the steps spend blocked on their row
+ * sets (hops). A step that is a bottleneck is busy itself while the steps in front of it wait for room in the row sets
+ * it reads from (back pressure), or the steps after it wait for its rows (starvation).
+ *
+ * The score of a step copy is its busy ratio multiplied with the largest back pressure or starvation it causes on one
+ * of its hops. A step copy without any hops scores its busy ratio.
+ */
+public class BottleneckAnalyzer {
+
+  private static final Comparator<StepBottleneck> BY_SCORE = new Comparator<StepBottleneck>() {
+    @Override
+    public int compare( StepBottleneck o1, StepBottleneck o2 ) {
+      return Double.compare( o2.getScore(), o1.getScore() );
+    }
+  };
+
+  private BottleneckAnalyzer() {
+  }
+
+  /**
+   * @param steps
+   *          the step copies to analyze
+   * @param rowSets
+   *          the row sets between the steps
+   * @return the bottleneck figures of the step copies, the highest score first
+   */
+  public static List<StepBottleneck> analyze( List<StepInterface> steps, List<RowSet> rowSets ) {
+    Map<String, Long> runtimes = new HashMap<>();
+    for ( StepInterface step : steps ) {
+      runtimes.put( getKey( step.getStepname(), step.getCopy() ), step.getRuntime() * 1000000L );
+    }
+
+    Map<String, List<RowSet>> inputs = new HashMap<>();
+    Map<String, List<RowSet>> outputs = new HashMap<>();
+    if ( rowSets != null ) {
+      for ( RowSet rowSet : rowSets ) {
+        add( inputs, getKey( rowSet.getDestinationStepName(), rowSet.getDestinationStepCopy() ), rowSet );
+        add( outputs, getKey( rowSet.getOriginStepName(), rowSet.getOriginStepCopy() ), rowSet );
+      }
+    }
+
+    List<StepBottleneck> bottlenecks = new ArrayList<>( steps.size() );
+    for ( StepInterface step : steps ) {
+      String key = getKey( step.getStepname(), step.getCopy() );
+      long runtime = runtimes.get( key );
+      List<RowSet> in = inputs.get( key );
+      List<RowSet> out = outputs.get( key );
+
+      long inputWait = 0L;
+      double backPressure = 0.0;
+      if ( in != null ) {
+        for ( RowSet rowSet : in ) {
+          inputWait += rowSet.getGetWaitNanos();
+          long producerRuntime = getRuntime( runtimes, rowSet.getOriginStepName(), rowSet.getOriginStepCopy(), runtime );
+          backPressure = Math.max( backPressure, ratio( rowSet.getPutWaitNanos(), producerRuntime ) );
+        }
+      }
+      long outputWait = 0L;
+      double starvation = 0.0;
+      if ( out != null ) {
+        for ( RowSet rowSet : out ) {
+          outputWait += rowSet.getPutWaitNanos();
+          long consumerRuntime =
+            getRuntime( runtimes, rowSet.getDestinationStepName(), rowSet.getDestinationStepCopy(), runtime );
+          starvation = Math.max( starvation, ratio( rowSet.getGetWaitNanos(), consumerRuntime ) );
+        }
+      }
+
+      double busyRatio = 1.0 - ratio( inputWait + outputWait, runtime );
+      if ( runtime <= 0 ) {
+        busyRatio = 0.0;
+      }
+      double score = in == null && out == null ? busyRatio : busyRatio * Math.max( backPressure, starvation );
+
+      bottlenecks.add( new StepBottleneck( step.getStepname(), step.getCopy(), runtime, inputWait, outputWait,
+        busyRatio, backPressure, starvation, score ) );
+    }
+
+    Collections.sort( bottlenecks, BY_SCORE );
+    return bottlenecks;
+  }
+
+  /**
+   * @return the bottleneck figures by step copy, using {@link #getKey(String, int)}
+   */
+  public static Map<String, StepBottleneck> analyzeByStep( List<StepInterface> steps, List<RowSet> rowSets ) {
+    Map<String, StepBottleneck> map = new HashMap<>();
+    for ( StepBottleneck bottleneck : analyze( steps, rowSets ) ) {
+      map.put( getKey( bottleneck.getStepName(), bottleneck.getStepCopy() ), bottleneck );
+    }
+    return map;
+  }
+
+  public static String getKey( String stepName, int stepCopy ) {
+    return stepName + "." + stepCopy;
+  }
+
+  private static void add( Map<String, List<RowSet>> map, String key, RowSet rowSet ) {
+    List<RowSet> list = map.get( key );
+    if ( list == null ) {
+      list = new ArrayList<>( 2 );
+      map.put( key, list );
+    }
+    list.add( rowSet );
+  }
+
+  private static long getRuntime( Map<String, Long> runtimes, String stepName, int stepCopy, long defaultRuntime ) {
+    Long runtime = runtimes.get( getKey( stepName, stepCopy ) );
+    return runtime != null ? runtime : defaultRuntime;
+  }
+
+  /**
+   * @return part / total, limited to [0, 1]: wait times are measured more precisely than the run time of a step
+   */
+  private static double ratio( long part, long total ) {
+    if ( total <= 0 || part <= 0 ) {
+      return 0.0;
+    }
+    return Math.min( 1.0, (double) part / total );
+  }
+}
@@ -0,0 +1,180 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.pentaho.di.core.xml.XMLHandler;
+import org.w3c.dom.Node;
+
+/**
+ * A histogram of durations in nanoseconds with power of two buckets: bucket i counts the durations from 2^(i-1) up to
+ * 2^i - 1 ns, bucket 0 counts the durations of 0 ns. Recording a duration is a couple of uncontended atomic increments,
+ * no objects are allocated.
+ */
+public class LatencyHistogram {
+
+  public static final String XML_TAG = "histogram";
+
+  public static final int NR_OF_BUCKETS = 64;
+
+  private final AtomicLongArray buckets;
+  private final AtomicLong totalNanos;
+  private final AtomicLong maxNanos;
+
+  public LatencyHistogram() {
+    buckets = new AtomicLongArray( NR_OF_BUCKETS );
+    totalNanos = new AtomicLong();
+    maxNanos = new AtomicLong();
+  }
+
+  public LatencyHistogram( Node node ) {
+    this();
+    totalNanos.set( Long.parseLong( XMLHandler.getTagValue( node, "total" ) ) );
+    maxNanos.set( Long.parseLong( XMLHandler.getTagValue( node, "max" ) ) );
+    String[] counts = XMLHandler.getTagValue( node, "buckets" ).split( "," );
+    for ( int i = 0; i < counts.length && i < NR_OF_BUCKETS; i++ ) {
+      buckets.set( i, Long.parseLong( counts[i].trim() ) );
+    }
+  }
+
+  public void record( long nanos ) {
+    if ( nanos < 0 ) {
+      nanos = 0;
+    }
+    buckets.incrementAndGet( getBucket( nanos ) );
+    totalNanos.addAndGet( nanos );
+    long max = maxNanos.get();
+    while ( nanos > max && !maxNanos.compareAndSet( max, nanos ) ) {
+      max = maxNanos.get();
+    }
+  }
+
+  static int getBucket( long nanos ) {
+    return Math.min( NR_OF_BUCKETS - 1, 64 - Long.numberOfLeadingZeros( nanos ) );
+  }
+
+  /**
+   * @return the largest duration in nanoseconds counted by the bucket
+   */
+  public static long getBucketUpperBound( int bucket ) {
+    return bucket >= NR_OF_BUCKETS - 1 ? Long.MAX_VALUE : ( 1L << bucket ) - 1;
+  }
+
+  public long getCount() {
+    long count = 0;
+    for ( int i = 0; i < NR_OF_BUCKETS; i++ ) {
+      count += buckets.get( i );
+    }
+    return count;
+  }
+
+  public long getBucketCount( int bucket ) {
+    return buckets.get( bucket );
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * @return the average duration in nanoseconds or 0 if nothing was recorded
+   */
+  public long getMeanNanos() {
+    long count = getCount();
+    return count == 0 ? 0 : getTotalNanos() / count;
+  }
+
+  /**
+   * Estimates a percentile as the upper bound of the bucket that holds it, capped by the maximum.
+   *
+   * @param percentile
+   *          a value between 0 and 100
+   * @return the estimated duration in nanoseconds or 0 if nothing was recorded
+   */
+  public long getPercentileNanos( double percentile ) {
+    long[] counts = new long[NR_OF_BUCKETS];
+    long count = 0;
+    for ( int i = 0; i < NR_OF_BUCKETS; i++ ) {
+      counts[i] = buckets.get( i );
+      count += counts[i];
+    }
+    if ( count == 0 ) {
+      return 0;
+    }
+    long rank = (long) Math.ceil( count * Math.max( 0.0, Math.min( 100.0, percentile ) ) / 100.0 );
+    long seen = 0;
+    for ( int i = 0; i < NR_OF_BUCKETS; i++ ) {
+      seen += counts[i];
+      if ( seen >= rank && counts[i] > 0 ) {
+        return Math.min( getBucketUpperBound( i ), getMaxNanos() );
+      }
+    }
+    return getMaxNanos();
+  }
+
+  /**
+   * Adds the counts of another histogram to this one, for example to combine the copies of a step.
+   */
+  public void add( LatencyHistogram other ) {
+    for ( int i = 0; i < NR_OF_BUCKETS; i++ ) {
+      buckets.addAndGet( i, other.buckets.get( i ) );
+    }
+    totalNanos.addAndGet( other.getTotalNanos() );
+    long otherMax = other.getMaxNanos();
+    long max = maxNanos.get();
+    while ( otherMax > max && !maxNanos.compareAndSet( max, otherMax ) ) {
+      max = maxNanos.get();
+    }
+  }
+
+  public void clear() {
+    for ( int i = 0; i < NR_OF_BUCKETS; i++ ) {
+      buckets.set( i, 0 );
+    }
+    totalNanos.set( 0 );
+    maxNanos.set( 0 );
+  }
+
+  public String getXML() {
+    StringBuilder counts = new StringBuilder();
+    for ( int i = 0; i < NR_OF_BUCKETS; i++ ) {
+      if ( i > 0 ) {
+        counts.append( ',' );
+      }
+      counts.append( buckets.get( i ) );
+    }
+    StringBuilder xml = new StringBuilder();
+    xml.append( XMLHandler.openTag( XML_TAG ) );
+    xml.append( XMLHandler.addTagValue( "total", getTotalNanos(), false ) );
+    xml.append( XMLHandler.addTagValue( "max", getMaxNanos(), false ) );
+    xml.append( XMLHandler.addTagValue( "buckets", counts.toString(), false ) );
+    xml.append( XMLHandler.closeTag( XML_TAG ) );
+    return xml.toString();
+  }
+}
@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+/**
+ * The bottleneck figures of one step copy, as calculated by the {@link BottleneckAnalyzer}. All times are in
+ * nanoseconds and cover the run time of the step copy so far.
+ */
+public class StepBottleneck {
+
+  private final String stepName;
+  private final int stepCopy;
+  private final long runtime;
+  private final long inputWaitTime;
+  private final long outputWaitTime;
+  private final double busyRatio;
+  private final double backPressure;
+  private final double starvation;
+  private final double score;
+
+  public StepBottleneck( String stepName, int stepCopy, long runtime, long inputWaitTime, long outputWaitTime,
+    double busyRatio, double backPressure, double starvation, double score ) {
+    this.stepName = stepName;
+    this.stepCopy = stepCopy;
+    this.runtime = runtime;
+    this.inputWaitTime = inputWaitTime;
+    this.outputWaitTime = outputWaitTime;
+    this.busyRatio = busyRatio;
+    this.backPressure = backPressure;
+    this.starvation = starvation;
+    this.score = score;
+  }
+
+  public String getStepName() {
+    return stepName;
+  }
+
+  public int getStepCopy() {
+    return stepCopy;
+  }
+
+  /**
+   * @return the run time of the step copy in nanoseconds
+   */
+  public long getRuntime() {
+    return runtime;
+  }
+
+  /**
+   * @return the time the step copy was blocked on empty input row sets
+   */
+  public long getInputWaitTime() {
+    return inputWaitTime;
+  }
+
+  /**
+   * @return the time the step copy was blocked on full output row sets
+   */
+  public long getOutputWaitTime() {
+    return outputWaitTime;
+  }
+
+  /**
+   * @return the part of the run time the step copy was not waiting on its row sets, between 0 and 1
+   */
+  public double getBusyRatio() {
+    return busyRatio;
+  }
+
+  /**
+   * @return the largest part of the run time of a previous step that was spent waiting for this step to make room in
+   *         between them, between 0 and 1
+   */
+  public double getBackPressure() {
+    return backPressure;
+  }
+
+  /**
+   * @return the largest part of the run time of a next step that was spent waiting for rows of this step, between 0
+   *         and 1
+   */
+  public double getStarvation() {
+    return starvation;
+  }
+
+  /**
+   * @return the bottleneck score between 0 and 1: a busy step that makes its neighbours wait scores high
+   */
+  public double getScore() {
+    return score;
+  }
+
+  @Override
+  public String toString() {
+    return String.format( "%s.%d: score=%.3f, busy=%.3f, back pressure=%.3f, starvation=%.3f", stepName, stepCopy,
+      score, busyRatio, backPressure, starvation );
+  }
+}
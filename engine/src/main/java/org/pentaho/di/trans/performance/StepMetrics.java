@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The row counters and latency histograms of a step copy.
+ *
+ * The step thread counts rows in plain fields and adds the changes to these counters every so many rows and when it
+ * is done, other threads read the counters. The counters are striped ({@link LongAdder}) so that threads other than
+ * the step thread can count rows too, without a lock. The latency histograms are only filled when timing is enabled,
+ * which the transformation does when step performance capturing is switched on. Without timing the cost per row is a
+ * single volatile read.
+ */
+public class StepMetrics {
+
+  private final LongAdder linesRead = new LongAdder();
+  private final LongAdder linesWritten = new LongAdder();
+  private final LongAdder linesInput = new LongAdder();
+  private final LongAdder linesOutput = new LongAdder();
+  private final LongAdder linesUpdated = new LongAdder();
+  private final LongAdder linesSkipped = new LongAdder();
+  private final LongAdder linesRejected = new LongAdder();
+
+  private final LatencyHistogram processRowTime = new LatencyHistogram();
+  private final LatencyHistogram inputWaitTime = new LatencyHistogram();
+  private final LatencyHistogram outputWaitTime = new LatencyHistogram();
+
+  private volatile boolean timingEnabled;
+
+  private volatile AtomicLongArray partitionRows;
+
+  public LongAdder getLinesRead() {
+    return linesRead;
+  }
+
+  public LongAdder getLinesWritten() {
+    return linesWritten;
+  }
+
+  public LongAdder getLinesInput() {
+    return linesInput;
+  }
+
+  public LongAdder getLinesOutput() {
+    return linesOutput;
+  }
+
+  public LongAdder getLinesUpdated() {
+    return linesUpdated;
+  }
+
+  public LongAdder getLinesSkipped() {
+    return linesSkipped;
+  }
+
+  public LongAdder getLinesRejected() {
+    return linesRejected;
+  }
+
+  /**
+   * @return the time spent in each call to processRow()
+   */
+  public LatencyHistogram getProcessRowTime() {
+    return processRowTime;
+  }
+
+  /**
+   * @return the time spent waiting for rows from previous steps: the input row sets were empty
+   */
+  public LatencyHistogram getInputWaitTime() {
+    return inputWaitTime;
+  }
+
+  /**
+   * @return the time spent waiting to hand rows to next steps: the output row sets were full
+   */
+  public LatencyHistogram getOutputWaitTime() {
+    return outputWaitTime;
+  }
+
+  public boolean isTimingEnabled() {
+    return timingEnabled;
+  }
+
+  public void setTimingEnabled( boolean timingEnabled ) {
+    this.timingEnabled = timingEnabled;
+  }
+
+  /**
+   * Starts timing an operation.
+   *
+   * @return the start time to pass to one of the record methods, 0 when timing is disabled
+   */
+  public long startTimer() {
+    return timingEnabled ? System.nanoTime() : 0L;
+  }
+
+  public void recordProcessRow( long startTime ) {
+    if ( startTime != 0L ) {
+      processRowTime.record( System.nanoTime() - startTime );
+    }
+  }
+
+  public void recordInputWait( long startTime ) {
+    if ( startTime != 0L ) {
+      inputWaitTime.record( System.nanoTime() - startTime );
+    }
+  }
+
+  public void recordOutputWait( long startTime ) {
+    if ( startTime != 0L ) {
+      outputWaitTime.record( System.nanoTime() - startTime );
+    }
+  }
+
+  /**
+   * Counts a row sent to a partition of the next step.
+   */
+  public void recordPartition( int partitionNr ) {
+    AtomicLongArray rows = partitionRows;
+    if ( rows == null || rows.length() <= partitionNr ) {
+      rows = growPartitionRows( partitionNr + 1 );
+    }
+    rows.incrementAndGet( partitionNr );
+  }
+
+  private synchronized AtomicLongArray growPartitionRows( int size ) {
+    AtomicLongArray rows = partitionRows;
+    if ( rows == null || rows.length() < size ) {
+      AtomicLongArray grown = new AtomicLongArray( size );
+      for ( int i = 0; rows != null && i < rows.length(); i++ ) {
+        grown.set( i, rows.get( i ) );
+      }
+      partitionRows = grown;
+      rows = grown;
+    }
+    return rows;
+  }
+
+  /**
+   * @return the number of rows sent to every partition of the next step, an empty array if the step doesn't partition
+   */
+  public long[] getPartitionRows() {
+    AtomicLongArray rows = partitionRows;
+    long[] result = new long[rows == null ? 0 : rows.length()];
+    for ( int i = 0; i < result.length; i++ ) {
+      result[i] = rows.get( i );
+    }
+    return result;
+  }
+
+  /**
+   * Sets all counters to 0 and empties the histograms.
+   */
+  public void clear() {
+    linesRead.reset();
+    linesWritten.reset();
+    linesInput.reset();
+    linesOutput.reset();
+    linesUpdated.reset();
+    linesSkipped.reset();
+    linesRejected.reset();
+    processRowTime.clear();
+    inputWaitTime.clear();
+    outputWaitTime.clear();
+    partitionRows = null;
+  }
+}
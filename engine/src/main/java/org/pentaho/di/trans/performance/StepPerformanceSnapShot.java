@@ -52,6 +52,12 @@ public class StepPerformanceSnapShot {
   private long inputBufferSize;
   private long outputBufferSize;
 
+  private long totalInputWaitTime;
+  private long totalOutputWaitTime;
+  private long inputWaitTime;
+  private long outputWaitTime;
+  private double bottleneckScore;
+
   /**
    * @param date
    * @param stepName
@@ -95,6 +101,8 @@ public class StepPerformanceSnapShot {
       linesUpdated = totalLinesUpdated;
       linesRejected = totalLinesRejected;
       errors = totalErrors;
+      inputWaitTime = totalInputWaitTime;
+      outputWaitTime = totalOutputWaitTime;
     } else {
       timeDifference = date.getTime() - previous.date.getTime();
       linesRead = totalLinesRead - previous.totalLinesRead;
@@ -104,6 +112,8 @@ public class StepPerformanceSnapShot {
       linesUpdated = totalLinesUpdated - previous.totalLinesUpdated;
       linesRejected = totalLinesRejected - previous.totalLinesRejected;
       errors = totalErrors - previous.totalErrors;
+      inputWaitTime = totalInputWaitTime - previous.totalInputWaitTime;
+      outputWaitTime = totalOutputWaitTime - previous.totalOutputWaitTime;
     }
   }
 
@@ -452,4 +462,80 @@ public class StepPerformanceSnapShot {
     this.transName = transName;
   }
 
+  /**
+   * @return the time in ms the step copy was blocked on empty input row sets since the start
+   */
+  public long getTotalInputWaitTime() {
+    return totalInputWaitTime;
+  }
+
+  /**
+   * @param totalInputWaitTime
+   *          the totalInputWaitTime to set
+   */
+  public void setTotalInputWaitTime( long totalInputWaitTime ) {
+    this.totalInputWaitTime = totalInputWaitTime;
+  }
+
+  /**
+   * @return the time in ms the step copy was blocked on full output row sets since the start
+   */
+  public long getTotalOutputWaitTime() {
+    return totalOutputWaitTime;
+  }
+
+  /**
+   * @param totalOutputWaitTime
+   *          the totalOutputWaitTime to set
+   */
+  public void setTotalOutputWaitTime( long totalOutputWaitTime ) {
+    this.totalOutputWaitTime = totalOutputWaitTime;
+  }
+
+  /**
+   * @return the time in ms the step copy was blocked on empty input row sets since the previous snapshot
+   */
+  public long getInputWaitTime() {
+    return inputWaitTime;
+  }
+
+  /**
+   * @param inputWaitTime
+   *          the inputWaitTime to set
+   */
+  public void setInputWaitTime( long inputWaitTime ) {
+    this.inputWaitTime = inputWaitTime;
+  }
+
+  /**
+   * @return the time in ms the step copy was blocked on full output row sets since the previous snapshot
+   */
+  public long getOutputWaitTime() {
+    return outputWaitTime;
+  }
+
+  /**
+   * @param outputWaitTime
+   *          the outputWaitTime to set
+   */
+  public void setOutputWaitTime( long outputWaitTime ) {
+    this.outputWaitTime = outputWaitTime;
+  }
+
+  /**
+   * @return the bottleneck score of the step copy at the time of the snapshot
+   * @see BottleneckAnalyzer
+   */
+  public double getBottleneckScore() {
+    return bottleneckScore;
+  }
+
+  /**
+   * @param bottleneckScore
+   *          the bottleneckScore to set
+   */
+  public void setBottleneckScore( double bottleneckScore ) {
+    this.bottleneckScore = bottleneckScore;
+  }
+
 }
@@ -0,0 +1,226 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Keeps the performance snapshots of one step copy in a ring buffer of primitive columns. Adding a snapshot doesn't
+ * allocate once the buffer is full: the oldest snapshot is overwritten. Without a size limit the buffer grows.
+ *
+ * The list view materializes a {@link StepPerformanceSnapShot}, including the differences with the previous snapshot,
+ * each time an element is read. Changes made to those objects are not kept.
+ */
+public class StepPerformanceSnapShotBuffer extends AbstractList<StepPerformanceSnapShot> {
+
+  private static final int READ = 0;
+  private static final int WRITTEN = 1;
+  private static final int INPUT = 2;
+  private static final int OUTPUT = 3;
+  private static final int UPDATED = 4;
+  private static final int REJECTED = 5;
+  private static final int ERRORS = 6;
+  private static final int INPUT_WAIT = 7;
+  private static final int OUTPUT_WAIT = 8;
+  private static final int NR_OF_TOTALS = 9;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String transName;
+  private final String stepName;
+  private final int stepCopy;
+  private final int sizeLimit;
+
+  private int[] seqNrs;
+  private long[] batchIds;
+  private long[] dates;
+  private long[][] totals;
+  private long[] inputBufferSizes;
+  private long[] outputBufferSizes;
+  private double[] bottleneckScores;
+
+  /** Index of the oldest snapshot */
+  private int head;
+  private int size;
+
+  /** The date and totals of the last overwritten snapshot, to calculate the differences of the oldest one */
+  private boolean evicted;
+  private long evictedDate;
+  private final long[] evictedTotals = new long[NR_OF_TOTALS];
+
+  /**
+   * @param sizeLimit
+   *          the maximum number of snapshots to keep, 0 or less keeps them all
+   */
+  public StepPerformanceSnapShotBuffer( String transName, String stepName, int stepCopy, int sizeLimit ) {
+    this.transName = transName;
+    this.stepName = stepName;
+    this.stepCopy = stepCopy;
+    this.sizeLimit = sizeLimit;
+    allocate( sizeLimit > 0 ? Math.min( sizeLimit, INITIAL_CAPACITY ) : INITIAL_CAPACITY );
+  }
+
+  private void allocate( int capacity ) {
+    seqNrs = new int[capacity];
+    batchIds = new long[capacity];
+    dates = new long[capacity];
+    totals = new long[NR_OF_TOTALS][capacity];
+    inputBufferSizes = new long[capacity];
+    outputBufferSizes = new long[capacity];
+    bottleneckScores = new double[capacity];
+  }
+
+  public void add( int seqNr, long batchId, Date date, long totalLinesRead, long totalLinesWritten,
+    long totalLinesInput, long totalLinesOutput, long totalLinesUpdated, long totalLinesRejected, long totalErrors,
+    long inputBufferSize, long outputBufferSize ) {
+    add( seqNr, batchId, date, totalLinesRead, totalLinesWritten, totalLinesInput, totalLinesOutput, totalLinesUpdated,
+      totalLinesRejected, totalErrors, inputBufferSize, outputBufferSize, 0L, 0L, 0.0 );
+  }
+
+  /**
+   * @param totalInputWaitTime
+   *          the time in ms the step copy was blocked on empty input row sets since the start
+   * @param totalOutputWaitTime
+   *          the time in ms the step copy was blocked on full output row sets since the start
+   * @param bottleneckScore
+   *          the bottleneck score at the time of the snapshot
+   */
+  public synchronized void add( int seqNr, long batchId, Date date, long totalLinesRead, long totalLinesWritten,
+    long totalLinesInput, long totalLinesOutput, long totalLinesUpdated, long totalLinesRejected, long totalErrors,
+    long inputBufferSize, long outputBufferSize, long totalInputWaitTime, long totalOutputWaitTime,
+    double bottleneckScore ) {
+    int slot;
+    if ( sizeLimit > 0 && size == sizeLimit ) {
+      // Overwrite the oldest
+      slot = head;
+      evicted = true;
+      evictedDate = dates[slot];
+      for ( int t = 0; t < NR_OF_TOTALS; t++ ) {
+        evictedTotals[t] = totals[t][slot];
+      }
+      head = ( head + 1 ) % seqNrs.length;
+    } else {
+      if ( size == seqNrs.length ) {
+        grow();
+      }
+      slot = ( head + size ) % seqNrs.length;
+      size++;
+    }
+    seqNrs[slot] = seqNr;
+    batchIds[slot] = batchId;
+    dates[slot] = date.getTime();
+    totals[READ][slot] = totalLinesRead;
+    totals[WRITTEN][slot] = totalLinesWritten;
+    totals[INPUT][slot] = totalLinesInput;
+    totals[OUTPUT][slot] = totalLinesOutput;
+    totals[UPDATED][slot] = totalLinesUpdated;
+    totals[REJECTED][slot] = totalLinesRejected;
+    totals[ERRORS][slot] = totalErrors;
+    totals[INPUT_WAIT][slot] = totalInputWaitTime;
+    totals[OUTPUT_WAIT][slot] = totalOutputWaitTime;
+    inputBufferSizes[slot] = inputBufferSize;
+    outputBufferSizes[slot] = outputBufferSize;
+    bottleneckScores[slot] = bottleneckScore;
+  }
+
+  private void grow() {
+    int capacity = seqNrs.length * 2;
+    if ( sizeLimit > 0 ) {
+      capacity = Math.min( capacity, sizeLimit );
+    }
+    int[] oldSeqNrs = seqNrs;
+    long[] oldBatchIds = batchIds;
+    long[] oldDates = dates;
+    long[][] oldTotals = totals;
+    long[] oldInput = inputBufferSizes;
+    long[] oldOutput = outputBufferSizes;
+    double[] oldScores = bottleneckScores;
+    allocate( capacity );
+    for ( int i = 0; i < size; i++ ) {
+      int from = ( head + i ) % oldSeqNrs.length;
+      seqNrs[i] = oldSeqNrs[from];
+      batchIds[i] = oldBatchIds[from];
+      dates[i] = oldDates[from];
+      for ( int t = 0; t < NR_OF_TOTALS; t++ ) {
+        totals[t][i] = oldTotals[t][from];
+      }
+      inputBufferSizes[i] = oldInput[from];
+      outputBufferSizes[i] = oldOutput[from];
+      bottleneckScores[i] = oldScores[from];
+    }
+    head = 0;
+  }
+
+  @Override
+  public synchronized StepPerformanceSnapShot get( int index ) {
+    if ( index < 0 || index >= size ) {
+      throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+    }
+    int slot = ( head + index ) % seqNrs.length;
+    StepPerformanceSnapShot snapShot = newSnapShot( slot );
+
+    StepPerformanceSnapShot previous = null;
+    if ( index > 0 ) {
+      previous = newSnapShot( ( head + index - 1 ) % seqNrs.length );
+    } else if ( evicted ) {
+      previous =
+        new StepPerformanceSnapShot( 0, 0L, new Date( evictedDate ), transName, stepName, stepCopy,
+          evictedTotals[READ], evictedTotals[WRITTEN], evictedTotals[INPUT], evictedTotals[OUTPUT],
+          evictedTotals[UPDATED], evictedTotals[REJECTED], evictedTotals[ERRORS] );
+      previous.setTotalInputWaitTime( evictedTotals[INPUT_WAIT] );
+      previous.setTotalOutputWaitTime( evictedTotals[OUTPUT_WAIT] );
+    }
+    snapShot.diff( previous, inputBufferSizes[slot], outputBufferSizes[slot] );
+    snapShot.setBottleneckScore( bottleneckScores[slot] );
+    return snapShot;
+  }
+
+  private StepPerformanceSnapShot newSnapShot( int slot ) {
+    StepPerformanceSnapShot snapShot =
+      new StepPerformanceSnapShot( seqNrs[slot], batchIds[slot], new Date( dates[slot] ), transName, stepName,
+        stepCopy, totals[READ][slot], totals[WRITTEN][slot], totals[INPUT][slot], totals[OUTPUT][slot],
+        totals[UPDATED][slot], totals[REJECTED][slot], totals[ERRORS][slot] );
+    snapShot.setTotalInputWaitTime( totals[INPUT_WAIT][slot] );
+    snapShot.setTotalOutputWaitTime( totals[OUTPUT_WAIT][slot] );
+    return snapShot;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+    evicted = false;
+    Arrays.fill( evictedTotals, 0L );
+  }
+
+  public int getSizeLimit() {
+    return sizeLimit;
+  }
+}
@@ -0,0 +1,55 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One daemon thread, shared by all running transformations, that takes the step performance snapshots. A snapshot
+ * only reads a few counters per step so there's no need for a timer thread per transformation.
+ */
+public class StepPerformanceSnapShotScheduler {
+
+  private static final AtomicInteger threadNum = new AtomicInteger( 1 );
+  private static ScheduledExecutorService executor;
+
+  private StepPerformanceSnapShotScheduler() {
+  }
+
+  public static synchronized ScheduledExecutorService getExecutor() {
+    if ( executor == null ) {
+      executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+        @Override public Thread newThread( Runnable r ) {
+          Thread thread = Executors.defaultThreadFactory().newThread( r );
+          thread.setDaemon( true );
+          thread.setName( "StepPerformanceSnapShot thread " + threadNum.getAndIncrement() );
+          return thread;
+        }
+      } );
+    }
+    return executor;
+  }
+}
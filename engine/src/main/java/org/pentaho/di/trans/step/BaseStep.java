@@ -36,9 +36,11 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -69,6 +71,7 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaDate;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.spill.SpillManager;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.i18n.BaseMessages;
@@ -83,6 +86,7 @@ import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
+import org.pentaho.di.trans.performance.StepMetrics;
 import org.pentaho.di.trans.steps.mapping.Mapping;
 import org.pentaho.di.trans.steps.mappinginput.MappingInput;
 import org.pentaho.di.trans.steps.mappingoutput.MappingOutput;
@@ -165,12 +169,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private Trans trans;
 
-  private final Object statusCountersLock = new Object();
+  /**
+   * The row counters and latency histograms of this step copy
+   */
+  private final StepMetrics metrics;
 
   /**
    * nr of lines read from previous step(s)
    *
-   * @deprecated use {@link #getLinesRead()}, {@link #incrementLinesRead()}, or {@link #decrementLinesRead()}
+   * @deprecated use {@link #getLinesRead()}, {@link #incrementLinesRead()}, or {@link #decrementLinesRead()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesRead;
@@ -178,7 +186,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   /**
    * nr of lines written to next step(s)
    *
-   * @deprecated use {@link #getLinesWritten()}, {@link #incrementLinesWritten()}, or {@link #decrementLinesWritten()}
+   * @deprecated use {@link #getLinesWritten()}, {@link #incrementLinesWritten()}, or {@link #decrementLinesWritten()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesWritten;
@@ -186,7 +195,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   /**
    * nr of lines read from file or database
    *
-   * @deprecated use {@link #getLinesInput()} or {@link #incrementLinesInput()}
+   * @deprecated use {@link #getLinesInput()} or {@link #incrementLinesInput()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesInput;
@@ -194,7 +204,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   /**
    * nr of lines written to file or database
    *
-   * @deprecated use {@link #getLinesOutput()} or {@link #incrementLinesOutput()}
+   * @deprecated use {@link #getLinesOutput()} or {@link #incrementLinesOutput()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesOutput;
@@ -202,7 +213,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   /**
    * nr of updates in a database table or file
    *
-   * @deprecated use {@link #getLinesUpdated()} or {@link #incrementLinesUpdated()}
+   * @deprecated use {@link #getLinesUpdated()} or {@link #incrementLinesUpdated()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesUpdated;
@@ -210,7 +222,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   /**
    * nr of lines skipped
    *
-   * @deprecated use {@link #getLinesSkipped()} or {@link #incrementLinesSkipped()}
+   * @deprecated use {@link #getLinesSkipped()} or {@link #incrementLinesSkipped()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesSkipped;
@@ -218,11 +231,35 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   /**
    * total sleep time in ns caused by an empty input buffer (previous step is slow)
    *
-   * @deprecated use {@link #getLinesRejected()} or {@link #incrementLinesRejected()}
+   * @deprecated use {@link #getLinesRejected()} or {@link #incrementLinesRejected()}.
+   *             The step thread counts in this field and publishes the count to {@link StepMetrics}.
    */
   @Deprecated
   public long linesRejected;
 
+  /*
+   * The values of the deprecated fields above that were last added to the counters in StepMetrics. The fields are
+   * only changed by the thread of the step copy, which publishes the changes every so many rows and when it is done:
+   * other threads read the counters, never the fields.
+   */
+  private long linesReadPublished;
+  private long linesWrittenPublished;
+  private long linesInputPublished;
+  private long linesOutputPublished;
+  private long linesUpdatedPublished;
+  private long linesSkippedPublished;
+  private long linesRejectedPublished;
+
+  /**
+   * The counts are published when an increment makes them a multiple of 128
+   */
+  private static final long PUBLISH_INTERVAL_MASK = 0x7F;
+
+  /**
+   * The thread that runs this step copy, null when the step isn't run by its own thread
+   */
+  private volatile Thread stepThread;
+
   private boolean distributed;
 
   private String rowDistributionCode;
@@ -447,6 +484,11 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   private RowHandler rowHandler;
 
+  /**
+   * The spill manager used when the step runs without a transformation that provides one
+   */
+  private SpillManager ownSpillManager;
+
   /**
    * This is the base step that forms that basis for all steps. You can derive from this class to implement your own
    * steps.
@@ -486,15 +528,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     init = false;
 
-    synchronized ( statusCountersLock ) {
-      linesRead = 0L; // new AtomicLong(0L); // Keep some statistics!
-      linesWritten = 0L; // new AtomicLong(0L);
-      linesUpdated = 0L; // new AtomicLong(0L);
-      linesSkipped = 0L; // new AtomicLong(0L);
-      linesRejected = 0L; // new AtomicLong(0L);
-      linesInput = 0L; // new AtomicLong(0L);
-      linesOutput = 0L; // new AtomicLong(0L);
-    }
+    metrics = new StepMetrics(); // Keep some statistics!
 
     inputRowSets = null;
     outputRowSets = null;
@@ -912,9 +946,10 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return linesRead;
+    if ( isStepThread() ) {
+      return metrics.getLinesRead().sum() + linesRead - linesReadPublished;
     }
+    return metrics.getLinesRead().sum();
   }
 
   /**
@@ -923,9 +958,14 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long incrementLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return ++linesRead;
+    if ( !isStepThread() ) {
+      metrics.getLinesRead().increment();
+      return metrics.getLinesRead().sum();
     }
+    if ( ( ++linesRead & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
+    }
+    return linesRead;
   }
 
   /**
@@ -934,18 +974,19 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long decrementLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return --linesRead;
+    if ( !isStepThread() ) {
+      metrics.getLinesRead().decrement();
+      return metrics.getLinesRead().sum();
     }
+    return --linesRead;
   }
 
   /**
    * @param newLinesReadValue the new number of lines read from previous steps
    */
   public void setLinesRead( long newLinesReadValue ) {
-    synchronized ( statusCountersLock ) {
-      linesRead = newLinesReadValue;
-    }
+    linesRead = newLinesReadValue;
+    publishCounters();
   }
 
   /**
@@ -953,9 +994,10 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesInput() {
-    synchronized ( statusCountersLock ) {
-      return linesInput;
+    if ( isStepThread() ) {
+      return metrics.getLinesInput().sum() + linesInput - linesInputPublished;
     }
+    return metrics.getLinesInput().sum();
   }
 
   /**
@@ -964,18 +1006,22 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesInput() {
-    synchronized ( statusCountersLock ) {
-      return ++linesInput;
+    if ( !isStepThread() ) {
+      metrics.getLinesInput().increment();
+      return metrics.getLinesInput().sum();
     }
+    if ( ( ++linesInput & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
+    }
+    return linesInput;
   }
 
   /**
    * @param newLinesInputValue the new number of lines read from an input source: database, file, socket, etc.
    */
   public void setLinesInput( long newLinesInputValue ) {
-    synchronized ( statusCountersLock ) {
-      linesInput = newLinesInputValue;
-    }
+    linesInput = newLinesInputValue;
+    publishCounters();
   }
 
   /**
@@ -983,9 +1029,10 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesOutput() {
-    synchronized ( statusCountersLock ) {
-      return linesOutput;
+    if ( isStepThread() ) {
+      return metrics.getLinesOutput().sum() + linesOutput - linesOutputPublished;
     }
+    return metrics.getLinesOutput().sum();
   }
 
   /**
@@ -994,18 +1041,22 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesOutput() {
-    synchronized ( statusCountersLock ) {
-      return ++linesOutput;
+    if ( !isStepThread() ) {
+      metrics.getLinesOutput().increment();
+      return metrics.getLinesOutput().sum();
+    }
+    if ( ( ++linesOutput & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
     }
+    return linesOutput;
   }
 
   /**
    * @param newLinesOutputValue the new number of lines written to an output target: database, file, socket, etc.
    */
   public void setLinesOutput( long newLinesOutputValue ) {
-    synchronized ( statusCountersLock ) {
-      linesOutput = newLinesOutputValue;
-    }
+    linesOutput = newLinesOutputValue;
+    publishCounters();
   }
 
   /**
@@ -1013,9 +1064,10 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return linesWritten;
+    if ( isStepThread() ) {
+      return metrics.getLinesWritten().sum() + linesWritten - linesWrittenPublished;
     }
+    return metrics.getLinesWritten().sum();
   }
 
   /**
@@ -1024,9 +1076,14 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long incrementLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return ++linesWritten;
+    if ( !isStepThread() ) {
+      metrics.getLinesWritten().increment();
+      return metrics.getLinesWritten().sum();
+    }
+    if ( ( ++linesWritten & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
     }
+    return linesWritten;
   }
 
   /**
@@ -1035,18 +1092,19 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long decrementLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return --linesWritten;
+    if ( !isStepThread() ) {
+      metrics.getLinesWritten().decrement();
+      return metrics.getLinesWritten().sum();
     }
+    return --linesWritten;
   }
 
   /**
    * @param newLinesWrittenValue the new number of lines written to next steps
    */
   public void setLinesWritten( long newLinesWrittenValue ) {
-    synchronized ( statusCountersLock ) {
-      linesWritten = newLinesWrittenValue;
-    }
+    linesWritten = newLinesWrittenValue;
+    publishCounters();
   }
 
   /**
@@ -1054,9 +1112,10 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesUpdated() {
-    synchronized ( statusCountersLock ) {
-      return linesUpdated;
+    if ( isStepThread() ) {
+      return metrics.getLinesUpdated().sum() + linesUpdated - linesUpdatedPublished;
     }
+    return metrics.getLinesUpdated().sum();
   }
 
   /**
@@ -1065,18 +1124,22 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesUpdated() {
-    synchronized ( statusCountersLock ) {
-      return ++linesUpdated;
+    if ( !isStepThread() ) {
+      metrics.getLinesUpdated().increment();
+      return metrics.getLinesUpdated().sum();
+    }
+    if ( ( ++linesUpdated & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
     }
+    return linesUpdated;
   }
 
   /**
    * @param newLinesUpdatedValue the new number of lines updated in an output target: database, file, socket, etc.
    */
   public void setLinesUpdated( long newLinesUpdatedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesUpdated = newLinesUpdatedValue;
-    }
+    linesUpdated = newLinesUpdatedValue;
+    publishCounters();
   }
 
   /**
@@ -1084,9 +1147,10 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesRejected() {
-    synchronized ( statusCountersLock ) {
-      return linesRejected;
+    if ( isStepThread() ) {
+      return metrics.getLinesRejected().sum() + linesRejected - linesRejectedPublished;
     }
+    return metrics.getLinesRejected().sum();
   }
 
   /**
@@ -1095,9 +1159,14 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesRejected() {
-    synchronized ( statusCountersLock ) {
-      return ++linesRejected;
+    if ( !isStepThread() ) {
+      metrics.getLinesRejected().increment();
+      return metrics.getLinesRejected().sum();
+    }
+    if ( ( ++linesRejected & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
     }
+    return linesRejected;
   }
 
   /**
@@ -1105,18 +1174,18 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public void setLinesRejected( long newLinesRejectedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesRejected = newLinesRejectedValue;
-    }
+    linesRejected = newLinesRejectedValue;
+    publishCounters();
   }
 
   /**
    * @return the number of lines skipped
    */
   public long getLinesSkipped() {
-    synchronized ( statusCountersLock ) {
-      return linesSkipped;
+    if ( isStepThread() ) {
+      return metrics.getLinesSkipped().sum() + linesSkipped - linesSkippedPublished;
     }
+    return metrics.getLinesSkipped().sum();
   }
 
   /**
@@ -1125,18 +1194,88 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesSkipped() {
-    synchronized ( statusCountersLock ) {
-      return ++linesSkipped;
+    if ( !isStepThread() ) {
+      metrics.getLinesSkipped().increment();
+      return metrics.getLinesSkipped().sum();
+    }
+    if ( ( ++linesSkipped & PUBLISH_INTERVAL_MASK ) == 0 ) {
+      publishCounters();
     }
+    return linesSkipped;
   }
 
   /**
    * @param newLinesSkippedValue lines number of lines skipped
    */
   public void setLinesSkipped( long newLinesSkippedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesSkipped = newLinesSkippedValue;
+    linesSkipped = newLinesSkippedValue;
+    publishCounters();
+  }
+
+  /**
+   * @return the row counters and latency histograms of this step copy. The counters lag behind the counts of the step
+   *         thread by less than 128 rows until it is done.
+   */
+  public StepMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns an object that all the copies of this step share, such as a lookup cache or a parsed schema. The copy that
+   * asks first creates it, see {@link StepArtifactCache}. Outside of a running transformation the loader is simply
+   * called.
+   *
+   * @param key
+   *          identifies the object among those of this step
+   * @param loader
+   *          creates the object, which must not change afterwards
+   */
+  protected <T> T getStepArtifact( String key, Callable<T> loader ) throws KettleException {
+    StepArtifactCache cache = trans == null ? null : trans.getStepArtifactCache();
+    if ( cache != null ) {
+      return cache.get( stepname, key, loader );
+    }
+    try {
+      return loader.call();
+    } catch ( KettleException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * @param stepThread
+   *          the thread that runs this step copy: it updates the line counts, other threads read the published ones
+   */
+  void setStepThread( Thread stepThread ) {
+    this.stepThread = stepThread;
+  }
+
+  private boolean isStepThread() {
+    Thread thread = stepThread;
+    return thread == null || thread == Thread.currentThread();
+  }
+
+  /**
+   * Adds the changes to the line counts since the last call to the counters other threads read. Only called by the
+   * thread that runs the step copy.
+   */
+  void publishCounters() {
+    linesReadPublished = publish( metrics.getLinesRead(), linesRead, linesReadPublished );
+    linesWrittenPublished = publish( metrics.getLinesWritten(), linesWritten, linesWrittenPublished );
+    linesInputPublished = publish( metrics.getLinesInput(), linesInput, linesInputPublished );
+    linesOutputPublished = publish( metrics.getLinesOutput(), linesOutput, linesOutputPublished );
+    linesUpdatedPublished = publish( metrics.getLinesUpdated(), linesUpdated, linesUpdatedPublished );
+    linesSkippedPublished = publish( metrics.getLinesSkipped(), linesSkipped, linesSkippedPublished );
+    linesRejectedPublished = publish( metrics.getLinesRejected(), linesRejected, linesRejectedPublished );
+  }
+
+  private static long publish( LongAdder counter, long value, long published ) {
+    if ( value != published ) {
+      counter.add( value - published );
     }
+    return value;
   }
 
   /*
@@ -1241,6 +1380,21 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return trans;
   }
 
+  /**
+   * @return the spill manager of the transformation, to write rows that don't fit in memory to temporary files. A step
+   *         without a transformation gets a spill manager of its own without a memory budget.
+   */
+  public SpillManager getSpillManager() {
+    SpillManager spillManager = trans == null ? null : trans.getSpillManager();
+    if ( spillManager == null ) {
+      if ( ownSpillManager == null ) {
+        ownSpillManager = SpillManager.fromVariables( this );
+      }
+      spillManager = ownSpillManager;
+    }
+    return spillManager;
+  }
+
 
   /**
    * putRow is used to copy a row, to the alternate rowset(s) This should get priority over everything else!
@@ -1385,6 +1539,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       throw new KettleStepException(
         "Unable to convert a value to integer while calculating the partition number", e );
     }
+    metrics.recordPartition( partitionNr );
 
     RowSet selectedRowSet = null;
 
@@ -1597,11 +1752,13 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       toBeSent = metaFromRs;
     }
 
+    long waitStart = metrics.startTimer();
     while ( !rs.putRow( toBeSent, row ) ) {
       if ( isStopped() && !safeStopped.get() ) {
         return;
       }
     }
+    metrics.recordOutputWait( waitStart );
   }
 
   /**
@@ -1653,11 +1810,13 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     // Don't distribute or anything, only go to this rowset!
     //
+    long waitStart = metrics.startTimer();
     while ( !rowSet.putRow( rowMeta, row ) ) {
       if ( isStopped() ) {
         break;
       }
     }
+    metrics.recordOutputWait( waitStart );
     incrementLinesWritten();
   }
 
@@ -1911,6 +2070,12 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       // rowset, then switch to another etc.
       // We can use timeouts to switch from one to another...
       //
+      long waitStart = 0L;
+      if ( row == null ) {
+        // Other threads see the counts of the rows handled so far while this step waits
+        publishCounters();
+        waitStart = metrics.startTimer();
+      }
       while ( row == null && !isStopped() ) {
         // Get a row from the input in row set ...
         // Timeout immediately if nothing is there to read.
@@ -1973,6 +2138,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         inputRowSet = currentInputStream();
         row = getRowFrom( inputRowSet );
       }
+      metrics.recordInputWait( waitStart );
     } finally {
       inputRowSetsLock.readLock().unlock();
     }
@@ -2255,15 +2421,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // Grab a row... If nothing received after a timeout, try again.
     //
     rowData = rowSet.getRow();
-    while ( rowData == null && !rowSet.isDone() && !stopped.get() ) {
-      rowData = rowSet.getRow();
+    if ( rowData == null ) {
+      publishCounters();
+      long waitStart = metrics.startTimer();
+      while ( rowData == null && !rowSet.isDone() && !stopped.get() ) {
+        rowData = rowSet.getRow();
 
-      // Verify deadlocks!
-      //
-      /*
-       * if (rowData==null) { if (getInputRowSets().size()>1 && getLinesRead()==deadLockCounter) {
-       * verifyInputDeadLock(); } deadLockCounter=getLinesRead(); }
-       */
+        // Verify deadlocks!
+        //
+        /*
+         * if (rowData==null) { if (getInputRowSets().size()>1 && getLinesRead()==deadLockCounter) {
+         * verifyInputDeadLock(); } deadLockCounter=getLinesRead(); }
+         */
+      }
+      metrics.recordInputWait( waitStart );
     }
 
     // Still nothing: no more rows to be had?
@@ -3384,22 +3555,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * Log summary.
    */
   public void logSummary() {
-    synchronized ( statusCountersLock ) {
-      long li = getLinesInput();
-      long lo = getLinesOutput();
-      long lr = getLinesRead();
-      long lw = getLinesWritten();
-      long lu = getLinesUpdated();
-      long lj = getLinesRejected();
-      if ( li > 0 || lo > 0 || lr > 0 || lw > 0 || lu > 0 || lj > 0 || errors > 0 ) {
-        logBasic( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
-          .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
-          .valueOf( errors + lj ) ) );
-      } else {
-        logDetailed( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
-          .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
-          .valueOf( errors + lj ) ) );
-      }
+    long li = getLinesInput();
+    long lo = getLinesOutput();
+    long lr = getLinesRead();
+    long lw = getLinesWritten();
+    long lu = getLinesUpdated();
+    long lj = getLinesRejected();
+    if ( li > 0 || lo > 0 || lr > 0 || lw > 0 || lu > 0 || lj > 0 || errors > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
+        .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
+        .valueOf( errors + lj ) ) );
+    } else {
+      logDetailed( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
+        .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
+        .valueOf( errors + lj ) ) );
     }
   }
 
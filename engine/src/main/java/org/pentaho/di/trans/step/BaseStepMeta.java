@@ -420,6 +420,14 @@ public class BaseStepMeta implements Cloneable, StepAttributesInterface {
     return false;
   }
 
+  /**
+   * @return true if the step reads at most one row in every processRow() call, never waits for anything else than its
+   *         input and can therefore run in the same thread as the steps around it.
+   */
+  public boolean supportsFusion() {
+    return false;
+  }
+
   /**
    * This method is added to exclude certain steps from layout checking.
    *
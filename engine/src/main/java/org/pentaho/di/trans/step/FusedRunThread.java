@@ -0,0 +1,92 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.RowSet;
+
+/**
+ * Runs a linear chain of steps in one thread. The first step reads from its input row sets like it would in its own
+ * thread. The other steps in the chain read from non-blocking row sets: after every row of the first step the rows are
+ * pushed through the rest of the chain, so every step only gets called when it has a row to read or its input is done.
+ *
+ * Each step keeps its own metrics, logging, listeners and error handling.
+ */
+public class FusedRunThread implements Runnable {
+
+  private List<RunThread> runThreads;
+
+  public FusedRunThread( List<StepMetaDataCombi> chain ) {
+    runThreads = new ArrayList<RunThread>( chain.size() );
+    for ( StepMetaDataCombi combi : chain ) {
+      runThreads.add( new RunThread( combi ) );
+    }
+  }
+
+  public void run() {
+    int nrSteps = runThreads.size();
+    RowSet[] inputRowSets = new RowSet[nrSteps];
+    boolean[] done = new boolean[nrSteps];
+    RunThread current = null;
+    try {
+      for ( int i = 0; i < nrSteps; i++ ) {
+        current = runThreads.get( i );
+        current.startRunning();
+        if ( i > 0 ) {
+          // The input never waits, so don't let the step sleep when the buffer runs low
+          //
+          current.getStep().setUsingThreadPriorityManagment( false );
+          inputRowSets[i] = current.getStep().getInputRowSets().get( 0 );
+        }
+      }
+
+      while ( !done[nrSteps - 1] ) {
+        if ( !done[0] ) {
+          current = runThreads.get( 0 );
+          done[0] = !current.processRow();
+        }
+        for ( int i = 1; i < nrSteps; i++ ) {
+          current = runThreads.get( i );
+          RowSet rowSet = inputRowSets[i];
+          while ( !done[i] && ( rowSet.size() > 0 || rowSet.isDone() ) ) {
+            done[i] = !current.processRow();
+            if ( current.getStep().isStopped() ) {
+              return;
+            }
+          }
+        }
+        if ( runThreads.get( 0 ).getStep().isStopped() ) {
+          return;
+        }
+      }
+    } catch ( Throwable t ) {
+      current.handleError( t );
+    } finally {
+      for ( RunThread runThread : runThreads ) {
+        runThread.finish();
+      }
+    }
+  }
+}
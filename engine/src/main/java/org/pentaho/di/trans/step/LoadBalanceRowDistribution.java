@@ -0,0 +1,129 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.gui.PrimitiveGCInterface.EImage;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Sends every row to the target step copy with the fewest rows waiting in its row set. Slow copies (a slow database
+ * connection, rows that take longer) get fewer rows, so a fan-out no longer stalls on the first full row set like it
+ * does with round robin.
+ *
+ * Rows are offered without waiting, in order of increasing row set size. Only when all row sets are full, the row
+ * waits for the least loaded one. Among row sets of equal size the search starts after the last one used, so an idle
+ * fan-out still behaves like round robin.
+ */
+@RowDistributionPlugin( code = "LoadBalance", name = "Load balance",
+    description = "Sends every row to the target step copy with the fewest rows waiting" )
+public class LoadBalanceRowDistribution implements RowDistributionInterface {
+
+  public static final String CODE = "LoadBalance";
+
+  /** How long to wait for room when all row sets are full, before looking for the least loaded one again */
+  private static final long FULL_WAIT_MILLIS = 10;
+
+  /**
+   * Where the next search starts. The copies of a step share the distribution: a lost update only changes the tie
+   * breaking.
+   */
+  private int nextRowSetNr;
+
+  @Override
+  public String getCode() {
+    return CODE;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Load balance";
+  }
+
+  @Override
+  public void distributeRow( RowMetaInterface rowMeta, Object[] row, StepInterface stepInterface )
+    throws KettleStepException {
+    List<RowSet> rowSets = stepInterface.getOutputRowSets();
+    int nrRowSets = rowSets.size();
+    if ( nrRowSets == 0 ) {
+      return;
+    }
+
+    int start = nextRowSetNr % nrRowSets;
+    while ( true ) {
+      // Find the least loaded row set and offer the row, without waiting
+      //
+      RowSet best = null;
+      int bestNr = -1;
+      int bestSize = Integer.MAX_VALUE;
+      for ( int i = 0; i < nrRowSets && bestSize > 0; i++ ) {
+        int rowSetNr = ( start + i ) % nrRowSets;
+        RowSet rowSet = rowSets.get( rowSetNr );
+        int size = rowSet.size();
+        if ( size < bestSize ) {
+          best = rowSet;
+          bestNr = rowSetNr;
+          bestSize = size;
+        }
+      }
+      if ( offer( best, rowMeta, row, 0 ) ) {
+        nextRowSetNr = bestNr + 1;
+        return;
+      }
+
+      // The sizes changed in the mean time: try the others before waiting
+      //
+      for ( int i = 1; i < nrRowSets; i++ ) {
+        int rowSetNr = ( bestNr + i ) % nrRowSets;
+        if ( offer( rowSets.get( rowSetNr ), rowMeta, row, 0 ) ) {
+          nextRowSetNr = rowSetNr + 1;
+          return;
+        }
+      }
+
+      // Everything is full, wait a little for the least loaded one
+      //
+      if ( offer( best, rowMeta, row, FULL_WAIT_MILLIS ) ) {
+        nextRowSetNr = bestNr + 1;
+        return;
+      }
+      if ( stepInterface.isStopped() && !stepInterface.isSafeStopped() ) {
+        return;
+      }
+    }
+  }
+
+  private static boolean offer( RowSet rowSet, RowMetaInterface rowMeta, Object[] row, long waitMillis ) {
+    RowMetaInterface toBeSent = rowSet.getRowMeta() == null ? rowMeta.clone() : rowSet.getRowMeta();
+    return rowSet.putRowWait( toBeSent, row, waitMillis, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public EImage getDistributionImage() {
+    return EImage.LOAD_BALANCE;
+  }
+}
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.step;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Keeps the expensive, immutable objects that the copies of a step would otherwise each create while they initialize
+ * or start: a lookup cache loaded from a table, a parsed schema and so on. The first copy that asks for an object
+ * creates it, the other copies wait for it and use the same object.
+ *
+ * The objects live as long as the transformation runs. They are used by several threads at the same time, so they
+ * must not change once created.
+ */
+public class StepArtifactCache {
+
+  private final ConcurrentMap<String, Future<?>> artifacts = new ConcurrentHashMap<String, Future<?>>();
+
+  /**
+   * @param stepname
+   *          the name of the step whose copies share the object
+   * @param key
+   *          identifies the object among those of the step
+   * @param loader
+   *          creates the object. When it fails, the next copy that asks for the object calls it again.
+   * @return the object the loader created for the first copy that asked for it
+   * @throws KettleException
+   *           the exception of the loader, wrapped if it isn't a KettleException
+   */
+  @SuppressWarnings( "unchecked" )
+  public <T> T get( String stepname, String key, Callable<T> loader ) throws KettleException {
+    String id = stepname + "/" + key;
+    FutureTask<T> task = new FutureTask<T>( loader );
+    Future<?> artifact = artifacts.putIfAbsent( id, task );
+    if ( artifact == null ) {
+      artifact = task;
+      task.run();
+    }
+    try {
+      return (T) artifact.get();
+    } catch ( ExecutionException e ) {
+      artifacts.remove( id, artifact );
+      if ( e.getCause() instanceof KettleException ) {
+        throw (KettleException) e.getCause();
+      }
+      throw new KettleException( e.getCause() );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * Forgets all the objects, the steps are done with them.
+   */
+  public void clear() {
+    artifacts.clear();
+  }
+}
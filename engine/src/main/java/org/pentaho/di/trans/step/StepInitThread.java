@@ -38,6 +38,8 @@ public class StepInitThread implements Runnable {
 
   private StepMetaDataCombi combi;
 
+  private long initTime;
+
   private LogChannelInterface log;
 
   public StepInitThread( StepMetaDataCombi combi, LogChannelInterface log ) {
@@ -63,6 +65,7 @@ public class StepInitThread implements Runnable {
       return;
     }
 
+    long start = System.nanoTime();
     try {
       combi.step.getLogChannel().snap( Metrics.METRIC_STEP_INIT_START );
 
@@ -78,6 +81,7 @@ public class StepInitThread implements Runnable {
       log.logError( Const.getStackTracker( e ) );
     } finally {
       combi.step.getLogChannel().snap( Metrics.METRIC_STEP_INIT_STOP );
+      initTime = ( System.nanoTime() - start ) / 1000000L;
     }
 
     finished = true;
@@ -91,6 +95,13 @@ public class StepInitThread implements Runnable {
     return ok;
   }
 
+  /**
+   * @return the time in milliseconds the init() of the step took, 0 if it wasn't run
+   */
+  public long getInitTime() {
+    return initTime;
+  }
+
   /**
    * @return Returns the combi.
    */
@@ -37,6 +37,8 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.trans.performance.LatencyHistogram;
+import org.pentaho.di.trans.performance.StepMetrics;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -62,6 +64,10 @@ public class StepStatus {
   private boolean paused;
   private long accumlatedRuntime;
 
+  private LatencyHistogram processRowTime;
+  private LatencyHistogram inputWaitTime;
+  private LatencyHistogram outputWaitTime;
+
   private RowMetaInterface sampleRowMeta;
   private List<Object[]> sampleRows;
   private final DecimalFormat speedDf = new DecimalFormat( "#,###,###,###,##0" );
@@ -109,6 +115,21 @@ public class StepStatus {
       baseStep.isRunning() ? "   " + baseStep.rowsetInputSize() + "/" + baseStep.rowsetOutputSize() : "-";
     this.stopped = baseStep.isStopped();
     this.paused = baseStep.isPaused();
+
+    if ( baseStep instanceof BaseStep && ( (BaseStep) baseStep ).getMetrics().isTimingEnabled() ) {
+      StepMetrics metrics = ( (BaseStep) baseStep ).getMetrics();
+      processRowTime = addHistogram( processRowTime, metrics.getProcessRowTime() );
+      inputWaitTime = addHistogram( inputWaitTime, metrics.getInputWaitTime() );
+      outputWaitTime = addHistogram( outputWaitTime, metrics.getOutputWaitTime() );
+    }
+  }
+
+  private static LatencyHistogram addHistogram( LatencyHistogram total, LatencyHistogram histogram ) {
+    if ( total == null ) {
+      total = new LatencyHistogram();
+    }
+    total.add( histogram );
+    return total;
   }
 
   public String getHTMLTableRow( boolean urlInStepname ) {
@@ -142,6 +163,17 @@ public class StepStatus {
       xml.append( XMLHandler.addTagValue( "stopped", stopped, false ) );
       xml.append( XMLHandler.addTagValue( "paused", paused, false ) );
 
+      if ( processRowTime != null ) {
+        xml.append( XMLHandler.openTag( "metrics" ) );
+        xml.append( XMLHandler.openTag( "processRowTime" ) ).append( processRowTime.getXML() );
+        xml.append( XMLHandler.closeTag( "processRowTime" ) );
+        xml.append( XMLHandler.openTag( "inputWaitTime" ) ).append( inputWaitTime.getXML() );
+        xml.append( XMLHandler.closeTag( "inputWaitTime" ) );
+        xml.append( XMLHandler.openTag( "outputWaitTime" ) ).append( outputWaitTime.getXML() );
+        xml.append( XMLHandler.closeTag( "outputWaitTime" ) );
+        xml.append( XMLHandler.closeTag( "metrics" ) );
+      }
+
       if ( sampleRowMeta != null ) {
         xml.append( XMLHandler.openTag( "samples" ) );
         xml.append( sampleRowMeta.getMetaXML() );
@@ -183,6 +215,13 @@ public class StepStatus {
     stopped = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "stopped" ) );
     paused = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "paused" ) );
 
+    Node metricsNode = XMLHandler.getSubNode( node, "metrics" );
+    if ( metricsNode != null ) {
+      processRowTime = getHistogram( metricsNode, "processRowTime" );
+      inputWaitTime = getHistogram( metricsNode, "inputWaitTime" );
+      outputWaitTime = getHistogram( metricsNode, "outputWaitTime" );
+    }
+
     Node samplesNode = XMLHandler.getSubNode( node, "samples" );
     if ( samplesNode != null ) {
       Node rowMetaNode = XMLHandler.getSubNode( samplesNode, RowMeta.XML_META_TAG );
@@ -198,6 +237,11 @@ public class StepStatus {
     }
   }
 
+  private static LatencyHistogram getHistogram( Node metricsNode, String tag ) {
+    Node histogramNode = XMLHandler.getSubNode( XMLHandler.getSubNode( metricsNode, tag ), LatencyHistogram.XML_TAG );
+    return histogramNode == null ? new LatencyHistogram() : new LatencyHistogram( histogramNode );
+  }
+
   public StepStatus fromXML( String xml ) throws KettleException {
     Document document = XMLHandler.loadXMLString( xml );
     return new StepStatus( XMLHandler.getSubNode( document, XML_TAG ) );
@@ -508,4 +552,24 @@ public class StepStatus {
     this.sampleRows = sampleRows;
   }
 
+  /**
+   * @return the time spent in processRow() or null if the step didn't record it
+   */
+  public LatencyHistogram getProcessRowTime() {
+    return processRowTime;
+  }
+
+  /**
+   * @return the time spent waiting for input rows or null if the step didn't record it
+   */
+  public LatencyHistogram getInputWaitTime() {
+    return inputWaitTime;
+  }
+
+  /**
+   * @return the time spent waiting for room in the output row sets or null if the step didn't record it
+   */
+  public LatencyHistogram getOutputWaitTime() {
+    return outputWaitTime;
+  }
 }
@@ -0,0 +1,60 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step.expression;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Base class of the classes generated by the {@link RowExpressionCompiler}. The generated {@link #calculate(Object[])}
+ * method reads the fields it needs from the row into typed local variables, calculates and stores the results in the
+ * row.
+ */
+public abstract class CompiledRowExpression {
+
+  protected ValueMetaInterface[] valueMetas;
+  protected Object[] constants;
+  protected ValueConverter[] converters;
+
+  void init( ValueMetaInterface[] valueMetas, Object[] constants, ValueConverter[] converters ) {
+    this.valueMetas = valueMetas;
+    this.constants = constants;
+    this.converters = converters;
+  }
+
+  /**
+   * Calculates the values of one row.
+   *
+   * @param row
+   *          the row data, large enough to hold the calculated values
+   */
+  public abstract void calculate( Object[] row ) throws Exception;
+
+  protected final Object normal( int index, Object data ) throws KettleValueException {
+    return valueMetas[index].convertToNormalStorageType( data );
+  }
+
+  protected final Object convert( int converter, Object value ) throws KettleValueException {
+    return converters[converter].convert( value );
+  }
+}
@@ -0,0 +1,286 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step.expression;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.codehaus.janino.Scanner;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Generates and compiles (with Janino) a class that calculates new values of a row. Steps describe their calculations
+ * with the methods of this class: the compiler keeps track of the local variables holding the field values so a
+ * value is read from the row and unboxed only once, and numbers calculated by one expression are passed on to the
+ * next expressions as primitives.
+ *
+ * Each step compiles its own class. Adjacent steps are not compiled into one class, not even when they run in one
+ * thread (see {@link org.pentaho.di.trans.StepFusionOptimizer}): every step still reads the values of its input row.
+ *
+ * The generated classes are cached by source, step copies with the same calculations share their class.
+ *
+ * Set the KETTLE_COMPILED_EXPRESSIONS variable to N to switch the compiled expressions off.
+ */
+public class RowExpressionCompiler {
+
+  private static final String VARIABLE_PREFIX = "__";
+
+  private static final Cache<String, Class<?>> classCache = CacheBuilder.newBuilder().maximumSize( 500 ).build();
+
+  private final RowMetaInterface rowMeta;
+  private final StringBuilder code;
+  private final StringBuilder methods;
+  private final List<Object> constants;
+  private final List<ValueConverter> converters;
+  private final Map<Integer, String> objectVariables;
+  private final Map<Integer, String> numberVariables;
+  private final Map<Integer, String> integerVariables;
+  private int nrVariables;
+  private int nrMethods;
+
+  /**
+   * @param rowMeta
+   *          the metadata of the row the calculations work on, including the fields that are calculated
+   */
+  public RowExpressionCompiler( RowMetaInterface rowMeta ) {
+    this.rowMeta = rowMeta;
+    this.code = new StringBuilder();
+    this.methods = new StringBuilder();
+    this.constants = new ArrayList<Object>();
+    this.converters = new ArrayList<ValueConverter>();
+    this.objectVariables = new HashMap<Integer, String>();
+    this.numberVariables = new HashMap<Integer, String>();
+    this.integerVariables = new HashMap<Integer, String>();
+  }
+
+  public static boolean isEnabled() {
+    return !"N".equalsIgnoreCase( System.getProperty( Const.KETTLE_COMPILED_EXPRESSIONS ) );
+  }
+
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  /**
+   * @return the name of the local variable holding the value of the field, in normal storage
+   */
+  public String getObject( int index ) {
+    String variable = objectVariables.get( index );
+    if ( variable == null ) {
+      variable = newVariable( "o" );
+      code.append( "Object " ).append( variable ).append( " = " );
+      if ( rowMeta.getValueMeta( index ).getStorageType() == ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+        code.append( "row[" ).append( index ).append( "];\n" );
+      } else {
+        code.append( "normal(" ).append( index ).append( ", row[" ).append( index ).append( "]);\n" );
+      }
+      objectVariables.put( index, variable );
+    }
+    return variable;
+  }
+
+  /**
+   * @return a condition that is true if the field is null
+   */
+  public String isNull( int index ) {
+    return getObject( index ) + " == null";
+  }
+
+  /**
+   * @return the name of the double variable holding the value of a Number field, 0 if the value is null
+   */
+  public String getNumber( int index ) {
+    String variable = numberVariables.get( index );
+    if ( variable == null ) {
+      String object = getObject( index );
+      variable = newVariable( "d" );
+      code.append( "double " ).append( variable ).append( " = " ).append( object )
+        .append( " == null ? 0.0 : ((Double) " ).append( object ).append( ").doubleValue();\n" );
+      numberVariables.put( index, variable );
+    }
+    return variable;
+  }
+
+  /**
+   * @return the name of the long variable holding the value of an Integer field, 0 if the value is null
+   */
+  public String getInteger( int index ) {
+    String variable = integerVariables.get( index );
+    if ( variable == null ) {
+      String object = getObject( index );
+      variable = newVariable( "l" );
+      code.append( "long " ).append( variable ).append( " = " ).append( object )
+        .append( " == null ? 0L : ((Long) " ).append( object ).append( ").longValue();\n" );
+      integerVariables.put( index, variable );
+    }
+    return variable;
+  }
+
+  /**
+   * Stores a Number in the row.
+   *
+   * @param nullCondition
+   *          the condition for a null result, or null if the result is never null
+   * @param expression
+   *          a double expression, only evaluated if the result is not null
+   */
+  public void setNumber( int index, String nullCondition, String expression ) {
+    String variable = newVariable( "d" );
+    String object = newVariable( "o" );
+    if ( nullCondition == null ) {
+      code.append( "double " ).append( variable ).append( " = " ).append( expression ).append( ";\n" );
+      code.append( "Object " ).append( object ).append( " = Double.valueOf(" ).append( variable ).append( ");\n" );
+    } else {
+      code.append( "double " ).append( variable ).append( " = 0.0;\n" );
+      code.append( "Object " ).append( object ).append( " = null;\n" );
+      code.append( "if (!(" ).append( nullCondition ).append( ")) {\n" );
+      code.append( "  " ).append( variable ).append( " = " ).append( expression ).append( ";\n" );
+      code.append( "  " ).append( object ).append( " = Double.valueOf(" ).append( variable ).append( ");\n" );
+      code.append( "}\n" );
+    }
+    store( index, object );
+    numberVariables.put( index, variable );
+  }
+
+  /**
+   * Stores an Integer in the row.
+   *
+   * @param nullCondition
+   *          the condition for a null result, or null if the result is never null
+   * @param expression
+   *          a long expression, only evaluated if the result is not null
+   */
+  public void setInteger( int index, String nullCondition, String expression ) {
+    String variable = newVariable( "l" );
+    String object = newVariable( "o" );
+    if ( nullCondition == null ) {
+      code.append( "long " ).append( variable ).append( " = " ).append( expression ).append( ";\n" );
+      code.append( "Object " ).append( object ).append( " = Long.valueOf(" ).append( variable ).append( ");\n" );
+    } else {
+      code.append( "long " ).append( variable ).append( " = 0L;\n" );
+      code.append( "Object " ).append( object ).append( " = null;\n" );
+      code.append( "if (!(" ).append( nullCondition ).append( ")) {\n" );
+      code.append( "  " ).append( variable ).append( " = " ).append( expression ).append( ";\n" );
+      code.append( "  " ).append( object ).append( " = Long.valueOf(" ).append( variable ).append( ");\n" );
+      code.append( "}\n" );
+    }
+    store( index, object );
+    integerVariables.put( index, variable );
+  }
+
+  /**
+   * Stores any value in the row.
+   *
+   * @param expression
+   *          an Object expression
+   */
+  public void setObject( int index, String expression ) {
+    String object = newVariable( "o" );
+    code.append( "Object " ).append( object ).append( " = " ).append( expression ).append( ";\n" );
+    store( index, object );
+  }
+
+  private void store( int index, String object ) {
+    code.append( "row[" ).append( index ).append( "] = " ).append( object ).append( ";\n" );
+    objectVariables.put( index, object );
+    numberVariables.remove( index );
+    integerVariables.remove( index );
+  }
+
+  /**
+   * @return an expression giving the constant
+   */
+  public String addConstant( Object value ) {
+    constants.add( value );
+    return "constants[" + ( constants.size() - 1 ) + "]";
+  }
+
+  /**
+   * @return an expression converting the value of the given expression with the converter
+   */
+  public String addConverter( ValueConverter converter, String expression ) {
+    converters.add( converter );
+    return "convert(" + ( converters.size() - 1 ) + ", " + expression + ")";
+  }
+
+  /**
+   * Adds a method to the generated class. The parameters are not checked, so the names of fields can be used.
+   *
+   * @return the name of the method
+   */
+  public String addMethod( String returnType, List<String> parameterTypes, List<String> parameterNames, String body ) {
+    String name = VARIABLE_PREFIX + "method" + nrMethods++;
+    methods.append( "private " ).append( returnType ).append( ' ' ).append( name ).append( '(' );
+    for ( int i = 0; i < parameterNames.size(); i++ ) {
+      methods.append( i > 0 ? ", " : "" ).append( parameterTypes.get( i ) ).append( ' ' )
+        .append( parameterNames.get( i ) );
+    }
+    methods.append( ") throws Exception {\n" ).append( body ).append( "\n}\n\n" );
+    return name;
+  }
+
+  private String newVariable( String type ) {
+    return VARIABLE_PREFIX + type + nrVariables++;
+  }
+
+  public String getSource() {
+    return methods.toString() + "public void calculate(Object[] row) throws Exception {\n" + code + "}\n";
+  }
+
+  /**
+   * Compiles the calculations, or takes the class from the cache if the same source was compiled before.
+   *
+   * @return a new instance of the generated class
+   */
+  public CompiledRowExpression compile() throws KettleException {
+    String source = getSource();
+    try {
+      Class<?> clazz = classCache.getIfPresent( source );
+      if ( clazz == null ) {
+        ClassLoader parent = Thread.currentThread().getContextClassLoader();
+        ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+        cbe.setParentClassLoader( parent != null ? parent : RowExpressionCompiler.class.getClassLoader() );
+        cbe.setExtendedType( CompiledRowExpression.class );
+        cbe.cook( new Scanner( null, new StringReader( source ) ) );
+        clazz = cbe.getClazz();
+        classCache.put( source, clazz );
+      }
+      CompiledRowExpression expression = (CompiledRowExpression) clazz.newInstance();
+      expression.init( rowMeta.getValueMetaList().toArray( new ValueMetaInterface[rowMeta.size()] ),
+        constants.toArray(), converters.toArray( new ValueConverter[converters.size()] ) );
+      return expression;
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to compile the expressions:" + Const.CR + source, e );
+    }
+  }
+}
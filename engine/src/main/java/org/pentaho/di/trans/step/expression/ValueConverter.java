@@ -0,0 +1,35 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step.expression;
+
+import org.pentaho.di.core.exception.KettleValueException;
+
+/**
+ * Converts a value calculated by a compiled expression, for example to the data type of the target field.
+ *
+ * @see RowExpressionCompiler#addConverter(ValueConverter)
+ */
+public interface ValueConverter {
+
+  Object convert( Object value ) throws KettleValueException;
+}
@@ -0,0 +1,265 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A double buffered, in-memory pipe between the thread that encodes rows and the thread that sends them to the
+ * database. The writer fills one buffer while the reader drains the other, so encoding and network writes overlap.
+ * Buffers are handed over whole, which keeps the synchronization cost per byte close to nothing.
+ * <p>
+ * When either side fails, the other side gets an IOException instead of blocking forever.
+ */
+public class BulkLoadPipe {
+
+  public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+  private static final long POLL_MILLIS = 100L;
+
+  private static final Buffer END = new Buffer( 0 );
+
+  private final BlockingQueue<Buffer> filled;
+  private final BlockingQueue<Buffer> free;
+  private final PipeOutputStream outputStream;
+  private final PipeInputStream inputStream;
+
+  private volatile Throwable failure;
+
+  public BulkLoadPipe() {
+    this( DEFAULT_BUFFER_SIZE );
+  }
+
+  public BulkLoadPipe( int bufferSize ) {
+    filled = new ArrayBlockingQueue<Buffer>( 3 );
+    free = new ArrayBlockingQueue<Buffer>( 2 );
+    free.add( new Buffer( bufferSize ) );
+    outputStream = new PipeOutputStream( new Buffer( bufferSize ) );
+    inputStream = new PipeInputStream();
+  }
+
+  /**
+   * @return the stream the rows are written to. Data is handed to the reader when a buffer is full, on flush and on
+   *         close. Closing the stream signals the end of the data.
+   */
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  /**
+   * @return the stream the database side reads from
+   */
+  public InputStream getInputStream() {
+    return inputStream;
+  }
+
+  /**
+   * Stops the pipe: blocked and later reads and writes throw an IOException with this cause.
+   */
+  public void fail( Throwable cause ) {
+    if ( failure == null ) {
+      failure = cause;
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable cause = failure;
+    if ( cause != null ) {
+      if ( cause instanceof IOException ) {
+        throw new IOException( cause.getMessage(), cause );
+      }
+      throw new IOException( "The bulk load pipe was stopped", cause );
+    }
+  }
+
+  private Buffer take( BlockingQueue<Buffer> queue ) throws IOException {
+    try {
+      while ( true ) {
+        checkFailure();
+        Buffer buffer = queue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+        if ( buffer != null ) {
+          return buffer;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while waiting for a bulk load buffer" );
+    }
+  }
+
+  private void put( BlockingQueue<Buffer> queue, Buffer buffer ) throws IOException {
+    try {
+      while ( true ) {
+        checkFailure();
+        if ( queue.offer( buffer, POLL_MILLIS, TimeUnit.MILLISECONDS ) ) {
+          return;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while handing over a bulk load buffer" );
+    }
+  }
+
+  private static class Buffer {
+    private final byte[] data;
+    private int length;
+
+    Buffer( int size ) {
+      data = new byte[ size ];
+    }
+  }
+
+  private class PipeOutputStream extends OutputStream {
+    private Buffer current;
+    private boolean closed;
+
+    PipeOutputStream( Buffer current ) {
+      this.current = current;
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+      if ( current.length == current.data.length ) {
+        handOver();
+      }
+      current.data[ current.length++ ] = (byte) b;
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+      while ( len > 0 ) {
+        if ( current.length == current.data.length ) {
+          handOver();
+        }
+        int size = Math.min( len, current.data.length - current.length );
+        System.arraycopy( b, off, current.data, current.length, size );
+        current.length += size;
+        off += size;
+        len -= size;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if ( current.length > 0 ) {
+        handOver();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if ( closed ) {
+        return;
+      }
+      closed = true;
+      if ( current.length > 0 ) {
+        put( filled, current );
+      }
+      current = null;
+      put( filled, END );
+    }
+
+    private void handOver() throws IOException {
+      if ( closed ) {
+        throw new IOException( "Stream closed" );
+      }
+      put( filled, current );
+      current = take( free );
+      current.length = 0;
+    }
+  }
+
+  private class PipeInputStream extends InputStream {
+    private Buffer current;
+    private int position;
+    private boolean ended;
+
+    @Override
+    public int read() throws IOException {
+      if ( !next() ) {
+        return -1;
+      }
+      return current.data[ position++ ] & 0xff;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+      if ( len == 0 ) {
+        return 0;
+      }
+      if ( !next() ) {
+        return -1;
+      }
+      int size = Math.min( len, current.length - position );
+      System.arraycopy( current.data, position, b, off, size );
+      position += size;
+      return size;
+    }
+
+    @Override
+    public int available() {
+      return current == null ? 0 : current.length - position;
+    }
+
+    /**
+     * A reader that stops before the end of the data would leave the writer waiting, so that is a failure.
+     */
+    @Override
+    public void close() {
+      if ( !ended ) {
+        ended = true;
+        fail( new IOException( "The bulk load stopped reading before the end of the data" ) );
+      }
+    }
+
+    /**
+     * @return true if there is data to read in the current buffer
+     */
+    private boolean next() throws IOException {
+      while ( current == null || position == current.length ) {
+        if ( ended ) {
+          return false;
+        }
+        if ( current != null ) {
+          put( free, current );
+          current = null;
+        }
+        Buffer buffer = take( filled );
+        if ( buffer == END ) {
+          ended = true;
+          return false;
+        }
+        current = buffer;
+        position = 0;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import java.io.InputStream;
+
+/**
+ * A driver native bulk load API that reads the data to load from a stream, for example the PostgreSQL COPY API or
+ * LOAD DATA LOCAL INFILE on MySQL.
+ *
+ * @see BulkLoader
+ */
+public interface BulkLoadTarget {
+
+  /**
+   * Runs the load. Called on the thread of the {@link BulkLoader}, reads the data until the end of the stream.
+   *
+   * @param data the encoded rows
+   * @return the number of rows loaded as reported by the database, or -1 if that isn't known
+   * @throws Exception in case the load fails
+   */
+  long load( InputStream data ) throws Exception;
+}
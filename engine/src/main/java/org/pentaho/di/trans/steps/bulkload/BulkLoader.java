@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Streams rows into a database through a driver native bulk load API, without external processes or FIFO files.
+ * <p>
+ * The step encodes its rows into the stream returned by {@link #start(String)}. A separate thread runs the
+ * {@link BulkLoadTarget}, which reads the data from the other side of a double buffered {@link BulkLoadPipe}. Call
+ * {@link #finish()} after the last row, or {@link #abort()} to cancel the load.
+ */
+public class BulkLoader {
+
+  private final BulkLoadTarget target;
+  private final BulkLoadPipe pipe;
+
+  private Thread thread;
+  private volatile Throwable error;
+  private volatile long rowsLoaded = -1L;
+
+  public BulkLoader( BulkLoadTarget target ) {
+    this( target, BulkLoadPipe.DEFAULT_BUFFER_SIZE );
+  }
+
+  public BulkLoader( BulkLoadTarget target, int bufferSize ) {
+    this.target = target;
+    this.pipe = new BulkLoadPipe( bufferSize );
+  }
+
+  /**
+   * Starts the load on a new thread.
+   *
+   * @param threadName the name of the loading thread
+   * @return the stream to write the encoded rows to
+   */
+  public OutputStream start( String threadName ) {
+    thread = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        InputStream data = pipe.getInputStream();
+        try {
+          rowsLoaded = target.load( data );
+        } catch ( Throwable t ) {
+          error = t;
+          pipe.fail( t );
+        } finally {
+          try {
+            data.close();
+          } catch ( IOException e ) {
+            // Nothing to release
+          }
+        }
+      }
+    }, threadName );
+    thread.start();
+    return pipe.getOutputStream();
+  }
+
+  /**
+   * Ends the data and waits for the database to complete the load.
+   *
+   * @return the number of rows loaded as reported by the database, or -1 if that isn't known
+   * @throws KettleException in case the load failed
+   */
+  public long finish() throws KettleException {
+    try {
+      pipe.getOutputStream().close();
+    } catch ( IOException e ) {
+      // The loading thread failed, its error is reported below
+      if ( error == null ) {
+        error = e;
+      }
+    }
+    join();
+    if ( error != null ) {
+      throw new KettleException( "Error bulk loading the data", error );
+    }
+    return rowsLoaded;
+  }
+
+  /**
+   * Cancels the load and waits for the loading thread to stop.
+   */
+  public void abort() {
+    pipe.fail( new IOException( "The bulk load was aborted" ) );
+    try {
+      join();
+    } catch ( KettleException e ) {
+      // Interrupted, the loading thread stops by itself
+    }
+  }
+
+  /**
+   * @return true if the loading thread failed
+   */
+  public boolean isFailed() {
+    return error != null;
+  }
+
+  private void join() throws KettleException {
+    if ( thread == null ) {
+      return;
+    }
+    try {
+      thread.join();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( "Interrupted while waiting for the bulk load to finish", e );
+    }
+  }
+}
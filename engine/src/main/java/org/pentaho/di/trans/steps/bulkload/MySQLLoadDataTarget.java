@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Loads the data with a LOAD DATA LOCAL INFILE command, reading the "file" from the stream instead of the file system.
+ * This uses setLocalInfileInputStream() of the MySQL Connector/J statements. The driver isn't a compile time dependency
+ * so the method is looked up at runtime, see {@link #isSupported(Connection)}.
+ * <p>
+ * The connection needs allowLoadLocalInfile=true, as with any LOAD DATA LOCAL INFILE.
+ */
+public class MySQLLoadDataTarget implements BulkLoadTarget {
+
+  private static final String SET_INPUT_STREAM = "setLocalInfileInputStream";
+
+  private static final String[] STATEMENT_CLASSES = { "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement" };
+
+  private final Connection connection;
+  private final String loadCommand;
+
+  public MySQLLoadDataTarget( Connection connection, String loadCommand ) {
+    this.connection = connection;
+    this.loadCommand = loadCommand;
+  }
+
+  /**
+   * @return true if the JDBC driver of the connection can take the data of a LOAD DATA LOCAL INFILE from a stream
+   */
+  public static boolean isSupported( Connection connection ) {
+    try {
+      Statement statement = connection.createStatement();
+      try {
+        return findSetter( statement ) != null;
+      } finally {
+        statement.close();
+      }
+    } catch ( SQLException e ) {
+      return false;
+    }
+  }
+
+  @Override
+  public long load( InputStream data ) throws Exception {
+    Statement statement = connection.createStatement();
+    try {
+      Object target = findSetter( statement );
+      if ( target == null ) {
+        throw new SQLException( "The JDBC driver can't read LOAD DATA LOCAL INFILE data from a stream" );
+      }
+      Method setter = target.getClass().getMethod( SET_INPUT_STREAM, InputStream.class );
+      setter.invoke( target, data );
+      try {
+        statement.execute( loadCommand );
+        return statement.getUpdateCount();
+      } finally {
+        setter.invoke( target, new Object[] { null } );
+      }
+    } finally {
+      statement.close();
+    }
+  }
+
+  public String getLoadCommand() {
+    return loadCommand;
+  }
+
+  /**
+   * @return the statement object implementing setLocalInfileInputStream(), unwrapped from a pool if needed, or null
+   */
+  private static Object findSetter( Statement statement ) throws SQLException {
+    if ( hasSetter( statement.getClass() ) ) {
+      return statement;
+    }
+    for ( String className : STATEMENT_CLASSES ) {
+      try {
+        Class<?> statementClass = Class.forName( className, false, statement.getClass().getClassLoader() );
+        if ( statement.isWrapperFor( statementClass ) ) {
+          Object unwrapped = statement.unwrap( statementClass );
+          if ( hasSetter( unwrapped.getClass() ) ) {
+            return unwrapped;
+          }
+        }
+      } catch ( ClassNotFoundException e ) {
+        // Not this version of the driver
+      }
+    }
+    return null;
+  }
+
+  private static boolean hasSetter( Class<?> statementClass ) {
+    try {
+      statementClass.getMethod( SET_INPUT_STREAM, InputStream.class );
+      return true;
+    } catch ( NoSuchMethodException e ) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,361 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Encodes rows in the binary format of the PostgreSQL COPY command (COPY ... FROM STDIN WITH BINARY). The binary
+ * format needs the exact column type, so the encoder is created for the types of the target columns, as reported by
+ * the JDBC database metadata. Use {@link #supports(ValueMetaInterface, String)} to see if a field can be written
+ * to a column in binary.
+ * <p>
+ * Dates and timestamps without time zone are written in the local time zone of the JVM, like the text format does.
+ * Timestamps need a server with integer datetimes, the default since PostgreSQL 8.4.
+ */
+public class PGBinaryCopyEncoder {
+
+  private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+  private static final int INT2 = 1;
+  private static final int INT4 = 2;
+  private static final int INT8 = 3;
+  private static final int FLOAT4 = 4;
+  private static final int FLOAT8 = 5;
+  private static final int NUMERIC = 6;
+  private static final int TEXT = 7;
+  private static final int BOOL = 8;
+  private static final int DATE = 9;
+  private static final int TIMESTAMP = 10;
+  private static final int TIMESTAMPTZ = 11;
+  private static final int BYTEA = 12;
+
+  private static final int NUMERIC_POSITIVE = 0x0000;
+  private static final int NUMERIC_NEGATIVE = 0x4000;
+
+  /** 2000-01-01, the PostgreSQL epoch */
+  private static final long PG_EPOCH_SECONDS = 946684800L;
+  private static final long PG_EPOCH_DAYS = 10957L;
+
+  private final RowMetaInterface rowMeta;
+  private final int[] fieldIndexes;
+  private final int[] columnTypes;
+  private final ZoneId zoneId;
+
+  private final ByteArrayOutputStream rowBuffer;
+  private final DataOutputStream row;
+
+  /**
+   * @param rowMeta      the metadata of the input rows
+   * @param fieldIndexes the index in the input rows of each column to load
+   * @param columnTypes  the PostgreSQL type name (int4, varchar, timestamptz, ...) of each column to load
+   * @throws KettleValueException in case a field can't be written to its column in binary
+   */
+  public PGBinaryCopyEncoder( RowMetaInterface rowMeta, int[] fieldIndexes, String[] columnTypes )
+    throws KettleValueException {
+    this.rowMeta = rowMeta;
+    this.fieldIndexes = fieldIndexes;
+    this.columnTypes = new int[ columnTypes.length ];
+    for ( int i = 0; i < columnTypes.length; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( fieldIndexes[ i ] );
+      if ( !supports( valueMeta, columnTypes[ i ] ) ) {
+        throw new KettleValueException( "Field " + valueMeta.toStringMeta() + " can't be written to a column of type "
+          + columnTypes[ i ] + " in binary" );
+      }
+      this.columnTypes[ i ] = getColumnType( columnTypes[ i ] );
+    }
+    this.zoneId = ZoneId.systemDefault();
+    this.rowBuffer = new ByteArrayOutputStream( 256 );
+    this.row = new DataOutputStream( rowBuffer );
+  }
+
+  /**
+   * @param valueMeta  the field to load
+   * @param columnType the PostgreSQL type name of the column
+   * @return true if the values of the field can be written to the column in binary without changing their meaning
+   */
+  public static boolean supports( ValueMetaInterface valueMeta, String columnType ) {
+    int type = getColumnType( columnType );
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        return type == INT2 || type == INT4 || type == INT8 || type == NUMERIC;
+      case ValueMetaInterface.TYPE_NUMBER:
+        return type == FLOAT4 || type == FLOAT8 || type == NUMERIC;
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return type == NUMERIC;
+      case ValueMetaInterface.TYPE_STRING:
+        return type == TEXT;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return type == BOOL;
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        return type == DATE || type == TIMESTAMP || type == TIMESTAMPTZ;
+      case ValueMetaInterface.TYPE_BINARY:
+        return type == BYTEA;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return true if the type name is a date or timestamp type
+   */
+  public static boolean isTemporal( String columnType ) {
+    int type = getColumnType( columnType );
+    return type == DATE || type == TIMESTAMP || type == TIMESTAMPTZ;
+  }
+
+  /**
+   * @return true if the type name is a timestamp type, which depends on the integer datetimes server setting
+   */
+  public static boolean isTimestamp( String columnType ) {
+    int type = getColumnType( columnType );
+    return type == TIMESTAMP || type == TIMESTAMPTZ;
+  }
+
+  private static int getColumnType( String columnType ) {
+    if ( columnType == null ) {
+      return 0;
+    }
+    String name = columnType.toLowerCase();
+    if ( name.equals( "int2" ) || name.equals( "smallserial" ) ) {
+      return INT2;
+    } else if ( name.equals( "int4" ) || name.equals( "serial" ) ) {
+      return INT4;
+    } else if ( name.equals( "int8" ) || name.equals( "bigserial" ) ) {
+      return INT8;
+    } else if ( name.equals( "float4" ) ) {
+      return FLOAT4;
+    } else if ( name.equals( "float8" ) ) {
+      return FLOAT8;
+    } else if ( name.equals( "numeric" ) ) {
+      return NUMERIC;
+    } else if ( name.equals( "text" ) || name.equals( "varchar" ) || name.equals( "bpchar" ) ) {
+      return TEXT;
+    } else if ( name.equals( "bool" ) ) {
+      return BOOL;
+    } else if ( name.equals( "date" ) ) {
+      return DATE;
+    } else if ( name.equals( "timestamp" ) ) {
+      return TIMESTAMP;
+    } else if ( name.equals( "timestamptz" ) ) {
+      return TIMESTAMPTZ;
+    } else if ( name.equals( "bytea" ) ) {
+      return BYTEA;
+    }
+    return 0;
+  }
+
+  public void writeHeader( OutputStream out ) throws IOException {
+    DataOutputStream header = new DataOutputStream( out );
+    header.write( SIGNATURE );
+    header.writeInt( 0 ); // flags
+    header.writeInt( 0 ); // header extension length
+  }
+
+  public void writeTrailer( OutputStream out ) throws IOException {
+    out.write( 0xff );
+    out.write( 0xff );
+  }
+
+  public void writeRow( OutputStream out, Object[] r ) throws KettleValueException, IOException {
+    rowBuffer.reset();
+    row.writeShort( fieldIndexes.length );
+    for ( int i = 0; i < fieldIndexes.length; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( fieldIndexes[ i ] );
+      Object valueData = r[ fieldIndexes[ i ] ];
+      if ( valueData == null ) {
+        row.writeInt( -1 );
+        continue;
+      }
+      switch ( columnTypes[ i ] ) {
+        case INT2:
+          row.writeInt( 2 );
+          row.writeShort( (int) getInteger( valueMeta, valueData, Short.MIN_VALUE, Short.MAX_VALUE ) );
+          break;
+        case INT4:
+          row.writeInt( 4 );
+          row.writeInt( (int) getInteger( valueMeta, valueData, Integer.MIN_VALUE, Integer.MAX_VALUE ) );
+          break;
+        case INT8:
+          row.writeInt( 8 );
+          row.writeLong( getInteger( valueMeta, valueData, Long.MIN_VALUE, Long.MAX_VALUE ) );
+          break;
+        case FLOAT4:
+          row.writeInt( 4 );
+          row.writeFloat( valueMeta.getNumber( valueData ).floatValue() );
+          break;
+        case FLOAT8:
+          row.writeInt( 8 );
+          row.writeDouble( valueMeta.getNumber( valueData ) );
+          break;
+        case NUMERIC:
+          writeNumeric( valueMeta.getBigNumber( valueData ) );
+          break;
+        case TEXT:
+          byte[] text = valueMeta.getString( valueData ).getBytes( StandardCharsets.UTF_8 );
+          row.writeInt( text.length );
+          row.write( text );
+          break;
+        case BOOL:
+          row.writeInt( 1 );
+          row.writeByte( valueMeta.getBoolean( valueData ) ? 1 : 0 );
+          break;
+        case DATE:
+          row.writeInt( 4 );
+          row.writeInt( (int) ( toLocalDateTime( valueMeta.getDate( valueData ) ).toLocalDate().toEpochDay()
+            - PG_EPOCH_DAYS ) );
+          break;
+        case TIMESTAMP:
+          LocalDateTime localDateTime = toLocalDateTime( valueMeta.getDate( valueData ) );
+          row.writeInt( 8 );
+          row.writeLong( toMicros( localDateTime.toEpochSecond( ZoneOffset.UTC ), localDateTime.getNano() ) );
+          break;
+        case TIMESTAMPTZ:
+          Instant instant = toInstant( valueMeta.getDate( valueData ) );
+          row.writeInt( 8 );
+          row.writeLong( toMicros( instant.getEpochSecond(), instant.getNano() ) );
+          break;
+        case BYTEA:
+          byte[] binary = valueMeta.getBinary( valueData );
+          row.writeInt( binary.length );
+          row.write( binary );
+          break;
+        default:
+          throw new KettleValueException( "Unsupported column type for field " + valueMeta.getName() );
+      }
+    }
+    rowBuffer.writeTo( out );
+  }
+
+  private long getInteger( ValueMetaInterface valueMeta, Object valueData, long min, long max )
+    throws KettleValueException {
+    long value = valueMeta.getInteger( valueData );
+    if ( value < min || value > max ) {
+      throw new KettleValueException( "Value " + value + " of field " + valueMeta.getName()
+        + " is out of range for its column" );
+    }
+    return value;
+  }
+
+  private Instant toInstant( Date date ) {
+    if ( date instanceof Timestamp ) {
+      return ( (Timestamp) date ).toInstant();
+    }
+    return Instant.ofEpochMilli( date.getTime() );
+  }
+
+  private LocalDateTime toLocalDateTime( Date date ) {
+    return LocalDateTime.ofInstant( toInstant( date ), zoneId );
+  }
+
+  private static long toMicros( long epochSeconds, int nanos ) {
+    return ( epochSeconds - PG_EPOCH_SECONDS ) * 1000000L + nanos / 1000;
+  }
+
+  /**
+   * A numeric is a sign, a scale and the digits in base 10000, with the weight of the first digit.
+   */
+  private void writeNumeric( BigDecimal value ) throws IOException {
+    if ( value.scale() < 0 ) {
+      value = value.setScale( 0 );
+    }
+    int sign = value.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE;
+    int scale = value.scale();
+    String digits = value.unscaledValue().abs().toString();
+
+    // Split in integer and fraction digits and pad both to groups of 4
+    String integerPart;
+    String fractionPart;
+    int integerLength = digits.length() - scale;
+    if ( integerLength > 0 ) {
+      integerPart = digits.substring( 0, integerLength );
+      fractionPart = digits.substring( integerLength );
+    } else {
+      integerPart = "";
+      fractionPart = zeros( -integerLength ) + digits;
+    }
+    int integerGroups = ( integerPart.length() + 3 ) / 4;
+    int fractionGroups = ( fractionPart.length() + 3 ) / 4;
+    String groups = zeros( integerGroups * 4 - integerPart.length() ) + integerPart + fractionPart
+      + zeros( fractionGroups * 4 - fractionPart.length() );
+
+    // Leading and trailing zero groups are left out
+    int first = 0;
+    int last = integerGroups + fractionGroups;
+    int weight = integerGroups - 1;
+    while ( first < last && isZeroGroup( groups, first ) ) {
+      first++;
+      weight--;
+    }
+    while ( last > first && isZeroGroup( groups, last - 1 ) ) {
+      last--;
+    }
+    int ndigits = last - first;
+    if ( ndigits == 0 ) {
+      weight = 0;
+      sign = NUMERIC_POSITIVE;
+    }
+
+    row.writeInt( 8 + 2 * ndigits );
+    row.writeShort( ndigits );
+    row.writeShort( weight );
+    row.writeShort( sign );
+    row.writeShort( scale );
+    for ( int i = first; i < last; i++ ) {
+      row.writeShort( Integer.parseInt( groups.substring( i * 4, i * 4 + 4 ) ) );
+    }
+  }
+
+  private static boolean isZeroGroup( String groups, int group ) {
+    for ( int i = group * 4; i < group * 4 + 4; i++ ) {
+      if ( groups.charAt( i ) != '0' ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String zeros( int count ) {
+    StringBuilder zeros = new StringBuilder( count );
+    for ( int i = 0; i < count; i++ ) {
+      zeros.append( '0' );
+    }
+    return zeros.toString();
+  }
+}
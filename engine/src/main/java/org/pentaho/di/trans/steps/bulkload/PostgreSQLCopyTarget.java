@@ -0,0 +1,51 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import java.io.InputStream;
+import java.sql.Connection;
+
+import org.postgresql.PGConnection;
+
+/**
+ * Loads the data with a COPY ... FROM STDIN command through the CopyManager of the PostgreSQL JDBC driver.
+ */
+public class PostgreSQLCopyTarget implements BulkLoadTarget {
+
+  private final Connection connection;
+  private final String copyCommand;
+
+  public PostgreSQLCopyTarget( Connection connection, String copyCommand ) {
+    this.connection = connection;
+    this.copyCommand = copyCommand;
+  }
+
+  @Override
+  public long load( InputStream data ) throws Exception {
+    return ( (PGConnection) connection ).getCopyAPI().copyIn( copyCommand, data );
+  }
+
+  public String getCopyCommand() {
+    return copyCommand;
+  }
+}
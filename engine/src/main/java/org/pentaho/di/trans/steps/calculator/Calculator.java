@@ -41,6 +41,7 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.expression.RowExpressionCompiler;
 
 /**
  * Calculate new field values using pre-defined functions.
@@ -152,6 +153,18 @@ public class Calculator extends BaseStep implements StepInterface {
       for ( int i = 0; i < data.getTempIndexes().length; i++ ) {
         data.getTempIndexes()[i] = tempIndexes.get( i );
       }
+
+      if ( RowExpressionCompiler.isEnabled() ) {
+        try {
+          data.setExpression( CalculatorCompiler.compile( meta, data, getInputRowMeta() ) );
+        } catch ( KettleException e ) {
+          logError( BaseMessages.getString( PKG, "Calculator.Log.CompileFailed" ), e );
+        }
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, data.getExpression() != null
+            ? "Calculator.Log.Compiled" : "Calculator.Log.NotCompiled" ) );
+        }
+      }
     }
 
     if ( log.isRowLevel() ) {
@@ -195,6 +208,17 @@ public class Calculator extends BaseStep implements StepInterface {
     // First copy the input data to the new result...
     Object[] calcData = RowDataUtil.resizeArray( r, data.getCalcRowMeta().size() );
 
+    if ( data.getExpression() != null ) {
+      try {
+        data.getExpression().calculate( calcData );
+      } catch ( KettleValueException | RuntimeException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new KettleValueException( e );
+      }
+      return RowDataUtil.removeItems( calcData, data.getTempIndexes() );
+    }
+
     for ( int i = 0, index = inputRowMeta.size() + i; i < meta.getCalculation().length; i++, index++ ) {
       CalculatorMetaFunction fn = meta.getCalculation()[i];
       if ( !Utils.isEmpty( fn.getFieldName() ) ) {
@@ -0,0 +1,351 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.calculator;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.trans.step.expression.CompiledRowExpression;
+import org.pentaho.di.trans.step.expression.RowExpressionCompiler;
+import org.pentaho.di.trans.step.expression.ValueConverter;
+
+/**
+ * Compiles the calculations of a Calculator step into one class. The arithmetic on Number and Integer fields is done
+ * on primitives, the results of one calculation are passed on to the next ones without boxing. Only the calculations
+ * below are supported, with the same results as {@link org.pentaho.di.core.row.ValueDataUtil}: for all other
+ * calculations or data types the step evaluates the calculations one by one.
+ * <ul>
+ * <li>Copy of field, constant value</li>
+ * <li>A + B, A + B + C, A - B, A * B, A / B, A * A on Number fields (B and C can be Integers) or Integer fields</li>
+ * <li>SQRT( A ), ABS( A ) on a Number or Integer field</li>
+ * <li>100 * A / B, A - ( A * B / 100 ), A + ( A * B / 100 ), A + B * C, A % B on the same field types as A + B</li>
+ * <li>SQRT( A * A + B * B ) on Number fields</li>
+ * <li>ROUND, CEIL, FLOOR on a Number or Integer field, the rounding with B decimals through ValueDataUtil</li>
+ * <li>NVL( A, B ) on two Number or two Integer fields</li>
+ * </ul>
+ */
+class CalculatorCompiler {
+
+  private final RowExpressionCompiler compiler;
+
+  private CalculatorCompiler( RowMetaInterface calcRowMeta ) {
+    this.compiler = new RowExpressionCompiler( calcRowMeta );
+  }
+
+  /**
+   * @return the compiled calculations, or null if some calculation can't be compiled
+   */
+  static CompiledRowExpression compile( CalculatorMeta meta, CalculatorData data, RowMetaInterface inputRowMeta )
+    throws KettleException {
+    CalculatorCompiler calculatorCompiler = new CalculatorCompiler( data.getCalcRowMeta() );
+    for ( int i = 0; i < meta.getCalculation().length; i++ ) {
+      if ( !calculatorCompiler.addCalculation( meta.getCalculation()[i], data.getFieldIndexes()[i],
+        inputRowMeta.size() + i ) ) {
+        return null;
+      }
+    }
+    return calculatorCompiler.compiler.compile();
+  }
+
+  private boolean addCalculation( CalculatorMetaFunction fn, Calculator.FieldIndexes indexes, int index )
+    throws KettleException {
+    RowMetaInterface calcRowMeta = compiler.getRowMeta();
+    ValueMetaInterface targetMeta = calcRowMeta.getValueMeta( index );
+    if ( targetMeta.getType() == ValueMetaInterface.TYPE_NONE ) {
+      return false;
+    }
+    int typeA = getType( indexes.indexA );
+    int typeB = getType( indexes.indexB );
+    int typeC = getType( indexes.indexC );
+
+    int resultType = typeA;
+    switch ( fn.getCalcType() ) {
+      case CalculatorMetaFunction.CALC_NONE:
+        return true;
+      case CalculatorMetaFunction.CALC_COPY_OF_FIELD:
+        if ( calcRowMeta.getValueMeta( indexes.indexA ).getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+          return false;
+        }
+        compiler.setObject( index, compiler.getObject( indexes.indexA ) );
+        break;
+      case CalculatorMetaFunction.CALC_CONSTANT:
+        resultType = CalculatorMetaFunction.calcDefaultResultType[fn.getCalcType()];
+        compiler.setObject( index, compiler.addConstant( fn.getFieldA() ) );
+        break;
+      case CalculatorMetaFunction.CALC_ADD:
+        if ( !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          get( typeA, indexes.indexA ) + " + " + get( typeA, indexes.indexB ) );
+        break;
+      case CalculatorMetaFunction.CALC_ADD3:
+        if ( !isArithmetic( typeA, typeB ) || !isArithmetic( typeA, typeC ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB )
+          + " || " + compiler.isNull( indexes.indexC ), get( typeA, indexes.indexA ) + " + "
+          + get( typeA, indexes.indexB ) + " + " + get( typeA, indexes.indexC ) );
+        break;
+      case CalculatorMetaFunction.CALC_SUBTRACT:
+        if ( !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          get( typeA, indexes.indexA ) + " - " + get( typeA, indexes.indexB ) );
+        break;
+      case CalculatorMetaFunction.CALC_MULTIPLY:
+        if ( !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          get( typeA, indexes.indexA ) + " * " + get( typeA, indexes.indexB ) );
+        break;
+      case CalculatorMetaFunction.CALC_DIVIDE:
+        if ( !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          get( typeA, indexes.indexA ) + " / " + get( typeA, indexes.indexB ) );
+        break;
+      case CalculatorMetaFunction.CALC_SQUARE:
+        if ( !isArithmetic( typeA, typeA ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ),
+          get( typeA, indexes.indexA ) + " * " + get( typeA, indexes.indexA ) );
+        break;
+      case CalculatorMetaFunction.CALC_SQUARE_ROOT:
+        if ( typeA == ValueMetaInterface.TYPE_NUMBER ) {
+          compiler.setNumber( index, compiler.isNull( indexes.indexA ),
+            "Math.sqrt(" + compiler.getNumber( indexes.indexA ) + ")" );
+        } else if ( typeA == ValueMetaInterface.TYPE_INTEGER ) {
+          compiler.setInteger( index, compiler.isNull( indexes.indexA ),
+            "Math.round(Math.sqrt((double) " + compiler.getInteger( indexes.indexA ) + "))" );
+        } else {
+          return false;
+        }
+        break;
+      case CalculatorMetaFunction.CALC_ABS:
+        if ( typeA == ValueMetaInterface.TYPE_NUMBER ) {
+          compiler.setNumber( index, compiler.isNull( indexes.indexA ),
+            "Math.abs(" + compiler.getNumber( indexes.indexA ) + ")" );
+        } else if ( typeA == ValueMetaInterface.TYPE_INTEGER ) {
+          // like ValueDataUtil.abs(): through a double
+          compiler.setInteger( index, compiler.isNull( indexes.indexA ),
+            "Math.abs((long) (double) " + compiler.getInteger( indexes.indexA ) + ")" );
+        } else {
+          return false;
+        }
+        break;
+      case CalculatorMetaFunction.CALC_PERCENT_1:
+        if ( !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          "(" + hundred( typeA ) + " * " + get( typeA, indexes.indexA ) + ") / " + get( typeA, indexes.indexB ) );
+        break;
+      case CalculatorMetaFunction.CALC_PERCENT_2:
+      case CalculatorMetaFunction.CALC_PERCENT_3:
+        if ( !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          get( typeA, indexes.indexA ) + ( fn.getCalcType() == CalculatorMetaFunction.CALC_PERCENT_2 ? " - " : " + " )
+            + "(" + get( typeA, indexes.indexA ) + " * " + get( typeA, indexes.indexB ) + ") / " + hundred( typeA ) );
+        break;
+      case CalculatorMetaFunction.CALC_COMBINATION_1:
+        if ( !isArithmetic( typeA, typeB ) || !isArithmetic( typeA, typeC ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB )
+          + " || " + compiler.isNull( indexes.indexC ), get( typeA, indexes.indexA ) + " + ("
+          + get( typeA, indexes.indexB ) + " * " + get( typeA, indexes.indexC ) + ")" );
+        break;
+      case CalculatorMetaFunction.CALC_COMBINATION_2:
+        // the Integer variant of ValueDataUtil.combination2() is left to the calculator
+        if ( typeA != ValueMetaInterface.TYPE_NUMBER || !isArithmetic( typeA, typeB ) ) {
+          return false;
+        }
+        compiler.setNumber( index, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          "Math.sqrt(" + get( typeA, indexes.indexA ) + " * " + get( typeA, indexes.indexA ) + " + "
+            + get( typeA, indexes.indexB ) + " * " + get( typeA, indexes.indexB ) + ")" );
+        break;
+      case CalculatorMetaFunction.CALC_ROUND_1:
+      case CalculatorMetaFunction.CALC_CEIL:
+      case CalculatorMetaFunction.CALC_FLOOR:
+        if ( typeA == ValueMetaInterface.TYPE_NUMBER ) {
+          String function = fn.getCalcType() == CalculatorMetaFunction.CALC_ROUND_1 ? "(double) Math.round("
+            : fn.getCalcType() == CalculatorMetaFunction.CALC_CEIL ? "Math.ceil(" : "Math.floor(";
+          compiler.setNumber( index, compiler.isNull( indexes.indexA ),
+            function + compiler.getNumber( indexes.indexA ) + ")" );
+        } else if ( typeA == ValueMetaInterface.TYPE_INTEGER ) {
+          compiler.setInteger( index, compiler.isNull( indexes.indexA ), compiler.getInteger( indexes.indexA ) );
+        } else {
+          return false;
+        }
+        break;
+      case CalculatorMetaFunction.CALC_ROUND_STD_1:
+        if ( !isArithmetic( typeA, typeA ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ), "org.pentaho.di.core.Const.round("
+          + get( typeA, indexes.indexA ) + ", 0, java.math.BigDecimal.ROUND_HALF_UP)" );
+        break;
+      case CalculatorMetaFunction.CALC_ROUND_STD_2:
+        if ( !isArithmetic( typeA, typeA ) || typeB != ValueMetaInterface.TYPE_INTEGER ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          "org.pentaho.di.core.Const.round(" + get( typeA, indexes.indexA ) + ", (int) "
+            + compiler.getInteger( indexes.indexB ) + ", java.math.BigDecimal.ROUND_HALF_UP)" );
+        break;
+      case CalculatorMetaFunction.CALC_ROUND_2:
+      case CalculatorMetaFunction.CALC_ROUND_CUSTOM_1:
+      case CalculatorMetaFunction.CALC_ROUND_CUSTOM_2:
+        // the same call as the calculator: ROUND(A, B) depends on the ROUND_2_MODE setting of ValueDataUtil and the
+        // custom rounding modes are only known per row
+        if ( !isArithmetic( typeA, typeA ) || !isArithmetic( typeB, typeB ) ) {
+          return false;
+        }
+        String round = "org.pentaho.di.core.row.ValueDataUtil.round(" + argument( indexes.indexA );
+        if ( fn.getCalcType() == CalculatorMetaFunction.CALC_ROUND_2 ) {
+          round += ", " + argument( indexes.indexB ) + ")";
+        } else if ( fn.getCalcType() == CalculatorMetaFunction.CALC_ROUND_CUSTOM_1 ) {
+          round += ", " + number( indexes.indexB ) + ")";
+        } else if ( isArithmetic( typeC, typeC ) ) {
+          round += ", " + argument( indexes.indexB ) + ", " + number( indexes.indexC ) + ")";
+        } else {
+          return false;
+        }
+        compiler.setObject( index, round );
+        break;
+      case CalculatorMetaFunction.CALC_NVL:
+        if ( typeA != typeB || !isArithmetic( typeA, typeA ) ) {
+          return false;
+        }
+        compiler.setObject( index, compiler.getObject( indexes.indexA ) + " != null ? "
+          + compiler.getObject( indexes.indexA ) + " : " + compiler.getObject( indexes.indexB ) );
+        break;
+      case CalculatorMetaFunction.CALC_REMAINDER:
+        // the calculator converts both arguments to the target type first
+        if ( typeA != typeB || typeA != targetMeta.getType() || !isArithmetic( typeA, typeA ) ) {
+          return false;
+        }
+        setArithmetic( index, typeA, compiler.isNull( indexes.indexA ) + " || " + compiler.isNull( indexes.indexB ),
+          get( typeA, indexes.indexA ) + " % " + get( typeA, indexes.indexB ) );
+        break;
+      default:
+        return false;
+    }
+
+    // Convert the data to the correct target data type.
+    //
+    if ( targetMeta.getType() != resultType ) {
+      String value = compiler.getObject( index );
+      compiler.setObject( index, value + " == null ? null : "
+        + compiler.addConverter( new ResultConverter( fn, resultType, targetMeta ), value ) );
+    }
+    return true;
+  }
+
+  private int getType( int index ) {
+    return index >= 0 ? compiler.getRowMeta().getValueMeta( index ).getType() : ValueMetaInterface.TYPE_NONE;
+  }
+
+  /**
+   * The data type of the result is the one of the first argument. Number arguments are only combined with Integers
+   * the same way ValueDataUtil does when the first one is a Number.
+   */
+  private static boolean isArithmetic( int typeA, int typeB ) {
+    if ( typeA == ValueMetaInterface.TYPE_NUMBER ) {
+      return typeB == ValueMetaInterface.TYPE_NUMBER || typeB == ValueMetaInterface.TYPE_INTEGER;
+    }
+    return typeA == ValueMetaInterface.TYPE_INTEGER && typeB == ValueMetaInterface.TYPE_INTEGER;
+  }
+
+  private String get( int resultType, int index ) {
+    if ( resultType == ValueMetaInterface.TYPE_NUMBER ) {
+      if ( getType( index ) == ValueMetaInterface.TYPE_INTEGER ) {
+        return "((double) " + compiler.getInteger( index ) + ")";
+      }
+      return compiler.getNumber( index );
+    }
+    return compiler.getInteger( index );
+  }
+
+  private static String hundred( int resultType ) {
+    return resultType == ValueMetaInterface.TYPE_NUMBER ? "100.0" : "100L";
+  }
+
+  /**
+   * @return the metadata and the value of the field as the arguments of a ValueDataUtil method
+   */
+  private static String argument( int index ) {
+    return "valueMetas[" + index + "], row[" + index + "]";
+  }
+
+  /**
+   * @return the value of the field as an int, like the calculator gets the rounding arguments
+   */
+  private static String number( int index ) {
+    return "valueMetas[" + index + "].getNumber(row[" + index + "]).intValue()";
+  }
+
+  private void setArithmetic( int index, int resultType, String nullCondition, String expression ) {
+    if ( resultType == ValueMetaInterface.TYPE_NUMBER ) {
+      compiler.setNumber( index, nullCondition, expression );
+    } else {
+      compiler.setInteger( index, nullCondition, expression );
+    }
+  }
+
+  /**
+   * Converts a result to the data type of the target field, like the calculator does after every calculation.
+   */
+  private static class ResultConverter implements ValueConverter {
+    private final ValueMetaInterface resultMeta;
+    private final ValueMetaInterface targetMeta;
+
+    ResultConverter( CalculatorMetaFunction fn, int resultType, ValueMetaInterface targetMeta ) throws KettleException {
+      this.resultMeta = ValueMetaFactory.createValueMeta( "result", resultType );
+      this.resultMeta.setConversionMask( fn.getConversionMask() );
+      this.resultMeta.setGroupingSymbol( fn.getGroupingSymbol() );
+      this.resultMeta.setDecimalSymbol( fn.getDecimalSymbol() );
+      this.resultMeta.setCurrencySymbol( fn.getCurrencySymbol() );
+      this.targetMeta = targetMeta;
+    }
+
+    @Override
+    public Object convert( Object value ) throws KettleValueException {
+      try {
+        return targetMeta.convertData( resultMeta, value );
+      } catch ( Exception ex ) {
+        throw new KettleValueException( "resultType: "
+          + resultMeta.getType() + "; targetMeta: " + targetMeta.getType(), ex );
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.expression.CompiledRowExpression;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -44,6 +45,8 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
 
   private int[] tempIndexes;
 
+  private CompiledRowExpression expression;
+
   private final Map<Integer, ValueMetaInterface> resultMetaMapping;
 
   public CalculatorData() {
@@ -83,6 +86,17 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
     this.tempIndexes = tempIndexes;
   }
 
+  /**
+   * @return the calculations compiled into one class, or null if they are evaluated one by one
+   */
+  public CompiledRowExpression getExpression() {
+    return expression;
+  }
+
+  public void setExpression( CompiledRowExpression expression ) {
+    this.expression = expression;
+  }
+
   public ValueMetaInterface getValueMetaFor( int resultType, String name ) throws KettlePluginException {
     // don't need any synchronization as data instance belongs only to one step instance
     ValueMetaInterface meta = resultMetaMapping.get( resultType );
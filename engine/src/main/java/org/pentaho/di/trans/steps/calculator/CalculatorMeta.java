@@ -239,4 +239,9 @@ public class CalculatorMeta extends BaseStepMeta implements StepMetaInterface {
   public StepDataInterface getStepData() {
     return new CalculatorData();
   }
+
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
 }
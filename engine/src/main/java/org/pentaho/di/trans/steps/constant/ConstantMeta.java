@@ -444,4 +444,9 @@ public class ConstantMeta extends BaseStepMeta implements StepMetaInterface {
   public StepDataInterface getStepData() {
     return new ConstantData();
   }
+
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
 }
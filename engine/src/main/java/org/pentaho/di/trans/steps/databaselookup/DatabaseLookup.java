@@ -380,9 +380,13 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       initReturnMeta();
 
       // If the user selected to load all data into the cache at startup, that's what we do now...
+      // The copies of this step read the table once and share the cache, which doesn't change afterwards.
       //
       if ( meta.isCached() && meta.isLoadingAllDataInCache() ) {
-        loadAllTableDataIntoTheCache();
+        data.cache = getStepArtifact( "all table data " + Const.NVL( getPartitionID(), "" ), () -> {
+          loadAllTableDataIntoTheCache();
+          return data.cache;
+        } );
       }
 
     }
@@ -337,6 +337,11 @@ public class FilterRowsMeta extends BaseStepMeta implements StepMetaInterface {
     return new FilterRowsData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   /**
    * Returns the Input/Output metadata for this step.
    */
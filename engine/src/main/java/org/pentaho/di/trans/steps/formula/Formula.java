@@ -40,6 +40,7 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.expression.RowExpressionCompiler;
 import org.pentaho.reporting.libraries.formula.LibFormulaErrorValue;
 import org.pentaho.reporting.libraries.formula.parser.FormulaParser;
 
@@ -94,6 +95,14 @@ public class Formula extends BaseStep implements StepInterface {
           data.replaceIndex[i] = -1;
         }
       }
+
+      if ( RowExpressionCompiler.isEnabled() ) {
+        try {
+          data.expressions = FormulaCompiler.compile( meta, data, getInputRowMeta().size() );
+        } catch ( KettleException e ) {
+          logError( "Unable to compile the formulas, they are evaluated by the formula engine", e );
+        }
+      }
     }
 
     if ( log.isRowLevel() ) {
@@ -115,7 +124,10 @@ public class Formula extends BaseStep implements StepInterface {
 
   private Object[] calcFields( RowMetaInterface rowMeta, Object[] r ) throws KettleValueException {
     try {
-      Object[] outputRowData = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+      // The compiled formulas put their result after the output row
+      //
+      Object[] outputRowData =
+        RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() + ( data.expressions != null ? 1 : 0 ) );
       int tempIndex = rowMeta.size();
 
       // Assign this tempRowData to the formula context
@@ -146,7 +158,7 @@ public class Formula extends BaseStep implements StepInterface {
           }
 
           // this is main part of all this step: calculate formula
-          Object formulaResult = data.formulas[i].evaluate();
+          Object formulaResult = data.evaluate( i, outputRowData );
           if ( formulaResult instanceof LibFormulaErrorValue ) {
             // inspect why it is happens to get clear error message.
             throw new KettleException( "Error calculate formula. Formula "
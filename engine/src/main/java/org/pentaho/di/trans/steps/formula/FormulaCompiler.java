@@ -0,0 +1,394 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.formula;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaNone;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.trans.step.expression.CompiledRowExpression;
+import org.pentaho.di.trans.step.expression.RowExpressionCompiler;
+
+/**
+ * Compiles the common formulas of a Formula step into Java, with the same results as libformula: the numbers are
+ * calculated as BigDecimals and the result has the same class. A formula is compiled if it only uses the following,
+ * all other formulas are evaluated by libformula.
+ * <ul>
+ * <li>[field] references to Number, Integer, BigNumber, String and Boolean fields</li>
+ * <li>number and "text" literals, parentheses</li>
+ * <li>+, -, * on numbers, - and + in front of a number, & on texts</li>
+ * <li>=, &lt;&gt;, &lt;, &gt;, &lt;=, &gt;= on numbers</li>
+ * <li>IF( condition ; value ; value ), AND, OR, NOT, TRUE(), FALSE()</li>
+ * </ul>
+ * The numbers are only compiled for Number and Integer result fields, where the scale of the BigDecimal doesn't
+ * matter, the texts for String fields and the conditions for Boolean fields.
+ *
+ * Rows where one of the referenced fields is null are evaluated by libformula too. The compiled class puts its result
+ * in a slot after the output row, {@link #FALLBACK} if the row has to be evaluated by libformula.
+ */
+class FormulaCompiler {
+
+  static final Object FALLBACK = new Object();
+
+  private static final int NUMBER = 0;
+  private static final int TEXT = 1;
+  private static final int LOGICAL = 2;
+
+  private final RowExpressionCompiler compiler;
+  private final String formula;
+  private final Set<Integer> references;
+  private int position;
+
+  private FormulaCompiler( RowMetaInterface rowMeta, String formula ) {
+    this.compiler = new RowExpressionCompiler( rowMeta );
+    this.formula = formula;
+    this.references = new LinkedHashSet<Integer>();
+  }
+
+  /**
+   * @return the compiled formulas, null for the formulas that are evaluated by libformula
+   */
+  static CompiledRowExpression[] compile( FormulaMeta meta, FormulaData data, int inputSize ) throws KettleException {
+    RowMetaInterface rowMeta = data.outputRowMeta.clone();
+    rowMeta.addValueMeta( new ValueMetaNone( "formula result" ) );
+
+    CompiledRowExpression[] expressions = new CompiledRowExpression[meta.getFormula().length];
+    int tempIndex = inputSize;
+    for ( int i = 0; i < meta.getFormula().length; i++ ) {
+      FormulaMetaFunction fn = meta.getFormula()[i];
+      if ( Utils.isEmpty( fn.getFieldName() ) ) {
+        continue;
+      }
+      int index = data.replaceIndex[i] < 0 ? tempIndex++ : data.replaceIndex[i];
+      if ( Utils.isEmpty( fn.getFormula() ) ) {
+        continue;
+      }
+      // A replaced field keeps its data type, the result is only converted if the type of the formula differs
+      //
+      FormulaCompiler formulaCompiler = new FormulaCompiler( rowMeta, fn.getFormula() );
+      if ( formulaCompiler.addFormula( fn.getValueType(), data.outputRowMeta.getValueMeta( index ).getType() ) ) {
+        expressions[i] = formulaCompiler.compiler.compile();
+      }
+    }
+    return expressions;
+  }
+
+  private boolean addFormula( int valueType, int targetType ) {
+    Expression expression = comparison();
+    skipSpaces();
+    if ( expression == null || position < formula.length() || !expression.exact
+      || !isResultType( expression.type, valueType ) || !isResultType( expression.type, targetType ) ) {
+      return false;
+    }
+
+    int resultIndex = compiler.getRowMeta().size() - 1;
+    if ( references.isEmpty() ) {
+      compiler.setObject( resultIndex, expression.code );
+    } else {
+      StringBuilder nullCondition = new StringBuilder();
+      for ( int index : references ) {
+        nullCondition.append( nullCondition.length() > 0 ? " || " : "" ).append( compiler.isNull( index ) );
+      }
+      compiler.setObject( resultIndex, "(" + nullCondition + ") ? " + compiler.addConstant( FALLBACK )
+        + " : (Object) " + expression.code );
+    }
+    return true;
+  }
+
+  private static boolean isResultType( int type, int valueType ) {
+    switch ( type ) {
+      case NUMBER:
+        return valueType == ValueMetaInterface.TYPE_NUMBER || valueType == ValueMetaInterface.TYPE_INTEGER;
+      case TEXT:
+        return valueType == ValueMetaInterface.TYPE_STRING;
+      default:
+        return valueType == ValueMetaInterface.TYPE_BOOLEAN;
+    }
+  }
+
+  private Expression comparison() {
+    Expression left = concatenation();
+    if ( left == null ) {
+      return null;
+    }
+    String operator = null;
+    for ( String candidate : new String[] { "<>", "<=", ">=", "=", "<", ">" } ) {
+      if ( next( candidate ) ) {
+        operator = candidate;
+        break;
+      }
+    }
+    if ( operator == null ) {
+      return left;
+    }
+    Expression right = concatenation();
+    if ( right == null || left.type != NUMBER || right.type != NUMBER ) {
+      return null;
+    }
+    String javaOperator = operator.equals( "=" ) ? "==" : operator.equals( "<>" ) ? "!=" : operator;
+    return new Expression( LOGICAL, "Boolean.valueOf(" + left.code + ".compareTo(" + right.code + ") "
+      + javaOperator + " 0)" );
+  }
+
+  private Expression concatenation() {
+    Expression left = additive();
+    while ( left != null && next( "&" ) ) {
+      Expression right = additive();
+      if ( right == null || left.type != TEXT || right.type != TEXT ) {
+        return null;
+      }
+      left = new Expression( TEXT, "(" + left.code + " + " + right.code + ")" );
+    }
+    return left;
+  }
+
+  private Expression additive() {
+    Expression left = multiplicative();
+    while ( left != null ) {
+      String method = next( "+" ) ? "add" : next( "-" ) ? "subtract" : null;
+      if ( method == null ) {
+        break;
+      }
+      left = numeric( left, method, multiplicative() );
+    }
+    return left;
+  }
+
+  private Expression multiplicative() {
+    Expression left = unary();
+    while ( left != null && next( "*" ) ) {
+      left = numeric( left, "multiply", unary() );
+    }
+    return left;
+  }
+
+  private static Expression numeric( Expression left, String method, Expression right ) {
+    if ( right == null || left.type != NUMBER || right.type != NUMBER ) {
+      return null;
+    }
+    return new Expression( NUMBER, left.code + "." + method + "(" + right.code + ")" );
+  }
+
+  private Expression unary() {
+    String method = next( "-" ) ? ".negate()" : next( "+" ) ? "" : null;
+    if ( method == null ) {
+      return primary();
+    }
+    Expression value = unary();
+    return value == null || value.type != NUMBER ? null : new Expression( NUMBER, value.code + method, false );
+  }
+
+  private Expression primary() {
+    skipSpaces();
+    if ( position >= formula.length() ) {
+      return null;
+    }
+    char c = formula.charAt( position );
+    if ( c == '(' ) {
+      position++;
+      Expression expression = comparison();
+      return expression != null && next( ")" ) ? expression : null;
+    }
+    if ( c == '"' ) {
+      return text();
+    }
+    if ( Character.isDigit( c ) || c == '.' ) {
+      return number();
+    }
+    if ( c == '[' ) {
+      return reference();
+    }
+    if ( Character.isLetter( c ) ) {
+      return function();
+    }
+    return null;
+  }
+
+  private Expression text() {
+    StringBuilder text = new StringBuilder();
+    position++;
+    while ( position < formula.length() ) {
+      char c = formula.charAt( position++ );
+      if ( c == '"' ) {
+        if ( position < formula.length() && formula.charAt( position ) == '"' ) {
+          position++;
+        } else {
+          return new Expression( TEXT, "((String) " + compiler.addConstant( text.toString() ) + ")" );
+        }
+      }
+      text.append( c );
+    }
+    return null;
+  }
+
+  private Expression number() {
+    int start = position;
+    while ( position < formula.length() && ( Character.isDigit( formula.charAt( position ) )
+      || formula.charAt( position ) == '.' ) ) {
+      position++;
+    }
+    if ( position < formula.length() && Character.toUpperCase( formula.charAt( position ) ) == 'E' ) {
+      position++;
+      if ( position < formula.length() && ( formula.charAt( position ) == '+' || formula.charAt( position ) == '-' ) ) {
+        position++;
+      }
+      while ( position < formula.length() && Character.isDigit( formula.charAt( position ) ) ) {
+        position++;
+      }
+    }
+    try {
+      BigDecimal number = new BigDecimal( formula.substring( start, position ) );
+      return new Expression( NUMBER, "((java.math.BigDecimal) " + compiler.addConstant( number ) + ")" );
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * A field is read like RowForumulaContext does. Numbers become BigDecimals like libformula converts them for a
+   * calculation, the result of a formula that passes the value on as it is would have another class.
+   */
+  private Expression reference() {
+    int end = formula.indexOf( ']', position );
+    if ( end < 0 ) {
+      return null;
+    }
+    String name = formula.substring( position + 1, end );
+    position = end + 1;
+    int index = compiler.getRowMeta().indexOfValue( name );
+    if ( index < 0 ) {
+      return null;
+    }
+    references.add( index );
+
+    switch ( compiler.getRowMeta().getValueMeta( index ).getType() ) {
+      case ValueMetaInterface.TYPE_NUMBER:
+        return new Expression( NUMBER, "java.math.BigDecimal.valueOf(" + compiler.getNumber( index ) + ")", false );
+      case ValueMetaInterface.TYPE_INTEGER:
+        return new Expression( NUMBER, "java.math.BigDecimal.valueOf(" + compiler.getInteger( index ) + ")", false );
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return new Expression( NUMBER, "((java.math.BigDecimal) " + compiler.getObject( index ) + ")" );
+      case ValueMetaInterface.TYPE_STRING:
+        // trimmed like getString() does
+        return new Expression( TEXT, "valueMetas[" + index + "].getString(row[" + index + "])" );
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return new Expression( LOGICAL, "((Boolean) " + compiler.getObject( index ) + ")" );
+      default:
+        return null;
+    }
+  }
+
+  private Expression function() {
+    int start = position;
+    while ( position < formula.length() && Character.isLetter( formula.charAt( position ) ) ) {
+      position++;
+    }
+    String name = formula.substring( start, position );
+    if ( !next( "(" ) ) {
+      return null;
+    }
+    List<Expression> arguments = new ArrayList<Expression>();
+    if ( !next( ")" ) ) {
+      do {
+        Expression argument = comparison();
+        if ( argument == null ) {
+          return null;
+        }
+        arguments.add( argument );
+      } while ( next( ";" ) );
+      if ( !next( ")" ) ) {
+        return null;
+      }
+    }
+
+    if ( ( name.equals( "TRUE" ) || name.equals( "FALSE" ) ) && arguments.isEmpty() ) {
+      return new Expression( LOGICAL, "Boolean." + name );
+    }
+    for ( int i = name.equals( "IF" ) ? 1 : 0; i < arguments.size(); i++ ) {
+      if ( arguments.get( i ).type != LOGICAL && !name.equals( "IF" ) ) {
+        return null;
+      }
+    }
+    if ( name.equals( "NOT" ) && arguments.size() == 1 ) {
+      return new Expression( LOGICAL, "Boolean.valueOf(!" + arguments.get( 0 ).code + ".booleanValue())" );
+    }
+    if ( ( name.equals( "AND" ) || name.equals( "OR" ) ) && !arguments.isEmpty() ) {
+      StringBuilder code = new StringBuilder( "Boolean.valueOf(" );
+      for ( int i = 0; i < arguments.size(); i++ ) {
+        code.append( i > 0 ? ( name.equals( "AND" ) ? " && " : " || " ) : "" ).append( arguments.get( i ).code )
+          .append( ".booleanValue()" );
+      }
+      return new Expression( LOGICAL, code.append( ")" ).toString() );
+    }
+    if ( name.equals( "IF" ) && arguments.size() == 3 && arguments.get( 0 ).type == LOGICAL
+      && arguments.get( 1 ).type == arguments.get( 2 ).type ) {
+      return new Expression( arguments.get( 1 ).type, "(" + arguments.get( 0 ).code + ".booleanValue() ? "
+        + arguments.get( 1 ).code + " : " + arguments.get( 2 ).code + ")",
+        arguments.get( 1 ).exact && arguments.get( 2 ).exact );
+    }
+    return null;
+  }
+
+  /**
+   * Skips the spaces and the given token if it is next.
+   */
+  private boolean next( String token ) {
+    skipSpaces();
+    if ( formula.startsWith( token, position ) ) {
+      position += token.length();
+      return true;
+    }
+    return false;
+  }
+
+  private void skipSpaces() {
+    while ( position < formula.length() && Character.isWhitespace( formula.charAt( position ) ) ) {
+      position++;
+    }
+  }
+
+  private static class Expression {
+    private final int type;
+    private final String code;
+    /** false if libformula gives a value of another class, e.g. a Double field value instead of a BigDecimal */
+    private final boolean exact;
+
+    Expression( int type, String code ) {
+      this( type, code, true );
+    }
+
+    Expression( int type, String code, boolean exact ) {
+      this.type = type;
+      this.code = code;
+      this.exact = exact;
+    }
+  }
+}
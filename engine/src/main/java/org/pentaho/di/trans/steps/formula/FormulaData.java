@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.formula;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.expression.CompiledRowExpression;
 import org.pentaho.reporting.libraries.formula.EvaluationException;
 import org.pentaho.reporting.libraries.formula.Formula;
 import org.pentaho.reporting.libraries.formula.parser.FormulaParser;
@@ -50,6 +51,8 @@ public class FormulaData extends BaseStepData implements StepDataInterface {
   public RowMetaInterface outputRowMeta;
   public int[] returnType;
   public int[] replaceIndex;
+  /** The compiled formulas, null for a formula that is evaluated by libformula */
+  public CompiledRowExpression[] expressions;
 
   public FormulaData() {
     super();
@@ -60,4 +63,22 @@ public class FormulaData extends BaseStepData implements StepDataInterface {
     result.initialize( context );
     return result;
   }
+
+  /**
+   * Evaluates a formula on the row of the context, with its compiled expression if there is one.
+   *
+   * @param rowData
+   *          the row of the context, with one slot after the output row for the result of a compiled formula
+   */
+  public Object evaluate( int i, Object[] rowData ) throws Exception {
+    if ( expressions != null && expressions[i] != null ) {
+      expressions[i].calculate( rowData );
+      Object result = rowData[outputRowMeta.size()];
+      rowData[outputRowMeta.size()] = null;
+      if ( result != FormulaCompiler.FALLBACK ) {
+        return result;
+      }
+    }
+    return formulas[i].evaluate();
+  }
 }
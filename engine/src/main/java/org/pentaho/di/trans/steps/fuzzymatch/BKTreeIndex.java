@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A BK-tree over the Levenshtein distance of the lookup values. The distance is a metric, so the triangle inequality
+ * lets a search skip every subtree that can't hold a value within the maximal distance of the main stream value.
+ */
+public class BKTreeIndex extends FuzzyMatchIndex {
+
+  private final boolean caseSensitive;
+  private final int maximalDistance;
+  private Node root;
+
+  private static class Node {
+    final String key;
+    final FuzzyMatchIndex.IntList ids = new FuzzyMatchIndex.IntList();
+    /** Children by their distance to this node */
+    Map<Integer, Node> children;
+
+    Node( String key ) {
+      this.key = key;
+    }
+  }
+
+  public BKTreeIndex( Object[][] rows, boolean caseSensitive, int maximalDistance ) {
+    super( rows );
+    this.caseSensitive = caseSensitive;
+    this.maximalDistance = maximalDistance;
+    for ( int id = 0; id < rows.length; id++ ) {
+      add( normalize( getKey( id ) ), id );
+    }
+  }
+
+  private String normalize( String value ) {
+    return caseSensitive ? value : value.toLowerCase();
+  }
+
+  private void add( String key, int id ) {
+    if ( root == null ) {
+      root = new Node( key );
+      root.ids.add( id );
+      return;
+    }
+    Node node = root;
+    while ( true ) {
+      int distance = StringUtils.getLevenshteinDistance( node.key, key );
+      if ( distance == 0 ) {
+        node.ids.add( id );
+        return;
+      }
+      if ( node.children == null ) {
+        node.children = new HashMap<Integer, Node>();
+      }
+      Node child = node.children.get( distance );
+      if ( child == null ) {
+        child = new Node( key );
+        child.ids.add( id );
+        node.children.put( distance, child );
+        return;
+      }
+      node = child;
+    }
+  }
+
+  @Override
+  public List<Object[]> getCandidates( String lookupValue ) {
+    if ( root == null || maximalDistance < 0 ) {
+      return Collections.emptyList();
+    }
+    String key = normalize( lookupValue );
+    FuzzyMatchIndex.IntList candidates = new FuzzyMatchIndex.IntList();
+
+    ArrayDeque<Node> stack = new ArrayDeque<Node>();
+    stack.push( root );
+    while ( !stack.isEmpty() ) {
+      Node node = stack.pop();
+      int distance = StringUtils.getLevenshteinDistance( node.key, key );
+      if ( distance <= maximalDistance ) {
+        candidates.addAll( node.ids.values, node.ids.size );
+      }
+      if ( node.children != null ) {
+        for ( Map.Entry<Integer, Node> child : node.children.entrySet() ) {
+          if ( Math.abs( child.getKey() - distance ) <= maximalDistance ) {
+            stack.push( child.getValue() );
+          }
+        }
+      }
+    }
+    return getRows( candidates.values, candidates.size );
+  }
+}
@@ -22,7 +22,11 @@
 
 package org.pentaho.di.trans.steps.fuzzymatch;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.commons.codec.language.DoubleMetaphone;
 import org.apache.commons.codec.language.Metaphone;
@@ -39,6 +43,7 @@ import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.ExecutorUtil;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -61,6 +66,9 @@ import com.wcohen.ss.NeedlemanWunsch;
 public class FuzzyMatch extends BaseStep implements StepInterface {
   private static Class<?> PKG = FuzzyMatchMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** The maximum number of rows compared in parallel at once */
+  private static final int PARALLEL_BATCH_SIZE = 1000;
+
   private FuzzyMatchMeta meta;
   private FuzzyMatchData data;
 
@@ -172,26 +180,19 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
   private Object[] lookupValues( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     if ( first ) {
       first = false;
-
-      data.outputRowMeta = getInputRowMeta().clone();
-      meta.getFields(
-        data.outputRowMeta, getStepname(), new RowMetaInterface[] { data.infoMeta }, null, this, repository,
-        metaStore );
-
-      // Check lookup field
-      data.indexOfMainField = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getMainStreamField() ) );
-      if ( data.indexOfMainField < 0 ) {
-        // The field is unreachable !
-        throw new KettleException( BaseMessages.getString( PKG, "FuzzyMatch.Exception.CouldnotFindMainField", meta
-          .getMainStreamField() ) );
-      }
+      prepareLookup();
     }
     Object[] add = null;
     if ( row[ data.indexOfMainField ] == null ) {
       add = buildEmptyRow();
     } else {
+      if ( isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "FuzzyMatch.Log.ReadingMainStreamRow", getInputRowMeta().getString(
+          row ) ) );
+      }
       try {
-        add = getFromCache( row );
+        buildIndex();
+        add = getFromCache( getLookupValue( row ) );
       } catch ( Exception e ) {
         throw new KettleStepException( e );
       }
@@ -199,6 +200,47 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     return RowDataUtil.addRowData( row, rowMeta.size(), add );
   }
 
+  private void prepareLookup() throws KettleException {
+    data.outputRowMeta = getInputRowMeta().clone();
+    meta.getFields(
+      data.outputRowMeta, getStepname(), new RowMetaInterface[] { data.infoMeta }, null, this, repository,
+      metaStore );
+
+    // Check lookup field
+    data.indexOfMainField = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getMainStreamField() ) );
+    if ( data.indexOfMainField < 0 ) {
+      // The field is unreachable !
+      throw new KettleException( BaseMessages.getString( PKG, "FuzzyMatch.Exception.CouldnotFindMainField", meta
+        .getMainStreamField() ) );
+    }
+  }
+
+  /**
+   * Indexes the lookup values the first time they are needed.
+   */
+  private void buildIndex() {
+    if ( data.index == null ) {
+      data.index =
+        FuzzyMatchIndex.create( meta.getAlgorithmType(), data.look, meta.isCaseSensitive(), data.maximalDistance,
+          data.minimalSimilarity );
+    }
+  }
+
+  /**
+   * @return the main stream value the way the algorithm compares it
+   */
+  private String getLookupValue( Object[] row ) throws KettleValueException {
+    switch ( meta.getAlgorithmType() ) {
+      case FuzzyMatchMeta.OPERATION_TYPE_LEVENSHTEIN:
+      case FuzzyMatchMeta.OPERATION_TYPE_DAMERAU_LEVENSHTEIN:
+      case FuzzyMatchMeta.OPERATION_TYPE_NEEDLEMAN_WUNSH:
+        return getInputRowMeta().getString( row, data.indexOfMainField );
+      default:
+        Object o = row[data.indexOfMainField];
+        return o == null ? "" : (String) o;
+    }
+  }
+
   private void addToCache( Object[] value ) throws KettleException {
     try {
       data.look.add( value );
@@ -208,28 +250,28 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     }
   }
 
-  private Object[] getFromCache( Object[] keyRow ) throws KettleValueException {
-    if ( isDebug() ) {
-      logDebug( BaseMessages.getString( PKG, "FuzzyMatch.Log.ReadingMainStreamRow", getInputRowMeta().getString(
-        keyRow ) ) );
-    }
+  /**
+   * Compares the main stream value with the lookup values the index returns. Only reads the step data, so it can run
+   * on several threads at the same time.
+   */
+  private Object[] getFromCache( String lookupValue ) {
     Object[] retval = null;
     switch ( meta.getAlgorithmType() ) {
       case FuzzyMatchMeta.OPERATION_TYPE_LEVENSHTEIN:
       case FuzzyMatchMeta.OPERATION_TYPE_DAMERAU_LEVENSHTEIN:
       case FuzzyMatchMeta.OPERATION_TYPE_NEEDLEMAN_WUNSH:
-        retval = doDistance( keyRow );
+        retval = doDistance( lookupValue );
         break;
       case FuzzyMatchMeta.OPERATION_TYPE_DOUBLE_METAPHONE:
       case FuzzyMatchMeta.OPERATION_TYPE_METAPHONE:
       case FuzzyMatchMeta.OPERATION_TYPE_SOUNDEX:
       case FuzzyMatchMeta.OPERATION_TYPE_REFINED_SOUNDEX:
-        retval = doPhonetic( keyRow );
+        retval = doPhonetic( lookupValue );
         break;
       case FuzzyMatchMeta.OPERATION_TYPE_JARO:
       case FuzzyMatchMeta.OPERATION_TYPE_JARO_WINKLER:
       case FuzzyMatchMeta.OPERATION_TYPE_PAIR_SIMILARITY:
-        retval = doSimilarity( keyRow );
+        retval = doSimilarity( lookupValue );
         break;
       default:
 
@@ -239,29 +281,25 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     return retval;
   }
 
-  private Object[] doDistance( Object[] row ) throws KettleValueException {
+  private Object[] doDistance( String lookupvalue ) {
     // Reserve room
     Object[] rowData = buildEmptyRow();
 
-    Iterator<Object[]> it = data.look.iterator();
-
     long distance = -1;
 
-    // Object o=row[data.indexOfMainField];
-    String lookupvalue = getInputRowMeta().getString( row, data.indexOfMainField );
+    String uselookupvalue = lookupvalue;
+    if ( !meta.isCaseSensitive() ) {
+      uselookupvalue = lookupvalue.toLowerCase();
+    }
 
-    while ( it.hasNext() ) {
-      // Get cached row data
-      Object[] cachedData = it.next();
+    for ( Object[] cachedData : data.index.getCandidates( lookupvalue ) ) {
       // Key value is the first value
       String cacheValue = (String) cachedData[0];
 
       int cdistance = -1;
       String usecacheValue = cacheValue;
-      String uselookupvalue = lookupvalue;
       if ( !meta.isCaseSensitive() ) {
         usecacheValue = cacheValue.toLowerCase();
-        uselookupvalue = lookupvalue.toLowerCase();
       }
 
       switch ( meta.getAlgorithmType() ) {
@@ -311,42 +349,31 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     return rowData;
   }
 
-  private Object[] doPhonetic( Object[] row ) {
+  private Object[] doPhonetic( String lookupvalue ) {
     // Reserve room
     Object[] rowData = buildEmptyRow();
 
-    Iterator<Object[]> it = data.look.iterator();
-
-    Object o = row[data.indexOfMainField];
-    String lookupvalue = (String) o;
-
     String lookupValueMF = getEncodedMF( lookupvalue, meta.getAlgorithmType() );
 
-    while ( it.hasNext() ) {
-      // Get cached row data
-      Object[] cachedData = it.next();
+    // The index only returns the values with the same code
+    for ( Object[] cachedData : data.index.getCandidates( lookupvalue ) ) {
       // Key value is the first value
       String cacheValue = (String) cachedData[0];
 
-      String cacheValueMF = getEncodedMF( cacheValue, meta.getAlgorithmType() );
-
-      if ( lookupValueMF.equals( cacheValueMF ) ) {
-
-        // Add match value
-        int index = 0;
-        rowData[index++] = cacheValue;
+      // Add match value
+      int index = 0;
+      rowData[index++] = cacheValue;
 
-        // Add metric value?
-        if ( data.addValueFieldName ) {
-          rowData[index++] = cacheValueMF;
-        }
-        // Add additional return values?
-        if ( data.addAdditionalFields ) {
-          for ( int i = 0; i < meta.getValue().length; i++ ) {
-            int nf = i + index;
-            int nr = i + 1;
-            rowData[nf] = cachedData[nr];
-          }
+      // Add metric value?
+      if ( data.addValueFieldName ) {
+        rowData[index++] = lookupValueMF;
+      }
+      // Add additional return values?
+      if ( data.addAdditionalFields ) {
+        for ( int i = 0; i < meta.getValue().length; i++ ) {
+          int nf = i + index;
+          int nr = i + 1;
+          rowData[nf] = cachedData[nr];
         }
       }
     }
@@ -354,7 +381,7 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     return rowData;
   }
 
-  private String getEncodedMF( String value, Integer algorithmType ) {
+  static String getEncodedMF( String value, Integer algorithmType ) {
     String encodedValueMF = "";
     switch ( algorithmType ) {
       case FuzzyMatchMeta.OPERATION_TYPE_METAPHONE:
@@ -375,22 +402,14 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     return encodedValueMF;
   }
 
-  private Object[] doSimilarity( Object[] row ) {
+  private Object[] doSimilarity( String lookupvalue ) {
 
     // Reserve room
     Object[] rowData = buildEmptyRow();
-    // prepare to read from cache ...
-    Iterator<Object[]> it = data.look.iterator();
     double similarity = 0;
 
-    // get current value from main stream
-    Object o = row[data.indexOfMainField];
-
-    String lookupvalue = o == null ? "" : (String) o;
-
-    while ( it.hasNext() ) {
-      // Get cached row data
-      Object[] cachedData = it.next();
+    // prepare to read from the index ...
+    for ( Object[] cachedData : data.index.getCandidates( lookupvalue ) ) {
       // Key value is the first value
       String cacheValue = (String) cachedData[0];
 
@@ -485,6 +504,11 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
       return false;
     }
 
+    if ( data.nrThreads > 1 && !first && rowsetInputSize() > 0 ) {
+      // More rows are waiting: compare them in parallel
+      return processRows( r );
+    }
+
     try {
 
       // Do the actual lookup in the hastable.
@@ -501,29 +525,134 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
         }
       }
     } catch ( KettleException e ) {
-      boolean sendToErrorRow = false;
-      String errorMessage = null;
+      return handleLookupError( r, e );
+    }
 
-      if ( getStepMeta().isDoingErrorHandling() ) {
-        sendToErrorRow = true;
-        errorMessage = e.toString();
-      } else {
-        logError( BaseMessages.getString( PKG, "FuzzyMatch.Log.ErrorInStepRunning" ) + e.getMessage() );
-        setErrors( 1 );
-        stopAll();
-        setOutputDone(); // signal end to receiver(s)
-        return false;
+    return true;
+  }
+
+  /**
+   * @return false if the step has to stop
+   */
+  private boolean handleLookupError( Object[] r, KettleException e ) throws KettleStepException {
+    boolean sendToErrorRow = false;
+    String errorMessage = null;
+
+    if ( getStepMeta().isDoingErrorHandling() ) {
+      sendToErrorRow = true;
+      errorMessage = e.toString();
+    } else {
+      logError( BaseMessages.getString( PKG, "FuzzyMatch.Log.ErrorInStepRunning" ) + e.getMessage() );
+      setErrors( 1 );
+      stopAll();
+      setOutputDone(); // signal end to receiver(s)
+      return false;
+    }
+    if ( sendToErrorRow ) {
+      // Simply add this row to the error row
+      putError( getInputRowMeta(), r, 1, errorMessage, meta.getMainStreamField(), "FuzzyMatch001" );
+    }
+    return true;
+  }
+
+  /**
+   * Takes the rows waiting in the input buffers along with the given row and compares them with the lookup values on
+   * several threads. The rows are sent on in their original order.
+   */
+  private boolean processRows( Object[] firstRow ) throws KettleException {
+    final List<Object[]> rows = new ArrayList<Object[]>();
+    rows.add( firstRow );
+    while ( rows.size() < PARALLEL_BATCH_SIZE && rowsetInputSize() > 0 ) {
+      Object[] r = getRow();
+      if ( r == null ) {
+        break;
+      }
+      rows.add( r );
+    }
+
+    final int size = rows.size();
+    final String[] lookupValues = new String[size];
+    final Object[][] outputRows = new Object[size][];
+    final KettleException[] errors = new KettleException[size];
+
+    // Conversions use the row metadata, which is not thread safe: do them here
+    for ( int i = 0; i < size; i++ ) {
+      Object[] row = rows.get( i );
+      if ( row[data.indexOfMainField] != null ) {
+        if ( isDebug() ) {
+          logDebug( BaseMessages.getString( PKG, "FuzzyMatch.Log.ReadingMainStreamRow", getInputRowMeta().getString(
+            row ) ) );
+        }
+        try {
+          buildIndex();
+          lookupValues[i] = getLookupValue( row );
+        } catch ( Exception e ) {
+          errors[i] = new KettleStepException( e );
+        }
+      }
+    }
+
+    final int inputRowSize = getInputRowMeta().size();
+    final int nrChunks = Math.min( data.nrThreads, size );
+    List<Future<Void>> futures = new ArrayList<Future<Void>>( nrChunks - 1 );
+    for ( int chunk = 1; chunk < nrChunks; chunk++ ) {
+      final int start = chunk;
+      futures.add( ExecutorUtil.getExecutor().submit( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          lookupChunk( rows, lookupValues, outputRows, errors, start, nrChunks, inputRowSize );
+          return null;
+        }
+      } ) );
+    }
+    lookupChunk( rows, lookupValues, outputRows, errors, 0, nrChunks, inputRowSize );
+    for ( Future<Void> future : futures ) {
+      try {
+        future.get();
+      } catch ( InterruptedException e ) {
+        throw new KettleException( e );
+      } catch ( ExecutionException e ) {
+        throw new KettleException( e.getCause() );
       }
-      if ( sendToErrorRow ) {
-        // Simply add this row to the error row
-        putError( getInputRowMeta(), r, 1, errorMessage, meta.getMainStreamField(), "FuzzyMatch001" );
+    }
+
+    for ( int i = 0; i < size; i++ ) {
+      if ( errors[i] != null ) {
+        if ( !handleLookupError( rows.get( i ), errors[i] ) ) {
+          return false;
+        }
+        continue;
       }
+      putRow( data.outputRowMeta, outputRows[i] ); // copy row to output rowset(s);
 
+      if ( checkFeedback( getLinesRead() ) ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "FuzzyMatch.Log.LineNumber" ) + getLinesRead() );
+        }
+      }
     }
 
     return true;
   }
 
+  /**
+   * Looks up every step-th row, starting at the given one.
+   */
+  private void lookupChunk( List<Object[]> rows, String[] lookupValues, Object[][] outputRows,
+    KettleException[] errors, int start, int step, int inputRowSize ) {
+    for ( int i = start; i < rows.size(); i += step ) {
+      if ( errors[i] != null ) {
+        continue;
+      }
+      try {
+        Object[] add = lookupValues[i] == null ? buildEmptyRow() : getFromCache( lookupValues[i] );
+        outputRows[i] = RowDataUtil.addRowData( rows.get( i ), inputRowSize, add );
+      } catch ( Exception e ) {
+        errors[i] = new KettleStepException( e );
+      }
+    }
+  }
+
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (FuzzyMatchMeta) smi;
     data = (FuzzyMatchData) sdi;
@@ -612,6 +741,10 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
           break;
       }
 
+      data.nrThreads =
+        Math.max( 1, Const.toInt( System.getProperty( Const.KETTLE_FUZZY_MATCH_THREADS ), Runtime.getRuntime()
+          .availableProcessors() ) );
+
       data.readLookupValues = true;
 
       return true;
@@ -623,6 +756,7 @@ public class FuzzyMatch extends BaseStep implements StepInterface {
     meta = (FuzzyMatchMeta) smi;
     data = (FuzzyMatchData) sdi;
     data.look.clear();
+    data.index = null;
     super.dispose( smi, sdi );
   }
 
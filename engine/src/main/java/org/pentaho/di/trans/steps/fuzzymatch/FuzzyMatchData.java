@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.fuzzymatch;
 
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -40,6 +41,12 @@ public class FuzzyMatchData extends BaseStepData implements StepDataInterface {
   /** used to store values in used to look up things */
   public HashSet<Object[]> look;
 
+  /** finds the lookup values to compare with, built from look the first time it's needed */
+  public FuzzyMatchIndex index;
+
+  /** the number of threads comparing rows, 1 compares on the step thread only */
+  public int nrThreads;
+
   public boolean readLookupValues;
 
   /** index of main stream field **/
@@ -69,12 +76,13 @@ public class FuzzyMatchData extends BaseStepData implements StepDataInterface {
 
   public FuzzyMatchData() {
     super();
-    this.look = new HashSet<Object[]>();
+    this.look = new LinkedHashSet<Object[]>();
     this.indexOfMainField = -1;
     this.addValueFieldName = false;
     this.valueSeparator = "";
     this.nrCachedFields = 1;
     this.addAdditionalFields = false;
+    this.nrThreads = 1;
   }
 
 }
@@ -0,0 +1,231 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Finds the lookup rows that can match a main stream value, so the step doesn't have to compare every value with every
+ * lookup row. An index never leaves out a row that passes the minimal similarity or maximal distance of the step, and
+ * it returns the candidates in the order of the lookup rows, so the step finds the same matches as a full scan.
+ *
+ * Indexes are read-only once built and can be queried from several threads at the same time.
+ */
+public abstract class FuzzyMatchIndex {
+
+  /** The cached lookup rows, the key value first */
+  protected final Object[][] rows;
+
+  protected FuzzyMatchIndex( Object[][] rows ) {
+    this.rows = rows;
+  }
+
+  /**
+   * @param lookupValue
+   *          the main stream value as the step compares it
+   * @return the lookup rows to compare with, in the order of the lookup rows
+   */
+  public abstract List<Object[]> getCandidates( String lookupValue );
+
+  public int size() {
+    return rows.length;
+  }
+
+  protected String getKey( int id ) {
+    return (String) rows[id][0];
+  }
+
+  /**
+   * @return the rows with the given ids, in the order of the lookup rows
+   */
+  protected List<Object[]> getRows( int[] ids, int nrIds ) {
+    Arrays.sort( ids, 0, nrIds );
+    return getSortedRows( ids, nrIds );
+  }
+
+  /**
+   * @return the rows with the given ids, which are in ascending order already
+   */
+  protected List<Object[]> getSortedRows( final int[] ids, final int nrIds ) {
+    if ( nrIds == 0 ) {
+      return Collections.emptyList();
+    }
+    return new AbstractList<Object[]>() {
+      @Override
+      public Object[] get( int index ) {
+        return rows[ids[index]];
+      }
+
+      @Override
+      public int size() {
+        return nrIds;
+      }
+    };
+  }
+
+  /**
+   * Creates the index that fits the algorithm. Algorithms without a usable index, and similarity thresholds that let
+   * every row through, get a full scan.
+   *
+   * @param algorithmType
+   *          one of the FuzzyMatchMeta.OPERATION_TYPE_ constants
+   * @param look
+   *          the cached lookup rows
+   */
+  public static FuzzyMatchIndex create( int algorithmType, Collection<Object[]> look, boolean caseSensitive,
+    int maximalDistance, double minimalSimilarity ) {
+    // Keep the iteration order of the cache
+    List<Object[]> list = new ArrayList<Object[]>();
+    for ( Iterator<Object[]> it = look.iterator(); it.hasNext(); ) {
+      list.add( it.next() );
+    }
+    Object[][] rows = list.toArray( new Object[list.size()][] );
+
+    switch ( algorithmType ) {
+      case FuzzyMatchMeta.OPERATION_TYPE_LEVENSHTEIN:
+        return new BKTreeIndex( rows, caseSensitive, maximalDistance );
+      case FuzzyMatchMeta.OPERATION_TYPE_DAMERAU_LEVENSHTEIN:
+        return new LengthIndex( rows, caseSensitive, maximalDistance );
+      case FuzzyMatchMeta.OPERATION_TYPE_METAPHONE:
+      case FuzzyMatchMeta.OPERATION_TYPE_DOUBLE_METAPHONE:
+      case FuzzyMatchMeta.OPERATION_TYPE_SOUNDEX:
+      case FuzzyMatchMeta.OPERATION_TYPE_REFINED_SOUNDEX:
+        return new PhoneticIndex( rows, algorithmType );
+      case FuzzyMatchMeta.OPERATION_TYPE_JARO:
+      case FuzzyMatchMeta.OPERATION_TYPE_JARO_WINKLER:
+        double minimalJaro =
+          algorithmType == FuzzyMatchMeta.OPERATION_TYPE_JARO ? minimalSimilarity : JaroIndex
+            .getMinimalJaro( minimalSimilarity );
+        return minimalJaro > 0 ? new JaroIndex( rows, minimalJaro ) : new ScanIndex( rows );
+      case FuzzyMatchMeta.OPERATION_TYPE_PAIR_SIMILARITY:
+        return minimalSimilarity > 0 ? new LetterPairIndex( rows, minimalSimilarity ) : new ScanIndex( rows );
+      default:
+        // Needleman-Wunsch isn't a metric: compare with everything
+        return new ScanIndex( rows );
+    }
+  }
+
+  /**
+   * Returns all the rows.
+   */
+  static class ScanIndex extends FuzzyMatchIndex {
+    private final List<Object[]> all;
+
+    ScanIndex( Object[][] rows ) {
+      super( rows );
+      all = Collections.unmodifiableList( Arrays.asList( rows ) );
+    }
+
+    @Override
+    public List<Object[]> getCandidates( String lookupValue ) {
+      return all;
+    }
+  }
+
+  /**
+   * Every insert, delete, substitution or transposition changes the length by one at most, so an edit distance is
+   * never smaller than the difference in length. This holds with or without case sensitivity.
+   */
+  static class LengthIndex extends FuzzyMatchIndex {
+    private final boolean caseSensitive;
+    private final int maximalDistance;
+    private final TreeMap<Integer, int[]> idsByLength;
+
+    LengthIndex( Object[][] rows, boolean caseSensitive, int maximalDistance ) {
+      super( rows );
+      this.caseSensitive = caseSensitive;
+      this.maximalDistance = maximalDistance;
+      this.idsByLength = new TreeMap<Integer, int[]>();
+
+      TreeMap<Integer, IntList> lists = new TreeMap<Integer, IntList>();
+      for ( int id = 0; id < rows.length; id++ ) {
+        int length = getLength( getKey( id ) );
+        IntList list = lists.get( length );
+        if ( list == null ) {
+          list = new IntList();
+          lists.put( length, list );
+        }
+        list.add( id );
+      }
+      for ( Integer length : lists.keySet() ) {
+        idsByLength.put( length, lists.get( length ).toArray() );
+      }
+    }
+
+    @Override
+    public List<Object[]> getCandidates( String lookupValue ) {
+      if ( maximalDistance < 0 ) {
+        return Collections.emptyList();
+      }
+      int length = getLength( lookupValue );
+      IntList candidates = new IntList();
+      int from = length - maximalDistance;
+      int to = length + maximalDistance;
+      for ( int[] ids : idsByLength.subMap( from, true, to, true ).values() ) {
+        candidates.addAll( ids, ids.length );
+      }
+      return getRows( candidates.values, candidates.size );
+    }
+
+    /**
+     * @return the length of the value as it is compared
+     */
+    private int getLength( String value ) {
+      return caseSensitive ? value.length() : value.toLowerCase().length();
+    }
+  }
+
+  /**
+   * A growable array of ints.
+   */
+  static class IntList {
+    int[] values = new int[8];
+    int size;
+
+    void add( int value ) {
+      if ( size == values.length ) {
+        values = Arrays.copyOf( values, size * 2 );
+      }
+      values[size++] = value;
+    }
+
+    void addAll( int[] ids, int length ) {
+      if ( size + length > values.length ) {
+        values = Arrays.copyOf( values, Math.max( size * 2, size + length ) );
+      }
+      System.arraycopy( ids, 0, values, size, length );
+      size += length;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf( values, size );
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Length and character filter for the Jaro and Jaro-Winkler similarities. With m matching characters the Jaro
+ * similarity of s and t is at most (m/|s| + m/|t| + 1)/3, and m can't be larger than the number of characters the
+ * values have in common. The index only returns the rows for which that bound reaches the minimal similarity.
+ * Jaro-Winkler adds at most 0.4 of the remaining distance for a common prefix, see {@link #getMinimalJaro(double)}.
+ *
+ * The bound is worked out on lower case values, which only makes it looser for case sensitive comparisons. Values that
+ * change length in lower case are always returned.
+ */
+public class JaroIndex extends FuzzyMatchIndex {
+
+  private static final double SLACK = 1e-9;
+
+  private final double minimalJaro;
+
+  /** The sorted characters of the lower case value of every row */
+  private final char[][] chars;
+  private final TreeMap<Integer, int[]> idsByLength;
+  private final int[] alwaysIds;
+
+  /**
+   * @param minimalJaro
+   *          the minimal Jaro similarity a row must be able to reach, above 0
+   */
+  public JaroIndex( Object[][] rows, double minimalJaro ) {
+    super( rows );
+    this.minimalJaro = minimalJaro;
+    this.chars = new char[rows.length][];
+
+    TreeMap<Integer, FuzzyMatchIndex.IntList> lists = new TreeMap<Integer, FuzzyMatchIndex.IntList>();
+    FuzzyMatchIndex.IntList always = new FuzzyMatchIndex.IntList();
+    for ( int id = 0; id < rows.length; id++ ) {
+      String key = getKey( id );
+      char[] sorted = sortedLowerCase( key );
+      if ( sorted == null ) {
+        always.add( id );
+        continue;
+      }
+      chars[id] = sorted;
+      FuzzyMatchIndex.IntList list = lists.get( sorted.length );
+      if ( list == null ) {
+        list = new FuzzyMatchIndex.IntList();
+        lists.put( sorted.length, list );
+      }
+      list.add( id );
+    }
+    idsByLength = new TreeMap<Integer, int[]>();
+    for ( Integer length : lists.keySet() ) {
+      idsByLength.put( length, lists.get( length ).toArray() );
+    }
+    alwaysIds = always.toArray();
+  }
+
+  /**
+   * @return the minimal Jaro similarity needed to reach the given Jaro-Winkler similarity
+   */
+  public static double getMinimalJaro( double minimalJaroWinkler ) {
+    // jw = j + l * 0.1 * ( 1 - j ) with a common prefix length l of 4 at most
+    return ( minimalJaroWinkler - 0.4 ) / 0.6;
+  }
+
+  /**
+   * @return the sorted characters of the lower case value, null if lower case changes the length
+   */
+  private static char[] sortedLowerCase( String value ) {
+    String lowerCase = value.toLowerCase();
+    if ( lowerCase.length() != value.length() ) {
+      return null;
+    }
+    char[] sorted = lowerCase.toCharArray();
+    Arrays.sort( sorted );
+    return sorted;
+  }
+
+  @Override
+  public List<Object[]> getCandidates( String lookupValue ) {
+    FuzzyMatchIndex.IntList candidates = new FuzzyMatchIndex.IntList();
+    candidates.addAll( alwaysIds, alwaysIds.length );
+
+    char[] lookup = sortedLowerCase( lookupValue );
+    if ( lookup == null ) {
+      // No bound to work with
+      for ( int[] ids : idsByLength.values() ) {
+        candidates.addAll( ids, ids.length );
+      }
+      return getRows( candidates.values, candidates.size );
+    }
+    if ( lookup.length == 0 ) {
+      // Nothing in common with anything
+      return getRows( candidates.values, candidates.size );
+    }
+
+    // m <= min( |s|, |t| ) gives the range of lengths worth looking at
+    int length = lookup.length;
+    double ratio = 3 * minimalJaro - 2;
+    int minLength = ratio > 0 ? (int) Math.floor( length * ratio - 1 ) : 1;
+    int maxLength = Integer.MAX_VALUE;
+    if ( ratio > 0 ) {
+      maxLength = (int) Math.min( Integer.MAX_VALUE, Math.ceil( length / ratio + 1 ) );
+    }
+
+    for ( int[] ids : idsByLength.subMap( Math.max( 1, minLength ), true, maxLength, true ).values() ) {
+      for ( int id : ids ) {
+        char[] other = chars[id];
+        int common = countCommon( lookup, other );
+        if ( common > 0 ) {
+          double bound = ( (double) common / length + (double) common / other.length + 1.0 ) / 3.0;
+          if ( bound >= minimalJaro - SLACK ) {
+            candidates.add( id );
+          }
+        }
+      }
+    }
+    return getRows( candidates.values, candidates.size );
+  }
+
+  /**
+   * @return the number of characters two sorted arrays have in common, counting duplicates
+   */
+  private static int countCommon( char[] a, char[] b ) {
+    int common = 0;
+    int i = 0;
+    int j = 0;
+    while ( i < a.length && j < b.length ) {
+      if ( a[i] == b[j] ) {
+        common++;
+        i++;
+        j++;
+      } else if ( a[i] < b[j] ) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return common;
+  }
+}
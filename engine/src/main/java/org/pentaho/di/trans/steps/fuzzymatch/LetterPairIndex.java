@@ -0,0 +1,164 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.util.Utils;
+
+/**
+ * An inverted index from letter pairs (q-grams of 2) to the lookup rows that contain them, for the letter pair
+ * similarity. A search counts the pairs every row shares with the main stream value, which gives the exact
+ * similarity: rows that share no pair, or too few for their number of pairs, are never compared.
+ *
+ * Only used with a minimal similarity above 0, otherwise every row is a candidate.
+ */
+public class LetterPairIndex extends FuzzyMatchIndex {
+
+  private final double minimalSimilarity;
+
+  /** The number of letter pairs of every row */
+  private final int[] nrPairs;
+  /** The rows with an empty value: they only match an empty value */
+  private final int[] emptyIds;
+  private final Map<String, Posting> postings;
+
+  /** Reusable overlap counters, one array per concurrent search */
+  private final ArrayDeque<int[]> counters = new ArrayDeque<int[]>();
+
+  private static class Posting {
+    int[] ids = new int[4];
+    int[] counts = new int[4];
+    int size;
+
+    void add( int id, int count ) {
+      if ( size == ids.length ) {
+        ids = Arrays.copyOf( ids, size * 2 );
+        counts = Arrays.copyOf( counts, size * 2 );
+      }
+      ids[size] = id;
+      counts[size] = count;
+      size++;
+    }
+  }
+
+  public LetterPairIndex( Object[][] rows, double minimalSimilarity ) {
+    super( rows );
+    this.minimalSimilarity = minimalSimilarity;
+    this.nrPairs = new int[rows.length];
+    this.postings = new HashMap<String, Posting>();
+
+    FuzzyMatchIndex.IntList empty = new FuzzyMatchIndex.IntList();
+    for ( int id = 0; id < rows.length; id++ ) {
+      String key = getKey( id );
+      if ( Utils.isEmpty( key ) ) {
+        empty.add( id );
+        continue;
+      }
+      List<String> pairs = LetterPairSimilarity.getLetterPairs( key );
+      nrPairs[id] = pairs.size();
+      for ( Map.Entry<String, Integer> pair : countPairs( pairs ).entrySet() ) {
+        Posting posting = postings.get( pair.getKey() );
+        if ( posting == null ) {
+          posting = new Posting();
+          postings.put( pair.getKey(), posting );
+        }
+        posting.add( id, pair.getValue() );
+      }
+    }
+    emptyIds = empty.toArray();
+  }
+
+  private static Map<String, Integer> countPairs( List<String> pairs ) {
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for ( String pair : pairs ) {
+      Integer count = counts.get( pair );
+      counts.put( pair, count == null ? 1 : count + 1 );
+    }
+    return counts;
+  }
+
+  @Override
+  public List<Object[]> getCandidates( String lookupValue ) {
+    if ( Utils.isEmpty( lookupValue ) ) {
+      return getSortedRows( emptyIds, emptyIds.length );
+    }
+    List<String> pairs = LetterPairSimilarity.getLetterPairs( lookupValue );
+    if ( pairs.isEmpty() ) {
+      return Collections.emptyList();
+    }
+
+    int[] overlap = borrowCounters();
+    FuzzyMatchIndex.IntList touched = new FuzzyMatchIndex.IntList();
+    for ( Map.Entry<String, Integer> pair : countPairs( pairs ).entrySet() ) {
+      Posting posting = postings.get( pair.getKey() );
+      if ( posting == null ) {
+        continue;
+      }
+      int count = pair.getValue();
+      for ( int i = 0; i < posting.size; i++ ) {
+        int id = posting.ids[i];
+        if ( overlap[id] == 0 ) {
+          touched.add( id );
+        }
+        overlap[id] += Math.min( count, posting.counts[i] );
+      }
+    }
+
+    FuzzyMatchIndex.IntList candidates = new FuzzyMatchIndex.IntList();
+    for ( int i = 0; i < touched.size; i++ ) {
+      int id = touched.values[i];
+      // Same calculation as LetterPairSimilarity.getSimiliarity()
+      double similarity = ( 2.0 * overlap[id] ) / ( nrPairs[id] + pairs.size() );
+      if ( similarity >= minimalSimilarity ) {
+        candidates.add( id );
+      }
+      overlap[id] = 0;
+    }
+    // All counters are back to 0
+    returnCounters( overlap );
+
+    return getRows( candidates.values, candidates.size );
+  }
+
+  private int[] borrowCounters() {
+    synchronized ( counters ) {
+      int[] overlap = counters.poll();
+      if ( overlap != null ) {
+        return overlap;
+      }
+    }
+    return new int[rows.length];
+  }
+
+  private void returnCounters( int[] overlap ) {
+    synchronized ( counters ) {
+      counters.push( overlap );
+    }
+  }
+}
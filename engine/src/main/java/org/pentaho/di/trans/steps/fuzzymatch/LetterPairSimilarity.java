@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.fuzzymatch;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.pentaho.di.core.util.Utils;
 
@@ -75,6 +76,12 @@ public class LetterPairSimilarity {
     return allPairs;
   }
 
+  /** @return the letter pairs the similarity of the string is calculated on */
+
+  static List<String> getLetterPairs( String str ) {
+    return wordLetterPairs( str.toUpperCase() );
+  }
+
   /** @return lexical similarity value in the range [0,1] */
 
   public static double getSimiliarity( String str1, String str2 ) {
@@ -0,0 +1,72 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buckets the lookup rows by the phonetic code of their value. The codes are calculated once, when the index is
+ * built, and a main stream value only has to be compared with the rows in the bucket of its own code.
+ */
+public class PhoneticIndex extends FuzzyMatchIndex {
+
+  private final int algorithmType;
+  private final Map<String, int[]> idsByCode;
+
+  public PhoneticIndex( Object[][] rows, int algorithmType ) {
+    super( rows );
+    this.algorithmType = algorithmType;
+
+    Map<String, FuzzyMatchIndex.IntList> lists = new HashMap<String, FuzzyMatchIndex.IntList>();
+    for ( int id = 0; id < rows.length; id++ ) {
+      String code = FuzzyMatch.getEncodedMF( getKey( id ), algorithmType );
+      if ( code == null ) {
+        // Never equal to the code of a main stream value
+        continue;
+      }
+      FuzzyMatchIndex.IntList list = lists.get( code );
+      if ( list == null ) {
+        list = new FuzzyMatchIndex.IntList();
+        lists.put( code, list );
+      }
+      list.add( id );
+    }
+    idsByCode = new HashMap<String, int[]>( lists.size() * 2 );
+    for ( Map.Entry<String, FuzzyMatchIndex.IntList> entry : lists.entrySet() ) {
+      idsByCode.put( entry.getKey(), entry.getValue().toArray() );
+    }
+  }
+
+  @Override
+  public List<Object[]> getCandidates( String lookupValue ) {
+    String code = FuzzyMatch.getEncodedMF( lookupValue, algorithmType );
+    int[] ids = code == null ? null : idsByCode.get( code );
+    if ( ids == null ) {
+      return Collections.emptyList();
+    }
+    return getSortedRows( ids, ids.length );
+  }
+}
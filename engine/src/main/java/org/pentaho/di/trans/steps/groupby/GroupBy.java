@@ -22,20 +22,12 @@
 
 package org.pentaho.di.trans.steps.groupby;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
-import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
@@ -53,7 +45,6 @@ import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaNone;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
-import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -758,104 +749,77 @@ public class GroupBy extends BaseStep implements StepInterface {
   }
 
   // Method is defined as package-protected in order to be accessible by unit tests
-  void addToBuffer( Object[] row ) throws KettleFileException {
+  void addToBuffer( Object[] row ) throws KettleException {
     data.bufferList.add( row );
-    if ( data.bufferList.size() > 5000 && data.rowsOnFile == 0 ) {
-      String pathToTmp = environmentSubstitute( getMeta().getDirectory() );
-      try {
-        File ioFile = new File( pathToTmp );
-        if ( !ioFile.exists() ) {
-          // try to resolve as Apache VFS file
-          pathToTmp = retrieveVfsPath( pathToTmp );
+    boolean memoryAvailable = data.memory.add( 1 );
+    if ( data.bufferList.size() > 5000 || !memoryAvailable ) {
+      if ( data.spillFile == null ) {
+        try {
+          data.spillFile = getSpillManager().createFile( getMeta().getPrefix(),
+            environmentSubstitute( getMeta().getDirectory() ), getTransMeta(), data.inputRowMeta, false );
+        } catch ( KettleException e ) {
+          throw new KettleFileException(
+            BaseMessages.getString( PKG, "GroupBy.Exception.UnableToCreateTemporaryFile" ), e );
         }
-        data.tempFile = File.createTempFile( getMeta().getPrefix(), ".tmp", new File( pathToTmp ) );
-        data.fosToTempFile = new FileOutputStream( data.tempFile );
-        data.dosToTempFile = new DataOutputStream( data.fosToTempFile );
-        data.firstRead = true;
-      } catch ( IOException e ) {
-        throw new KettleFileException( BaseMessages.getString( PKG, "GroupBy.Exception.UnableToCreateTemporaryFile" ),
-            e );
       }
-      // OK, save the oldest rows to disk!
-      Object[] oldest = data.bufferList.get( 0 );
-      data.inputRowMeta.writeData( data.dosToTempFile, oldest );
-      data.bufferList.remove( 0 );
-      data.rowsOnFile++;
+      // OK, save the oldest rows to disk, the file is read back before the rows that are still in memory
+      for ( Object[] oldest : data.bufferList ) {
+        data.spillFile.add( oldest );
+      }
+      data.memory.release( data.bufferList.size() );
+      data.bufferList.clear();
     }
   }
 
-  // Method is defined as public in order to be accessible by unit tests
-  public String retrieveVfsPath( String pathToTmp ) throws KettleFileException {
-    FileObject vfsFile = KettleVFS.getFileObject( pathToTmp );
-    String path = vfsFile.getName().getPath();
-    return path;
-  }
-
-  private Object[] getRowFromBuffer() throws KettleFileException {
-    if ( data.rowsOnFile > 0 ) {
-      if ( data.firstRead ) {
-        // Open the inputstream first...
+  private Object[] getRowFromBuffer() throws KettleException {
+    if ( data.spillFile != null ) {
+      if ( data.spillReader == null ) {
+        // Open the file first...
         try {
-          data.fisToTmpFile = new FileInputStream( data.tempFile );
-          data.disToTmpFile = new DataInputStream( data.fisToTmpFile );
-          data.firstRead = false;
-        } catch ( IOException e ) {
+          data.spillReader = data.spillFile.openReader();
+        } catch ( KettleException e ) {
           throw new KettleFileException( BaseMessages.getString(
               PKG, "GroupBy.Exception.UnableToReadBackRowFromTemporaryFile" ), e );
         }
       }
 
       // Read one row from the file!
-      Object[] row;
-      try {
-        row = data.inputRowMeta.readData( data.disToTmpFile );
-      } catch ( SocketTimeoutException e ) {
-        throw new KettleFileException( e ); // Shouldn't happen on files
+      Object[] row = data.spillReader.next();
+      if ( row != null ) {
+        return row;
       }
-      data.rowsOnFile--;
+    }
 
-      return row;
+    if ( data.bufferList.size() > 0 ) {
+      data.memory.release( 1 );
+      return data.bufferList.remove( 0 );
     } else {
-      if ( data.bufferList.size() > 0 ) {
-        Object[] row = data.bufferList.get( 0 );
-        data.bufferList.remove( 0 );
-        return row;
-      } else {
-        return null; // Nothing left!
-      }
+      return null; // Nothing left!
     }
   }
 
-  private void closeOutput() throws KettleFileException {
-    try {
-      if ( data.dosToTempFile != null ) {
-        data.dosToTempFile.close();
-        data.dosToTempFile = null;
-      }
-      if ( data.fosToTempFile != null ) {
-        data.fosToTempFile.close();
-        data.fosToTempFile = null;
-      }
-      data.firstRead = true;
-    } catch ( IOException e ) {
-      throw new KettleFileException(
-          BaseMessages.getString( PKG, "GroupBy.Exception.UnableToCloseInputStream", data.tempFile.getPath() ), e );
+  private void closeOutput() throws KettleException {
+    if ( data.spillFile != null ) {
+      data.spillFile.finish();
     }
   }
 
-  private void closeInput() throws KettleFileException {
-    try {
-      if ( data.fisToTmpFile != null ) {
-        data.fisToTmpFile.close();
-        data.fisToTmpFile = null;
-      }
-      if ( data.disToTmpFile != null ) {
-        data.disToTmpFile.close();
-        data.disToTmpFile = null;
+  private void closeInput() {
+    if ( data.spillReader != null ) {
+      data.spillReader.close();
+      data.spillReader = null;
+    }
+    // The rows of the next group go to a new file
+    deleteTempFile();
+  }
+
+  private void deleteTempFile() {
+    if ( data.spillFile != null ) {
+      if ( !data.spillFile.delete() && log.isDetailed() ) {
+        log.logDetailed(
+            BaseMessages.getString( PKG, "GroupBy.Exception.UnableToDeleteTemporaryFile", data.spillFile.toString() ) );
       }
-    } catch ( IOException e ) {
-      throw new KettleFileException(
-          BaseMessages.getString( PKG, "GroupBy.Exception.UnableToCloseInputStream", data.tempFile.getPath() ), e );
+      data.spillFile = null;
     }
   }
 
@@ -866,8 +830,7 @@ public class GroupBy extends BaseStep implements StepInterface {
 
     if ( super.init( smi, sdi ) ) {
       data.bufferList = new ArrayList<>();
-
-      data.rowsOnFile = 0;
+      data.memory = getSpillManager().openAccount();
 
       return true;
     }
@@ -876,20 +839,9 @@ public class GroupBy extends BaseStep implements StepInterface {
 
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
-    if ( data.tempFile != null ) {
-      try {
-        closeInput();
-        closeOutput();
-      } catch ( KettleFileException e ) {
-        log.logError( e.getLocalizedMessage() );
-      }
-
-      boolean tempFileDeleted = data.tempFile.delete();
-
-      if ( !tempFileDeleted && log.isDetailed() ) {
-        log.logDetailed(
-            BaseMessages.getString( PKG, "GroupBy.Exception.UnableToDeleteTemporaryFile", data.tempFile.getPath() ) );
-      }
+    closeInput();
+    if ( data.memory != null ) {
+      data.memory.release();
     }
 
     super.dispose( smi, sdi );
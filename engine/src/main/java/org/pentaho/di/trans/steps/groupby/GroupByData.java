@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,17 +22,15 @@
 
 package org.pentaho.di.trans.steps.groupby;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.spill.SpillFile;
+import org.pentaho.di.core.spill.SpillManager;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -64,18 +62,13 @@ public class GroupByData extends BaseStepData implements StepDataInterface {
 
   public ArrayList<Object[]> bufferList;
 
-  public File tempFile;
-
-  public FileOutputStream fosToTempFile;
-
-  public DataOutputStream dosToTempFile;
-
-  public int rowsOnFile;
-
-  public boolean firstRead;
+  /**
+   * The oldest rows of the group that didn't fit in the buffer, null while the group fits in memory
+   */
+  public SpillFile spillFile;
+  public SpillReader spillReader;
 
-  public FileInputStream fisToTmpFile;
-  public DataInputStream disToTmpFile;
+  public SpillManager.MemoryAccount memory;
 
   public Object[] groupResult;
 
@@ -523,6 +523,11 @@ public class IfNullMeta extends BaseStepMeta implements StepMetaInterface {
     return new IfNullData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   public boolean supportsErrorHandling() {
     return true;
   }
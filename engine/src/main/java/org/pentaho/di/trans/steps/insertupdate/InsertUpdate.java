@@ -28,6 +28,7 @@ import java.util.List;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.database.BatchUpsert;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleDatabaseException;
@@ -184,6 +185,9 @@ public class InsertUpdate extends BaseStep implements StepInterface {
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) {
       // no more input to be expected...
+      if ( data.batchUpsert != null ) {
+        writeBatch();
+      }
 
       setOutputDone();
       return false;
@@ -261,8 +265,6 @@ public class InsertUpdate extends BaseStep implements StepInterface {
         }
       }
 
-      setLookup( getInputRowMeta() );
-
       data.insertRowMeta = new RowMeta();
 
       // Insert the update fields: just names. Type doesn't matter!
@@ -280,21 +282,40 @@ public class InsertUpdate extends BaseStep implements StepInterface {
             + insValue.getName() ); // TODO i18n
         }
       }
-      data.db.prepareInsert(
-        data.insertRowMeta, environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta
-          .getTableName() ) );
 
-      if ( !meta.isUpdateBypassed() ) {
-        List<String> updateColumns = new ArrayList<String>();
-        for ( int i = 0; i < meta.getUpdate().length; i++ ) {
-          if ( meta.getUpdate()[i].booleanValue() ) {
-            updateColumns.add( meta.getUpdateLookup()[i] );
+      if ( meta.isSetBasedUpsert() && isSetBasedUpsertPossible() ) {
+        prepareBatchUpsert( getInputRowMeta() );
+      } else {
+        if ( meta.isSetBasedUpsert() && log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "InsertUpdate.Log.SetBasedUpsertNotPossible" ) );
+        }
+        setLookup( getInputRowMeta() );
+        data.db.prepareInsert(
+          data.insertRowMeta, environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta
+            .getTableName() ) );
+
+        if ( !meta.isUpdateBypassed() ) {
+          List<String> updateColumns = new ArrayList<String>();
+          for ( int i = 0; i < meta.getUpdate().length; i++ ) {
+            if ( meta.getUpdate()[i].booleanValue() ) {
+              updateColumns.add( meta.getUpdateLookup()[i] );
+            }
           }
+          prepareUpdate( getInputRowMeta() );
         }
-        prepareUpdate( getInputRowMeta() );
       }
     }
 
+    if ( data.batchUpsert != null ) {
+      addToBatch( r );
+      if ( checkFeedback( getLinesRead() ) ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "InsertUpdate.Log.LineNumber" ) + getLinesRead() );
+        }
+      }
+      return true;
+    }
+
     try {
       lookupValues( getInputRowMeta(), r ); // add new values to the row in rowset[0].
       putRow( data.outputRowMeta, r ); // Nothing changed to the input, return the same row, pass a "cloned" metadata
@@ -326,6 +347,96 @@ public class InsertUpdate extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Rows can only be written in batches when they are identified by the equality of the key fields.
+   */
+  private boolean isSetBasedUpsertPossible() {
+    for ( int i = 0; i < meta.getKeyCondition().length; i++ ) {
+      if ( !"=".equals( meta.getKeyCondition()[i] ) ) {
+        return false;
+      }
+    }
+    return meta.getKeyLookup().length > 0;
+  }
+
+  private void prepareBatchUpsert( RowMetaInterface rowMeta ) throws KettleDatabaseException {
+    RowMetaInterface keyRowMeta = new RowMeta();
+    boolean allowUpsert = true;
+    for ( int i = 0; i < meta.getKeyLookup().length; i++ ) {
+      keyRowMeta.addValueMeta( rowMeta.getValueMeta( data.keynrs[i] ).clone() );
+
+      // The upsert statement takes the key values from the inserted fields, they have to be the same
+      int valueIndex = Const.indexOfString( meta.getKeyLookup()[i], meta.getUpdateLookup() );
+      if ( valueIndex >= 0 && !meta.getKeyStream()[i].equalsIgnoreCase( meta.getUpdateStream()[valueIndex] ) ) {
+        allowUpsert = false;
+      }
+    }
+
+    boolean[] update = new boolean[meta.getUpdateLookup().length];
+    for ( int i = 0; i < update.length; i++ ) {
+      update[i] = !meta.isUpdateBypassed() && meta.getUpdate()[i].booleanValue();
+    }
+
+    int commitSize = meta.getCommitSize( this );
+    data.batchSize = commitSize > 0 ? commitSize : InsertUpdateData.DEFAULT_BATCH_SIZE;
+    data.batchUpsert =
+      new BatchUpsert( data.db, environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta
+        .getTableName() ), meta.getKeyLookup(), keyRowMeta, data.insertRowMeta, update, allowUpsert );
+
+    if ( log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "InsertUpdate.Log.SetBasedUpsert", data.batchSize, data.batchUpsert
+        .isUsingUpsertStatement() ? "Y" : "N" ) );
+    }
+  }
+
+  private void addToBatch( Object[] row ) throws KettleException {
+    Object[] keyValues = new Object[data.keynrs.length];
+    for ( int i = 0; i < data.keynrs.length; i++ ) {
+      keyValues[i] = row[data.keynrs[i]];
+    }
+    Object[] insertRow = new Object[data.valuenrs.length];
+    for ( int i = 0; i < data.valuenrs.length; i++ ) {
+      insertRow[i] = row[data.valuenrs[i]];
+    }
+    data.batchUpsert.addRow( keyValues, insertRow );
+    data.batchRows.add( row );
+
+    if ( data.batchRows.size() >= data.batchSize ) {
+      writeBatch();
+    }
+  }
+
+  /**
+   * Writes and commits the buffered rows, then passes them on. When the batch fails and error handling is enabled all
+   * the rows of the batch go to the error stream.
+   */
+  private void writeBatch() throws KettleException {
+    try {
+      BatchUpsert.Counts counts = data.batchUpsert.flush();
+      if ( !data.db.isAutoCommit() ) {
+        data.db.commit();
+      }
+      setLinesInput( getLinesInput() + counts.lookups );
+      setLinesOutput( getLinesOutput() + counts.upserted + counts.inserted );
+      setLinesUpdated( getLinesUpdated() + counts.updated );
+      setLinesSkipped( getLinesSkipped() + counts.unchanged );
+
+      for ( Object[] row : data.batchRows ) {
+        putRow( data.outputRowMeta, row );
+      }
+    } catch ( KettleDatabaseException e ) {
+      if ( !getStepMeta().isDoingErrorHandling() ) {
+        throw e;
+      }
+      data.db.rollback();
+      for ( Object[] row : data.batchRows ) {
+        putError( getInputRowMeta(), row, 1, e.toString(), null, "ISU001" );
+      }
+    } finally {
+      data.batchRows.clear();
+    }
+  }
+
   public void setLookup( RowMetaInterface rowMeta ) throws KettleDatabaseException {
     data.lookupParameterRowMeta = new RowMeta();
     data.lookupReturnRowMeta = new RowMeta();
@@ -500,6 +611,10 @@ public class InsertUpdate extends BaseStep implements StepInterface {
 
     if ( data.db != null ) {
       try {
+        // A step that was stopped before the end of its input still has rows in the batch
+        if ( data.batchUpsert != null && data.batchUpsert.size() > 0 && getErrors() == 0 ) {
+          writeBatch();
+        }
         if ( !data.db.isAutoCommit() ) {
           if ( getErrors() == 0 ) {
             data.db.commit();
@@ -509,7 +624,10 @@ public class InsertUpdate extends BaseStep implements StepInterface {
         }
         data.db.closeUpdate();
         data.db.closeInsert();
-      } catch ( KettleDatabaseException e ) {
+        if ( data.batchUpsert != null ) {
+          data.batchUpsert.close();
+        }
+      } catch ( KettleException e ) {
         logError( BaseMessages.getString( PKG, "InsertUpdate.Log.UnableToCommitConnection" ) + e.toString() );
         setErrors( 1 );
       } finally {
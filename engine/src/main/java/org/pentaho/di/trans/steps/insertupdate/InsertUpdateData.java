@@ -23,7 +23,10 @@
 package org.pentaho.di.trans.steps.insertupdate;
 
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.pentaho.di.core.database.BatchUpsert;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -36,6 +39,9 @@ import org.pentaho.di.trans.step.StepDataInterface;
  * @since 24-jan-2005
  */
 public class InsertUpdateData extends BaseStepData implements StepDataInterface {
+  /** Batch size of the set based upsert when there is no commit size */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
   public Database db;
 
   public int[] keynrs; // nr of keylookup -value in row...
@@ -54,6 +60,10 @@ public class InsertUpdateData extends BaseStepData implements StepDataInterface
   public RowMetaInterface lookupReturnRowMeta;
   public RowMetaInterface insertRowMeta;
 
+  public BatchUpsert batchUpsert;
+  public int batchSize;
+  public List<Object[]> batchRows;
+
   /**
    * Default constructor.
    */
@@ -61,5 +71,6 @@ public class InsertUpdateData extends BaseStepData implements StepDataInterface
     super();
 
     db = null;
+    batchRows = new ArrayList<Object[]>();
   }
 }
@@ -117,6 +117,10 @@ public class InsertUpdateMeta extends BaseStepMeta implements StepMetaInterface,
   @Injection( name = "DO_NOT" )
   private boolean updateBypassed;
 
+  /** Write the rows a commit size at a time instead of looking them up one by one */
+  @Injection( name = "SET_BASED_UPSERT" )
+  private boolean setBasedUpsert;
+
   @Injection( name = "CONNECTIONNAME" )
   public void setConnection( String connectionName ) {
     databaseMeta = DatabaseMeta.findDatabase( databases, connectionName );
@@ -342,6 +346,7 @@ public class InsertUpdateMeta extends BaseStepMeta implements StepMetaInterface,
       schemaName = XMLHandler.getTagValue( stepnode, "lookup", "schema" );
       tableName = XMLHandler.getTagValue( stepnode, "lookup", "table" );
       updateBypassed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "update_bypassed" ) );
+      setBasedUpsert = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "set_based_upsert" ) );
 
       Node lookup = XMLHandler.getSubNode( stepnode, "lookup" );
       nrkeys = XMLHandler.countNodes( lookup, "key" );
@@ -422,6 +427,7 @@ public class InsertUpdateMeta extends BaseStepMeta implements StepMetaInterface,
         XMLHandler.addTagValue( "connection", databaseMeta == null ? "" : databaseMeta.getName() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "commit", commitSize ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "update_bypassed", updateBypassed ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "set_based_upsert", setBasedUpsert ) );
     retval.append( "    <lookup>" ).append( Const.CR );
     retval.append( "      " ).append( XMLHandler.addTagValue( "schema", schemaName ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "table", tableName ) );
@@ -468,6 +474,7 @@ public class InsertUpdateMeta extends BaseStepMeta implements StepMetaInterface,
       schemaName = rep.getStepAttributeString( id_step, "schema" );
       tableName = rep.getStepAttributeString( id_step, "table" );
       updateBypassed = rep.getStepAttributeBoolean( id_step, "update_bypassed" );
+      setBasedUpsert = rep.getStepAttributeBoolean( id_step, "set_based_upsert" );
 
       int nrkeys = rep.countNrStepAttributes( id_step, "key_field" );
       int nrvalues = rep.countNrStepAttributes( id_step, "value_name" );
@@ -499,6 +506,7 @@ public class InsertUpdateMeta extends BaseStepMeta implements StepMetaInterface,
       rep.saveStepAttribute( id_transformation, id_step, "schema", schemaName );
       rep.saveStepAttribute( id_transformation, id_step, "table", tableName );
       rep.saveStepAttribute( id_transformation, id_step, "update_bypassed", updateBypassed );
+      rep.saveStepAttribute( id_transformation, id_step, "set_based_upsert", setBasedUpsert );
 
       for ( int i = 0; i < keyStream.length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "key_name", keyStream[i] );
@@ -855,6 +863,22 @@ public class InsertUpdateMeta extends BaseStepMeta implements StepMetaInterface,
     this.updateBypassed = updateBypassed;
   }
 
+  /**
+   * @return true if the rows are written a commit size at a time, with the upsert statement of the database when it has
+   *         one.
+   */
+  public boolean isSetBasedUpsert() {
+    return setBasedUpsert;
+  }
+
+  /**
+   * @param setBasedUpsert
+   *          true to write the rows a commit size at a time instead of looking them up one by one.
+   */
+  public void setSetBasedUpsert( boolean setBasedUpsert ) {
+    this.setBasedUpsert = setBasedUpsert;
+  }
+
   public RowMetaInterface getRequiredFields( VariableSpace space ) throws KettleException {
     String realSchemaName = space.environmentSubstitute( schemaName );
     String realTableName = space.environmentSubstitute( tableName );
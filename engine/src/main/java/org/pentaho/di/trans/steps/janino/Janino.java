@@ -42,6 +42,7 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.expression.RowExpressionCompiler;
 
 /**
  * Calculate new field values using pre-defined functions.
@@ -94,6 +95,18 @@ public class Janino extends BaseStep implements StepInterface {
           data.replaceIndex[i] = -1;
         }
       }
+
+      // A formula that doesn't compile is reported when it is evaluated on its own
+      //
+      if ( RowExpressionCompiler.isEnabled() ) {
+        try {
+          data.expression = JaninoCompiler.compile( meta, data, getInputRowMeta().size() );
+        } catch ( KettleException e ) {
+          if ( log.isDetailed() ) {
+            logDetailed( BaseMessages.getString( PKG, "Janino.Log.NotCompiled", e.getMessage() ) );
+          }
+        }
+      }
     }
 
     if ( log.isRowLevel() ) {
@@ -126,6 +139,11 @@ public class Janino extends BaseStep implements StepInterface {
       Object[] outputRowData = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
       int tempIndex = rowMeta.size();
 
+      if ( data.expression != null ) {
+        data.expression.calculate( outputRowData );
+        return outputRowData;
+      }
+
       // Initialize evaluators etc. Only do it once.
       //
       if ( data.expressionEvaluators == null ) {
@@ -190,21 +208,7 @@ public class Janino extends BaseStep implements StepInterface {
 
         Object formulaResult = data.expressionEvaluators[i].evaluate( argumentData );
 
-        Object value = null;
-        if ( formulaResult == null ) {
-          value = null;
-        } else {
-          ValueMetaInterface valueMeta = data.returnType[i];
-          if ( valueMeta.getNativeDataTypeClass().isAssignableFrom( formulaResult.getClass() ) ) {
-            value = formulaResult;
-          } else if ( formulaResult instanceof Integer && valueMeta.getType() == ValueMetaInterface.TYPE_INTEGER ) {
-            value = ( (Integer) formulaResult ).longValue();
-          } else {
-            throw new KettleValueException(
-              BaseMessages.getString( PKG, "Janino.Error.ValueTypeMismatch", valueMeta.getTypeDesc(),
-                meta.getFormula()[i].getFieldName(), formulaResult.getClass(), meta.getFormula()[i].getFormula() ) );
-          }
-        }
+        Object value = getResultValue( meta.getFormula()[i], data.returnType[i], formulaResult );
 
         // We're done, store it in the row with all the data, including the temporary data...
         //
@@ -221,6 +225,22 @@ public class Janino extends BaseStep implements StepInterface {
     }
   }
 
+  static Object getResultValue( JaninoMetaFunction fn, ValueMetaInterface valueMeta, Object formulaResult )
+    throws KettleValueException {
+    if ( formulaResult == null ) {
+      return null;
+    }
+    if ( valueMeta.getNativeDataTypeClass().isAssignableFrom( formulaResult.getClass() ) ) {
+      return formulaResult;
+    } else if ( formulaResult instanceof Integer && valueMeta.getType() == ValueMetaInterface.TYPE_INTEGER ) {
+      return ( (Integer) formulaResult ).longValue();
+    } else {
+      throw new KettleValueException(
+        BaseMessages.getString( PKG, "Janino.Error.ValueTypeMismatch", valueMeta.getTypeDesc(),
+          fn.getFieldName(), formulaResult.getClass(), fn.getFormula() ) );
+    }
+  }
+
   @Override
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (JaninoMeta) smi;
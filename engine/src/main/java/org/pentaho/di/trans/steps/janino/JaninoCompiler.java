@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.janino;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.trans.step.expression.CompiledRowExpression;
+import org.pentaho.di.trans.step.expression.RowExpressionCompiler;
+import org.pentaho.di.trans.step.expression.ValueConverter;
+
+/**
+ * Compiles all the formulas of a User Defined Java Expression step into one class. Every formula becomes a method with
+ * typed parameters that is called directly, without an argument array per row.
+ */
+class JaninoCompiler {
+
+  private JaninoCompiler() {
+  }
+
+  /**
+   * @return the compiled formulas, or null if a formula has no field name
+   */
+  static CompiledRowExpression compile( JaninoMeta meta, JaninoData data, int inputSize ) throws KettleException {
+    RowExpressionCompiler compiler = new RowExpressionCompiler( data.outputRowMeta );
+
+    int tempIndex = inputSize;
+    for ( int m = 0; m < meta.getFormula().length; m++ ) {
+      JaninoMetaFunction fn = meta.getFormula()[m];
+      if ( Utils.isEmpty( fn.getFieldName() ) ) {
+        return null;
+      }
+
+      // The fields used in the formula are the parameters of its method, just like the expression evaluator does
+      //
+      List<String> parameterTypes = new ArrayList<String>();
+      List<String> parameterNames = new ArrayList<String>();
+      StringBuilder arguments = new StringBuilder();
+      for ( int i = 0; i < data.outputRowMeta.size(); i++ ) {
+        ValueMetaInterface valueMeta = data.outputRowMeta.getValueMeta( i );
+        if ( fn.getFormula().contains( valueMeta.getName() ) ) {
+          String type = valueMeta.getNativeDataTypeClass().getCanonicalName();
+          parameterTypes.add( type );
+          parameterNames.add( valueMeta.getName() );
+          arguments.append( arguments.length() > 0 ? ", " : "" ).append( "(" ).append( type ).append( ") " )
+            .append( compiler.getObject( i ) );
+        }
+      }
+      String method = compiler.addMethod( "Object", parameterTypes, parameterNames,
+        "return " + fn.getFormula() + "\n;" );
+
+      int index = data.replaceIndex[m] < 0 ? tempIndex++ : data.replaceIndex[m];
+      compiler.setObject( index, compiler.addConverter( new ResultConverter( fn, data.returnType[m] ),
+        method + "(" + arguments + ")" ) );
+    }
+
+    return compiler.compile();
+  }
+
+  private static class ResultConverter implements ValueConverter {
+    private final JaninoMetaFunction fn;
+    private final ValueMetaInterface returnType;
+
+    ResultConverter( JaninoMetaFunction fn, ValueMetaInterface returnType ) {
+      this.fn = fn;
+      this.returnType = returnType;
+    }
+
+    @Override
+    public Object convert( Object value ) throws KettleValueException {
+      return Janino.getResultValue( fn, returnType, value );
+    }
+  }
+}
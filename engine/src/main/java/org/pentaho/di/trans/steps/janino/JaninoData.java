@@ -29,6 +29,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.expression.CompiledRowExpression;
 
 /**
  * @author Matt
@@ -52,6 +53,9 @@ public class JaninoData extends BaseStepData implements StepDataInterface {
   public ExpressionEvaluator[] expressionEvaluators;
   public List<List<Integer>> argumentIndexes;
 
+  /** All the formulas compiled into one class, null if they are evaluated one by one */
+  public CompiledRowExpression expression;
+
   public JaninoData() {
     super();
   }
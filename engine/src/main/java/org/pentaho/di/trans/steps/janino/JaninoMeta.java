@@ -238,6 +238,11 @@ public class JaninoMeta extends BaseStepMeta implements StepMetaInterface {
     return new JaninoData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   public boolean supportsErrorHandling() {
     return true;
   }
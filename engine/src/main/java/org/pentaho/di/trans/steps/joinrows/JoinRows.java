@@ -22,22 +22,15 @@
 
 package org.pentaho.di.trans.steps.joinrows;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
-import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.spill.SpillFile;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -65,7 +58,7 @@ public class JoinRows extends BaseStep implements StepInterface {
   }
 
   /*
-   * Allocate input streams and create the temporary files...
+   * Allocate the caches, the temporary files are created when the rows don't fit in memory...
    */
   @SuppressWarnings( "unchecked" )
   public void initialize() throws KettleException {
@@ -73,55 +66,41 @@ public class JoinRows extends BaseStep implements StepInterface {
     //
     openRemoteInputStepSocketsOnce();
 
-    try {
-      // Start with the caching of the data, write later...
-      data.caching = true;
-
-      // Start at file 1, skip 0 for speed!
-      data.filenr = 1;
-
-      // See if a main step is supplied: in that case move the corresponding rowset to position 0
-      swapFirstInputRowSetIfExists( meta.getMainStepname() );
-
-      List<RowSet> inputRowSets = getInputRowSets();
-      int rowSetsSize = inputRowSets.size();
-
-      // ** INPUT SIDE **
-      data.file = new File[rowSetsSize];
-      data.fileInputStream = new FileInputStream[rowSetsSize];
-      data.dataInputStream = new DataInputStream[rowSetsSize];
-      data.size = new int[rowSetsSize];
-      data.fileRowMeta = new RowMetaInterface[rowSetsSize];
-      data.joinrow = new Object[rowSetsSize][];
-      data.rs = new RowSet[rowSetsSize];
-      data.cache = new List[rowSetsSize];
-      data.position = new int[rowSetsSize];
-      data.fileOutputStream = new FileOutputStream[rowSetsSize];
-      data.dataOutputStream = new DataOutputStream[rowSetsSize];
-      data.restart = new boolean[rowSetsSize];
-
-      for ( int i = 1; i < rowSetsSize; i++ ) {
-        String directoryName = environmentSubstitute( meta.getDirectory() );
-        File file = null;
-        if ( directoryName != null ) {
-          file = new File( directoryName );
-        }
-        data.file[i] = File.createTempFile( meta.getPrefix(), ".tmp", file );
-
-        data.size[i] = 0;
-        data.rs[i] = inputRowSets.get( i );
-        data.cache[i] = null;
-        // data.row[i] = null;
-        data.position[i] = 0;
-
-        data.dataInputStream[i] = null;
-        data.dataOutputStream[i] = null;
-
-        data.joinrow[i] = null;
-        data.restart[i] = false;
-      }
-    } catch ( Exception e ) {
-      throw new KettleException( BaseMessages.getString( PKG, "JoinRows.Log.ErrorCreatingTemporaryFiles" ), e );
+    // Start with the caching of the data, write later...
+    data.caching = true;
+
+    // Start at file 1, skip 0 for speed!
+    data.filenr = 1;
+
+    // See if a main step is supplied: in that case move the corresponding rowset to position 0
+    swapFirstInputRowSetIfExists( meta.getMainStepname() );
+
+    List<RowSet> inputRowSets = getInputRowSets();
+    int rowSetsSize = inputRowSets.size();
+
+    // ** INPUT SIDE **
+    data.spillFile = new SpillFile[rowSetsSize];
+    data.reader = new SpillReader[rowSetsSize];
+    data.size = new int[rowSetsSize];
+    data.fileRowMeta = new RowMetaInterface[rowSetsSize];
+    data.joinrow = new Object[rowSetsSize][];
+    data.rs = new RowSet[rowSetsSize];
+    data.cache = new List[rowSetsSize];
+    data.position = new int[rowSetsSize];
+    data.restart = new boolean[rowSetsSize];
+    data.memory = getSpillManager().openAccount();
+
+    for ( int i = 1; i < rowSetsSize; i++ ) {
+      data.size[i] = 0;
+      data.rs[i] = inputRowSets.get( i );
+      data.cache[i] = null;
+      data.position[i] = 0;
+
+      data.spillFile[i] = null;
+      data.reader[i] = null;
+
+      data.joinrow[i] = null;
+      data.restart[i] = false;
     }
   }
 
@@ -153,45 +132,24 @@ public class JoinRows extends BaseStep implements StepInterface {
           + ( rowData == null ? "<null>" : data.fileRowMeta[0].getString( rowData ) ) );
       }
     } else {
-      if ( data.cache[filenr] == null ) {
-        // See if we need to open the file?
-        if ( data.dataInputStream[filenr] == null ) {
-          try {
-            data.fileInputStream[filenr] = new FileInputStream( data.file[filenr] );
-            data.dataInputStream[filenr] = new DataInputStream( data.fileInputStream[filenr] );
-          } catch ( FileNotFoundException fnfe ) {
-            logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToFindOrOpenTemporaryFile" )
-              + data.file[filenr] + "] : " + fnfe.toString() );
-            setErrors( 1 );
-            stopAll();
-            return null;
-          }
+      if ( data.size[filenr] == 0 ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "JoinRows.Log.NoRowsComingFromStep" )
+            + data.rs[filenr].getOriginStepName() + "]" );
         }
+        return null;
+      }
 
+      if ( data.cache[filenr] == null ) {
         // Read a row from the temporary file
-
-        if ( data.size[filenr] == 0 ) {
-          if ( log.isBasic() ) {
-            logBasic( BaseMessages.getString( PKG, "JoinRows.Log.NoRowsComingFromStep" )
-              + data.rs[filenr].getOriginStepName() + "]" );
-          }
-          return null;
-        }
-
         try {
-          rowData = data.fileRowMeta[filenr].readData( data.dataInputStream[filenr] );
-        } catch ( KettleFileException e ) {
-          logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToReadDataFromTempFile" )
-            + filenr + " [" + data.file[filenr] + "]" );
-          setErrors( 1 );
-          stopAll();
-          return null;
-        } catch ( SocketTimeoutException e ) {
-          logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToReadDataFromTempFile" )
-            + filenr + " [" + data.file[filenr] + "]" );
-          setErrors( 1 );
-          stopAll();
-          return null;
+          if ( data.reader[filenr] == null ) {
+            data.reader[filenr] = data.spillFile[filenr].openReader();
+          }
+          rowData = data.reader[filenr].next();
+        } catch ( KettleException e ) {
+          throw new KettleException( BaseMessages.getString( PKG, "JoinRows.Log.UnableToReadDataFromTempFile" )
+            + filenr + " [" + data.spillFile[filenr] + "]", e );
         }
         if ( log.isRowLevel() ) {
           logRowlevel( BaseMessages.getString( PKG, "JoinRows.Log.ReadRowFromFile" )
@@ -200,35 +158,15 @@ public class JoinRows extends BaseStep implements StepInterface {
 
         data.position[filenr]++;
 
-        // If the file is at the end, close it.
-        // The file will then be re-opened if needed later on.
+        // If the file is at the end, scan it again from the start for the next row of the previous file.
         if ( data.position[filenr] >= data.size[filenr] ) {
-          try {
-            data.dataInputStream[filenr].close();
-            data.fileInputStream[filenr].close();
-
-            data.dataInputStream[filenr] = null;
-            data.fileInputStream[filenr] = null;
-
-            data.position[filenr] = 0;
-            data.restart[filenr] = true; // indicate that we restarted.
-          } catch ( IOException ioe ) {
-            logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToCloseInputStream" )
-              + data.file[filenr] + "] : " + ioe.toString() );
-            setErrors( 1 );
-            stopAll();
-            return null;
-          }
+          data.reader[filenr].rewind();
+
+          data.position[filenr] = 0;
+          data.restart[filenr] = true; // indicate that we restarted.
         }
       } else {
-        if ( data.size[filenr] == 0 ) {
-          if ( log.isBasic() ) {
-            logBasic( BaseMessages.getString( PKG, "JoinRows.Log.NoRowsComingFromStep" )
-              + data.rs[filenr].getOriginStepName() + "]" );
-          }
-          return null;
-        }
-        rowData = data.cache[filenr].get( data.position[data.filenr] );
+        rowData = data.cache[filenr].get( data.position[filenr] );
 
         // Don't forget to clone the data to protect it against data alteration downstream.
         //
@@ -236,8 +174,7 @@ public class JoinRows extends BaseStep implements StepInterface {
 
         data.position[filenr]++;
 
-        // If the file is at the end, close it.
-        // The file will then be re-opened if needed later on.
+        // If the cache is at the end, start again from the first row.
         if ( data.position[filenr] >= data.size[filenr] ) {
           data.position[filenr] = 0;
           data.restart[filenr] = true; // indicate that we restarted.
@@ -299,7 +236,7 @@ public class JoinRows extends BaseStep implements StepInterface {
     // If so, we can output one row in the cartesian product.
     // Otherwise, go to the next file to get an extra row.
     //
-    if ( data.filenr >= data.file.length - 1 ) {
+    if ( data.filenr >= data.spillFile.length - 1 ) {
       if ( data.outputRowMeta == null ) {
         data.outputRowMeta = createOutputRowMeta( data.fileRowMeta );
       }
@@ -343,7 +280,7 @@ public class JoinRows extends BaseStep implements StepInterface {
     // Read from input channels //
     // /////////////////////////////
 
-    if ( data.filenr >= data.file.length ) {
+    if ( data.filenr >= data.spillFile.length ) {
       // Switch the mode to reading back from the data cache
       data.caching = false;
 
@@ -353,23 +290,6 @@ public class JoinRows extends BaseStep implements StepInterface {
       return true;
     }
 
-    // We need to open a new outputstream
-    if ( data.dataOutputStream[data.filenr] == null ) {
-      try {
-        // Open the temp file
-        data.fileOutputStream[data.filenr] = new FileOutputStream( data.file[data.filenr] );
-
-        // Open the data output stream...
-        data.dataOutputStream[data.filenr] = new DataOutputStream( data.fileOutputStream[data.filenr] );
-      } catch ( FileNotFoundException fnfe ) {
-        logError( BaseMessages.getString( PKG, "JoinRows.Log.UnableToOpenOutputstream" )
-          + data.file[data.filenr].toString() + "] : " + fnfe.toString() );
-        stopAll();
-        setErrors( 1 );
-        return false;
-      }
-    }
-
     // Read a line from the appropriate rowset...
     RowSet rowSet = data.rs[data.filenr];
     Object[] rowData = getRowFrom( rowSet );
@@ -381,7 +301,6 @@ public class JoinRows extends BaseStep implements StepInterface {
         data.fileRowMeta[data.filenr] = rowSet.getRowMeta().clone();
       }
 
-      data.fileRowMeta[data.filenr].writeData( data.dataOutputStream[data.filenr], rowData );
       data.size[data.filenr]++;
 
       if ( log.isRowLevel() ) {
@@ -389,37 +308,50 @@ public class JoinRows extends BaseStep implements StepInterface {
           data.fileRowMeta[data.filenr].getString( rowData ) ) );
       }
 
+      if ( data.spillFile[data.filenr] != null ) {
+        // The rows of this stream didn't fit in memory, keep writing them to disk
+        data.spillFile[data.filenr].add( rowData );
+        return true;
+      }
+
       //
-      // Perhaps we want to cache this data??
+      // Cache the data as long as we can
       //
-      if ( data.size[data.filenr] <= meta.getCacheSize() ) {
-        if ( data.cache[data.filenr] == null ) {
-          data.cache[data.filenr] = new ArrayList<Object[]>();
-        }
+      if ( data.cache[data.filenr] == null ) {
+        data.cache[data.filenr] = new ArrayList<Object[]>();
+      }
 
-        // Add this row to the cache!
-        data.cache[data.filenr].add( rowData );
-      } else {
-        // we can't cope with this many rows: reset the cache...
+      // Add this row to the cache!
+      data.cache[data.filenr].add( rowData );
+      boolean memoryAvailable = data.memory.add( 1 );
+
+      if ( data.size[data.filenr] > meta.getCacheSize() || !memoryAvailable ) {
+        // we can't cope with this many rows: write the cache to disk...
         if ( log.isDetailed() ) {
           logDetailed( BaseMessages.getString(
             PKG, "JoinRows.Log.RowsFound", meta.getCacheSize() + "", data.rs[data.filenr].getOriginStepName() ) );
         }
+        SpillFile spillFile;
+        try {
+          spillFile = getSpillManager().createFile( meta.getPrefix(), environmentSubstitute( meta.getDirectory() ),
+            getTransMeta(), data.fileRowMeta[data.filenr], false );
+        } catch ( KettleException e ) {
+          throw new KettleException( BaseMessages.getString( PKG, "JoinRows.Log.ErrorCreatingTemporaryFiles" ), e );
+        }
+        data.spillFile[data.filenr] = spillFile;
+        for ( Object[] cachedRow : data.cache[data.filenr] ) {
+          spillFile.add( cachedRow );
+        }
+        data.memory.release( data.cache[data.filenr].size() );
         data.cache[data.filenr] = null;
       }
 
     } else {
       // No more rows found on rowset!!
 
-      // Close outputstream.
-      try {
-        data.dataOutputStream[data.filenr].close();
-        data.fileOutputStream[data.filenr].close();
-        data.dataOutputStream[data.filenr] = null;
-        data.fileOutputStream[data.filenr] = null;
-      } catch ( IOException ioe ) {
-        logError( BaseMessages.getString( PKG, "JoinRows.Log.ErrorInClosingOutputStream" )
-          + data.filenr + " : [" + data.file[data.filenr].toString() + "] : " + ioe.toString() );
+      // Close the temporary file, if any.
+      if ( data.spillFile[data.filenr] != null ) {
+        data.spillFile[data.filenr].finish();
       }
 
       // Advance to the next file/input-stream...
@@ -442,13 +374,19 @@ public class JoinRows extends BaseStep implements StepInterface {
     data = (JoinRowsData) sdi;
 
     // Remove the temporary files...
-    if ( data.file != null ) {
-      for ( int i = 1; i < data.file.length; i++ ) {
-        if ( data.file[i] != null ) {
-          data.file[i].delete();
+    if ( data.spillFile != null ) {
+      for ( int i = 1; i < data.spillFile.length; i++ ) {
+        if ( data.reader != null && data.reader[i] != null ) {
+          data.reader[i].close();
+        }
+        if ( data.spillFile[i] != null ) {
+          data.spillFile[i].delete();
         }
       }
     }
+    if ( data.memory != null ) {
+      data.memory.release();
+    }
 
     super.dispose( meta, data );
   }
@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,15 +22,13 @@
 
 package org.pentaho.di.trans.steps.joinrows;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.util.List;
 
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.spill.SpillFile;
+import org.pentaho.di.core.spill.SpillManager;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -40,9 +38,11 @@ import org.pentaho.di.trans.step.StepDataInterface;
  *
  */
 public class JoinRowsData extends BaseStepData implements StepDataInterface {
-  public File[] file;
-  public FileInputStream[] fileInputStream;
-  public DataInputStream[] dataInputStream;
+  /**
+   * The rows of the streams that didn't fit in the cache, null for the streams kept in memory
+   */
+  public SpillFile[] spillFile;
+  public SpillReader[] reader;
   public RowMetaInterface[] fileRowMeta;
 
   public int[] size;
@@ -53,8 +53,7 @@ public class JoinRowsData extends BaseStepData implements StepDataInterface {
 
   public boolean caching;
 
-  public FileOutputStream[] fileOutputStream;
-  public DataOutputStream[] dataOutputStream;
+  public SpillManager.MemoryAccount memory;
 
   public Object[][] joinrow;
 
@@ -52,6 +52,8 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.bulkload.BulkLoader;
+import org.pentaho.di.trans.steps.bulkload.MySQLLoadDataTarget;
 
 /**
  * Performs a streaming bulk load to a MySQL table.
@@ -78,42 +80,7 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
     Runtime rt = Runtime.getRuntime();
 
     try {
-      // 1) Create the FIFO file using the "mkfifo" command...
-      // Make sure to log all the possible output, also from STDERR
-      //
-      data.fifoFilename = environmentSubstitute( meta.getFifoFileName() );
-
-      File fifoFile = new File( data.fifoFilename );
-      if ( !fifoFile.exists() ) {
-        // MKFIFO!
-        //
-        String mkFifoCmd = "mkfifo " + data.fifoFilename;
-        //
-        logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.CREATINGFIFO",  data.dbDescription, mkFifoCmd ) );
-        Process mkFifoProcess = rt.exec( mkFifoCmd );
-        StreamLogger errorLogger = new StreamLogger( log, mkFifoProcess.getErrorStream(), "mkFifoError" );
-        StreamLogger outputLogger = new StreamLogger( log, mkFifoProcess.getInputStream(), "mkFifoOuptut" );
-        new Thread( errorLogger ).start();
-        new Thread( outputLogger ).start();
-        int result = mkFifoProcess.waitFor();
-        if ( result != 0 ) {
-          throw new Exception( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.ERRORFIFORC", result, mkFifoCmd ) );
-        }
-
-        String chmodCmd = "chmod 666 " + data.fifoFilename;
-        logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.SETTINGPERMISSIONSFIFO",  data.dbDescription, chmodCmd ) );
-        Process chmodProcess = rt.exec( chmodCmd );
-        errorLogger = new StreamLogger( log, chmodProcess.getErrorStream(), "chmodError" );
-        outputLogger = new StreamLogger( log, chmodProcess.getInputStream(), "chmodOuptut" );
-        new Thread( errorLogger ).start();
-        new Thread( outputLogger ).start();
-        result = chmodProcess.waitFor();
-        if ( result != 0 ) {
-          throw new Exception( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.ERRORFIFORC", result, chmodCmd ) );
-        }
-      }
-
-      // 2) Make a connection to MySQL for sending SQL commands
+      // 1) Make a connection to MySQL for sending SQL commands
       // (Also, we need a clear cache for getting up-to-date target metadata)
       DBCache.getInstance().clear( meta.getDatabaseMeta().getName() );
       if ( meta.getDatabaseMeta() == null ) {
@@ -137,6 +104,15 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
 
       logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.CONNECTED",  data.dbDescription ) );
 
+      // 2) With LOAD DATA LOCAL the driver can send the rows from a stream, otherwise create the FIFO file
+      //
+      data.streaming = meta.isLocalFile() && MySQLLoadDataTarget.isSupported( data.db.getConnection() );
+      if ( data.streaming ) {
+        logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.STREAMING",  data.dbDescription ) );
+      } else {
+        createFifo( rt );
+      }
+
       // 3) Now we are ready to run the load command...
       //
       executeLoadCommand();
@@ -147,6 +123,43 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
     return true;
   }
 
+  private void createFifo( Runtime rt ) throws Exception {
+    // Create the FIFO file using the "mkfifo" command...
+    // Make sure to log all the possible output, also from STDERR
+    //
+    data.fifoFilename = environmentSubstitute( meta.getFifoFileName() );
+
+    File fifoFile = new File( data.fifoFilename );
+    if ( !fifoFile.exists() ) {
+      // MKFIFO!
+      //
+      String mkFifoCmd = "mkfifo " + data.fifoFilename;
+      //
+      logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.CREATINGFIFO",  data.dbDescription, mkFifoCmd ) );
+      Process mkFifoProcess = rt.exec( mkFifoCmd );
+      StreamLogger errorLogger = new StreamLogger( log, mkFifoProcess.getErrorStream(), "mkFifoError" );
+      StreamLogger outputLogger = new StreamLogger( log, mkFifoProcess.getInputStream(), "mkFifoOuptut" );
+      new Thread( errorLogger ).start();
+      new Thread( outputLogger ).start();
+      int result = mkFifoProcess.waitFor();
+      if ( result != 0 ) {
+        throw new Exception( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.ERRORFIFORC", result, mkFifoCmd ) );
+      }
+
+      String chmodCmd = "chmod 666 " + data.fifoFilename;
+      logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.SETTINGPERMISSIONSFIFO",  data.dbDescription, chmodCmd ) );
+      Process chmodProcess = rt.exec( chmodCmd );
+      errorLogger = new StreamLogger( log, chmodProcess.getErrorStream(), "chmodError" );
+      outputLogger = new StreamLogger( log, chmodProcess.getInputStream(), "chmodOuptut" );
+      new Thread( errorLogger ).start();
+      new Thread( outputLogger ).start();
+      result = chmodProcess.waitFor();
+      if ( result != 0 ) {
+        throw new Exception( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.ERRORFIFORC", result, chmodCmd ) );
+      }
+    }
+  }
+
   private void executeLoadCommand() throws Exception {
 
     String loadCommand = "";
@@ -188,6 +201,12 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
 
     logBasic( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.STARTING",  data.dbDescription, loadCommand ) );
 
+    if ( data.streaming ) {
+      data.bulkLoader = new BulkLoader( new MySQLLoadDataTarget( data.db.getConnection(), loadCommand ) );
+      data.fifoStream = data.bulkLoader.start( getStepname() + " - LOAD DATA" );
+      return;
+    }
+
     data.sqlRunner = new SqlRunner( data, loadCommand );
     data.sqlRunner.start();
 
@@ -319,6 +338,13 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
       data.sqlRunner = null;
       sqlRunner.checkExcn();
     }
+
+    if ( data.bulkLoader != null ) {
+      // wait for the LOAD DATA statement to read the end of the stream
+      BulkLoader bulkLoader = data.bulkLoader;
+      data.bulkLoader = null;
+      bulkLoader.finish();
+    }
   }
 
   private void writeRowToBulk( RowMetaInterface rowMeta, Object[] r ) throws KettleException {
@@ -439,12 +465,19 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
       // If something went wrong with writing to the fifo, get the underlying error from MySQL
       try {
         logError( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.IOERROR", this.threadWaitTimeText ) );
-        try {
-          data.sqlRunner.join( this.threadWaitTime );
-        } catch ( InterruptedException ex ) {
-          // Ignore errors
+        if ( data.bulkLoader != null ) {
+          BulkLoader bulkLoader = data.bulkLoader;
+          data.bulkLoader = null;
+          bulkLoader.finish();
+        }
+        if ( data.sqlRunner != null ) {
+          try {
+            data.sqlRunner.join( this.threadWaitTime );
+          } catch ( InterruptedException ex ) {
+            // Ignore errors
+          }
+          data.sqlRunner.checkExcn();
         }
-        data.sqlRunner.checkExcn();
       } catch ( Exception loadEx ) {
         throw new KettleException( BaseMessages.getString( PKG, "MySQLBulkLoader.Message.ERRORSERIALIZING" ), loadEx );
       }
@@ -511,6 +544,14 @@ public class MySQLBulkLoader extends BaseStep implements StepInterface {
     // Close the output streams if still needed.
     //
     try {
+      // Cancel a streaming load that didn't finish, closing its stream would load a partial row
+      //
+      if ( data.bulkLoader != null ) {
+        data.bulkLoader.abort();
+        data.bulkLoader = null;
+        data.fifoStream = null;
+      }
+
       if ( data.fifoStream != null ) {
         data.fifoStream.close();
       }
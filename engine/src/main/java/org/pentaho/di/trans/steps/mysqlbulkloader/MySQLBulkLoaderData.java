@@ -29,6 +29,7 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.util.StreamLogger;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.steps.bulkload.BulkLoader;
 
 /**
  * Stores data for the MySQL bulk load step.
@@ -62,6 +63,11 @@ public class MySQLBulkLoaderData extends BaseStepData implements StepDataInterfa
 
   public MySQLBulkLoader.SqlRunner sqlRunner;
 
+  /** True when the rows are streamed to the driver instead of written to a FIFO file */
+  public boolean streaming;
+
+  public BulkLoader bulkLoader;
+
   public ValueMetaInterface[] bulkFormatMeta;
 
   public long bulkSize;
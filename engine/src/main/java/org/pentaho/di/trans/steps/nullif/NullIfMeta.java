@@ -270,4 +270,9 @@ public class NullIfMeta extends BaseStepMeta implements StepMetaInterface {
     return new NullIfData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
 }
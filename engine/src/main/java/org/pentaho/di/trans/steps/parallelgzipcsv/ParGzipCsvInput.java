@@ -25,10 +25,12 @@ package org.pentaho.di.trans.steps.parallelgzipcsv;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.ResultFile;
+import org.pentaho.di.core.compress.gzip.GZIPMemberIndex;
+import org.pentaho.di.core.compress.gzip.ParallelGZIPInputStream;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowDataUtil;
@@ -163,7 +165,7 @@ public class ParGzipCsvInput extends BaseStep implements StepInterface {
 
   private boolean skipToNextBlock() throws KettleException {
 
-    if ( data.eofReached ) {
+    if ( data.eofReached || data.splitByMembers ) {
       return true; // next file please!
     }
     // Reset the bytes read in the current block of data
@@ -286,17 +288,40 @@ public class ParGzipCsvInput extends BaseStep implements StepInterface {
         data.binaryFilename = data.filenames[data.filenr].getBytes();
       }
 
-      data.gzis = new GZIPInputStream( data.fis, data.bufferSize );
-
       clearBuffer();
       data.fileReadPosition = 0L;
       data.blockNr = 0;
       data.eofReached = false;
+      data.splitByMembers = false;
 
       // Skip to the next file...
       //
       data.filenr++;
 
+      // Files with several independent gzip members (written in parallel, bgzip or indexed) are split on member
+      // boundaries: every step copy only decompresses its own share of the members.
+      //
+      GZIPMemberIndex index = null;
+      if ( data.parallel ) {
+        if ( "Y".equalsIgnoreCase( getVariable( Const.KETTLE_GZIP_CREATE_INDEX, "N" ) ) ) {
+          try {
+            index = GZIPMemberIndex.loadOrCreate( fileObject );
+          } catch ( IOException e ) {
+            logBasic( "Unable to create the gzip member index of file " + data.filenames[data.filenr - 1] + " : "
+              + e.getMessage() );
+          }
+        } else {
+          index = GZIPMemberIndex.load( fileObject );
+        }
+      }
+
+      if ( index != null && index.getNrMembers() > 1 ) {
+        data.splitByMembers = true;
+        return openMembers( fileObject, index ) && fileOpened( fileObject );
+      }
+
+      data.gzis = new ParallelGZIPInputStream( data.fis, data.bufferSize );
+
       // If we are running in parallel and we need to skip bytes in the first file, let's do so here.
       //
       if ( data.parallel ) {
@@ -373,22 +398,79 @@ public class ParGzipCsvInput extends BaseStep implements StepInterface {
         }
       }
 
-      // Add filename to result filenames ?
-      if ( meta.isAddResultFile() ) {
-        ResultFile resultFile =
-          new ResultFile( ResultFile.FILE_TYPE_GENERAL, fileObject, getTransMeta().getName(), toString() );
-        resultFile.setComment( "File was read by a Csv input step" );
-        addResultFile( resultFile );
+      return fileOpened( fileObject );
+    } catch ( Exception e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * Positions this step copy on its share of the members of the file: copy k of n reads the members from k*m/n up to
+   * (k+1)*m/n. The rows that start in those members are read, so the last row is read into the next member.
+   *
+   * @return false if this step copy has no members to read in this file
+   */
+  private boolean openMembers( FileObject fileObject, GZIPMemberIndex index ) throws IOException,
+    KettleException {
+    int nrMembers = index.getNrMembers();
+    int firstMember = (int) ( (long) data.stepNumber * nrMembers / data.totalNumberOfSteps );
+    int lastMember = (int) ( (long) ( data.stepNumber + 1 ) * nrMembers / data.totalNumberOfSteps );
+    if ( firstMember >= lastMember ) {
+      data.eofReached = true;
+      return false;
+    }
+
+    long compressedOffset = index.getCompressedOffset( firstMember );
+    long uncompressedOffset = index.getUncompressedOffset( firstMember );
+    if ( log.isDetailed() ) {
+      logDetailed( "Reading gzip members "
+        + firstMember + " to " + ( lastMember - 1 ) + " of " + nrMembers + " (uncompressed position "
+        + uncompressedOffset + ") for step copy " + data.stepNumber );
+    }
+
+    long bytesSkipped = 0L;
+    while ( bytesSkipped < compressedOffset ) {
+      long n = data.fis.skip( compressedOffset - bytesSkipped );
+      if ( n <= 0 ) {
+        data.eofReached = true;
+        return false;
       }
+      bytesSkipped += n;
+    }
+    data.gzis = new ParallelGZIPInputStream( data.fis, index, firstMember, data.bufferSize );
+    data.fileReadPosition = uncompressedOffset;
+    data.totalBytesRead = 0L;
 
-      // Reset the row number pointer...
+    if ( lastMember == nrMembers ) {
+      data.blockSize = Long.MAX_VALUE;
+    } else {
+      data.blockSize = index.getUncompressedOffset( lastMember ) - uncompressedOffset;
+    }
+
+    if ( firstMember > 0 ) {
+      // Skip the first row until the next CR, the previous step copy reads it
       //
-      data.rowNumber = 1L;
+      readOneRow( false );
+    } else if ( meta.isHeaderPresent() ) {
+      readOneRow( false );
+    }
+    return true;
+  }
 
-      return true;
-    } catch ( Exception e ) {
-      throw new KettleException( e );
+  private boolean fileOpened( FileObject fileObject ) {
+    // Add filename to result filenames ?
+    if ( meta.isAddResultFile() ) {
+      ResultFile resultFile =
+        new ResultFile( ResultFile.FILE_TYPE_GENERAL, fileObject, getTransMeta().getName(), toString() );
+      resultFile.setComment( "File was read by a Csv input step" );
+      addResultFile( resultFile );
     }
+
+    // Reset the row number pointer...
+    //
+    data.rowNumber = 1L;
+
+    return true;
   }
 
   private void clearBuffer() {
@@ -32,12 +32,19 @@ package org.pentaho.di.trans.steps.pgbulkloader;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.database.PostgreSQLDatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -50,12 +57,12 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
-import org.postgresql.copy.PGCopyOutputStream;
+import org.pentaho.di.trans.steps.bulkload.BulkLoader;
+import org.pentaho.di.trans.steps.bulkload.PGBinaryCopyEncoder;
+import org.pentaho.di.trans.steps.bulkload.PostgreSQLCopyTarget;
 
 import com.google.common.annotations.VisibleForTesting;
 
-import org.postgresql.PGConnection;
-
 /**
  * Performs a bulk load to a postgres table.
  *
@@ -69,7 +76,6 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
 
   private PGBulkLoaderMeta meta;
   private PGBulkLoaderData data;
-  private PGCopyOutputStream pgCopyOut;
 
   public PGBulkLoader( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
     Trans trans ) {
@@ -82,6 +88,13 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
    * @return a string containing the control file contents
    */
   public String getCopyCommand( ) throws KettleException {
+    return getCopyCommand( false );
+  }
+
+  /**
+   * @param binary true for the binary COPY format, false for CSV
+   */
+  String getCopyCommand( boolean binary ) throws KettleException {
     DatabaseMeta dm = meta.getDatabaseMeta();
 
     StringBuilder contents = new StringBuilder( 500 );
@@ -125,9 +138,13 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
     contents.append( " FROM STDIN" ); // FIFO file
 
     // The "FORMAT" clause
-    contents.append( " WITH CSV DELIMITER AS '" ).append( environmentSubstitute( meta.getDelimiter() ) )
-        .append( "' QUOTE AS '" ).append(
-      environmentSubstitute( meta.getEnclosure() ) ).append( "'" );
+    if ( binary ) {
+      contents.append( " WITH BINARY" );
+    } else {
+      contents.append( " WITH CSV DELIMITER AS '" ).append( environmentSubstitute( meta.getDelimiter() ) )
+          .append( "' QUOTE AS '" ).append(
+        environmentSubstitute( meta.getEnclosure() ) ).append( "'" );
+    }
     contents.append( ";" ).append( Const.CR );
 
     return contents.toString();
@@ -141,14 +158,120 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
 
       processTruncate();
 
-      logBasic( "Launching command: " + copyCmd );
-      pgCopyOut = new PGCopyOutputStream( (PGConnection) data.db.getConnection(), copyCmd );
+      data.binaryEncoder = createBinaryEncoder();
+      if ( data.binaryEncoder != null ) {
+        copyCmd = getCopyCommand( true );
+      }
 
+      // The rows are encoded on this thread while the driver sends them on the thread of the loader
+      //
+      logBasic( "Launching command: " + copyCmd );
+      data.bulkLoader = new BulkLoader( new PostgreSQLCopyTarget( data.db.getConnection(), copyCmd ) );
+      data.pgOutputStream = data.bulkLoader.start( getStepname() + " - COPY" );
+      if ( data.binaryEncoder != null ) {
+        data.binaryEncoder.writeHeader( data.pgOutputStream );
+      }
     } catch ( Exception ex ) {
       throw new KettleException( "Error while preparing the COPY " + copyCmd, ex );
     }
   }
 
+  /**
+   * The binary COPY format saves the server from parsing text, but it needs values of exactly the column type. It is
+   * used when every field maps to its column without conversion, on PostgreSQL itself. Otherwise the rows go as CSV.
+   *
+   * @return the binary encoder or null to use CSV
+   */
+  PGBinaryCopyEncoder createBinaryEncoder() throws KettleException {
+    if ( !PostgreSQLDatabaseMeta.class.equals( meta.getDatabaseMeta().getDatabaseInterface().getClass() ) ) {
+      return null;
+    }
+    try {
+      String[] columnTypes = getColumnTypes();
+      boolean timestamps = false;
+      for ( int i = 0; i < data.keynrs.length; i++ ) {
+        ValueMetaInterface valueMeta = getInputRowMeta().getValueMeta( data.keynrs[i] );
+        String columnType = columnTypes[i];
+        if ( columnType == null || !PGBinaryCopyEncoder.supports( valueMeta, columnType ) ) {
+          return null;
+        }
+        if ( valueMeta.isDate() ) {
+          // Dates are passed through as text or formatted for a date or a timestamp column
+          //
+          boolean timestamp = PGBinaryCopyEncoder.isTimestamp( columnType );
+          switch ( data.dateFormatChoices[i] ) {
+            case PGBulkLoaderMeta.NR_DATE_MASK_DATE:
+              if ( timestamp ) {
+                return null;
+              }
+              break;
+            case PGBulkLoaderMeta.NR_DATE_MASK_DATETIME:
+              if ( !timestamp ) {
+                return null;
+              }
+              break;
+            default:
+              return null;
+          }
+        }
+        timestamps |= PGBinaryCopyEncoder.isTimestamp( columnType );
+      }
+      if ( timestamps ) {
+        RowMetaAndData integerDatetimes = data.db.getOneRow( "SHOW integer_datetimes" );
+        if ( integerDatetimes == null || !"on".equalsIgnoreCase( integerDatetimes.getString( 0, null ) ) ) {
+          return null;
+        }
+      }
+      if ( log.isDetailed() ) {
+        logDetailed( "Using the binary COPY format" );
+      }
+      return new PGBinaryCopyEncoder( getInputRowMeta(), data.keynrs, columnTypes );
+    } catch ( SQLException ex ) {
+      logDetailed( "Unable to determine the column types, using the CSV COPY format: " + ex.getMessage() );
+      return null;
+    }
+  }
+
+  /**
+   * @return the PostgreSQL type name of each table field, null for fields that aren't found
+   */
+  private String[] getColumnTypes() throws SQLException {
+    String schemaName = environmentSubstitute( meta.getSchemaName() );
+    String tableName = environmentSubstitute( meta.getTableName() );
+
+    Map<String, String> types = getColumnTypes( schemaName, tableName );
+    if ( types.isEmpty() ) {
+      // Unquoted names are stored in lower case
+      types = getColumnTypes( schemaName == null ? null : schemaName.toLowerCase(), tableName.toLowerCase() );
+    }
+
+    String[] tableFields = meta.getFieldTable();
+    String[] columnTypes = new String[tableFields.length];
+    for ( int i = 0; i < tableFields.length; i++ ) {
+      columnTypes[i] = types.get( tableFields[i].toLowerCase() );
+    }
+    return columnTypes;
+  }
+
+  private Map<String, String> getColumnTypes( String schemaName, String tableName ) throws SQLException {
+    Map<String, String> types = new HashMap<String, String>();
+    DatabaseMetaData databaseMetaData = data.db.getConnection().getMetaData();
+    ResultSet columns = databaseMetaData.getColumns( null, Utils.isEmpty( schemaName ) ? null : schemaName, tableName,
+      null );
+    try {
+      while ( columns.next() ) {
+        // The names are LIKE patterns, skip the other tables they match
+        if ( tableName.equals( columns.getString( "TABLE_NAME" ) )
+          && ( Utils.isEmpty( schemaName ) || schemaName.equals( columns.getString( "TABLE_SCHEM" ) ) ) ) {
+          types.put( columns.getString( "COLUMN_NAME" ).toLowerCase(), columns.getString( "TYPE_NAME" ) );
+        }
+      }
+    } finally {
+      columns.close();
+    }
+    return types;
+  }
+
   @VisibleForTesting
   Database getDatabase( LoggingObjectInterface parentObject, PGBulkLoaderMeta pgBulkLoaderMeta ) {
     DatabaseMeta dbMeta = pgBulkLoaderMeta.getDatabaseMeta();
@@ -207,12 +330,18 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
 
         setOutputDone();
 
-        // Close the output stream...
+        // End the data and wait for the COPY to finish...
         // will be null if no records (empty stream)
-        if ( data != null ) {
-          pgCopyOut.flush();
-          pgCopyOut.endCopy();
-
+        if ( data.bulkLoader != null ) {
+          if ( data.binaryEncoder != null ) {
+            data.binaryEncoder.writeTrailer( data.pgOutputStream );
+          }
+          BulkLoader bulkLoader = data.bulkLoader;
+          data.bulkLoader = null;
+          long rowsLoaded = bulkLoader.finish();
+          if ( log.isDetailed() ) {
+            logDetailed( "COPY finished, " + rowsLoaded + " rows loaded" );
+          }
         }
 
         return false;
@@ -228,7 +357,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
           data.keynrs[i] = getInputRowMeta().indexOfValue( meta.getFieldStream()[i] );
         }
 
-        // execute the copy statement... pgCopyOut is setup there
+        // execute the copy statement... data.pgOutputStream is setup there
         //
         do_copy( meta, true );
 
@@ -237,7 +366,11 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
         //
       }
 
-      writeRowToPostgres( getInputRowMeta(), r );
+      if ( data.binaryEncoder != null ) {
+        data.binaryEncoder.writeRow( data.pgOutputStream, r );
+      } else {
+        writeRowToPostgres( getInputRowMeta(), r );
+      }
 
       putRow( getInputRowMeta(), r );
       incrementLinesOutput();
@@ -264,7 +397,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
         if ( i > 0 ) {
           // Write a separator
           //
-          pgCopyOut.write( data.separator );
+          data.pgOutputStream.write( data.separator );
         }
 
         int index = data.keynrs[i];
@@ -274,21 +407,21 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
         if ( valueData != null ) {
           switch ( valueMeta.getType() ) {
             case ValueMetaInterface.TYPE_STRING:
-              pgCopyOut.write( data.quote );
+              data.pgOutputStream.write( data.quote );
 
               // No longer dump the bytes for a Lazy Conversion;
               // We need to escape the quote characters in every string
               String quoteStr = new String( data.quote );
               String escapedString = valueMeta.getString( valueData ).replace( quoteStr, quoteStr + quoteStr );
-              pgCopyOut.write( escapedString.getBytes() );
+              data.pgOutputStream.write( escapedString.getBytes() );
 
-              pgCopyOut.write( data.quote );
+              data.pgOutputStream.write( data.quote );
               break;
             case ValueMetaInterface.TYPE_INTEGER:
               if ( valueMeta.isStorageBinaryString() ) {
-                pgCopyOut.write( (byte[]) valueData );
+                data.pgOutputStream.write( (byte[]) valueData );
               } else {
-                pgCopyOut.write( Long.toString( valueMeta.getInteger( valueData ) ).getBytes() );
+                data.pgOutputStream.write( Long.toString( valueMeta.getInteger( valueData ) ).getBytes() );
               }
               break;
             case ValueMetaInterface.TYPE_DATE:
@@ -299,11 +432,11 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
               //
                 case PGBulkLoaderMeta.NR_DATE_MASK_PASS_THROUGH:
                   if ( valueMeta.isStorageBinaryString() ) {
-                    pgCopyOut.write( (byte[]) valueData );
+                    data.pgOutputStream.write( (byte[]) valueData );
                   } else {
                     String dateString = valueMeta.getString( valueData );
                     if ( dateString != null ) {
-                      pgCopyOut.write( dateString.getBytes() );
+                      data.pgOutputStream.write( dateString.getBytes() );
                     }
                   }
                   break;
@@ -313,7 +446,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
                 case PGBulkLoaderMeta.NR_DATE_MASK_DATE:
                   String dateString = data.dateMeta.getString( valueMeta.getDate( valueData ) );
                   if ( dateString != null ) {
-                    pgCopyOut.write( dateString.getBytes() );
+                    data.pgOutputStream.write( dateString.getBytes() );
                   }
                   break;
 
@@ -322,7 +455,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
                 case PGBulkLoaderMeta.NR_DATE_MASK_DATETIME:
                   String dateTimeString = data.dateTimeMeta.getString( valueMeta.getDate( valueData ) );
                   if ( dateTimeString != null ) {
-                    pgCopyOut.write( dateTimeString.getBytes() );
+                    data.pgOutputStream.write( dateTimeString.getBytes() );
                   }
                   break;
 
@@ -338,11 +471,11 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
               //
                 case PGBulkLoaderMeta.NR_DATE_MASK_PASS_THROUGH:
                   if ( valueMeta.isStorageBinaryString() ) {
-                    pgCopyOut.write( (byte[]) valueData );
+                    data.pgOutputStream.write( (byte[]) valueData );
                   } else {
                     String dateString = valueMeta.getString( valueData );
                     if ( dateString != null ) {
-                      pgCopyOut.write( dateString.getBytes() );
+                      data.pgOutputStream.write( dateString.getBytes() );
                     }
                   }
                   break;
@@ -352,7 +485,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
                 case PGBulkLoaderMeta.NR_DATE_MASK_DATE:
                   String dateString = data.dateMeta.getString( valueMeta.getDate( valueData ) );
                   if ( dateString != null ) {
-                    pgCopyOut.write( dateString.getBytes() );
+                    data.pgOutputStream.write( dateString.getBytes() );
                   }
                   break;
 
@@ -361,7 +494,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
                 case PGBulkLoaderMeta.NR_DATE_MASK_DATETIME:
                   String dateTimeString = data.dateTimeMeta.getString( valueMeta.getDate( valueData ) );
                   if ( dateTimeString != null ) {
-                    pgCopyOut.write( dateTimeString.getBytes() );
+                    data.pgOutputStream.write( dateTimeString.getBytes() );
                   }
                   break;
 
@@ -371,25 +504,25 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
               break;
             case ValueMetaInterface.TYPE_BOOLEAN:
               if ( valueMeta.isStorageBinaryString() ) {
-                pgCopyOut.write( (byte[]) valueData );
+                data.pgOutputStream.write( (byte[]) valueData );
               } else {
-                pgCopyOut.write( Double.toString( valueMeta.getNumber( valueData ) ).getBytes() );
+                data.pgOutputStream.write( Double.toString( valueMeta.getNumber( valueData ) ).getBytes() );
               }
               break;
             case ValueMetaInterface.TYPE_NUMBER:
               if ( valueMeta.isStorageBinaryString() ) {
-                pgCopyOut.write( (byte[]) valueData );
+                data.pgOutputStream.write( (byte[]) valueData );
               } else {
-                pgCopyOut.write( Double.toString( valueMeta.getNumber( valueData ) ).getBytes() );
+                data.pgOutputStream.write( Double.toString( valueMeta.getNumber( valueData ) ).getBytes() );
               }
               break;
             case ValueMetaInterface.TYPE_BIGNUMBER:
               if ( valueMeta.isStorageBinaryString() ) {
-                pgCopyOut.write( (byte[]) valueData );
+                data.pgOutputStream.write( (byte[]) valueData );
               } else {
                 BigDecimal big = valueMeta.getBigNumber( valueData );
                 if ( big != null ) {
-                  pgCopyOut.write( big.toString().getBytes() );
+                  data.pgOutputStream.write( big.toString().getBytes() );
                 }
               }
               break;
@@ -401,7 +534,7 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
 
       // Now write a newline
       //
-      pgCopyOut.write( data.newline );
+      data.pgOutputStream.write( data.newline );
     } catch ( Exception e ) {
       throw new KettleException( "Error serializing rows of data to the COPY command", e );
     }
@@ -446,4 +579,18 @@ public class PGBulkLoader extends BaseStep implements StepInterface {
     return false;
   }
 
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (PGBulkLoaderMeta) smi;
+    data = (PGBulkLoaderData) sdi;
+
+    // Cancel a COPY that didn't finish, because of an error or because the transformation was stopped
+    //
+    if ( data.bulkLoader != null ) {
+      data.bulkLoader.abort();
+      data.bulkLoader = null;
+    }
+
+    super.dispose( smi, sdi );
+  }
+
 }
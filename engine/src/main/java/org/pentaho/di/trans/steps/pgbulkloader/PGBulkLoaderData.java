@@ -30,6 +30,8 @@ import org.pentaho.di.core.row.value.ValueMetaDate;
 import org.pentaho.di.core.util.StreamLogger;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.steps.bulkload.BulkLoader;
+import org.pentaho.di.trans.steps.bulkload.PGBinaryCopyEncoder;
 import org.postgresql.PGConnection;
 
 /**
@@ -51,6 +53,10 @@ public class PGBulkLoaderData extends BaseStepData implements StepDataInterface
 
   public OutputStream pgOutputStream;
 
+  public BulkLoader bulkLoader;
+
+  public PGBinaryCopyEncoder binaryEncoder;
+
   public byte[] quote;
   public byte[] separator;
   public byte[] newline;
@@ -22,10 +22,12 @@
 
 package org.pentaho.di.trans.steps.recordsfromstream;
 
+import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.rowsfromresult.RowsFromResult;
 
 public class RecordsFromStream extends RowsFromResult {
@@ -34,4 +36,23 @@ public class RecordsFromStream extends RowsFromResult {
                             final TransMeta transMeta, final Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
   }
+
+  /**
+   * Reads the rows of the batch from the previous result, or from a row producer when the sub-transformation keeps
+   * running between batches (see {@link org.pentaho.di.trans.SubtransExecutor#setContinuous(boolean)}).
+   */
+  @Override
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    if ( getInputRowSets().isEmpty() ) {
+      return super.processRow( smi, sdi );
+    }
+
+    Object[] row = getRow();
+    if ( row == null ) {
+      setOutputDone();
+      return false;
+    }
+    putRow( getInputRowMeta(), row );
+    return true;
+  }
 }
@@ -542,6 +542,11 @@ public class ReplaceStringMeta extends BaseStepMeta implements StepMetaInterface
     return new ReplaceStringData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   public boolean supportsErrorHandling() {
     return true;
   }
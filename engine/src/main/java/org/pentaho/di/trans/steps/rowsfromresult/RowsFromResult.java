@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -53,16 +53,23 @@ public class RowsFromResult extends BaseStep implements StepInterface {
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
-    Result previousResult = getTrans().getPreviousResult();
-    if ( previousResult == null || getLinesRead() >= previousResult.getRows().size() ) {
+    data = (RowsFromResultData) sdi;
+
+    if ( first ) {
+      first = false;
+      // Read the rows one by one, the result rows may be read back from disk
+      Result previousResult = getTrans().getPreviousResult();
+      if ( previousResult != null && previousResult.getRows() != null ) {
+        data.rows = previousResult.getRows().iterator();
+      }
+    }
+    if ( data.rows == null || !data.rows.hasNext() ) {
       setOutputDone();
       return false;
     }
-    RowMetaAndData row = previousResult.getRows().get( (int) getLinesRead() );
+    RowMetaAndData row = data.rows.next();
     incrementLinesRead();
 
-    data = (RowsFromResultData) sdi;
-
     // We don't get the meta-data from the previous steps (there aren't any) but from the previous transformation or job
     //
     data.outputRowMeta = row.getRowMeta();
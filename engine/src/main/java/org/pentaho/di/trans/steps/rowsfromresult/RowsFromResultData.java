@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,6 +22,9 @@
 
 package org.pentaho.di.trans.steps.rowsfromresult;
 
+import java.util.Iterator;
+
+import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -33,6 +36,8 @@ import org.pentaho.di.trans.step.StepDataInterface;
 public class RowsFromResultData extends BaseStepData implements StepDataInterface {
   public RowMetaInterface outputRowMeta;
 
+  public Iterator<RowMetaAndData> rows;
+
   public RowsFromResultData() {
     super();
   }
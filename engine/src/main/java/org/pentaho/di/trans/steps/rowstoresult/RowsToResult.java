@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,6 +22,8 @@
 
 package org.pentaho.di.trans.steps.rowstoresult;
 
+import java.util.List;
+
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.i18n.BaseMessages;
@@ -57,15 +59,15 @@ public class RowsToResult extends BaseStep implements StepInterface {
 
     Object[] r = getRow(); // get row, set busy!
     if ( r == null ) { // no more input to be expected...
-
-      getTrans().getResultRows().addAll( data.rows );
-
       setOutputDone();
       return false;
     }
 
-    // Add all rows to rows buffer...
-    data.rows.add( new RowMetaAndData( getInputRowMeta(), r ) );
+    // Add the row to the result rows right away, they are written to disk when there are too many to keep in memory
+    List<RowMetaAndData> resultRows = getTrans().getResultRows();
+    synchronized ( resultRows ) {
+      resultRows.add( new RowMetaAndData( getInputRowMeta(), r ) );
+    }
     data.outputRowMeta = getInputRowMeta().clone();
     meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
     putRow( data.outputRowMeta, r ); // copy row to possible alternate
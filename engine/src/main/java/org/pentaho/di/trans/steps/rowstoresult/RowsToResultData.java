@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,10 +22,6 @@
 
 package org.pentaho.di.trans.steps.rowstoresult;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -35,13 +31,10 @@ import org.pentaho.di.trans.step.StepDataInterface;
  * @since 24-jan-2005
  */
 public class RowsToResultData extends BaseStepData implements StepDataInterface {
-  public List<RowMetaAndData> rows;
   public RowMetaInterface outputRowMeta;
 
   public RowsToResultData() {
     super();
-
-    rows = new ArrayList<RowMetaAndData>();
   }
 
 }
@@ -89,6 +89,7 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
   private boolean[] replace; // Replace the specified field.
 
   private boolean compatible;
+  private boolean compiled;
   private String optimizationLevel;
 
   public ScriptValuesMetaMod() {
@@ -229,6 +230,7 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
       String script = XMLHandler.getTagValue( stepnode, "script" );
       String strCompatible = XMLHandler.getTagValue( stepnode, "compatible" );
       optimizationLevel = XMLHandler.getTagValue( stepnode, "optimizationLevel" );
+      compiled = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compiled" ) );
 
       if ( strCompatible == null ) {
         compatible = true;
@@ -299,6 +301,7 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
     }
 
     compatible = false;
+    compiled = false;
     optimizationLevel = OPTIMIZATION_LEVEL_DEFAULT;
   }
 
@@ -361,6 +364,7 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "compatible", compatible ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "optimizationLevel", optimizationLevel ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "compiled", compiled ) );
 
     retval.append( "    <jsScripts>" );
     for ( int i = 0; i < jsScripts.length; i++ ) {
@@ -396,6 +400,7 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
       String script = rep.getStepAttributeString( id_step, "script" );
       compatible = rep.getStepAttributeBoolean( id_step, 0, "compatible", true );
       optimizationLevel = rep.getStepAttributeString( id_step, 0, "optimizationLevel" );
+      compiled = rep.getStepAttributeBoolean( id_step, 0, "compiled", false );
 
       // When in compatibility mode, we load the script, not the other tabs...
       //
@@ -434,6 +439,7 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
     try {
       rep.saveStepAttribute( id_transformation, id_step, 0, "compatible", compatible );
       rep.saveStepAttribute( id_transformation, id_step, 0, "optimizationLevel", optimizationLevel );
+      rep.saveStepAttribute( id_transformation, id_step, 0, "compiled", compiled );
 
       for ( int i = 0; i < jsScripts.length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, JSSCRIPT_TAG_NAME, jsScripts[i].getScriptName() );
@@ -938,6 +944,22 @@ public class ScriptValuesMetaMod extends BaseStepMeta implements StepMetaInterfa
     this.compatible = compatible;
   }
 
+  /**
+   * @return true if the transform script is run as a function with the used fields as parameters
+   */
+  public boolean isCompiled() {
+    return compiled;
+  }
+
+  /**
+   * @param compiled
+   *          true to run the transform script as a function with the used fields as parameters. Variables declared
+   *          with var in the transform script then only live for the duration of one row.
+   */
+  public void setCompiled( boolean compiled ) {
+    this.compiled = compiled;
+  }
+
   public boolean supportsErrorHandling() {
     return true;
   }
@@ -22,8 +22,12 @@
 
 package org.pentaho.di.trans.steps.scriptvalues_mod;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
@@ -31,6 +35,7 @@ import org.mozilla.javascript.EvaluatorException;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
 import org.pentaho.di.compatibility.Row;
 import org.pentaho.di.compatibility.Value;
 import org.pentaho.di.compatibility.ValueUsedListener;
@@ -75,6 +80,15 @@ public class ScriptValuesMod extends BaseStep implements StepInterface {
 
   public static final int CONTINUE_TRANSFORMATION = 0;
 
+  private static final Pattern IDENTIFIER = Pattern.compile( "[A-Za-z_$][A-Za-z0-9_$]*" );
+
+  private static final Pattern ROW_REFERENCE = Pattern.compile( "\\brow\\b" );
+
+  private static final Set<String> RESERVED_WORDS = new HashSet<String>( Arrays.asList( "break", "case", "catch",
+    "class", "const", "continue", "debugger", "default", "delete", "do", "else", "enum", "export", "extends", "false",
+    "finally", "for", "function", "if", "import", "in", "instanceof", "let", "new", "null", "return", "super",
+    "switch", "this", "throw", "true", "try", "typeof", "var", "void", "while", "with", "yield" ) );
+
   private boolean bWithTransStat = false;
 
   private boolean bRC = false;
@@ -316,7 +330,11 @@ public class ScriptValuesMod extends BaseStep implements StepInterface {
 
         }
         // Now Compile our Script
-        data.script = data.cx.compileString( strTransformScript, "script", 1, null );
+        if ( meta.isCompiled() && canCompileFunction( rowMeta ) ) {
+          compileFunction( rowMeta );
+        } else {
+          data.script = data.cx.compileString( strTransformScript, "script", 1, null );
+        }
       } catch ( Exception e ) {
         throw new KettleValueException( BaseMessages.getString(
           PKG, "ScriptValuesMod.Log.CouldNotCompileJavascript" ), e );
@@ -330,6 +348,10 @@ public class ScriptValuesMod extends BaseStep implements StepInterface {
     // Keep an index...
     int outputIndex = rowMeta.size();
 
+    if ( data.function != null ) {
+      return addValuesCompiled( rowMeta, row, outputRow, outputIndex );
+    }
+
     // Keep track of the changed values...
     //
     final Map<Integer, Value> usedRowValues;
@@ -443,30 +465,7 @@ public class ScriptValuesMod extends BaseStep implements StepInterface {
         }
         putRow( data.outputRowMeta, outputRow );
       } else {
-        switch ( iTranStat ) {
-          case SKIP_TRANSFORMATION:
-            // eat this row.
-            bRC = true;
-            break;
-          case ABORT_TRANSFORMATION:
-            if ( data.cx != null ) {
-              Context.exit();
-            }
-            stopAll();
-            setOutputDone();
-            bRC = false;
-            break;
-          case ERROR_TRANSFORMATION:
-            if ( data.cx != null ) {
-              Context.exit();
-            }
-            setErrors( 1 );
-            stopAll();
-            bRC = false;
-            break;
-          default:
-            break;
-        }
+        handleTransStatus();
 
         // TODO: kick this "ERROR handling" junk out now that we have solid error handling in place.
         //
@@ -477,6 +476,176 @@ public class ScriptValuesMod extends BaseStep implements StepInterface {
     return bRC;
   }
 
+  private void handleTransStatus() {
+    switch ( iTranStat ) {
+      case SKIP_TRANSFORMATION:
+        // eat this row.
+        bRC = true;
+        break;
+      case ABORT_TRANSFORMATION:
+        if ( data.cx != null ) {
+          Context.exit();
+        }
+        stopAll();
+        setOutputDone();
+        bRC = false;
+        break;
+      case ERROR_TRANSFORMATION:
+        if ( data.cx != null ) {
+          Context.exit();
+        }
+        setErrors( 1 );
+        stopAll();
+        bRC = false;
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * The transform script can only run as a function when all the used fields and the result fields can be named
+   * in JavaScript. The compatibility mode binds Value objects to the fields and keeps using the scope.
+   */
+  private boolean canCompileFunction( RowMetaInterface rowMeta ) {
+    if ( meta.isCompatible() ) {
+      logBasic( BaseMessages.getString( PKG, "ScriptValuesMod.Log.CompiledModeNotCompatible" ) );
+      return false;
+    }
+    for ( int i = 0; i < data.fields_used.length; i++ ) {
+      String name = rowMeta.getValueMeta( data.fields_used[ i ] ).getName();
+      if ( !isIdentifier( name ) ) {
+        logBasic( BaseMessages.getString( PKG, "ScriptValuesMod.Log.CompiledModeInvalidName", name ) );
+        return false;
+      }
+    }
+    for ( int i = 0; i < meta.getFieldname().length; i++ ) {
+      if ( !isIdentifier( meta.getFieldname()[ i ] ) ) {
+        logBasic( BaseMessages.getString( PKG, "ScriptValuesMod.Log.CompiledModeInvalidName",
+          meta.getFieldname()[ i ] ) );
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean isIdentifier( String name ) {
+    return name != null && IDENTIFIER.matcher( name ).matches() && !RESERVED_WORDS.contains( name );
+  }
+
+  /**
+   * Wraps the transform script in a function with the used fields as parameters. The function returns the result
+   * fields followed by the transformation status, so nothing has to be looked up in the scope after a row. The
+   * function header is put on the first line of the script to keep the line numbers in the error messages.
+   */
+  private void compileFunction( RowMetaInterface rowMeta ) {
+    Set<String> parameters = new HashSet<String>();
+    StringBuilder source = new StringBuilder( strTransformScript.length() + 200 );
+    source.append( "function _transform_(" );
+    for ( int i = 0; i < data.fields_used.length; i++ ) {
+      String name = rowMeta.getValueMeta( data.fields_used[ i ] ).getName();
+      source.append( i > 0 ? "," : "" ).append( name );
+      parameters.add( name );
+    }
+    int nrArguments = data.fields_used.length;
+
+    // The row and the row metadata are only passed when the script refers to them
+    //
+    data.rowArgument = -1;
+    int rowMetaArgument = -1;
+    if ( !parameters.contains( "row" ) && ROW_REFERENCE.matcher( strTransformScript ).find() ) {
+      source.append( nrArguments > 0 ? "," : "" ).append( "row" );
+      data.rowArgument = nrArguments++;
+    }
+    if ( !parameters.contains( "rowMeta" ) && strTransformScript.contains( "rowMeta" ) ) {
+      source.append( nrArguments > 0 ? "," : "" ).append( "rowMeta" );
+      rowMetaArgument = nrArguments++;
+    }
+
+    // A result that is never assigned gives undefined, like a missing variable does in the standard mode
+    //
+    source.append( ") {" ).append( strTransformScript ).append( Const.CR ).append( ";return [" );
+    for ( int i = 0; i < meta.getFieldname().length; i++ ) {
+      appendResult( source, meta.getFieldname()[ i ] ).append( ',' );
+    }
+    appendResult( source, "trans_Status" ).append( "];" ).append( Const.CR ).append( '}' );
+
+    data.function = data.cx.compileFunction( data.scope, source.toString(), "script", 1, null );
+    data.arguments = new Object[ nrArguments ];
+    if ( rowMetaArgument >= 0 ) {
+      data.arguments[ rowMetaArgument ] = Context.toObject( rowMeta, data.scope );
+    }
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "ScriptValuesMod.Log.CompiledMode", String
+        .valueOf( data.fields_used.length ) ) );
+    }
+  }
+
+  private static StringBuilder appendResult( StringBuilder source, String name ) {
+    return source.append( "typeof " ).append( name ).append( " == 'undefined' ? undefined : " ).append( name );
+  }
+
+  /**
+   * Runs one row through the compiled function. The field values are passed in a re-used argument array as plain
+   * JavaScript values: strings, numbers and booleans are not wrapped.
+   */
+  private boolean addValuesCompiled( RowMetaInterface rowMeta, Object[] row, Object[] outputRow, int outputIndex )
+    throws KettleException {
+    try {
+      Object[] arguments = data.arguments;
+      for ( int i = 0; i < data.fields_used.length; i++ ) {
+        ValueMetaInterface valueMeta = rowMeta.getValueMeta( data.fields_used[ i ] );
+        arguments[ i ] = toJsArgument( valueMeta.convertToNormalStorageType( row[ data.fields_used[ i ] ] ) );
+      }
+      if ( data.rowArgument >= 0 ) {
+        arguments[ data.rowArgument ] = Context.toObject( row, data.scope );
+      }
+
+      Scriptable results = (Scriptable) data.function.call( data.cx, data.scope, data.scope, arguments );
+
+      int nrFields = meta.getFieldname().length;
+      Object status = results.get( nrFields, results );
+      if ( status == null || status instanceof Undefined ) {
+        iTranStat = CONTINUE_TRANSFORMATION;
+      } else {
+        iTranStat = (int) Context.toNumber( status );
+      }
+
+      if ( iTranStat == CONTINUE_TRANSFORMATION ) {
+        bRC = true;
+        for ( int i = 0; i < nrFields; i++ ) {
+          Object valueData = getValueFromJScript( results.get( i, results ), i );
+          if ( data.replaceIndex[ i ] < 0 ) {
+            outputRow[ outputIndex++ ] = valueData;
+          } else {
+            outputRow[ data.replaceIndex[ i ] ] = valueData;
+          }
+        }
+        putRow( data.outputRowMeta, outputRow );
+      } else {
+        handleTransStatus();
+      }
+    } catch ( Exception e ) {
+      throw new KettleValueException( BaseMessages.getString( PKG, "ScriptValuesMod.Log.JavascriptError" ), e );
+    }
+    return bRC;
+  }
+
+  /**
+   * Numbers are passed as doubles, just like the standard mode does with its Number objects. Dates, binaries and
+   * other objects are wrapped.
+   */
+  private Object toJsArgument( Object value ) {
+    if ( value == null || value instanceof String || value instanceof Boolean || value instanceof Double ) {
+      return value;
+    }
+    if ( value instanceof Number ) {
+      return ( (Number) value ).doubleValue();
+    }
+    return Context.javaToJS( value, data.scope );
+  }
+
   public Object getValueFromJScript( Object result, int i ) throws KettleValueException {
     String fieldName = meta.getFieldname()[ i ];
     if ( !Utils.isEmpty( fieldName ) ) {
@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.scriptvalues_mod;
 
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.pentaho.di.compatibility.Value;
@@ -40,6 +41,13 @@ public class ScriptValuesModData extends BaseStepData implements StepDataInterfa
   public Scriptable scope;
   public Script script;
 
+  /** The transform script compiled as a function of the used fields, null when not running in compiled mode */
+  public Function function;
+  /** The arguments of the function, re-used for every row */
+  public Object[] arguments;
+  /** The index of the row argument, -1 if the script doesn't use the row */
+  public int rowArgument;
+
   public int[] fields_used;
   public Value[] values_used;
 
@@ -50,6 +58,7 @@ public class ScriptValuesModData extends BaseStepData implements StepDataInterfa
     super();
     cx = null;
     fields_used = null;
+    rowArgument = -1;
   }
 
   public void check( int i ) {
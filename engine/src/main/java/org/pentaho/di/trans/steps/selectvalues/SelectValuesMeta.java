@@ -815,6 +815,11 @@ public class SelectValuesMeta extends BaseStepMeta implements StepMetaInterface
     return new SelectValuesData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   /**
    * @return the selectingAndSortingUnspecifiedFields
    */
@@ -315,6 +315,11 @@ public class SetValueConstantMeta extends BaseStepMeta implements StepMetaInterf
     return new SetValueConstantData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   public boolean supportsErrorHandling() {
     return true;
   }
@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,30 +22,18 @@
 
 package org.pentaho.di.trans.steps.sort;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemException;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
-import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
-import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.core.spill.SpillFile;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -86,6 +74,7 @@ public class SortRows extends BaseStep implements StepInterface {
 
     // Save row
     data.buffer.add( r );
+    boolean memoryAvailable = data.memory.add( 1 );
 
     // Check the free memory every 1000 rows...
     //
@@ -106,7 +95,7 @@ public class SortRows extends BaseStep implements StepInterface {
     }
 
     // Buffer is full: sort & dump to disk
-    boolean doSort = data.buffer.size() == data.sortSize;
+    boolean doSort = data.buffer.size() == data.sortSize || !memoryAvailable;
     doSort |=
         data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit
             && data.buffer.size() >= data.minSortSize;
@@ -132,62 +121,26 @@ public class SortRows extends BaseStep implements StepInterface {
     quickSort( data.buffer );
 
     // Then write them to disk...
-    DataOutputStream dos;
-    GZIPOutputStream gzos;
-    int p;
-
     try {
-      FileObject fileObject =
-          KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
-              getTransMeta() );
-
-      data.files.add( fileObject ); // Remember the files!
-      OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
-      if ( data.compressFiles ) {
-        gzos = new GZIPOutputStream( new BufferedOutputStream( outputStream ) );
-        dos = new DataOutputStream( gzos );
-      } else {
-        dos = new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
-        gzos = null;
-      }
+      SpillFile file =
+          getSpillManager().createFile( meta.getPrefix(), environmentSubstitute( meta.getDirectory() ),
+              getTransMeta(), data.outputRowMeta, data.compressFiles );
+
+      data.files.add( file ); // Remember the files!
 
       // Just write the data, nothing else
-      List<Integer> duplicates = new ArrayList<Integer>();
       Object[] previousRow = null;
-      if ( meta.isOnlyPassingUniqueRows() ) {
-        int index = 0;
-        while ( index < data.buffer.size() ) {
-          Object[] row = data.buffer.get( index );
-          if ( previousRow != null ) {
-            int result = data.outputRowMeta.compare( row, previousRow, data.fieldnrs );
-            if ( result == 0 ) {
-              duplicates.add( index );
-              if ( log.isRowLevel() ) {
-                logRowlevel( BaseMessages.getString( PKG, "SortRows.RowLevel.DuplicateRowRemoved", data.outputRowMeta
-                    .getString( row ) ) );
-              }
-            }
-          }
-          index++;
-          previousRow = row;
-        }
-      }
-
-      // How many records do we have left?
-      data.bufferSizes.add( data.buffer.size() - duplicates.size() );
-
-      int duplicatesIndex = 0;
-      for ( p = 0; p < data.buffer.size(); p++ ) {
-        boolean skip = false;
-        if ( duplicatesIndex < duplicates.size() ) {
-          if ( p == duplicates.get( duplicatesIndex ) ) {
-            skip = true;
-            duplicatesIndex++;
+      for ( Object[] row : data.buffer ) {
+        if ( meta.isOnlyPassingUniqueRows() && previousRow != null
+            && data.outputRowMeta.compare( row, previousRow, data.fieldnrs ) == 0 ) {
+          if ( log.isRowLevel() ) {
+            logRowlevel( BaseMessages.getString( PKG, "SortRows.RowLevel.DuplicateRowRemoved", data.outputRowMeta
+                .getString( row ) ) );
           }
+        } else {
+          file.add( row );
         }
-        if ( !skip ) {
-          data.outputRowMeta.writeData( dos, data.buffer.get( p ) );
-        }
+        previousRow = row;
       }
 
       if ( data.sortSize < 0 ) {
@@ -205,13 +158,10 @@ public class SortRows extends BaseStep implements StepInterface {
 
       // Clear the list
       data.buffer.clear();
+      data.memory.release();
 
       // Close temp-file
-      dos.close(); // close data stream
-      if ( gzos != null ) {
-        gzos.close(); // close gzip stream
-      }
-      outputStream.close(); // close file stream
+      file.finish();
 
       // How much memory do we have left?
       //
@@ -230,43 +180,30 @@ public class SortRows extends BaseStep implements StepInterface {
     data.getBufferIndex = 0;
   }
 
-  private DataInputStream getDataInputStream( GZIPInputStream gzipInputStream ) {
-    DataInputStream result = new DataInputStream( gzipInputStream );
-    data.gzis.add( gzipInputStream );
-    return result;
-  }
-
   // get sorted rows from available files in iterative manner.
   // that means call to this method will continue to return rows
   // till all temp files will not be read to the end.
-  Object[] getBuffer() throws KettleValueException {
+  Object[] getBuffer() throws KettleException {
     Object[] retval;
 
     // Open all files at once and read one row from each file...
-    if ( data.files.size() > 0 && ( data.dis.size() == 0 || data.fis.size() == 0 ) ) {
+    if ( data.files.size() > 0 && data.readers.size() == 0 ) {
       if ( log.isBasic() ) {
         logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
       }
 
       try {
         for ( int f = 0; f < data.files.size() && !isStopped(); f++ ) {
-          FileObject fileObject = data.files.get( f );
-          String filename = KettleVFS.getFilename( fileObject );
+          SpillFile file = data.files.get( f );
+          String filename = file.toString();
           if ( log.isDetailed() ) {
             logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
           }
-          InputStream fi = KettleVFS.getInputStream( fileObject );
-          DataInputStream di;
-          data.fis.add( fi );
-          if ( data.compressFiles ) {
-            di = getDataInputStream( new GZIPInputStream( new BufferedInputStream( fi ) ) );
-          } else {
-            di = new DataInputStream( new BufferedInputStream( fi, 50000 ) );
-          }
-          data.dis.add( di );
+          SpillReader reader = file.openReader();
+          data.readers.add( reader );
 
           // How long is the buffer?
-          int buffersize = data.bufferSizes.get( f );
+          long buffersize = file.getRowCount();
 
           if ( log.isDetailed() ) {
             logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows",
@@ -274,7 +211,7 @@ public class SortRows extends BaseStep implements StepInterface {
           }
 
           if ( buffersize > 0 ) {
-            Object[] row = data.outputRowMeta.readData( di );
+            Object[] row = reader.next();
             data.rowbuffer.add( row ); // new row from input stream
             data.tempRows.add( new RowTempFile( row, f ) );
           }
@@ -318,12 +255,11 @@ public class SortRows extends BaseStep implements StepInterface {
 
         // now get another Row for position smallest
 
-        FileObject file = data.files.get( smallest );
-        DataInputStream di = data.dis.get( smallest );
-        InputStream fi = data.fis.get( smallest );
+        SpillFile file = data.files.get( smallest );
+        SpillReader reader = data.readers.get( smallest );
 
-        try {
-          Object[] row2 = data.outputRowMeta.readData( di );
+        Object[] row2 = reader.next();
+        if ( row2 != null ) {
           RowTempFile extra = new RowTempFile( row2, smallest );
 
           int index = Collections.binarySearch( data.tempRows, extra, data.comparator );
@@ -332,16 +268,9 @@ public class SortRows extends BaseStep implements StepInterface {
           } else {
             data.tempRows.add( index, extra );
           }
-        } catch ( KettleFileException fe ) { // empty file or EOF mostly
-          GZIPInputStream gzfi = ( data.compressFiles ) ? data.gzis.get( smallest ) : null;
-          try {
-            di.close();
-            fi.close();
-            if ( gzfi != null ) {
-              gzfi.close();
-            }
-            file.delete();
-          } catch ( IOException e ) {
+        } else { // end of the file
+          reader.close();
+          if ( !file.delete() ) {
             logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", smallest, file.toString() ) );
             setErrors( 1 );
             stopAll();
@@ -349,12 +278,7 @@ public class SortRows extends BaseStep implements StepInterface {
           }
 
           data.files.remove( smallest );
-          data.dis.remove( smallest );
-          data.fis.remove( smallest );
-
-          if ( gzfi != null ) {
-            data.gzis.remove( smallest );
-          }
+          data.readers.remove( smallest );
 
           // Also update all file numbers in in data.tempRows if they are larger
           // than smallest.
@@ -364,8 +288,6 @@ public class SortRows extends BaseStep implements StepInterface {
               rtf.fileNumber--;
             }
           }
-        } catch ( SocketTimeoutException e ) {
-          throw new KettleValueException( e ); // should never happen on local files
         }
       }
     }
@@ -580,6 +502,8 @@ public class SortRows extends BaseStep implements StepInterface {
 
     data.minSortSize = 5000;
 
+    data.memory = getSpillManager().openAccount();
+
     return true;
   }
 
@@ -596,29 +520,24 @@ public class SortRows extends BaseStep implements StepInterface {
     data.getBufferIndex = 0;
     data.rowbuffer.clear();
 
-    // close any open DataInputStream objects
-    if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
-      for ( DataInputStream dis : data.dis ) {
-        BaseStep.closeQuietly( dis );
-      }
+    if ( data.memory != null ) {
+      data.memory.release();
     }
-    // close any open InputStream objects
-    if ( ( data.fis != null ) && ( data.fis.size() > 0 ) ) {
-      for ( InputStream is : data.fis ) {
-        BaseStep.closeQuietly( is );
-      }
+
+    // close any open readers
+    for ( SpillReader reader : data.readers ) {
+      reader.close();
     }
+    data.readers.clear();
     // remove temp files
-    for ( int f = 0; f < data.files.size(); f++ ) {
-      FileObject fileToDelete = data.files.get( f );
-      try {
-        if ( fileToDelete != null && fileToDelete.exists() ) {
-          fileToDelete.delete();
-        }
-      } catch ( FileSystemException e ) {
-        logError( e.getLocalizedMessage(), e );
+    for ( SpillFile file : data.files ) {
+      if ( !file.delete() ) {
+        logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", data.files.indexOf( file ),
+            file.toString() ) );
       }
     }
+    data.files.clear();
+    data.tempRows.clear();
   }
 
   /**
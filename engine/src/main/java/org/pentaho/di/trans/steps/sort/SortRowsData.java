@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,15 +22,15 @@
 
 package org.pentaho.di.trans.steps.sort;
 
-import java.io.DataInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.spill.SpillFile;
+import org.pentaho.di.core.spill.SpillManager;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -39,15 +39,13 @@ import org.pentaho.di.trans.step.StepDataInterface;
  * @since 24-jan-2005
  */
 public class SortRowsData extends BaseStepData implements StepDataInterface {
-  public List<FileObject> files;
+  public List<SpillFile> files;
   public List<Object[]> buffer;
   public int getBufferIndex;
 
-  public List<InputStream> fis;
-  public List<GZIPInputStream> gzis;
-  public List<DataInputStream> dis;
+  public List<SpillReader> readers;
   public List<Object[]> rowbuffer;
-  public List<Integer> bufferSizes;
+  public SpillManager.MemoryAccount memory;
 
   // To store rows and file references
   public List<RowTempFile> tempRows;
@@ -79,11 +77,8 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public SortRowsData() {
     super();
 
-    files = new ArrayList<FileObject>();
-    fis = new ArrayList<InputStream>();
-    gzis = new ArrayList<GZIPInputStream>();
-    dis = new ArrayList<DataInputStream>();
-    bufferSizes = new ArrayList<Integer>();
+    files = new ArrayList<SpillFile>();
+    readers = new ArrayList<SpillReader>();
 
     previous = null; // Heroic
   }
@@ -334,6 +334,11 @@ public class StringCutMeta extends BaseStepMeta implements StepMetaInterface {
     return new StringCutData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   public boolean supportsErrorHandling() {
     return true;
   }
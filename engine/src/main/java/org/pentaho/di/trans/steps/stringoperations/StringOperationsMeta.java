@@ -637,6 +637,11 @@ public class StringOperationsMeta extends BaseStepMeta implements StepMetaInterf
     return new StringOperationsData();
   }
 
+  @Override
+  public boolean supportsFusion() {
+    return true;
+  }
+
   @Override
   public boolean supportsErrorHandling() {
     return true;
@@ -29,6 +29,7 @@ import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.core.database.BatchUpsert;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.database.OracleDatabaseMeta;
@@ -822,12 +823,28 @@ public class SynchronizeAfterMerge extends BaseStep implements StepInterface {
         }
       }
 
+      if ( meta.isSetBasedUpsert() ) {
+        if ( isSetBasedUpsertPossible() ) {
+          prepareBatchUpsert();
+        } else if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SynchronizeAfterMerge.Log.SetBasedUpsertNotPossible" ) );
+        }
+      }
+
     } // end if first
 
     try {
-      lookupValues( nextRow ); // add new values to the row in rowset[0].
-      if ( !data.batchMode ) {
-        putRow( data.outputRowMeta, nextRow ); // copy row to output rowset(s);
+      if ( data.batchUpsert != null && isUpsert( nextRow ) ) {
+        addToBatch( nextRow );
+      } else {
+        if ( data.batchUpsert != null ) {
+          // Keep the order of the upserts and the deletes
+          writeBatch();
+        }
+        lookupValues( nextRow ); // add new values to the row in rowset[0].
+        if ( !data.batchMode ) {
+          putRow( data.outputRowMeta, nextRow ); // copy row to output rowset(s);
+        }
       }
 
       if ( checkFeedback( getLinesRead() ) ) {
@@ -845,6 +862,114 @@ public class SynchronizeAfterMerge extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Inserts and updates can only be written in batches to a fixed table with rows identified by the equality of the
+   * key fields.
+   */
+  private boolean isSetBasedUpsertPossible() {
+    if ( meta.istablenameInField() || meta.getKeyLookup().length == 0 ) {
+      return false;
+    }
+    for ( int i = 0; i < meta.getKeyCondition().length; i++ ) {
+      if ( !"=".equals( meta.getKeyCondition()[i] ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void prepareBatchUpsert() throws KettleDatabaseException {
+    RowMetaInterface keyRowMeta = new RowMeta();
+    boolean allowUpsert = true;
+    for ( int i = 0; i < meta.getKeyLookup().length; i++ ) {
+      keyRowMeta.addValueMeta( data.inputRowMeta.getValueMeta( data.keynrs[i] ).clone() );
+
+      // The upsert statement takes the key values from the inserted fields, they have to be the same
+      int valueIndex = Const.indexOfString( meta.getKeyLookup()[i], meta.getUpdateLookup() );
+      if ( valueIndex >= 0 && !meta.getKeyStream()[i].equalsIgnoreCase( meta.getUpdateStream()[valueIndex] ) ) {
+        allowUpsert = false;
+      }
+    }
+
+    boolean[] update = new boolean[meta.getUpdateLookup().length];
+    for ( int i = 0; i < update.length; i++ ) {
+      update[i] = meta.getUpdate()[i].booleanValue();
+    }
+
+    data.batchSize = data.commitSize > 0 ? data.commitSize : SynchronizeAfterMergeData.DEFAULT_BATCH_SIZE;
+    data.batchUpsert =
+      new BatchUpsert( data.db, data.realSchemaName, data.realTableName, meta.getKeyLookup(), keyRowMeta,
+        data.insertRowMeta, update, allowUpsert );
+
+    // Deletes are executed right away so that they can't overtake the upserts
+    data.batchMode = false;
+
+    if ( log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "SynchronizeAfterMerge.Log.SetBasedUpsert", data.batchSize,
+        data.batchUpsert.isUsingUpsertStatement() ? "Y" : "N" ) );
+    }
+  }
+
+  private boolean isUpsert( Object[] row ) throws KettleException {
+    String operation = data.inputRowMeta.getString( row, data.indexOfOperationOrderField );
+    return operation != null && ( operation.equals( data.insertValue ) || operation.equals( data.updateValue ) );
+  }
+
+  private void addToBatch( Object[] row ) throws KettleException {
+    Object[] keyValues = new Object[data.keynrs.length];
+    for ( int i = 0; i < data.keynrs.length; i++ ) {
+      keyValues[i] = row[data.keynrs[i]];
+    }
+    Object[] insertRow = new Object[data.valuenrs.length];
+    for ( int i = 0; i < data.valuenrs.length; i++ ) {
+      insertRow[i] = row[data.valuenrs[i]];
+    }
+    data.batchUpsert.addRow( keyValues, insertRow );
+    data.batchUpsertRows.add( row );
+
+    if ( data.batchUpsertRows.size() >= data.batchSize ) {
+      writeBatch();
+    }
+  }
+
+  /**
+   * Writes and commits the buffered inserts and updates, then passes them on. When the batch fails and error handling
+   * is enabled all the rows of the batch go to the error stream.
+   */
+  private void writeBatch() throws KettleException {
+    if ( data.batchUpsertRows.isEmpty() ) {
+      return;
+    }
+    try {
+      if ( !data.db.isAutoCommit() ) {
+        // The deletes done so far stay when this batch has to be rolled back
+        data.db.commit();
+      }
+      BatchUpsert.Counts counts = data.batchUpsert.flush();
+      if ( !data.db.isAutoCommit() ) {
+        data.db.commit();
+      }
+      setLinesInput( getLinesInput() + counts.lookups );
+      setLinesOutput( getLinesOutput() + counts.upserted + counts.inserted );
+      setLinesUpdated( getLinesUpdated() + counts.updated );
+      setLinesSkipped( getLinesSkipped() + counts.unchanged );
+
+      for ( Object[] row : data.batchUpsertRows ) {
+        putRow( data.outputRowMeta, row );
+      }
+    } catch ( KettleDatabaseException e ) {
+      if ( !getStepMeta().isDoingErrorHandling() ) {
+        throw e;
+      }
+      data.db.rollback();
+      for ( Object[] row : data.batchUpsertRows ) {
+        putError( data.inputRowMeta, row, 1L, e.toString(), null, "SUYNC002" );
+      }
+    } finally {
+      data.batchUpsertRows.clear();
+    }
+  }
+
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (SynchronizeAfterMergeMeta) smi;
     data = (SynchronizeAfterMergeData) sdi;
@@ -917,6 +1042,10 @@ public class SynchronizeAfterMerge extends BaseStep implements StepInterface {
     if ( data.db != null && data.db.getConnection() != null ) {
       try {
         if ( !data.db.getConnection().isClosed() ) {
+          if ( data.batchUpsert != null ) {
+            writeBatch();
+            data.batchUpsert.close();
+          }
           for ( String schemaTable : data.preparedStatements.keySet() ) {
             // Get a commit counter per prepared statement to keep track of separate tables, etc.
             //
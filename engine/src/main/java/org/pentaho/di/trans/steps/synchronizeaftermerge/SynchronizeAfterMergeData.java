@@ -30,6 +30,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
+import org.pentaho.di.core.database.BatchUpsert;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -43,6 +44,9 @@ import org.pentaho.di.trans.step.StepDataInterface;
  * @since 13-10-2008
  */
 public class SynchronizeAfterMergeData extends BaseStepData implements StepDataInterface {
+  /** Batch size of the set based upsert when there is no commit size */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
   public Database db;
 
   public int[] keynrs; // nr of keylookup -value in row...
@@ -99,6 +103,10 @@ public class SynchronizeAfterMergeData extends BaseStepData implements StepDataI
 
   public List<Object[]> batchBuffer;
 
+  public BatchUpsert batchUpsert;
+  public int batchSize;
+  public List<Object[]> batchUpsertRows;
+
   /**
    * Default constructor.
    */
@@ -124,6 +132,7 @@ public class SynchronizeAfterMergeData extends BaseStepData implements StepDataI
     realSchemaTable = null;
     commitCounterMap = new HashMap<String, Integer>();
     batchBuffer = new ArrayList<Object[]>();
+    batchUpsertRows = new ArrayList<Object[]>();
     releaseSavepoint = true;
 
   }
@@ -123,6 +123,9 @@ public class SynchronizeAfterMergeMeta extends BaseStepMeta implements StepMetaI
   @Injection( name = "USE_BATCH_UPDATE" )
   private boolean useBatchUpdate;
 
+  @Injection( name = "SET_BASED_UPSERT" )
+  private boolean setBasedUpsert;
+
   @Injection( name = "PERFORM_LOOKUP" )
   private boolean performLookup;
 
@@ -159,6 +162,21 @@ public class SynchronizeAfterMergeMeta extends BaseStepMeta implements StepMetaI
     return useBatchUpdate;
   }
 
+  /**
+   * @param setBasedUpsert
+   *          true to write the inserts and updates a commit size at a time as upserts.
+   */
+  public void setSetBasedUpsert( boolean setBasedUpsert ) {
+    this.setBasedUpsert = setBasedUpsert;
+  }
+
+  /**
+   * @return true if the inserts and updates are written a commit size at a time as upserts.
+   */
+  public boolean isSetBasedUpsert() {
+    return setBasedUpsert;
+  }
+
   /**
    * @param performLookup
    *          The performLookup flag to set.
@@ -423,6 +441,7 @@ public class SynchronizeAfterMergeMeta extends BaseStepMeta implements StepMetaI
       tableName = XMLHandler.getTagValue( stepnode, "lookup", "table" );
 
       useBatchUpdate = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "use_batch" ) );
+      setBasedUpsert = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "set_based_upsert" ) );
       performLookup = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "perform_lookup" ) );
 
       tablenameInField = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "tablename_in_field" ) );
@@ -522,6 +541,7 @@ public class SynchronizeAfterMergeMeta extends BaseStepMeta implements StepMetaI
     retval.append( "    " ).append( XMLHandler.addTagValue( "tablename_in_field", tablenameInField ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "tablename_field", tablenameField ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "use_batch", useBatchUpdate ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "set_based_upsert", setBasedUpsert ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "perform_lookup", performLookup ) );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( "operation_order_field", operationOrderField ) );
@@ -568,6 +588,7 @@ public class SynchronizeAfterMergeMeta extends BaseStepMeta implements StepMetaI
       tablenameInField = rep.getStepAttributeBoolean( id_step, "tablename_in_field" );
       tablenameField = rep.getStepAttributeString( id_step, "tablename_field" );
       useBatchUpdate = rep.getStepAttributeBoolean( id_step, "use_batch" );
+      setBasedUpsert = rep.getStepAttributeBoolean( id_step, "set_based_upsert" );
       performLookup = rep.getStepAttributeBoolean( id_step, "perform_lookup" );
 
       operationOrderField = rep.getStepAttributeString( id_step, "operation_order_field" );
@@ -613,6 +634,7 @@ public class SynchronizeAfterMergeMeta extends BaseStepMeta implements StepMetaI
       rep.saveStepAttribute( id_transformation, id_step, "order_delete", OrderDelete );
 
       rep.saveStepAttribute( id_transformation, id_step, "use_batch", useBatchUpdate );
+      rep.saveStepAttribute( id_transformation, id_step, "set_based_upsert", setBasedUpsert );
       rep.saveStepAttribute( id_transformation, id_step, "perform_lookup", performLookup );
 
       for ( int i = 0; i < keyStream.length; i++ ) {
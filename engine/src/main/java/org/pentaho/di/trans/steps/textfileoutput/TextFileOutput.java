@@ -30,6 +30,8 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.Const;
@@ -47,6 +49,9 @@ import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.fileinput.CharsetToolkit;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
@@ -70,6 +75,8 @@ public class TextFileOutput extends BaseStep implements StepInterface {
 
   private static final String FILE_COMPRESSION_TYPE_NONE =
       TextFileOutputMeta.fileCompressionTypeCodes[TextFileOutputMeta.FILE_COMPRESSION_TYPE_NONE];
+  private static final int DEFAULT_BUFFER_SIZE = 65536;
+  private static final int MAX_WRITE_BEHIND_BLOCKS = 4;
   private static final boolean COMPATIBILITY_APPEND_NO_HEADER = "Y".equals(
           Const.NVL( System.getProperty( Const.KETTLE_COMPATIBILITY_TEXT_FILE_OUTPUT_APPEND_NO_HEADER ), "N" ) );
 
@@ -194,7 +201,7 @@ public class TextFileOutput extends BaseStep implements StepInterface {
             }
           }
 
-          bufferedOutputStream = new BufferedOutputStream( compressionOutputStream, 5000 );
+          bufferedOutputStream = createBufferedOutputStream( compressionOutputStream );
 
           fileStreams = data.new FileStream( fileOutputStream, compressionOutputStream, bufferedOutputStream );
 
@@ -213,7 +220,7 @@ public class TextFileOutput extends BaseStep implements StepInterface {
           CompressionProvider compressionProvider = getCompressionProvider();
           compressionOutputStream = compressionProvider.createOutputStream( fileOutputStream );
           compressionOutputStream.addEntry( filename, environmentSubstitute( meta.getExtension() ) );
-          bufferedOutputStream = new BufferedOutputStream( compressionOutputStream, 5000 );
+          bufferedOutputStream = createBufferedOutputStream( compressionOutputStream );
 
           fileStreams.setFileOutputStream( fileOutputStream );
           fileStreams.setCompressedOutputStream( compressionOutputStream );
@@ -250,6 +257,24 @@ public class TextFileOutput extends BaseStep implements StepInterface {
     }
   }
 
+  private BufferedOutputStream createBufferedOutputStream( CompressionOutputStream compressionOutputStream ) {
+    if ( isAsyncWrite() ) {
+      if ( data.writeBehindExecutor == null ) {
+        data.writeBehindExecutor = Executors.newSingleThreadExecutor( new ThreadFactory() {
+          @Override public Thread newThread( Runnable r ) {
+            Thread thread = Executors.defaultThreadFactory().newThread( r );
+            thread.setDaemon( true );
+            thread.setName( getStepname() + " - write behind" );
+            return thread;
+          }
+        } );
+      }
+      return new BufferedOutputStream( new WriteBehindOutputStream( compressionOutputStream, data.writeBehindExecutor,
+        MAX_WRITE_BEHIND_BLOCKS ), getBufferSize() );
+    }
+    return new BufferedOutputStream( compressionOutputStream, getBufferSize() );
+  }
+
   public String getOutputFileName( Object[] row ) throws KettleException {
     String filename = null;
     if ( row == null ) {
@@ -292,6 +317,23 @@ public class TextFileOutput extends BaseStep implements StepInterface {
     return flushInterval;
   }
 
+  public int getBufferSize() {
+    String var = getTransMeta().getVariable( Const.KETTLE_FILE_OUTPUT_BUFFER_SIZE );
+    int bufferSize = DEFAULT_BUFFER_SIZE;
+    if ( var != null ) {
+      try {
+        bufferSize = Integer.parseInt( var );
+      } catch ( Exception ex ) {
+        // Do nothing
+      }
+    }
+    return bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+  }
+
+  public boolean isAsyncWrite() {
+    return "Y".equalsIgnoreCase( getTransMeta().getVariable( Const.KETTLE_FILE_OUTPUT_ASYNC_WRITE ) );
+  }
+
   public int getMaxOpenFiles(  )  {
     String var = getTransMeta().getVariable( "KETTLE_FILE_OUTPUT_MAX_STREAM_COUNT" );
     int maxStreamCount = 0;
@@ -469,7 +511,9 @@ public class TextFileOutput extends BaseStep implements StepInterface {
 
   public void writeRow( RowMetaInterface rowMeta, Object[] r ) throws KettleStepException {
     try {
-      if ( meta.getOutputFields() == null || meta.getOutputFields().length == 0 ) {
+      if ( data.encoder != null ) {
+        encodeRow( rowMeta, r );
+      } else if ( meta.getOutputFields() == null || meta.getOutputFields().length == 0 ) {
         /*
          * Write all values in stream to text file.
          */
@@ -509,6 +553,112 @@ public class TextFileOutput extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Encodes the complete line into the reusable buffer of the encoder and writes it in one go.
+   */
+  private void encodeRow( RowMetaInterface rowMeta, Object[] r ) throws KettleValueException, IOException {
+    TextFileOutputEncoder encoder = data.encoder;
+    encoder.clear();
+    if ( meta.getOutputFields() == null || meta.getOutputFields().length == 0 ) {
+      for ( int i = 0; i < rowMeta.size(); i++ ) {
+        if ( i > 0 ) {
+          encoder.append( data.binarySeparator );
+        }
+        encodeField( rowMeta.getValueMeta( i ), r[i], null );
+      }
+    } else {
+      for ( int i = 0; i < meta.getOutputFields().length; i++ ) {
+        if ( i > 0 ) {
+          encoder.append( data.binarySeparator );
+        }
+        encodeField( rowMeta.getValueMeta( data.fieldnrs[i] ), r[data.fieldnrs[i]], data.binaryNullValue[i] );
+      }
+    }
+    encoder.append( data.binaryNewline );
+    encoder.writeTo( data.writer );
+  }
+
+  private void encodeField( ValueMetaInterface v, Object valueData, byte[] nullString ) throws KettleValueException {
+    TextFileOutputEncoder encoder = data.encoder;
+    int start = encoder.length();
+
+    if ( nullString != null && v.isNull( valueData ) ) {
+      encoder.append( nullString );
+    } else if ( meta.isFastDump() ) {
+      if ( valueData instanceof byte[] ) {
+        encoder.append( (byte[]) valueData );
+      } else if ( valueData != null ) {
+        encoder.encode( valueData.toString() );
+      }
+    } else if ( v.isString() ) {
+      if ( v.isStorageBinaryString() && v.getTrimType() == ValueMetaInterface.TRIM_TYPE_NONE && v.getLength() < 0
+          && Utils.isEmpty( v.getStringEncoding() ) ) {
+        // lazy conversion: the bytes read are the bytes written
+        encoder.append( (byte[]) valueData );
+      } else {
+        String svalue = ( valueData instanceof String ) ? (String) valueData : v.getString( valueData );
+        encodeString( v, Const.trimToType( svalue, v.getTrimType() ) );
+      }
+    } else if ( valueData == null || v.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL
+        || !encodeFormattedValue( v, valueData ) ) {
+      encoder.append( v.getBinaryString( valueData ) );
+    }
+
+    if ( v.isString() && encoder.length() > start ) {
+      if ( ( meta.isEnclosureForced() && !meta.isPadded() ) || ( !meta.isEnclosureFixDisabled()
+          && encoder.containsSeparatorOrEnclosure( start, data.binarySeparator, data.binaryEnclosure ) ) ) {
+        encoder.enclose( start, data.binaryEnclosure );
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #convertStringToBinaryString(ValueMetaInterface, String)} but encodes into the line buffer.
+   */
+  private void encodeString( ValueMetaInterface v, String string ) {
+    if ( string == null ) {
+      return;
+    }
+    int length = v.getLength();
+    if ( length > -1 && length < string.length() ) {
+      // we need to truncate
+      data.encoder.encode( string, 0, length, v.getStringEncoding() );
+    } else {
+      data.encoder.encode( string );
+      if ( length > string.length() ) {
+        data.encoder.pad( length - string.length() );
+      }
+    }
+  }
+
+  /**
+   * Formats plain integers, numbers and dates straight into the buffer of the encoder, without creating a String.
+   *
+   * @return false if the value type has no such shortcut
+   */
+  private boolean encodeFormattedValue( ValueMetaInterface v, Object valueData ) {
+    TextFileOutputEncoder encoder = data.encoder;
+    StringBuffer formatted;
+    Class<?> valueMetaClass = v.getClass();
+    // The formats belong to the value meta, which the step copies share: lock it like ValueMetaBase does
+    synchronized ( v ) {
+      if ( valueMetaClass == ValueMetaInteger.class ) {
+        formatted = v.getDecimalFormat( false ).format( ( (Long) valueData ).longValue(), encoder.getFormatBuffer(),
+          encoder.getFieldPosition() );
+      } else if ( valueMetaClass == ValueMetaNumber.class ) {
+        formatted = v.getDecimalFormat( false ).format( ( (Double) valueData ).doubleValue(),
+          encoder.getFormatBuffer(), encoder.getFieldPosition() );
+      } else if ( valueMetaClass == ValueMetaDate.class ) {
+        formatted = v.getDateFormat().format( (Date) valueData, encoder.getFormatBuffer(),
+          encoder.getFieldPosition() );
+      } else {
+        return false;
+      }
+    }
+    encoder.encode( formatted, 0, formatted.length(), v.getStringEncoding() );
+    return true;
+  }
+
   private byte[] formatField( ValueMetaInterface v, Object valueData ) throws KettleValueException {
     if ( v.isString() ) {
       if ( v.isStorageBinaryString() && v.getTrimType() == ValueMetaInterface.TRIM_TYPE_NONE && v.getLength() < 0
@@ -894,6 +1044,8 @@ public class TextFileOutput extends BaseStep implements StepInterface {
         }
       }
 
+      data.encoder = new TextFileOutputEncoder( data.hasEncoding ? meta.getEncoding() : null );
+
       data.binaryNullValue = new byte[meta.getOutputFields().length][];
       for ( int i = 0; i < meta.getOutputFields().length; i++ ) {
         data.binaryNullValue[i] = null;
@@ -931,6 +1083,11 @@ public class TextFileOutput extends BaseStep implements StepInterface {
     data.out = null;
     data.fos = null;
 
+    if ( data.writeBehindExecutor != null ) {
+      data.writeBehindExecutor.shutdown();
+      data.writeBehindExecutor = null;
+    }
+
     super.dispose( smi, sdi );
   }
 
@@ -33,6 +33,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 
 import org.pentaho.di.core.compress.CompressionOutputStream;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -420,6 +421,12 @@ public class TextFileOutputData extends BaseStepData implements StepDataInterfac
 
   public String fileName;
 
+  /** Encodes complete rows into a reusable buffer before they are written */
+  public TextFileOutputEncoder encoder;
+
+  /** Writes the buffered output of all open files in the background, null unless enabled */
+  public ExecutorService writeBehindExecutor;
+
   public TextFileOutputData() {
     super();
 
@@ -0,0 +1,276 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileoutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.text.FieldPosition;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.pentaho.di.core.util.Utils;
+
+/**
+ * A reusable line buffer for the Text File Output step. Separators, enclosures and field values are encoded straight
+ * into one growing byte array using cached {@link CharsetEncoder}s, so that writing a row does not allocate a byte[]
+ * per field. The complete line is handed to the output stream with a single write.
+ *
+ * Encoding behaves like {@link String#getBytes(String)}: malformed or unmappable characters are replaced by the
+ * replacement bytes of the charset.
+ */
+public class TextFileOutputEncoder {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private byte[] buffer;
+  private int length;
+
+  /** Scratch copy of a field, used to double enclosures inside a value */
+  private byte[] scratch;
+
+  private final CharsetEncoder encoder;
+  private final Map<String, CharsetEncoder> valueEncoders;
+  private final byte[] filler;
+
+  private final StringBuffer formatBuffer;
+  private final FieldPosition fieldPosition;
+
+  /**
+   * @param encoding
+   *          the output encoding of the file, or null/empty for the platform default
+   */
+  public TextFileOutputEncoder( String encoding ) {
+    this( encoding, DEFAULT_CAPACITY );
+  }
+
+  public TextFileOutputEncoder( String encoding, int initialCapacity ) {
+    buffer = new byte[Math.max( 16, initialCapacity )];
+    scratch = new byte[Math.max( 16, initialCapacity )];
+    length = 0;
+    encoder = newEncoder( encoding );
+    valueEncoders = new HashMap<String, CharsetEncoder>();
+    formatBuffer = new StringBuffer( 64 );
+    fieldPosition = new FieldPosition( 0 );
+
+    byte[] pad = new byte[( (int) Math.ceil( encoder.maxBytesPerChar() ) )];
+    ByteBuffer out = ByteBuffer.wrap( pad );
+    encoder.reset();
+    encoder.encode( CharBuffer.wrap( " " ), out, true );
+    encoder.flush( out );
+    filler = new byte[out.position()];
+    System.arraycopy( pad, 0, filler, 0, filler.length );
+  }
+
+  private static CharsetEncoder newEncoder( String encoding ) {
+    Charset charset = Utils.isEmpty( encoding ) ? Charset.defaultCharset() : Charset.forName( encoding );
+    return charset.newEncoder()
+      .onMalformedInput( CodingErrorAction.REPLACE )
+      .onUnmappableCharacter( CodingErrorAction.REPLACE );
+  }
+
+  /**
+   * Empties the buffer, keeping the allocated capacity.
+   */
+  public void clear() {
+    length = 0;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public void append( byte[] bytes ) {
+    if ( bytes != null ) {
+      append( bytes, 0, bytes.length );
+    }
+  }
+
+  public void append( byte[] bytes, int offset, int len ) {
+    ensureCapacity( length + len );
+    System.arraycopy( bytes, offset, buffer, length, len );
+    length += len;
+  }
+
+  /**
+   * Appends the given number of spaces, encoded in the file encoding.
+   */
+  public void pad( int count ) {
+    if ( count <= 0 ) {
+      return;
+    }
+    ensureCapacity( length + filler.length * count );
+    if ( filler.length == 1 ) {
+      java.util.Arrays.fill( buffer, length, length + count, filler[0] );
+      length += count;
+    } else {
+      for ( int i = 0; i < count; i++ ) {
+        System.arraycopy( filler, 0, buffer, length, filler.length );
+        length += filler.length;
+      }
+    }
+  }
+
+  /**
+   * Encodes the characters in the file encoding.
+   */
+  public void encode( CharSequence chars ) {
+    encode( chars, 0, chars.length(), encoder );
+  }
+
+  /**
+   * Encodes a range of characters in the given encoding. An empty encoding stands for the platform default, the same
+   * as {@link String#getBytes()}.
+   */
+  public void encode( CharSequence chars, int start, int end, String encoding ) {
+    encode( chars, start, end, getValueEncoder( encoding ) );
+  }
+
+  /**
+   * Encodes a range of characters in the file encoding.
+   */
+  public void encode( CharSequence chars, int start, int end ) {
+    encode( chars, start, end, encoder );
+  }
+
+  private void encode( CharSequence chars, int start, int end, CharsetEncoder charsetEncoder ) {
+    if ( start >= end ) {
+      return;
+    }
+    ensureCapacity( length + (int) Math.ceil( ( end - start ) * (double) charsetEncoder.maxBytesPerChar() ) );
+    ByteBuffer out = ByteBuffer.wrap( buffer, length, buffer.length - length );
+    charsetEncoder.reset();
+    charsetEncoder.encode( CharBuffer.wrap( chars, start, end ), out, true );
+    charsetEncoder.flush( out );
+    length = out.position();
+  }
+
+  private CharsetEncoder getValueEncoder( String encoding ) {
+    if ( Utils.isEmpty( encoding ) ) {
+      encoding = "";
+    }
+    CharsetEncoder valueEncoder = valueEncoders.get( encoding );
+    if ( valueEncoder == null ) {
+      valueEncoder = newEncoder( encoding );
+      valueEncoders.put( encoding, valueEncoder );
+    }
+    return valueEncoder;
+  }
+
+  /**
+   * @return an empty, reusable buffer to format numbers and dates into
+   */
+  public StringBuffer getFormatBuffer() {
+    formatBuffer.setLength( 0 );
+    return formatBuffer;
+  }
+
+  public FieldPosition getFieldPosition() {
+    fieldPosition.setBeginIndex( 0 );
+    fieldPosition.setEndIndex( 0 );
+    return fieldPosition;
+  }
+
+  /**
+   * Checks whether the bytes from position start up to the end of the buffer contain the separator or the enclosure.
+   */
+  public boolean containsSeparatorOrEnclosure( int start, byte[] separator, byte[] enclosure ) {
+    return indexOf( start, separator ) >= 0 || indexOf( start, enclosure ) >= 0;
+  }
+
+  private int indexOf( int start, byte[] pattern ) {
+    if ( pattern == null || pattern.length == 0 ) {
+      return -1;
+    }
+    for ( int i = start, last = length - pattern.length; i <= last; i++ ) {
+      if ( buffer[i] == pattern[0] ) {
+        boolean found = true;
+        for ( int x = 1; found && x < pattern.length; x++ ) {
+          found = buffer[i + x] == pattern[x];
+        }
+        if ( found ) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Surrounds the bytes from position start up to the end of the buffer with the enclosure, writing every enclosure
+   * found inside the value a second time.
+   */
+  public void enclose( int start, byte[] enclosure ) {
+    if ( enclosure == null || enclosure.length == 0 ) {
+      return;
+    }
+    int fieldLength = length - start;
+    if ( scratch.length < fieldLength ) {
+      scratch = new byte[Math.max( fieldLength, scratch.length * 2 )];
+    }
+    System.arraycopy( buffer, start, scratch, 0, fieldLength );
+    length = start;
+
+    append( enclosure );
+    int from = 0;
+    for ( int i = 0, len = fieldLength - enclosure.length + 1; i < len; i++ ) {
+      boolean found = true;
+      for ( int x = 0; found && x < enclosure.length; x++ ) {
+        found = scratch[i + x] == enclosure[x];
+      }
+      if ( found ) {
+        append( scratch, from, i + enclosure.length - from );
+        append( enclosure );
+        from = i + enclosure.length;
+      }
+    }
+    if ( from < fieldLength ) {
+      append( scratch, from, fieldLength - from );
+    }
+    append( enclosure );
+  }
+
+  /**
+   * Writes the buffer content to the stream and empties the buffer.
+   */
+  public void writeTo( OutputStream outputStream ) throws IOException {
+    outputStream.write( buffer, 0, length );
+    length = 0;
+  }
+
+  private void ensureCapacity( int capacity ) {
+    if ( capacity > buffer.length ) {
+      byte[] newBuffer = new byte[Math.max( capacity, buffer.length * 2 )];
+      System.arraycopy( buffer, 0, newBuffer, 0, length );
+      buffer = newBuffer;
+    }
+  }
+}
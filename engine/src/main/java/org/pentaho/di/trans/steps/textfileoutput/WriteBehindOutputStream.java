@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileoutput;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Hands the blocks written to it over to an executor which writes them to the target stream (usually the
+ * compression output stream) in the background. This way compression and file I/O overlap with the conversion of the
+ * next rows. Blocks are written in order as long as the executor is single threaded. The number of blocks in flight is
+ * bounded, writers block when the background thread falls behind.
+ *
+ * Errors raised by the target stream are reported on the next write, flush or close.
+ */
+public class WriteBehindOutputStream extends OutputStream {
+
+  private final OutputStream target;
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final ConcurrentLinkedQueue<byte[]> freeBlocks;
+
+  private Future<?> lastWrite;
+  private volatile IOException failure;
+
+  /**
+   * @param target
+   *          the stream to write to in the background
+   * @param executor
+   *          a single threaded executor, possibly shared by several streams
+   * @param maxBlocksInFlight
+   *          the number of blocks that can be queued before writers block
+   */
+  public WriteBehindOutputStream( OutputStream target, ExecutorService executor, int maxBlocksInFlight ) {
+    this.target = target;
+    this.executor = executor;
+    this.inFlight = new Semaphore( Math.max( 1, maxBlocksInFlight ) );
+    this.freeBlocks = new ConcurrentLinkedQueue<byte[]>();
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    write( new byte[] { (byte) b }, 0, 1 );
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    checkFailure();
+    if ( len == 0 ) {
+      return;
+    }
+    byte[] block = freeBlocks.poll();
+    if ( block == null || block.length < len ) {
+      block = new byte[len];
+    }
+    System.arraycopy( b, off, block, 0, len );
+
+    try {
+      inFlight.acquire();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while waiting to write to the output stream" );
+    }
+    final byte[] data = block;
+    final int size = len;
+    lastWrite = executor.submit( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if ( failure == null ) {
+            target.write( data, 0, size );
+          }
+        } catch ( IOException e ) {
+          failure = e;
+        } finally {
+          freeBlocks.offer( data );
+          inFlight.release();
+        }
+      }
+    } );
+  }
+
+  /**
+   * Waits for all blocks to be written and flushes the target stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    waitForPendingWrites();
+    target.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      waitForPendingWrites();
+    } finally {
+      target.close();
+    }
+  }
+
+  private void waitForPendingWrites() throws IOException {
+    if ( lastWrite != null ) {
+      try {
+        lastWrite.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException( "Interrupted while waiting for pending writes" );
+      } catch ( ExecutionException e ) {
+        throw new IOException( e.getCause() );
+      }
+      lastWrite = null;
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() throws IOException {
+    if ( failure != null ) {
+      throw new IOException( "Error writing to the output stream in the background", failure );
+    }
+  }
+
+  public OutputStream getTarget() {
+    return target;
+  }
+}
@@ -0,0 +1,45 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.api;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Keeps the position a stream source reached, so a restarted transformation can resume from there instead of from
+ * the start of the stream. The offset is whatever the source uses to find its position back: a file position, a
+ * message id, a partition offset, ...
+ * <p>
+ * Implementations must make a commit durable before returning, a crash right after a commit must not lose it.
+ */
+public interface CheckpointStore {
+
+  /**
+   * @return the last offset committed under the key, null if nothing was committed yet
+   */
+  String load( String key ) throws KettleException;
+
+  /**
+   * Durably replaces the offset stored under the key.
+   */
+  void commit( String key, String offset ) throws KettleException;
+}
@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.api;
+
+import java.util.List;
+
+/**
+ * Incrementally aggregates the rows of a window.
+ *
+ * Windows that overlap (like sliding windows) keep one accumulator per pane, the largest time slice shared by all the
+ * windows, and merge the pane accumulators when a window closes. Every row is added exactly once, so memory depends on
+ * the number of panes and the size of the accumulators, not on how much the windows overlap.
+ *
+ * @param <I> the type of the incoming rows
+ * @param <A> the type of the accumulator
+ */
+public interface StreamAggregator<I, A> {
+
+  /**
+   * @return a new, empty accumulator
+   */
+  A createAccumulator();
+
+  /**
+   * Adds a row to an accumulator.
+   *
+   * @return the updated accumulator, which can be the one passed in
+   */
+  A add( A accumulator, I row );
+
+  /**
+   * Combines two accumulators. Implementations can update and return the first accumulator, the second one must be
+   * left unchanged because a pane can be part of several windows.
+   */
+  A merge( A first, A second );
+
+  /**
+   * @return the rows to send downstream for a closed window, each row holding one value per output field
+   */
+  List<? extends List> getResult( A accumulator );
+}
@@ -30,6 +30,7 @@ import org.pentaho.di.core.Result;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.SubtransExecutor;
 import org.pentaho.di.trans.Trans;
@@ -57,6 +58,7 @@ public class BaseStreamStep extends BaseStep {
   protected SubtransExecutor subtransExecutor;
   protected StreamWindow<List<Object>, Result> window;
   protected StreamSource<List<Object>> source;
+  protected StreamCheckpointer checkpointer;
 
   public BaseStreamStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr,
                          TransMeta transMeta, Trans trans ) {
@@ -79,6 +81,13 @@ public class BaseStreamStep extends BaseStep {
       subtransExecutor = new SubtransExecutor( getStepname(),
         getTrans(), transMeta, true,
         new TransExecutorParameters(), environmentSubstitute( stepMeta.getSubStep() ) );
+      subtransExecutor.setContinuous( stepMeta.isContinuousSubtrans() );
+
+      String checkpointDirectory = environmentSubstitute( stepMeta.getCheckpointDirectory() );
+      if ( !Utils.isEmpty( checkpointDirectory ) ) {
+        checkpointer = new StreamCheckpointer( new FileCheckpointStore( checkpointDirectory ),
+          getTransMeta().getName() + "." + getStepname() + "." + getCopy(), getMaxInFlightRows() );
+      }
 
     } catch ( KettleException e ) {
       log.logError( e.getLocalizedMessage(), e );
@@ -115,13 +124,25 @@ public class BaseStreamStep extends BaseStep {
 
     source.open();
 
-    bufferStream().forEach( result -> {
-      if ( result.isSafeStop() ) {
-        getTrans().safeStop();
+    try {
+      bufferStream().forEach( result -> {
+        if ( result.isSafeStop() ) {
+          getTrans().safeStop();
+        }
+
+        putRows( result.getRows() );
+      } );
+    } finally {
+      try {
+        if ( subtransExecutor != null ) {
+          subtransExecutor.finish();
+        }
+      } finally {
+        if ( checkpointer != null ) {
+          checkpointer.close();
+        }
       }
-
-      putRows( result.getRows() );
-    } );
+    }
     super.setOutputDone();
 
     // Needed for when an Abort Step is used.
@@ -139,6 +160,9 @@ public class BaseStreamStep extends BaseStep {
     if ( !safeStopped.get() ) {
       subtransExecutor.stop();
     }
+    if ( checkpointer != null ) {
+      checkpointer.close();
+    }
     if ( source != null ) {
       source.close();
     }
@@ -188,6 +212,29 @@ public class BaseStreamStep extends BaseStep {
     }
   }
 
+  /**
+   * @return the number of rows the source can hand out before batches complete, 0 for no limit
+   */
+  protected long getMaxInFlightRows() {
+    int batchSize = getBatchSize();
+    if ( batchSize <= 0 ) {
+      // batches are only cut by time, they complete without more rows coming in
+      return 0;
+    }
+    try {
+      return (long) batchSize * Math.max( 1, Integer.parseInt( stepMeta.getMaxInFlightBatches() ) );
+    } catch ( NumberFormatException nfe ) {
+      return batchSize * 2L;
+    }
+  }
+
+  /**
+   * @return the checkpoints of the source offsets, null when the step doesn't keep checkpoints
+   */
+  public StreamCheckpointer getCheckpointer() {
+    return checkpointer;
+  }
+
   @Override public Collection<StepStatus> subStatuses() {
     return subtransExecutor != null ? subtransExecutor.getStatuses().values() : Collections.emptyList();
   }
@@ -54,6 +54,9 @@ public abstract class BaseStreamStepMeta extends StepWithMappingMeta implements
   public static final String NUM_MESSAGES = "NUM_MESSAGES";
   public static final String DURATION = "DURATION";
   public static final String SUB_STEP = "SUB_STEP";
+  public static final String CONTINUOUS_SUBTRANS = "CONTINUOUS_SUBTRANS";
+  public static final String CHECKPOINT_DIRECTORY = "CHECKPOINT_DIRECTORY";
+  public static final String MAX_IN_FLIGHT_BATCHES = "MAX_IN_FLIGHT_BATCHES";
 
   @Injection ( name = TRANSFORMATION_PATH )
   protected String transformationPath = "";
@@ -67,6 +70,15 @@ public abstract class BaseStreamStepMeta extends StepWithMappingMeta implements
   @Injection ( name = SUB_STEP )
   protected String subStep = "";
 
+  @Injection ( name = CONTINUOUS_SUBTRANS )
+  protected Boolean continuousSubtrans = false;
+
+  @Injection ( name = CHECKPOINT_DIRECTORY )
+  protected String checkpointDirectory = "";
+
+  @Injection ( name = MAX_IN_FLIGHT_BATCHES )
+  protected String maxInFlightBatches = "2";
+
   MappingMetaRetriever mappingMetaRetriever = TransExecutorMeta::loadMappingMeta;
 
   @FunctionalInterface interface MappingMetaRetriever {
@@ -94,9 +106,45 @@ public abstract class BaseStreamStepMeta extends StepWithMappingMeta implements
     this.batchDuration = batchDuration;
   }
 
+  /**
+   * @return true to start the sub-transformation once and keep it running between batches
+   */
+  public boolean isContinuousSubtrans() {
+    return continuousSubtrans != null && continuousSubtrans;
+  }
+
+  public void setContinuousSubtrans( boolean continuousSubtrans ) {
+    this.continuousSubtrans = continuousSubtrans;
+  }
+
+  /**
+   * @return the directory keeping the committed source offsets, empty when the step doesn't keep checkpoints
+   */
+  public String getCheckpointDirectory() {
+    return checkpointDirectory == null ? "" : checkpointDirectory;
+  }
+
+  public void setCheckpointDirectory( String checkpointDirectory ) {
+    this.checkpointDirectory = checkpointDirectory;
+  }
+
+  /**
+   * @return how many batches the source can read ahead of the last committed checkpoint
+   */
+  public String getMaxInFlightBatches() {
+    return maxInFlightBatches;
+  }
+
+  public void setMaxInFlightBatches( String maxInFlightBatches ) {
+    this.maxInFlightBatches = maxInFlightBatches;
+  }
+
   @Override public void setDefault() {
     batchSize = "1000";
     batchDuration = "1000";
+    continuousSubtrans = false;
+    checkpointDirectory = "";
+    maxInFlightBatches = "2";
   }
 
   public String getTransformationPath() {
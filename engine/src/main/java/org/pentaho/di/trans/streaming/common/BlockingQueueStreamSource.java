@@ -106,6 +106,29 @@ public abstract class BlockingQueueStreamSource<T> implements StreamSource<T> {
    * <p>
    */
   protected void acceptRows( List<T> rows ) {
+    acceptRows( rows, null );
+  }
+
+  /**
+   * Accept rows, blocking if currently paused or if too many rows wait for their batch to complete.
+   * <p>
+   * When the step keeps checkpoints, the offset is committed once all the rows up to these ones are processed, and
+   * {@link #getCommittedOffset()} returns it after a restart.
+   *
+   * @param offset the source position of the last of the rows, null if the source can't resume from it
+   */
+  protected void acceptRows( List<T> rows, String offset ) {
+    StreamCheckpointer checkpointer = streamStep.getCheckpointer();
+    if ( checkpointer != null ) {
+      try {
+        checkpointer.rowsAccepted( rows.size(), offset );
+      } catch ( InterruptedException e ) {
+        logChannel.logError(
+          getString( PKG, "BlockingQueueStream.AcceptRowsInterrupt",
+            Arrays.toString( rows.toArray() ) ) );
+        return;
+      }
+    }
     try {
       acceptingRowsSemaphore.acquire();
       rows.forEach( ( row ) -> {
@@ -121,6 +144,14 @@ public abstract class BlockingQueueStreamSource<T> implements StreamSource<T> {
     }
   }
 
+  /**
+   * @return the offset the source should resume from, null to start from the beginning of the stream
+   */
+  protected String getCommittedOffset() {
+    StreamCheckpointer checkpointer = streamStep.getCheckpointer();
+    return checkpointer == null ? null : checkpointer.getCommittedOffset();
+  }
+
   /**
    * Child implementations of this class can call .error() when an unexpected event occurs while passing rows to the
    * acceptRows() method.  For example, if an implementation includes a poll loop which retrieves data from a message
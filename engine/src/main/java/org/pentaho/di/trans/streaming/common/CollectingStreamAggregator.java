@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.pentaho.di.trans.streaming.api.StreamAggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A StreamAggregator that keeps the rows themselves, so the sub-transformation receives every row of the window. Each
+ * row is still kept only once, in the pane it belongs to.
+ */
+public class CollectingStreamAggregator<I extends List> implements StreamAggregator<I, List<I>> {
+
+  @Override public List<I> createAccumulator() {
+    return new ArrayList<>();
+  }
+
+  @Override public List<I> add( List<I> accumulator, I row ) {
+    accumulator.add( row );
+    return accumulator;
+  }
+
+  @Override public List<I> merge( List<I> first, List<I> second ) {
+    first.addAll( second );
+    return first;
+  }
+
+  @Override public List<I> getResult( List<I> accumulator ) {
+    return accumulator;
+  }
+}
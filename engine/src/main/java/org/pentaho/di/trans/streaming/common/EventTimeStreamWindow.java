@@ -0,0 +1,214 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import org.pentaho.di.core.Result;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.SubtransExecutor;
+import org.pentaho.di.trans.streaming.api.StreamAggregator;
+import org.pentaho.di.trans.streaming.api.StreamWindow;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Base class for StreamWindow implementations that assign rows to windows by time and aggregate them incrementally
+ * with a {@link StreamAggregator}. Each closed window is executed in a subtransformation.
+ * <p>
+ * Time is either the event time taken from the rows with a timestamp extractor, or the processing time when no
+ * extractor is given. Windows close on the watermark: the highest timestamp seen minus the allowed lateness. Rows that
+ * arrive after all their windows were closed are dropped and counted in {@link #getLateRows()}. With event time the
+ * watermark only moves when rows come in; the windows still open when the stream ends are closed at the end.
+ */
+public abstract class EventTimeStreamWindow<I extends List, A> implements StreamWindow<I, Result> {
+
+  /** How often the watermark is moved forward with processing time */
+  static final long TICK_MILLIS = 100;
+
+  protected final StreamAggregator<I, A> aggregator;
+  private final SubtransExecutor subtransExecutor;
+  private final RowMetaInterface rowMeta;
+  private final ToLongFunction<I> timestampExtractor;
+  private final long allowedLateness;
+
+  private long maxTimestamp = Long.MIN_VALUE;
+  private long lateRows;
+
+  /**
+   * @param rowMeta            the layout of the rows produced by the aggregator
+   * @param timestampExtractor gives the event time of a row, or null to use the processing time
+   * @param allowedLateness    how long (in milliseconds) windows wait for rows that are out of order
+   */
+  protected EventTimeStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta,
+                                   StreamAggregator<I, A> aggregator, ToLongFunction<I> timestampExtractor,
+                                   long allowedLateness ) {
+    if ( allowedLateness < 0 ) {
+      throw new IllegalArgumentException( "The allowed lateness can't be negative" );
+    }
+    this.subtransExecutor = subtransExecutor;
+    this.rowMeta = rowMeta;
+    this.aggregator = aggregator;
+    this.timestampExtractor = timestampExtractor;
+    this.allowedLateness = allowedLateness;
+  }
+
+  /**
+   * Adds a row to the window state.
+   *
+   * @return false when the row is too late to be part of any window that is still open
+   */
+  protected abstract boolean add( I row, long timestamp );
+
+  /**
+   * Closes the windows that end at or before the watermark and removes them from the window state.
+   *
+   * @return the accumulators of the closed windows, in the order the windows end
+   */
+  protected abstract List<A> close( long watermark );
+
+  @Override public Iterable<Result> buffer( Observable<I> observable ) {
+    Observable<Event<I>> events = observable
+      .map( Event::row )
+      .concatWith( Observable.just( Event.<I>end() ) );
+    if ( timestampExtractor == null ) {
+      // the clock moves the watermark, so windows also close when no rows come in
+      events = events.mergeWith( Observable.interval( TICK_MILLIS, TICK_MILLIS, MILLISECONDS )
+        .map( tick -> Event.<I>tick() ) );
+    }
+    return events
+      .takeUntil( Event::isEnd )
+      .observeOn( Schedulers.io() )
+      .concatMapIterable( this::onEvent )
+      .filter( rows -> !rows.isEmpty() )
+      .map( this::sendWindowToSubtrans )
+      .takeWhile( result -> result.getNrErrors() == 0 )
+      .blockingIterable();
+  }
+
+  private List<List<? extends List>> onEvent( Event<I> event ) {
+    long watermark;
+    if ( event.isEnd() ) {
+      watermark = Long.MAX_VALUE;
+    } else {
+      if ( event.row != null ) {
+        long timestamp = timestampExtractor == null
+          ? System.currentTimeMillis() : timestampExtractor.applyAsLong( event.row );
+        if ( timestamp == Long.MIN_VALUE || !add( event.row, timestamp ) ) {
+          lateRows++;
+        } else {
+          maxTimestamp = Math.max( maxTimestamp, timestamp );
+        }
+      } else {
+        maxTimestamp = Math.max( maxTimestamp, System.currentTimeMillis() );
+      }
+      watermark = getWatermark();
+    }
+    List<List<? extends List>> windows = new ArrayList<>();
+    for ( A accumulator : close( watermark ) ) {
+      windows.add( aggregator.getResult( accumulator ) );
+    }
+    return windows;
+  }
+
+  private Result sendWindowToSubtrans( List<? extends List> input ) throws KettleException {
+    final List<RowMetaAndData> rows = input.stream()
+      .map( row -> new RowMetaAndData( rowMeta, row.toArray( new Object[ 0 ] ) ) )
+      .collect( Collectors.toList() );
+    Optional<Result> optionalRes = subtransExecutor.execute( rows );
+    return optionalRes.orElse( new Result( ) );
+  }
+
+  /**
+   * @return the highest timestamp seen minus the allowed lateness, Long.MIN_VALUE before the first row
+   */
+  protected long getWatermark() {
+    return maxTimestamp == Long.MIN_VALUE ? Long.MIN_VALUE : maxTimestamp - allowedLateness;
+  }
+
+  protected long getAllowedLateness() {
+    return allowedLateness;
+  }
+
+  /**
+   * @return the number of rows dropped because they arrived after their windows were closed
+   */
+  public long getLateRows() {
+    return lateRows;
+  }
+
+  /**
+   * Takes the event time from a field holding a Date or a number of milliseconds. Rows without a timestamp are
+   * dropped as late rows.
+   */
+  public static <I extends List> ToLongFunction<I> timestampField( int index ) {
+    return row -> {
+      Object value = row.get( index );
+      if ( value instanceof Date ) {
+        return ( (Date) value ).getTime();
+      }
+      if ( value instanceof Number ) {
+        return ( (Number) value ).longValue();
+      }
+      return Long.MIN_VALUE;
+    };
+  }
+
+  private static class Event<I> {
+    private static final Event<?> TICK = new Event<>( null );
+    private static final Event<?> END = new Event<>( null );
+
+    private final I row;
+
+    private Event( I row ) {
+      this.row = row;
+    }
+
+    static <I> Event<I> row( I row ) {
+      return new Event<>( row );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    static <I> Event<I> tick() {
+      return (Event<I>) TICK;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    static <I> Event<I> end() {
+      return (Event<I>) END;
+    }
+
+    boolean isEnd() {
+      return this == END;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.pentaho.di.trans.streaming.api.StreamAggregator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A StreamAggregator computing rolling statistics of one numeric field. A window produces a single row with the
+ * fields count (Integer), sum, min, max and average (Number). Null values are not counted, a window without values
+ * produces no row.
+ */
+public class FieldStatsStreamAggregator<I extends List>
+  implements StreamAggregator<I, FieldStatsStreamAggregator.Stats> {
+
+  private final int fieldIndex;
+
+  public FieldStatsStreamAggregator( int fieldIndex ) {
+    this.fieldIndex = fieldIndex;
+  }
+
+  @Override public Stats createAccumulator() {
+    return new Stats();
+  }
+
+  @Override public Stats add( Stats accumulator, I row ) {
+    Object value = row.get( fieldIndex );
+    if ( value instanceof Number ) {
+      double number = ( (Number) value ).doubleValue();
+      accumulator.count++;
+      accumulator.sum += number;
+      accumulator.min = Math.min( accumulator.min, number );
+      accumulator.max = Math.max( accumulator.max, number );
+    }
+    return accumulator;
+  }
+
+  @Override public Stats merge( Stats first, Stats second ) {
+    first.count += second.count;
+    first.sum += second.sum;
+    first.min = Math.min( first.min, second.min );
+    first.max = Math.max( first.max, second.max );
+    return first;
+  }
+
+  @Override public List<List<Object>> getResult( Stats accumulator ) {
+    if ( accumulator.count == 0 ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( Arrays.<Object>asList( accumulator.count, accumulator.sum, accumulator.min,
+      accumulator.max, accumulator.sum / accumulator.count ) );
+  }
+
+  public static class Stats {
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+  }
+}
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.streaming.api.CheckpointStore;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A CheckpointStore keeping every key in its own small file in a local directory. A commit writes a temporary file,
+ * forces it to disk and renames it over the previous checkpoint, so a crash leaves either the old or the new offset.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+  static final String EXTENSION = ".checkpoint";
+
+  private final Path directory;
+
+  public FileCheckpointStore( String directory ) {
+    this.directory = Paths.get( directory );
+  }
+
+  @Override public String load( String key ) throws KettleException {
+    Path file = getFile( key );
+    if ( !Files.exists( file ) ) {
+      return null;
+    }
+    try {
+      return new String( Files.readAllBytes( file ), StandardCharsets.UTF_8 );
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read checkpoint " + file, e );
+    }
+  }
+
+  @Override public void commit( String key, String offset ) throws KettleException {
+    Path file = getFile( key );
+    Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+    try {
+      Files.createDirectories( directory );
+      try ( FileChannel channel = FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING ) ) {
+        channel.write( StandardCharsets.UTF_8.encode( offset ) );
+        channel.force( true );
+      }
+      try {
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( AtomicMoveNotSupportedException e ) {
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to write checkpoint " + file, e );
+    }
+  }
+
+  Path getFile( String key ) {
+    return directory.resolve( key.replaceAll( "[^\\w.-]", "_" ) + EXTENSION );
+  }
+}
@@ -39,21 +39,29 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * A StreamWindow implementation which buffers rows of I by a fixed amount of time and size, executing each batch in a
- * subtransformation.
+ * subtransformation. Batches complete in order, so the window reports every successful batch to the step's
+ * {@link StreamCheckpointer} when there is one.
  */
 public class FixedTimeStreamWindow<I extends List> implements StreamWindow<I, Result> {
 
   private final RowMetaInterface rowMeta;
   private final long millis;
   private final int batchSize;
+  private final StreamCheckpointer checkpointer;
   private SubtransExecutor subtransExecutor;
 
   public FixedTimeStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta, long millis,
                                 int batchSize ) {
+    this( subtransExecutor, rowMeta, millis, batchSize, null );
+  }
+
+  public FixedTimeStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta, long millis,
+                                int batchSize, StreamCheckpointer checkpointer ) {
     this.subtransExecutor = subtransExecutor;
     this.rowMeta = rowMeta;
     this.millis = millis;
     this.batchSize = batchSize;
+    this.checkpointer = checkpointer;
   }
 
   @Override public Iterable<Result> buffer( Observable<I> observable ) {
@@ -74,6 +82,10 @@ public class FixedTimeStreamWindow<I extends List> implements StreamWindow<I, Re
       .map( objects -> new RowMetaAndData( rowMeta, objects ) )
       .collect( Collectors.toList() );
     Optional<Result> optionalRes = subtransExecutor.execute( rows );
+    // An empty result means the batch wasn't processed, the sub-transformation was stopped: don't commit it
+    if ( checkpointer != null && optionalRes.isPresent() && optionalRes.get().getNrErrors() == 0 ) {
+      checkpointer.batchCompleted( input.size() );
+    }
     return optionalRes.orElse( new Result( ) );
   }
 
@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.SubtransExecutor;
+import org.pentaho.di.trans.streaming.api.StreamAggregator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A session window: rows less than gap milliseconds apart belong to the same session, and a session is executed in a
+ * subtransformation once no row came in for the gap. Sessions can be kept per key, e.g. per device or per user.
+ * <p>
+ * A session only keeps its accumulator. When an out of order row bridges two sessions they are merged.
+ */
+public class SessionStreamWindow<I extends List, A> extends EventTimeStreamWindow<I, A> {
+
+  private final long gap;
+  private final Function<I, ?> keyExtractor;
+
+  private final Map<Object, List<Session<A>>> sessions = new HashMap<>();
+
+  /**
+   * Creates a session window on processing time, without keys.
+   */
+  public SessionStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta, long gap,
+                              StreamAggregator<I, A> aggregator ) {
+    this( subtransExecutor, rowMeta, gap, aggregator, null, null, 0 );
+  }
+
+  /**
+   * @param keyExtractor gives the session key of a row, or null to have a single session at a time
+   */
+  public SessionStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta, long gap,
+                              StreamAggregator<I, A> aggregator, Function<I, ?> keyExtractor,
+                              ToLongFunction<I> timestampExtractor, long allowedLateness ) {
+    super( subtransExecutor, rowMeta, aggregator, timestampExtractor, allowedLateness );
+    if ( gap <= 0 ) {
+      throw new IllegalArgumentException( "The session gap must be positive" );
+    }
+    this.gap = gap;
+    this.keyExtractor = keyExtractor;
+  }
+
+  @Override protected boolean add( I row, long timestamp ) {
+    if ( timestamp + gap <= getWatermark() ) {
+      return false;
+    }
+    Object key = keyExtractor == null ? null : keyExtractor.apply( row );
+    Session<A> session =
+      new Session<>( timestamp, timestamp + gap, aggregator.add( aggregator.createAccumulator(), row ) );
+
+    List<Session<A>> keySessions = sessions.computeIfAbsent( key, k -> new ArrayList<>() );
+    for ( Iterator<Session<A>> iterator = keySessions.iterator(); iterator.hasNext(); ) {
+      Session<A> other = iterator.next();
+      if ( other.start < session.end && session.start < other.end ) {
+        session = new Session<>( Math.min( other.start, session.start ), Math.max( other.end, session.end ),
+          aggregator.merge( other.accumulator, session.accumulator ) );
+        iterator.remove();
+      }
+    }
+    keySessions.add( session );
+    return true;
+  }
+
+  @Override protected List<A> close( long watermark ) {
+    List<Session<A>> closed = new ArrayList<>();
+    for ( Iterator<List<Session<A>>> keys = sessions.values().iterator(); keys.hasNext(); ) {
+      List<Session<A>> keySessions = keys.next();
+      for ( Iterator<Session<A>> iterator = keySessions.iterator(); iterator.hasNext(); ) {
+        Session<A> session = iterator.next();
+        if ( session.end <= watermark ) {
+          closed.add( session );
+          iterator.remove();
+        }
+      }
+      if ( keySessions.isEmpty() ) {
+        keys.remove();
+      }
+    }
+    closed.sort( Comparator.comparingLong( ( Session<A> session ) -> session.end )
+      .thenComparingLong( session -> session.start ) );
+
+    List<A> accumulators = new ArrayList<>( closed.size() );
+    for ( Session<A> session : closed ) {
+      accumulators.add( session.accumulator );
+    }
+    return accumulators;
+  }
+
+  int getSessionCount() {
+    return sessions.values().stream().mapToInt( List::size ).sum();
+  }
+
+  private static class Session<A> {
+    private final long start;
+    private final long end;
+    private final A accumulator;
+
+    Session( long start, long end, A accumulator ) {
+      this.start = start;
+      this.end = end;
+      this.accumulator = accumulator;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.SubtransExecutor;
+import org.pentaho.di.trans.streaming.api.StreamAggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * A sliding window: every slide a window covering the last size milliseconds is executed in a subtransformation.
+ * <p>
+ * Time is cut in panes of gcd(size, slide) milliseconds, and every pane keeps a single accumulator. A row is added to
+ * the accumulator of its pane only, and a window is built by merging the accumulators of its panes when it closes.
+ * The state is bounded by the number of panes spanning the window size plus the allowed lateness, whatever the
+ * overlap between the windows.
+ */
+public class SlidingStreamWindow<I extends List, A> extends EventTimeStreamWindow<I, A> {
+
+  private final long size;
+  private final long slide;
+  private final long paneSize;
+
+  private final TreeMap<Long, A> panes = new TreeMap<>();
+  /** End of the oldest window that is not closed yet, Long.MIN_VALUE before the first row */
+  private long nextWindowEnd = Long.MIN_VALUE;
+
+  /**
+   * Creates a sliding window on processing time.
+   */
+  public SlidingStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta, long size, long slide,
+                              StreamAggregator<I, A> aggregator ) {
+    this( subtransExecutor, rowMeta, size, slide, aggregator, null, 0 );
+  }
+
+  public SlidingStreamWindow( SubtransExecutor subtransExecutor, RowMetaInterface rowMeta, long size, long slide,
+                              StreamAggregator<I, A> aggregator, ToLongFunction<I> timestampExtractor,
+                              long allowedLateness ) {
+    super( subtransExecutor, rowMeta, aggregator, timestampExtractor, allowedLateness );
+    if ( size <= 0 || slide <= 0 ) {
+      throw new IllegalArgumentException( "The window size and slide must be positive" );
+    }
+    this.size = size;
+    this.slide = slide;
+    this.paneSize = gcd( size, slide );
+  }
+
+  @Override protected boolean add( I row, long timestamp ) {
+    if ( nextWindowEnd == Long.MIN_VALUE ) {
+      // the first row opens the windows, as far back as rows are allowed to be late
+      nextWindowEnd = firstWindowEnd( timestamp - getAllowedLateness() );
+    }
+    if ( timestamp < nextWindowEnd - size ) {
+      // all the windows holding this row are closed
+      return false;
+    }
+    long pane = Math.floorDiv( timestamp, paneSize ) * paneSize;
+    A accumulator = panes.get( pane );
+    panes.put( pane, aggregator.add( accumulator == null ? aggregator.createAccumulator() : accumulator, row ) );
+    return true;
+  }
+
+  @Override protected List<A> close( long watermark ) {
+    List<A> closed = new ArrayList<>();
+    while ( !panes.isEmpty() ) {
+      // skip the windows without any rows
+      nextWindowEnd = Math.max( nextWindowEnd, firstWindowEnd( panes.firstKey() ) );
+      if ( nextWindowEnd > watermark ) {
+        break;
+      }
+      A accumulator = aggregator.createAccumulator();
+      for ( A pane : panes.subMap( nextWindowEnd - size, nextWindowEnd ).values() ) {
+        accumulator = aggregator.merge( accumulator, pane );
+      }
+      closed.add( accumulator );
+      nextWindowEnd += slide;
+      // the panes before the next window are not part of any open window anymore
+      panes.headMap( nextWindowEnd - size ).clear();
+    }
+    return closed;
+  }
+
+  /**
+   * @return the end of the first window holding the timestamp; windows start at multiples of the slide
+   */
+  private long firstWindowEnd( long timestamp ) {
+    return ( Math.floorDiv( timestamp - size, slide ) + 1 ) * slide + size;
+  }
+
+  int getPaneCount() {
+    return panes.size();
+  }
+
+  long getPaneSize() {
+    return paneSize;
+  }
+
+  private static long gcd( long a, long b ) {
+    return b == 0 ? a : gcd( b, a % b );
+  }
+}
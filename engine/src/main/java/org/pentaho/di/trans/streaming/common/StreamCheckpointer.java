@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.streaming.api.CheckpointStore;
+
+import java.util.ArrayDeque;
+
+/**
+ * Tracks the source offsets of the rows handed to a stream window, and commits them to a {@link CheckpointStore} once
+ * every row up to the offset was processed by a batch without errors. This gives at-least-once delivery: a restarted
+ * source resumes from the last committed offset, and only the rows that were in flight are processed again.
+ * <p>
+ * The number of rows in flight (accepted but not part of a completed batch) is bounded, which bounds the work to
+ * redo after a crash. Batches have to complete in the order the rows were accepted, like with
+ * {@link FixedTimeStreamWindow}.
+ */
+public class StreamCheckpointer {
+
+  private final CheckpointStore store;
+  private final String key;
+  private final long maxInFlightRows;
+
+  private final ArrayDeque<PendingOffset> pending = new ArrayDeque<>();
+  private long acceptedRows;
+  private long completedRows;
+  private String committedOffset;
+  private boolean closed;
+
+  /**
+   * @param maxInFlightRows the number of rows after which the source waits for batches to complete, 0 for no limit
+   */
+  public StreamCheckpointer( CheckpointStore store, String key, long maxInFlightRows ) throws KettleException {
+    this.store = store;
+    this.key = key;
+    this.maxInFlightRows = maxInFlightRows;
+    this.committedOffset = store.load( key );
+  }
+
+  /**
+   * @return the offset to resume from, null when the source has to start from the beginning
+   */
+  public synchronized String getCommittedOffset() {
+    return committedOffset;
+  }
+
+  /**
+   * Registers rows the source is about to hand to the window, waiting first while too many rows are in flight.
+   *
+   * @param offset the offset of the last of the rows, or null if it can't be resumed from
+   */
+  public synchronized void rowsAccepted( int count, String offset ) throws InterruptedException {
+    while ( !closed && maxInFlightRows > 0 && acceptedRows - completedRows >= maxInFlightRows ) {
+      wait();
+    }
+    acceptedRows += count;
+    if ( offset != null ) {
+      pending.add( new PendingOffset( acceptedRows, offset ) );
+    }
+  }
+
+  /**
+   * Called when a batch was processed without errors, commits the last offset that is completely processed.
+   */
+  public synchronized void batchCompleted( int count ) throws KettleException {
+    completedRows += count;
+    String offset = null;
+    while ( !pending.isEmpty() && pending.peek().rows <= completedRows ) {
+      offset = pending.poll().offset;
+    }
+    if ( offset != null ) {
+      store.commit( key, offset );
+      committedOffset = offset;
+    }
+    notifyAll();
+  }
+
+  public synchronized long getInFlightRows() {
+    return acceptedRows - completedRows;
+  }
+
+  /**
+   * Releases a source waiting for batches to complete, when the step stops.
+   */
+  public synchronized void close() {
+    closed = true;
+    notifyAll();
+  }
+
+  private static class PendingOffset {
+    private final long rows;
+    private final String offset;
+
+    PendingOffset( long rows, String offset ) {
+      this.rows = rows;
+      this.offset = offset;
+    }
+  }
+}
@@ -111,8 +111,12 @@ public class JobMap {
   }
 
   public synchronized void removeJob( CarteObjectEntry entry ) {
-    jobMap.remove( entry );
+    Job job = jobMap.remove( entry );
     configurationMap.remove( entry );
+    if ( job != null && job.getResult() != null && job.getResult().getRows() != null ) {
+      // Nobody can ask for the result rows anymore, remove them and the file they were written to, if any
+      job.getResult().getRows().clear();
+    }
   }
 
   public synchronized List<CarteObjectEntry> getJobObjects() {
@@ -133,7 +133,11 @@ public class TransformationMap {
    *          the Carte object entry
    */
   public void removeTransformation( CarteObjectEntry entry ) {
-    transMap.remove( entry );
+    TransData data = transMap.remove( entry );
+    if ( data != null && data.getTrans() != null && data.getTrans().getResultRows() != null ) {
+      // Nobody can ask for the result rows anymore, remove them and the file they were written to, if any
+      data.getTrans().getResultRows().clear();
+    }
   }
 
   public List<CarteObjectEntry> getTransformationObjects() {
@@ -118,6 +118,8 @@ public class CompressionProviderFactoryTest {
         put( "GZip", false );
         put( "Snappy", false );
         put( "Hadoop-snappy", false );
+        put( "Parallel GZip", false );
+        put( "Parallel Snappy", false );
       }
     };
 
@@ -149,6 +151,8 @@ public class CompressionProviderFactoryTest {
         put( "GZip", false );
         put( "Snappy", false );
         put( "Hadoop-snappy", false );
+        put( "Parallel GZip", false );
+        put( "Parallel Snappy", false );
       }
     };
 
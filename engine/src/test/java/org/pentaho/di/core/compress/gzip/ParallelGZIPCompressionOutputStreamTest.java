@@ -0,0 +1,123 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.gzip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.compress.CompressionPluginType;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+
+public class ParallelGZIPCompressionOutputStreamTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  public static final String PROVIDER_NAME = "Parallel GZip";
+
+  public CompressionProvider provider = null;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    PluginRegistry.addPluginType( CompressionPluginType.getInstance() );
+    PluginRegistry.init( false );
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    provider = CompressionProviderFactory.getInstance().getCompressionProviderByName( PROVIDER_NAME );
+  }
+
+  @Test
+  public void testProvider() {
+    assertNotNull( provider );
+    assertEquals( "Parallel GZIP compression", provider.getDescription() );
+    assertEquals( "gz", provider.getDefaultExtension() );
+  }
+
+  @Test
+  public void testMultiMemberRoundTrip() throws IOException {
+    byte[] data = new byte[1000000];
+    Random random = new Random( 42 );
+    for ( int i = 0; i < data.length; i++ ) {
+      data[i] = (byte) ( 'a' + random.nextInt( 8 ) );
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ParallelGZIPCompressionOutputStream outStream = new ParallelGZIPCompressionOutputStream( out, provider, 4096 );
+    outStream.write( data, 0, 10 );
+    outStream.write( data[10] );
+    outStream.write( data, 11, data.length - 11 );
+    outStream.close();
+
+    byte[] compressed = out.toByteArray();
+    assertArrayEquals( data, IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) ) );
+
+    // every member records its own size in the extra field
+    int members = 0;
+    for ( int offset = 0; offset < compressed.length; members++ ) {
+      assertEquals( 0x1f, compressed[offset] & 0xff );
+      assertEquals( 0x8b, compressed[offset + 1] & 0xff );
+      assertEquals( 'K', compressed[offset + 12] );
+      assertEquals( 'B', compressed[offset + 13] );
+      offset += ( compressed[offset + 16] & 0xff ) | ( compressed[offset + 17] & 0xff ) << 8
+        | ( compressed[offset + 18] & 0xff ) << 16 | ( compressed[offset + 19] & 0xff ) << 24;
+    }
+    assertEquals( ( data.length + 4095 ) / 4096, members );
+  }
+
+  @Test
+  public void testEmptyStreamIsValidGzip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    provider.createOutputStream( out ).close();
+    GZIPInputStream in = new GZIPInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    assertEquals( -1, in.read() );
+  }
+
+  @Test
+  public void testWriteAfterClose() throws IOException {
+    ParallelGZIPCompressionOutputStream outStream =
+      new ParallelGZIPCompressionOutputStream( new ByteArrayOutputStream(), provider );
+    outStream.close();
+    try {
+      outStream.write( "This will throw an Exception if the stream is already closed".getBytes() );
+      fail();
+    } catch ( IOException e ) {
+      //Success, The Output Stream was already closed
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.gzip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+public class ParallelGZIPInputStreamTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static byte[] testData( int size ) {
+    byte[] data = new byte[size];
+    Random random = new Random( 42 );
+    for ( int i = 0; i < data.length; i++ ) {
+      data[i] = (byte) ( 'a' + random.nextInt( 8 ) );
+    }
+    return data;
+  }
+
+  private static byte[] compressParallel( byte[] data, int blockSize ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ParallelGZIPCompressionOutputStream gzos = new ParallelGZIPCompressionOutputStream( out, null, blockSize );
+    gzos.write( data );
+    gzos.close();
+    return out.toByteArray();
+  }
+
+  /**
+   * Concatenates classic gzip members, without size information in the headers.
+   */
+  private static byte[] compressClassic( byte[] data, int blockSize ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for ( int offset = 0; offset < data.length; offset += blockSize ) {
+      GZIPOutputStream gzos = new GZIPOutputStream( out );
+      gzos.write( data, offset, Math.min( blockSize, data.length - offset ) );
+      gzos.finish();
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll( InputStream in ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1000];
+    int n;
+    while ( ( n = in.read( buffer ) ) >= 0 ) {
+      out.write( buffer, 0, n );
+    }
+    in.close();
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testReadMembersInParallel() throws IOException {
+    byte[] data = testData( 500000 );
+    byte[] compressed = compressParallel( data, 4096 );
+    assertArrayEquals( data, readAll( new ParallelGZIPInputStream( new ByteArrayInputStream( compressed ) ) ) );
+  }
+
+  @Test
+  public void testReadClassicGzip() throws IOException {
+    byte[] data = testData( 100000 );
+    assertArrayEquals( data, readAll( new ParallelGZIPInputStream(
+      new ByteArrayInputStream( compressClassic( data, data.length ) ) ) ) );
+    assertArrayEquals( data, readAll( new ParallelGZIPInputStream(
+      new ByteArrayInputStream( compressClassic( data, 7000 ) ) ) ) );
+  }
+
+  @Test
+  public void testSkip() throws IOException {
+    byte[] data = testData( 100000 );
+    InputStream in = new ParallelGZIPInputStream( new ByteArrayInputStream( compressParallel( data, 4096 ) ) );
+    assertEquals( 50001, in.skip( 50001 ) );
+    assertEquals( data[50001], (byte) in.read() );
+    in.close();
+  }
+
+  @Test
+  public void testScanMemberSizes() throws IOException {
+    byte[] data = testData( 100000 );
+    byte[] compressed = compressParallel( data, 4096 );
+    GZIPMemberIndex index = GZIPMemberIndex.scan( new ByteArrayInputStream( compressed ) );
+    assertNotNull( index );
+    assertEquals( 25, index.getNrMembers() );
+    assertEquals( compressed.length, index.getCompressedSize() );
+    assertEquals( data.length, index.getUncompressedSize() );
+    assertEquals( 4096L * 3, index.getUncompressedOffset( 3 ) );
+    assertEquals( 100000 - 4096 * 24, index.getUncompressedLength( 24 ) );
+
+    assertNull( GZIPMemberIndex.scan( new ByteArrayInputStream( compressClassic( data, 4096 ) ) ) );
+  }
+
+  @Test
+  public void testBuildIndexAndReadFromMember() throws IOException {
+    byte[] data = testData( 100000 );
+    byte[] compressed = compressClassic( data, 7000 );
+    GZIPMemberIndex index = GZIPMemberIndex.build( new ByteArrayInputStream( compressed ) );
+    assertEquals( 15, index.getNrMembers() );
+    assertEquals( compressed.length, index.getCompressedSize() );
+    assertEquals( data.length, index.getUncompressedSize() );
+
+    // the index survives a round trip through the index file format
+    ByteArrayOutputStream indexFile = new ByteArrayOutputStream();
+    index.write( indexFile );
+    index = GZIPMemberIndex.read( new ByteArrayInputStream( indexFile.toByteArray() ) );
+    assertEquals( 15, index.getNrMembers() );
+
+    int member = 6;
+    int compressedOffset = (int) index.getCompressedOffset( member );
+    InputStream in = new ByteArrayInputStream( compressed, compressedOffset, compressed.length - compressedOffset );
+    byte[] read = readAll( new ParallelGZIPInputStream( in, index, member, 0 ) );
+    assertArrayEquals( Arrays.copyOfRange( data, 7000 * member, data.length ), read );
+  }
+
+  @Test
+  public void testCreateIndexFileOnLoad() throws Exception {
+    byte[] data = testData( 100000 );
+    File file = temporaryFolder.newFile( "classic.gz" );
+    Files.write( file.toPath(), compressClassic( data, 7000 ) );
+    FileObject fileObject = KettleVFS.getFileObject( file.getAbsolutePath() );
+
+    assertNull( GZIPMemberIndex.load( fileObject ) );
+    assertEquals( 15, GZIPMemberIndex.loadOrCreate( fileObject ).getNrMembers() );
+    assertTrue( new File( file.getAbsolutePath() + GZIPMemberIndex.INDEX_EXTENSION ).exists() );
+    // the next reader finds the index file
+    assertEquals( 15, GZIPMemberIndex.load( fileObject ).getNrMembers() );
+  }
+
+  @Test
+  public void testCorruptMember() throws IOException {
+    byte[] data = testData( 10000 );
+    byte[] compressed = compressParallel( data, 4096 );
+    compressed[compressed.length - 5]++; // the CRC of the last member
+    try {
+      readAll( new ParallelGZIPInputStream( new ByteArrayInputStream( compressed ) ) );
+      fail();
+    } catch ( ZipException e ) {
+      // Success, the CRC check failed
+    }
+  }
+}
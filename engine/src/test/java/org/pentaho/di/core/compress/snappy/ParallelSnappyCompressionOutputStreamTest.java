@@ -0,0 +1,88 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.snappy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.compress.CompressionInputStream;
+import org.pentaho.di.core.compress.CompressionPluginType;
+import org.pentaho.di.core.compress.CompressionProvider;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+
+public class ParallelSnappyCompressionOutputStreamTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  public static final String PROVIDER_NAME = "Parallel Snappy";
+
+  public CompressionProvider provider = null;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    PluginRegistry.addPluginType( CompressionPluginType.getInstance() );
+    PluginRegistry.init( false );
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    provider = CompressionProviderFactory.getInstance().getCompressionProviderByName( PROVIDER_NAME );
+  }
+
+  @Test
+  public void testProvider() {
+    assertNotNull( provider );
+    assertEquals( "Parallel Snappy compression", provider.getDescription() );
+  }
+
+  @Test
+  public void testReadBackBySnappyProvider() throws IOException {
+    byte[] data = new byte[500000];
+    Random random = new Random( 7 );
+    for ( int i = 0; i < data.length; i++ ) {
+      data[i] = (byte) ( '0' + random.nextInt( 10 ) );
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ParallelSnappyCompressionOutputStream outStream = new ParallelSnappyCompressionOutputStream( out, provider, 8192 );
+    outStream.write( data );
+    outStream.flush();
+    outStream.close();
+
+    CompressionProvider snappy = CompressionProviderFactory.getInstance().getCompressionProviderByName( "Snappy" );
+    CompressionInputStream in = snappy.createInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    assertArrayEquals( data, IOUtils.toByteArray( in ) );
+  }
+}
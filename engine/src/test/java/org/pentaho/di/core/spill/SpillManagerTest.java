@@ -0,0 +1,169 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.spill;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.compress.CompressionPluginType;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+
+public class SpillManagerTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private static RowMetaInterface rowMeta;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    PluginRegistry.addPluginType( CompressionPluginType.getInstance() );
+    PluginRegistry.init( false );
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+  }
+
+  private static Object[] row( long id ) {
+    return new Object[] { id, id % 10 == 0 ? null : "row " + id };
+  }
+
+  private static void writeAndReadBack( SpillManager manager, boolean compress ) throws Exception {
+    SpillFile file = manager.createFile( "spill-test", null, new Variables(), rowMeta, compress );
+    FileObject fileObject = file.getFile();
+    for ( long i = 0; i < 2500; i++ ) {
+      file.add( row( i ) );
+    }
+    assertEquals( 2500, file.getRowCount() );
+
+    SpillReader reader = file.openReader();
+    for ( int pass = 0; pass < 2; pass++ ) {
+      for ( long i = 0; i < 2500; i++ ) {
+        assertTrue( reader.hasNext() );
+        Object[] read = reader.next();
+        assertEquals( i, read[0] );
+        assertEquals( row( i )[1], read[1] );
+      }
+      assertFalse( reader.hasNext() );
+      assertNull( reader.next() );
+      reader.rewind();
+    }
+    reader.close();
+
+    assertTrue( fileObject.exists() );
+    assertTrue( file.delete() );
+    assertFalse( fileObject.exists() );
+  }
+
+  @Test
+  public void testWriteAndReadBack() throws Exception {
+    SpillManager manager = new SpillManager( 0, null );
+    writeAndReadBack( manager, false );
+
+    assertEquals( 1, manager.getFilesCreated() );
+    assertEquals( 2500, manager.getRowsWritten() );
+    assertEquals( 5000, manager.getRowsRead() );
+    assertTrue( manager.getBytesWritten() > 0 );
+  }
+
+  @Test
+  public void testWriteAndReadBackCompressed() throws Exception {
+    SpillManager plain = new SpillManager( 0, "None" );
+    writeAndReadBack( plain, true );
+    SpillManager compressed = new SpillManager( 0, SpillManager.DEFAULT_COMPRESSION );
+    writeAndReadBack( compressed, true );
+
+    assertEquals( 2500, compressed.getRowsWritten() );
+    assertTrue( compressed.getBytesWritten() < plain.getBytesWritten() );
+  }
+
+  @Test
+  public void testRowsCantBeAddedOnceRead() throws Exception {
+    SpillFile file = new SpillManager( 0, null ).createFile( "spill-test", null, new Variables(), rowMeta, false );
+    file.add( row( 1 ) );
+    file.openReader().close();
+    try {
+      file.add( row( 2 ) );
+      fail( "Rows can't be added once the file is read" );
+    } catch ( KettleException e ) {
+      assertNotNull( e.getMessage() );
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testMemoryBudget() {
+    SpillManager manager = new SpillManager( 1500, null );
+    SpillManager.MemoryAccount first = manager.openAccount();
+    SpillManager.MemoryAccount second = manager.openAccount();
+
+    assertTrue( first.add( 1200 ) );
+    // over the budget, but the step keeps too few rows to be worth writing to disk
+    assertTrue( second.add( 500 ) );
+    assertFalse( first.add( 1 ) );
+    assertEquals( 1701, manager.getRowsInMemory() );
+
+    first.release( 1000 );
+    assertEquals( 201, first.getRows() );
+    assertTrue( first.add( 1 ) );
+
+    first.release();
+    second.release();
+    assertEquals( 0, manager.getRowsInMemory() );
+    assertEquals( 1701, manager.getPeakRowsInMemory() );
+  }
+
+  @Test
+  public void testNoBudget() {
+    SpillManager manager = new SpillManager( 0, null );
+    assertTrue( manager.openAccount().add( 1000000 ) );
+  }
+
+  @Test
+  public void testFromVariables() {
+    Variables variables = new Variables();
+    SpillManager manager = SpillManager.fromVariables( variables );
+    assertEquals( 0, manager.getMemoryRows() );
+    assertEquals( SpillManager.DEFAULT_COMPRESSION, manager.getCompression() );
+
+    variables.setVariable( "KETTLE_TRANS_SPILL_MEMORY_ROWS", "100000" );
+    variables.setVariable( "KETTLE_SPILL_COMPRESSION", "GZip" );
+    manager = SpillManager.fromVariables( variables );
+    assertEquals( 100000, manager.getMemoryRows() );
+    assertEquals( "GZip", manager.getCompression() );
+  }
+}
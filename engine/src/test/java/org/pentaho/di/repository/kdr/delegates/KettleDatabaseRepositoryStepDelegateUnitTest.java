@@ -27,16 +27,27 @@ import org.hamcrest.Description;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.repository.LongObjectId;
+import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -98,4 +109,61 @@ public class KettleDatabaseRepositoryStepDelegateUnitTest {
         map );
     assertEquals( map, kettleDatabaseRepositoryStepDelegate.getStepTypeCodeToIdMap() );
   }
+
+  @Test
+  public void getStepUsesTheStepBufferUntilCleared() throws KettleException {
+    KettleDatabaseRepository repository = new KettleDatabaseRepository();
+    KettleDatabaseRepositoryConnectionDelegate connectionDelegate =
+      mock( KettleDatabaseRepositoryConnectionDelegate.class );
+    repository.connectionDelegate = connectionDelegate;
+    when( connectionDelegate.getDatabaseMeta() ).thenReturn( mock( DatabaseMeta.class ) );
+
+    ObjectId transId = new LongObjectId( 5 );
+    RowMetaAndData stepRow = new RowMetaAndData();
+    stepRow.addValue( new ValueMetaInteger( KettleDatabaseRepository.FIELD_STEP_ID_STEP ), 1L );
+    Map<Long, RowMetaAndData> steps = new HashMap<Long, RowMetaAndData>();
+    steps.put( 1L, stepRow );
+    when( connectionDelegate.getRowsByID( anyString(), eq( KettleDatabaseRepository.FIELD_STEP_ID_STEP ),
+      eq( transId ) ) ).thenReturn( steps );
+
+    KettleDatabaseRepositoryStepDelegate delegate = new KettleDatabaseRepositoryStepDelegate( repository );
+    delegate.fillStepBuffer( transId );
+    assertSame( stepRow, delegate.getStep( new LongObjectId( 1 ) ) );
+    verify( connectionDelegate, never() ).getOneRow( anyString(), anyString(), any( ObjectId.class ) );
+
+    delegate.clearStepBuffer();
+    delegate.getStep( new LongObjectId( 1 ) );
+    verify( connectionDelegate ).getOneRow( anyString(), anyString(), any( ObjectId.class ) );
+  }
+
+  @Test
+  public void getStepTypeReadsAllTheStepTypesOnce() throws KettleException {
+    KettleDatabaseRepository repository = new KettleDatabaseRepository();
+    KettleDatabaseRepositoryConnectionDelegate connectionDelegate =
+      mock( KettleDatabaseRepositoryConnectionDelegate.class );
+    repository.connectionDelegate = connectionDelegate;
+    when( connectionDelegate.getDatabaseMeta() ).thenReturn( mock( DatabaseMeta.class ) );
+
+    Map<Long, RowMetaAndData> stepTypes = new HashMap<Long, RowMetaAndData>();
+    for ( long id = 1; id <= 2; id++ ) {
+      RowMetaAndData stepTypeRow = new RowMetaAndData();
+      stepTypeRow.addValue( new ValueMetaInteger( KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE ), id );
+      stepTypeRow.addValue( new ValueMetaString( KettleDatabaseRepository.FIELD_STEP_TYPE_CODE ), "Type" + id );
+      stepTypes.put( id, stepTypeRow );
+    }
+    when( connectionDelegate.getRowsByID( anyString(), eq( KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE ) ) )
+      .thenReturn( stepTypes );
+
+    KettleDatabaseRepositoryStepDelegate delegate = new KettleDatabaseRepositoryStepDelegate( repository );
+    assertEquals( "Type1", delegate.getStepType( new LongObjectId( 1 ) ).getString(
+      KettleDatabaseRepository.FIELD_STEP_TYPE_CODE, null ) );
+    assertEquals( "Type2", delegate.getStepType( new LongObjectId( 2 ) ).getString(
+      KettleDatabaseRepository.FIELD_STEP_TYPE_CODE, null ) );
+    assertEquals( "Type1", delegate.getStepType( new LongObjectId( 1 ) ).getString(
+      KettleDatabaseRepository.FIELD_STEP_TYPE_CODE, null ) );
+
+    verify( connectionDelegate, times( 1 ) ).getRowsByID( anyString(),
+      eq( KettleDatabaseRepository.FIELD_STEP_TYPE_ID_STEP_TYPE ) );
+    verify( connectionDelegate, never() ).getOneRow( anyString(), anyString(), any( ObjectId.class ) );
+  }
 }
@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+
+public class HashPartitionerTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private static RowMeta createRowMeta( ValueMetaInterface valueMeta ) {
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( valueMeta );
+    return rowMeta;
+  }
+
+  private static <T extends HashPartitioner> T createPartitioner( T partitioner, int nrPartitions ) {
+    partitioner.setFieldName( "key" );
+    partitioner.setNrPartitions( nrPartitions );
+    return partitioner;
+  }
+
+  @Test
+  public void testSerialization() throws KettleException {
+    List<String> attributes = Arrays.asList( "FieldName" );
+    new LoadSaveTester<HashPartitioner>( HashPartitioner.class, attributes ).testSerialization();
+    new LoadSaveTester<ConsistentHashPartitioner>( ConsistentHashPartitioner.class, attributes ).testSerialization();
+    new LoadSaveTester<SkewAwarePartitioner>( SkewAwarePartitioner.class, attributes ).testSerialization();
+  }
+
+  @Test
+  public void testModPartitionerHandlesMinValue() throws KettleException {
+    ModPartitioner partitioner = new ModPartitioner();
+    partitioner.setFieldName( "key" );
+    partitioner.setNrPartitions( 3 );
+    RowMeta rowMeta = createRowMeta( new ValueMetaInteger( "key" ) );
+    int partition = partitioner.getPartition( rowMeta, new Object[] { Long.MIN_VALUE } );
+    assertTrue( partition >= 0 && partition < 3 );
+  }
+
+  @Test
+  public void testSimilarStringsAreSpreadEvenly() throws KettleException {
+    HashPartitioner partitioner = createPartitioner( new HashPartitioner(), 8 );
+    RowMeta rowMeta = createRowMeta( new ValueMetaString( "key" ) );
+    int[] counts = new int[8];
+    for ( int i = 0; i < 80000; i++ ) {
+      counts[partitioner.getPartition( rowMeta, new Object[] { "CUSTOMER-" + i } )]++;
+    }
+    for ( int count : counts ) {
+      assertTrue( "Uneven distribution: " + Arrays.toString( counts ), count > 9000 && count < 11000 );
+    }
+  }
+
+  @Test
+  public void testHashDoesNotDependOnStorageType() throws KettleException {
+    ValueMetaString normal = new ValueMetaString( "key" );
+    ValueMetaString lazy = new ValueMetaString( "key" );
+    lazy.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+    lazy.setStorageMetadata( new ValueMetaString( "key" ) );
+    assertEquals( HashPartitioner.hash( normal, "ABC" ), HashPartitioner.hash( lazy, "ABC".getBytes() ) );
+  }
+
+  @Test
+  public void testConsistentHashMovesFewRows() throws KettleException {
+    RowMeta rowMeta = createRowMeta( new ValueMetaInteger( "key" ) );
+    ConsistentHashPartitioner four = createPartitioner( new ConsistentHashPartitioner(), 4 );
+    ConsistentHashPartitioner five = createPartitioner( new ConsistentHashPartitioner(), 5 );
+    int moved = 0;
+    int[] counts = new int[5];
+    for ( long i = 0; i < 10000; i++ ) {
+      Object[] row = new Object[] { i };
+      int partition = five.getPartition( rowMeta, row );
+      counts[partition]++;
+      if ( partition != four.getPartition( rowMeta, row ) ) {
+        moved++;
+      }
+    }
+    // Only the rows taken over by the new partition move: about 1/5
+    assertTrue( "Moved " + moved, moved < 3000 );
+    assertEquals( moved, counts[4] );
+    for ( int count : counts ) {
+      assertTrue( "Uneven distribution: " + Arrays.toString( counts ), count > 1000 );
+    }
+  }
+
+  @Test
+  public void testSkewAwareSpreadsHotValue() throws KettleException {
+    SkewAwarePartitioner partitioner = createPartitioner( new SkewAwarePartitioner(), 4 );
+    RowMeta rowMeta = createRowMeta( new ValueMetaString( "key" ) );
+    int[] counts = new int[4];
+    for ( int i = 0; i < 200000; i++ ) {
+      // Half of the rows have the same value
+      String key = i % 2 == 0 ? "HOT" : "KEY-" + i;
+      counts[partitioner.getPartition( rowMeta, new Object[] { key } )]++;
+    }
+    assertEquals( 1, partitioner.getHotHashes().length );
+    for ( int count : counts ) {
+      assertTrue( "Uneven distribution: " + Arrays.toString( counts ), count > 40000 && count < 60000 );
+    }
+
+    // Values that are not hot keep their partition
+    assertEquals( partitioner.getPartition( rowMeta, new Object[] { "KEY-1" } ),
+      createPartitioner( new HashPartitioner(), 4 ).getPartition( rowMeta, new Object[] { "KEY-1" } ) );
+  }
+}
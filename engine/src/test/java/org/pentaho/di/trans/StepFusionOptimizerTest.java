@@ -0,0 +1,133 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.calculator.CalculatorMeta;
+import org.pentaho.di.trans.steps.calculator.CalculatorMetaFunction;
+
+public class StepFusionOptimizerTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private TransMeta transMeta;
+  private StepMeta injector;
+  private StepMeta multiply;
+  private StepMeta add;
+  private StepMeta dummy;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleEnvironment.init( false );
+  }
+
+  @Before
+  public void setUp() {
+    transMeta = new TransMeta();
+    injector = TransTestFactory.getInjectorStepMeta();
+    multiply = createCalculator( "multiply", "c", CalculatorMetaFunction.CALC_MULTIPLY, "a", "b" );
+    add = createCalculator( "add", "d", CalculatorMetaFunction.CALC_ADD, "c", "a" );
+    dummy = TransTestFactory.getReadStepMeta();
+    for ( StepMeta stepMeta : Arrays.asList( injector, multiply, add, dummy ) ) {
+      transMeta.addStep( stepMeta );
+    }
+    transMeta.addTransHop( new TransHopMeta( injector, multiply ) );
+    transMeta.addTransHop( new TransHopMeta( multiply, add ) );
+    transMeta.addTransHop( new TransHopMeta( add, dummy ) );
+  }
+
+  private static StepMeta createCalculator( String name, String field, int type, String fieldA, String fieldB ) {
+    CalculatorMeta meta = new CalculatorMeta();
+    meta.setCalculation( new CalculatorMetaFunction[] { new CalculatorMetaFunction( field, type, fieldA, fieldB, null,
+      ValueMetaInterface.TYPE_NUMBER, -1, -1, false, null, null, null, null ) } );
+    return new StepMeta( "Calculator", name, meta );
+  }
+
+  @Test
+  public void testLinearChainIsFused() {
+    StepFusionOptimizer optimizer = new StepFusionOptimizer( transMeta );
+    assertEquals( 1, optimizer.getChains().size() );
+    assertEquals( Arrays.asList( multiply, add ), optimizer.getChains().get( 0 ) );
+    assertTrue( optimizer.isFusedHop( multiply, add ) );
+    assertFalse( optimizer.isFusedHop( injector, multiply ) );
+    assertFalse( optimizer.isFusedHop( add, dummy ) );
+    assertNull( optimizer.getChain( dummy ) );
+  }
+
+  @Test
+  public void testNoFusionWithASecondTarget() {
+    StepMeta other = TransTestFactory.getReadStepMeta( "other" );
+    transMeta.addStep( other );
+    transMeta.addTransHop( new TransHopMeta( multiply, other ) );
+    assertTrue( new StepFusionOptimizer( transMeta ).getChains().isEmpty() );
+  }
+
+  @Test
+  public void testNoFusionOfStepCopies() {
+    add.setCopies( 2 );
+    assertTrue( new StepFusionOptimizer( transMeta ).getChains().isEmpty() );
+  }
+
+  @Test
+  public void testFusedChainCalculatesTheSameRows() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaNumber( "a" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "b" ) );
+    List<RowMetaAndData> rows = new ArrayList<RowMetaAndData>();
+    for ( int i = 0; i < 1000; i++ ) {
+      rows.add( new RowMetaAndData( rowMeta, (double) i, 2.0 ) );
+    }
+
+    System.setProperty( Const.KETTLE_STEP_FUSION, "Y" );
+    try {
+      List<RowMetaAndData> result = TransTestFactory.executeTestTransformation( transMeta,
+        TransTestFactory.INJECTOR_STEPNAME, "add", TransTestFactory.DUMMY_STEPNAME, rows );
+      assertEquals( rows.size(), result.size() );
+      for ( int i = 0; i < result.size(); i++ ) {
+        assertEquals( 3.0 * i, result.get( i ).getNumber( "d", -1.0 ), 0.0 );
+      }
+    } finally {
+      System.clearProperty( Const.KETTLE_STEP_FUSION );
+    }
+  }
+}
@@ -63,6 +63,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -197,4 +198,107 @@ public class SubtransExecutorTest {
           + "===================="
       );
   }
+
+  @Test
+  public void testContinuousRunsOneTransForAllBatches() throws Exception {
+    TransMeta parentMeta =
+      new TransMeta( this.getClass().getResource( "subtrans-executor-parent.ktr" ).getPath(), new Variables() );
+    TransMeta subMeta =
+      new TransMeta( this.getClass().getResource( "subtrans-executor-sub-continuous.ktr" ).getPath(),
+        new Variables() );
+    LoggingObjectInterface loggingObject = new LoggingObject( "anything" );
+    Trans parentTrans = spy( new Trans( parentMeta, loggingObject ) );
+    SubtransExecutor subtransExecutor =
+      new SubtransExecutor( "subtransname", parentTrans, subMeta, true, new TransExecutorParameters(),
+        "Memory group by" );
+    subtransExecutor.setContinuous( true );
+    RowMetaInterface rowMeta = parentMeta.getStepFields( "Data Grid" );
+
+    Optional<Result> first = subtransExecutor.execute( Arrays.asList(
+      new RowMetaAndData( rowMeta, "Pentaho", 1L ),
+      new RowMetaAndData( rowMeta, "Pentaho", 2L ),
+      new RowMetaAndData( rowMeta, "Pentaho", 3L ),
+      new RowMetaAndData( rowMeta, "Pentaho", 4L ) ) );
+    List<RowMetaAndData> firstRows = first.orElseThrow( AssertionError::new ).getRows();
+    assertEquals( 1, firstRows.size() );
+    assertEquals( 10L, firstRows.get( 0 ).getInteger( "sum", -1L ) );
+
+    // the next batch is aggregated on its own by the same sub-transformation
+    Optional<Result> second = subtransExecutor.execute( Arrays.asList(
+      new RowMetaAndData( rowMeta, "Pentaho", 5L ),
+      new RowMetaAndData( rowMeta, "Kettle", 6L ) ) );
+    List<RowMetaAndData> secondRows = second.orElseThrow( AssertionError::new ).getRows();
+    assertEquals( 2, secondRows.size() );
+
+    assertTrue( subtransExecutor.isContinuous() );
+    assertEquals( 1, subtransExecutor.running.size() );
+    verify( parentTrans, times( 1 ) ).addActiveSubTransformation( eq( "subtransname" ), any( Trans.class ) );
+
+    subtransExecutor.finish();
+    assertTrue( subtransExecutor.running.isEmpty() );
+  }
+
+  @Test
+  public void testContinuousFallsBackToTransPerBatch() throws Exception {
+    TransMeta parentMeta =
+      new TransMeta( this.getClass().getResource( "subtrans-executor-parent.ktr" ).getPath(), new Variables() );
+    TransMeta subMeta =
+      new TransMeta( this.getClass().getResource( "subtrans-executor-sub.ktr" ).getPath(), new Variables() );
+    LoggingObjectInterface loggingObject = new LoggingObject( "anything" );
+    Trans parentTrans = new Trans( parentMeta, loggingObject );
+    SubtransExecutor subtransExecutor =
+      new SubtransExecutor( "subtransname", parentTrans, subMeta, true, new TransExecutorParameters(), "Group By" );
+    subtransExecutor.setContinuous( true );
+    RowMetaInterface rowMeta = parentMeta.getStepFields( "Data Grid" );
+    List<RowMetaAndData> rows = Arrays.asList(
+      new RowMetaAndData( rowMeta, "Pentaho", 1L ),
+      new RowMetaAndData( rowMeta, "Pentaho", 2L ) );
+
+    // "Get rows from result" and "Group by" can't keep running between batches
+    Optional<Result> result = subtransExecutor.execute( rows );
+    assertEquals( 1, result.orElseThrow( AssertionError::new ).getRows().size() );
+    assertFalse( subtransExecutor.isContinuous() );
+  }
+
+  @Test
+  public void testContinuousStopDisposesTheSubtrans() throws Exception {
+    TransMeta parentMeta =
+      new TransMeta( this.getClass().getResource( "subtrans-executor-parent.ktr" ).getPath(), new Variables() );
+    TransMeta subMeta =
+      new TransMeta( this.getClass().getResource( "subtrans-executor-sub-continuous.ktr" ).getPath(),
+        new Variables() );
+    Trans parentTrans = new Trans( parentMeta, new LoggingObject( "anything" ) );
+    SubtransExecutor subtransExecutor =
+      new SubtransExecutor( "subtransname", parentTrans, subMeta, true, new TransExecutorParameters(),
+        "Memory group by" );
+    subtransExecutor.setContinuous( true );
+    RowMetaInterface rowMeta = parentMeta.getStepFields( "Data Grid" );
+    subtransExecutor.execute( Arrays.asList( new RowMetaAndData( rowMeta, "Pentaho", 1L ) ) );
+    assertEquals( 1, subtransExecutor.running.size() );
+
+    subtransExecutor.stop();
+    assertTrue( subtransExecutor.running.isEmpty() );
+    assertFalse( subtransExecutor.execute( Arrays.asList( new RowMetaAndData( rowMeta, "Pentaho", 2L ) ) )
+      .isPresent() );
+  }
+
+  @Test
+  public void testBatchResultOnlyCountsTheLastBatch() {
+    Result previous = new Result();
+    previous.setNrLinesRead( 10 );
+    previous.setNrLinesWritten( 4 );
+    previous.setNrErrors( 1 );
+    Result totals = new Result();
+    totals.setNrLinesRead( 15 );
+    totals.setNrLinesWritten( 6 );
+    totals.setNrErrors( 1 );
+
+    Result batch = SubtransExecutor.getBatchResult( totals, previous );
+    assertEquals( 5, batch.getNrLinesRead() );
+    assertEquals( 2, batch.getNrLinesWritten() );
+    assertEquals( 0, batch.getNrErrors() );
+    assertTrue( batch.getResult() );
+
+    assertEquals( totals, SubtransExecutor.getBatchResult( totals, null ) );
+  }
 }
@@ -56,6 +56,7 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaChangeListenerInterface;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.step.StepPartitioningMeta;
+import org.pentaho.di.trans.steps.addsequence.AddSequenceMeta;
 import org.pentaho.di.trans.steps.datagrid.DataGridMeta;
 import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
 import org.pentaho.di.trans.steps.textfileoutput.TextFileOutputMeta;
@@ -748,6 +749,99 @@ public class TransMetaTest {
     assertThat( new String[] { "field3", "field4", "field5", "outputField" }, equalTo( results.getFieldNames() ) );
   }
 
+  @Test
+  public void changingAStepOnlyClearsTheFieldsDownstream() throws KettleStepException {
+    TransMeta transMeta = new TransMeta( new Variables() );
+    StepMeta a = testStep( "a", emptyList(), singletonList( "fa" ) );
+    StepMeta b = testStep( "b", emptyList(), singletonList( "fb" ) );
+    StepMeta c = testStep( "c", emptyList(), singletonList( "fc" ) );
+    StepMeta d = testStep( "d", emptyList(), singletonList( "fd" ) );
+    transMeta.addStep( a );
+    transMeta.addStep( b );
+    transMeta.addStep( c );
+    transMeta.addStep( d );
+    transMeta.addTransHop( new TransHopMeta( a, b ) );
+    transMeta.addTransHop( new TransHopMeta( c, d ) );
+
+    transMeta.getStepFields( b );
+    transMeta.getStepFields( d );
+    transMeta.clearCaches( a );
+
+    assertThat( new String[] { "fa", "fb" }, equalTo( transMeta.getStepFields( b ).getFieldNames() ) );
+    assertThat( new String[] { "fc", "fd" }, equalTo( transMeta.getStepFields( d ).getFieldNames() ) );
+    verify( a.getStepMetaInterface(), times( 2 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+    verify( b.getStepMetaInterface(), times( 2 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+    verify( c.getStepMetaInterface(), times( 1 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+    verify( d.getStepMetaInterface(), times( 1 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+
+    // a new hop only clears the fields of its target and what comes after it
+    transMeta.addTransHop( new TransHopMeta( a, d ) );
+    assertThat( new String[] { "fc", "fa", "fd" }, equalTo( transMeta.getStepFields( d ).getFieldNames() ) );
+    transMeta.getStepFields( b );
+    verify( b.getStepMetaInterface(), times( 2 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+    verify( c.getStepMetaInterface(), times( 1 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+  }
+
+  @Test
+  public void stepFieldsAreRefreshedWhenAStepIsChangedThroughASetter() throws KettleStepException {
+    TransMeta transMeta = new TransMeta( new Variables() );
+    StepMeta a = testStep( "a", emptyList(), singletonList( "fa" ) );
+    AddSequenceMeta sequenceMeta = new AddSequenceMeta();
+    sequenceMeta.setDefault();
+    sequenceMeta.setValuename( "seq1" );
+    StepMeta b = new StepMeta( "b", sequenceMeta );
+    StepMeta c = testStep( "c", emptyList(), singletonList( "fc" ) );
+    transMeta.addStep( a );
+    transMeta.addStep( b );
+    transMeta.addStep( c );
+    transMeta.addTransHop( new TransHopMeta( a, b ) );
+    transMeta.addTransHop( new TransHopMeta( b, c ) );
+
+    assertEquals( asList( "fa", "seq1" ), asList( transMeta.getPrevStepFields( c ).getFieldNames() ) );
+
+    // Not marked as changed, the way API callers and metadata injection change steps
+    sequenceMeta.setValuename( "seq2" );
+    assertFalse( sequenceMeta.hasChanged() );
+    assertEquals( asList( "fa", "seq2" ), asList( transMeta.getPrevStepFields( c ).getFieldNames() ) );
+    assertEquals( asList( "fa", "seq2" ), asList( transMeta.getStepFields( b ).getFieldNames() ) );
+    verify( a.getStepMetaInterface(), times( 1 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+  }
+
+  @Test
+  public void stepFieldsAreRefreshedWhenAVariableChanges() throws KettleStepException {
+    TransMeta transMeta = new TransMeta( new Variables() );
+    StepMeta a = testStep( "a", emptyList(), singletonList( "fa" ) );
+    StepMeta b = testStep( "b", emptyList(), singletonList( "fb" ) );
+    transMeta.addStep( a );
+    transMeta.addStep( b );
+    transMeta.addTransHop( new TransHopMeta( a, b ) );
+
+    transMeta.getStepFields( b );
+    transMeta.getStepFields( b );
+    verify( a.getStepMetaInterface(), times( 1 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+
+    transMeta.setVariable( "TABLE", "other" );
+    transMeta.getStepFields( b );
+    verify( a.getStepMetaInterface(), times( 2 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+    verify( b.getStepMetaInterface(), times( 2 ) ).getFields( any(), any(), any(), any(), any(), any(), any() );
+  }
+
+  @Test
+  public void callersCantChangeTheCachedStepFields() throws KettleStepException {
+    TransMeta transMeta = new TransMeta( new Variables() );
+    StepMeta a = testStep( "a", emptyList(), singletonList( "fa" ) );
+    StepMeta b = testStep( "b", emptyList(), singletonList( "fb" ) );
+    transMeta.addStep( a );
+    transMeta.addStep( b );
+    transMeta.addTransHop( new TransHopMeta( a, b ) );
+
+    transMeta.getStepFields( b ).addValueMeta( new ValueMetaString( "extra" ) );
+    transMeta.getPrevStepFields( b ).addValueMeta( new ValueMetaString( "extra" ) );
+
+    assertEquals( 2, transMeta.getStepFields( b ).size() );
+    assertEquals( 1, transMeta.getPrevStepFields( b ).size() );
+  }
+
   private void wireUpTestTransMeta( TransMeta transMeta, StepMeta toBeAppended1, StepMeta toBeAppended2,
                                     StepMeta append, StepMeta after ) {
     transMeta.addStep( append );
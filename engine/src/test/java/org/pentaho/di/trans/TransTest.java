@@ -42,6 +42,7 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileObject;
@@ -50,6 +51,7 @@ import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.ProgressMonitorListener;
 import org.pentaho.di.core.Result;
@@ -64,8 +66,14 @@ import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
 import org.pentaho.di.repository.Repository;
 import org.pentaho.di.repository.RepositoryDirectoryInterface;
+import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
+import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaDataCombi;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.dummytrans.DummyTrans;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
 
 public class TransTest {
   @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
@@ -284,6 +292,47 @@ public class TransTest {
     assertTrue( result.isSafeStop() );
   }
 
+  @Test( timeout = 10000 )
+  public void testLimitedNumberOfStepInitThreads() throws KettleException {
+    final AtomicInteger initializing = new AtomicInteger();
+    final AtomicInteger peak = new AtomicInteger();
+    TransMeta transMeta = new TransMeta();
+    for ( int i = 0; i < 5; i++ ) {
+      StepMeta stepMeta = new StepMeta( "slow init" + i, new DummyTransMeta() {
+        @Override
+        public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr,
+          TransMeta tr, Trans trans ) {
+          return new DummyTrans( stepMeta, stepDataInterface, cnr, tr, trans ) {
+            @Override
+            public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+              peak.accumulateAndGet( initializing.incrementAndGet(), Math::max );
+              try {
+                Thread.sleep( 20 );
+              } catch ( InterruptedException e ) {
+                return false;
+              } finally {
+                initializing.decrementAndGet();
+              }
+              return super.init( smi, sdi );
+            }
+          };
+        }
+      } );
+      stepMeta.setCopies( 2 );
+      transMeta.addStep( stepMeta );
+    }
+    Trans limited = new Trans( transMeta );
+    limited.setLog( Mockito.mock( LogChannelInterface.class ) );
+    limited.setVariable( Const.KETTLE_STEP_INIT_THREADS, "3" );
+    limited.prepareExecution( null );
+
+    assertEquals( 10, limited.getSteps().size() );
+    for ( StepMetaDataCombi combi : limited.getSteps() ) {
+      assertEquals( StepExecutionStatus.STATUS_IDLE, combi.data.getStatus() );
+    }
+    assertTrue( "at most 3 step copies initialize at the same time, not " + peak.get(), peak.get() <= 3 );
+  }
+
   private void startThreads( Runnable one, Runnable two, CountDownLatch start ) throws InterruptedException {
     Thread th = new Thread( one );
     Thread tt = new Thread( two );
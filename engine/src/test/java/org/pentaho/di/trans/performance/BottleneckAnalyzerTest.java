@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.trans.step.StepInterface;
+
+public class BottleneckAnalyzerTest {
+
+  private static final long MS = 1000000L;
+
+  private static StepInterface step( String name, long runtime ) {
+    StepInterface step = mock( StepInterface.class );
+    when( step.getStepname() ).thenReturn( name );
+    when( step.getCopy() ).thenReturn( 0 );
+    when( step.getRuntime() ).thenReturn( runtime );
+    return step;
+  }
+
+  private static RowSet hop( String from, String to, long putWait, long getWait ) {
+    RowSet rowSet = mock( RowSet.class );
+    when( rowSet.getOriginStepName() ).thenReturn( from );
+    when( rowSet.getDestinationStepName() ).thenReturn( to );
+    when( rowSet.getPutWaitNanos() ).thenReturn( putWait );
+    when( rowSet.getGetWaitNanos() ).thenReturn( getWait );
+    return rowSet;
+  }
+
+  @Test
+  public void testSlowStepInTheMiddle() {
+    // input is blocked by the slow step most of the time, output starves
+    List<StepInterface> steps = Arrays.asList( step( "input", 1000 ), step( "slow", 1000 ), step( "output", 1000 ) );
+    List<RowSet> rowSets =
+      Arrays.asList( hop( "input", "slow", 900 * MS, 0L ), hop( "slow", "output", 0L, 950 * MS ) );
+
+    List<StepBottleneck> bottlenecks = BottleneckAnalyzer.analyze( steps, rowSets );
+    assertEquals( 3, bottlenecks.size() );
+
+    StepBottleneck slow = bottlenecks.get( 0 );
+    assertEquals( "slow", slow.getStepName() );
+    assertEquals( 1.0, slow.getBusyRatio(), 0.0001 );
+    assertEquals( 0.9, slow.getBackPressure(), 0.0001 );
+    assertEquals( 0.95, slow.getStarvation(), 0.0001 );
+    assertEquals( 0.95, slow.getScore(), 0.0001 );
+
+    for ( StepBottleneck other : bottlenecks.subList( 1, 3 ) ) {
+      assertTrue( other.getScore() < 0.1 );
+    }
+  }
+
+  @Test
+  public void testWaitTimesAndLimits() {
+    List<StepInterface> steps = Arrays.asList( step( "a", 100 ), step( "b", 0 ) );
+    List<RowSet> rowSets = Arrays.asList( hop( "a", "b", 500 * MS, 20 * MS ) );
+
+    for ( StepBottleneck bottleneck : BottleneckAnalyzer.analyze( steps, rowSets ) ) {
+      if ( bottleneck.getStepName().equals( "a" ) ) {
+        assertEquals( 500 * MS, bottleneck.getOutputWaitTime() );
+        assertEquals( 0L, bottleneck.getInputWaitTime() );
+        assertEquals( 0.0, bottleneck.getBusyRatio(), 0.0 );
+      } else {
+        // a step that didn't start yet is not a bottleneck
+        assertEquals( 20 * MS, bottleneck.getInputWaitTime() );
+        assertEquals( 0.0, bottleneck.getScore(), 0.0 );
+      }
+    }
+  }
+
+  @Test
+  public void testStepWithoutHops() {
+    List<StepBottleneck> bottlenecks = BottleneckAnalyzer.analyze( Arrays.asList( step( "alone", 10 ) ), null );
+    assertEquals( 1.0, bottlenecks.get( 0 ).getScore(), 0.0 );
+  }
+}
@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.pentaho.di.core.xml.XMLHandler;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    assertEquals( 0, LatencyHistogram.getBucket( 0 ) );
+    assertEquals( 1, LatencyHistogram.getBucket( 1 ) );
+    assertEquals( 2, LatencyHistogram.getBucket( 3 ) );
+    assertEquals( 3, LatencyHistogram.getBucket( 4 ) );
+    assertEquals( 7L, LatencyHistogram.getBucketUpperBound( 3 ) );
+    assertEquals( LatencyHistogram.NR_OF_BUCKETS - 1, LatencyHistogram.getBucket( Long.MAX_VALUE ) );
+  }
+
+  @Test
+  public void testStatistics() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for ( int i = 0; i < 99; i++ ) {
+      histogram.record( 100 );
+    }
+    histogram.record( 100000 );
+    assertEquals( 100, histogram.getCount() );
+    assertEquals( 99 * 100 + 100000, histogram.getTotalNanos() );
+    assertEquals( 100000, histogram.getMaxNanos() );
+    assertEquals( 127, histogram.getPercentileNanos( 50 ) );
+    assertEquals( 100000, histogram.getPercentileNanos( 100 ) );
+
+    LatencyHistogram total = new LatencyHistogram();
+    total.add( histogram );
+    total.add( histogram );
+    assertEquals( 200, total.getCount() );
+    assertEquals( 100000, total.getMaxNanos() );
+  }
+
+  @Test
+  public void testXML() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record( 5 );
+    histogram.record( 5000 );
+    LatencyHistogram copy =
+      new LatencyHistogram( XMLHandler.getSubNode( XMLHandler.loadXMLString( histogram.getXML() ),
+        LatencyHistogram.XML_TAG ) );
+    assertEquals( 2, copy.getCount() );
+    assertEquals( 5005, copy.getTotalNanos() );
+    assertEquals( 1, copy.getBucketCount( LatencyHistogram.getBucket( 5000 ) ) );
+  }
+}
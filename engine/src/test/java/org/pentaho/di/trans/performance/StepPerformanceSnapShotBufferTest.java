@@ -0,0 +1,72 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.performance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class StepPerformanceSnapShotBufferTest {
+
+  private static void add( StepPerformanceSnapShotBuffer buffer, int seqNr, long linesRead ) {
+    buffer.add( seqNr, 1L, new Date( seqNr * 1000L ), linesRead, 2 * linesRead, 0L, 0L, 0L, 0L, 0L, seqNr, 0L );
+  }
+
+  @Test
+  public void testDifferences() {
+    StepPerformanceSnapShotBuffer buffer = new StepPerformanceSnapShotBuffer( "trans", "step", 0, 0 );
+    for ( int i = 1; i <= 100; i++ ) {
+      add( buffer, i, i * 10L );
+    }
+    assertEquals( 100, buffer.size() );
+    StepPerformanceSnapShot first = buffer.get( 0 );
+    assertEquals( 1, first.getSeqNr() );
+    assertEquals( 10L, first.getLinesRead() );
+    assertEquals( 0L, first.getTimeDifference() );
+
+    StepPerformanceSnapShot last = buffer.get( 99 );
+    assertEquals( 100, last.getSeqNr() );
+    assertEquals( 1000L, last.getTotalLinesRead() );
+    assertEquals( 10L, last.getLinesRead() );
+    assertEquals( 20L, last.getLinesWritten() );
+    assertEquals( 1000L, last.getTimeDifference() );
+    assertEquals( 100L, last.getInputBufferSize() );
+    assertEquals( "step", last.getStepName() );
+  }
+
+  @Test
+  public void testSizeLimitOverwritesOldest() {
+    StepPerformanceSnapShotBuffer buffer = new StepPerformanceSnapShotBuffer( "trans", "step", 0, 5 );
+    for ( int i = 1; i <= 12; i++ ) {
+      add( buffer, i, i * i );
+    }
+    assertEquals( 5, buffer.size() );
+    assertEquals( 8, buffer.get( 0 ).getSeqNr() );
+    assertEquals( 12, buffer.get( 4 ).getSeqNr() );
+    // the oldest snapshot still knows the difference with the one that was overwritten
+    assertEquals( 64L - 49L, buffer.get( 0 ).getLinesRead() );
+    assertEquals( 1000L, buffer.get( 0 ).getTimeDifference() );
+  }
+}
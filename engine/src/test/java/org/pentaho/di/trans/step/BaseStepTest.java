@@ -42,6 +42,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.After;
@@ -527,4 +530,65 @@ public class BaseStepTest {
     baseStepSpy.getRow();
     verify( mockHelper.transMeta, times( 1 ) ).checkRowMixingStatically( any( StepMeta.class ), anyObject() );
   }
+
+  @Test
+  @SuppressWarnings( "deprecation" )
+  public void testDeprecatedLineCountersFollowTheMetrics() {
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    assertEquals( 1, baseStep.incrementLinesRead() );
+    assertEquals( 2, baseStep.incrementLinesRead() );
+    assertEquals( 2, baseStep.linesRead );
+    assertEquals( 2, baseStep.getLinesRead() );
+
+    // steps that still update the fields themselves are counted too
+    baseStep.linesRead++;
+    baseStep.linesWritten += 5;
+    assertEquals( 3, baseStep.getLinesRead() );
+    assertEquals( 5, baseStep.getLinesWritten() );
+    assertEquals( 6, baseStep.incrementLinesWritten() );
+    assertEquals( 6, baseStep.getLinesWritten() );
+
+    baseStep.setLinesOutput( 10 );
+    assertEquals( 10, baseStep.linesOutput );
+    assertEquals( 10, baseStep.getLinesOutput() );
+  }
+
+  @Test
+  @SuppressWarnings( "deprecation" )
+  public void testOtherThreadsSeeThePublishedLineCounters() throws Exception {
+    final BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStepThread( Thread.currentThread() );
+    for ( int i = 0; i < 1000; i++ ) {
+      baseStep.incrementLinesRead();
+    }
+    baseStep.linesWritten += 7;
+
+    ExecutorService otherThread = Executors.newSingleThreadExecutor();
+    try {
+      long linesRead = otherThread.submit( new Callable<Long>() {
+        @Override
+        public Long call() {
+          // threads other than the step thread count directly
+          baseStep.incrementLinesOutput();
+          return baseStep.getLinesRead();
+        }
+      } ).get();
+      assertTrue( linesRead <= 1000 && linesRead > 1000 - 128 );
+      assertEquals( 1000, baseStep.getLinesRead() );
+      assertEquals( 7, baseStep.getLinesWritten() );
+      assertEquals( 1, baseStep.getLinesOutput() );
+
+      baseStep.publishCounters();
+      assertEquals( Long.valueOf( 1000 * 1000 + 7 ), otherThread.submit( new Callable<Long>() {
+        @Override
+        public Long call() {
+          return baseStep.getLinesRead() * 1000 + baseStep.getLinesWritten();
+        }
+      } ).get() );
+    } finally {
+      otherThread.shutdown();
+    }
+  }
 }
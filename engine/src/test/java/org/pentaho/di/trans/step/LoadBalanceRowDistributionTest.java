@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+public class LoadBalanceRowDistributionTest {
+
+  private RowMetaInterface rowMeta;
+  private List<RowSet> rowSets;
+  private StepInterface step;
+  private LoadBalanceRowDistribution distribution;
+
+  @Before
+  public void setUp() {
+    rowMeta = new RowMeta();
+    rowSets = new ArrayList<RowSet>();
+    for ( int i = 0; i < 3; i++ ) {
+      rowSets.add( new BlockingRowSet( 4 ) );
+    }
+    step = mock( StepInterface.class );
+    when( step.getOutputRowSets() ).thenReturn( rowSets );
+    distribution = new LoadBalanceRowDistribution();
+  }
+
+  @Test
+  public void testIdleRowSetsGetRowsRoundRobin() throws Exception {
+    for ( int i = 0; i < 6; i++ ) {
+      distribution.distributeRow( rowMeta, new Object[] { i }, step );
+      // the consumers keep up
+      for ( RowSet rowSet : rowSets ) {
+        rowSet.getRow();
+      }
+    }
+    distribution.distributeRow( rowMeta, new Object[] { 6 }, step );
+    distribution.distributeRow( rowMeta, new Object[] { 7 }, step );
+    distribution.distributeRow( rowMeta, new Object[] { 8 }, step );
+    for ( RowSet rowSet : rowSets ) {
+      assertEquals( 1, rowSet.size() );
+    }
+  }
+
+  @Test
+  public void testSlowRowSetGetsFewerRows() throws Exception {
+    rowSets.get( 0 ).putRow( rowMeta, new Object[] { "waiting" } );
+    rowSets.get( 0 ).putRow( rowMeta, new Object[] { "waiting" } );
+    for ( int i = 0; i < 4; i++ ) {
+      distribution.distributeRow( rowMeta, new Object[] { i }, step );
+    }
+    assertEquals( 2, rowSets.get( 0 ).size() );
+    assertEquals( 2, rowSets.get( 1 ).size() );
+    assertEquals( 2, rowSets.get( 2 ).size() );
+  }
+
+  @Test
+  public void testFullRowSetIsSkipped() throws Exception {
+    for ( int i = 0; i < 4; i++ ) {
+      rowSets.get( 1 ).putRow( rowMeta, new Object[] { "waiting" } );
+    }
+    for ( int i = 0; i < 8; i++ ) {
+      distribution.distributeRow( rowMeta, new Object[] { i }, step );
+    }
+    assertEquals( 4, rowSets.get( 0 ).size() );
+    assertEquals( 4, rowSets.get( 1 ).size() );
+    assertEquals( 4, rowSets.get( 2 ).size() );
+  }
+
+  @Test
+  public void testStoppedStepDoesNotWaitForever() throws Exception {
+    for ( RowSet rowSet : rowSets ) {
+      for ( int i = 0; i < 4; i++ ) {
+        rowSet.putRow( rowMeta, new Object[] { "waiting" } );
+      }
+    }
+    when( step.isStopped() ).thenReturn( true );
+    distribution.distributeRow( rowMeta, new Object[] { "lost" }, step );
+    for ( RowSet rowSet : rowSets ) {
+      assertEquals( 4, rowSet.size() );
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.step;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+public class StepArtifactCacheTest {
+
+  @Test
+  public void testCopiesShareTheObject() throws Exception {
+    final StepArtifactCache cache = new StepArtifactCache();
+    final AtomicInteger loads = new AtomicInteger();
+    final Callable<Object> loader = new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        loads.incrementAndGet();
+        Thread.sleep( 20 );
+        return new Object();
+      }
+    };
+
+    ExecutorService copies = Executors.newFixedThreadPool( 4 );
+    try {
+      List<Future<Object>> results = new ArrayList<Future<Object>>();
+      for ( int i = 0; i < 4; i++ ) {
+        results.add( copies.submit( new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            return cache.get( "lookup", "cache", loader );
+          }
+        } ) );
+      }
+      for ( Future<Object> result : results ) {
+        assertSame( results.get( 0 ).get(), result.get() );
+      }
+    } finally {
+      copies.shutdown();
+    }
+    assertEquals( 1, loads.get() );
+
+    // another step has its own
+    assertNotSame( cache.get( "lookup", "cache", loader ), cache.get( "other lookup", "cache", loader ) );
+    cache.clear();
+    cache.get( "lookup", "cache", loader );
+    assertEquals( 3, loads.get() );
+  }
+
+  @Test
+  public void testFailureIsNotKept() throws Exception {
+    StepArtifactCache cache = new StepArtifactCache();
+    try {
+      cache.get( "validator", "schema", new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          throw new IOException( "unreadable" );
+        }
+      } );
+      fail( "the loader failed" );
+    } catch ( KettleException e ) {
+      assertTrue( e.getCause() instanceof IOException );
+    }
+
+    assertEquals( "parsed", cache.get( "validator", "schema", new Callable<String>() {
+      @Override
+      public String call() {
+        return "parsed";
+      }
+    } ) );
+  }
+}
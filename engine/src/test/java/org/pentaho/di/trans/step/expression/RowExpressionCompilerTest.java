@@ -0,0 +1,79 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step.expression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+
+public class RowExpressionCompilerTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private static RowMeta createRowMeta() {
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaNumber( "a" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "b" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "sum" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "abs" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "text" ) );
+    return rowMeta;
+  }
+
+  private static RowExpressionCompiler createCompiler() {
+    RowExpressionCompiler compiler = new RowExpressionCompiler( createRowMeta() );
+    compiler.setNumber( 2, compiler.isNull( 0 ) + " || " + compiler.isNull( 1 ),
+      compiler.getNumber( 0 ) + " + (double) " + compiler.getInteger( 1 ) );
+    compiler.setInteger( 3, compiler.isNull( 1 ), "Math.abs(" + compiler.getInteger( 1 ) + ")" );
+    String method = compiler.addMethod( "Object", Arrays.asList( "String" ), Arrays.asList( "s" ),
+      "return s == null ? null : s.toUpperCase();" );
+    compiler.setObject( 4, method + "((String) " + compiler.addConstant( "kettle" ) + ")" );
+    return compiler;
+  }
+
+  @Test
+  public void calculatesTheFields() throws Exception {
+    CompiledRowExpression expression = createCompiler().compile();
+
+    Object[] row = new Object[] { 1.5, -2L, null, null, null };
+    expression.calculate( row );
+    assertArrayEquals( new Object[] { 1.5, -2L, -0.5, 2L, "KETTLE" }, row );
+
+    row = new Object[] { null, 3L, null, null, null };
+    expression.calculate( row );
+    assertArrayEquals( new Object[] { null, 3L, null, 3L, "KETTLE" }, row );
+  }
+
+  @Test
+  public void reusesTheClassOfTheSameSource() throws Exception {
+    assertSame( createCompiler().compile().getClass(), createCompiler().compile().getClass() );
+  }
+}
@@ -0,0 +1,138 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+public class BulkLoaderTest {
+
+  private static class CollectingTarget implements BulkLoadTarget {
+    private byte[] data;
+
+    @Override
+    public long load( InputStream in ) throws Exception {
+      data = IOUtils.toByteArray( in );
+      return data.length;
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    byte[] data = new byte[100000];
+    new Random( 42 ).nextBytes( data );
+
+    CollectingTarget target = new CollectingTarget();
+    BulkLoader loader = new BulkLoader( target, 4096 );
+    OutputStream out = loader.start( "test" );
+    out.write( data, 0, 10 );
+    out.write( data[10] );
+    out.flush();
+    out.write( data, 11, data.length - 11 );
+
+    assertEquals( data.length, loader.finish() );
+    assertArrayEquals( data, target.data );
+  }
+
+  @Test
+  public void testEmptyLoad() throws Exception {
+    CollectingTarget target = new CollectingTarget();
+    BulkLoader loader = new BulkLoader( target );
+    loader.start( "test" );
+
+    assertEquals( 0, loader.finish() );
+    assertEquals( 0, target.data.length );
+  }
+
+  @Test
+  public void testTargetErrorStopsTheWriter() throws Exception {
+    final SQLException error = new SQLException( "Table not found" );
+    BulkLoader loader = new BulkLoader( new BulkLoadTarget() {
+      @Override
+      public long load( InputStream data ) throws Exception {
+        data.read();
+        throw error;
+      }
+    }, 1024 );
+    OutputStream out = loader.start( "test" );
+    try {
+      for ( int i = 0; i < 1000; i++ ) {
+        out.write( new byte[1024] );
+      }
+      fail();
+    } catch ( IOException e ) {
+      // the writer doesn't block once the load failed
+    }
+    assertTrue( loader.isFailed() );
+
+    try {
+      loader.finish();
+      fail();
+    } catch ( KettleException e ) {
+      assertSame( error, e.getCause() );
+    }
+  }
+
+  @Test
+  public void testAbort() throws Exception {
+    final Exception[] readError = new Exception[1];
+    BulkLoader loader = new BulkLoader( new BulkLoadTarget() {
+      @Override
+      public long load( InputStream data ) throws Exception {
+        try {
+          IOUtils.toByteArray( data );
+        } catch ( IOException e ) {
+          readError[0] = e;
+          throw e;
+        }
+        return 0;
+      }
+    }, 1024 );
+    OutputStream out = loader.start( "test" );
+    out.write( new byte[100] );
+    loader.abort();
+
+    // the target never sees the end of the data, so a partial load is not committed
+    assertTrue( readError[0] instanceof IOException );
+    try {
+      out.write( 1 );
+      out.flush();
+      fail();
+    } catch ( IOException e ) {
+      // aborted
+    }
+  }
+}
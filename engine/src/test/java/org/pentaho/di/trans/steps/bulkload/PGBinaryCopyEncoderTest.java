@@ -0,0 +1,149 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.bulkload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class PGBinaryCopyEncoderTest {
+
+  @Test
+  public void testHeaderAndTrailer() throws Exception {
+    PGBinaryCopyEncoder encoder = new PGBinaryCopyEncoder( new RowMeta(), new int[0], new String[0] );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.writeHeader( out );
+    encoder.writeTrailer( out );
+
+    assertArrayEquals( new byte[] { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0,
+      0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff }, out.toByteArray() );
+  }
+
+  @Test
+  public void testWriteRow() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "parent" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "created" ) );
+
+    PGBinaryCopyEncoder encoder =
+      new PGBinaryCopyEncoder( rowMeta, new int[] { 1, 0, 2, 3 }, new String[] { "int4", "varchar", "int8",
+        "timestamptz" } );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.writeRow( out, new Object[] { "h\u00e9", 42L, null, new Date( 946684801000L ) } );
+
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    assertEquals( 4, in.readShort() );
+    assertEquals( 4, in.readInt() );
+    assertEquals( 42, in.readInt() );
+    assertEquals( 3, in.readInt() );
+    assertEquals( 'h', in.read() );
+    assertEquals( 0xc3, in.read() );
+    assertEquals( 0xa9, in.read() );
+    assertEquals( -1, in.readInt() );
+    assertEquals( 8, in.readInt() );
+    assertEquals( 1000000L, in.readLong() );
+    assertEquals( -1, in.read() );
+  }
+
+  @Test
+  public void testWriteNumeric() throws Exception {
+    assertEquals( new BigDecimal( "12345.678" ), writeAndReadNumeric( new BigDecimal( "12345.678" ) ) );
+    assertEquals( new BigDecimal( "-0.00012" ), writeAndReadNumeric( new BigDecimal( "-0.00012" ) ) );
+    assertEquals( new BigDecimal( "100000000" ), writeAndReadNumeric( new BigDecimal( "1E+8" ) ) );
+    assertEquals( new BigDecimal( "0.00" ), writeAndReadNumeric( new BigDecimal( "0.00" ) ) );
+  }
+
+  @Test
+  public void testOutOfRange() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    PGBinaryCopyEncoder encoder = new PGBinaryCopyEncoder( rowMeta, new int[] { 0 }, new String[] { "int2" } );
+    try {
+      encoder.writeRow( new ByteArrayOutputStream(), new Object[] { 40000L } );
+      fail();
+    } catch ( KettleValueException e ) {
+      // a smallint can't hold it
+    }
+  }
+
+  @Test
+  public void testSupports() throws Exception {
+    assertTrue( PGBinaryCopyEncoder.supports( new ValueMetaInteger( "i" ), "int8" ) );
+    assertTrue( PGBinaryCopyEncoder.supports( new ValueMetaInteger( "i" ), "bigserial" ) );
+    assertTrue( PGBinaryCopyEncoder.supports( new ValueMetaString( "s" ), "bpchar" ) );
+    assertFalse( PGBinaryCopyEncoder.supports( new ValueMetaString( "s" ), "int4" ) );
+    assertFalse( PGBinaryCopyEncoder.supports( new ValueMetaInteger( "i" ), "json" ) );
+    assertFalse( PGBinaryCopyEncoder.supports( new ValueMetaBigNumber( "n" ), "float8" ) );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "s" ) );
+    try {
+      new PGBinaryCopyEncoder( rowMeta, new int[] { 0 }, new String[] { "uuid" } );
+      fail();
+    } catch ( KettleValueException e ) {
+      // not supported in binary
+    }
+  }
+
+  private static BigDecimal writeAndReadNumeric( BigDecimal value ) throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaBigNumber( "n" ) );
+    PGBinaryCopyEncoder encoder = new PGBinaryCopyEncoder( rowMeta, new int[] { 0 }, new String[] { "numeric" } );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.writeRow( out, new Object[] { value } );
+
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    assertEquals( 1, in.readShort() );
+    int length = in.readInt();
+    int ndigits = in.readShort();
+    assertEquals( 8 + 2 * ndigits, length );
+    int weight = in.readShort();
+    int sign = in.readShort();
+    int scale = in.readShort();
+    BigDecimal result = BigDecimal.ZERO;
+    for ( int i = 0; i < ndigits; i++ ) {
+      result = result.add( BigDecimal.valueOf( in.readShort() ).movePointRight( 4 * ( weight - i ) ) );
+    }
+    result = result.setScale( scale );
+    return sign == 0x4000 ? result.negate() : result;
+  }
+}
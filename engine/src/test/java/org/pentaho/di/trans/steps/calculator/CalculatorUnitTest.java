@@ -33,6 +33,7 @@ import static org.mockito.Mockito.when;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -827,4 +828,86 @@ public class CalculatorUnitTest {
       fail();
     }
   }
+
+  @Test
+  public void testCompiledCalculationsGiveTheSameResults() throws Exception {
+    RowMeta inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaNumber( "a" ) );
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "b" ) );
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "c" ) );
+    inputRowMeta.addValueMeta( new ValueMetaNumber( "d" ) );
+    Object[][] rows = new Object[][] {
+      { 1.25, 3L, 2L, 4.5 }, { -2.75, 7L, 3L, null }, { null, null, 1L, 2.0 }, { 1234.5678, -4L, 3L, -0.5 } };
+
+    int[][] calculations = new int[][] {
+      { CalculatorMetaFunction.CALC_PERCENT_1, 0, 1, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_PERCENT_2, 0, 1, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_PERCENT_3, 1, 2, -1, ValueMetaInterface.TYPE_INTEGER },
+      { CalculatorMetaFunction.CALC_COMBINATION_1, 0, 1, 2, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_COMBINATION_2, 0, 3, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_ROUND_1, 0, -1, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_ROUND_2, 0, 1, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_ROUND_STD_1, 0, -1, -1, ValueMetaInterface.TYPE_INTEGER },
+      { CalculatorMetaFunction.CALC_ROUND_STD_2, 0, 1, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_ROUND_CUSTOM_2, 0, 1, 2, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_CEIL, 0, -1, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_FLOOR, 0, -1, -1, ValueMetaInterface.TYPE_INTEGER },
+      { CalculatorMetaFunction.CALC_CEIL, 1, -1, -1, ValueMetaInterface.TYPE_INTEGER },
+      { CalculatorMetaFunction.CALC_NVL, 0, 3, -1, ValueMetaInterface.TYPE_NUMBER },
+      { CalculatorMetaFunction.CALC_REMAINDER, 1, 2, -1, ValueMetaInterface.TYPE_INTEGER } };
+    CalculatorMetaFunction[] functions = new CalculatorMetaFunction[calculations.length];
+    for ( int i = 0; i < calculations.length; i++ ) {
+      int[] calculation = calculations[i];
+      functions[i] = new CalculatorMetaFunction( "r" + i, calculation[0], field( inputRowMeta, calculation[1] ),
+        field( inputRowMeta, calculation[2] ), field( inputRowMeta, calculation[3] ), calculation[4], 0, 0, false, "",
+        "", "", "" );
+    }
+    CalculatorMeta meta = new CalculatorMeta();
+    meta.setCalculation( functions );
+
+    CalculatorData compiledData = new CalculatorData();
+    List<Object[]> compiled = calculate( meta, compiledData, inputRowMeta, rows );
+    Assert.assertNotNull( compiledData.getExpression() );
+
+    List<Object[]> evaluated;
+    System.setProperty( Const.KETTLE_COMPILED_EXPRESSIONS, "N" );
+    try {
+      CalculatorData evaluatedData = new CalculatorData();
+      evaluated = calculate( meta, evaluatedData, inputRowMeta, rows );
+      Assert.assertNull( evaluatedData.getExpression() );
+    } finally {
+      System.clearProperty( Const.KETTLE_COMPILED_EXPRESSIONS );
+    }
+
+    Assert.assertEquals( rows.length, compiled.size() );
+    for ( int i = 0; i < rows.length; i++ ) {
+      Assert.assertEquals( Arrays.asList( evaluated.get( i ) ), Arrays.asList( compiled.get( i ) ) );
+    }
+  }
+
+  private static String field( RowMetaInterface rowMeta, int index ) {
+    return index < 0 ? null : rowMeta.getValueMeta( index ).getName();
+  }
+
+  private List<Object[]> calculate( CalculatorMeta meta, CalculatorData data, RowMetaInterface inputRowMeta,
+    Object[][] rows ) throws KettleException {
+    RowSet inputRowSet = smh.getMockInputRowSet( rows );
+    inputRowSet.setRowMeta( inputRowMeta );
+
+    Calculator calculator = new Calculator( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
+    calculator.addRowSetToInputRowSets( inputRowSet );
+    calculator.setInputRowMeta( inputRowMeta );
+    calculator.init( smh.initStepMetaInterface, smh.initStepDataInterface );
+
+    final List<Object[]> written = new ArrayList<Object[]>();
+    calculator.addRowListener( new RowAdapter() {
+      @Override public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+        written.add( Arrays.copyOf( row, rowMeta.size() ) );
+      }
+    } );
+    while ( calculator.processRow( meta, data ) ) {
+      // next row
+    }
+    return written;
+  }
 }
@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.formula;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
+
+public class FormulaCompilerTest {
+  @ClassRule public static RestorePDIEngineEnvironment env = new RestorePDIEngineEnvironment();
+
+  private static final Object[][] ROWS = new Object[][] {
+    { 1.5, 3L, " x ", true }, { -2.25, 7L, "y", false }, { 0.1, 0L, "", true }, { null, 1L, "z", true } };
+
+  @BeforeClass
+  public static void init() throws KettleException {
+    KettleEnvironment.init( false );
+  }
+
+  private static FormulaData createData( String formula, int valueType ) throws Exception {
+    RowMeta inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaNumber( "a" ) );
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "b" ) );
+    inputRowMeta.addValueMeta( new ValueMetaString( "s" ) );
+    inputRowMeta.addValueMeta( new ValueMetaBoolean( "flag" ) );
+
+    FormulaMeta meta = new FormulaMeta();
+    meta.setFormula( new FormulaMetaFunction[] { new FormulaMetaFunction( "result", formula, valueType, -1, -1,
+      null ) } );
+
+    FormulaData data = new FormulaData();
+    data.outputRowMeta = inputRowMeta.clone();
+    data.outputRowMeta.addValueMeta( ValueMetaFactory.createValueMeta( "result", valueType ) );
+    data.replaceIndex = new int[] { -1 };
+    data.context = new RowForumulaContext( data.outputRowMeta );
+    data.formulas = new org.pentaho.reporting.libraries.formula.Formula[] { data.createFormula( formula ) };
+    data.expressions = FormulaCompiler.compile( meta, data, inputRowMeta.size() );
+    return data;
+  }
+
+  private static void assertCompiled( String formula, int valueType ) throws Exception {
+    FormulaData data = createData( formula, valueType );
+    assertNotNull( formula, data.expressions[0] );
+
+    for ( Object[] row : ROWS ) {
+      Object[] rowData = Arrays.copyOf( row, data.outputRowMeta.size() + 1 );
+      data.context.setRowData( rowData );
+      Object expected = data.formulas[0].evaluate();
+      Object actual = data.evaluate( 0, rowData );
+
+      String message = formula + " on " + Arrays.asList( row );
+      assertEquals( message, expected.getClass(), actual.getClass() );
+      if ( expected instanceof BigDecimal ) {
+        assertEquals( message, 0, ( (BigDecimal) expected ).compareTo( (BigDecimal) actual ) );
+      } else {
+        assertEquals( message, expected, actual );
+      }
+      assertNull( rowData[data.outputRowMeta.size()] );
+    }
+  }
+
+  @Test
+  public void compilesTheCommonFormulas() throws Exception {
+    assertCompiled( "[a] * 2 + [b]", ValueMetaInterface.TYPE_NUMBER );
+    assertCompiled( "([a] - [b]) * -1.5 - 0.2", ValueMetaInterface.TYPE_NUMBER );
+    assertCompiled( "IF([a] > [b]; \"big\"; [s] & \"!\")", ValueMetaInterface.TYPE_STRING );
+    assertCompiled( "AND([flag]; NOT([b] = 3))", ValueMetaInterface.TYPE_BOOLEAN );
+    assertCompiled( "OR([a] <= 0; [b] <> 7; FALSE())", ValueMetaInterface.TYPE_BOOLEAN );
+  }
+
+  @Test
+  public void leavesTheOtherFormulasToLibformula() throws Exception {
+    assertNull( createData( "[a] / [b]", ValueMetaInterface.TYPE_NUMBER ).expressions[0] );
+    assertNull( createData( "[a]", ValueMetaInterface.TYPE_NUMBER ).expressions[0] );
+    assertNull( createData( "-[a]", ValueMetaInterface.TYPE_NUMBER ).expressions[0] );
+    assertNull( createData( "SUM([a]; [b])", ValueMetaInterface.TYPE_NUMBER ).expressions[0] );
+    assertNull( createData( "[a] + [b]", ValueMetaInterface.TYPE_STRING ).expressions[0] );
+    assertNull( createData( "[s] = \"y\"", ValueMetaInterface.TYPE_BOOLEAN ).expressions[0] );
+  }
+}
@@ -0,0 +1,139 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.wcohen.ss.JaroWinkler;
+
+/**
+ * Compares the time a full scan and an index need to find the candidates for a number of lookups. Not a unit test:
+ * run it by hand, for example with
+ *
+ * <pre>
+ * java -cp ... org.pentaho.di.trans.steps.fuzzymatch.FuzzyMatchIndexBenchmark 100000 1000
+ * </pre>
+ *
+ * The arguments are the number of lookup values (default 100000) and the number of main stream values (default 1000).
+ */
+public class FuzzyMatchIndexBenchmark {
+
+  private static final String[] SYLLABLES = { "an", "ber", "chri", "da", "el", "fer", "gus", "han", "ib", "jo",
+    "kar", "la", "mi", "nor", "o", "pet", "qui", "ro", "sa", "ti", "ul", "vin", "wil", "xa", "yo", "zen" };
+
+  private interface Scorer {
+    boolean matches( String cacheValue, String lookupValue );
+  }
+
+  public static void main( String[] args ) {
+    int nrLookupValues = args.length > 0 ? Integer.parseInt( args[0] ) : 100000;
+    int nrMainValues = args.length > 1 ? Integer.parseInt( args[1] ) : 1000;
+
+    Random random = new Random( 1 );
+    Set<Object[]> look = new LinkedHashSet<Object[]>();
+    for ( int i = 0; i < nrLookupValues; i++ ) {
+      look.add( new Object[] { createName( random ) } );
+    }
+    String[] mainValues = new String[nrMainValues];
+    for ( int i = 0; i < nrMainValues; i++ ) {
+      mainValues[i] = createName( random );
+    }
+
+    run( "Levenshtein <= 2", FuzzyMatchMeta.OPERATION_TYPE_LEVENSHTEIN, look, mainValues, 2, 0, new Scorer() {
+      @Override
+      public boolean matches( String cacheValue, String lookupValue ) {
+        return StringUtils.getLevenshteinDistance( cacheValue.toLowerCase(), lookupValue.toLowerCase() ) <= 2;
+      }
+    } );
+    run( "Double Metaphone", FuzzyMatchMeta.OPERATION_TYPE_DOUBLE_METAPHONE, look, mainValues, 0, 0, new Scorer() {
+      @Override
+      public boolean matches( String cacheValue, String lookupValue ) {
+        String code = FuzzyMatch.getEncodedMF( lookupValue, FuzzyMatchMeta.OPERATION_TYPE_DOUBLE_METAPHONE );
+        return code != null
+          && code.equals( FuzzyMatch.getEncodedMF( cacheValue, FuzzyMatchMeta.OPERATION_TYPE_DOUBLE_METAPHONE ) );
+      }
+    } );
+    run( "Jaro-Winkler >= 0.9", FuzzyMatchMeta.OPERATION_TYPE_JARO_WINKLER, look, mainValues, 0, 0.9, new Scorer() {
+      @Override
+      public boolean matches( String cacheValue, String lookupValue ) {
+        return new JaroWinkler().score( cacheValue, lookupValue ) >= 0.9;
+      }
+    } );
+    run( "Pair letters >= 0.7", FuzzyMatchMeta.OPERATION_TYPE_PAIR_SIMILARITY, look, mainValues, 0, 0.7,
+      new Scorer() {
+        @Override
+        public boolean matches( String cacheValue, String lookupValue ) {
+          return LetterPairSimilarity.getSimiliarity( cacheValue, lookupValue ) >= 0.7;
+        }
+      } );
+  }
+
+  private static String createName( Random random ) {
+    StringBuilder name = new StringBuilder();
+    int nrSyllables = 2 + random.nextInt( 3 );
+    for ( int i = 0; i < nrSyllables; i++ ) {
+      name.append( SYLLABLES[random.nextInt( SYLLABLES.length )] );
+    }
+    name.setCharAt( 0, Character.toUpperCase( name.charAt( 0 ) ) );
+    return name.toString();
+  }
+
+  private static void run( String name, int algorithm, Set<Object[]> look, String[] mainValues, int maximalDistance,
+    double minimalSimilarity, Scorer scorer ) {
+    long start = System.nanoTime();
+    long scanMatches = 0;
+    for ( String mainValue : mainValues ) {
+      for ( Object[] row : look ) {
+        if ( scorer.matches( (String) row[0], mainValue ) ) {
+          scanMatches++;
+        }
+      }
+    }
+    long scanTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    FuzzyMatchIndex index = FuzzyMatchIndex.create( algorithm, look, false, maximalDistance, minimalSimilarity );
+    long buildTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    long indexMatches = 0;
+    long candidates = 0;
+    for ( String mainValue : mainValues ) {
+      for ( Object[] row : index.getCandidates( mainValue ) ) {
+        candidates++;
+        if ( scorer.matches( (String) row[0], mainValue ) ) {
+          indexMatches++;
+        }
+      }
+    }
+    long indexTime = System.nanoTime() - start;
+
+    System.out.println( String.format(
+      "%-22s scan %8d ms | index build %6d ms, search %8d ms, %10d candidates | matches %d / %d", name,
+      scanTime / 1000000, buildTime / 1000000, indexTime / 1000000, candidates, scanMatches, indexMatches ) );
+  }
+}
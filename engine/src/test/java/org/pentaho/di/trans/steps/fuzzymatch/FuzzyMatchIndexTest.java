@@ -0,0 +1,195 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.fuzzymatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.pentaho.di.core.util.Utils;
+
+import com.wcohen.ss.Jaro;
+import com.wcohen.ss.JaroWinkler;
+
+/**
+ * Every index has to find exactly the matches a full scan finds, in the same order.
+ */
+public class FuzzyMatchIndexTest {
+
+  private static final String[] PARTS = { "an", "na", "ma", "ri", "jo", "hn", "ca", "tr", "in", "e", "y", "Ka", "th",
+    "ou", "Le", "o", " ", "ss", "De", "Mc" };
+
+  private static Set<Object[]> createLook( int size, long seed ) {
+    Random random = new Random( seed );
+    Set<Object[]> look = new LinkedHashSet<Object[]>();
+    look.add( new Object[] { "" } );
+    for ( int i = 0; i < size; i++ ) {
+      look.add( new Object[] { createValue( random ), i } );
+    }
+    return look;
+  }
+
+  private static String createValue( Random random ) {
+    StringBuilder value = new StringBuilder();
+    int nrParts = random.nextInt( 6 );
+    for ( int p = 0; p < nrParts; p++ ) {
+      value.append( PARTS[random.nextInt( PARTS.length )] );
+    }
+    return value.toString();
+  }
+
+  private interface Matcher {
+    boolean matches( String cacheValue, String lookupValue );
+  }
+
+  private static void assertSameMatches( FuzzyMatchIndex index, Set<Object[]> look, Matcher matcher ) {
+    Random random = new Random( 7 );
+    for ( int i = 0; i < 200; i++ ) {
+      String lookupValue = i == 0 ? "" : createValue( random );
+
+      List<Object[]> expected = new ArrayList<Object[]>();
+      for ( Object[] row : look ) {
+        if ( matcher.matches( (String) row[0], lookupValue ) ) {
+          expected.add( row );
+        }
+      }
+      List<Object[]> actual = new ArrayList<Object[]>();
+      for ( Object[] row : index.getCandidates( lookupValue ) ) {
+        if ( matcher.matches( (String) row[0], lookupValue ) ) {
+          actual.add( row );
+        }
+      }
+      assertEquals( lookupValue, expected, actual );
+    }
+  }
+
+  @Test
+  public void testLevenshtein() {
+    Set<Object[]> look = createLook( 2000, 1 );
+    for ( final boolean caseSensitive : new boolean[] { true, false } ) {
+      FuzzyMatchIndex index =
+        FuzzyMatchIndex.create( FuzzyMatchMeta.OPERATION_TYPE_LEVENSHTEIN, look, caseSensitive, 2, 0 );
+      assertTrue( index instanceof BKTreeIndex );
+      assertSameMatches( index, look, new Matcher() {
+        @Override
+        public boolean matches( String cacheValue, String lookupValue ) {
+          if ( !caseSensitive ) {
+            cacheValue = cacheValue.toLowerCase();
+            lookupValue = lookupValue.toLowerCase();
+          }
+          return StringUtils.getLevenshteinDistance( cacheValue, lookupValue ) <= 2;
+        }
+      } );
+    }
+  }
+
+  @Test
+  public void testDamerauLevenshtein() {
+    Set<Object[]> look = createLook( 2000, 2 );
+    FuzzyMatchIndex index =
+      FuzzyMatchIndex.create( FuzzyMatchMeta.OPERATION_TYPE_DAMERAU_LEVENSHTEIN, look, true, 3, 0 );
+    assertSameMatches( index, look, new Matcher() {
+      @Override
+      public boolean matches( String cacheValue, String lookupValue ) {
+        return Utils.getDamerauLevenshteinDistance( cacheValue, lookupValue ) <= 3;
+      }
+    } );
+  }
+
+  @Test
+  public void testPhonetic() {
+    Set<Object[]> look = createLook( 2000, 3 );
+    for ( final int algorithm : new int[] { FuzzyMatchMeta.OPERATION_TYPE_METAPHONE,
+      FuzzyMatchMeta.OPERATION_TYPE_DOUBLE_METAPHONE, FuzzyMatchMeta.OPERATION_TYPE_REFINED_SOUNDEX } ) {
+      FuzzyMatchIndex index = FuzzyMatchIndex.create( algorithm, look, true, 0, 0 );
+      assertTrue( index instanceof PhoneticIndex );
+      assertSameMatches( index, look, new Matcher() {
+        @Override
+        public boolean matches( String cacheValue, String lookupValue ) {
+          String code = FuzzyMatch.getEncodedMF( lookupValue, algorithm );
+          return code != null && code.equals( FuzzyMatch.getEncodedMF( cacheValue, algorithm ) );
+        }
+      } );
+    }
+  }
+
+  @Test
+  public void testLetterPairSimilarity() {
+    Set<Object[]> look = createLook( 2000, 4 );
+    for ( final double minimal : new double[] { 0.1, 0.5, 0.8, 1.0 } ) {
+      FuzzyMatchIndex index =
+        FuzzyMatchIndex.create( FuzzyMatchMeta.OPERATION_TYPE_PAIR_SIMILARITY, look, true, 0, minimal );
+      assertTrue( index instanceof LetterPairIndex );
+      assertSameMatches( index, look, new Matcher() {
+        @Override
+        public boolean matches( String cacheValue, String lookupValue ) {
+          return LetterPairSimilarity.getSimiliarity( cacheValue, lookupValue ) >= minimal;
+        }
+      } );
+    }
+  }
+
+  @Test
+  public void testJaro() {
+    Set<Object[]> look = createLook( 2000, 5 );
+    for ( final double minimal : new double[] { 0.3, 0.7, 0.9 } ) {
+      FuzzyMatchIndex index = FuzzyMatchIndex.create( FuzzyMatchMeta.OPERATION_TYPE_JARO, look, true, 0, minimal );
+      assertSameMatches( index, look, new Matcher() {
+        @Override
+        public boolean matches( String cacheValue, String lookupValue ) {
+          return new Jaro().score( cacheValue, lookupValue ) >= minimal;
+        }
+      } );
+    }
+  }
+
+  @Test
+  public void testJaroWinkler() {
+    Set<Object[]> look = createLook( 2000, 6 );
+    for ( final double minimal : new double[] { 0.3, 0.7, 0.9 } ) {
+      FuzzyMatchIndex index =
+        FuzzyMatchIndex.create( FuzzyMatchMeta.OPERATION_TYPE_JARO_WINKLER, look, true, 0, minimal );
+      assertSameMatches( index, look, new Matcher() {
+        @Override
+        public boolean matches( String cacheValue, String lookupValue ) {
+          return new JaroWinkler().score( cacheValue, lookupValue ) >= minimal;
+        }
+      } );
+    }
+  }
+
+  @Test
+  public void testScanWithoutThreshold() {
+    Set<Object[]> look = createLook( 10, 8 );
+    FuzzyMatchIndex index =
+      FuzzyMatchIndex.create( FuzzyMatchMeta.OPERATION_TYPE_PAIR_SIMILARITY, look, true, 0, 0 );
+    assertEquals( new ArrayList<Object[]>( look ), new ArrayList<Object[]>( index.getCandidates( "x" ) ) );
+  }
+}
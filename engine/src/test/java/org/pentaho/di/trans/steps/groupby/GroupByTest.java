@@ -22,12 +22,10 @@
 
 package org.pentaho.di.trans.steps.groupby;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.junit.After;
 import org.junit.Before;
@@ -46,6 +44,8 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaPluginType;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.spill.SpillManager;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
 import org.pentaho.di.repository.Repository;
@@ -56,13 +56,12 @@ import org.pentaho.metastore.api.IMetaStore;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class GroupByTest  {
@@ -179,31 +178,33 @@ public class GroupByTest  {
   @Test
   public void testTempFileIsDeleted_AfterCallingDisposeMethod() throws Exception {
     GroupByData groupByData = new GroupByData();
-    groupByData.tempFile = File.createTempFile( "test", ".txt" );
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "field" ) );
+    groupByData.spillFile = new SpillManager( 0, null ).createFile( "test", null, new Variables(), rowMeta, false );
 
     // emulate connections to file are opened
-    groupByData.fosToTempFile = new FileOutputStream( groupByData.tempFile );
-    groupByData.fisToTmpFile = new FileInputStream( groupByData.tempFile );
+    groupByData.spillFile.add( new Object[] { "abc" } );
+    groupByData.spillReader = groupByData.spillFile.openReader();
+    FileObject file = groupByData.spillFile.getFile();
 
     GroupBy groupBySpy = Mockito.spy( new GroupBy( mockHelper.stepMeta, groupByData, 0,
       mockHelper.transMeta, mockHelper.trans ) );
 
-    assertTrue( groupByData.tempFile.exists() );
+    assertTrue( file.exists() );
     groupBySpy.dispose( mock( StepMetaInterface.class ), groupByData );
     // check file is deleted
-    assertFalse( groupByData.tempFile.exists() );
-
+    assertFalse( file.exists() );
+    assertNull( groupByData.spillFile );
   }
 
   @Test
   public void testAddToBuffer() throws KettleException, FileSystemException {
     GroupByData groupByData = new GroupByData();
-    ArrayList listMock = mock( ArrayList.class );
-    when( listMock.size() ).thenReturn( 5001 );
-    groupByData.bufferList = listMock;
-    groupByData.rowsOnFile = 0;
-    RowMetaInterface inputRowMetaMock = mock( RowMetaInterface.class );
-    groupByData.inputRowMeta = inputRowMetaMock;
+    groupByData.bufferList = new ArrayList<>();
+    groupByData.memory = new SpillManager( 0, null ).openAccount();
+    RowMetaInterface inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaString( "field" ) );
+    groupByData.inputRowMeta = inputRowMeta;
 
     GroupBy groupBySpy = Mockito.spy(
         new GroupBy( mockHelper.stepMeta, groupByData, 0, mockHelper.transMeta, mockHelper.trans ) );
@@ -216,17 +217,27 @@ public class GroupByTest  {
     String vfsFilePath = "file:///" + userDir;
     when( groupBySpy.environmentSubstitute( anyString() ) ).thenReturn( vfsFilePath );
 
-    Object[] row = { "abc" };
     // tested method itself
-    groupBySpy.addToBuffer( row );
+    for ( int i = 0; i < 5001; i++ ) {
+      groupBySpy.addToBuffer( new Object[] { "row" + i } );
+    }
+    assertTrue( groupByData.bufferList.isEmpty() );
+    groupBySpy.addToBuffer( new Object[] { "last" } );
 
     // check if file is created
-    assertTrue( groupByData.tempFile.exists() );
+    FileObject file = groupByData.spillFile.getFile();
+    assertTrue( file.exists() );
+    assertEquals( 5001, groupByData.spillFile.getRowCount() );
+    assertEquals( 1, groupByData.memory.getRows() );
+
+    // the rows come back in the order they were added
+    SpillReader reader = groupByData.spillFile.openReader();
+    assertEquals( "row0", reader.next()[0] );
+    reader.close();
+
     groupBySpy.dispose( groupByMetaMock, groupByData );
     // check file is deleted
-    assertFalse( groupByData.tempFile.exists() );
-
-    // since path started with "file:///"
-    verify( groupBySpy, times( 1 ) ).retrieveVfsPath( anyString() );
+    assertFalse( file.exists() );
+    assertEquals( 0, groupByData.memory.getRows() );
   }
 }
@@ -57,6 +57,11 @@ public class InsertUpdateMetaInjectionTest extends BaseMetadataInjectionTest<Ins
         return meta.isUpdateBypassed();
       }
     } );
+    check( "SET_BASED_UPSERT", new BooleanGetter() {
+      public boolean get() {
+        return meta.isSetBasedUpsert();
+      }
+    } );
     check( "KEY_STREAM", new StringGetter() {
       public String get() {
         return meta.getKeyStream()[0];
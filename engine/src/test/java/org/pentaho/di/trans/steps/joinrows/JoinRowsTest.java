@@ -34,12 +34,12 @@ import org.pentaho.di.core.logging.LogLevel;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.spill.SpillFile;
 import org.pentaho.di.trans.RowStepCollector;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -81,9 +81,9 @@ public class JoinRowsTest {
 
   @Test
   public void disposeDataFiles() throws Exception {
-    File mockFile1 = mock( File.class );
-    File mockFile2 = mock( File.class );
-    data.file = new File[] {null, mockFile1, mockFile2};
+    SpillFile mockFile1 = mock( SpillFile.class );
+    SpillFile mockFile2 = mock( SpillFile.class );
+    data.spillFile = new SpillFile[] {null, mockFile1, mockFile2};
     getJoinRows().dispose( meta, data );
     verify( mockFile1, times( 1 ) ).delete();
     verify( mockFile2, times( 1 ) ).delete();
@@ -58,7 +58,8 @@ public class ScriptValuesMetaModTest implements InitializerInterface<StepMetaInt
     KettleEnvironment.init();
     PluginRegistry.init( false );
     List<String> attributes =
-        Arrays.asList( "fieldname", "rename", "type", "length", "precision", "replace", "jsScripts", "compatible", "optimizationLevel" );
+        Arrays.asList( "fieldname", "rename", "type", "length", "precision", "replace", "jsScripts", "compatible", "optimizationLevel",
+          "compiled" );
 
     Map<String, String> getterMap = new HashMap<String, String>() {
       {
@@ -70,6 +71,7 @@ public class ScriptValuesMetaModTest implements InitializerInterface<StepMetaInt
         put( "replace", "getReplace" );
         put( "compatible", "isCompatible" );
         put( "optimizationLevel", "getOptimizationLevel" );
+        put( "compiled", "isCompiled" );
         put( "jsScripts", "getJSScripts" );
       }
     };
@@ -83,6 +85,7 @@ public class ScriptValuesMetaModTest implements InitializerInterface<StepMetaInt
         put( "replace", "setReplace" );
         put( "compatible", "setCompatible" );
         put( "optimizationLevel", "setOptimizationLevel" );
+        put( "compiled", "setCompiled" );
         put( "jsScripts", "setJSScripts" );
       }
     };
@@ -0,0 +1,111 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.scriptvalues_mod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.TransTestFactory;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.calculator.CalculatorMeta;
+import org.pentaho.di.trans.steps.calculator.CalculatorMetaFunction;
+
+/**
+ * Compares the time the Calculator step and the Modified JavaScript Value step, in standard and in compiled mode, need
+ * to calculate c = a * b. Not a unit test: run it by hand, for example with
+ *
+ * <pre>
+ * java -cp ... org.pentaho.di.trans.steps.scriptvalues_mod.ScriptValuesModBenchmark 500000 5
+ * </pre>
+ *
+ * The arguments are the number of rows (default 500000) and the number of runs (default 5). The first run of every
+ * step is a warm-up and is not reported.
+ */
+public class ScriptValuesModBenchmark {
+
+  public static void main( String[] args ) throws Exception {
+    int nrRows = args.length > 0 ? Integer.parseInt( args[0] ) : 500000;
+    int nrRuns = args.length > 1 ? Integer.parseInt( args[1] ) : 5;
+
+    KettleEnvironment.init( false );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaNumber( "a" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "b" ) );
+    List<RowMetaAndData> rows = new ArrayList<RowMetaAndData>( nrRows );
+    for ( int i = 0; i < nrRows; i++ ) {
+      rows.add( new RowMetaAndData( rowMeta, (double) i, (double) ( i % 100 ) ) );
+    }
+
+    CalculatorMeta calculator = new CalculatorMeta();
+    calculator.setCalculation( new CalculatorMetaFunction[] { new CalculatorMetaFunction( "c",
+      CalculatorMetaFunction.CALC_MULTIPLY, "a", "b", null, ValueMetaInterface.TYPE_NUMBER, -1, -1, false, null,
+      null, null, null ) } );
+
+    for ( int run = 0; run <= nrRuns; run++ ) {
+      long calculatorTime = run( calculator, rowMeta, rows );
+      long standardTime = run( createScript( false ), rowMeta, rows );
+      long compiledTime = run( createScript( true ), rowMeta, rows );
+      if ( run > 0 ) {
+        System.out.println( String.format( "Run %d, %d rows: calculator %d ms, script %d ms, compiled script %d ms",
+          run, nrRows, calculatorTime, standardTime, compiledTime ) );
+      }
+    }
+  }
+
+  private static ScriptValuesMetaMod createScript( boolean compiled ) {
+    ScriptValuesMetaMod meta = new ScriptValuesMetaMod();
+    meta.setDefault();
+    meta.setCompatible( false );
+    meta.setCompiled( compiled );
+    meta.allocate( 1 );
+    meta.setFieldname( new String[] { "c" } );
+    meta.setRename( new String[] { "c" } );
+    meta.setType( new int[] { ValueMetaInterface.TYPE_NUMBER } );
+    meta.setLength( new int[] { -1 } );
+    meta.setPrecision( new int[] { -1 } );
+    meta.setReplace( new boolean[] { false } );
+    meta.setJSScripts( new ScriptValuesScript[] {
+      new ScriptValuesScript( ScriptValuesScript.TRANSFORM_SCRIPT, "script", "var c = a * b;" ) } );
+    return meta;
+  }
+
+  private static long run( StepMetaInterface meta, RowMetaInterface rowMeta, List<RowMetaAndData> rows )
+    throws Exception {
+    TransMeta transMeta = TransTestFactory.generateTestTransformation( null, meta, "test", rowMeta );
+    long start = System.nanoTime();
+    List<RowMetaAndData> result = TransTestFactory.executeTestTransformation( transMeta, "test", rows );
+    long time = ( System.nanoTime() - start ) / 1000000;
+    if ( result.size() != rows.size() ) {
+      throw new IllegalStateException( "Expected " + rows.size() + " rows but got " + result.size() );
+    }
+    return time;
+  }
+}
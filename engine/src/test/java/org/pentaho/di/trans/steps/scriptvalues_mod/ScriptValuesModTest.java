@@ -25,17 +25,25 @@ package org.pentaho.di.trans.steps.scriptvalues_mod;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.pentaho.di.core.BlockingRowSet;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.junit.rules.RestorePDIEngineEnvironment;
 import org.pentaho.di.trans.TransTestingUtil;
 import org.pentaho.di.trans.steps.StepMockUtil;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 
@@ -112,4 +120,94 @@ public class ScriptValuesModTest {
     Object[] row = TransTestingUtil.execute( step, meta, data, 1, false ).get( 0 );
     TransTestingUtil.assertResult( expectedRow, row );
   }
+
+  @Test
+  public void compiledModeCalculatesFields() throws Exception {
+    ScriptValuesMod step = createStep( new ValueMetaInteger( "a" ), new ValueMetaString( "b" ) );
+    doReturn( new Object[] { 2L, "x" } ).when( step ).getRow();
+
+    ScriptValuesMetaMod meta = createCompiledMeta( "var c = a * 3;\nvar d = b + a;\nb = b.toUpperCase();",
+      new String[] { "c", "d", "b" }, new int[] { ValueMetaInterface.TYPE_NUMBER, ValueMetaInterface.TYPE_STRING,
+        ValueMetaInterface.TYPE_STRING }, new boolean[] { false, false, true } );
+
+    ScriptValuesModData data = new ScriptValuesModData();
+    step.init( meta, data );
+
+    Object[] row = TransTestingUtil.execute( step, meta, data, 2, false ).get( 1 );
+    assertNotNull( data.function );
+    TransTestingUtil.assertResult( new Object[] { 2L, "X", 6.0, "x2" }, row );
+  }
+
+  @Test
+  public void compiledModeSkipsRowsWithTransStatus() throws Exception {
+    ScriptValuesMod step = createStep( new ValueMetaInteger( "a" ) );
+    doReturn( new Object[] { 1L } ).when( step ).getRow();
+
+    ScriptValuesMetaMod meta = createCompiledMeta(
+      "var trans_Status = a > 0 ? SKIP_TRANSFORMATION : CONTINUE_TRANSFORMATION;\nvar c = a;",
+      new String[] { "c" }, new int[] { ValueMetaInterface.TYPE_INTEGER }, new boolean[] { false } );
+
+    ScriptValuesModData data = new ScriptValuesModData();
+    step.init( meta, data );
+
+    RowSet output = new BlockingRowSet( 1 );
+    step.setOutputRowSets( Collections.singletonList( output ) );
+    assertTrue( step.processRow( meta, data ) );
+    assertNotNull( data.function );
+    assertNull( output.getRowImmediate() );
+  }
+
+  @Test
+  public void compiledModeFallsBackOnFieldNamesThatAreNoIdentifiers() throws Exception {
+    ScriptValuesMod step = createStep( new ValueMetaString( "first name" ) );
+    doReturn( new Object[] { "x" } ).when( step ).getRow();
+
+    ScriptValuesMetaMod meta = createCompiledMeta( "var c = this['first name'] + 'y';",
+      new String[] { "c" }, new int[] { ValueMetaInterface.TYPE_STRING }, new boolean[] { false } );
+
+    ScriptValuesModData data = new ScriptValuesModData();
+    step.init( meta, data );
+
+    Object[] row = TransTestingUtil.execute( step, meta, data, 1, false ).get( 0 );
+    assertNull( data.function );
+    TransTestingUtil.assertResult( new Object[] { "x", "xy" }, row );
+  }
+
+  @Test
+  public void testIsIdentifier() {
+    assertTrue( ScriptValuesMod.isIdentifier( "field_1" ) );
+    assertTrue( ScriptValuesMod.isIdentifier( "$value" ) );
+    assertFalse( ScriptValuesMod.isIdentifier( "1field" ) );
+    assertFalse( ScriptValuesMod.isIdentifier( "first name" ) );
+    assertFalse( ScriptValuesMod.isIdentifier( "new" ) );
+    assertFalse( ScriptValuesMod.isIdentifier( null ) );
+  }
+
+  private static ScriptValuesMod createStep( ValueMetaInterface... fields ) throws Exception {
+    ScriptValuesMod step = StepMockUtil.getStep( ScriptValuesMod.class, ScriptValuesMetaMod.class, "test" );
+
+    RowMeta input = new RowMeta();
+    for ( ValueMetaInterface field : fields ) {
+      input.addValueMeta( field );
+    }
+    step.setInputRowMeta( input );
+
+    return spy( step );
+  }
+
+  private static ScriptValuesMetaMod createCompiledMeta( String script, String[] fieldnames, int[] types,
+    boolean[] replace ) {
+    ScriptValuesMetaMod meta = new ScriptValuesMetaMod();
+    meta.setCompatible( false );
+    meta.setCompiled( true );
+    meta.allocate( fieldnames.length );
+    meta.setFieldname( fieldnames );
+    meta.setType( types );
+    meta.setReplace( replace );
+
+    meta.setJSScripts( new ScriptValuesScript[] {
+      new ScriptValuesScript( ScriptValuesScript.TRANSFORM_SCRIPT, "script", script )
+    } );
+    return meta;
+  }
 }
@@ -127,6 +127,12 @@ public class SynchronizeAfterMergeMetaInjectionTest extends BaseMetadataInjectio
         return meta.useBatchUpdate();
       }
     } );
+    check( "SET_BASED_UPSERT", new BooleanGetter() {
+      @Override
+      public boolean get() {
+        return meta.isSetBasedUpsert();
+      }
+    } );
     check( "PERFORM_LOOKUP", new BooleanGetter() {
       @Override
       public boolean get() {
@@ -162,7 +168,7 @@ public class SynchronizeAfterMergeMetaInjectionTest extends BaseMetadataInjectio
   public void getXML() throws KettleException {
     skipProperties( "CONNECTION_NAME", "TABLE_NAME", "STREAM_FIELD2", "PERFORM_LOOKUP", "COMPARATOR",
         "OPERATION_ORDER_FIELD", "ORDER_DELETE", "SHEMA_NAME", "TABLE_NAME_IN_FIELD", "ORDER_UPDATE", "ORDER_INSERT",
-        "USE_BATCH_UPDATE", "STREAM_FIELD", "TABLE_FIELD", "COMMIT_SIZE", "TABLE_NAME_FIELD" );
+        "USE_BATCH_UPDATE", "STREAM_FIELD", "TABLE_FIELD", "COMMIT_SIZE", "TABLE_NAME_FIELD", "SET_BASED_UPSERT" );
     meta.setDefault();
     check( "STREAM_FIELD1", new StringGetter() {
       @Override
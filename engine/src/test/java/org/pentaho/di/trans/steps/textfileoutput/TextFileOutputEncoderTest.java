@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.textfileoutput;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class TextFileOutputEncoderTest {
+
+  private static byte[] written( TextFileOutputEncoder encoder ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.writeTo( out );
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testEncodesLikeGetBytes() throws Exception {
+    String value = "ÖÜä €";
+    for ( String encoding : new String[] { "UTF-8", "Windows-1252", "UTF-16", "US-ASCII" } ) {
+      TextFileOutputEncoder encoder = new TextFileOutputEncoder( encoding, 2 );
+      encoder.encode( value );
+      assertArrayEquals( encoding, value.getBytes( encoding ), written( encoder ) );
+    }
+  }
+
+  @Test
+  public void testValueEncodingAndTruncation() throws Exception {
+    TextFileOutputEncoder encoder = new TextFileOutputEncoder( "UTF-8" );
+    encoder.encode( "ÖÜä", 0, 2, "Windows-1252" );
+    assertArrayEquals( "ÖÜ".getBytes( "Windows-1252" ), written( encoder ) );
+    assertEquals( 0, encoder.length() );
+  }
+
+  @Test
+  public void testPadding() throws Exception {
+    TextFileOutputEncoder encoder = new TextFileOutputEncoder( "UTF-16BE" );
+    encoder.encode( "a" );
+    encoder.pad( 2 );
+    assertArrayEquals( "a  ".getBytes( "UTF-16BE" ), written( encoder ) );
+  }
+
+  @Test
+  public void testEncloseDoublesEnclosures() throws Exception {
+    TextFileOutputEncoder encoder = new TextFileOutputEncoder( "UTF-8" );
+    encoder.append( "x;".getBytes() );
+    int start = encoder.length();
+    encoder.encode( "a\"b" );
+    assertTrue( encoder.containsSeparatorOrEnclosure( start, ";".getBytes(), "\"".getBytes() ) );
+    encoder.enclose( start, "\"".getBytes() );
+    assertArrayEquals( "x;\"a\"\"b\"".getBytes(), written( encoder ) );
+  }
+
+  @Test
+  public void testContainsSeparatorOrEnclosureOnlyLooksAtTheField() throws Exception {
+    TextFileOutputEncoder encoder = new TextFileOutputEncoder( "UTF-8" );
+    encoder.append( "a;".getBytes() );
+    int start = encoder.length();
+    encoder.encode( "plain" );
+    assertFalse( encoder.containsSeparatorOrEnclosure( start, ";".getBytes(), "\"".getBytes() ) );
+    assertFalse( encoder.containsSeparatorOrEnclosure( start, new byte[0], new byte[0] ) );
+  }
+
+  @Test
+  public void testWriteBehindKeepsOrder() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ByteArrayOutputStream target = new ByteArrayOutputStream();
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      OutputStream out = new WriteBehindOutputStream( target, executor, 2 );
+      for ( int i = 0; i < 1000; i++ ) {
+        byte[] line = ( "line " + i + "\n" ).getBytes();
+        out.write( line, 0, line.length );
+        expected.write( line );
+      }
+      out.flush();
+      assertArrayEquals( expected.toByteArray(), target.toByteArray() );
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -323,6 +323,8 @@ public class BaseStreamStepMetaTest {
     assertThat( startingMeta.getBatchDuration(), equalTo( metaToRoundTrip.getBatchDuration() ) );
     assertThat( startingMeta.getBatchSize(), equalTo( metaToRoundTrip.getBatchSize() ) );
     assertThat( startingMeta.getTransformationPath(), equalTo( metaToRoundTrip.getTransformationPath() ) );
+    assertThat( startingMeta.getCheckpointDirectory(), equalTo( metaToRoundTrip.getCheckpointDirectory() ) );
+    assertThat( startingMeta.getMaxInFlightBatches(), equalTo( metaToRoundTrip.getMaxInFlightBatches() ) );
 
     assertThat( startingMeta.stuff, equalTo( metaToRoundTrip.stuff ) );
   }
@@ -42,11 +42,15 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
 public class FixedTimeStreamWindowTest {
   @Mock SubtransExecutor subtransExecutor;
+  @Mock StreamCheckpointer checkpointer;
 
   @Test
   public void emptyResultShouldNotThrowException() throws KettleException {
@@ -70,4 +74,41 @@ public class FixedTimeStreamWindowTest {
     window.buffer( Observable.fromIterable( singletonList( asList( "v1", "v2" ) ) ) )
       .forEach( result -> assertEquals( mockResult, result ) );
   }
+
+  @Test
+  public void successfulBatchesAreCheckpointed() throws KettleException {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "field" ) );
+    when( subtransExecutor.execute( any() ) ).thenReturn( Optional.of( new Result() ) );
+    FixedTimeStreamWindow<List> window =
+      new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, 0, 2, checkpointer );
+    window.buffer( Observable.fromIterable( asList( asList( "v1" ), asList( "v2" ), asList( "v3" ) ) ) )
+      .forEach( result -> { } );
+    verify( checkpointer ).batchCompleted( 2 );
+    verify( checkpointer ).batchCompleted( 1 );
+  }
+
+  @Test
+  public void failedBatchesAreNotCheckpointed() throws KettleException {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "field" ) );
+    Result failed = new Result();
+    failed.setNrErrors( 1 );
+    when( subtransExecutor.execute( any() ) ).thenReturn( Optional.of( failed ) );
+    FixedTimeStreamWindow<List> window =
+      new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, 0, 2, checkpointer );
+    window.buffer( Observable.fromIterable( singletonList( asList( "v1", "v2" ) ) ) ).forEach( result -> { } );
+    verify( checkpointer, never() ).batchCompleted( anyInt() );
+  }
+
+  @Test
+  public void stoppedBatchesAreNotCheckpointed() throws KettleException {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "field" ) );
+    when( subtransExecutor.execute( any() ) ).thenReturn( Optional.empty() );
+    FixedTimeStreamWindow<List> window =
+      new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, 0, 2, checkpointer );
+    window.buffer( Observable.fromIterable( singletonList( asList( "v1", "v2" ) ) ) ).forEach( result -> { } );
+    verify( checkpointer, never() ).batchCompleted( anyInt() );
+  }
 }
@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import io.reactivex.Observable;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.pentaho.di.core.Result;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.trans.SubtransExecutor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.class )
+public class SessionStreamWindowTest {
+  @Mock SubtransExecutor subtransExecutor;
+
+  @Before
+  public void setUp() throws KettleException {
+    when( subtransExecutor.execute( any() ) ).thenReturn( Optional.of( new Result() ) );
+  }
+
+  @Test
+  public void sessionsCloseAfterTheGap() throws KettleException {
+    SessionStreamWindow<List, List<List>> window = new SessionStreamWindow<>( subtransExecutor, new RowMeta(), 10,
+      new CollectingStreamAggregator<>(), null, EventTimeStreamWindow.timestampField( 0 ), 0 );
+    window.buffer( Observable.fromIterable( asList( row( 0, "a" ), row( 5, "a" ), row( 30, "a" ), row( 35, "a" ),
+      row( 100, "a" ) ) ) ).forEach( result -> { } );
+
+    assertEquals( asList( asList( 0L, 5L ), asList( 30L, 35L ), asList( 100L ) ), executedWindows() );
+    assertEquals( 0, window.getSessionCount() );
+  }
+
+  @Test
+  public void sessionsAreKeptPerKeyAndMerged() throws KettleException {
+    SessionStreamWindow<List, List<List>> window = new SessionStreamWindow<>( subtransExecutor, new RowMeta(), 10,
+      new CollectingStreamAggregator<>(), row -> row.get( 1 ), EventTimeStreamWindow.timestampField( 0 ), 20 );
+    // the row at 9 arrives late and bridges the sessions of "a" at 0 and 18
+    window.buffer( Observable.fromIterable( asList( row( 0, "a" ), row( 3, "b" ), row( 18, "a" ), row( 9, "a" ),
+      row( 40, "b" ) ) ) ).forEach( result -> { } );
+
+    List<List<Object>> windows = executedWindows();
+    assertEquals( 3, windows.size() );
+    assertEquals( asList( 3L ), windows.get( 0 ) );
+    assertEquals( asList( 0L, 9L, 18L ), windows.get( 1 ).stream().sorted().collect( Collectors.toList() ) );
+    assertEquals( asList( 40L ), windows.get( 2 ) );
+    assertEquals( 0, window.getLateRows() );
+  }
+
+  @Test
+  public void lateRowsAreDropped() throws KettleException {
+    SessionStreamWindow<List, List<List>> window = new SessionStreamWindow<>( subtransExecutor, new RowMeta(), 10,
+      new CollectingStreamAggregator<>(), null, EventTimeStreamWindow.timestampField( 0 ), 0 );
+    window.buffer( Observable.fromIterable( asList( row( 0, "a" ), row( 50, "a" ), row( 5, "a" ) ) ) )
+      .forEach( result -> { } );
+
+    assertEquals( asList( asList( 0L ), asList( 50L ) ), executedWindows() );
+    assertEquals( 1, window.getLateRows() );
+  }
+
+  private List row( long timestamp, String key ) {
+    return asList( timestamp, key );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private List<List<Object>> executedWindows() throws KettleException {
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass( List.class );
+    verify( subtransExecutor, atLeastOnce() ).execute( captor.capture() );
+    return captor.getAllValues().stream()
+      .map( rows -> ( (List<RowMetaAndData>) rows ).stream()
+        .map( row -> row.getData()[ 0 ] ).collect( Collectors.toList() ) )
+      .collect( Collectors.toList() );
+  }
+}
@@ -0,0 +1,122 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import io.reactivex.Observable;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.pentaho.di.core.Result;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.trans.SubtransExecutor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.class )
+public class SlidingStreamWindowTest {
+  @Mock SubtransExecutor subtransExecutor;
+
+  @Before
+  public void setUp() throws KettleException {
+    when( subtransExecutor.execute( any() ) ).thenReturn( Optional.of( new Result() ) );
+  }
+
+  @Test
+  public void overlappingWindowsShareTheRows() throws KettleException {
+    SlidingStreamWindow<List, List<List>> window = new SlidingStreamWindow<>( subtransExecutor, new RowMeta(), 10, 5,
+      new CollectingStreamAggregator<>(), EventTimeStreamWindow.timestampField( 0 ), 0 );
+    window.buffer( Observable.fromIterable( rows( 1, 3, 6, 11, 12, 17 ) ) ).forEach( result -> { } );
+
+    assertEquals(
+      asList( asList( 1L, 3L ), asList( 1L, 3L, 6L ), asList( 6L, 11L, 12L ), asList( 11L, 12L, 17L ),
+        asList( 17L ) ),
+      executedWindows( 0 ) );
+  }
+
+  @Test
+  public void panesAreAggregatedIncrementally() throws KettleException {
+    SlidingStreamWindow<List, FieldStatsStreamAggregator.Stats> window = new SlidingStreamWindow<>( subtransExecutor,
+      new RowMeta(), 4, 2, new FieldStatsStreamAggregator<>( 0 ), EventTimeStreamWindow.timestampField( 0 ), 0 );
+    window.buffer( Observable.fromIterable( rows( 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 ) ) ).forEach( result -> { } );
+
+    // one row per window: count, sum, min, max, average
+    assertEquals( asList( 1.0, 6.0, 14.0, 22.0, 30.0, 17.0 ), executedWindows( 1 ).stream()
+      .map( sums -> sums.get( 0 ) ).collect( Collectors.toList() ) );
+  }
+
+  @Test
+  public void paneCountStaysBounded() {
+    SlidingStreamWindow<List, FieldStatsStreamAggregator.Stats> window = new SlidingStreamWindow<>( subtransExecutor,
+      new RowMeta(), 1000, 10, new FieldStatsStreamAggregator<>( 0 ), EventTimeStreamWindow.timestampField( 0 ), 0 );
+    for ( long timestamp = 0; timestamp < 100000; timestamp++ ) {
+      assertTrue( window.add( asList( timestamp ), timestamp ) );
+      window.close( timestamp );
+      assertTrue( window.getPaneCount() <= 1000 / window.getPaneSize() + 1 );
+    }
+  }
+
+  @Test
+  public void lateRowsAreDropped() throws KettleException {
+    SlidingStreamWindow<List, List<List>> window = new SlidingStreamWindow<>( subtransExecutor, new RowMeta(), 5, 5,
+      new CollectingStreamAggregator<>(), EventTimeStreamWindow.timestampField( 0 ), 2 );
+    window.buffer( Observable.fromIterable( rows( 1, 7, 3, 6 ) ) ).forEach( result -> { } );
+
+    assertEquals( asList( asList( 1L ), asList( 7L, 6L ) ), executedWindows( 0 ) );
+    assertEquals( 1, window.getLateRows() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void slideMustBePositive() {
+    new SlidingStreamWindow<>( subtransExecutor, new RowMeta(), 10, 0, new CollectingStreamAggregator<>() );
+  }
+
+  private List<List> rows( long... timestamps ) {
+    return LongStream.of( timestamps ).mapToObj( timestamp -> asList( timestamp ) ).collect( Collectors.toList() );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private List<List<Object>> executedWindows( int field ) throws KettleException {
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass( List.class );
+    verify( subtransExecutor, atLeastOnce() ).execute( captor.capture() );
+    return captor.getAllValues().stream()
+      .map( rows -> ( (List<RowMetaAndData>) rows ).stream()
+        .map( row -> row.getData()[ field ] ).collect( Collectors.toList() ) )
+      .collect( Collectors.toList() );
+  }
+}
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.streaming.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamCheckpointerTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void storeKeepsTheLastCommit() throws Exception {
+    FileCheckpointStore store = new FileCheckpointStore( folder.getRoot().getPath() + "/checkpoints" );
+    assertNull( store.load( "trans.step.0" ) );
+
+    store.commit( "trans.step.0", "12" );
+    store.commit( "trans.step.0", "42" );
+    assertEquals( "42", store.load( "trans.step.0" ) );
+    assertEquals( "42", new FileCheckpointStore( folder.getRoot().getPath() + "/checkpoints" ).load( "trans.step.0" ) );
+    assertEquals( "trans_step_name.0.checkpoint", store.getFile( "trans/step name.0" ).getFileName().toString() );
+  }
+
+  @Test
+  public void offsetIsCommittedWhenItsBatchCompletes() throws Exception {
+    FileCheckpointStore store = new FileCheckpointStore( folder.getRoot().getPath() );
+    StreamCheckpointer checkpointer = new StreamCheckpointer( store, "key", 0 );
+    checkpointer.rowsAccepted( 2, "2" );
+    checkpointer.rowsAccepted( 1, "3" );
+    checkpointer.rowsAccepted( 1, null );
+
+    checkpointer.batchCompleted( 1 );
+    assertNull( store.load( "key" ) );
+    checkpointer.batchCompleted( 2 );
+    assertEquals( "3", store.load( "key" ) );
+    assertEquals( 1, checkpointer.getInFlightRows() );
+
+    // a restarted step resumes from the last commit
+    assertEquals( "3", new StreamCheckpointer( store, "key", 0 ).getCommittedOffset() );
+  }
+
+  @Test
+  public void sourceWaitsWhenTooManyRowsAreInFlight() throws Exception {
+    StreamCheckpointer checkpointer = new StreamCheckpointer( new FileCheckpointStore( folder.getRoot().getPath() ),
+      "key", 2 );
+    checkpointer.rowsAccepted( 2, "2" );
+
+    CountDownLatch accepted = new CountDownLatch( 1 );
+    Thread source = new Thread( () -> {
+      try {
+        checkpointer.rowsAccepted( 1, "3" );
+        accepted.countDown();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    } );
+    source.start();
+    assertFalse( accepted.await( 200, TimeUnit.MILLISECONDS ) );
+
+    checkpointer.batchCompleted( 2 );
+    assertTrue( accepted.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 1, checkpointer.getInFlightRows() );
+  }
+
+  @Test
+  public void closeReleasesTheSource() throws Exception {
+    StreamCheckpointer checkpointer = new StreamCheckpointer( new FileCheckpointStore( folder.getRoot().getPath() ),
+      "key", 1 );
+    checkpointer.rowsAccepted( 1, "1" );
+    checkpointer.close();
+    checkpointer.rowsAccepted( 1, "2" );
+    assertEquals( 2, checkpointer.getInFlightRows() );
+  }
+
+  @Test( expected = KettleException.class )
+  public void unreadableCheckpointFails() throws Exception {
+    FileCheckpointStore store = new FileCheckpointStore( folder.getRoot().getPath() );
+    folder.newFolder( "key" + FileCheckpointStore.EXTENSION );
+    new StreamCheckpointer( store, "key", 0 );
+  }
+}
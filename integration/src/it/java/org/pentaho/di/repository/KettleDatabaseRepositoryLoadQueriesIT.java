@@ -0,0 +1,225 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.repository;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.pentaho.di.cluster.ClusterSchema;
+import org.pentaho.di.cluster.SlaveServer;
+import org.pentaho.di.core.Condition;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.NotePadMeta;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.row.ValueMetaAndData;
+import org.pentaho.di.partition.PartitionSchema;
+import org.pentaho.di.repository.kdr.KettleDatabaseRepository;
+import org.pentaho.di.repository.kdr.KettleDatabaseRepositoryCreationHelper;
+import org.pentaho.di.repository.kdr.KettleDatabaseRepositoryMeta;
+import org.pentaho.di.trans.TransDependency;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
+import org.pentaho.di.trans.steps.filterrows.FilterRowsMeta;
+
+/**
+ * Verifies that the number of queries needed to load a transformation from a database repository doesn't depend on
+ * the number of steps, hops, notes, conditions, dependencies or shared objects.
+ */
+public class KettleDatabaseRepositoryLoadQueriesIT extends TestCase {
+
+  private final AtomicInteger queries = new AtomicInteger();
+
+  public void testLoadTransformationQueryCountIsFixed() throws Exception {
+    KettleEnvironment.init();
+    String filename = File.createTempFile( "kdrloadtest", "" ).getAbsolutePath();
+
+    try {
+      DatabaseMeta databaseMeta = new DatabaseMeta( "H2Repo", "H2", "JDBC", null, filename, null, null, null );
+      KettleDatabaseRepositoryMeta repositoryMeta =
+        new KettleDatabaseRepositoryMeta( "KettleDatabaseRepository", "H2Repo", "H2 Repository", databaseMeta );
+      KettleDatabaseRepository repository = new KettleDatabaseRepository();
+      repository.init( repositoryMeta );
+      repository.connectionDelegate.connect( true, true );
+      KettleDatabaseRepositoryCreationHelper helper = new KettleDatabaseRepositoryCreationHelper( repository );
+      helper.createRepositorySchema( null, false, new ArrayList<String>(), false );
+      repository.disconnect();
+
+      repository.connect( "admin", "admin" );
+      assertTrue( repository.isConnected() );
+
+      // Count the queries from here on, the statements prepared while saving are re-used while loading
+      //
+      Connection connection = repository.connectionDelegate.getDatabase().getConnection();
+      repository.connectionDelegate.getDatabase().setConnection( countQueries( connection, Connection.class ) );
+
+      RepositoryDirectoryInterface tree = repository.loadRepositoryDirectoryTree();
+      repository.save( createTransformation( "small", 2, tree ), "small", null );
+      repository.save( createTransformation( "large", 6, tree ), "large", null );
+
+      // The first load reads the database type codes, which are kept
+      //
+      repository.loadTransformation( "small", tree, null, true, null );
+
+      queries.set( 0 );
+      TransMeta small = repository.loadTransformation( "small", tree, null, true, null );
+      int smallQueries = queries.get();
+
+      queries.set( 0 );
+      TransMeta large = repository.loadTransformation( "large", tree, null, true, null );
+      int largeQueries = queries.get();
+
+      assertEquals( 2 * 3, small.nrSteps() );
+      assertEquals( 6 * 3, large.nrSteps() );
+      assertEquals( 6 * 2, large.nrTransHops() );
+      assertEquals( 6, large.nrNotes() );
+      assertEquals( 6, large.nrDependencies() );
+      assertEquals( 2 + 6, large.getPartitionSchemas().size() );
+      assertEquals( 2 + 6, large.getClusterSchemas().size() );
+
+      Condition condition = ( (FilterRowsMeta) large.findStep( "filter 5" ).getStepMetaInterface() ).getCondition();
+      assertEquals( 2, condition.nrConditions() );
+      assertEquals( 5L, condition.getCondition( 0 ).getRightExact().getValueData() );
+      assertEquals( 2, condition.getCondition( 1 ).nrConditions() );
+      assertEquals( "c", condition.getCondition( 1 ).getCondition( 1 ).getLeftValuename() );
+      assertEquals( 5, large.findPartitionSchema( "partitions large 5" ).getPartitionIDs().size() );
+      assertEquals( 2, large.findClusterSchema( "cluster large 5" ).getSlaveServers().size() );
+      assertEquals( "large 5", large.findDatabase( "connection large 5" ).getAttributes().getProperty( "TEST" ) );
+
+      assertTrue( smallQueries > 0 );
+      assertEquals( smallQueries, largeQueries );
+
+      repository.disconnect();
+    } finally {
+      new File( filename + ".h2.db" ).delete();
+      new File( filename + ".trace.db" ).delete();
+    }
+  }
+
+  private TransMeta createTransformation( String name, int size, RepositoryDirectoryInterface directory )
+    throws Exception {
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( name );
+    transMeta.setRepositoryDirectory( directory );
+
+    for ( int i = 0; i < size; i++ ) {
+      DatabaseMeta databaseMeta =
+        new DatabaseMeta( "connection " + name + " " + i, "H2", "JDBC", null, "db" + i, null, null, null );
+      databaseMeta.getAttributes().setProperty( "TEST", name + " " + i );
+      transMeta.addDatabase( databaseMeta );
+
+      transMeta.addPartitionSchema( new PartitionSchema( "partitions " + name + " " + i, partitionIDs( i ) ) );
+
+      SlaveServer master = new SlaveServer( "master " + name + " " + i, "localhost", "808" + i, "cluster", "cluster" );
+      master.setMaster( true );
+      SlaveServer slave = new SlaveServer( "slave " + name + " " + i, "localhost", "809" + i, "cluster", "cluster" );
+      transMeta.addSlaveServer( master );
+      transMeta.addSlaveServer( slave );
+      List<SlaveServer> slaveServers = new ArrayList<SlaveServer>( Arrays.asList( master, slave ) );
+      transMeta.addClusterSchema( new ClusterSchema( "cluster " + name + " " + i, slaveServers ) );
+
+      FilterRowsMeta filterRowsMeta = new FilterRowsMeta();
+      filterRowsMeta.setCondition( createCondition( i ) );
+      StepMeta filter = new StepMeta( "filter " + i, filterRowsMeta );
+      StepMeta accepted = new StepMeta( "accepted " + i, new DummyTransMeta() );
+      StepMeta rejected = new StepMeta( "rejected " + i, new DummyTransMeta() );
+      filterRowsMeta.getStepIOMeta().getTargetStreams().get( 0 ).setStepMeta( accepted );
+      filterRowsMeta.getStepIOMeta().getTargetStreams().get( 1 ).setStepMeta( rejected );
+      transMeta.addStep( filter );
+      transMeta.addStep( accepted );
+      transMeta.addStep( rejected );
+      transMeta.addTransHop( new TransHopMeta( filter, accepted ) );
+      transMeta.addTransHop( new TransHopMeta( filter, rejected ) );
+
+      transMeta.addNote( new NotePadMeta( "note " + i, 10 * i, 10, 100, 20 ) );
+      transMeta.addDependency( new TransDependency( databaseMeta, "table" + i, "field" + i ) );
+    }
+    return transMeta;
+  }
+
+  private static List<String> partitionIDs( int count ) {
+    List<String> ids = new ArrayList<String>();
+    for ( int i = 0; i < count; i++ ) {
+      ids.add( "P" + i );
+    }
+    return ids;
+  }
+
+  /**
+   * A nested condition, a value compared with an exact value or one of two other conditions
+   */
+  private static Condition createCondition( int i ) throws Exception {
+    Condition alternative = new Condition();
+    alternative.addCondition( new Condition( "a", Condition.FUNC_EQUAL, "b", null ) );
+    alternative.addCondition( new Condition( Condition.OPERATOR_OR, "c", Condition.FUNC_NULL, null, null ) );
+
+    Condition condition = new Condition();
+    condition.addCondition(
+      new Condition( "value", Condition.FUNC_LARGER, null, new ValueMetaAndData( "constant", Long.valueOf( i ) ) ) );
+    alternative.setOperator( Condition.OPERATOR_AND );
+    condition.addCondition( alternative );
+    return condition;
+  }
+
+  /**
+   * Wraps a JDBC object so that every query executed through it, or through the statements it creates, is counted.
+   */
+  @SuppressWarnings( "unchecked" )
+  private <T> T countQueries( final T target, Class<T> type ) {
+    return (T) Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+      @Override
+      public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+        String name = method.getName();
+        if ( name.equals( "executeQuery" ) || name.equals( "execute" ) ) {
+          queries.incrementAndGet();
+        }
+        Object result;
+        try {
+          result = method.invoke( target, args );
+        } catch ( InvocationTargetException e ) {
+          throw e.getCause();
+        }
+        if ( result instanceof PreparedStatement ) {
+          return countQueries( (PreparedStatement) result, PreparedStatement.class );
+        }
+        if ( result instanceof Statement ) {
+          return countQueries( (Statement) result, Statement.class );
+        }
+        return result;
+      }
+    } );
+  }
+}
@@ -22,24 +22,10 @@
 
 package org.pentaho.di.trans.steps.blockingstep;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.SocketTimeoutException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-
-import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemException;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
-import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowMetaInterface;
-import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.core.spill.SpillFile;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -66,177 +52,96 @@ public class BlockingStep extends BaseStep implements StepInterface {
   }
 
   private boolean addBuffer( RowMetaInterface rowMeta, Object[] r ) {
+    boolean memoryAvailable = true;
     if ( r != null ) {
       data.buffer.add( r ); // Save row
+      memoryAvailable = data.memory.add( 1 );
     }
 
     // Time to write to disk: buffer in core is full!
     if ( data.buffer.size() == meta.getCacheSize() // Buffer is full: dump to disk
+        || !memoryAvailable // The transformation ran out of memory for buffered rows: dump to disk
         || ( data.files.size() > 0 && r == null && data.buffer.size() > 0 ) // No more records: join from disk
     ) {
       // Then write them to disk...
-      DataOutputStream dos;
-      GZIPOutputStream gzos;
-      int p;
-
       try {
-        FileObject fileObject =
-            KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
-              getTransMeta() );
-
-        data.files.add( fileObject ); // Remember the files!
-        OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
-        if ( meta.getCompress() ) {
-          gzos = new GZIPOutputStream( new BufferedOutputStream( outputStream ) );
-          dos = new DataOutputStream( gzos );
-        } else {
-          dos = new DataOutputStream( outputStream );
-          gzos = null;
-        }
-
-        // How many records do we have?
-        dos.writeInt( data.buffer.size() );
+        SpillFile file =
+            getSpillManager().createFile( meta.getPrefix(), environmentSubstitute( meta.getDirectory() ),
+              getTransMeta(), rowMeta, meta.getCompress() );
+        data.files.add( file ); // Remember the files!
 
-        for ( p = 0; p < data.buffer.size(); p++ ) {
+        for ( Object[] row : data.buffer ) {
           // Just write the data, nothing else
-          rowMeta.writeData( dos, data.buffer.get( p ) );
+          file.add( row );
         }
         // Close temp-file
-        dos.close(); // close data stream
-        if ( gzos != null ) {
-          gzos.close(); // close gzip stream
-        }
-        outputStream.close(); // close file stream
+        file.finish();
       } catch ( Exception e ) {
         logError( "Error processing tmp-file: " + e.toString() );
         return false;
       }
 
       data.buffer.clear();
+      data.memory.release();
     }
 
     return true;
   }
 
   private Object[] getBuffer() {
-    Object[] retval;
-
-    // Open all files at once and read one row from each file...
-    if ( data.files.size() > 0 && ( data.dis.size() == 0 || data.fis.size() == 0 ) ) {
-      if ( log.isBasic() ) {
-        logBasic( BaseMessages.getString( PKG, "BlockingStep.Log.Openfiles" ) );
-      }
-
-      try {
-        FileObject fileObject = data.files.get( 0 );
-        String filename = KettleVFS.getFilename( fileObject );
-        if ( log.isDetailed() ) {
-          logDetailed( BaseMessages.getString( PKG, "BlockingStep.Log.Openfilename1" ) + filename
-              + BaseMessages.getString( PKG, "BlockingStep.Log.Openfilename2" ) );
-        }
-        InputStream fi = KettleVFS.getInputStream( fileObject );
-        DataInputStream di;
-        data.fis.add( fi );
-        if ( meta.getCompress() ) {
-          GZIPInputStream gzfi = new GZIPInputStream( new BufferedInputStream( fi ) );
-          di = new DataInputStream( gzfi );
-          data.gzis.add( gzfi );
-        } else {
-          di = new DataInputStream( fi );
-        }
-        data.dis.add( di );
-
-        // How long is the buffer?
-        int buffersize = di.readInt();
-
-        if ( log.isDetailed() ) {
-          logDetailed( BaseMessages.getString( PKG, "BlockingStep.Log.BufferSize1" ) + filename
-              + BaseMessages.getString( PKG, "BlockingStep.Log.BufferSize2" ) + buffersize + " "
-              + BaseMessages.getString( PKG, "BlockingStep.Log.BufferSize3" ) );
-        }
-
-        if ( buffersize > 0 ) {
-          // Read a row from temp-file
-          data.rowbuffer.add( data.outputRowMeta.readData( di ) );
-        }
-      } catch ( Exception e ) {
-        logError( BaseMessages.getString( PKG, "BlockingStepMeta.ErrorReadingFile" ) + e.toString() );
-        logError( Const.getStackTracker( e ) );
-      }
-    }
-
     if ( data.files.size() == 0 ) {
       if ( data.buffer.size() > 0 ) {
-        retval = data.buffer.get( 0 );
-        data.buffer.remove( 0 );
-      } else {
-        retval = null;
+        return data.buffer.remove( 0 );
       }
-    } else {
-      if ( data.rowbuffer.size() == 0 ) {
-        retval = null;
-      } else {
-        retval = data.rowbuffer.get( 0 );
-
-        data.rowbuffer.remove( 0 );
-
-        // now get another
-        FileObject file = data.files.get( 0 );
-        DataInputStream di = data.dis.get( 0 );
-        InputStream fi = data.fis.get( 0 );
-        GZIPInputStream gzfi = ( meta.getCompress() ) ? data.gzis.get( 0 ) : null;
+      return null;
+    }
 
-        try {
-          data.rowbuffer.add( 0, data.outputRowMeta.readData( di ) );
-        } catch ( SocketTimeoutException e ) {
-          logError( BaseMessages.getString( PKG, "System.Log.UnexpectedError" ) + " : " + e.toString() );
-          logError( Const.getStackTracker( e ) );
+    // Read the files one after the other, deleting them once they are read
+    try {
+      while ( data.files.size() > 0 ) {
+        SpillFile file = data.files.get( 0 );
+        if ( data.reader == null ) {
+          if ( log.isDetailed() ) {
+            logDetailed( BaseMessages.getString( PKG, "BlockingStep.Log.Openfilename1" ) + file
+                + BaseMessages.getString( PKG, "BlockingStep.Log.Openfilename2" ) );
+          }
+          data.reader = file.openReader();
+        }
+        Object[] row = data.reader.next();
+        if ( row != null ) {
+          return row;
+        }
+        data.reader.close();
+        data.reader = null;
+        if ( !file.delete() ) {
+          logError( BaseMessages.getString( PKG, "BlockingStepMeta.UnableDeleteFile" ) + file.toString() );
           setErrors( 1 );
           stopAll();
-        } catch ( KettleFileException fe ) {
-          // empty file or EOF mostly
-          try {
-            di.close();
-            fi.close();
-            if ( gzfi != null ) {
-              gzfi.close();
-            }
-            file.delete();
-          } catch ( IOException e ) {
-            logError( BaseMessages.getString( PKG, "BlockingStepMeta.UnableDeleteFile" ) + file.toString() );
-            setErrors( 1 );
-            stopAll();
-            return null;
-          }
-
-          data.files.remove( 0 );
-          data.dis.remove( 0 );
-          data.fis.remove( 0 );
-          if ( gzfi != null ) {
-            data.gzis.remove( 0 );
-          }
+          return null;
         }
+        data.files.remove( 0 );
       }
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "BlockingStepMeta.ErrorReadingFile" ) + e.toString() );
+      logError( Const.getStackTracker( e ) );
+      setErrors( 1 );
+      stopAll();
     }
-    return retval;
+    return null;
   }
 
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
-    if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
-      for ( DataInputStream is : data.dis ) {
-        BaseStep.closeQuietly( is );
-      }
+    if ( data.reader != null ) {
+      data.reader.close();
+      data.reader = null;
     }
     // remove temp files
-    for ( int f = 0; f < data.files.size(); f++ ) {
-      FileObject fileToDelete = data.files.get( f );
-      try {
-        if ( fileToDelete != null && fileToDelete.exists() ) {
-          fileToDelete.delete();
-        }
-      } catch ( FileSystemException e ) {
-        logError( e.getLocalizedMessage(), e );
-      }
+    for ( SpillFile file : data.files ) {
+      file.delete();
+    }
+    data.files.clear();
+    if ( data.memory != null ) {
+      data.memory.release();
     }
     super.dispose( smi, sdi );
   }
@@ -251,7 +156,7 @@ public class BlockingStep extends BaseStep implements StepInterface {
         getTransMeta().getNamedClusterEmbedManager().passEmbeddedMetastoreKey( getTransMeta(),
           getTransMeta().getEmbeddedMetastoreProviderKey() );
       }
-      // Add init code here.
+      data.memory = getSpillManager().openAccount();
       return true;
     }
     return false;
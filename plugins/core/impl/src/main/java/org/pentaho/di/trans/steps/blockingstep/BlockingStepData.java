@@ -22,24 +22,22 @@
 
 package org.pentaho.di.trans.steps.blockingstep;
 
-import java.io.DataInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.spill.SpillFile;
+import org.pentaho.di.core.spill.SpillManager;
+import org.pentaho.di.core.spill.SpillReader;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
 public class BlockingStepData extends BaseStepData implements StepDataInterface {
-  public List<FileObject> files;
+  public List<SpillFile> files;
   public List<Object[]> buffer;
-  public List<InputStream> fis;
-  public List<GZIPInputStream> gzis;
-  public List<DataInputStream> dis;
-  public List<Object[]> rowbuffer;
+  public SpillReader reader;
+  public SpillManager.MemoryAccount memory;
 
   public RowMetaInterface outputRowMeta;
 
@@ -50,10 +48,6 @@ public class BlockingStepData extends BaseStepData implements StepDataInterface
     super();
 
     buffer = new ArrayList<Object[]>( BlockingStepMeta.CACHE_SIZE );
-    files = new ArrayList<FileObject>();
-    fis = new ArrayList<InputStream>();
-    dis = new ArrayList<DataInputStream>();
-    gzis = new ArrayList<GZIPInputStream>();
-    rowbuffer = new ArrayList<Object[]>();
+    files = new ArrayList<SpillFile>();
   }
 }
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.combinationlookup;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -113,12 +114,25 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     }
   }
 
-  private Long lookupInCache( RowMetaInterface rowMeta, Object[] row ) {
+  private Long lookupInCache( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     // Short circuit if cache is disabled.
     if ( meta.getCacheSize() == -1 ) {
       return null;
     }
 
+    if ( data.hashedKeyCache != null ) {
+      HashedKeyCache.hash( rowMeta, row, data.keyHash );
+      Long tk = data.hashedKeyCache.get( data.keyHash );
+      if ( tk != null && meta.isVerifyCacheHits() && !verifyCacheHit( rowMeta, row, tk ) ) {
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "CombinationLookup.Log.CacheHashCollision", rowMeta
+            .getString( row ), tk ) );
+        }
+        return null;
+      }
+      return tk;
+    }
+
     // try to find the row in the cache...
     //
     Long tk = data.cache.get( new RowMetaAndData( rowMeta, row ) );
@@ -142,6 +156,17 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       return;
     }
 
+    if ( data.hashedKeyCache != null ) {
+      if ( tk != null ) {
+        HashedKeyCache.hash( rowMeta, row, data.keyHash );
+        data.hashedKeyCache.put( data.keyHash, tk );
+      }
+      if ( isRowLevel() ) {
+        logRowlevel( "Cache store: key=" + rowMeta.getString( row ) + "    key=" + tk );
+      }
+      return;
+    }
+
     // store it in the cache if needed.
     data.cache.put( new RowMetaAndData( rowMeta, row ), tk );
 
@@ -211,6 +236,81 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Reads the natural key of a technical key found in the compact cache back from the dimension table to rule out a
+   * hash collision.
+   *
+   * @return true if the dimension entry with the technical key has the natural key of the row
+   */
+  private boolean verifyCacheHit( RowMetaInterface rowMeta, Object[] row, Long tk ) throws KettleException {
+    if ( data.prepStatementVerify == null ) {
+      setVerifyLookup();
+    }
+
+    Object[] dimensionRow;
+    ResultSet rs = null;
+    try {
+      data.db.setValues( data.verifyRowMeta, new Object[] { tk }, data.prepStatementVerify );
+      rs = data.prepStatementVerify.executeQuery();
+      dimensionRow = data.db.getRow( rs, null, data.cacheRowMeta );
+    } catch ( SQLException ex ) {
+      throw new KettleDatabaseException( "Unable to verify the cached technical key " + tk, ex );
+    } finally {
+      try {
+        if ( rs != null ) {
+          rs.close();
+        }
+      } catch ( SQLException ex ) {
+        throw new KettleDatabaseException( "Unable to close resultset after verifying the cached technical key", ex );
+      }
+    }
+    incrementLinesInput();
+
+    if ( dimensionRow == null ) {
+      return false;
+    }
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      if ( valueMeta.compare( row[ i ], data.cacheRowMeta.getValueMeta( i ), dimensionRow[ i ] ) != 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * SELECT key1, key2, ... FROM table WHERE technical_key = ?
+   */
+  private void setVerifyLookup() throws KettleDatabaseException {
+    DatabaseMeta databaseMeta = meta.getDatabaseMeta();
+
+    String sql = "SELECT ";
+    for ( int i = 0; i < meta.getKeyLookup().length; i++ ) {
+      if ( i > 0 ) {
+        sql += ", ";
+      }
+      sql += databaseMeta.quoteField( meta.getKeyLookup()[ i ] );
+    }
+    sql += Const.CR;
+    sql += "FROM " + data.schemaTable + Const.CR;
+    sql += "WHERE " + databaseMeta.quoteField( meta.getTechnicalKeyField() ) + " = ?";
+
+    data.verifyRowMeta = new RowMeta();
+    data.verifyRowMeta.addValueMeta( new ValueMetaInteger( meta.getTechnicalKeyField() ) );
+
+    try {
+      if ( log.isDebug() ) {
+        logDebug( "preparing cache verification statement:" + Const.CR + sql );
+      }
+      data.prepStatementVerify = data.db.getConnection().prepareStatement( databaseMeta.stripCR( sql ) );
+      if ( databaseMeta.supportsSetMaxRows() ) {
+        data.prepStatementVerify.setMaxRows( 1 );
+      }
+    } catch ( SQLException ex ) {
+      throw new KettleDatabaseException( "Unable to prepare cache verification statement", ex );
+    }
+  }
+
   protected boolean isAutoIncrement() {
     return techKeyCreation == CREATION_METHOD_AUTOINC;
   }
@@ -381,6 +481,15 @@ public class CombinationLookup extends BaseStep implements StepInterface {
         data.hashRowMeta.addValueMeta( getInputRowMeta().getValueMeta( data.keynrs[ i ] ) ); // KEYi = ?
       }
 
+      // The same, for key values read back from the dimension table
+      //
+      data.cacheRowMeta = new RowMeta();
+      for ( int i = 0; i < data.hashRowMeta.size(); i++ ) {
+        ValueMetaInterface cacheValueMeta = data.hashRowMeta.getValueMeta( i ).clone();
+        cacheValueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+        data.cacheRowMeta.addValueMeta( cacheValueMeta );
+      }
+
       setCombiLookup( getInputRowMeta() );
       preloadCache( data.hashRowMeta );
     }
@@ -674,7 +783,10 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       data.realSchemaName = environmentSubstitute( meta.getSchemaName() );
       data.realTableName = environmentSubstitute( meta.getTableName() );
 
-      if ( meta.getCacheSize() > 0 ) {
+      if ( meta.isCompactCache() && meta.getCacheSize() >= 0 ) {
+        data.hashedKeyCache = new HashedKeyCache( meta.getCacheSize() );
+        data.keyHash = new long[ 2 ];
+      } else if ( meta.getCacheSize() > 0 ) {
         data.cache = new HashMap<RowMetaAndData, Long>( (int) ( meta.getCacheSize() * 1.5 ) );
       } else {
         data.cache = new HashMap<RowMetaAndData, Long>();
@@ -752,7 +864,6 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       }
       String lookupKeys = "";
       String sql = "";
-      List<Object[]> cacheValues;
 
       /* build SQl Statement to preload cache
        *
@@ -791,15 +902,51 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       if ( log.isDebug() ) {
         logDebug( "Using preload cache statement:" + Const.CR + sql );
       }
-      cacheValues = data.db.getRows( databaseMeta.stripCR( sql ), meta.getCacheSize() );
-      for ( Object[] cacheRow : cacheValues ) {
-        // Create a correctly structured array for the cache
-        Object[] hashRow = new Object[ data.hashRowMeta.size() ];
-        // Assumes the technical key is at position 0 !!
-        System.arraycopy( cacheRow, 1, hashRow, 0, hashRow.length );
-        // Potential Cache Overflow is ahndled inside
-        addToCache( hashRowMeta, hashRow, (Long) cacheRow[ 0 ] );
-        incrementLinesInput();
+
+      // Stream the dimension rows into the cache rather than reading them all in memory first.
+      // The values are read with the types of the key fields so they hash and compare like the input rows.
+      //
+      RowMetaInterface preloadRowMeta = new RowMeta();
+      preloadRowMeta.addValueMeta( new ValueMetaInteger( meta.getTechnicalKeyField() ) );
+      preloadRowMeta.addRowMeta( data.cacheRowMeta );
+      RowMetaInterface cacheKeyRowMeta = data.hashedKeyCache != null ? data.cacheRowMeta : hashRowMeta;
+
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try {
+        ps = data.db.getConnection().prepareStatement( databaseMeta.stripCR( sql ) );
+        ps.setFetchSize( Const.FETCH_SIZE );
+        rs = ps.executeQuery();
+
+        long nrRows = 0;
+        Object[] cacheRow;
+        while ( ( cacheRow = data.db.getRow( rs, null, preloadRowMeta ) ) != null ) {
+          // Create a correctly structured array for the cache
+          Object[] hashRow = new Object[ data.hashRowMeta.size() ];
+          // The technical key is at position 0
+          System.arraycopy( cacheRow, 1, hashRow, 0, hashRow.length );
+          // Potential Cache Overflow is handled inside
+          addToCache( cacheKeyRowMeta, hashRow, (Long) cacheRow[ 0 ] );
+          incrementLinesInput();
+
+          nrRows++;
+          if ( meta.getCacheSize() > 0 && nrRows >= meta.getCacheSize() ) {
+            break;
+          }
+        }
+      } catch ( SQLException ex ) {
+        throw new KettleDatabaseException( "Unable to preload the cache", ex );
+      } finally {
+        try {
+          if ( rs != null ) {
+            rs.close();
+          }
+          if ( ps != null ) {
+            ps.close();
+          }
+        } catch ( SQLException ex ) {
+          throw new KettleDatabaseException( "Unable to close the preload cache statement", ex );
+        }
       }
 
     }
@@ -40,6 +40,8 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
   public int[] keynrs; // nrs in row of the keys
 
   public Map<RowMetaAndData, Long> cache;
+  public HashedKeyCache hashedKeyCache;
+  public long[] keyHash;
 
   public RowMetaInterface outputRowMeta;
   public RowMetaInterface lookupRowMeta;
@@ -53,6 +55,9 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
 
   public PreparedStatement prepStatementLookup;
   public PreparedStatement prepStatementInsert;
+  public PreparedStatement prepStatementVerify;
+  public RowMetaInterface verifyRowMeta;
+  public RowMetaInterface cacheRowMeta;
   public long smallestCacheKey;
 
   /**
@@ -164,6 +164,18 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
   @Injection( name = "CACHE_SIZE" )
   private int cacheSize;
 
+  /**
+   * Cache a 128-bit hash of the natural key instead of the key values themselves.
+   */
+  @Injection( name = "COMPACT_CACHE" )
+  private boolean compactCache;
+
+  /**
+   * Verify every hit in the compact cache against the dimension table.
+   */
+  @Injection( name = "VERIFY_CACHE_HITS" )
+  private boolean verifyCacheHits;
+
   /**
    * Use the auto-increment feature of the database to generate keys.
    */
@@ -319,6 +331,34 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     return preloadCache;
   }
 
+  /**
+   * @return true if the cache stores a hash of the natural key mapped to the technical key instead of the key rows
+   */
+  public boolean isCompactCache() {
+    return compactCache;
+  }
+
+  /**
+   * @param compactCache true to store a hash of the natural key in the cache instead of the key rows
+   */
+  public void setCompactCache( boolean compactCache ) {
+    this.compactCache = compactCache;
+  }
+
+  /**
+   * @return true if hits in the compact cache are verified against the dimension table
+   */
+  public boolean isVerifyCacheHits() {
+    return verifyCacheHits;
+  }
+
+  /**
+   * @param verifyCacheHits true to verify hits in the compact cache against the dimension table
+   */
+  public void setVerifyCacheHits( boolean verifyCacheHits ) {
+    this.verifyCacheHits = verifyCacheHits;
+  }
+
   /**
    * @return Returns the sequenceFrom.
    */
@@ -429,6 +469,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
 
       replaceFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "replace" ) );
       preloadCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preloadCache" ) );
+      compactCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compact_cache" ) );
+      verifyCacheHits = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "verify_cache_hits" ) );
       useHash = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "crc" ) );
 
       hashField = XMLHandler.getTagValue( stepnode, "crcfield" );
@@ -470,6 +512,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     cacheSize = DEFAULT_CACHE_SIZE;
     replaceFields = false;
     preloadCache = false;
+    compactCache = false;
+    verifyCacheHits = false;
     useHash = false;
     hashField = "hashcode";
     int nrkeys = 0;
@@ -517,6 +561,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     retval.append( "      " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "replace", replaceFields ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "preloadCache", preloadCache ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "compact_cache", compactCache ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "verify_cache_hits", verifyCacheHits ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "crc", useHash ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "crcfield", hashField ) );
 
@@ -556,6 +602,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
       replaceFields = rep.getStepAttributeBoolean( id_step, "replace" );
       preloadCache = rep.getStepAttributeBoolean( id_step, "preloadCache" );
+      compactCache = rep.getStepAttributeBoolean( id_step, "compact_cache" );
+      verifyCacheHits = rep.getStepAttributeBoolean( id_step, "verify_cache_hits" );
       useHash = rep.getStepAttributeBoolean( id_step, "crc" );
       hashField = rep.getStepAttributeString( id_step, "crcfield" );
 
@@ -590,6 +638,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
       rep.saveStepAttribute( id_transformation, id_step, "replace", replaceFields );
       rep.saveStepAttribute( id_transformation, id_step, "preloadCache", preloadCache );
+      rep.saveStepAttribute( id_transformation, id_step, "compact_cache", compactCache );
+      rep.saveStepAttribute( id_transformation, id_step, "verify_cache_hits", verifyCacheHits );
 
       rep.saveStepAttribute( id_transformation, id_step, "crc", useHash );
       rep.saveStepAttribute( id_transformation, id_step, "crcfield", hashField );
@@ -1086,6 +1136,12 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     if ( getPreloadCache() != o.getPreloadCache() ) {
       return false;
     }
+    if ( isCompactCache() != o.isCompactCache() ) {
+      return false;
+    }
+    if ( isVerifyCacheHits() != o.isVerifyCacheHits() ) {
+      return false;
+    }
     if ( ( getSequenceFrom() == null && o.getSequenceFrom() != null )
       || ( getSequenceFrom() != null && o.getSequenceFrom() == null )
       || ( getSequenceFrom() != null && o.getSequenceFrom() != null && !getSequenceFrom().equals(
@@ -1129,7 +1185,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
   @Override
   public int hashCode() {
     return Objects.hash( getCommitSize(), getCacheSize(), getTechKeyCreation(), replaceFields(), useHash(),
-      getPreloadCache(), getSequenceFrom(), getSchemaName(), getTableName(), getHashField(), getTechnicalKeyField() );
+      getPreloadCache(), isCompactCache(), isVerifyCacheHits(), getSequenceFrom(), getSchemaName(), getTableName(),
+      getHashField(), getTechnicalKeyField() );
   }
 
   /**
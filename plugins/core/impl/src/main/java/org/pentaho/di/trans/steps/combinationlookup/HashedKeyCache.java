@@ -0,0 +1,383 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.combinationlookup;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Cache of technical keys by a 128-bit hash of the natural key. The entries live in an open addressing table with
+ * linear probing: an entry takes three longs instead of a key row plus a map entry, so junk dimensions with tens of
+ * millions of combinations still fit in memory.
+ * <p>
+ * A bounded cache evicts with the clock (second chance) algorithm: the hand clears the hit flag of the entries it
+ * passes and removes the first entry that wasn't hit since the previous pass. Adding an entry is O(1) amortized.
+ * <p>
+ * Two different keys can share a hash. The chance is negligible (about 2^-128 per pair) but callers that can't take
+ * that risk should verify hits against the database.
+ */
+public class HashedKeyCache {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private static final long NULL_VALUE = 0L;
+  private static final int MIN_CAPACITY = 1024;
+  private static final int SLOT_SIZE = 3;
+
+  private int maxSize;
+
+  /** hash1, hash2 and technical key per slot, a slot with 2 zero hashes is empty */
+  private long[] table;
+  private boolean[] hit;
+  private int mask;
+  private int size;
+  private int threshold;
+  private int hand;
+  private long evictions;
+
+  /**
+   * @param maxSize the maximum number of entries to keep, 0 or less for no limit
+   */
+  public HashedKeyCache( int maxSize ) {
+    int capacity = MIN_CAPACITY;
+    if ( maxSize > 0 ) {
+      // Keep the load factor at 0.75 or below so the probe sequences stay short
+      while ( capacity < Integer.MAX_VALUE / SLOT_SIZE / 2 && capacity / 4 * 3 < maxSize ) {
+        capacity *= 2;
+      }
+    }
+    allocate( capacity );
+    this.maxSize = maxSize > 0 ? Math.min( maxSize, threshold ) : 0;
+  }
+
+  /**
+   * Calculates the 128-bit hash of a key row.
+   *
+   * @param rowMeta the metadata of the key row
+   * @param row     the key values
+   * @param hash    receives the hash, must have a length of 2
+   * @throws KettleValueException in case a value can't be converted
+   */
+  public static void hash( RowMetaInterface rowMeta, Object[] row, long[] hash ) throws KettleValueException {
+    Hasher hasher = new Hasher();
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      Object value = row[ i ];
+      if ( valueMeta.isNull( value ) ) {
+        hasher.add( NULL_VALUE );
+        continue;
+      }
+      // Dates and timestamps are the same key values: rows read from the database carry timestamps
+      int type = valueMeta.getType() == ValueMetaInterface.TYPE_TIMESTAMP ? ValueMetaInterface.TYPE_DATE
+        : valueMeta.getType();
+      hasher.add( ( (long) type << 1 ) | 1L );
+      switch ( type ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          hasher.add( valueMeta.getInteger( value ) );
+          break;
+        case ValueMetaInterface.TYPE_NUMBER:
+          double number = valueMeta.getNumber( value );
+          hasher.add( Double.doubleToLongBits( number == 0.0 ? 0.0 : number ) );
+          break;
+        case ValueMetaInterface.TYPE_BIGNUMBER:
+          BigDecimal bigNumber = valueMeta.getBigNumber( value );
+          if ( bigNumber.signum() == 0 ) {
+            bigNumber = BigDecimal.ZERO;
+          } else {
+            bigNumber = bigNumber.stripTrailingZeros();
+          }
+          hasher.add( bigNumber.scale() );
+          hasher.add( bigNumber.unscaledValue().toByteArray() );
+          break;
+        case ValueMetaInterface.TYPE_DATE:
+          Date date = valueMeta.getDate( value );
+          hasher.add( date.getTime() );
+          // Only the nanoseconds a java.util.Date can't hold, so that equal dates hash the same as timestamps
+          int nanos = date instanceof Timestamp ? ( (Timestamp) date ).getNanos() % 1000000 : 0;
+          if ( nanos != 0 ) {
+            hasher.add( nanos );
+          }
+          break;
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          hasher.add( valueMeta.getBoolean( value ) ? 1L : 2L );
+          break;
+        case ValueMetaInterface.TYPE_BINARY:
+          hasher.add( valueMeta.getBinary( value ) );
+          break;
+        default:
+          hasher.add( valueMeta.getString( value ) );
+          break;
+      }
+    }
+    hasher.finish( hash );
+  }
+
+  /**
+   * @param hash the hash of the key, see {@link #hash(RowMetaInterface, Object[], long[])}
+   * @return the technical key or null if the hash isn't in the cache
+   */
+  public Long get( long[] hash ) {
+    long hash1 = hash[ 0 ];
+    long hash2 = normalize( hash1, hash[ 1 ] );
+    int slot = find( hash1, hash2 );
+    if ( isEmpty( slot ) ) {
+      return null;
+    }
+    hit[ slot ] = true;
+    return table[ slot * SLOT_SIZE + 2 ];
+  }
+
+  /**
+   * Stores the technical key for a hash, evicting another entry if the cache is full.
+   *
+   * @param hash         the hash of the key, see {@link #hash(RowMetaInterface, Object[], long[])}
+   * @param technicalKey the technical key
+   */
+  public void put( long[] hash, long technicalKey ) {
+    long hash1 = hash[ 0 ];
+    long hash2 = normalize( hash1, hash[ 1 ] );
+    int slot = find( hash1, hash2 );
+    if ( isEmpty( slot ) ) {
+      if ( maxSize > 0 && size >= maxSize ) {
+        evict();
+        slot = find( hash1, hash2 );
+      } else if ( size >= threshold ) {
+        allocate( ( mask + 1 ) * 2 );
+        slot = find( hash1, hash2 );
+      }
+      int index = slot * SLOT_SIZE;
+      table[ index ] = hash1;
+      table[ index + 1 ] = hash2;
+      hit[ slot ] = false;
+      size++;
+    }
+    table[ slot * SLOT_SIZE + 2 ] = technicalKey;
+  }
+
+  /**
+   * @return the number of entries in the cache
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of entries evicted so far
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the slot holding the hash or the empty slot where it belongs
+   */
+  private int find( long hash1, long hash2 ) {
+    int slot = (int) hash1 & mask;
+    while ( true ) {
+      int index = slot * SLOT_SIZE;
+      long slotHash1 = table[ index ];
+      long slotHash2 = table[ index + 1 ];
+      if ( ( slotHash1 == hash1 && slotHash2 == hash2 ) || ( slotHash1 == 0L && slotHash2 == 0L ) ) {
+        return slot;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+  }
+
+  private boolean isEmpty( int slot ) {
+    int index = slot * SLOT_SIZE;
+    return table[ index ] == 0L && table[ index + 1 ] == 0L;
+  }
+
+  private void evict() {
+    while ( true ) {
+      if ( !isEmpty( hand ) ) {
+        if ( hit[ hand ] ) {
+          hit[ hand ] = false;
+        } else {
+          remove( hand );
+          evictions++;
+          return;
+        }
+      }
+      hand = ( hand + 1 ) & mask;
+    }
+  }
+
+  /**
+   * Removes the entry in a slot and shifts the entries after it back so the probe sequences stay intact.
+   */
+  private void remove( int slot ) {
+    int free = slot;
+    int next = slot;
+    while ( true ) {
+      next = ( next + 1 ) & mask;
+      if ( isEmpty( next ) ) {
+        break;
+      }
+      int home = (int) table[ next * SLOT_SIZE ] & mask;
+      boolean inPlace = free <= next ? free < home && home <= next : free < home || home <= next;
+      if ( !inPlace ) {
+        System.arraycopy( table, next * SLOT_SIZE, table, free * SLOT_SIZE, SLOT_SIZE );
+        hit[ free ] = hit[ next ];
+        free = next;
+      }
+    }
+    int index = free * SLOT_SIZE;
+    table[ index ] = 0L;
+    table[ index + 1 ] = 0L;
+    table[ index + 2 ] = 0L;
+    hit[ free ] = false;
+    size--;
+  }
+
+  private void allocate( int capacity ) {
+    long[] oldTable = table;
+    boolean[] oldHit = hit;
+
+    table = new long[ capacity * SLOT_SIZE ];
+    hit = new boolean[ capacity ];
+    mask = capacity - 1;
+    threshold = capacity / 4 * 3;
+    hand = 0;
+
+    if ( oldTable != null ) {
+      for ( int oldSlot = 0; oldSlot < oldHit.length; oldSlot++ ) {
+        int oldIndex = oldSlot * SLOT_SIZE;
+        if ( oldTable[ oldIndex ] != 0L || oldTable[ oldIndex + 1 ] != 0L ) {
+          int slot = find( oldTable[ oldIndex ], oldTable[ oldIndex + 1 ] );
+          System.arraycopy( oldTable, oldIndex, table, slot * SLOT_SIZE, SLOT_SIZE );
+          hit[ slot ] = oldHit[ oldSlot ];
+        }
+      }
+    }
+  }
+
+  /**
+   * The all zero hash marks an empty slot.
+   */
+  private static long normalize( long hash1, long hash2 ) {
+    return hash1 == 0L && hash2 == 0L ? 1L : hash2;
+  }
+
+  /**
+   * MurmurHash3 (x64, 128-bit) over a sequence of longs.
+   */
+  private static class Hasher {
+    private long h1;
+    private long h2;
+    private long k1;
+    private boolean half;
+    private long length;
+
+    void add( long k ) {
+      if ( !half ) {
+        k1 = k;
+        half = true;
+        return;
+      }
+      long k2 = k;
+      h1 ^= mixK1( k1 );
+      h1 = Long.rotateLeft( h1, 27 );
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      h2 ^= mixK2( k2 );
+      h2 = Long.rotateLeft( h2, 31 );
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+
+      half = false;
+      length += 16;
+    }
+
+    void add( String string ) {
+      int chars = string.length();
+      add( chars );
+      for ( int i = 0; i < chars; i += 4 ) {
+        long k = 0L;
+        for ( int j = i; j < i + 4 && j < chars; j++ ) {
+          k = ( k << 16 ) | string.charAt( j );
+        }
+        add( k );
+      }
+    }
+
+    void add( byte[] bytes ) {
+      add( bytes.length );
+      for ( int i = 0; i < bytes.length; i += 8 ) {
+        long k = 0L;
+        for ( int j = i; j < i + 8 && j < bytes.length; j++ ) {
+          k = ( k << 8 ) | ( bytes[ j ] & 0xffL );
+        }
+        add( k );
+      }
+    }
+
+    void finish( long[] hash ) {
+      if ( half ) {
+        h1 ^= mixK1( k1 );
+        length += 8;
+      }
+      h1 ^= length;
+      h2 ^= length;
+      h1 += h2;
+      h2 += h1;
+      h1 = fmix( h1 );
+      h2 = fmix( h2 );
+      h1 += h2;
+      h2 += h1;
+      hash[ 0 ] = h1;
+      hash[ 1 ] = h2;
+    }
+
+    private static long mixK1( long k1 ) {
+      k1 *= C1;
+      k1 = Long.rotateLeft( k1, 31 );
+      k1 *= C2;
+      return k1;
+    }
+
+    private static long mixK2( long k2 ) {
+      k2 *= C2;
+      k2 = Long.rotateLeft( k2, 33 );
+      k2 *= C1;
+      return k2;
+    }
+
+    private static long fmix( long k ) {
+      k ^= k >>> 33;
+      k *= 0xff51afd7ed558ccdL;
+      k ^= k >>> 33;
+      k *= 0xc4ceb53a185ec871L;
+      k ^= k >>> 33;
+      return k;
+    }
+  }
+}
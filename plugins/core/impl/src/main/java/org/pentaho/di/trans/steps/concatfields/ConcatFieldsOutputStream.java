@@ -40,16 +40,20 @@ public class ConcatFieldsOutputStream extends OutputStream {
 
   @Override
   public void write( byte[] b ) throws IOException {
+    write( b, 0, b.length );
+  }
+
+  // TextFileOutput hands over a complete line from its reusable buffer
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
     if ( streamdata == null ) {
-      streamdata = new byte[ b.length ];
-      System.arraycopy( b, 0, streamdata, 0, b.length );
+      streamdata = new byte[ len ];
+      System.arraycopy( b, off, streamdata, 0, len );
     } else {
-      byte[] tmp = new byte[ streamdata.length + b.length ];
+      byte[] tmp = new byte[ streamdata.length + len ];
       System.arraycopy( streamdata, 0, tmp, 0, streamdata.length );
-      System.arraycopy( b, 0, tmp, streamdata.length, b.length );
-      // now copy tmp back to streamdata
-      streamdata = new byte[ tmp.length ];
-      System.arraycopy( tmp, 0, streamdata, 0, tmp.length );
+      System.arraycopy( b, off, tmp, streamdata.length, len );
+      streamdata = tmp;
     }
   }
 
@@ -98,6 +98,16 @@ public class CombinationLookupMetaInjectionTest extends BaseMetadataInjectionTes
         return meta.getCacheSize();
       }
     } );
+    check( "COMPACT_CACHE", new BooleanGetter() {
+      public boolean get() {
+        return meta.isCompactCache();
+      }
+    } );
+    check( "VERIFY_CACHE_HITS", new BooleanGetter() {
+      public boolean get() {
+        return meta.isVerifyCacheHits();
+      }
+    } );
     check( "AUTO_INC", new BooleanGetter() {
       public boolean get() {
         return meta.isUseAutoinc();
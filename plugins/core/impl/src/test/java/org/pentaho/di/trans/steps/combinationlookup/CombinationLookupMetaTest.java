@@ -62,7 +62,7 @@ public class CombinationLookupMetaTest implements InitializerInterface<StepMetaI
     List<String> attributes =
       Arrays.asList( "schemaName", "tableName", "databaseMeta", "replaceFields", "keyField", "keyLookup",
         "useHash", "hashField", "technicalKeyField", "sequenceFrom", "commitSize", "preloadCache", "cacheSize",
-        "useAutoinc", "techKeyCreation", "lastUpdateField" );
+        "compactCache", "verifyCacheHits", "useAutoinc", "techKeyCreation", "lastUpdateField" );
 
     Map<String, String> getterMap = new HashMap<String, String>() {
       {
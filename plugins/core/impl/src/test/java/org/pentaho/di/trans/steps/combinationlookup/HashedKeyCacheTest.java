@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2018 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.combinationlookup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.row.value.ValueMetaTimestamp;
+
+public class HashedKeyCacheTest {
+
+  @Test
+  public void testHashIsStableAndNormalized() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaBigNumber( "amount" ) );
+
+    long[] hash1 = new long[ 2 ];
+    long[] hash2 = new long[ 2 ];
+    HashedKeyCache.hash( rowMeta, new Object[] { "abc", 1L, new BigDecimal( "1.50" ) }, hash1 );
+    HashedKeyCache.hash( rowMeta, new Object[] { "abc", 1L, new BigDecimal( "1.5" ) }, hash2 );
+    assertArrayEquals( hash1, hash2 );
+
+    HashedKeyCache.hash( rowMeta, new Object[] { "abc", 2L, new BigDecimal( "1.5" ) }, hash2 );
+    assertFalse( Arrays.equals( hash1, hash2 ) );
+
+    // a null is not the same as an empty or shifted value
+    HashedKeyCache.hash( rowMeta, new Object[] { "abc", null, new BigDecimal( "1.5" ) }, hash1 );
+    HashedKeyCache.hash( rowMeta, new Object[] { "abc", 0L, new BigDecimal( "1.5" ) }, hash2 );
+    assertFalse( Arrays.equals( hash1, hash2 ) );
+  }
+
+  @Test
+  public void testDatesHashTheSameAsTimestamps() throws Exception {
+    RowMetaInterface dateMeta = new RowMeta();
+    dateMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    RowMetaInterface timestampMeta = new RowMeta();
+    timestampMeta.addValueMeta( new ValueMetaTimestamp( "date" ) );
+
+    long millis = 1514764800123L;
+    long[] hash1 = new long[ 2 ];
+    long[] hash2 = new long[ 2 ];
+    HashedKeyCache.hash( dateMeta, new Object[] { new Date( millis ) }, hash1 );
+    HashedKeyCache.hash( timestampMeta, new Object[] { new Timestamp( millis ) }, hash2 );
+    assertArrayEquals( hash1, hash2 );
+    HashedKeyCache.hash( dateMeta, new Object[] { new Timestamp( millis ) }, hash2 );
+    assertArrayEquals( hash1, hash2 );
+
+    // nanoseconds a date can't hold make the key different
+    Timestamp precise = new Timestamp( millis );
+    precise.setNanos( precise.getNanos() + 456 );
+    HashedKeyCache.hash( timestampMeta, new Object[] { precise }, hash2 );
+    assertFalse( Arrays.equals( hash1, hash2 ) );
+  }
+
+  @Test
+  public void testUnboundedCacheGrows() {
+    HashedKeyCache cache = new HashedKeyCache( 0 );
+    for ( long i = 0; i < 100000; i++ ) {
+      cache.put( new long[] { i * 31, i }, i + 1000 );
+    }
+    assertEquals( 100000, cache.size() );
+    assertEquals( 0, cache.getEvictions() );
+    for ( long i = 0; i < 100000; i++ ) {
+      assertEquals( Long.valueOf( i + 1000 ), cache.get( new long[] { i * 31, i } ) );
+    }
+    assertNull( cache.get( new long[] { 1, 100001 } ) );
+
+    cache.put( new long[] { 31, 1 }, 5L );
+    assertEquals( 100000, cache.size() );
+    assertEquals( Long.valueOf( 5L ), cache.get( new long[] { 31, 1 } ) );
+  }
+
+  @Test
+  public void testBoundedCacheEvicts() {
+    HashedKeyCache cache = new HashedKeyCache( 1000 );
+    long[] hot = new long[] { 42, 43 };
+    cache.put( hot, 7L );
+    for ( long i = 0; i < 50000; i++ ) {
+      assertEquals( Long.valueOf( 7L ), cache.get( hot ) );
+      long[] hash = new long[] { i * 0x9E3779B97F4A7C15L, i };
+      cache.put( hash, i );
+      assertEquals( Long.valueOf( i ), cache.get( hash ) );
+      assertTrue( cache.size() <= 1000 );
+    }
+    assertEquals( 1000, cache.size() );
+    assertEquals( 49001, cache.getEvictions() );
+  }
+
+  @Test
+  public void testZeroHash() {
+    HashedKeyCache cache = new HashedKeyCache( 10 );
+    assertNull( cache.get( new long[] { 0, 0 } ) );
+    cache.put( new long[] { 0, 0 }, 1L );
+    assertEquals( Long.valueOf( 1L ), cache.get( new long[] { 0, 0 } ) );
+    assertEquals( 1, cache.size() );
+  }
+}
@@ -104,6 +104,12 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
   private Label wlPreloadCache;
   private Button wPreloadCache;
 
+  private Label wlCompactCache;
+  private Button wCompactCache;
+
+  private Label wlVerifyCacheHits;
+  private Button wVerifyCacheHits;
+
   private Label wlTk;
   private Text wTk;
 
@@ -340,6 +346,47 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     fdPreloadCache.right = new FormAttachment( 100, 0 );
     wPreloadCache.setLayoutData( fdPreloadCache );
 
+    // Compact Cache
+    wlCompactCache = new Label( shell, SWT.RIGHT );
+    wlCompactCache.setText( BaseMessages.getString( PKG, "CombinationLookupDialog.CompactCache.Label" ) );
+    props.setLook( wlCompactCache );
+    FormData fdlCompactCache = new FormData();
+    fdlCompactCache.top = new FormAttachment( wlPreloadCache, margin );
+    fdlCompactCache.left = new FormAttachment( wCommit, margin );
+    fdlCompactCache.right = new FormAttachment( middle + 2 * ( 100 - middle ) / 3, -margin );
+    wlCompactCache.setLayoutData( fdlCompactCache );
+    wCompactCache = new Button( shell, SWT.CHECK );
+    props.setLook( wCompactCache );
+    wCompactCache.setToolTipText( BaseMessages.getString( PKG, "CombinationLookupDialog.CompactCache.ToolTip" ) );
+    FormData fdCompactCache = new FormData();
+    fdCompactCache.top = new FormAttachment( wlPreloadCache, margin );
+    fdCompactCache.left = new FormAttachment( wlCompactCache, margin );
+    fdCompactCache.right = new FormAttachment( 100, 0 );
+    wCompactCache.setLayoutData( fdCompactCache );
+    wCompactCache.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        enableFields();
+      }
+    } );
+
+    // Verify Cache Hits
+    wlVerifyCacheHits = new Label( shell, SWT.RIGHT );
+    wlVerifyCacheHits.setText( BaseMessages.getString( PKG, "CombinationLookupDialog.VerifyCacheHits.Label" ) );
+    props.setLook( wlVerifyCacheHits );
+    FormData fdlVerifyCacheHits = new FormData();
+    fdlVerifyCacheHits.top = new FormAttachment( wlCompactCache, margin );
+    fdlVerifyCacheHits.left = new FormAttachment( wCommit, margin );
+    fdlVerifyCacheHits.right = new FormAttachment( middle + 2 * ( 100 - middle ) / 3, -margin );
+    wlVerifyCacheHits.setLayoutData( fdlVerifyCacheHits );
+    wVerifyCacheHits = new Button( shell, SWT.CHECK );
+    props.setLook( wVerifyCacheHits );
+    wVerifyCacheHits.setToolTipText( BaseMessages.getString( PKG, "CombinationLookupDialog.VerifyCacheHits.ToolTip" ) );
+    FormData fdVerifyCacheHits = new FormData();
+    fdVerifyCacheHits.top = new FormAttachment( wlCompactCache, margin );
+    fdVerifyCacheHits.left = new FormAttachment( wlVerifyCacheHits, margin );
+    fdVerifyCacheHits.right = new FormAttachment( 100, 0 );
+    wVerifyCacheHits.setLayoutData( fdVerifyCacheHits );
+
     //
     // The Lookup fields: usually the (business) key
     //
@@ -348,7 +395,7 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     props.setLook( wlKey );
     FormData fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wlPreloadCache, margin );
+    fdlKey.top = new FormAttachment( wlVerifyCacheHits, margin );
     fdlKey.right = new FormAttachment( 100, 0 );
     wlKey.setLayoutData( fdlKey );
 
@@ -685,6 +732,8 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     wHashfield.setEnabled( wHashcode.getSelection() );
     wHashfield.setVisible( wHashcode.getSelection() );
     wlHashfield.setEnabled( wHashcode.getSelection() );
+    wVerifyCacheHits.setEnabled( wCompactCache.getSelection() );
+    wlVerifyCacheHits.setEnabled( wCompactCache.getSelection() );
   }
 
   private void setTableFieldCombo() {
@@ -789,6 +838,10 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     }
 
     wPreloadCache.setSelection( input.getPreloadCache() );
+    wCompactCache.setSelection( input.isCompactCache() );
+    wVerifyCacheHits.setSelection( input.isVerifyCacheHits() );
+    wVerifyCacheHits.setEnabled( input.isCompactCache() );
+    wlVerifyCacheHits.setEnabled( input.isCompactCache() );
     wReplace.setSelection( input.replaceFields() );
     wHashcode.setSelection( input.useHash() );
     wHashfield.setEnabled( input.useHash() );
@@ -908,6 +961,8 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     }
 
     in.setPreloadCache( wPreloadCache.getSelection() );
+    in.setCompactCache( wCompactCache.getSelection() );
+    in.setVerifyCacheHits( wVerifyCacheHits.getSelection() );
     in.setUseAutoinc( wAutoinc.getSelection() && wAutoinc.isEnabled() );
     in.setReplaceFields( wReplace.getSelection() );
     in.setUseHash( wHashcode.getSelection() );
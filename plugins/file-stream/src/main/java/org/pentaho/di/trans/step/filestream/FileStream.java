@@ -71,7 +71,7 @@ public class FileStream extends BaseStreamStep implements StepInterface {
     RowMeta rowMeta = new RowMeta();
     rowMeta.addValueMeta( new ValueMetaString( "line" ) );
 
-    window = new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, getDuration(), getBatchSize() );
+    window = new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, getDuration(), getBatchSize(), checkpointer );
 
     try {
       source = new TailFileStreamSource( sourceFile, this );
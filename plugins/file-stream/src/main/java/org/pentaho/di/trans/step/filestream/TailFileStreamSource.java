@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.step.filestream;
 
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.logging.LogChannel;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.i18n.BaseMessages;
@@ -75,14 +76,28 @@ public class TailFileStreamSource extends BlockingQueueStreamSource<List<Object>
   private void fileReadLoop() {
 
     try ( BufferedReader reader = new BufferedReader( new FileReader( filename ) ) ) {
+      long lineNumber = skipCommittedLines( reader );
       while ( true ) {
-        acceptRows( singletonList( singletonList( getNextLine( reader ) ) ) );
+        String line = getNextLine( reader );
+        acceptRows( singletonList( singletonList( line ) ), String.valueOf( ++lineNumber ) );
       }
     } catch ( IOException | InterruptedException e ) {
       logChannel.logError( BaseMessages.getString( PKG, "FileStream.Error.FileStreamError" ), e );
     }
   }
 
+  /**
+   * The offset of a line is its line number, a restarted step skips the lines processed before.
+   */
+  private long skipCommittedLines( BufferedReader reader ) throws IOException {
+    long committed = Const.toLong( getCommittedOffset(), 0L );
+    long lineNumber = 0;
+    while ( lineNumber < committed && reader.readLine() != null ) {
+      lineNumber++;
+    }
+    return lineNumber;
+  }
+
   private String getNextLine( BufferedReader reader ) throws IOException, InterruptedException {
     String currentLine;
     while ( ( currentLine = reader.readLine() ) == null ) {
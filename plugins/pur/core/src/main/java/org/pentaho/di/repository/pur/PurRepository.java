@@ -204,6 +204,9 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
 
   private Map<RepositoryObjectType, List<? extends SharedObjectInterface>> sharedObjectsByType = null;
 
+  private final RepositoryFileDataCache fileDataCache = new RepositoryFileDataCache( Const.toInt(
+    System.getProperty( RepositoryFileDataCache.CACHE_SIZE ), RepositoryFileDataCache.DEFAULT_CACHE_SIZE ) );
+
   private boolean connected = false;
 
   private String connectMessage = null;
@@ -354,6 +357,7 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
   @Override public void disconnect() {
     connected = false;
     metaStore = null;
+    fileDataCache.clear();
     purRepositoryConnector.disconnect();
   }
 
@@ -2191,12 +2195,8 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
         throw new KettleException( BaseMessages.getString( PKG,
           "PurRepository.ERROR_0008_TRANSFORMATION_PATH_INVALID", absPath ) );
       }
-      NodeRepositoryFileData data = null;
-      ObjectRevision revision = null;
-      // Additional obfuscation through obscurity
-      data = pur.getDataAtVersionForRead( file.getId(), versionId, NodeRepositoryFileData.class );
-      revision = getObjectRevision( new StringObjectId( file.getId().toString() ), versionId );
-      TransMeta transMeta = buildTransMeta( file, parentDir, data, revision );
+      RepositoryFileDataCache.Entry fileData = readFileData( file, versionId );
+      TransMeta transMeta = buildTransMeta( file, parentDir, fileData.getData(), fileData.getRevision() );
       ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.TransformationMetaLoaded.id, transMeta );
       return transMeta;
     } catch ( final KettleException ke ) {
@@ -2207,6 +2207,51 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
     }
   }
 
+  /**
+   * Reads the data and revision of a transformation or job file. The server is only asked for them if the file changed
+   * since it was last read.
+   */
+  private RepositoryFileDataCache.Entry readFileData( final RepositoryFile file, final String versionId ) {
+    RepositoryFileDataCache.Entry entry = fileDataCache.get( file );
+    if ( entry == null ) {
+      NodeRepositoryFileData data =
+        pur.getDataAtVersionForRead( file.getId(), versionId, NodeRepositoryFileData.class );
+      ObjectRevision revision = getObjectRevision( new StringObjectId( file.getId().toString() ), versionId );
+      entry = fileDataCache.put( file, data, revision );
+    }
+    return entry;
+  }
+
+  /**
+   * Reads the data and revision of a list of transformation or job files. The files that changed since they were last
+   * read are fetched from the server with a single batch call.
+   *
+   * @return the data of the files, in the order of {@code files}
+   */
+  private List<RepositoryFileDataCache.Entry> readFileDataInBatch( final List<RepositoryFile> files ) {
+    List<RepositoryFileDataCache.Entry> entries = new ArrayList<RepositoryFileDataCache.Entry>( files.size() );
+    List<RepositoryFile> missing = new ArrayList<RepositoryFile>();
+    for ( RepositoryFile file : files ) {
+      RepositoryFileDataCache.Entry entry = fileDataCache.get( file );
+      entries.add( entry );
+      if ( entry == null ) {
+        missing.add( file );
+      }
+    }
+    if ( !missing.isEmpty() ) {
+      Iterator<NodeRepositoryFileData> dataIter =
+        pur.getDataForReadInBatch( missing, NodeRepositoryFileData.class ).iterator();
+      Iterator<VersionSummary> versionsIter = pur.getVersionSummaryInBatch( missing ).iterator();
+      for ( int i = 0; i < entries.size(); i++ ) {
+        if ( entries.get( i ) == null ) {
+          entries.set( i, fileDataCache.put( files.get( i ), dataIter.next(),
+            createObjectRevision( versionsIter.next() ) ) );
+        }
+      }
+    }
+    return entries;
+  }
+
   private TransMeta buildTransMeta( final RepositoryFile file, final RepositoryDirectoryInterface parentDir,
                                     final NodeRepositoryFileData data, final ObjectRevision revision )
     throws KettleException {
@@ -2242,15 +2287,11 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
                                                  final List<RepositoryFile> files, final boolean setInternalVariables )
     throws KettleException {
     List<TransMeta> transformations = new ArrayList<TransMeta>( files.size() );
-    List<NodeRepositoryFileData> filesData = pur.getDataForReadInBatch( files, NodeRepositoryFileData.class );
-    List<VersionSummary> versions = pur.getVersionSummaryInBatch( files );
     Iterator<RepositoryFile> filesIter = files.iterator();
-    Iterator<NodeRepositoryFileData> filesDataIter = filesData.iterator();
-    Iterator<VersionSummary> versionsIter = versions.iterator();
+    Iterator<RepositoryFileDataCache.Entry> filesDataIter = readFileDataInBatch( files ).iterator();
     while ( ( monitor == null || !monitor.isCanceled() ) && filesIter.hasNext() ) {
       RepositoryFile file = filesIter.next();
-      NodeRepositoryFileData fileData = filesDataIter.next();
-      VersionSummary version = versionsIter.next();
+      RepositoryFileDataCache.Entry fileData = filesDataIter.next();
       String
           dirPath =
           file.getPath().substring( 0, file.getPath().lastIndexOf( RepositoryDirectory.DIRECTORY_SEPARATOR ) );
@@ -2262,7 +2303,7 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
         }
         TransMeta
             transMeta =
-            buildTransMeta( file, findDirectory( dirPath ), fileData, createObjectRevision( version ) );
+            buildTransMeta( file, findDirectory( dirPath ), fileData.getData(), fileData.getRevision() );
         ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.TransformationMetaLoaded.id, transMeta );
         transformations.add( transMeta );
       } catch ( Exception ex ) {
@@ -2292,11 +2333,8 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
         // need to go back to server to get versioned info
         file = pur.getFileAtVersion( file.getId(), versionId );
       }
-      NodeRepositoryFileData data = null;
-      ObjectRevision revision = null;
-      data = pur.getDataAtVersionForRead( file.getId(), versionId, NodeRepositoryFileData.class );
-      revision = getObjectRevision( new StringObjectId( file.getId().toString() ), versionId );
-      JobMeta jobMeta = buildJobMeta( file, parentDir, data, revision );
+      RepositoryFileDataCache.Entry fileData = readFileData( file, versionId );
+      JobMeta jobMeta = buildJobMeta( file, parentDir, fileData.getData(), fileData.getRevision() );
       ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.JobMetaLoaded.id, jobMeta );
       return jobMeta;
     } catch ( Exception e ) {
@@ -2339,15 +2377,11 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
                                     final List<RepositoryFile> files, final boolean setInternalVariables )
     throws KettleException {
     List<JobMeta> jobs = new ArrayList<JobMeta>( files.size() );
-    List<NodeRepositoryFileData> filesData = pur.getDataForReadInBatch( files, NodeRepositoryFileData.class );
-    List<VersionSummary> versions = pur.getVersionSummaryInBatch( files );
     Iterator<RepositoryFile> filesIter = files.iterator();
-    Iterator<NodeRepositoryFileData> filesDataIter = filesData.iterator();
-    Iterator<VersionSummary> versionsIter = versions.iterator();
+    Iterator<RepositoryFileDataCache.Entry> filesDataIter = readFileDataInBatch( files ).iterator();
     while ( ( monitor == null || !monitor.isCanceled() ) && filesIter.hasNext() ) {
       RepositoryFile file = filesIter.next();
-      NodeRepositoryFileData fileData = filesDataIter.next();
-      VersionSummary version = versionsIter.next();
+      RepositoryFileDataCache.Entry fileData = filesDataIter.next();
       try {
         String
             dirPath =
@@ -2357,7 +2391,7 @@ public class PurRepository extends AbstractRepository implements Repository, Rec
         if ( monitor != null ) {
           monitor.subTask( "Exporting job [" + file.getPath() + "]" ); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        JobMeta jobMeta = buildJobMeta( file, findDirectory( dirPath ), fileData, createObjectRevision( version ) );
+        JobMeta jobMeta = buildJobMeta( file, findDirectory( dirPath ), fileData.getData(), fileData.getRevision() );
         ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.JobMetaLoaded.id, jobMeta );
         jobs.add( jobMeta );
       } catch ( Exception ex ) {
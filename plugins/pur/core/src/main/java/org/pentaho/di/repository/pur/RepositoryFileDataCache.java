@@ -0,0 +1,129 @@
+/*!
+ * Copyright 2010 - 2018 Hitachi Vantara.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.pentaho.di.repository.pur;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.pentaho.di.repository.ObjectRevision;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+
+/**
+ * Keeps the data and revision of the transformations and jobs loaded last, by file ID. An entry is only handed out
+ * while the version and modification date of the file match the ones it was read at, like an ETag, so a file that
+ * changed on the server is always read again. The least recently used entries are dropped first.
+ */
+public class RepositoryFileDataCache implements java.io.Serializable {
+
+  private static final long serialVersionUID = -3203412716823585721L;
+
+  // Kettle property with the number of files to keep the data of, 0 disables the cache
+  public static final String CACHE_SIZE = "KETTLE_PUR_FILE_DATA_CACHE_SIZE";
+
+  public static final int DEFAULT_CACHE_SIZE = 250;
+
+  public static class Entry implements java.io.Serializable {
+    private static final long serialVersionUID = 6046209548132281645L;
+
+    private final String tag;
+    private final NodeRepositoryFileData data;
+    private final ObjectRevision revision;
+
+    Entry( String tag, NodeRepositoryFileData data, ObjectRevision revision ) {
+      this.tag = tag;
+      this.data = data;
+      this.revision = revision;
+    }
+
+    public NodeRepositoryFileData getData() {
+      return data;
+    }
+
+    public ObjectRevision getRevision() {
+      return revision;
+    }
+  }
+
+  private final int maxSize;
+  private final Map<Serializable, Entry> entries;
+
+  public RepositoryFileDataCache( final int maxSize ) {
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<Serializable, Entry>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<Serializable, Entry> eldest ) {
+        return size() > RepositoryFileDataCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * @return the cached data of the file if it was read at the version and modification date the file has now, null
+   *         otherwise
+   */
+  public synchronized Entry get( final RepositoryFile file ) {
+    String tag = getTag( file );
+    if ( tag == null ) {
+      return null;
+    }
+    Entry entry = entries.get( file.getId() );
+    return entry != null && entry.tag.equals( tag ) ? entry : null;
+  }
+
+  /**
+   * Stores the data read for the file, replacing what was cached for an earlier version. Files without a version or
+   * modification date can't be validated later and are not stored.
+   *
+   * @return the new entry
+   */
+  public synchronized Entry put( final RepositoryFile file, final NodeRepositoryFileData data,
+                                 final ObjectRevision revision ) {
+    String tag = getTag( file );
+    Entry entry = new Entry( tag, data, revision );
+    if ( tag != null && maxSize > 0 ) {
+      entries.put( file.getId(), entry );
+    }
+    return entry;
+  }
+
+  public synchronized void remove( final Serializable fileId ) {
+    entries.remove( fileId );
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private static String getTag( final RepositoryFile file ) {
+    if ( file == null || file.getId() == null ) {
+      return null;
+    }
+    if ( file.getVersionId() == null && file.getLastModifiedDate() == null ) {
+      return null;
+    }
+    return file.getVersionId() + "@"
+      + ( file.getLastModifiedDate() == null ? "" : String.valueOf( file.getLastModifiedDate().getTime() ) );
+  }
+}
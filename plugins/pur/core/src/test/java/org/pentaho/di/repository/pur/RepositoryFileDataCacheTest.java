@@ -0,0 +1,102 @@
+/*!
+ * Copyright 2010 - 2018 Hitachi Vantara.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.pentaho.di.repository.pur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.repository.ObjectRevision;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
+
+public class RepositoryFileDataCacheTest {
+
+  private static RepositoryFile file( String id, String versionId, long modified ) {
+    RepositoryFile file = mock( RepositoryFile.class );
+    when( file.getId() ).thenReturn( id );
+    when( file.getVersionId() ).thenReturn( versionId );
+    when( file.getLastModifiedDate() ).thenReturn( modified < 0 ? null : new Date( modified ) );
+    return file;
+  }
+
+  @Test
+  public void testHitWhileTheFileIsUnchanged() {
+    RepositoryFileDataCache cache = new RepositoryFileDataCache( 10 );
+    NodeRepositoryFileData data = mock( NodeRepositoryFileData.class );
+    ObjectRevision revision = mock( ObjectRevision.class );
+    cache.put( file( "id1", "1.0", 1000L ), data, revision );
+
+    RepositoryFileDataCache.Entry entry = cache.get( file( "id1", "1.0", 1000L ) );
+    assertNotNull( entry );
+    assertSame( data, entry.getData() );
+    assertSame( revision, entry.getRevision() );
+  }
+
+  @Test
+  public void testMissWhenTheFileChanged() {
+    RepositoryFileDataCache cache = new RepositoryFileDataCache( 10 );
+    cache.put( file( "id1", "1.0", 1000L ), mock( NodeRepositoryFileData.class ), null );
+
+    assertNull( cache.get( file( "id1", "1.1", 1000L ) ) );
+    assertNull( cache.get( file( "id1", "1.0", 2000L ) ) );
+    assertNull( cache.get( file( "id2", "1.0", 1000L ) ) );
+
+    // a newer version replaces the old one
+    NodeRepositoryFileData newData = mock( NodeRepositoryFileData.class );
+    cache.put( file( "id1", "1.1", 2000L ), newData, null );
+    assertEquals( 1, cache.size() );
+    assertSame( newData, cache.get( file( "id1", "1.1", 2000L ) ).getData() );
+  }
+
+  @Test
+  public void testFilesThatCantBeValidatedAreNotCached() {
+    RepositoryFileDataCache cache = new RepositoryFileDataCache( 10 );
+    NodeRepositoryFileData data = mock( NodeRepositoryFileData.class );
+    RepositoryFileDataCache.Entry entry = cache.put( file( "id1", null, -1L ), data, null );
+    assertSame( data, entry.getData() );
+    assertEquals( 0, cache.size() );
+    assertNull( cache.get( file( "id1", null, -1L ) ) );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsDropped() {
+    RepositoryFileDataCache cache = new RepositoryFileDataCache( 2 );
+    cache.put( file( "id1", "1.0", 1000L ), mock( NodeRepositoryFileData.class ), null );
+    cache.put( file( "id2", "1.0", 1000L ), mock( NodeRepositoryFileData.class ), null );
+    assertNotNull( cache.get( file( "id1", "1.0", 1000L ) ) );
+    cache.put( file( "id3", "1.0", 1000L ), mock( NodeRepositoryFileData.class ), null );
+
+    assertEquals( 2, cache.size() );
+    assertNotNull( cache.get( file( "id1", "1.0", 1000L ) ) );
+    assertNull( cache.get( file( "id2", "1.0", 1000L ) ) );
+    assertNotNull( cache.get( file( "id3", "1.0", 1000L ) ) );
+  }
+
+  @Test
+  public void testDisabled() {
+    RepositoryFileDataCache cache = new RepositoryFileDataCache( 0 );
+    cache.put( file( "id1", "1.0", 1000L ), mock( NodeRepositoryFileData.class ), null );
+    assertEquals( 0, cache.size() );
+  }
+}
@@ -54,7 +54,7 @@ public class JmsConsumer extends BaseStreamStep {
 
 
     window = new FixedTimeStreamWindow<>(
-      subtransExecutor, meta.jmsDelegate.getRowMeta(), getDuration(), getBatchSize() );
+      subtransExecutor, meta.jmsDelegate.getRowMeta(), getDuration(), getBatchSize(), checkpointer );
     source = new JmsStreamSource( this, requireNonNull( meta.jmsDelegate ), getReceiverTimeout( meta ) );
     return superStatus;
   }
@@ -53,7 +53,7 @@ public class MQTTConsumer extends BaseStreamStep implements StepInterface {
 
     try {
       RowMeta rowMeta = mqttConsumerMeta.getRowMeta( getStepname(), this );
-      window = new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, getDuration(), getBatchSize() );
+      window = new FixedTimeStreamWindow<>( subtransExecutor, rowMeta, getDuration(), getBatchSize(), checkpointer );
       source = new MQTTStreamSource( mqttConsumerMeta, this );
     } catch ( Exception e ) {
       getLogChannel().logError( getString( PKG, "MQTTInput.Error.FailureGettingFields" ), e );
@@ -210,17 +210,11 @@ public class XsdValidator extends BaseStep implements StepInterface {
 
         // create the schema
         Schema SchematXSD = null;
-        if ( xsdfile instanceof AbstractFileObject ) {
-          if ( xsdfile.getName().getURI().contains( "ram:///" ) ) {
-            SchematXSD = factoryXSDValidator.newSchema( new StreamSource( xsdfile.getContent().getInputStream() ) );
-          } else {
-            SchematXSD = factoryXSDValidator.newSchema( new File( KettleVFS.getFilename( xsdfile ) ) );
-          }
+        if ( meta.getXSDSource().equals( meta.SPECIFY_FILENAME ) ) {
+          // The same file for every row: the copies of this step parse it once
+          SchematXSD = getSharedSchema( factoryXSDValidator, xsdfile );
         } else {
-          // we should not get here as anything entered in that does not look like
-          // a url should be made a FileObject.
-          throw new KettleStepException( BaseMessages.getString( PKG, "XsdValidator.Exception.CannotCreateSchema",
-              xsdfile.getClass().getName() ) );
+          SchematXSD = newSchema( factoryXSDValidator, xsdfile );
         }
 
         if ( meta.getXSDSource().equals( meta.NO_NEED ) ) {
@@ -302,6 +296,41 @@ public class XsdValidator extends BaseStep implements StepInterface {
 
   }
 
+  private Schema newSchema( SchemaFactory factoryXSDValidator, FileObject xsdfile )
+    throws SAXException, IOException, KettleStepException {
+    if ( xsdfile instanceof AbstractFileObject ) {
+      if ( xsdfile.getName().getURI().contains( "ram:///" ) ) {
+        return factoryXSDValidator.newSchema( new StreamSource( xsdfile.getContent().getInputStream() ) );
+      } else {
+        return factoryXSDValidator.newSchema( new File( KettleVFS.getFilename( xsdfile ) ) );
+      }
+    } else {
+      // we should not get here as anything entered in that does not look like
+      // a url should be made a FileObject.
+      throw new KettleStepException( BaseMessages.getString( PKG, "XsdValidator.Exception.CannotCreateSchema",
+          xsdfile.getClass().getName() ) );
+    }
+  }
+
+  /**
+   * A schema can be used by several threads at the same time, it's parsed once for all the copies of this step. A
+   * schema that can't be parsed is tried again for the next row, which gets the validation message.
+   */
+  private Schema getSharedSchema( final SchemaFactory factoryXSDValidator, final FileObject xsdfile )
+    throws SAXException, IOException, KettleException {
+    try {
+      return getStepArtifact( "schema " + xsdfile.getName().getURI(), () -> newSchema( factoryXSDValidator, xsdfile ) );
+    } catch ( KettleException e ) {
+      if ( e.getCause() instanceof SAXException ) {
+        throw (SAXException) e.getCause();
+      }
+      if ( e.getCause() instanceof IOException ) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (XsdValidatorMeta) smi;
     data = (XsdValidatorData) sdi;
@@ -152,7 +152,7 @@ public class SpoonStepsDelegate extends SpoonDelegate {
 
         StepMeta newStepMeta = (StepMeta) stepMeta.clone();
         newStepMeta.setName( stepname );
-        transMeta.clearCaches();
+        transMeta.clearCaches( stepMeta );
         transMeta.notifyAllListeners( stepMeta, newStepMeta );
         stepMeta.setName( stepname );
 
@@ -5109,6 +5109,6 @@ public class TransGraph extends AbstractGraph implements XulEventHandler, Redraw
 
   private void setHopEnabled( TransHopMeta hop, boolean enabled ) {
     hop.setEnabled( enabled );
-    transMeta.clearCaches();
+    transMeta.clearCaches( hop );
   }
 }
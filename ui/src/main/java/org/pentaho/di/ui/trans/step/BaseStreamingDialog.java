@@ -115,6 +115,11 @@ public abstract class BaseStreamingDialog extends BaseStepDialog implements Step
   protected TextVar wBatchSize;
   protected Label wlBatchDuration;
   protected TextVar wBatchDuration;
+  protected Button wContinuousSubtrans;
+  protected Label wlCheckpointDirectory;
+  protected TextVar wCheckpointDirectory;
+  protected Label wlMaxInFlightBatches;
+  protected TextVar wMaxInFlightBatches;
 
   protected CTabFolder wTabFolder;
   protected CTabItem wSetupTab;
@@ -500,6 +505,54 @@ public abstract class BaseStreamingDialog extends BaseStepDialog implements Step
     fdBatchSize.width = 75;
     wBatchSize.setLayoutData( fdBatchSize );
 
+    wContinuousSubtrans = new Button( wBatchComp, SWT.CHECK );
+    wContinuousSubtrans.setText( BaseMessages.getString( PKG, "BaseStreamingDialog.ContinuousSubtrans" ) );
+    wContinuousSubtrans.setToolTipText(
+      BaseMessages.getString( PKG, "BaseStreamingDialog.ContinuousSubtrans.Tooltip" ) );
+    props.setLook( wContinuousSubtrans );
+    FormData fdContinuousSubtrans = new FormData();
+    fdContinuousSubtrans.left = new FormAttachment( 0, 0 );
+    fdContinuousSubtrans.top = new FormAttachment( wBatchSize, 15 );
+    wContinuousSubtrans.setLayoutData( fdContinuousSubtrans );
+
+    wlCheckpointDirectory = new Label( wBatchComp, SWT.LEFT );
+    props.setLook( wlCheckpointDirectory );
+    wlCheckpointDirectory.setText( BaseMessages.getString( PKG, "BaseStreamingDialog.CheckpointDirectory" ) );
+    FormData fdlCheckpointDirectory = new FormData();
+    fdlCheckpointDirectory.left = new FormAttachment( 0, 0 );
+    fdlCheckpointDirectory.top = new FormAttachment( wContinuousSubtrans, 15 );
+    fdlCheckpointDirectory.right = new FormAttachment( 50, 0 );
+    wlCheckpointDirectory.setLayoutData( fdlCheckpointDirectory );
+
+    wCheckpointDirectory = new TextVar( transMeta, wBatchComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCheckpointDirectory );
+    wCheckpointDirectory.setToolTipText(
+      BaseMessages.getString( PKG, "BaseStreamingDialog.CheckpointDirectory.Tooltip" ) );
+    wCheckpointDirectory.addModifyListener( lsMod );
+    FormData fdCheckpointDirectory = new FormData();
+    fdCheckpointDirectory.left = new FormAttachment( 0, 0 );
+    fdCheckpointDirectory.top = new FormAttachment( wlCheckpointDirectory, 5 );
+    fdCheckpointDirectory.width = 250;
+    wCheckpointDirectory.setLayoutData( fdCheckpointDirectory );
+
+    wlMaxInFlightBatches = new Label( wBatchComp, SWT.LEFT );
+    props.setLook( wlMaxInFlightBatches );
+    wlMaxInFlightBatches.setText( BaseMessages.getString( PKG, "BaseStreamingDialog.MaxInFlightBatches" ) );
+    FormData fdlMaxInFlightBatches = new FormData();
+    fdlMaxInFlightBatches.left = new FormAttachment( 0, 0 );
+    fdlMaxInFlightBatches.top = new FormAttachment( wCheckpointDirectory, 10 );
+    fdlMaxInFlightBatches.right = new FormAttachment( 50, 0 );
+    wlMaxInFlightBatches.setLayoutData( fdlMaxInFlightBatches );
+
+    wMaxInFlightBatches = new TextVar( transMeta, wBatchComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wMaxInFlightBatches );
+    wMaxInFlightBatches.addModifyListener( lsMod );
+    FormData fdMaxInFlightBatches = new FormData();
+    fdMaxInFlightBatches.left = new FormAttachment( 0, 0 );
+    fdMaxInFlightBatches.top = new FormAttachment( wlMaxInFlightBatches, 5 );
+    fdMaxInFlightBatches.width = 75;
+    wMaxInFlightBatches.setLayoutData( fdMaxInFlightBatches );
+
     wBatchComp.layout();
     wBatchTab.setControl( wBatchComp );
   }
@@ -554,6 +607,11 @@ public abstract class BaseStreamingDialog extends BaseStepDialog implements Step
     if ( meta.getBatchDuration() != null ) {
       wBatchDuration.setText( meta.getBatchDuration() );
     }
+    wContinuousSubtrans.setSelection( meta.isContinuousSubtrans() );
+    wCheckpointDirectory.setText( meta.getCheckpointDirectory() );
+    if ( meta.getMaxInFlightBatches() != null ) {
+      wMaxInFlightBatches.setText( meta.getMaxInFlightBatches() );
+    }
     if ( this.meta.getSubStep() != null ) {
       wSubStep.setText( this.meta.getSubStep() );
     }
@@ -618,6 +676,9 @@ public abstract class BaseStreamingDialog extends BaseStepDialog implements Step
     streamMeta.setTransformationPath( wTransPath.getText() );
     streamMeta.setBatchSize( wBatchSize.getText() );
     streamMeta.setBatchDuration( wBatchDuration.getText() );
+    streamMeta.setContinuousSubtrans( wContinuousSubtrans.getSelection() );
+    streamMeta.setCheckpointDirectory( wCheckpointDirectory.getText() );
+    streamMeta.setMaxInFlightBatches( wMaxInFlightBatches.getText() );
     streamMeta.setSpecificationMethod( specificationMethod );
     streamMeta.setSubStep( wSubStep.getText() );
     switch ( specificationMethod ) {
@@ -111,6 +111,10 @@ public class InsertUpdateDialog extends BaseStepDialog implements StepDialogInte
   private Button wUpdateBypassed;
   private FormData fdlUpdateBypassed, fdUpdateBypassed;
 
+  private Label wlSetBasedUpsert;
+  private Button wSetBasedUpsert;
+  private FormData fdlSetBasedUpsert, fdSetBasedUpsert;
+
   private Button wGetLU;
   private FormData fdGetLU;
   private Listener lsGetLU;
@@ -291,12 +295,32 @@ public class InsertUpdateDialog extends BaseStepDialog implements StepDialogInte
     wUpdateBypassed.setLayoutData( fdUpdateBypassed );
     wUpdateBypassed.addSelectionListener( new ComponentSelectionListener( input ) );
 
+    // SetBasedUpsert line
+    wlSetBasedUpsert = new Label( shell, SWT.RIGHT );
+    wlSetBasedUpsert.setText( BaseMessages.getString( PKG, "InsertUpdateDialog.SetBasedUpsert.Label" ) );
+    wlSetBasedUpsert.setToolTipText( BaseMessages.getString( PKG, "InsertUpdateDialog.SetBasedUpsert.Tooltip" ) );
+    props.setLook( wlSetBasedUpsert );
+    fdlSetBasedUpsert = new FormData();
+    fdlSetBasedUpsert.left = new FormAttachment( 0, 0 );
+    fdlSetBasedUpsert.top = new FormAttachment( wUpdateBypassed, margin );
+    fdlSetBasedUpsert.right = new FormAttachment( middle, -margin );
+    wlSetBasedUpsert.setLayoutData( fdlSetBasedUpsert );
+    wSetBasedUpsert = new Button( shell, SWT.CHECK );
+    wSetBasedUpsert.setToolTipText( BaseMessages.getString( PKG, "InsertUpdateDialog.SetBasedUpsert.Tooltip" ) );
+    props.setLook( wSetBasedUpsert );
+    fdSetBasedUpsert = new FormData();
+    fdSetBasedUpsert.left = new FormAttachment( middle, 0 );
+    fdSetBasedUpsert.top = new FormAttachment( wUpdateBypassed, margin );
+    fdSetBasedUpsert.right = new FormAttachment( 100, 0 );
+    wSetBasedUpsert.setLayoutData( fdSetBasedUpsert );
+    wSetBasedUpsert.addSelectionListener( new ComponentSelectionListener( input ) );
+
     wlKey = new Label( shell, SWT.NONE );
     wlKey.setText( BaseMessages.getString( PKG, "InsertUpdateDialog.Keys.Label" ) );
     props.setLook( wlKey );
     fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wUpdateBypassed, margin );
+    fdlKey.top = new FormAttachment( wSetBasedUpsert, margin );
     wlKey.setLayoutData( fdlKey );
 
     int nrKeyCols = 4;
@@ -665,6 +689,7 @@ public class InsertUpdateDialog extends BaseStepDialog implements StepDialogInte
 
     wCommit.setText( input.getCommitSizeVar() );
     wUpdateBypassed.setSelection( input.isUpdateBypassed() );
+    wSetBasedUpsert.setSelection( input.isSetBasedUpsert() );
 
     if ( input.getKeyStream() != null ) {
       for ( int i = 0; i < input.getKeyStream().length; i++ ) {
@@ -737,6 +762,7 @@ public class InsertUpdateDialog extends BaseStepDialog implements StepDialogInte
 
     inf.setCommitSize( wCommit.getText() );
     inf.setUpdateBypassed( wUpdateBypassed.getSelection() );
+    inf.setSetBasedUpsert( wSetBasedUpsert.getSelection() );
 
     if ( log.isDebug() ) {
       logDebug( BaseMessages.getString( PKG, "InsertUpdateDialog.Log.FoundKeys", nrkeys + "" ) );
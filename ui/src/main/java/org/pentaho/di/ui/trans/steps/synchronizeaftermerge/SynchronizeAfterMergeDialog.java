@@ -129,6 +129,10 @@ public class SynchronizeAfterMergeDialog extends BaseStepDialog implements StepD
   private Button wBatch;
   private FormData fdlBatch, fdBatch;
 
+  private Label wlSetBasedUpsert;
+  private Button wSetBasedUpsert;
+  private FormData fdlSetBasedUpsert, fdSetBasedUpsert;
+
   private Label wlPerformLookup;
   private Button wPerformLookup;
   private FormData fdlPerformLookup, fdPerformLookup;
@@ -363,6 +367,26 @@ public class SynchronizeAfterMergeDialog extends BaseStepDialog implements StepD
     fdBatch.right = new FormAttachment( 100, 0 );
     wBatch.setLayoutData( fdBatch );
 
+    // Set based upsert
+    wlSetBasedUpsert = new Label( wGeneralComp, SWT.RIGHT );
+    wlSetBasedUpsert.setText( BaseMessages.getString( PKG, "SynchronizeAfterMergeDialog.SetBasedUpsert.Label" ) );
+    props.setLook( wlSetBasedUpsert );
+    fdlSetBasedUpsert = new FormData();
+    fdlSetBasedUpsert.left = new FormAttachment( 0, 0 );
+    fdlSetBasedUpsert.top = new FormAttachment( wBatch, margin );
+    fdlSetBasedUpsert.right = new FormAttachment( middle, -margin );
+    wlSetBasedUpsert.setLayoutData( fdlSetBasedUpsert );
+    wSetBasedUpsert = new Button( wGeneralComp, SWT.CHECK );
+    wSetBasedUpsert.setToolTipText(
+      BaseMessages.getString( PKG, "SynchronizeAfterMergeDialog.SetBasedUpsert.Tooltip" ) );
+    wSetBasedUpsert.addSelectionListener( lsSimpleSelection );
+    props.setLook( wSetBasedUpsert );
+    fdSetBasedUpsert = new FormData();
+    fdSetBasedUpsert.left = new FormAttachment( middle, 0 );
+    fdSetBasedUpsert.top = new FormAttachment( wBatch, margin );
+    fdSetBasedUpsert.right = new FormAttachment( 100, 0 );
+    wSetBasedUpsert.setLayoutData( fdSetBasedUpsert );
+
     // TablenameInField line
     wlTablenameInField = new Label( wGeneralComp, SWT.RIGHT );
     wlTablenameInField
@@ -370,7 +394,7 @@ public class SynchronizeAfterMergeDialog extends BaseStepDialog implements StepD
     props.setLook( wlTablenameInField );
     fdlTablenameInField = new FormData();
     fdlTablenameInField.left = new FormAttachment( 0, 0 );
-    fdlTablenameInField.top = new FormAttachment( wBatch, margin );
+    fdlTablenameInField.top = new FormAttachment( wSetBasedUpsert, margin );
     fdlTablenameInField.right = new FormAttachment( middle, -margin );
     wlTablenameInField.setLayoutData( fdlTablenameInField );
     wTablenameInField = new Button( wGeneralComp, SWT.CHECK );
@@ -379,7 +403,7 @@ public class SynchronizeAfterMergeDialog extends BaseStepDialog implements StepD
     props.setLook( wTablenameInField );
     fdTablenameInField = new FormData();
     fdTablenameInField.left = new FormAttachment( middle, 0 );
-    fdTablenameInField.top = new FormAttachment( wBatch, margin );
+    fdTablenameInField.top = new FormAttachment( wSetBasedUpsert, margin );
     fdTablenameInField.right = new FormAttachment( 100, 0 );
     wTablenameInField.setLayoutData( fdTablenameInField );
     wTablenameInField.addSelectionListener( new SelectionAdapter() {
@@ -1070,6 +1094,7 @@ public class SynchronizeAfterMergeDialog extends BaseStepDialog implements StepD
       wTableField.setText( input.gettablenameField() );
     }
     wBatch.setSelection( input.useBatchUpdate() );
+    wSetBasedUpsert.setSelection( input.isSetBasedUpsert() );
     if ( input.getOperationOrderField() != null ) {
       wOperationField.setText( input.getOperationOrderField() );
     }
@@ -1157,6 +1182,7 @@ public class SynchronizeAfterMergeDialog extends BaseStepDialog implements StepD
     inf.settablenameInField( wTablenameInField.getSelection() );
     inf.settablenameField( wTableField.getText() );
     inf.setUseBatchUpdate( wBatch.getSelection() );
+    inf.setSetBasedUpsert( wSetBasedUpsert.getSelection() );
     inf.setPerformLookup( wPerformLookup.getSelection() );
 
     inf.setOperationOrderField( wOperationField.getText() );